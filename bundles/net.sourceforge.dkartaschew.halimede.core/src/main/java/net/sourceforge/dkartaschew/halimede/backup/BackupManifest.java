@@ -34,6 +34,10 @@ import net.sourceforge.dkartaschew.halimede.data.persistence.ZonedDateTimePersis
  * Backup Manifest
  * <p>
  * Simple manifest of all items contained in backup set.
+ * <p>
+ * Incremental backups name the backup they are based on, and list every file of the CA at the time of the backup.
+ * Entries unchanged since the base backup name the backup holding their content, and files removed since the base
+ * backup are listed as deleted.
  */
 public class BackupManifest {
 
@@ -80,6 +84,18 @@ public class BackupManifest {
 	 * Collection of entries.
 	 */
 	private List<BackupManifestEntry> entries;
+	/**
+	 * The ID of this backup set. (NULL for backups which predate incremental backups).
+	 */
+	private UUID id;
+	/**
+	 * The ID of the backup set this backup is based on. (NULL for a full backup).
+	 */
+	private UUID base;
+	/**
+	 * Filenames of the entries of the base backup which have since been deleted.
+	 */
+	private List<String> deleted;
 
 	public BackupManifest() {
 	}
@@ -115,6 +131,46 @@ public class BackupManifest {
 		this.entries.add(entry);
 	}
 
+	public UUID getId() {
+		return id;
+	}
+
+	public void setId(UUID id) {
+		this.id = id;
+	}
+
+	public UUID getBase() {
+		return base;
+	}
+
+	public void setBase(UUID base) {
+		this.base = base;
+	}
+
+	public List<String> getDeleted() {
+		return deleted;
+	}
+
+	public void setDeleted(List<String> deleted) {
+		this.deleted = deleted;
+	}
+
+	public void addDeleted(String filename) {
+		if (this.deleted == null) {
+			this.deleted = new ArrayList<>();
+		}
+		this.deleted.add(filename);
+	}
+
+	/**
+	 * Is this an incremental backup?
+	 * 
+	 * @return TRUE if this backup is based on another backup.
+	 */
+	public boolean isIncremental() {
+		return base != null;
+	}
+
 	public ZonedDateTime getCreationDate() {
 		return creationDate;
 	}
@@ -127,9 +183,12 @@ public class BackupManifest {
 	public int hashCode() {
 		final int prime = 31;
 		int result = 1;
+		result = prime * result + ((base == null) ? 0 : base.hashCode());
 		result = prime * result + ((creationDate == null) ? 0 : creationDate.hashCode());
+		result = prime * result + ((deleted == null) ? 0 : deleted.hashCode());
 		result = prime * result + ((description == null) ? 0 : description.hashCode());
 		result = prime * result + ((entries == null) ? 0 : entries.hashCode());
+		result = prime * result + ((id == null) ? 0 : id.hashCode());
 		result = prime * result + ((uuid == null) ? 0 : uuid.hashCode());
 		return result;
 	}
@@ -143,11 +202,21 @@ public class BackupManifest {
 		if (getClass() != obj.getClass())
 			return false;
 		BackupManifest other = (BackupManifest) obj;
+		if (base == null) {
+			if (other.base != null)
+				return false;
+		} else if (!base.equals(other.base))
+			return false;
 		if (creationDate == null) {
 			if (other.creationDate != null)
 				return false;
 		} else if (!creationDate.equals(other.creationDate))
 			return false;
+		if (deleted == null) {
+			if (other.deleted != null)
+				return false;
+		} else if (!deleted.equals(other.deleted))
+			return false;
 		if (description == null) {
 			if (other.description != null)
 				return false;
@@ -158,6 +227,11 @@ public class BackupManifest {
 				return false;
 		} else if (!entries.equals(other.entries))
 			return false;
+		if (id == null) {
+			if (other.id != null)
+				return false;
+		} else if (!id.equals(other.id))
+			return false;
 		if (uuid == null) {
 			if (other.uuid != null)
 				return false;
@@ -171,7 +245,10 @@ public class BackupManifest {
 		return "BackupManifest [uuid=" + uuid + //
 				", description=" + description + //
 				", creationDate=" + creationDate + //
-				", entries=" + entries + "]";
+				", id=" + id + //
+				", base=" + base + //
+				", entries=" + entries + //
+				", deleted=" + deleted + "]";
 	}
 
 }
@@ -17,6 +17,10 @@
 
 package net.sourceforge.dkartaschew.halimede.backup;
 
+import java.util.UUID;
+
+import net.sourceforge.dkartaschew.halimede.enumeration.CompressionMethod;
+
 /**
  * Single entry for backup manifest
  */
@@ -34,6 +38,18 @@ public class BackupManifestEntry {
 	 * The SHA512 digest.
 	 */
 	private String sha512;
+	/**
+	 * The compression method. (NULL if not recorded).
+	 */
+	private CompressionMethod method;
+	/**
+	 * The last modified time of the file. (Milliseconds since the epoch, 0 if not recorded).
+	 */
+	private long modified;
+	/**
+	 * The ID of the backup set holding the content of the file. (NULL if held in the backup set of this manifest).
+	 */
+	private UUID source;
 
 	public BackupManifestEntry() {
 	}
@@ -45,12 +61,25 @@ public class BackupManifestEntry {
 	 * @param length The length of the file
 	 * @param sha512 The SHA512 digest.
 	 */
-	public BackupManifestEntry(String filename, int length, String sha512) {
+	public BackupManifestEntry(String filename, long length, String sha512) {
 		this.filename = filename;
 		this.size = length;
 		this.sha512 = sha512;
 	}
 
+	/**
+	 * Create a new entry
+	 * 
+	 * @param filename The filename
+	 * @param length The length of the file
+	 * @param sha512 The SHA512 digest.
+	 * @param method The compression method.
+	 */
+	public BackupManifestEntry(String filename, long length, String sha512, CompressionMethod method) {
+		this(filename, length, sha512);
+		this.method = method;
+	}
+
 	public String getFilename() {
 		return filename;
 	}
@@ -75,13 +104,40 @@ public class BackupManifestEntry {
 		this.sha512 = sha512;
 	}
 
+	public long getModified() {
+		return modified;
+	}
+
+	public void setModified(long modified) {
+		this.modified = modified;
+	}
+
+	public UUID getSource() {
+		return source;
+	}
+
+	public void setSource(UUID source) {
+		this.source = source;
+	}
+
+	public CompressionMethod getMethod() {
+		return method;
+	}
+
+	public void setMethod(CompressionMethod method) {
+		this.method = method;
+	}
+
 	@Override
 	public int hashCode() {
 		final int prime = 31;
 		int result = 1;
 		result = prime * result + ((filename == null) ? 0 : filename.hashCode());
+		result = prime * result + ((method == null) ? 0 : method.hashCode());
+		result = prime * result + (int) (modified ^ (modified >>> 32));
 		result = prime * result + ((sha512 == null) ? 0 : sha512.hashCode());
 		result = prime * result + (int) (size ^ (size >>> 32));
+		result = prime * result + ((source == null) ? 0 : source.hashCode());
 		return result;
 	}
 
@@ -99,6 +155,10 @@ public class BackupManifestEntry {
 				return false;
 		} else if (!filename.equals(other.filename))
 			return false;
+		if (method != other.method)
+			return false;
+		if (modified != other.modified)
+			return false;
 		if (sha512 == null) {
 			if (other.sha512 != null)
 				return false;
@@ -106,12 +166,18 @@ public class BackupManifestEntry {
 			return false;
 		if (size != other.size)
 			return false;
+		if (source == null) {
+			if (other.source != null)
+				return false;
+		} else if (!source.equals(other.source))
+			return false;
 		return true;
 	}
 
 	@Override
 	public String toString() {
-		return "BackupManifestEntry [filename=" + filename + ", size=" + size + ", sha512=" + sha512 + "]";
+		return "BackupManifestEntry [filename=" + filename + ", size=" + size + ", sha512=" + sha512 + ", method=" + method
+				+ ", modified=" + modified + ", source=" + source + "]";
 	}
 
 }
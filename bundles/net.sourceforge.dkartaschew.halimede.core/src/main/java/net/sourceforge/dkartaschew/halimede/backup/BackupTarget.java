@@ -0,0 +1,98 @@
+/*-
+ * Halimede Certificate Manager Plugin for Eclipse 
+ * Copyright (C) 2017-2021 Darran Kartaschew 
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v2.0 which
+ * accompanies this distribution and is available at
+ *
+ * http://www.eclipse.org/legal/epl-v20.html
+ * 
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the Eclipse
+ * Public License, v. 2.0 are satisfied: GNU General Public License, version 2
+ * with the GNU Classpath Exception which is
+ * available at https://www.gnu.org/software/classpath/license.html.
+ */
+
+package net.sourceforge.dkartaschew.halimede.backup;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+
+/**
+ * Location that backups are written to, and read from. Backups are identified by name within the target.
+ */
+public interface BackupTarget {
+
+	/**
+	 * Stream writing a backup to the target. The backup is stored when the stream is closed, unless aborted first.
+	 */
+	public abstract class Output extends OutputStream {
+
+		/**
+		 * Abandon the backup, discarding anything written. The stream is closed.
+		 * 
+		 * @throws IOException If discarding the backup fails.
+		 */
+		public abstract void abort() throws IOException;
+	}
+
+	/**
+	 * Create a backup, replacing any existing backup of the same name.
+	 * 
+	 * @param name The name of the backup.
+	 * @return The stream to write the backup to.
+	 * @throws IOException If creating the backup fails.
+	 */
+	public Output create(String name) throws IOException;
+
+	/**
+	 * Store the manifest of a backup, once the backup is stored.
+	 * 
+	 * @param name The name of the backup.
+	 * @param manifest The manifest of the backup.
+	 * @throws IOException If storing the manifest fails.
+	 */
+	public void putManifest(String name, BackupManifest manifest) throws IOException;
+
+	/**
+	 * Read the manifest of a backup.
+	 * 
+	 * @param name The name of the backup.
+	 * @return The manifest of the backup.
+	 * @throws IOException If the backup doesn't exist, or reading the manifest fails.
+	 */
+	public BackupManifest readManifest(String name) throws IOException;
+
+	/**
+	 * List the backups held.
+	 * 
+	 * @return The names of the backups.
+	 * @throws IOException If listing the backups fails.
+	 */
+	public List<String> list() throws IOException;
+
+	/**
+	 * Copy a backup to a local file.
+	 * 
+	 * @param name The name of the backup.
+	 * @param file The file to copy to. (Replaced if it exists, and incomplete if the copy fails or is cancelled).
+	 * @param listener The activity listener, checked for cancellation. (may be NULL).
+	 * @return TRUE if the backup was copied, FALSE if cancelled.
+	 * @throws IOException If the backup doesn't exist, or copying fails.
+	 */
+	public boolean fetch(String name, Path file, IProgressMonitor listener) throws IOException;
+
+	/**
+	 * Delete a backup.
+	 * 
+	 * @param name The name of the backup.
+	 * @throws IOException If deleting the backup fails.
+	 */
+	public void delete(String name) throws IOException;
+}
@@ -0,0 +1,175 @@
+/*-
+ * Halimede Certificate Manager Plugin for Eclipse 
+ * Copyright (C) 2017-2021 Darran Kartaschew 
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v2.0 which
+ * accompanies this distribution and is available at
+ *
+ * http://www.eclipse.org/legal/epl-v20.html
+ * 
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the Eclipse
+ * Public License, v. 2.0 are satisfied: GNU General Public License, version 2
+ * with the GNU Classpath Exception which is
+ * available at https://www.gnu.org/software/classpath/license.html.
+ */
+
+package net.sourceforge.dkartaschew.halimede.backup;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.zip.Deflater;
+
+import net.sourceforge.dkartaschew.halimede.enumeration.CompressionMethod;
+
+/**
+ * Selection of the compression method of each backup entry.
+ * <p>
+ * Encrypted and signed containers (PKCS#12 stores, PKCS#7 bundles, CRLs) gain little or nothing from DEFLATE, so are
+ * stored, while text formats are always compressed. Other entries are stored if a sample of the content has high
+ * entropy (random or encrypted data), and compressed otherwise.
+ */
+public class CompressionPolicy {
+
+	/**
+	 * System Properties key (compression level, 0-9; 0 stores all entries)
+	 */
+	public static final String LEVEL = "net.sourceforge.dkartaschew.halimede.backup.level";
+
+	/**
+	 * The size of the sample taken to estimate the entropy of the content.
+	 */
+	public static final int SAMPLE_SIZE = 4096;
+
+	/**
+	 * Entropy (in bits per byte) at or above which content is considered incompressible.
+	 */
+	private static final double ENTROPY_THRESHOLD = 7.5;
+
+	/**
+	 * Extensions of files which are always stored.
+	 */
+	private static final Set<String> STORED_EXTENSIONS = Collections.unmodifiableSet(new HashSet<>(
+			Arrays.asList("p12", "pfx", "p7b", "p7c", "crl", "zip", "gz", "jks")));
+
+	/**
+	 * Extensions of files which are always compressed.
+	 */
+	private static final Set<String> DEFLATED_EXTENSIONS = Collections.unmodifiableSet(new HashSet<>(
+			Arrays.asList("prop", "properties", "xml", "log", "txt", "pem", "csr")));
+
+	/**
+	 * The compression level.
+	 */
+	private final int level;
+
+	/**
+	 * Create a new policy.
+	 * 
+	 * @param level The compression level (0-9), or {@link Deflater#DEFAULT_COMPRESSION}. Level 0 stores all entries.
+	 */
+	public CompressionPolicy(int level) {
+		if (level != Deflater.DEFAULT_COMPRESSION
+				&& (level < Deflater.NO_COMPRESSION || level > Deflater.BEST_COMPRESSION)) {
+			throw new IllegalArgumentException("Compression level is not valid");
+		}
+		this.level = level;
+	}
+
+	/**
+	 * Get the policy configured via the {@link #LEVEL} system property.
+	 * 
+	 * @return The configured policy, or a policy using the default level if not set or not valid.
+	 */
+	public static CompressionPolicy getDefault() {
+		String value = System.getProperty(LEVEL);
+		if (value != null) {
+			try {
+				int level = Integer.parseInt(value.trim());
+				if (level >= Deflater.NO_COMPRESSION && level <= Deflater.BEST_COMPRESSION) {
+					return new CompressionPolicy(level);
+				}
+			} catch (NumberFormatException e) {
+				// fall through to the default.
+			}
+		}
+		return new CompressionPolicy(Deflater.DEFAULT_COMPRESSION);
+	}
+
+	/**
+	 * Get the compression level.
+	 * 
+	 * @return The compression level.
+	 */
+	public int getLevel() {
+		return level;
+	}
+
+	/**
+	 * Select the compression method for an entry.
+	 * 
+	 * @param name The entry name.
+	 * @param sample The start of the content.
+	 * @param length The length of the sample.
+	 * @return The compression method.
+	 */
+	public CompressionMethod select(String name, byte[] sample, int length) {
+		if (level == Deflater.NO_COMPRESSION) {
+			return CompressionMethod.STORED;
+		}
+		String extension = getExtension(name);
+		if (STORED_EXTENSIONS.contains(extension)) {
+			return CompressionMethod.STORED;
+		}
+		if (DEFLATED_EXTENSIONS.contains(extension)) {
+			return CompressionMethod.DEFLATED;
+		}
+		return entropy(sample, length) >= ENTROPY_THRESHOLD ? CompressionMethod.STORED : CompressionMethod.DEFLATED;
+	}
+
+	/**
+	 * Get the (lower case) extension of the entry name.
+	 * 
+	 * @param name The entry name.
+	 * @return The extension, or an empty string if none.
+	 */
+	private static String getExtension(String name) {
+		if (name == null) {
+			return "";
+		}
+		int dot = name.lastIndexOf('.');
+		if (dot < 0 || dot < name.lastIndexOf('/')) {
+			return "";
+		}
+		return name.substring(dot + 1).toLowerCase(Locale.ROOT);
+	}
+
+	/**
+	 * Estimate the Shannon entropy of the data.
+	 * 
+	 * @param data The data.
+	 * @param length The length of the data.
+	 * @return The entropy in bits per byte (0-8).
+	 */
+	static double entropy(byte[] data, int length) {
+		if (length <= 0) {
+			return 0;
+		}
+		int[] counts = new int[256];
+		for (int i = 0; i < length; i++) {
+			counts[data[i] & 0xff]++;
+		}
+		double entropy = 0;
+		for (int count : counts) {
+			if (count != 0) {
+				double p = (double) count / length;
+				entropy -= p * Math.log(p);
+			}
+		}
+		return entropy / Math.log(2);
+	}
+}
@@ -0,0 +1,318 @@
+/*-
+ * Halimede Certificate Manager Plugin for Eclipse 
+ * Copyright (C) 2017-2021 Darran Kartaschew 
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v2.0 which
+ * accompanies this distribution and is available at
+ *
+ * http://www.eclipse.org/legal/epl-v20.html
+ * 
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the Eclipse
+ * Public License, v. 2.0 are satisfied: GNU General Public License, version 2
+ * with the GNU Classpath Exception which is
+ * available at https://www.gnu.org/software/classpath/license.html.
+ */
+
+package net.sourceforge.dkartaschew.halimede.backup;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Objects;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+import net.sourceforge.dkartaschew.halimede.enumeration.CompressionMethod;
+import net.sourceforge.dkartaschew.halimede.util.Digest;
+import net.sourceforge.dkartaschew.halimede.util.Strings;
+
+/**
+ * An entry compressed (as raw DEFLATE data, or stored) ahead of being written to a zip container by {@link ZipWriter},
+ * along with the CRC, sizes and SHA512 digest of the uncompressed content.
+ * <p>
+ * The content is streamed, and the compressed data is held in memory up to a threshold, beyond which it is spilled to
+ * a temporary file. Entries of any size are therefore compressed in bounded memory. Closing the entry deletes any
+ * temporary file. The compression method is selected by a {@link CompressionPolicy} from the name and the start of
+ * the content.
+ */
+public class DeflatedEntry implements Closeable {
+
+	/**
+	 * The size of the buffers used when streaming.
+	 */
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	/**
+	 * The entry name.
+	 */
+	private final String name;
+	/**
+	 * The compression method.
+	 */
+	private final CompressionMethod method;
+	/**
+	 * The uncompressed size.
+	 */
+	private final long size;
+	/**
+	 * The compressed size.
+	 */
+	private final long compressedSize;
+	/**
+	 * The CRC32 of the uncompressed content.
+	 */
+	private final long crc;
+	/**
+	 * The SHA512 digest of the uncompressed content, as hex.
+	 */
+	private final String sha512;
+	/**
+	 * The compressed data, if held in memory.
+	 */
+	private final byte[] data;
+	/**
+	 * The temporary file holding the compressed data, if spilled.
+	 */
+	private final Path spill;
+
+	/**
+	 * Create a new entry.
+	 * 
+	 * @param name The entry name.
+	 * @param method The compression method.
+	 * @param size The uncompressed size.
+	 * @param crc The CRC32 of the uncompressed content.
+	 * @param sha512 The SHA512 digest of the uncompressed content.
+	 * @param buffer The compressed data.
+	 */
+	private DeflatedEntry(String name, CompressionMethod method, long size, long crc, String sha512,
+			SpillOutputStream buffer) {
+		this.name = name;
+		this.method = method;
+		this.size = size;
+		this.crc = crc;
+		this.sha512 = sha512;
+		this.compressedSize = buffer.count;
+		this.spill = buffer.file;
+		this.data = buffer.file == null ? buffer.memory.toByteArray() : null;
+	}
+
+	/**
+	 * Compress the given content.
+	 * 
+	 * @param name The entry name.
+	 * @param in The content. (Read fully, but not closed).
+	 * @param policy The policy selecting the compression method and level.
+	 * @param threshold The size of compressed data held in memory before spilling to a temporary file.
+	 * @param spillDirectory The directory for temporary files.
+	 * @return The compressed entry.
+	 * @throws IOException If reading the content or writing the temporary file fails.
+	 */
+	public static DeflatedEntry compress(String name, InputStream in, CompressionPolicy policy, int threshold,
+			Path spillDirectory) throws IOException {
+		Objects.requireNonNull(name, "Name is not valid");
+		Objects.requireNonNull(in, "Input is not valid");
+		Objects.requireNonNull(policy, "Compression policy is not valid");
+		MessageDigest digest;
+		try {
+			digest = Digest.createSha512();
+		} catch (NoSuchAlgorithmException e) {
+			throw new IOException("SHA512 digest is not available", e);
+		}
+		CRC32 crc = new CRC32();
+		SpillOutputStream buffer = new SpillOutputStream(threshold, spillDirectory);
+		Deflater deflater = null;
+		long size = 0;
+		CompressionMethod method;
+		try {
+			InputStream content = new CheckedInputStream(new DigestInputStream(in, digest), crc);
+			// Select the method from a sample of the content, which is then written first.
+			byte[] b = new byte[BUFFER_SIZE];
+			int read = content.readNBytes(b, 0, CompressionPolicy.SAMPLE_SIZE);
+			method = policy.select(name, b, read);
+			OutputStream out = buffer;
+			if (method == CompressionMethod.DEFLATED) {
+				deflater = new Deflater(policy.getLevel(), true);
+				out = new DeflaterOutputStream(buffer, deflater, BUFFER_SIZE);
+			}
+			try (OutputStream o = out) {
+				while (read > 0) {
+					o.write(b, 0, read);
+					size += read;
+					read = content.read(b);
+				}
+			}
+		} catch (IOException | RuntimeException e) {
+			buffer.delete();
+			throw e;
+		} finally {
+			if (deflater != null) {
+				deflater.end();
+			}
+		}
+		return new DeflatedEntry(name, method, size, crc.getValue(), Strings.toHexString(digest.digest()), buffer);
+	}
+
+	/**
+	 * Get the entry name.
+	 * 
+	 * @return The entry name.
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Get the compression method.
+	 * 
+	 * @return The compression method.
+	 */
+	public CompressionMethod getMethod() {
+		return method;
+	}
+
+	/**
+	 * Get the uncompressed size.
+	 * 
+	 * @return The uncompressed size.
+	 */
+	public long getSize() {
+		return size;
+	}
+
+	/**
+	 * Get the compressed size.
+	 * 
+	 * @return The compressed size.
+	 */
+	public long getCompressedSize() {
+		return compressedSize;
+	}
+
+	/**
+	 * Get the CRC32 of the uncompressed content.
+	 * 
+	 * @return The CRC32.
+	 */
+	public long getCrc() {
+		return crc;
+	}
+
+	/**
+	 * Get the SHA512 digest of the uncompressed content.
+	 * 
+	 * @return The digest as hex.
+	 */
+	public String getSha512() {
+		return sha512;
+	}
+
+	/**
+	 * Is the compressed data held in a temporary file?
+	 * 
+	 * @return TRUE if spilled to a temporary file.
+	 */
+	public boolean isSpilled() {
+		return spill != null;
+	}
+
+	/**
+	 * Write the compressed data to the given stream.
+	 * 
+	 * @param out The stream to write to.
+	 * @throws IOException If reading the temporary file or writing fails.
+	 */
+	public void writeTo(OutputStream out) throws IOException {
+		if (spill != null) {
+			Files.copy(spill, out);
+		} else {
+			out.write(data);
+		}
+	}
+
+	/**
+	 * Delete the temporary file (if any).
+	 */
+	@Override
+	public void close() throws IOException {
+		if (spill != null) {
+			Files.deleteIfExists(spill);
+		}
+	}
+
+	/**
+	 * Output stream held in memory until the threshold is reached, and then in a temporary file.
+	 */
+	private static final class SpillOutputStream extends OutputStream {
+		private final int threshold;
+		private final Path directory;
+		private ByteArrayOutputStream memory = new ByteArrayOutputStream();
+		private Path file;
+		private OutputStream fileOut;
+		private long count;
+
+		SpillOutputStream(int threshold, Path directory) {
+			this.threshold = threshold;
+			this.directory = directory;
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			write(new byte[] { (byte) b }, 0, 1);
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			if (fileOut == null && memory.size() + len > threshold) {
+				file = directory != null ? Files.createTempFile(directory, "halimede-", ".tmp")
+						: Files.createTempFile("halimede-", ".tmp");
+				fileOut = new BufferedOutputStream(Files.newOutputStream(file), BUFFER_SIZE);
+				memory.writeTo(fileOut);
+				memory = null;
+			}
+			if (fileOut != null) {
+				fileOut.write(b, off, len);
+			} else {
+				memory.write(b, off, len);
+			}
+			count += len;
+		}
+
+		@Override
+		public void close() throws IOException {
+			if (fileOut != null) {
+				fileOut.close();
+			}
+		}
+
+		/**
+		 * Discard the contents, deleting the temporary file (if any).
+		 */
+		void delete() {
+			try {
+				close();
+			} catch (IOException e) {
+				// Deleted below.
+			}
+			if (file != null) {
+				try {
+					Files.deleteIfExists(file);
+				} catch (IOException e) {
+					// Nothing more to do.
+				}
+			}
+		}
+	}
+}
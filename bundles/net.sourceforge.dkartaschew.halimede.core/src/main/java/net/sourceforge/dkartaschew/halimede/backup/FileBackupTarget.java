@@ -0,0 +1,162 @@
+/*-
+ * Halimede Certificate Manager Plugin for Eclipse 
+ * Copyright (C) 2017-2021 Darran Kartaschew 
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v2.0 which
+ * accompanies this distribution and is available at
+ *
+ * http://www.eclipse.org/legal/epl-v20.html
+ * 
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the Eclipse
+ * Public License, v. 2.0 are satisfied: GNU General Public License, version 2
+ * with the GNU Classpath Exception which is
+ * available at https://www.gnu.org/software/classpath/license.html.
+ */
+
+package net.sourceforge.dkartaschew.halimede.backup;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+
+import net.sourceforge.dkartaschew.halimede.util.BackupUtil;
+
+/**
+ * Backup target holding each backup as a zip file in a local folder.
+ */
+public class FileBackupTarget implements BackupTarget {
+
+	/**
+	 * The folder holding the backups.
+	 */
+	private final Path directory;
+
+	/**
+	 * Create a new target.
+	 * 
+	 * @param directory The folder holding the backups.
+	 */
+	public FileBackupTarget(Path directory) {
+		this.directory = Objects.requireNonNull(directory, "Location not defined").toAbsolutePath().normalize();
+	}
+
+	/**
+	 * Get the folder holding the backups.
+	 * 
+	 * @return The folder holding the backups.
+	 */
+	public Path getDirectory() {
+		return directory;
+	}
+
+	@Override
+	public Output create(String name) throws IOException {
+		final Path file = resolve(name);
+		Files.deleteIfExists(file);
+		final OutputStream out = new BufferedOutputStream(Files.newOutputStream(file));
+		return new Output() {
+
+			private boolean closed;
+
+			@Override
+			public void write(int b) throws IOException {
+				out.write(b);
+			}
+
+			@Override
+			public void write(byte[] b, int off, int len) throws IOException {
+				out.write(b, off, len);
+			}
+
+			@Override
+			public void flush() throws IOException {
+				out.flush();
+			}
+
+			@Override
+			public void close() throws IOException {
+				if (!closed) {
+					closed = true;
+					out.close();
+				}
+			}
+
+			@Override
+			public void abort() throws IOException {
+				try {
+					close();
+				} finally {
+					Files.deleteIfExists(file);
+				}
+			}
+		};
+	}
+
+	@Override
+	public void putManifest(String name, BackupManifest manifest) throws IOException {
+		// The manifest is held within the backup.
+	}
+
+	@Override
+	public BackupManifest readManifest(String name) throws IOException {
+		return BackupUtil.readManifest(resolve(name));
+	}
+
+	@Override
+	public List<String> list() throws IOException {
+		List<String> names = new ArrayList<>();
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*.zip")) {
+			for (Path file : stream) {
+				if (Files.isRegularFile(file)) {
+					names.add(file.getFileName().toString());
+				}
+			}
+		}
+		Collections.sort(names);
+		return names;
+	}
+
+	@Override
+	public boolean fetch(String name, Path file, IProgressMonitor listener) throws IOException {
+		Files.copy(resolve(name), file, StandardCopyOption.REPLACE_EXISTING);
+		return true;
+	}
+
+	@Override
+	public void delete(String name) throws IOException {
+		Files.delete(resolve(name));
+	}
+
+	/**
+	 * Get the file holding the named backup.
+	 * 
+	 * @param name The name of the backup.
+	 * @return The file.
+	 * @throws IOException If the name is not a file in the folder.
+	 */
+	private Path resolve(String name) throws IOException {
+		Objects.requireNonNull(name, "Backup name not defined");
+		Path file = directory.resolve(name).normalize();
+		if (!directory.equals(file.getParent())) {
+			throw new IOException("Backup name '" + name + "' is not valid");
+		}
+		return file;
+	}
+
+	@Override
+	public String toString() {
+		return directory.toString();
+	}
+}
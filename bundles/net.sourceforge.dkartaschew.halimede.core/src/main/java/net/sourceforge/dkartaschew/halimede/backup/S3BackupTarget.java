@@ -0,0 +1,966 @@
+/*-
+ * Halimede Certificate Manager Plugin for Eclipse 
+ * Copyright (C) 2017-2021 Darran Kartaschew 
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v2.0 which
+ * accompanies this distribution and is available at
+ *
+ * http://www.eclipse.org/legal/epl-v20.html
+ * 
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the Eclipse
+ * Public License, v. 2.0 are satisfied: GNU General Public License, version 2
+ * with the GNU Classpath Exception which is
+ * available at https://www.gnu.org/software/classpath/license.html.
+ */
+
+package net.sourceforge.dkartaschew.halimede.backup;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpRequest.BodyPublisher;
+import java.net.http.HttpRequest.BodyPublishers;
+import java.net.http.HttpResponse;
+import java.net.http.HttpResponse.BodyHandler;
+import java.net.http.HttpResponse.BodyHandlers;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.xml.XMLConstants;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+import org.xml.sax.SAXException;
+
+import net.sourceforge.dkartaschew.halimede.util.BackupUtil;
+import net.sourceforge.dkartaschew.halimede.util.Strings;
+
+/**
+ * Backup target holding each backup as an object in an S3 compatible object store (eg AWS S3, MinIO).
+ * <p>
+ * Backups are streamed to the store with a multipart upload, with up to {@link BackupUtil#getParallelism()} parts
+ * uploaded in parallel. Each part is sent with its MD5 (Content-MD5) and its SHA-256 (as the signed payload hash),
+ * both of which the store verifies, and the returned ETag is checked against the MD5. Backups are fetched with
+ * parallel ranged requests, pinned to the ETag of the object. Failed part transfers are retried.
+ * <p>
+ * The manifest of each backup is also held as a separate object (with the suffix {@link #MANIFEST_SUFFIX}), so the
+ * base of an incremental backup, and the chain of an incremental restore, are found without fetching whole backups.
+ * <p>
+ * Requests use path-style addressing, and are signed with AWS Signature Version 4.
+ */
+public class S3BackupTarget implements BackupTarget {
+
+	/**
+	 * System Properties key (endpoint URI of the object store)
+	 */
+	public static final String ENDPOINT = "net.sourceforge.dkartaschew.halimede.backup.s3.endpoint";
+	/**
+	 * System Properties key (region of the bucket)
+	 */
+	public static final String REGION = "net.sourceforge.dkartaschew.halimede.backup.s3.region";
+	/**
+	 * System Properties key (bucket holding the backups)
+	 */
+	public static final String BUCKET = "net.sourceforge.dkartaschew.halimede.backup.s3.bucket";
+	/**
+	 * System Properties key (prefix of the backup object keys)
+	 */
+	public static final String PREFIX = "net.sourceforge.dkartaschew.halimede.backup.s3.prefix";
+	/**
+	 * System Properties key (access key ID, or the AWS_ACCESS_KEY_ID environment variable)
+	 */
+	public static final String ACCESS_KEY = "net.sourceforge.dkartaschew.halimede.backup.s3.accessKey";
+	/**
+	 * System Properties key (secret access key, or the AWS_SECRET_ACCESS_KEY environment variable)
+	 */
+	public static final String SECRET_KEY = "net.sourceforge.dkartaschew.halimede.backup.s3.secretKey";
+	/**
+	 * System Properties key (size of the parts uploaded and fetched, in bytes)
+	 */
+	public static final String PART_SIZE = "net.sourceforge.dkartaschew.halimede.backup.s3.partSize";
+
+	/**
+	 * Suffix of the objects holding backup manifests.
+	 */
+	public static final String MANIFEST_SUFFIX = ".manifest";
+
+	/**
+	 * The minimum part size of a multipart upload (other than the last part).
+	 */
+	public static final int MIN_PART_SIZE = 5 * 1024 * 1024;
+
+	/**
+	 * The default part size.
+	 */
+	private static final int DEFAULT_PART_SIZE = 8 * 1024 * 1024;
+
+	/**
+	 * The default region.
+	 */
+	private static final String DEFAULT_REGION = "us-east-1";
+
+	/**
+	 * The number of attempts made to transfer a part.
+	 */
+	private static final int ATTEMPTS = 3;
+
+	/**
+	 * Interval to check for cancellation while fetching (ms).
+	 */
+	private static final long POLL_INTERVAL = 100;
+
+	/**
+	 * Size of the buffer used to write fetched parts.
+	 */
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	/**
+	 * Pattern of an ETag that is the MD5 of the content.
+	 */
+	private static final Pattern MD5_ETAG = Pattern.compile("\"?([0-9a-fA-F]{32})\"?");
+
+	/**
+	 * Pattern of the Content-Range header of a ranged response.
+	 */
+	private static final Pattern CONTENT_RANGE = Pattern.compile("bytes \\d+-\\d+/(\\d+)");
+
+	/**
+	 * The endpoint URI.
+	 */
+	private final URI endpoint;
+	/**
+	 * The value of the Host header.
+	 */
+	private final String host;
+	/**
+	 * The bucket.
+	 */
+	private final String bucket;
+	/**
+	 * The prefix of the object keys. (Empty, or ending in '/').
+	 */
+	private final String prefix;
+	/**
+	 * The request signer.
+	 */
+	private final S3Signer signer;
+	/**
+	 * The size of parts.
+	 */
+	private final int partSize;
+	/**
+	 * The number of parts transferred in parallel.
+	 */
+	private final int threads;
+	/**
+	 * The HTTP client.
+	 */
+	private final HttpClient client;
+
+	/**
+	 * Is a target configured by system properties?
+	 * 
+	 * @return TRUE if an endpoint and bucket are configured.
+	 */
+	public static boolean isConfigured() {
+		String endpoint = System.getProperty(ENDPOINT);
+		String bucket = System.getProperty(BUCKET);
+		return endpoint != null && !endpoint.trim().isEmpty() && bucket != null && !bucket.trim().isEmpty();
+	}
+
+	/**
+	 * Get the target configured by system properties.
+	 * 
+	 * @return The configured target, or NULL if no target is configured.
+	 * @throws IllegalArgumentException If the configuration is not valid.
+	 */
+	public static S3BackupTarget getConfigured() {
+		if (!isConfigured()) {
+			return null;
+		}
+		String endpoint = System.getProperty(ENDPOINT);
+		String bucket = System.getProperty(BUCKET);
+		String accessKey = System.getProperty(ACCESS_KEY, System.getenv("AWS_ACCESS_KEY_ID"));
+		String secretKey = System.getProperty(SECRET_KEY, System.getenv("AWS_SECRET_ACCESS_KEY"));
+		if (accessKey == null || secretKey == null) {
+			throw new IllegalArgumentException("Object storage credentials are not configured");
+		}
+		return new S3BackupTarget(URI.create(endpoint.trim()), System.getProperty(REGION, DEFAULT_REGION),
+				bucket.trim(), System.getProperty(PREFIX, ""), accessKey, secretKey, getPartSize(),
+				BackupUtil.getParallelism());
+	}
+
+	/**
+	 * Get the configured part size.
+	 *
+	 * @return The part size in bytes. (Never less than {@link #MIN_PART_SIZE}).
+	 */
+	public static int getPartSize() {
+		String size = System.getProperty(PART_SIZE);
+		if (size != null) {
+			try {
+				int value = Integer.parseInt(size.trim());
+				if (value > 0) {
+					return Math.max(MIN_PART_SIZE, value);
+				}
+			} catch (NumberFormatException e) {
+				// fall through to the default.
+			}
+		}
+		return DEFAULT_PART_SIZE;
+	}
+
+	/**
+	 * Create a new target.
+	 * 
+	 * @param endpoint The endpoint URI. (eg https://s3.us-east-1.amazonaws.com, or http://localhost:9000).
+	 * @param region The region of the bucket.
+	 * @param bucket The bucket.
+	 * @param prefix The prefix of the object keys. (may be NULL or empty).
+	 * @param accessKey The access key ID.
+	 * @param secretKey The secret access key.
+	 * @param partSize The size of parts transferred. (Object stores require parts of at least
+	 *            {@link #MIN_PART_SIZE}).
+	 * @param threads The number of parts transferred in parallel.
+	 */
+	public S3BackupTarget(URI endpoint, String region, String bucket, String prefix, String accessKey,
+			String secretKey, int partSize, int threads) {
+		this.endpoint = Objects.requireNonNull(endpoint, "Endpoint not defined");
+		if (endpoint.getScheme() == null || endpoint.getHost() == null) {
+			throw new IllegalArgumentException("Endpoint '" + endpoint + "' is not valid");
+		}
+		this.bucket = Objects.requireNonNull(bucket, "Bucket not defined");
+		this.signer = new S3Signer(region, accessKey, secretKey);
+		if (partSize <= 0 || threads <= 0) {
+			throw new IllegalArgumentException("Part size and threads must be positive");
+		}
+		this.partSize = partSize;
+		this.threads = threads;
+		String p = prefix == null ? "" : prefix;
+		while (p.startsWith("/")) {
+			p = p.substring(1);
+		}
+		this.prefix = p.isEmpty() || p.endsWith("/") ? p : p + "/";
+		int port = endpoint.getPort();
+		boolean defaultPort = port == -1 || (port == 443 && "https".equalsIgnoreCase(endpoint.getScheme()))
+				|| (port == 80 && "http".equalsIgnoreCase(endpoint.getScheme()));
+		this.host = defaultPort ? endpoint.getHost() : endpoint.getHost() + ":" + port;
+		this.client = HttpClient.newBuilder()//
+				.connectTimeout(Duration.ofSeconds(30))//
+				.version(HttpClient.Version.HTTP_1_1)//
+				.followRedirects(HttpClient.Redirect.NEVER)//
+				.build();
+	}
+
+	@Override
+	public Output create(String name) throws IOException {
+		return new MultipartOutput(key(name));
+	}
+
+	@Override
+	public void putManifest(String name, BackupManifest manifest) throws IOException {
+		ByteArrayOutputStream stream = new ByteArrayOutputStream();
+		BackupManifest.write(stream, manifest);
+		byte[] data = stream.toByteArray();
+		String key = key(name) + MANIFEST_SUFFIX;
+		check(execute("PUT", key, Collections.emptyMap(), contentMD5(data, data.length), data, data.length),
+				"Store of '" + key + "'");
+	}
+
+	@Override
+	public BackupManifest readManifest(String name) throws IOException {
+		String key = key(name) + MANIFEST_SUFFIX;
+		HttpResponse<byte[]> response = execute("GET", key, Collections.emptyMap(), Collections.emptyMap(), null, 0);
+		if (response.statusCode() == 404) {
+			throw new IOException("Backup '" + name + "' not found in '" + this + "'");
+		}
+		check(response, "Read of '" + key + "'");
+		try {
+			return BackupManifest.read(new ByteArrayInputStream(response.body()));
+		} catch (RuntimeException e) {
+			throw new IOException("Backup manifest '" + key + "' is not valid", e);
+		}
+	}
+
+	@Override
+	public List<String> list() throws IOException {
+		List<String> names = new ArrayList<>();
+		String token = null;
+		do {
+			Map<String, String> query = new TreeMap<>();
+			query.put("list-type", "2");
+			query.put("prefix", prefix);
+			if (token != null) {
+				query.put("continuation-token", token);
+			}
+			HttpResponse<byte[]> response = execute("GET", null, query, Collections.emptyMap(), null, 0);
+			check(response, "List of '" + this + "'");
+			Document document = parse(response.body());
+			NodeList contents = document.getElementsByTagName("Contents");
+			for (int i = 0; i < contents.getLength(); i++) {
+				String key = text((Element) contents.item(i), "Key");
+				if (key != null && key.startsWith(prefix) && !key.endsWith(MANIFEST_SUFFIX)) {
+					names.add(key.substring(prefix.length()));
+				}
+			}
+			token = "true".equals(text(document.getDocumentElement(), "IsTruncated"))
+					? text(document.getDocumentElement(), "NextContinuationToken")
+					: null;
+		} while (token != null);
+		Collections.sort(names);
+		return names;
+	}
+
+	@Override
+	public boolean fetch(String name, Path file, IProgressMonitor listener) throws IOException {
+		final String key = key(name);
+		if (listener != null) {
+			listener.subTask("Fetching '" + name + "'");
+		}
+		// Get the length and ETag of the object.
+		Map<String, String> headers = new TreeMap<>();
+		headers.put("Range", "bytes=0-0");
+		HttpResponse<byte[]> probe = execute("GET", key, Collections.emptyMap(), headers, null, 0);
+		long length = 0;
+		if (probe.statusCode() == 200) {
+			// Ranges not supported, so the whole object was returned.
+			Files.write(file, probe.body());
+			return true;
+		} else if (probe.statusCode() != 416) {
+			check(probe, "Fetch of '" + key + "'");
+			Matcher range = CONTENT_RANGE.matcher(probe.headers().firstValue("Content-Range").orElse(""));
+			if (!range.matches()) {
+				throw new IOException("Fetch of '" + key + "' failed: Object length not returned");
+			}
+			length = Long.parseLong(range.group(1));
+		}
+		final String etag = probe.headers().firstValue("ETag").orElse(null);
+
+		final int parts = (int) ((length + partSize - 1) / partSize);
+		final AtomicBoolean cancelled = new AtomicBoolean();
+		final ExecutorService executor = createExecutor();
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING)) {
+			CompletionService<Long> service = new ExecutorCompletionService<>(executor);
+			for (int i = 0; i < parts; i++) {
+				final long start = (long) i * partSize;
+				final long end = Math.min(length, start + partSize) - 1;
+				service.submit(() -> download(key, etag, channel, start, end, cancelled));
+			}
+			for (int done = 0; done < parts;) {
+				if (listener != null && listener.isCanceled()) {
+					return false;
+				}
+				Future<Long> part = service.poll(POLL_INTERVAL, TimeUnit.MILLISECONDS);
+				if (part != null) {
+					get(part);
+					done++;
+				}
+			}
+			return true;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Fetch of '" + key + "' interrupted");
+		} finally {
+			cancelled.set(true);
+			executor.shutdownNow();
+		}
+	}
+
+	@Override
+	public void delete(String name) throws IOException {
+		String key = key(name);
+		check(execute("DELETE", key, Collections.emptyMap(), Collections.emptyMap(), null, 0),
+				"Delete of '" + key + "'");
+		HttpResponse<byte[]> response = execute("DELETE", key + MANIFEST_SUFFIX, Collections.emptyMap(),
+				Collections.emptyMap(), null, 0);
+		if (response.statusCode() != 404) {
+			check(response, "Delete of '" + key + MANIFEST_SUFFIX + "'");
+		}
+	}
+
+	/**
+	 * Fetch a range of the object, writing it to the same range of the file.
+	 * 
+	 * @param key The object key.
+	 * @param etag The ETag of the object. (may be NULL).
+	 * @param channel The file.
+	 * @param start The first byte of the range.
+	 * @param end The last byte of the range.
+	 * @param cancelled Flag indicating the fetch is cancelled.
+	 * @return The number of bytes written.
+	 * @throws IOException If fetching the range fails.
+	 */
+	private long download(String key, String etag, FileChannel channel, long start, long end,
+			AtomicBoolean cancelled) throws IOException {
+		Map<String, String> headers = new TreeMap<>();
+		headers.put("Range", "bytes=" + start + "-" + end);
+		if (etag != null) {
+			headers.put("If-Match", etag);
+		}
+		IOException failure = null;
+		for (int attempt = 0; attempt < ATTEMPTS && !cancelled.get(); attempt++) {
+			HttpResponse<InputStream> response = send(request("GET", key, Collections.emptyMap(), headers,
+					S3Signer.EMPTY_SHA256, BodyPublishers.noBody()), BodyHandlers.ofInputStream());
+			long position = start;
+			try (InputStream in = response.body()) {
+				if (response.statusCode() != 206) {
+					failure = failure(response.statusCode(), in.readAllBytes(), "Fetch of '" + key + "'");
+					if (response.statusCode() < 500) {
+						break;
+					}
+					continue;
+				}
+				byte[] buffer = new byte[BUFFER_SIZE];
+				int read;
+				while ((read = in.read(buffer)) != -1 && !cancelled.get()) {
+					if (position + read > end + 1) {
+						throw new IOException("Fetch of '" + key + "' returned more data than requested");
+					}
+					ByteBuffer data = ByteBuffer.wrap(buffer, 0, read);
+					while (data.hasRemaining()) {
+						position += channel.write(data, position);
+					}
+				}
+			} catch (InterruptedIOException e) {
+				throw e;
+			} catch (IOException e) {
+				failure = e;
+				continue;
+			}
+			if (cancelled.get() || position == end + 1) {
+				return position - start;
+			}
+			failure = new IOException("Fetch of '" + key + "' returned " + (position - start) + " of "
+					+ (end + 1 - start) + " bytes requested");
+		}
+		if (failure == null) {
+			failure = new InterruptedIOException("Fetch of '" + key + "' cancelled");
+		}
+		throw failure;
+	}
+
+	/**
+	 * Output stream that uploads each part of a backup as it is filled.
+	 * <p>
+	 * Backups smaller than a part are stored with a single request.
+	 */
+	private class MultipartOutput extends Output {
+
+		/**
+		 * The object key.
+		 */
+		private final String key;
+		/**
+		 * Permits to hold part buffers, limiting the memory held by parts being uploaded.
+		 */
+		private final Semaphore buffers = new Semaphore(threads + 1);
+		/**
+		 * The pool uploading parts.
+		 */
+		private final ExecutorService executor = createExecutor();
+		/**
+		 * The ETags of the parts uploaded, in order.
+		 */
+		private final List<Future<String>> etags = new ArrayList<>();
+		/**
+		 * The part being filled.
+		 */
+		private byte[] buffer;
+		/**
+		 * The number of bytes in the part being filled.
+		 */
+		private int count;
+		/**
+		 * The upload ID. (NULL until the first part is full).
+		 */
+		private String uploadId;
+		/**
+		 * Has the stream been closed?
+		 */
+		private boolean closed;
+
+		/**
+		 * Create a new stream.
+		 * 
+		 * @param key The object key.
+		 * @throws IOException If interrupted waiting for a buffer.
+		 */
+		MultipartOutput(String key) throws IOException {
+			this.key = key;
+			this.buffer = allocate();
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			write(new byte[] { (byte) b }, 0, 1);
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			Objects.checkFromIndexSize(off, len, b.length);
+			if (closed) {
+				throw new IOException("Stream closed");
+			}
+			while (len > 0) {
+				int n = Math.min(len, buffer.length - count);
+				System.arraycopy(b, off, buffer, count, n);
+				count += n;
+				off += n;
+				len -= n;
+				if (count == buffer.length) {
+					submit();
+				}
+			}
+		}
+
+		@Override
+		public void close() throws IOException {
+			if (closed) {
+				return;
+			}
+			closed = true;
+			boolean complete = false;
+			try {
+				if (uploadId == null) {
+					check(execute("PUT", key, Collections.emptyMap(), contentMD5(buffer, count), buffer, count),
+							"Upload of '" + key + "'");
+				} else {
+					if (count > 0) {
+						submit();
+					}
+					StringBuilder sb = new StringBuilder("<CompleteMultipartUpload>");
+					for (int i = 0; i < etags.size(); i++) {
+						sb.append("<Part><PartNumber>").append(i + 1).append("</PartNumber><ETag>")
+								.append(escape(get(etags.get(i)))).append("</ETag></Part>");
+					}
+					sb.append("</CompleteMultipartUpload>");
+					byte[] body = sb.toString().getBytes(StandardCharsets.UTF_8);
+					HttpResponse<byte[]> response = execute("POST", key, query("uploadId", uploadId),
+							Collections.emptyMap(), body, body.length);
+					check(response, "Upload of '" + key + "'");
+					// Failures may be reported after the response has started.
+					Document document = parse(response.body());
+					if ("Error".equals(document.getDocumentElement().getTagName())) {
+						throw new IOException("Upload of '" + key + "' failed: "
+								+ text(document.getDocumentElement(), "Code") + " - "
+								+ text(document.getDocumentElement(), "Message"));
+					}
+				}
+				complete = true;
+			} finally {
+				buffer = null;
+				executor.shutdownNow();
+				if (!complete) {
+					try {
+						discard();
+					} catch (IOException e) {
+						// Report the original failure.
+					}
+				}
+			}
+		}
+
+		@Override
+		public void abort() throws IOException {
+			if (closed) {
+				return;
+			}
+			closed = true;
+			buffer = null;
+			executor.shutdownNow();
+			discard();
+		}
+
+		/**
+		 * Start uploading the part being filled.
+		 * 
+		 * @throws IOException If starting the upload fails, or an earlier part failed.
+		 */
+		private void submit() throws IOException {
+			if (uploadId == null) {
+				HttpResponse<byte[]> response = execute("POST", key, query("uploads", ""), Collections.emptyMap(),
+						null, 0);
+				check(response, "Upload of '" + key + "'");
+				uploadId = text(parse(response.body()).getDocumentElement(), "UploadId");
+				if (uploadId == null) {
+					throw new IOException("Upload of '" + key + "' failed: No upload ID returned");
+				}
+			}
+			// Fail early if an earlier part failed.
+			for (Future<String> etag : etags) {
+				if (etag.isDone()) {
+					get(etag);
+				}
+			}
+			final byte[] data = buffer;
+			final int length = count;
+			final int number = etags.size() + 1;
+			final String id = uploadId;
+			etags.add(executor.submit(() -> {
+				try {
+					return uploadPart(key, id, number, data, length);
+				} finally {
+					buffers.release();
+				}
+			}));
+			buffer = closed ? null : allocate();
+			count = 0;
+		}
+
+		/**
+		 * Get a buffer for the next part, waiting for a part being uploaded if needed.
+		 * 
+		 * @return The buffer.
+		 * @throws IOException If interrupted.
+		 */
+		private byte[] allocate() throws IOException {
+			try {
+				buffers.acquire();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("Upload of '" + key + "' interrupted");
+			}
+			return new byte[partSize];
+		}
+
+		/**
+		 * Abort the multipart upload, if started.
+		 * 
+		 * @throws IOException If aborting the upload fails.
+		 */
+		private void discard() throws IOException {
+			if (uploadId != null) {
+				HttpResponse<byte[]> response = execute("DELETE", key, query("uploadId", uploadId),
+						Collections.emptyMap(), null, 0);
+				if (response.statusCode() != 404) {
+					check(response, "Abort of '" + key + "'");
+				}
+			}
+		}
+	}
+
+	/**
+	 * Upload a part of a multipart upload.
+	 * 
+	 * @param key The object key.
+	 * @param uploadId The upload ID.
+	 * @param number The part number.
+	 * @param data The part data.
+	 * @param length The length of the part.
+	 * @return The ETag of the part.
+	 * @throws IOException If uploading fails, or the ETag doesn't match the part.
+	 */
+	private String uploadPart(String key, String uploadId, int number, byte[] data, int length) throws IOException {
+		Map<String, String> query = query("uploadId", uploadId);
+		query.put("partNumber", Integer.toString(number));
+		Map<String, String> headers = contentMD5(data, length);
+		HttpResponse<byte[]> response = execute("PUT", key, query, headers, data, length);
+		check(response, "Upload of part " + number + " of '" + key + "'");
+		String etag = response.headers().firstValue("ETag").orElse(null);
+		if (etag == null) {
+			throw new IOException("Upload of part " + number + " of '" + key + "' failed: No ETag returned");
+		}
+		Matcher md5 = MD5_ETAG.matcher(etag);
+		String expected = Strings.toHexString(Base64.getDecoder().decode(headers.get("Content-MD5")));
+		if (md5.matches() && !md5.group(1).equalsIgnoreCase(expected)) {
+			throw new IOException("Upload of part " + number + " of '" + key + "' failed: ETag doesn't match");
+		}
+		return etag;
+	}
+
+	/**
+	 * Execute a request with a buffered response, retrying on connection or server failures.
+	 * 
+	 * @param method The HTTP method.
+	 * @param key The object key. (NULL for the bucket).
+	 * @param query The query parameters.
+	 * @param headers The headers.
+	 * @param body The body. (may be NULL).
+	 * @param length The length of the body.
+	 * @return The response.
+	 * @throws IOException If sending the request fails.
+	 */
+	private HttpResponse<byte[]> execute(String method, String key, Map<String, String> query,
+			Map<String, String> headers, byte[] body, int length) throws IOException {
+		String payloadHash = body == null ? S3Signer.EMPTY_SHA256 : S3Signer.sha256(body, 0, length);
+		IOException failure = null;
+		for (int attempt = 0; attempt < ATTEMPTS; attempt++) {
+			BodyPublisher publisher = body == null ? BodyPublishers.noBody()
+					: BodyPublishers.ofByteArray(body, 0, length);
+			try {
+				HttpResponse<byte[]> response = send(request(method, key, query, headers, payloadHash, publisher),
+						BodyHandlers.ofByteArray());
+				if (response.statusCode() < 500 || attempt == ATTEMPTS - 1) {
+					return response;
+				}
+			} catch (InterruptedIOException e) {
+				throw e;
+			} catch (IOException e) {
+				failure = e;
+			}
+		}
+		throw failure;
+	}
+
+	/**
+	 * Send a request.
+	 * 
+	 * @param <T> The type of response body.
+	 * @param request The request.
+	 * @param handler The response body handler.
+	 * @return The response.
+	 * @throws IOException If sending the request fails.
+	 */
+	private <T> HttpResponse<T> send(HttpRequest request, BodyHandler<T> handler) throws IOException {
+		try {
+			return client.send(request, handler);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Request to '" + request.uri() + "' interrupted");
+		}
+	}
+
+	/**
+	 * Create a signed request.
+	 * 
+	 * @param method The HTTP method.
+	 * @param key The object key. (NULL for the bucket).
+	 * @param query The query parameters.
+	 * @param headers The headers.
+	 * @param payloadHash The hex encoded SHA-256 of the body.
+	 * @param body The body.
+	 * @return The request.
+	 */
+	private HttpRequest request(String method, String key, Map<String, String> query, Map<String, String> headers,
+			String payloadHash, BodyPublisher body) {
+		String base = endpoint.getRawPath() == null ? "" : endpoint.getRawPath();
+		while (base.endsWith("/")) {
+			base = base.substring(0, base.length() - 1);
+		}
+		String path = base + "/" + S3Signer.encode(bucket, false)
+				+ (key == null ? "" : "/" + S3Signer.encode(key, true));
+		Map<String, String> sorted = new TreeMap<>();
+		for (Map.Entry<String, String> e : query.entrySet()) {
+			sorted.put(S3Signer.encode(e.getKey(), false), S3Signer.encode(e.getValue(), false));
+		}
+		StringBuilder canonicalQuery = new StringBuilder();
+		for (Map.Entry<String, String> e : sorted.entrySet()) {
+			if (canonicalQuery.length() > 0) {
+				canonicalQuery.append('&');
+			}
+			canonicalQuery.append(e.getKey()).append('=').append(e.getValue());
+		}
+		URI uri = URI.create(endpoint.getScheme() + "://" + endpoint.getRawAuthority() + path
+				+ (canonicalQuery.length() > 0 ? "?" + canonicalQuery : ""));
+		HttpRequest.Builder builder = HttpRequest.newBuilder(uri).method(method, body);
+		headers.forEach(builder::header);
+		signer.sign(method, host, path, canonicalQuery.toString(), headers, payloadHash, Instant.now())
+				.forEach(builder::header);
+		return builder.build();
+	}
+
+	/**
+	 * Get the object key of the backup.
+	 * 
+	 * @param name The name of the backup.
+	 * @return The object key.
+	 */
+	private String key(String name) {
+		Objects.requireNonNull(name, "Backup name not defined");
+		if (name.isEmpty() || name.endsWith(MANIFEST_SUFFIX)) {
+			throw new IllegalArgumentException("Backup name '" + name + "' is not valid");
+		}
+		return prefix + name;
+	}
+
+	/**
+	 * Create a pool for transferring parts.
+	 *
+	 * @return A new pool. (To be shut down by the caller).
+	 */
+	private ExecutorService createExecutor() {
+		final AtomicInteger count = new AtomicInteger();
+		ThreadFactory factory = r -> {
+			Thread t = new Thread(r, "Halimede S3-" + count.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		};
+		return new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(),
+				factory);
+	}
+
+	/**
+	 * Wait for a part transfer.
+	 * 
+	 * @param <T> The type of result.
+	 * @param task The part transfer.
+	 * @return The result of the transfer.
+	 * @throws IOException If the transfer failed, or interrupted.
+	 */
+	private static <T> T get(Future<T> task) throws IOException {
+		try {
+			return task.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Transfer interrupted");
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof IOException) {
+				throw (IOException) e.getCause();
+			}
+			throw new IOException(e.getCause());
+		}
+	}
+
+	/**
+	 * Check the response was successful.
+	 * 
+	 * @param response The response.
+	 * @param operation Description of the operation, for the failure message.
+	 * @throws IOException If the response was not successful.
+	 */
+	private static void check(HttpResponse<byte[]> response, String operation) throws IOException {
+		if (response.statusCode() / 100 != 2) {
+			throw failure(response.statusCode(), response.body(), operation);
+		}
+	}
+
+	/**
+	 * Create the exception for a failed response.
+	 * 
+	 * @param status The response status.
+	 * @param body The response body.
+	 * @param operation Description of the operation.
+	 * @return The exception.
+	 */
+	private static IOException failure(int status, byte[] body, String operation) {
+		String message = "HTTP " + status;
+		if (body != null && body.length > 0) {
+			try {
+				Element error = parse(body).getDocumentElement();
+				message += " " + text(error, "Code") + " - " + text(error, "Message");
+			} catch (IOException e) {
+				// Not an error document.
+			}
+		}
+		return new IOException(operation + " failed: " + message);
+	}
+
+	/**
+	 * Create the Content-MD5 header of the data.
+	 * 
+	 * @param data The data.
+	 * @param length The length of the data.
+	 * @return The header.
+	 */
+	private static Map<String, String> contentMD5(byte[] data, int length) {
+		try {
+			MessageDigest md5 = MessageDigest.getInstance("MD5");
+			md5.update(data, 0, length);
+			Map<String, String> headers = new TreeMap<>();
+			headers.put("Content-MD5", Base64.getEncoder().encodeToString(md5.digest()));
+			return headers;
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("MD5 not available", e);
+		}
+	}
+
+	/**
+	 * Create a (mutable) query with a single parameter.
+	 * 
+	 * @param name The parameter name.
+	 * @param value The parameter value.
+	 * @return The query.
+	 */
+	private static Map<String, String> query(String name, String value) {
+		Map<String, String> query = new TreeMap<>();
+		query.put(name, value);
+		return query;
+	}
+
+	/**
+	 * Parse an XML response.
+	 * 
+	 * @param body The response body.
+	 * @return The document.
+	 * @throws IOException If the body is not valid XML.
+	 */
+	private static Document parse(byte[] body) throws IOException {
+		try {
+			DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+			factory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
+			factory.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
+			factory.setExpandEntityReferences(false);
+			return factory.newDocumentBuilder().parse(new ByteArrayInputStream(body));
+		} catch (ParserConfigurationException | SAXException e) {
+			throw new IOException("Response is not valid: " + e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Get the text of the first descendant element with the given name.
+	 * 
+	 * @param element The element.
+	 * @param name The name of the descendant.
+	 * @return The text, or NULL if no such element.
+	 */
+	private static String text(Element element, String name) {
+		NodeList nodes = element.getElementsByTagName(name);
+		return nodes.getLength() > 0 ? nodes.item(0).getTextContent() : null;
+	}
+
+	/**
+	 * Escape text for inclusion in an XML element.
+	 * 
+	 * @param value The text.
+	 * @return The escaped text.
+	 */
+	private static String escape(String value) {
+		return value.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;");
+	}
+
+	@Override
+	public String toString() {
+		return endpoint + "/" + bucket + "/" + prefix;
+	}
+}
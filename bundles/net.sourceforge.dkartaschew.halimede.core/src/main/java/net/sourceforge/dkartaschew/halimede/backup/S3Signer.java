@@ -0,0 +1,221 @@
+/*-
+ * Halimede Certificate Manager Plugin for Eclipse 
+ * Copyright (C) 2017-2021 Darran Kartaschew 
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v2.0 which
+ * accompanies this distribution and is available at
+ *
+ * http://www.eclipse.org/legal/epl-v20.html
+ * 
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the Eclipse
+ * Public License, v. 2.0 are satisfied: GNU General Public License, version 2
+ * with the GNU Classpath Exception which is
+ * available at https://www.gnu.org/software/classpath/license.html.
+ */
+
+package net.sourceforge.dkartaschew.halimede.backup;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import net.sourceforge.dkartaschew.halimede.util.Strings;
+
+/**
+ * Signs requests to an S3 compatible object store using AWS Signature Version 4, with the payload hash sent in the
+ * x-amz-content-sha256 header.
+ */
+final class S3Signer {
+
+	/**
+	 * The signing algorithm.
+	 */
+	private static final String ALGORITHM = "AWS4-HMAC-SHA256";
+	/**
+	 * The service name.
+	 */
+	private static final String SERVICE = "s3";
+	/**
+	 * The SHA-256 of an empty payload.
+	 */
+	static final String EMPTY_SHA256 = "e3b0c44298fc1c149afbf4c8996fb92427ae41e4649b934ca495991b7852b855";
+	/**
+	 * Header holding the request time.
+	 */
+	static final String DATE = "x-amz-date";
+	/**
+	 * Header holding the payload hash.
+	 */
+	static final String CONTENT_SHA256 = "x-amz-content-sha256";
+	/**
+	 * Header holding the signature.
+	 */
+	static final String AUTHORIZATION = "Authorization";
+
+	/**
+	 * Format of the request time.
+	 */
+	private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss'Z'",
+			Locale.ROOT).withZone(ZoneOffset.UTC);
+	/**
+	 * Format of the date of the credential scope.
+	 */
+	private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd", Locale.ROOT)
+			.withZone(ZoneOffset.UTC);
+
+	/**
+	 * The region.
+	 */
+	private final String region;
+	/**
+	 * The access key ID.
+	 */
+	private final String accessKey;
+	/**
+	 * The secret access key.
+	 */
+	private final String secretKey;
+
+	/**
+	 * Create a new signer.
+	 * 
+	 * @param region The region.
+	 * @param accessKey The access key ID.
+	 * @param secretKey The secret access key.
+	 */
+	S3Signer(String region, String accessKey, String secretKey) {
+		this.region = Objects.requireNonNull(region, "Region not defined");
+		this.accessKey = Objects.requireNonNull(accessKey, "Access key not defined");
+		this.secretKey = Objects.requireNonNull(secretKey, "Secret key not defined");
+	}
+
+	/**
+	 * Sign a request.
+	 * 
+	 * @param method The HTTP method.
+	 * @param host The value of the Host header.
+	 * @param path The URI encoded path.
+	 * @param query The canonical (sorted and URI encoded) query string.
+	 * @param headers Other headers sent, all of which are signed.
+	 * @param payloadHash The hex encoded SHA-256 of the payload.
+	 * @param time The request time.
+	 * @return The headers to add to the request. (Time, payload hash and authorization).
+	 */
+	Map<String, String> sign(String method, String host, String path, String query, Map<String, String> headers,
+			String payloadHash, Instant time) {
+		String timestamp = TIME_FORMAT.format(time);
+		String scope = DATE_FORMAT.format(time) + "/" + region + "/" + SERVICE + "/aws4_request";
+
+		Map<String, String> signed = new TreeMap<>();
+		for (Map.Entry<String, String> header : headers.entrySet()) {
+			signed.put(header.getKey().toLowerCase(Locale.ROOT), header.getValue().trim());
+		}
+		signed.put("host", host);
+		signed.put(DATE, timestamp);
+		signed.put(CONTENT_SHA256, payloadHash);
+
+		StringBuilder canonical = new StringBuilder();
+		canonical.append(method).append('\n').append(path).append('\n').append(query).append('\n');
+		for (Map.Entry<String, String> header : signed.entrySet()) {
+			canonical.append(header.getKey()).append(':').append(header.getValue()).append('\n');
+		}
+		String signedHeaders = String.join(";", signed.keySet());
+		canonical.append('\n').append(signedHeaders).append('\n').append(payloadHash);
+
+		String toSign = ALGORITHM + "\n" + timestamp + "\n" + scope + "\n"
+				+ sha256(canonical.toString().getBytes(StandardCharsets.UTF_8));
+		try {
+			byte[] key = hmac(("AWS4" + secretKey).getBytes(StandardCharsets.UTF_8), DATE_FORMAT.format(time));
+			key = hmac(key, region);
+			key = hmac(key, SERVICE);
+			key = hmac(key, "aws4_request");
+			String signature = Strings.toHexString(hmac(key, toSign));
+
+			Map<String, String> result = new TreeMap<>();
+			result.put(DATE, timestamp);
+			result.put(CONTENT_SHA256, payloadHash);
+			result.put(AUTHORIZATION, ALGORITHM + " Credential=" + accessKey + "/" + scope + ", SignedHeaders="
+					+ signedHeaders + ", Signature=" + signature);
+			return result;
+		} catch (GeneralSecurityException e) {
+			throw new IllegalStateException("HMAC-SHA256 not available", e);
+		}
+	}
+
+	/**
+	 * URI encode the value, as required for signing.
+	 * 
+	 * @param value The value.
+	 * @param path TRUE if encoding a path, leaving '/' unencoded.
+	 * @return The encoded value.
+	 */
+	static String encode(String value, boolean path) {
+		StringBuilder sb = new StringBuilder();
+		for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+			char c = (char) (b & 0xff);
+			if ((c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z') || (c >= '0' && c <= '9') || c == '-' || c == '_'
+					|| c == '.' || c == '~' || (path && c == '/')) {
+				sb.append(c);
+			} else {
+				sb.append('%').append(Character.toUpperCase(Character.forDigit(c >> 4, 16)))
+						.append(Character.toUpperCase(Character.forDigit(c & 0xf, 16)));
+			}
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Get the hex encoded SHA-256 of the data.
+	 * 
+	 * @param data The data.
+	 * @return The hex encoded digest.
+	 */
+	static String sha256(byte[] data) {
+		return sha256(data, 0, data.length);
+	}
+
+	/**
+	 * Get the hex encoded SHA-256 of the data.
+	 * 
+	 * @param data The data.
+	 * @param offset The offset of the data.
+	 * @param length The length of the data.
+	 * @return The hex encoded digest.
+	 */
+	static String sha256(byte[] data, int offset, int length) {
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			digest.update(data, offset, length);
+			return Strings.toHexString(digest.digest());
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("SHA-256 not available", e);
+		}
+	}
+
+	/**
+	 * Get the HMAC-SHA256 of the value.
+	 * 
+	 * @param key The key.
+	 * @param value The value.
+	 * @return The HMAC.
+	 * @throws GeneralSecurityException If HMAC-SHA256 is not available.
+	 */
+	private static byte[] hmac(byte[] key, String value) throws GeneralSecurityException {
+		Mac mac = Mac.getInstance("HmacSHA256");
+		mac.init(new SecretKeySpec(key, "HmacSHA256"));
+		return mac.doFinal(value.getBytes(StandardCharsets.UTF_8));
+	}
+}
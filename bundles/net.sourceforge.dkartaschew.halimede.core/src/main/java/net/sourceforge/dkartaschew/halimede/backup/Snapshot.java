@@ -0,0 +1,97 @@
+/*-
+ * Halimede Certificate Manager Plugin for Eclipse 
+ * Copyright (C) 2017-2021 Darran Kartaschew 
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v2.0 which
+ * accompanies this distribution and is available at
+ *
+ * http://www.eclipse.org/legal/epl-v20.html
+ * 
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the Eclipse
+ * Public License, v. 2.0 are satisfied: GNU General Public License, version 2
+ * with the GNU Classpath Exception which is
+ * available at https://www.gnu.org/software/classpath/license.html.
+ */
+
+package net.sourceforge.dkartaschew.halimede.backup;
+
+import java.nio.file.Path;
+import java.time.ZonedDateTime;
+import java.util.Objects;
+
+/**
+ * A point-in-time snapshot of the datastore of a Certificate Authority, held alongside the datastore.
+ */
+public class Snapshot implements Comparable<Snapshot> {
+
+	/**
+	 * The snapshot ID.
+	 */
+	private final String id;
+	/**
+	 * The location of the snapshot.
+	 */
+	private final Path location;
+	/**
+	 * The time the snapshot was taken.
+	 */
+	private final ZonedDateTime created;
+
+	/**
+	 * Create a new snapshot.
+	 * 
+	 * @param id The snapshot ID.
+	 * @param location The location of the snapshot.
+	 * @param created The time the snapshot was taken.
+	 */
+	public Snapshot(String id, Path location, ZonedDateTime created) {
+		this.id = Objects.requireNonNull(id, "ID is not valid");
+		this.location = Objects.requireNonNull(location, "Location is not valid");
+		this.created = Objects.requireNonNull(created, "Creation time is not valid");
+	}
+
+	public String getId() {
+		return id;
+	}
+
+	public Path getLocation() {
+		return location;
+	}
+
+	public ZonedDateTime getCreated() {
+		return created;
+	}
+
+	/**
+	 * Order by creation time, most recent first.
+	 */
+	@Override
+	public int compareTo(Snapshot o) {
+		int res = o.created.compareTo(created);
+		return res != 0 ? res : o.id.compareTo(id);
+	}
+
+	@Override
+	public int hashCode() {
+		return location.hashCode();
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (obj == null)
+			return false;
+		if (getClass() != obj.getClass())
+			return false;
+		Snapshot other = (Snapshot) obj;
+		return location.equals(other.location);
+	}
+
+	@Override
+	public String toString() {
+		return "Snapshot [id=" + id + ", location=" + location + ", created=" + created + "]";
+	}
+}
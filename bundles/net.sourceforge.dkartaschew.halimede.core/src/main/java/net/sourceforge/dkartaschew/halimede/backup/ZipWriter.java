@@ -0,0 +1,346 @@
+/*-
+ * Halimede Certificate Manager Plugin for Eclipse 
+ * Copyright (C) 2017-2021 Darran Kartaschew 
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v2.0 which
+ * accompanies this distribution and is available at
+ *
+ * http://www.eclipse.org/legal/epl-v20.html
+ * 
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the Eclipse
+ * Public License, v. 2.0 are satisfied: GNU General Public License, version 2
+ * with the GNU Classpath Exception which is
+ * available at https://www.gnu.org/software/classpath/license.html.
+ */
+
+package net.sourceforge.dkartaschew.halimede.backup;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Writer of zip containers from entries that have already been compressed (see {@link DeflatedEntry}), so that
+ * entries may be compressed in parallel and then written in order.
+ * <p>
+ * Entries are DEFLATE compressed or stored, with UTF-8 names, and ZIP64 extensions are used where sizes, offsets or
+ * the number of entries exceed the limits of the original format. The containers are readable by
+ * {@link java.util.zip.ZipFile} and {@link java.util.zip.ZipInputStream}.
+ */
+public class ZipWriter implements Closeable {
+
+	private static final int LOCAL_HEADER = 0x04034b50;
+	private static final int CENTRAL_HEADER = 0x02014b50;
+	private static final int END_OF_CENTRAL_DIRECTORY = 0x06054b50;
+	private static final int ZIP64_END_OF_CENTRAL_DIRECTORY = 0x06064b50;
+	private static final int ZIP64_LOCATOR = 0x07064b50;
+	private static final int ZIP64_EXTRA = 0x0001;
+	private static final long ZIP64_MAGIC = 0xFFFFFFFFL;
+	private static final int ZIP64_MAGIC_COUNT = 0xFFFF;
+	private static final int VERSION = 20;
+	private static final int VERSION_ZIP64 = 45;
+	private static final int FLAG_UTF8 = 0x0800;
+	private static final int MAX_COMMENT = 0xFFFF;
+
+	/**
+	 * Central directory record of a written entry.
+	 */
+	private static final class Record {
+		private final byte[] name;
+		private final int method;
+		private final long time;
+		private final long crc;
+		private final long size;
+		private final long compressedSize;
+		private final long offset;
+
+		Record(byte[] name, int method, long time, long crc, long size, long compressedSize, long offset) {
+			this.name = name;
+			this.method = method;
+			this.time = time;
+			this.crc = crc;
+			this.size = size;
+			this.compressedSize = compressedSize;
+			this.offset = offset;
+		}
+	}
+
+	/**
+	 * The underlying stream.
+	 */
+	private final OutputStream out;
+	/**
+	 * The number of bytes written.
+	 */
+	private long offset;
+	/**
+	 * The entries written.
+	 */
+	private final List<Record> records = new ArrayList<>();
+	/**
+	 * The container comment.
+	 */
+	private byte[] comment = new byte[0];
+	/**
+	 * Has the container been completed?
+	 */
+	private boolean closed;
+
+	/**
+	 * Create a new writer.
+	 * 
+	 * @param out The stream to write the container to. (Closed when the writer is closed).
+	 */
+	public ZipWriter(OutputStream out) {
+		this.out = Objects.requireNonNull(out, "Output is not valid");
+	}
+
+	/**
+	 * Set the container comment.
+	 * 
+	 * @param comment The comment. (May be NULL).
+	 * @throws IllegalArgumentException If the comment is too long.
+	 */
+	public void setComment(String comment) {
+		byte[] c = comment == null ? new byte[0] : comment.getBytes(StandardCharsets.UTF_8);
+		if (c.length > MAX_COMMENT) {
+			throw new IllegalArgumentException("Comment is too long");
+		}
+		this.comment = c;
+	}
+
+	/**
+	 * Get the number of bytes written.
+	 * 
+	 * @return The number of bytes written.
+	 */
+	public long getBytesWritten() {
+		return offset;
+	}
+
+	/**
+	 * Write the entry.
+	 * 
+	 * @param entry The compressed entry.
+	 * @param time The modification time of the entry.
+	 * @throws IOException If writing fails.
+	 */
+	public void write(DeflatedEntry entry, ZonedDateTime time) throws IOException {
+		Objects.requireNonNull(entry, "Entry is not valid");
+		if (closed) {
+			throw new IOException("Container is closed");
+		}
+		byte[] name = entry.getName().getBytes(StandardCharsets.UTF_8);
+		if (name.length > ZIP64_MAGIC_COUNT) {
+			throw new IOException("Entry name is too long");
+		}
+		Record record = new Record(name, entry.getMethod().getID(), dosTime(time), entry.getCrc(), entry.getSize(),
+				entry.getCompressedSize(), offset);
+		boolean zip64 = record.size >= ZIP64_MAGIC || record.compressedSize >= ZIP64_MAGIC;
+		ByteBuffer b = buffer(30 + name.length + (zip64 ? 20 : 0));
+		b.putInt(LOCAL_HEADER);
+		b.putShort((short) (zip64 ? VERSION_ZIP64 : VERSION));
+		b.putShort((short) FLAG_UTF8);
+		b.putShort((short) record.method);
+		b.putInt((int) record.time);
+		b.putInt((int) record.crc);
+		b.putInt((int) (zip64 ? ZIP64_MAGIC : record.compressedSize));
+		b.putInt((int) (zip64 ? ZIP64_MAGIC : record.size));
+		b.putShort((short) name.length);
+		b.putShort((short) (zip64 ? 20 : 0));
+		b.put(name);
+		if (zip64) {
+			b.putShort((short) ZIP64_EXTRA);
+			b.putShort((short) 16);
+			b.putLong(record.size);
+			b.putLong(record.compressedSize);
+		}
+		write(b);
+		CountingStream counter = new CountingStream(out);
+		entry.writeTo(counter);
+		if (counter.count != record.compressedSize) {
+			throw new IOException("Entry '" + entry.getName() + "' size changed while writing");
+		}
+		offset += counter.count;
+		records.add(record);
+	}
+
+	/**
+	 * Write the central directory, and close the underlying stream.
+	 */
+	@Override
+	public void close() throws IOException {
+		if (closed) {
+			return;
+		}
+		closed = true;
+		try {
+			long start = offset;
+			for (Record r : records) {
+				writeCentralHeader(r);
+			}
+			writeEnd(start, offset - start);
+			out.flush();
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * Write the central directory header of an entry.
+	 * 
+	 * @param r The entry.
+	 * @throws IOException If writing fails.
+	 */
+	private void writeCentralHeader(Record r) throws IOException {
+		boolean size64 = r.size >= ZIP64_MAGIC;
+		boolean compressed64 = r.compressedSize >= ZIP64_MAGIC;
+		boolean offset64 = r.offset >= ZIP64_MAGIC;
+		int extra = (size64 ? 8 : 0) + (compressed64 ? 8 : 0) + (offset64 ? 8 : 0);
+		boolean zip64 = extra != 0;
+		ByteBuffer b = buffer(46 + r.name.length + (zip64 ? extra + 4 : 0));
+		b.putInt(CENTRAL_HEADER);
+		b.putShort((short) (zip64 ? VERSION_ZIP64 : VERSION));
+		b.putShort((short) (zip64 ? VERSION_ZIP64 : VERSION));
+		b.putShort((short) FLAG_UTF8);
+		b.putShort((short) r.method);
+		b.putInt((int) r.time);
+		b.putInt((int) r.crc);
+		b.putInt((int) (compressed64 ? ZIP64_MAGIC : r.compressedSize));
+		b.putInt((int) (size64 ? ZIP64_MAGIC : r.size));
+		b.putShort((short) r.name.length);
+		b.putShort((short) (zip64 ? extra + 4 : 0));
+		b.putShort((short) 0); // comment
+		b.putShort((short) 0); // disk
+		b.putShort((short) 0); // internal attributes
+		b.putInt(0); // external attributes
+		b.putInt((int) (offset64 ? ZIP64_MAGIC : r.offset));
+		b.put(r.name);
+		if (zip64) {
+			b.putShort((short) ZIP64_EXTRA);
+			b.putShort((short) extra);
+			if (size64) {
+				b.putLong(r.size);
+			}
+			if (compressed64) {
+				b.putLong(r.compressedSize);
+			}
+			if (offset64) {
+				b.putLong(r.offset);
+			}
+		}
+		write(b);
+	}
+
+	/**
+	 * Write the end of central directory record, preceded by the ZIP64 record and locator if needed.
+	 * 
+	 * @param start The offset of the central directory.
+	 * @param length The length of the central directory.
+	 * @throws IOException If writing fails.
+	 */
+	private void writeEnd(long start, long length) throws IOException {
+		int count = records.size();
+		boolean zip64 = count >= ZIP64_MAGIC_COUNT || start >= ZIP64_MAGIC || length >= ZIP64_MAGIC;
+		if (zip64) {
+			long end64 = offset;
+			ByteBuffer b = buffer(56 + 20);
+			b.putInt(ZIP64_END_OF_CENTRAL_DIRECTORY);
+			b.putLong(44);
+			b.putShort((short) VERSION_ZIP64);
+			b.putShort((short) VERSION_ZIP64);
+			b.putInt(0); // disk
+			b.putInt(0); // disk with central directory
+			b.putLong(count);
+			b.putLong(count);
+			b.putLong(length);
+			b.putLong(start);
+			b.putInt(ZIP64_LOCATOR);
+			b.putInt(0); // disk with ZIP64 end of central directory
+			b.putLong(end64);
+			b.putInt(1); // number of disks
+			write(b);
+		}
+		ByteBuffer b = buffer(22 + comment.length);
+		b.putInt(END_OF_CENTRAL_DIRECTORY);
+		b.putShort((short) 0); // disk
+		b.putShort((short) 0); // disk with central directory
+		b.putShort((short) Math.min(count, ZIP64_MAGIC_COUNT));
+		b.putShort((short) Math.min(count, ZIP64_MAGIC_COUNT));
+		b.putInt((int) Math.min(length, ZIP64_MAGIC));
+		b.putInt((int) Math.min(start, ZIP64_MAGIC));
+		b.putShort((short) comment.length);
+		b.put(comment);
+		write(b);
+	}
+
+	/**
+	 * Create a little endian buffer.
+	 * 
+	 * @param size The size of the buffer.
+	 * @return A new buffer.
+	 */
+	private static ByteBuffer buffer(int size) {
+		return ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+	}
+
+	/**
+	 * Write the contents of the buffer.
+	 * 
+	 * @param b The (filled) buffer.
+	 * @throws IOException If writing fails.
+	 */
+	private void write(ByteBuffer b) throws IOException {
+		out.write(b.array(), 0, b.position());
+		offset += b.position();
+	}
+
+	/**
+	 * Convert the time to MS-DOS date and time format.
+	 * 
+	 * @param time The time. (NULL for the current time).
+	 * @return The date (high 16 bits) and time (low 16 bits).
+	 */
+	static long dosTime(ZonedDateTime time) {
+		LocalDateTime t = time == null ? LocalDateTime.now() : time.toLocalDateTime();
+		if (t.getYear() < 1980) {
+			return (1 << 21) | (1 << 16);
+		}
+		return ((long) (t.getYear() - 1980) << 25) | (t.getMonthValue() << 21) | (t.getDayOfMonth() << 16)
+				| (t.getHour() << 11) | (t.getMinute() << 5) | (t.getSecond() >> 1);
+	}
+
+	/**
+	 * Stream counting the bytes written through it. (Not closing the underlying stream).
+	 */
+	private static final class CountingStream extends OutputStream {
+		private final OutputStream out;
+		private long count;
+
+		CountingStream(OutputStream out) {
+			this.out = out;
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			out.write(b);
+			count++;
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			out.write(b, off, len);
+			count += len;
+		}
+	}
+}
@@ -22,14 +22,9 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.math.BigInteger;
-import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.Paths;
 import java.security.cert.X509CRL;
-import java.time.ZonedDateTime;
 import java.util.Comparator;
-import java.util.Iterator;
-import java.util.Properties;
 
 import org.bouncycastle.asn1.x509.CRLNumber;
 import org.bouncycastle.asn1.x509.Extension;
@@ -51,10 +46,22 @@ public class CRLProperties implements Comparable<CRLProperties>, Comparator<CRLP
 	 * @throws IOException If reading the file failed.
 	 */
 	public static CRLProperties create(CertificateAuthority ca, Path file) throws IOException {
-		CRLProperties p = new CRLProperties(ca);
 		try (FileInputStream in = new FileInputStream(file.toFile())) {
-			p.load(in);
+			return load(ca, in);
 		}
+	}
+
+	/**
+	 * Create and populate a CRLProperties instance.
+	 * 
+	 * @param ca The Certificate Authorithy
+	 * @param stream The stream to load from
+	 * @return A CRLProperties instance
+	 * @throws IOException If reading the stream failed.
+	 */
+	public static CRLProperties load(CertificateAuthority ca, InputStream stream) throws IOException {
+		CRLProperties p = new CRLProperties(ca);
+		p.load(stream);
 		return p;
 	}
 
@@ -106,10 +113,18 @@ public class CRLProperties implements Comparable<CRLProperties>, Comparator<CRLP
 		comments
 	}
 
+	/**
+	 * The layout of the properties store.
+	 */
+	private final static PropertyRecord.Schema<Key> SCHEMA = new PropertyRecord.Schema<>(Key.class)//
+			.names(Key.issuer)//
+			.dates(Key.issueDate, Key.nextExpectedDate)//
+			.integers(Key.crlSerialNumber);
+
 	/**
 	 * The properties store
 	 */
-	private final Properties properties;
+	private final PropertyRecord<Key> properties;
 
 	/**
 	 * Create an empty properties store.
@@ -118,7 +133,7 @@ public class CRLProperties implements Comparable<CRLProperties>, Comparator<CRLP
 	 */
 	public CRLProperties(CertificateAuthority ca) {
 		this.ca = ca;
-		properties = new Properties();
+		properties = new PropertyRecord<>(SCHEMA, ca != null ? ca::intern : null);
 	}
 
 	/**
@@ -130,7 +145,7 @@ public class CRLProperties implements Comparable<CRLProperties>, Comparator<CRLP
 	public CRLProperties(CertificateAuthority ca, X509CRL crl) {
 		this.ca = ca;
 		this.crl = crl;
-		properties = new Properties();
+		properties = new PropertyRecord<>(SCHEMA, ca != null ? ca::intern : null);
 		
 		if (ca == null) {
 			setProperty(Key.issuer, crl.getIssuerX500Principal().getName());
@@ -160,7 +175,7 @@ public class CRLProperties implements Comparable<CRLProperties>, Comparator<CRLP
 	 * @return The set value, or NULL if not present/set.
 	 */
 	public String getProperty(Key key) {
-		return properties.getProperty(key.name());
+		return properties.get(key);
 	}
 
 	/**
@@ -171,12 +186,26 @@ public class CRLProperties implements Comparable<CRLProperties>, Comparator<CRLP
 	 * @return The prior value.
 	 */
 	public Object setProperty(Key key, String value) {
-		if(value == null) {
-			Object oldValue = getProperty(key);
-			properties.remove(key.name());
-			return oldValue;
-		}
-		return properties.setProperty(key.name(), value);
+		return properties.set(key, value);
+	}
+
+	/**
+	 * Get the given date value, without parsing.
+	 * 
+	 * @param key The date key to enquire (issueDate or nextExpectedDate)
+	 * @return The date as epoch milliseconds, or {@link PropertyRecord#NO_DATE} if not present/set.
+	 */
+	public long getDate(Key key) {
+		return properties.getDate(key);
+	}
+
+	/**
+	 * Get the CRL serial number.
+	 * 
+	 * @return The CRL serial number, or NULL if not present/set.
+	 */
+	public BigInteger getSerialNumber() {
+		return properties.getInteger(Key.crlSerialNumber);
 	}
 
 	/**
@@ -187,7 +216,6 @@ public class CRLProperties implements Comparable<CRLProperties>, Comparator<CRLP
 	 */
 	public synchronized void load(InputStream stream) throws IOException {
 		clearCRL();
-		properties.clear();
 		properties.load(stream);
 	}
 
@@ -230,31 +258,11 @@ public class CRLProperties implements Comparable<CRLProperties>, Comparator<CRLP
 		}
 		// Locate and load. (The value store in the property field is the plain filename, not the full path).
 		if (getProperty(Key.crlFilename) != null) {
-			Path filename = findFile(Paths.get(getProperty(Key.crlFilename)));
-			crl = X509CRLEncoder.open(filename);
+			crl = X509CRLEncoder.decode(ca.readArtefact(getProperty(Key.crlFilename)));
 		}
 		return crl;
 	}
 
-	/**
-	 * Attempt to locate the file within the CAs domain.
-	 * 
-	 * @param filename The filename of the X509CRL file.
-	 * @return The absolute filename for the X509CRL file.
-	 */
-	private Path findFile(Path filename) {
-		// Locate the PKCS12 file. (What is stored here is relative not absolute).
-		Iterator<Path> searchPaths = ca.getSearchPaths();
-		while (searchPaths.hasNext()) {
-			Path file = searchPaths.next().resolve(filename);
-			if (Files.exists(file) && Files.isReadable(file) && Files.isRegularFile(file)) {
-				return file;
-			}
-		}
-		// Not found? return the input.
-		return filename;
-	}
-
 	/**
 	 * Get the CA this certificate is tied to.
 	 * 
@@ -333,25 +341,26 @@ public class CRLProperties implements Comparable<CRLProperties>, Comparator<CRLP
 			return -1;
 		}
 		int res = 0;
-		if (o.getProperty(Key.crlSerialNumber) != null && this.getProperty(Key.crlSerialNumber) != null) {
-			res = new BigInteger(this.getProperty(Key.crlSerialNumber))
-					.compareTo(new BigInteger(o.getProperty(Key.crlSerialNumber)));
+		BigInteger tN = this.getSerialNumber();
+		BigInteger oN = o.getSerialNumber();
+		if (tN != null && oN != null) {
+			res = tN.compareTo(oN);
 			if (res != 0) {
 				return res;
 			}
 		}
-		if (o.getProperty(Key.issueDate) != null && this.getProperty(Key.issueDate) != null) {
-			ZonedDateTime tS = DateTimeUtil.toZonedDateTime(this.getProperty(Key.issueDate));
-			ZonedDateTime oS = DateTimeUtil.toZonedDateTime(o.getProperty(Key.issueDate));
-			res = tS.compareTo(oS);
+		long tS = this.getDate(Key.issueDate);
+		long oS = o.getDate(Key.issueDate);
+		if (tS != PropertyRecord.NO_DATE && oS != PropertyRecord.NO_DATE) {
+			res = Long.compare(tS, oS);
 			if (res != 0) {
 				return res;
 			}
 		}
-		if (o.getProperty(Key.nextExpectedDate) != null && this.getProperty(Key.nextExpectedDate) != null) {
-			ZonedDateTime tS = DateTimeUtil.toZonedDateTime(this.getProperty(Key.nextExpectedDate));
-			ZonedDateTime oS = DateTimeUtil.toZonedDateTime(o.getProperty(Key.nextExpectedDate));
-			res = tS.compareTo(oS);
+		tS = this.getDate(Key.nextExpectedDate);
+		oS = o.getDate(Key.nextExpectedDate);
+		if (tS != PropertyRecord.NO_DATE && oS != PropertyRecord.NO_DATE) {
+			res = Long.compare(tS, oS);
 		}
 		return res;
 	}
@@ -19,12 +19,14 @@ package net.sourceforge.dkartaschew.halimede.data;
 
 import java.beans.PropertyChangeListener;
 import java.beans.PropertyChangeSupport;
-import java.io.FileOutputStream;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.math.BigInteger;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
-import java.nio.file.StandardCopyOption;
 import java.security.InvalidAlgorithmParameterException;
 import java.security.KeyPair;
 import java.security.KeyStoreException;
@@ -37,9 +39,11 @@ import java.security.cert.CertificateException;
 import java.security.cert.X509CRL;
 import java.security.cert.X509Certificate;
 import java.time.ZonedDateTime;
+import java.lang.ref.WeakReference;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashSet;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -47,8 +51,12 @@ import java.util.NoSuchElementException;
 import java.util.Objects;
 import java.util.Set;
 import java.util.UUID;
+import java.util.WeakHashMap;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
 import java.util.logging.Level;
 
 import org.bouncycastle.asn1.x500.X500Name;
@@ -58,11 +66,18 @@ import org.bouncycastle.cert.CertIOException;
 import org.bouncycastle.cert.X509CRLHolder;
 import org.bouncycastle.openssl.jcajce.JceOpenSSLPKCS8EncryptorBuilder;
 import org.bouncycastle.operator.OperatorCreationException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
+import org.eclipse.core.runtime.SubMonitor;
 
+import net.sourceforge.dkartaschew.halimede.backup.Snapshot;
 import net.sourceforge.dkartaschew.halimede.data.IssuedCertificateProperties.Key;
 import net.sourceforge.dkartaschew.halimede.data.impl.CertificateRequest;
 import net.sourceforge.dkartaschew.halimede.data.impl.CertificateRequestPKCS10;
 import net.sourceforge.dkartaschew.halimede.data.impl.IssuedCertificate;
+import net.sourceforge.dkartaschew.halimede.data.store.DatastoreScanner;
+import net.sourceforge.dkartaschew.halimede.data.store.FileSystemDatastore;
+import net.sourceforge.dkartaschew.halimede.data.store.IDatastore;
 import net.sourceforge.dkartaschew.halimede.enumeration.EncodingType;
 import net.sourceforge.dkartaschew.halimede.enumeration.PKCS12Cipher;
 import net.sourceforge.dkartaschew.halimede.enumeration.PKCS8Cipher;
@@ -72,6 +87,7 @@ import net.sourceforge.dkartaschew.halimede.exceptions.DatastoreLockedException;
 import net.sourceforge.dkartaschew.halimede.exceptions.InvalidPasswordException;
 import net.sourceforge.dkartaschew.halimede.log.IActivityLogger;
 import net.sourceforge.dkartaschew.halimede.util.DateTimeUtil;
+import net.sourceforge.dkartaschew.halimede.util.SnapshotUtil;
 
 /**
  * A basic Certificate Authority
@@ -102,10 +118,14 @@ public class CertificateAuthority {
 	 * The default folder name where logs are stored.
 	 */
 	public final static String LOG_PATH = "Log";
+	/**
+	 * The default folder name where the issuance ledger is stored.
+	 */
+	public final static String LEDGER_PATH = "Ledger";
 	/**
 	 * The default filename for the Issuers Certificate.
 	 */
-	private final static String CA_PKCS12_FILENAME = "ca.p12";
+	public final static String CA_PKCS12_FILENAME = "ca.p12";
 	/**
 	 * The emitted property for change of templates.
 	 */
@@ -150,19 +170,50 @@ public class CertificateAuthority {
 	 * The emitted property for change in enable log.
 	 */
 	public static final String PROPERTY_ENABLE_LOG = "enableLog";
+	/**
+	 * The emitted property for change of the issuer certificate and key.
+	 */
+	public static final String PROPERTY_ISSUER = "issuer";
+	/**
+	 * The emitted property for change in whether the contents are loaded.
+	 */
+	public static final String PROPERTY_LOADED = "loaded";
+
+	/**
+	 * System Properties key (send full collection change events by default)
+	 */
+	public static final String LEGACY_EVENTS = "net.sourceforge.dkartaschew.halimede.events.legacy";
 
 	/**
 	 * The base path for the CA
 	 */
 	private final Path basePath;
 	/**
-	 * The issuer certificate information.
+	 * The backing datastore for the CA.
+	 */
+	private final IDatastore datastore;
+	/**
+	 * The issuer certificate information. (NULL if locked). Changed while holding the exclusive store lock, and read
+	 * once per operation, see {@link #getIssuer()}.
 	 */
-	private IIssuedCertificate issuerInformation;
+	private volatile IIssuedCertificate issuerInformation;
 	/**
 	 * CA Setting holder.
+	 * <p>
+	 * This is treated as an immutable snapshot. Updates are made to a copy (under the settings lock) which is
+	 * persisted and then published, so reads never block.
+	 */
+	private volatile CertificateAuthoritySettings settings;
+	/**
+	 * Lock serialising updates to the settings.
 	 */
-	private CertificateAuthoritySettings settings;
+	private final Lock settingsLock = new ReentrantLock();
+	/**
+	 * Lock guarding the datastore contents. Operations that modify the datastore hold the (shared) read lock, and so
+	 * may run concurrently, while {@link #refresh(IProgressMonitor)} holds the (exclusive) write lock so a rescan
+	 * never observes a partially applied modification. Reads of the collections take no lock.
+	 */
+	private final ReentrantReadWriteLock storeLock = new ReentrantReadWriteLock();
 
 	/**
 	 * Property Support helper.
@@ -193,10 +244,35 @@ public class CertificateAuthority {
 	 * Search paths.
 	 */
 	private final List<Path> searchPaths = new ArrayList<>();
+	/**
+	 * Search containers within the datastore, in the same order as the search paths.
+	 */
+	private final List<String> searchContainers = new ArrayList<>();
 	/**
 	 * The activity logger.
 	 */
 	private final IActivityLogger logger;
+	/**
+	 * The ledger of issued certificates. (NULL if the datastore is not held on the local filesystem).
+	 */
+	private final IssuanceLedger ledger;
+	/**
+	 * Send full collection change events rather than item change events.
+	 */
+	private volatile boolean legacyEvents = Boolean.getBoolean(LEGACY_EVENTS);
+	/**
+	 * Intern table for names (subjects, issuers) shared by all items of this CA. Entries are released once no item
+	 * refers to them.
+	 */
+	private final Map<String, WeakReference<String>> names = new WeakHashMap<>();
+	/**
+	 * Have the contents been loaded from the datastore?
+	 */
+	private volatile boolean loaded;
+	/**
+	 * The time the contents were last accessed (in milliseconds since the epoch).
+	 */
+	private volatile long lastAccess = System.currentTimeMillis();
 
 	/**
 	 * Create a new Certificate Authority
@@ -207,6 +283,23 @@ public class CertificateAuthority {
 	 * @throws CertificateEncodingException The certificate for signing is invalid.
 	 */
 	public static CertificateAuthority open(Path basePath) throws IOException, CertificateEncodingException {
+		return open(basePath, true);
+	}
+
+	/**
+	 * Open an existing Certificate Authority
+	 * <p>
+	 * If the contents are not loaded when opened, they are loaded by {@link #load(IProgressMonitor)}, or on first
+	 * access to the contents or first modification.
+	 * 
+	 * @param basePath The base path of the authority.
+	 * @param load TRUE to load the contents (issued certificates, requests, etc) when opened, FALSE to defer.
+	 * @return The Certificate Authority.
+	 * @throws IOException If opening the CA fails.
+	 * @throws CertificateEncodingException The certificate for signing is invalid.
+	 */
+	public static CertificateAuthority open(Path basePath, boolean load)
+			throws IOException, CertificateEncodingException {
 		if (basePath == null || basePath.getNameCount() == 0 || getPathFilenameAsString(basePath).isEmpty()) {
 			throw new IOException("Path is not valid");
 		}
@@ -219,7 +312,39 @@ public class CertificateAuthority {
 		if (!(Files.isReadable(basePath) && Files.isWritable(basePath))) {
 			throw new IOException("Path is not accessible");
 		}
-		return new CertificateAuthority(basePath);
+		return new CertificateAuthority(new FileSystemDatastore(basePath), load);
+	}
+
+	/**
+	 * Open an existing Certificate Authority held in the given datastore
+	 * 
+	 * @param datastore The datastore holding the authority.
+	 * @return The Certificate Authority.
+	 * @throws IOException If opening the CA fails.
+	 * @throws CertificateEncodingException The certificate for signing is invalid.
+	 */
+	public static CertificateAuthority openDatastore(IDatastore datastore) throws IOException, CertificateEncodingException {
+		return openDatastore(datastore, true);
+	}
+
+	/**
+	 * Open an existing Certificate Authority held in the given datastore
+	 * 
+	 * @param datastore The datastore holding the authority.
+	 * @param load TRUE to load the contents when opened, FALSE to defer. (See {@link #open(Path, boolean)}).
+	 * @return The Certificate Authority.
+	 * @throws IOException If opening the CA fails.
+	 * @throws CertificateEncodingException The certificate for signing is invalid.
+	 */
+	public static CertificateAuthority openDatastore(IDatastore datastore, boolean load)
+			throws IOException, CertificateEncodingException {
+		if (datastore == null) {
+			throw new IOException("Datastore is not valid");
+		}
+		if (!datastore.exists(IDatastore.ROOT, CertificateAuthoritySettings.DEFAULT_NAME)) {
+			throw new IOException("Datastore does not contain a Certificate Authority");
+		}
+		return new CertificateAuthority(datastore, load);
 	}
 
 	/**
@@ -273,34 +398,94 @@ public class CertificateAuthority {
 		if (Files.exists(basePath.resolve(CA_PKCS12_FILENAME))) {
 			throw new IOException("Location appears to be use for another Certificate Authority");
 		}
-		return new CertificateAuthority(basePath, certificate, description);
+		return createInDatastore(new FileSystemDatastore(basePath), certificate, description);
 	}
 
 	/**
-	 * Open an existing CA for the given base path, reading the settings contained in the base path.
+	 * Create a new Certificate Authority within the given datastore
 	 * 
-	 * @param path The base Path.
+	 * @param datastore The datastore to hold the authority.
+	 * @param certificate The CA Certificate, must have a public key, private key AND signed certificate.
+	 * @param description The textual description of the CA.
+	 * @return A new Certificate Authority.
+	 * @throws IOException If creating the CA fails.
+	 * @throws CertificateEncodingException The certificate for signing is invalid.
+	 */
+	public static CertificateAuthority createInDatastore(IDatastore datastore, IIssuedCertificate certificate, String description)
+			throws IOException, CertificateEncodingException {
+		if (datastore == null) {
+			throw new IOException("Datastore is not valid");
+		}
+		if (certificate == null || certificate.getCertificateChain() == null || certificate.getCertificateChain().length == 0) {
+			throw new IOException("Missing Certificate");
+		}
+		if (certificate.getPublicKey() == null) {
+			throw new IOException("Missing Public Key");
+		}
+		if (certificate.getPrivateKey() == null) {
+			throw new IOException("Missing Private Key");
+		}
+		if (datastore.exists(IDatastore.ROOT, CA_PKCS12_FILENAME)) {
+			throw new IOException("Location appears to be use for another Certificate Authority");
+		}
+		return new CertificateAuthority(datastore, certificate, description);
+	}
+
+	/**
+	 * Open an existing CA for the given datastore, reading the settings contained in the datastore.
+	 * 
+	 * @param datastore The datastore.
 	 * @throws IOException If opening/creating the CA fails.
 	 * @throws CertificateEncodingException The supplied certificate is invalid.
 	 */
-	protected CertificateAuthority(Path path) throws IOException, CertificateEncodingException {
-		this(path, null, null);
+	protected CertificateAuthority(IDatastore datastore) throws IOException, CertificateEncodingException {
+		this(datastore, true);
+	}
+
+	/**
+	 * Open an existing CA for the given datastore, reading the settings contained in the datastore.
+	 * 
+	 * @param datastore The datastore.
+	 * @param load TRUE to load the contents when opened, FALSE to defer.
+	 * @throws IOException If opening/creating the CA fails.
+	 * @throws CertificateEncodingException The supplied certificate is invalid.
+	 */
+	protected CertificateAuthority(IDatastore datastore, boolean load)
+			throws IOException, CertificateEncodingException {
+		this(datastore, null, null, load);
 	}
 
 	/**
-	 * Create a new CA for the given base path, and certificate datastore.
+	 * Create a new CA for the given datastore, and certificate.
 	 * 
-	 * @param path The base Path.
+	 * @param datastore The datastore.
 	 * @param certificate The Certificate information to use.
 	 * @param description The description of the CA.
 	 * @throws IOException If opening/creating the CA fails.
 	 * @throws CertificateEncodingException The certificate is invalid.
 	 * @throws IllegalArgumentException If the supplied issuer information is not a CA.
 	 */
-	protected CertificateAuthority(Path path, IIssuedCertificate certificate, String description)
+	protected CertificateAuthority(IDatastore datastore, IIssuedCertificate certificate, String description)
 			throws IOException, CertificateEncodingException {
+		this(datastore, certificate, description, true);
+	}
+
+	/**
+	 * Create or open a CA for the given datastore.
+	 * 
+	 * @param datastore The datastore.
+	 * @param certificate The Certificate information to use, or NULL to open an existing CA.
+	 * @param description The description of the CA.
+	 * @param load TRUE to load the contents, FALSE to defer until first needed.
+	 * @throws IOException If opening/creating the CA fails.
+	 * @throws CertificateEncodingException The certificate is invalid.
+	 * @throws IllegalArgumentException If the supplied issuer information is not a CA.
+	 */
+	private CertificateAuthority(IDatastore datastore, IIssuedCertificate certificate, String description,
+			boolean load) throws IOException, CertificateEncodingException {
 		propertySupport = new PropertyChangeSupport(this);
-		this.basePath = path;
+		this.datastore = datastore;
+		this.basePath = datastore.getLocation();
 		this.issuerInformation = certificate;
 		this.issuedCertificates = new ConcurrentHashMap<>();
 		this.revokedCertificates = new ConcurrentHashMap<>();
@@ -312,30 +497,41 @@ public class CertificateAuthority {
 			throw new IllegalArgumentException("Supplied Issuer Information is not a Certificate Authority");
 		}
 
-		createSubFolder(basePath.resolve(ISSUED_PATH));
-		createSubFolder(basePath.resolve(REQUESTS_PATH));
-		createSubFolder(basePath.resolve(TEMPLATES_PATH));
-		createSubFolder(basePath.resolve(REVOKED_PATH));
-		createSubFolder(basePath.resolve(X509CRL_PATH));
-		createSubFolder(basePath.resolve(LOG_PATH));
-		searchPaths.add(basePath);
-		searchPaths.add(basePath.resolve(ISSUED_PATH));
-		searchPaths.add(basePath.resolve(REVOKED_PATH));
-		searchPaths.add(basePath.resolve(X509CRL_PATH));
-		searchPaths.add(basePath.resolve(REQUESTS_PATH));
+		datastore.createContainer(ISSUED_PATH);
+		datastore.createContainer(REQUESTS_PATH);
+		datastore.createContainer(TEMPLATES_PATH);
+		datastore.createContainer(REVOKED_PATH);
+		datastore.createContainer(X509CRL_PATH);
+		datastore.createContainer(LOG_PATH);
+		datastore.createContainer(LEDGER_PATH);
+		searchContainers.add(IDatastore.ROOT);
+		searchContainers.add(ISSUED_PATH);
+		searchContainers.add(REVOKED_PATH);
+		searchContainers.add(X509CRL_PATH);
+		searchContainers.add(REQUESTS_PATH);
+		for (String container : searchContainers) {
+			searchPaths.add(basePath.resolve(container));
+		}
 		loadOrCreateSettings();
 		// This is a create event, so store the based element to disk.
 		if (issuerInformation != null) {
-			issuerInformation.createPKCS12(path.resolve(CA_PKCS12_FILENAME), issuerInformation.getPassword(), null,
-					PKCS12Cipher.AES256);
-			settings.setPkcs12Filename(CA_PKCS12_FILENAME);
-			settings.setDescription(description);
-			saveSettings();
+			try (OutputStream out = datastore.put(IDatastore.ROOT, CA_PKCS12_FILENAME)) {
+				issuerInformation.savePKCS12(out, issuerInformation.getPassword(), null, PKCS12Cipher.AES256);
+			}
+			updateSettings(s -> {
+				s.setPkcs12Filename(CA_PKCS12_FILENAME);
+				s.setDescription(description);
+				return null;
+			});
 
 		}
+		this.ledger = datastore instanceof FileSystemDatastore ? new IssuanceLedger(basePath.resolve(LEDGER_PATH))
+				: null;
 		this.logger = IActivityLogger.createLogger(this);
 		this.logger.log(Level.INFO, "Open Certificate Authority");
-		refresh();
+		if (load) {
+			refresh();
+		}
 	}
 
 	/**
@@ -344,50 +540,61 @@ public class CertificateAuthority {
 	 * @throws IOException If reading/writing the configuration fails.
 	 */
 	private void loadOrCreateSettings() throws IOException {
-		Path settingsFile = basePath.resolve(CertificateAuthoritySettings.DEFAULT_NAME);
-		if (Files.exists(settingsFile)) {
-			if (Files.isReadable(settingsFile) && Files.isDirectory(settingsFile)) {
-				throw new IOException("Settings File is unable to read");
-			}
+		if (datastore.exists(IDatastore.ROOT, CertificateAuthoritySettings.DEFAULT_NAME)) {
 			try {
-				this.settings = CertificateAuthoritySettings.read(settingsFile);
+				this.settings = CertificateAuthoritySettings.load(//
+						datastore.get(IDatastore.ROOT, CertificateAuthoritySettings.DEFAULT_NAME));
 			} catch (Exception e) {
 				throw new IOException(e);
 			}
 		} else {
 			// Create event.
-			this.settings = new CertificateAuthoritySettings(UUID.randomUUID());
-			this.settings.setSerial(System.currentTimeMillis());
-			this.settings.setSignatureAlgorithm(//
+			CertificateAuthoritySettings newSettings = new CertificateAuthoritySettings(UUID.randomUUID());
+			newSettings.setSerial(System.currentTimeMillis());
+			newSettings.setSignatureAlgorithm(//
 					SignatureAlgorithm.getDefaultSignature(issuerInformation.getPublicKey()));
-			this.settings.setExpiryDays(365);
-			saveSettings();
+			newSettings.setExpiryDays(365);
+			saveSettings(newSettings);
+			this.settings = newSettings;
 		}
 	}
 
 	/**
-	 * Create a folder.
+	 * Save settings to the configuration file.
 	 * 
-	 * @param path The path to create.
-	 * @throws IOException If creating the path fails.
+	 * @param settings The settings to save.
+	 * @throws IOException If writing the configuration fails.
 	 */
-	private void createSubFolder(Path path) throws IOException {
-		if (!Files.exists(path)) {
-			Files.createDirectories(path);
-			// throw new IOException("Unable to materialise " + f.getAbsolutePath());
+	private void saveSettings(CertificateAuthoritySettings settings) throws IOException {
+		try {
+			CertificateAuthoritySettings.save(settings, //
+					datastore.put(IDatastore.ROOT, CertificateAuthoritySettings.DEFAULT_NAME));
+		} catch (Exception e) {
+			throw new IOException(e);
 		}
 	}
 
 	/**
-	 * Save settings to the configuration file.
+	 * Update the settings.
+	 * <p>
+	 * The update is applied to a copy of the current settings, which is saved and then published. If saving fails,
+	 * the current settings are left unchanged.
 	 * 
+	 * @param <T> The type of the result of the update.
+	 * @param update The update to apply.
+	 * @return The result of the update.
 	 * @throws IOException If writing the configuration fails.
 	 */
-	private synchronized void saveSettings() throws IOException {
+	private <T> T updateSettings(Function<CertificateAuthoritySettings, T> update) throws IOException {
+		settingsLock.lock();
 		try {
-			CertificateAuthoritySettings.write(settings, basePath.resolve(CertificateAuthoritySettings.DEFAULT_NAME));
-		} catch (Exception e) {
-			throw new IOException(e);
+			CertificateAuthoritySettings newSettings = new CertificateAuthoritySettings(settings);
+			T result = update.apply(newSettings);
+			saveSettings(newSettings);
+			settings = newSettings;
+			return result;
+		} finally {
+			settingsLock.unlock();
 		}
 	}
 
@@ -400,6 +607,45 @@ public class CertificateAuthority {
 		return basePath;
 	}
 
+	/**
+	 * Get the backing datastore
+	 * 
+	 * @return The datastore holding the artefacts and metadata of the certificate authority.
+	 */
+	public IDatastore getDatastore() {
+		return datastore;
+	}
+
+	/**
+	 * Get the ledger of the certificates issued by this CA.
+	 * 
+	 * @return The issuance ledger, or NULL if the datastore is not held on the local filesystem.
+	 */
+	public IssuanceLedger getLedger() {
+		return ledger;
+	}
+
+	/**
+	 * Get the canonical instance of the given name, so items of this CA with the same subject share one instance.
+	 * 
+	 * @param name The name.
+	 * @return The canonical instance of the name.
+	 */
+	String intern(String name) {
+		if (name == null) {
+			return null;
+		}
+		synchronized (names) {
+			WeakReference<String> ref = names.get(name);
+			String value = ref != null ? ref.get() : null;
+			if (value == null) {
+				names.put(name, new WeakReference<>(name));
+				value = name;
+			}
+			return value;
+		}
+	}
+
 	/**
 	 * Is this datastore locked?
 	 * 
@@ -410,11 +656,21 @@ public class CertificateAuthority {
 	}
 
 	/**
-	 * Lock the datastore
+	 * Lock the datastore. Waits for operations in progress (such as signing) to complete.
 	 */
-	public synchronized void lock() {
-		boolean islocked = isLocked();
-		issuerInformation = null;
+	public void lock() {
+		if (storeLock.getReadHoldCount() > 0) {
+			// The shared lock can't be upgraded, so waiting for the exclusive lock would never return.
+			throw new IllegalStateException("Certificate Authority can't be locked while updating");
+		}
+		boolean islocked;
+		storeLock.writeLock().lock();
+		try {
+			islocked = isLocked();
+			issuerInformation = null;
+		} finally {
+			storeLock.writeLock().unlock();
+		}
 		this.logger.log(Level.INFO, "Locking Certificate Authority");
 		propertySupport.firePropertyChange(PROPERTY_UNLOCK, islocked, true);
 	}
@@ -428,18 +684,33 @@ public class CertificateAuthority {
 	 * @throws KeyStoreException Loading the keystore container failed.
 	 * @throws CertificateEncodingException The certificate is invalid.
 	 */
-	public synchronized void unlock(String password)
+	public void unlock(String password)
 			throws KeyStoreException, InvalidPasswordException, IOException, CertificateEncodingException {
 		if (!isLocked()) {
 			return;
 		}
 		this.logger.log(Level.INFO, "Requesting Unlock of Certificate Authority");
-		issuerInformation = IssuedCertificate.openPKCS12(basePath.resolve(settings.getPkcs12Filename()), password);
-		if (!CertificateFactory.isCACertificate(issuerInformation)) {
-			issuerInformation = null;
+		IIssuedCertificate issuer = null;
+		try (InputStream in = datastore.get(IDatastore.ROOT, settings.getPkcs12Filename())) {
+			issuer = IssuedCertificate.loadPKCS12(in, password);
+		}
+		if (!CertificateFactory.isCACertificate(issuer)) {
 			this.logger.log(Level.INFO, "Unlock of Certificate Authority failed.");
 			throw new IllegalArgumentException("Supplied Issuer Information is not a Certificate Authority");
 		}
+		if (storeLock.getReadHoldCount() > 0) {
+			throw new IllegalStateException("Certificate Authority can't be unlocked while updating");
+		}
+		storeLock.writeLock().lock();
+		try {
+			if (!isLocked()) {
+				// Unlocked meanwhile.
+				return;
+			}
+			issuerInformation = issuer;
+		} finally {
+			storeLock.writeLock().unlock();
+		}
 		this.logger.log(Level.INFO, "Unlocked Certificate Authority");
 		propertySupport.firePropertyChange(PROPERTY_UNLOCK, true, false);
 	}
@@ -449,7 +720,7 @@ public class CertificateAuthority {
 	 * 
 	 * @return The description text of this CA
 	 */
-	public synchronized String getDescription() {
+	public String getDescription() {
 		return settings.getDescription();
 	}
 
@@ -459,10 +730,12 @@ public class CertificateAuthority {
 	 * @param description The new description
 	 * @throws IOException If saving the configuration fails.
 	 */
-	public synchronized void setDescription(String description) throws IOException {
-		String oldValue = settings.getDescription();
-		settings.setDescription(description);
-		saveSettings();
+	public void setDescription(String description) throws IOException {
+		String oldValue = updateSettings(s -> {
+			String previous = s.getDescription();
+			s.setDescription(description);
+			return previous;
+		});
 		this.logger.log(Level.INFO, "Updating Certificate Authority Description {0}", description);
 		propertySupport.firePropertyChange(PROPERTY_DESCRIPTION, oldValue, description);
 	}
@@ -472,7 +745,7 @@ public class CertificateAuthority {
 	 * 
 	 * @return The default expiry
 	 */
-	public synchronized int getExpiryDays() {
+	public int getExpiryDays() {
 		return settings.getExpiryDays();
 	}
 
@@ -483,13 +756,15 @@ public class CertificateAuthority {
 	 * @throws IllegalArgumentException The value was 0 or negative.
 	 * @throws IOException If saving the configuration fails.
 	 */
-	public synchronized void setExpiryDays(int expiry) throws IOException, IllegalArgumentException {
+	public void setExpiryDays(int expiry) throws IOException, IllegalArgumentException {
 		if (expiry <= 0) {
 			throw new IllegalArgumentException("The expiry day count is invalid");
 		}
-		int oldValue = settings.getExpiryDays();
-		settings.setExpiryDays(expiry);
-		saveSettings();
+		int oldValue = updateSettings(s -> {
+			Integer previous = s.getExpiryDays();
+			s.setExpiryDays(expiry);
+			return previous;
+		});
 		this.logger.log(Level.INFO, "Updating Certificate Authority Expiry days {0}", expiry);
 		propertySupport.firePropertyChange(PROPERTY_EXPIRY, oldValue, expiry);
 	}
@@ -499,7 +774,7 @@ public class CertificateAuthority {
 	 * 
 	 * @return TRUE if incremental serial number generation is set.
 	 */
-	public synchronized boolean isIncrementalSerial() {
+	public boolean isIncrementalSerial() {
 		return settings.isIncrementalSerial();
 	}
 
@@ -512,10 +787,12 @@ public class CertificateAuthority {
 	 * @throws IllegalArgumentException The value was 0 or negative.
 	 * @throws IOException If saving the configuration fails.
 	 */
-	public synchronized void setIncrementalSerial(boolean incrementalSerial) throws IOException {
-		boolean oldValue = settings.isIncrementalSerial();
-		settings.setIncrementalSerial(incrementalSerial);
-		saveSettings();
+	public void setIncrementalSerial(boolean incrementalSerial) throws IOException {
+		boolean oldValue = updateSettings(s -> {
+			Boolean previous = s.isIncrementalSerial();
+			s.setIncrementalSerial(incrementalSerial);
+			return previous;
+		});
 		this.logger.log(Level.INFO, "Updating Certificate Authority Incremental Serial {0}", incrementalSerial);
 		propertySupport.firePropertyChange(PROPERTY_INCREMENTAL_SERIAL, oldValue, incrementalSerial);
 	}
@@ -525,7 +802,7 @@ public class CertificateAuthority {
 	 * 
 	 * @return TRUE if the log is enabled.
 	 */
-	public synchronized boolean isEnableLog() {
+	public boolean isEnableLog() {
 		return settings.isEnableLog();
 	}
 
@@ -535,10 +812,12 @@ public class CertificateAuthority {
 	 * @param enable TRUE to enable the log.
 	 * @throws IOException If saving the configuration fails.
 	 */
-	public synchronized void setEnableLog(boolean enable) throws IOException {
-		boolean oldValue = settings.isEnableLog();
-		settings.setEnableLog(enable);
-		saveSettings();
+	public void setEnableLog(boolean enable) throws IOException {
+		boolean oldValue = updateSettings(s -> {
+			Boolean previous = s.isEnableLog();
+			s.setEnableLog(enable);
+			return previous;
+		});
 		this.logger.log(Level.INFO, "Setting Activity Log {0}", enable);
 		propertySupport.firePropertyChange(PROPERTY_ENABLE_LOG, oldValue, enable);
 	}
@@ -548,7 +827,7 @@ public class CertificateAuthority {
 	 * 
 	 * @return The CA's UUID.
 	 */
-	public synchronized UUID getCertificateAuthorityID() {
+	public UUID getCertificateAuthorityID() {
 		return settings.getUuid();
 	}
 
@@ -559,9 +838,9 @@ public class CertificateAuthority {
 	 * @throws DatastoreLockedException If the datastore is currently locked.
 	 */
 	public Certificate getCertificate() throws DatastoreLockedException {
-		checkDatastoreLock();
+		IIssuedCertificate issuer = getIssuer();
 		this.logger.log(Level.INFO, "Access Certificate Authority Certificate");
-		return issuerInformation.getCertificateChain()[0];
+		return issuer.getCertificateChain()[0];
 	}
 
 	/**
@@ -571,9 +850,9 @@ public class CertificateAuthority {
 	 * @throws DatastoreLockedException If the datastore is currently locked.
 	 */
 	public Certificate[] getCertificateChain() throws DatastoreLockedException {
-		checkDatastoreLock();
+		IIssuedCertificate issuer = getIssuer();
 		this.logger.log(Level.INFO, "Access Certificate Authority Certificate Chain");
-		return issuerInformation.getCertificateChain();
+		return issuer.getCertificateChain();
 	}
 
 	/**
@@ -585,9 +864,9 @@ public class CertificateAuthority {
 	 * @throws DatastoreLockedException If the datastore is currently locked.
 	 */
 	public void exportCertificate(Path filename, EncodingType encoding) throws IOException, DatastoreLockedException {
-		checkDatastoreLock();
+		IIssuedCertificate issuer = getIssuer();
 		this.logger.log(Level.INFO, "Export Certificate Authority Certificate to {0}", filename);
-		issuerInformation.createCertificate(filename, encoding);
+		issuer.createCertificate(filename, encoding);
 	}
 
 	/**
@@ -600,9 +879,9 @@ public class CertificateAuthority {
 	 */
 	public void exportCertificateChain(Path filename, EncodingType encoding)
 			throws IOException, DatastoreLockedException {
-		checkDatastoreLock();
+		IIssuedCertificate issuer = getIssuer();
 		this.logger.log(Level.INFO, "Export Certificate Authority Certificate Chain to {0}", filename);
-		issuerInformation.createCertificateChain(filename, encoding);
+		issuer.createCertificateChain(filename, encoding);
 	}
 
 	/**
@@ -618,9 +897,9 @@ public class CertificateAuthority {
 	 */
 	public void exportPrivateKey(Path filename, String password, EncodingType encoding, PKCS8Cipher encryptionAlg)
 			throws IOException, DatastoreLockedException {
-		checkDatastoreLock();
+		IIssuedCertificate issuer = getIssuer();
 		this.logger.log(Level.INFO, "Export Certificate Authority Private Key to {0}", filename);
-		issuerInformation.createPKCS8(filename, password, encoding, encryptionAlg);
+		issuer.createPKCS8(filename, password, encoding, encryptionAlg);
 	}
 
 	/**
@@ -636,9 +915,9 @@ public class CertificateAuthority {
 	 */
 	public void exportPKCS12(Path filename, String password, String alias, PKCS12Cipher cipher)
 			throws IOException, DatastoreLockedException {
-		checkDatastoreLock();
+		IIssuedCertificate issuer = getIssuer();
 		this.logger.log(Level.INFO, "Export Certificate Authority Certificate and Keying as PKCS#12 to {0}", filename);
-		issuerInformation.createPKCS12(filename, password, alias, cipher);
+		issuer.createPKCS12(filename, password, alias, cipher);
 	}
 
 	/**
@@ -652,9 +931,9 @@ public class CertificateAuthority {
 	 */
 	public void createPublicKey(Path filename, EncodingType encoding)
 			throws IOException, IllegalStateException, DatastoreLockedException {
-		checkDatastoreLock();
+		IIssuedCertificate issuer = getIssuer();
 		this.logger.log(Level.INFO, "Export Certificate Authority Public Key to {0}", filename);
-		issuerInformation.createPublicKey(filename, encoding);
+		issuer.createPublicKey(filename, encoding);
 	}
 
 	/**
@@ -673,7 +952,26 @@ public class CertificateAuthority {
 	public Certificate signCertificateRequest(ICertificateRequest certRequest, ZonedDateTime startDate,
 			ZonedDateTime expiryDate) throws IOException, DatastoreLockedException, CertIOException,
 			OperatorCreationException, CertificateException {
-		checkDatastoreLock();
+		return signCertificateRequest(getIssuer(), certRequest, startDate, expiryDate);
+	}
+
+	/**
+	 * Sign the given certificate request with the given issuer, and return the signed certificate
+	 * 
+	 * @param issuer The issuer information, as read once for the operation.
+	 * @param certRequest The certificate request.
+	 * @param startDate The certificate start date.
+	 * @param expiryDate The certificate expiry date.
+	 * @return The signed certificate.
+	 * @throws DatastoreLockedException If the datastore is currently locked.
+	 * @throws CertificateException Creation of the certificate fails
+	 * @throws OperatorCreationException Creation of the certificate fails
+	 * @throws CertIOException Creation of the certificate fails
+	 * @throws IOException Creation of the certificate fails
+	 */
+	private Certificate signCertificateRequest(IIssuedCertificate issuer, ICertificateRequest certRequest,
+			ZonedDateTime startDate, ZonedDateTime expiryDate) throws IOException, DatastoreLockedException,
+			CertIOException, OperatorCreationException, CertificateException {
 		if (certRequest == null) {
 			throw new IllegalArgumentException("No Certificate Request Provided");
 		}
@@ -681,7 +979,10 @@ public class CertificateAuthority {
 			throw new IllegalArgumentException("Missing Certificate Date information");
 		}
 		this.logger.log(Level.INFO, "Request Certificate Authority Sign Certificate Request  {0}", certRequest.getSubject());
-		return CertificateFactory.signCertificateRequest(this, certRequest, startDate, expiryDate);
+		// The next serial number is corrected against the issued certificates when loaded. (Always loaded if called
+		// while updating, see lockForUpdate()).
+		load(null);
+		return CertificateFactory.signCertificateRequest(this, issuer, certRequest, startDate, expiryDate);
 	}
 
 	/**
@@ -705,74 +1006,119 @@ public class CertificateAuthority {
 			ZonedDateTime startDate, ZonedDateTime expiryDate, String password) throws IOException,
 			DatastoreLockedException, CertIOException, OperatorCreationException, CertificateException,
 			NoSuchAlgorithmException, NoSuchProviderException, InvalidAlgorithmParameterException {
-		// Sign the request.
-		Certificate cert = signCertificateRequest(certRequest, startDate, expiryDate);
-		this.logger.log(Level.INFO, "Storing Certificate  {0}", certRequest.getSubject());
-		// Create a new certificate chain, prepending the new cert to the start of the chain.
-		Certificate[] issuerChain = issuerInformation.getCertificateChain();
-		Certificate[] chain = new Certificate[issuerChain.length + 1];
-		chain[0] = cert;
-		System.arraycopy(issuerChain, 0, chain, 1, issuerChain.length);
-
-		// Create an issued certificate properties instance.
-		IssuedCertificateProperties properties = new IssuedCertificateProperties(this);
-		properties.setProperty(Key.subject, certRequest.getSubject().toString());
-		properties.setProperty(Key.startDate, DateTimeUtil.toString(startDate));
-		properties.setProperty(Key.endDate, DateTimeUtil.toString(expiryDate));
-		properties.setProperty(Key.certificateSerialNumber, ((X509Certificate) cert).getSerialNumber().toString());
-		if (certRequest instanceof CertificateRequest) {
-			properties.setProperty(Key.creationDate,
-					DateTimeUtil.toString(((CertificateRequest) certRequest).getCreationDate()));
-			if (((CertificateRequest) certRequest).getDescription() != null
-					&& !((CertificateRequest) certRequest).getDescription().isEmpty())
-				properties.setProperty(Key.description, ((CertificateRequest) certRequest).getDescription());
-		}
-
-		IssuedCertificate ic = null;
-		Path filename = null;
-		if (certRequest instanceof CertificateRequest
-				&& ((CertificateRequest) certRequest).getKeyPair().getPrivate() != null) {
-			CertificateRequest cr = (CertificateRequest) certRequest;
-			filename = generateFilename(((X509Certificate) cert).getSerialNumber(), ISSUED_PATH, ".p12");
-			// Self generated
-			ic = new IssuedCertificate(cr.getKeyPair(), chain, filename, null, password);
-			String certdesc = properties.getProperty(Key.description);
-			if (certdesc == null) {
-				certdesc = properties.getProperty(Key.subject);
+		lockForUpdate();
+		Certificate cert = null;
+		List<Path> stored = new ArrayList<>(2);
+		boolean issued = false;
+		try {
+			// Sign the request, with the chain of the same issuer should the CA be locked or the issuer replaced.
+			IIssuedCertificate issuer = getIssuer();
+			cert = signCertificateRequest(issuer, certRequest, startDate, expiryDate);
+			this.logger.logCertificate(Level.INFO, "Storing Certificate  {0}", certRequest.getSubject().toString(),
+					((X509Certificate) cert).getSerialNumber().toString(), new Object[] { certRequest.getSubject() });
+			// Create a new certificate chain, prepending the new cert to the start of the chain.
+			Certificate[] issuerChain = issuer.getCertificateChain();
+			Certificate[] chain = new Certificate[issuerChain.length + 1];
+			chain[0] = cert;
+			System.arraycopy(issuerChain, 0, chain, 1, issuerChain.length);
+
+			// Create an issued certificate properties instance.
+			IssuedCertificateProperties properties = new IssuedCertificateProperties(this);
+			properties.setProperty(Key.subject, certRequest.getSubject().toString());
+			properties.setProperty(Key.startDate, DateTimeUtil.toString(startDate));
+			properties.setProperty(Key.endDate, DateTimeUtil.toString(expiryDate));
+			properties.setProperty(Key.certificateSerialNumber, ((X509Certificate) cert).getSerialNumber().toString());
+			if (certRequest instanceof CertificateRequest) {
+				properties.setProperty(Key.creationDate,
+						DateTimeUtil.toString(((CertificateRequest) certRequest).getCreationDate()));
+				if (((CertificateRequest) certRequest).getDescription() != null
+						&& !((CertificateRequest) certRequest).getDescription().isEmpty())
+					properties.setProperty(Key.description, ((CertificateRequest) certRequest).getDescription());
 			}
-			String alias = certdesc + "#" + properties.getProperty(Key.certificateSerialNumber);
-			ic.createPKCS12(filename, password, alias, PKCS12Cipher.AES256);
-
-			properties.setProperty(Key.keyType, cr.getKeyType().name());
-			properties.setProperty(Key.pkcs12store, getPathFilenameAsString(filename));
 
-		} else {
-			filename = generateFilename(((X509Certificate) cert).getSerialNumber(), ISSUED_PATH, ".p7b");
-			// Certificates only.
-			ic = new IssuedCertificate(null, chain, filename, null, password);
-			ic.createCertificateChain(filename, EncodingType.DER);
+			IssuedCertificate ic = null;
+			Path filename = null;
+			if (certRequest instanceof CertificateRequest
+					&& ((CertificateRequest) certRequest).getKeyPair().getPrivate() != null) {
+				CertificateRequest cr = (CertificateRequest) certRequest;
+				filename = generateFilename(((X509Certificate) cert).getSerialNumber(), ISSUED_PATH, ".p12");
+				// Self generated
+				ic = new IssuedCertificate(cr.getKeyPair(), chain, filename, null, password);
+				String certdesc = properties.getProperty(Key.description);
+				if (certdesc == null) {
+					certdesc = properties.getProperty(Key.subject);
+				}
+				String alias = certdesc + "#" + properties.getProperty(Key.certificateSerialNumber);
+				try (OutputStream out = put(filename)) {
+					ic.savePKCS12(out, password, alias, PKCS12Cipher.AES256);
+				}
+				stored.add(filename);
+
+				properties.setProperty(Key.keyType, cr.getKeyType().name());
+				properties.setProperty(Key.pkcs12store, getPathFilenameAsString(filename));
+
+			} else {
+				filename = generateFilename(((X509Certificate) cert).getSerialNumber(), ISSUED_PATH, ".p7b");
+				// Certificates only.
+				ic = new IssuedCertificate(null, chain, filename, null, password);
+				try (OutputStream out = put(filename)) {
+					ic.saveCertificateChain(out, EncodingType.DER);
+				}
+				stored.add(filename);
+
+				properties.setProperty(Key.pkcs7store, getPathFilenameAsString(filename));
+			}
+			// Generate the properties file.
+			Path propertiesPath = filename.getParent();
+			String propertiesFilename = getPathFilenameAsString(filename);
+			propertiesFilename = propertiesFilename.substring(0, propertiesFilename.lastIndexOf('.'))
+					+ IssuedCertificateProperties.DEFAULT_EXTENSION;
+			if(propertiesPath == null) {
+				throw new IllegalStateException("Properties Parent Path is NULL?");
+			}
+			propertiesPath = propertiesPath.resolve(propertiesFilename);
+			properties.setProperty(Key.filename, propertiesFilename);
 
-			properties.setProperty(Key.pkcs7store, getPathFilenameAsString(filename));
-		}
-		// Generate the properties file.
-		Path propertiesPath = filename.getParent();
-		String propertiesFilename = getPathFilenameAsString(filename);
-		propertiesFilename = propertiesFilename.substring(0, propertiesFilename.lastIndexOf('.'))
-				+ IssuedCertificateProperties.DEFAULT_EXTENSION;
-		if(propertiesPath == null) {
-			throw new IllegalStateException("Properties Parent Path is NULL?");
+			// And store.
+			try (OutputStream out = put(propertiesPath)) {
+				properties.store(out);
+			}
+			stored.add(propertiesPath);
+			// Record the issue once stored, so the ledger only holds certificates which were issued.
+			if (ledger != null) {
+				ledger.append(cert.getEncoded(), System.currentTimeMillis());
+			}
+			issued = true;
+			issuedCertificates.put(propertiesPath, properties);
+			fireItemsChanged(PROPERTY_ISSUED, issuedCertificates, Collections.singletonList(properties), null, null);
+			return properties;
+		} finally {
+			if (cert != null && !issued) {
+				discard(certRequest.getSubject().toString(), ((X509Certificate) cert).getSerialNumber().toString(),
+						stored);
+			}
+			storeLock.readLock().unlock();
 		}
-		propertiesPath = propertiesPath.resolve(propertiesFilename);
-		properties.setProperty(Key.filename, propertiesFilename);
+	}
 
-		// And store.
-		try (FileOutputStream out = new FileOutputStream(propertiesPath.toFile())) {
-			properties.store(out);
+	/**
+	 * Record a certificate signed but not issued (as storing it, or recording it in the ledger failed), and remove
+	 * the files stored for it.
+	 * 
+	 * @param subject The subject of the certificate.
+	 * @param serial The serial number of the certificate.
+	 * @param stored The files stored.
+	 */
+	private void discard(String subject, String serial, List<Path> stored) {
+		this.logger.logCertificate(Level.WARNING, "Issue of Certificate {0} failed", subject, serial,
+				new Object[] { subject });
+		for (Path path : stored) {
+			try {
+				delete(path);
+			} catch (IOException e) {
+				this.logger.log(Level.WARNING, "Unable to remove {0}", path);
+			}
 		}
-		ConcurrentHashMap<Path, IssuedCertificateProperties> oldValue = new ConcurrentHashMap<>(issuedCertificates);
-		issuedCertificates.put(propertiesPath, properties);
-		propertySupport.firePropertyChange(PROPERTY_ISSUED, oldValue.values(), issuedCertificates.values());
-		return properties;
 	}
 
 	/**
@@ -782,20 +1128,31 @@ public class CertificateAuthority {
 	 * @throws Exception If storing the template fails.
 	 */
 	public void addTemplate(ICertificateKeyPairTemplate template) throws Exception {
-		this.logger.log(Level.INFO, "Storing Template  {0}", template);
-		ZonedDateTime creationDate = template.getCreationDate();
-		String filename = String.format("08%x%s", creationDate.toInstant().getEpochSecond(),
-				ICertificateKeyPairTemplate.DEFAULT_EXTENSION);
-		Path path = basePath.resolve(TEMPLATES_PATH).resolve(filename);
-		template.store(path);
+		lockForUpdate();
+		try {
+			this.logger.log(Level.INFO, "Storing Template  {0}", template);
+			ZonedDateTime creationDate = template.getCreationDate();
+			String filename = String.format("08%x%s", creationDate.toInstant().getEpochSecond(),
+					ICertificateKeyPairTemplate.DEFAULT_EXTENSION);
+			Path path = datastore.resolve(TEMPLATES_PATH, filename);
+			try (OutputStream out = datastore.put(TEMPLATES_PATH, filename)) {
+				template.save(out);
+			}
 
-		/*
-		 * Add in the template instance, but ALWAYS reload from disk to ensure it's stored correctly AND has nothing
-		 * shared with the template passed in.
-		 */
-		Map<Path, ICertificateKeyPairTemplate> oldValue = new ConcurrentHashMap<>(templates);
-		templates.put(path, ICertificateKeyPairTemplate.open(path));
-		propertySupport.firePropertyChange(PROPERTY_TEMPLATE, oldValue, templates);
+			/*
+			 * Add in the template instance, but ALWAYS reload from disk to ensure it's stored correctly AND has nothing
+			 * shared with the template passed in.
+			 */
+			ICertificateKeyPairTemplate stored;
+			try (InputStream in = datastore.get(TEMPLATES_PATH, filename)) {
+				stored = ICertificateKeyPairTemplate.load(in);
+			}
+			ICertificateKeyPairTemplate replaced = templates.put(path, stored);
+			fireItemsChanged(PROPERTY_TEMPLATE, templates, Collections.singletonList(stored),
+					replaced != null ? Collections.singletonList(replaced) : null, null);
+		} finally {
+			storeLock.readLock().unlock();
+		}
 	}
 
 	/**
@@ -805,21 +1162,25 @@ public class CertificateAuthority {
 	 * @throws Exception If removing the template fails.
 	 */
 	public void removeCertificateTemplate(ICertificateKeyPairTemplate template) throws Exception {
-		this.logger.log(Level.INFO, "Removing Template {0}", template);
-		// Find the item in the map of templates.
-		Path path = templates.entrySet().stream()//
-				.filter(e -> e.getValue() == template)//
-				.findFirst()//
-				.map(e -> e.getKey())//
-				.orElse(null);
-		if (path == null) {
-			throw new NoSuchElementException("The template doesn't exist");
-		}
-		Files.delete(path);
+		lockForUpdate();
+		try {
+			this.logger.log(Level.INFO, "Removing Template {0}", template);
+			// Find the item in the map of templates.
+			Path path = templates.entrySet().stream()//
+					.filter(e -> e.getValue() == template)//
+					.findFirst()//
+					.map(e -> e.getKey())//
+					.orElse(null);
+			if (path == null) {
+				throw new NoSuchElementException("The template doesn't exist");
+			}
+			delete(path);
 
-		Map<Path, ICertificateKeyPairTemplate> oldValue = new ConcurrentHashMap<>(templates);
-		templates.remove(path);
-		propertySupport.firePropertyChange(PROPERTY_TEMPLATE, oldValue, templates);
+			templates.remove(path);
+			fireItemsChanged(PROPERTY_TEMPLATE, templates, null, Collections.singletonList(template), null);
+		} finally {
+			storeLock.readLock().unlock();
+		}
 	}
 
 	/**
@@ -830,56 +1191,63 @@ public class CertificateAuthority {
 	 * @throws IOException if decoding or sitting the CSR in the backing store fails.
 	 */
 	public CertificateRequestProperties addCertificateSigningRequest(Path filename) throws IOException {
-		if (filename == null) {
-			throw new IllegalArgumentException("Path is null");
-		}
-		// Ensure we can open the CSR
-		ICertificateRequest csr = CertificateRequestPKCS10.create(filename);
-		
-		this.logger.log(Level.INFO, "Adding CSR to Certificate Authority {0}", csr.getSubject());
-
-		// It opened fine, so let's copy the file to the required location
-		Path destFilename = generateFilename(BigInteger.valueOf(System.currentTimeMillis()), //
-				REQUESTS_PATH, ICertificateRequest.DEFAULT_EXTENSION);
-		Path path = basePath.resolve(destFilename);
-		Files.copy(filename, path, StandardCopyOption.REPLACE_EXISTING);
-
-		/*
-		 * Save our own instance.
-		 */
-		CertificateRequestProperties properties = new CertificateRequestProperties(this, csr);
-		properties.setProperty(CertificateRequestProperties.Key.subject, //
-				csr.getSubject().toString());
-		properties.setProperty(CertificateRequestProperties.Key.csrFilename, //
-				getPathFilenameAsString(path));
-		properties.setProperty(CertificateRequestProperties.Key.importDate, //
-				DateTimeUtil.toString(ZonedDateTime.now(DateTimeUtil.DEFAULT_ZONE)));
+		lockForUpdate();
 		try {
-			properties.setProperty(CertificateRequestProperties.Key.keyType, //
-					KeyPairFactory.forKeyInformation(csr.getSubjectPublicKeyInfo()).name());
-		} catch (IOException e) {
-			// ignore for foreign type that are not native for us.
-		}
+			if (filename == null) {
+				throw new IllegalArgumentException("Path is null");
+			}
+			// Ensure we can open the CSR
+			ICertificateRequest csr = CertificateRequestPKCS10.create(filename);
+		
+			this.logger.log(Level.INFO, "Adding CSR to Certificate Authority {0}", csr.getSubject());
+
+			// It opened fine, so let's copy the file to the required location
+			Path destFilename = generateFilename(BigInteger.valueOf(System.currentTimeMillis()), //
+					REQUESTS_PATH, ICertificateRequest.DEFAULT_EXTENSION);
+			Path path = basePath.resolve(destFilename);
+			try (InputStream in = Files.newInputStream(filename); //
+					OutputStream out = put(path)) {
+				in.transferTo(out);
+			}
 
-		// Generate the properties file.
-		Path propertiesPath = path.getParent();
-		if(propertiesPath == null) {
-			throw new IllegalStateException("Properties Parent Path is NULL?");
-		}
-		String propertiesFilename = getPathFilenameAsString(path);
-		propertiesFilename = propertiesFilename.substring(0, propertiesFilename.lastIndexOf('.'))
-				+ CertificateRequestProperties.DEFAULT_EXTENSION;
-		propertiesPath = propertiesPath.resolve(propertiesFilename);
+			/*
+			 * Save our own instance.
+			 */
+			CertificateRequestProperties properties = new CertificateRequestProperties(this, csr);
+			properties.setProperty(CertificateRequestProperties.Key.subject, //
+					csr.getSubject().toString());
+			properties.setProperty(CertificateRequestProperties.Key.csrFilename, //
+					getPathFilenameAsString(path));
+			properties.setProperty(CertificateRequestProperties.Key.importDate, //
+					DateTimeUtil.toString(ZonedDateTime.now(DateTimeUtil.DEFAULT_ZONE)));
+			try {
+				properties.setProperty(CertificateRequestProperties.Key.keyType, //
+						KeyPairFactory.forKeyInformation(csr.getSubjectPublicKeyInfo()).name());
+			} catch (IOException e) {
+				// ignore for foreign type that are not native for us.
+			}
+
+			// Generate the properties file.
+			Path propertiesPath = path.getParent();
+			if(propertiesPath == null) {
+				throw new IllegalStateException("Properties Parent Path is NULL?");
+			}
+			String propertiesFilename = getPathFilenameAsString(path);
+			propertiesFilename = propertiesFilename.substring(0, propertiesFilename.lastIndexOf('.'))
+					+ CertificateRequestProperties.DEFAULT_EXTENSION;
+			propertiesPath = propertiesPath.resolve(propertiesFilename);
 
-		properties.setProperty(CertificateRequestProperties.Key.filename, propertiesFilename);
-		try (FileOutputStream out = new FileOutputStream(propertiesPath.toFile())) {
-			properties.store(out);
+			properties.setProperty(CertificateRequestProperties.Key.filename, propertiesFilename);
+			try (OutputStream out = put(propertiesPath)) {
+				properties.store(out);
+			}
+			// Add it to the map and let any listeners know...
+			requests.put(path, properties);
+			fireItemsChanged(PROPERTY_REQUESTS, requests, Collections.singletonList(properties), null, null);
+			return properties;
+		} finally {
+			storeLock.readLock().unlock();
 		}
-		// Add it to the map and let any listeners know...
-		Map<Path, CertificateRequestProperties> oldValue = new ConcurrentHashMap<>(requests);
-		requests.put(path, properties);
-		propertySupport.firePropertyChange(PROPERTY_REQUESTS, oldValue, requests);
-		return properties;
 	}
 
 	/**
@@ -889,27 +1257,30 @@ public class CertificateAuthority {
 	 * @throws IOException Failed to delete the CSR.
 	 */
 	public void removeCertificateSigningRequest(CertificateRequestProperties request) throws IOException {
-		if (request == null) {
-			throw new IllegalArgumentException("Missing certificate request details");
-		}
+		lockForUpdate();
+		try {
+			if (request == null) {
+				throw new IllegalArgumentException("Missing certificate request details");
+			}
 		
-		this.logger.log(Level.INFO, "Removing CSR {0}", request.getProperty(CertificateRequestProperties.Key.subject));
-		// Find the item in the map of CSRs.
-		Path path = requests.entrySet().stream()//
-				.filter(e -> e.getValue() == request)//
-				.findFirst()//
-				.map(e -> e.getKey())//
-				.orElse(null);
-		if (path == null) {
-			throw new NoSuchElementException("The Certificate Request doesn't exist");
-		}
-		Files.delete(path);
-		Files.delete(basePath.resolve(PROPERTY_REQUESTS)
-				.resolve(request.getProperty(CertificateRequestProperties.Key.filename)));
+			this.logger.log(Level.INFO, "Removing CSR {0}", request.getProperty(CertificateRequestProperties.Key.subject));
+			// Find the item in the map of CSRs.
+			Path path = requests.entrySet().stream()//
+					.filter(e -> e.getValue() == request)//
+					.findFirst()//
+					.map(e -> e.getKey())//
+					.orElse(null);
+			if (path == null) {
+				throw new NoSuchElementException("The Certificate Request doesn't exist");
+			}
+			delete(path);
+			datastore.delete(REQUESTS_PATH, request.getProperty(CertificateRequestProperties.Key.filename));
 
-		Map<Path, CertificateRequestProperties> oldValue = new ConcurrentHashMap<>(requests);
-		requests.remove(path);
-		propertySupport.firePropertyChange(PROPERTY_REQUESTS, oldValue, requests);
+			requests.remove(path);
+			fireItemsChanged(PROPERTY_REQUESTS, requests, null, Collections.singletonList(request), null);
+		} finally {
+			storeLock.readLock().unlock();
+		}
 	}
 	
 	/**
@@ -922,39 +1293,45 @@ public class CertificateAuthority {
 	 */
 	public void moveCertificateSigningRequest(CertificateRequestProperties request, IssuedCertificateProperties newCert)
 			throws IOException {
-		if (newCert == null) {
-			throw new IllegalArgumentException("Missing issued certificate details");
-		}
-		if (request == null) {
-			throw new IllegalArgumentException("Missing certificate request details");
-		}
-		this.logger.log(Level.INFO, "Moving CSR {0} for Certificate {1}", 
-				new Object[] {request.getProperty(CertificateRequestProperties.Key.subject), 
-						newCert.getProperty(IssuedCertificateProperties.Key.subject)});
-		// Find the item in the map of CSRs.
-		Path path = requests.entrySet().stream()//
-				.filter(e -> e.getValue() == request)//
-				.findFirst()//
-				.map(e -> e.getKey())//
-				.orElse(null);
-		if (path == null) {
-			throw new NoSuchElementException("The Certificate Request doesn't exist");
-		}
-		String filename = newCert.getProperty(IssuedCertificateProperties.Key.pkcs12store);
-		if (filename == null) {
-			filename = newCert.getProperty(IssuedCertificateProperties.Key.pkcs7store);
-		}
-		filename = filename.substring(0, filename.lastIndexOf('.')) + ICertificateRequest.DEFAULT_EXTENSION;
-		Path target = basePath.resolve(ISSUED_PATH).resolve(filename);
-		Path file = target.getFileName();
-		if (file == null) {
-			throw new NoSuchElementException("Missing required certificate information");
-		}
-		Files.copy(path, target, StandardCopyOption.COPY_ATTRIBUTES, StandardCopyOption.REPLACE_EXISTING);
-		newCert.setProperty(IssuedCertificateProperties.Key.csrStore, file.toString());
-		try (FileOutputStream out = new FileOutputStream(basePath.resolve(ISSUED_PATH)
-				.resolve(newCert.getProperty(IssuedCertificateProperties.Key.filename)).toFile())) {
-			newCert.store(out);
+		lockForUpdate();
+		try {
+			if (newCert == null) {
+				throw new IllegalArgumentException("Missing issued certificate details");
+			}
+			if (request == null) {
+				throw new IllegalArgumentException("Missing certificate request details");
+			}
+			this.logger.log(Level.INFO, "Moving CSR {0} for Certificate {1}", 
+					new Object[] {request.getProperty(CertificateRequestProperties.Key.subject), 
+							newCert.getProperty(IssuedCertificateProperties.Key.subject)});
+			// Find the item in the map of CSRs.
+			Path path = requests.entrySet().stream()//
+					.filter(e -> e.getValue() == request)//
+					.findFirst()//
+					.map(e -> e.getKey())//
+					.orElse(null);
+			if (path == null) {
+				throw new NoSuchElementException("The Certificate Request doesn't exist");
+			}
+			String filename = newCert.getProperty(IssuedCertificateProperties.Key.pkcs12store);
+			if (filename == null) {
+				filename = newCert.getProperty(IssuedCertificateProperties.Key.pkcs7store);
+			}
+			filename = filename.substring(0, filename.lastIndexOf('.')) + ICertificateRequest.DEFAULT_EXTENSION;
+			Path target = datastore.resolve(ISSUED_PATH, filename);
+			Path file = target.getFileName();
+			Path source = path.getFileName();
+			if (file == null || source == null) {
+				throw new NoSuchElementException("Missing required certificate information");
+			}
+			datastore.copy(REQUESTS_PATH, source.toString(), ISSUED_PATH, file.toString());
+			newCert.setProperty(IssuedCertificateProperties.Key.csrStore, file.toString());
+			try (OutputStream out = datastore.put(ISSUED_PATH,
+					newCert.getProperty(IssuedCertificateProperties.Key.filename))) {
+				newCert.store(out);
+			}
+		} finally {
+			storeLock.readLock().unlock();
 		}
 	}
 
@@ -969,57 +1346,58 @@ public class CertificateAuthority {
 	 */
 	public IssuedCertificateProperties revokeCertificate(IssuedCertificateProperties certificateToRevoke,
 			ZonedDateTime revokeDate, RevokeReasonCode code) throws IOException {
-		if (certificateToRevoke == null) {
-			throw new IllegalArgumentException("Missing certificate details");
-		}
-		if (revokeDate == null) {
-			revokeDate = ZonedDateTime.now(DateTimeUtil.DEFAULT_ZONE);
-		}
-		if (code == null) {
-			code = RevokeReasonCode.UNSPECIFIED;
-		}
-		this.logger.log(Level.INFO, "Revoke Certificate  {0} for {1}", 
-				new Object[] {certificateToRevoke.getProperty(IssuedCertificateProperties.Key.subject), code});
-		if (certificateToRevoke.getProperty(Key.revokeDate) != null) {
-			throw new IllegalArgumentException("Certificate already revoked?");
-		}
-		certificateToRevoke.setProperty(Key.revokeDate, DateTimeUtil.toString(revokeDate));
-		certificateToRevoke.setProperty(Key.revokeCode, code.name());
-		certificateToRevoke.clearIssuedCertificate();
+		lockForUpdate();
+		try {
+			if (certificateToRevoke == null) {
+				throw new IllegalArgumentException("Missing certificate details");
+			}
+			if (revokeDate == null) {
+				revokeDate = ZonedDateTime.now(DateTimeUtil.DEFAULT_ZONE);
+			}
+			if (code == null) {
+				code = RevokeReasonCode.UNSPECIFIED;
+			}
+			this.logger.logCertificate(Level.INFO, "Revoke Certificate  {0} for {1}",
+					certificateToRevoke.getProperty(IssuedCertificateProperties.Key.subject),
+					certificateToRevoke.getProperty(IssuedCertificateProperties.Key.certificateSerialNumber),
+					new Object[] { certificateToRevoke.getProperty(IssuedCertificateProperties.Key.subject), code });
+			if (certificateToRevoke.getProperty(Key.revokeDate) != null) {
+				throw new IllegalArgumentException("Certificate already revoked?");
+			}
+			certificateToRevoke.setProperty(Key.revokeDate, DateTimeUtil.toString(revokeDate));
+			certificateToRevoke.setProperty(Key.revokeCode, code.name());
+			certificateToRevoke.clearIssuedCertificate();
+
+			// Move the underlying files to the new location.
+			if (certificateToRevoke.getProperty(Key.pkcs12store) != null) {
+				datastore.move(ISSUED_PATH, certificateToRevoke.getProperty(Key.pkcs12store), REVOKED_PATH);
+			} else {
+				datastore.move(ISSUED_PATH, certificateToRevoke.getProperty(Key.pkcs7store), REVOKED_PATH);
+			}
+			if (certificateToRevoke.getProperty(Key.csrStore) != null) {
+				datastore.move(ISSUED_PATH, certificateToRevoke.getProperty(Key.csrStore), REVOKED_PATH);
+			}
+			String propertiesFilename = certificateToRevoke.getProperty(Key.filename);
+			Path src = datastore.resolve(ISSUED_PATH, propertiesFilename);
+			Path dest = datastore.resolve(REVOKED_PATH, propertiesFilename);
+			datastore.move(ISSUED_PATH, propertiesFilename, REVOKED_PATH);
+			try (OutputStream out = datastore.put(REVOKED_PATH, propertiesFilename)) {
+				certificateToRevoke.store(out);
+			}
 
-		// Move the underlying files to the new location.
-		if (certificateToRevoke.getProperty(Key.pkcs12store) != null) {
-			Path src = basePath.resolve(ISSUED_PATH).resolve(certificateToRevoke.getProperty(Key.pkcs12store));
-			Path dest = basePath.resolve(REVOKED_PATH).resolve(certificateToRevoke.getProperty(Key.pkcs12store));
-			Files.move(src, dest, StandardCopyOption.REPLACE_EXISTING);
-		} else {
-			Path src = basePath.resolve(ISSUED_PATH).resolve(certificateToRevoke.getProperty(Key.pkcs7store));
-			Path dest = basePath.resolve(REVOKED_PATH).resolve(certificateToRevoke.getProperty(Key.pkcs7store));
-			Files.move(src, dest, StandardCopyOption.REPLACE_EXISTING);
-		}
-		if (certificateToRevoke.getProperty(Key.csrStore) != null) {
-			Path src = basePath.resolve(ISSUED_PATH).resolve(certificateToRevoke.getProperty(Key.csrStore));
-			Path dest = basePath.resolve(REVOKED_PATH).resolve(certificateToRevoke.getProperty(Key.csrStore));
-			Files.move(src, dest, StandardCopyOption.REPLACE_EXISTING);
+			/*
+			 * Update the stored internal lists.
+			 */
+			List<IssuedCertificateProperties> item = Collections.singletonList(certificateToRevoke);
+			issuedCertificates.remove(src);
+			fireItemsChanged(PROPERTY_ISSUED, issuedCertificates, null, item, null);
+
+			revokedCertificates.put(dest, certificateToRevoke);
+			fireItemsChanged(PROPERTY_REVOKED, revokedCertificates, item, null, null);
+			return certificateToRevoke;
+		} finally {
+			storeLock.readLock().unlock();
 		}
-		Path src = basePath.resolve(ISSUED_PATH).resolve(certificateToRevoke.getProperty(Key.filename));
-		Path dest = basePath.resolve(REVOKED_PATH).resolve(certificateToRevoke.getProperty(Key.filename));
-		Files.move(src, dest, StandardCopyOption.REPLACE_EXISTING);
-		try (FileOutputStream out = new FileOutputStream(dest.toFile())) {
-			certificateToRevoke.store(out);
-		}
-
-		/*
-		 * Update the stored internal lists.
-		 */
-		Map<Path, IssuedCertificateProperties> oldValue = new ConcurrentHashMap<>(issuedCertificates);
-		issuedCertificates.remove(src);
-		propertySupport.firePropertyChange(PROPERTY_ISSUED, oldValue.values(), issuedCertificates.values());
-
-		Map<Path, IssuedCertificateProperties> oldValue2 = new ConcurrentHashMap<>(revokedCertificates);
-		revokedCertificates.put(dest, certificateToRevoke);
-		propertySupport.firePropertyChange(PROPERTY_REVOKED, oldValue2, revokedCertificates);
-		return certificateToRevoke;
 	}
 
 	/**
@@ -1029,28 +1407,40 @@ public class CertificateAuthority {
 	 * @throws IOException If updating the backing store fails.
 	 */
 	public void updateIssuedCertificateProperties(IssuedCertificateProperties properties) throws IOException {
-		Objects.requireNonNull(properties, "Missing Certificate Properties");
+		lockForUpdate();
+		try {
+			Objects.requireNonNull(properties, "Missing Certificate Properties");
 		
-		this.logger.log(Level.INFO, "Update Certificate Properties {0}", 
-				properties.getProperty(IssuedCertificateProperties.Key.subject));
+			this.logger.logCertificate(Level.INFO, "Update Certificate Properties {0}",
+					properties.getProperty(IssuedCertificateProperties.Key.subject),
+					properties.getProperty(IssuedCertificateProperties.Key.certificateSerialNumber),
+					new Object[] { properties.getProperty(IssuedCertificateProperties.Key.subject) });
 		
-		// Find which element this one represents.
-		Path p = issuedCertificates.entrySet().stream()//
-				.filter(e -> e.getValue().equals(properties))//
-				.findFirst()//
-				.map(e -> e.getKey())//
-				.orElse(null);
-		if (p == null) {
-			p = revokedCertificates.entrySet().stream()//
+			// Find which element this one represents.
+			String property = PROPERTY_ISSUED;
+			Map<Path, IssuedCertificateProperties> items = issuedCertificates;
+			Path p = issuedCertificates.entrySet().stream()//
 					.filter(e -> e.getValue().equals(properties))//
 					.findFirst()//
 					.map(e -> e.getKey())//
 					.orElse(null);
-		}
-		if (p != null) {
-			try (FileOutputStream out = new FileOutputStream(p.toFile())) {
-				properties.store(out);
+			if (p == null) {
+				property = PROPERTY_REVOKED;
+				items = revokedCertificates;
+				p = revokedCertificates.entrySet().stream()//
+						.filter(e -> e.getValue().equals(properties))//
+						.findFirst()//
+						.map(e -> e.getKey())//
+						.orElse(null);
+			}
+			if (p != null) {
+				try (OutputStream out = put(p)) {
+					properties.store(out);
+				}
+				fireItemsChanged(property, items, null, null, Collections.singletonList(items.get(p)));
 			}
+		} finally {
+			storeLock.readLock().unlock();
 		}
 	}
 
@@ -1061,19 +1451,25 @@ public class CertificateAuthority {
 	 * @throws IOException If updating the backing store fails.
 	 */
 	public void updateCertificateRequestProperties(CertificateRequestProperties properties) throws IOException {
-		Objects.requireNonNull(properties, "Missing Certificate Request Properties");
-		this.logger.log(Level.INFO, "Update Certificate Request Properties {0}", 
-				properties.getProperty(CertificateRequestProperties.Key.subject));
-		// Find which element this one represents.
-		Path p = requests.entrySet().stream()//
-				.filter(e -> e.getValue().equals(properties))//
-				.findFirst()//
-				.map(e -> e.getKey())//
-				.orElse(null);
-		if (p != null) {
-			try (FileOutputStream out = new FileOutputStream(p.toFile())) {
-				properties.store(out);
+		lockForUpdate();
+		try {
+			Objects.requireNonNull(properties, "Missing Certificate Request Properties");
+			this.logger.log(Level.INFO, "Update Certificate Request Properties {0}", 
+					properties.getProperty(CertificateRequestProperties.Key.subject));
+			// Find which element this one represents.
+			Path p = requests.entrySet().stream()//
+					.filter(e -> e.getValue().equals(properties))//
+					.findFirst()//
+					.map(e -> e.getKey())//
+					.orElse(null);
+			if (p != null) {
+				try (OutputStream out = put(p)) {
+					properties.store(out);
+				}
+				fireItemsChanged(PROPERTY_REQUESTS, requests, null, null, Collections.singletonList(requests.get(p)));
 			}
+		} finally {
+			storeLock.readLock().unlock();
 		}
 	}
 
@@ -1084,18 +1480,24 @@ public class CertificateAuthority {
 	 * @throws IOException If updating the backing store fails.
 	 */
 	public void updateCRLProperties(CRLProperties properties) throws IOException {
-		Objects.requireNonNull(properties, "Missing CRL Properties");
-		this.logger.log(Level.INFO, "Update CRL Properties {0}", properties.getProperty(CRLProperties.Key.crlSerialNumber));
-		// Find which element this one represents.
-		Path p = crls.entrySet().stream()//
-				.filter(e -> e.getValue().equals(properties))//
-				.findFirst()//
-				.map(e -> e.getKey())//
-				.orElse(null);
-		if (p != null) {
-			try (FileOutputStream out = new FileOutputStream(p.toFile())) {
-				properties.store(out);
+		lockForUpdate();
+		try {
+			Objects.requireNonNull(properties, "Missing CRL Properties");
+			this.logger.log(Level.INFO, "Update CRL Properties {0}", properties.getProperty(CRLProperties.Key.crlSerialNumber));
+			// Find which element this one represents.
+			Path p = crls.entrySet().stream()//
+					.filter(e -> e.getValue().equals(properties))//
+					.findFirst()//
+					.map(e -> e.getKey())//
+					.orElse(null);
+			if (p != null) {
+				try (OutputStream out = put(p)) {
+					properties.store(out);
+				}
+				fireItemsChanged(PROPERTY_CRLS, crls, null, null, Collections.singletonList(crls.get(p)));
 			}
+		} finally {
+			storeLock.readLock().unlock();
 		}
 	}
 
@@ -1112,54 +1514,60 @@ public class CertificateAuthority {
 	 */
 	public CRLProperties createCRL(ZonedDateTime crlExpiryDate) throws DatastoreLockedException, IOException,
 			CRLException, CertificateEncodingException, OperatorCreationException {
-		checkDatastoreLock();
-		if (crlExpiryDate == null) {
-			crlExpiryDate = ZonedDateTime.now(DateTimeUtil.DEFAULT_ZONE).plusDays(getExpiryDays());
-		}
-		X509CRL crl = CertificateFactory.generateCRL(this, crlExpiryDate);
-		this.logger.log(Level.INFO, "Create CRL {0}", crlExpiryDate);
-		X509CRLHolder holder = new X509CRLHolder(crl.getEncoded());
-
-		X500Name issuer = holder.getIssuer();
-		Extension ext = holder.getExtension(Extension.cRLNumber);
-		CRLNumber serial = CRLNumber.getInstance(ext.getParsedValue());
-		Path filename = generateFilename(serial.getCRLNumber(), X509CRL_PATH, ".crl");
-
-		/*
-		 * Save our own instance.
-		 */
-		CRLProperties crlProp = new CRLProperties(this, crl);
-		crlProp.setProperty(CRLProperties.Key.issuer, //
-				issuer.toString());
-		crlProp.setProperty(CRLProperties.Key.crlSerialNumber, //
-				serial.getCRLNumber().toString());
-		crlProp.setProperty(CRLProperties.Key.issueDate, //
-				DateTimeUtil.toString(crl.getThisUpdate()));
-		crlProp.setProperty(CRLProperties.Key.nextExpectedDate, //
-				DateTimeUtil.toString(crl.getNextUpdate()));
-		crlProp.setProperty(CRLProperties.Key.crlFilename, //
-				getPathFilenameAsString(filename));
-
-		// Generate the properties file.
-		Path propertiesPath = filename.getParent();
-		String propertiesFilename = getPathFilenameAsString(filename);
-		propertiesFilename = propertiesFilename.substring(0, propertiesFilename.lastIndexOf('.'))
-				+ CRLProperties.DEFAULT_EXTENSION;
-		if(propertiesPath == null) {
-			throw new IllegalStateException("Properties Parent Path is NULL?");
-		}
-		propertiesPath = propertiesPath.resolve(propertiesFilename);
-		crlProp.setProperty(CRLProperties.Key.filename, propertiesFilename);
-
-		// And store.
-		X509CRLEncoder.create(filename, EncodingType.DER, crl);
-		try (FileOutputStream out = new FileOutputStream(propertiesPath.toFile())) {
-			crlProp.store(out);
-		}
-		ConcurrentHashMap<Path, CRLProperties> oldValue = new ConcurrentHashMap<>(crls);
-		crls.put(propertiesPath, crlProp);
-		propertySupport.firePropertyChange(PROPERTY_CRLS, oldValue.values(), crls.values());
-		return crlProp;
+		lockForUpdate();
+		try {
+			IIssuedCertificate signer = getIssuer();
+			if (crlExpiryDate == null) {
+				crlExpiryDate = ZonedDateTime.now(DateTimeUtil.DEFAULT_ZONE).plusDays(getExpiryDays());
+			}
+			X509CRL crl = CertificateFactory.generateCRL(this, signer, crlExpiryDate);
+			this.logger.log(Level.INFO, "Create CRL {0}", crlExpiryDate);
+			X509CRLHolder holder = new X509CRLHolder(crl.getEncoded());
+
+			X500Name issuer = holder.getIssuer();
+			Extension ext = holder.getExtension(Extension.cRLNumber);
+			CRLNumber serial = CRLNumber.getInstance(ext.getParsedValue());
+			Path filename = generateFilename(serial.getCRLNumber(), X509CRL_PATH, ".crl");
+
+			/*
+			 * Save our own instance.
+			 */
+			CRLProperties crlProp = new CRLProperties(this, crl);
+			crlProp.setProperty(CRLProperties.Key.issuer, //
+					issuer.toString());
+			crlProp.setProperty(CRLProperties.Key.crlSerialNumber, //
+					serial.getCRLNumber().toString());
+			crlProp.setProperty(CRLProperties.Key.issueDate, //
+					DateTimeUtil.toString(crl.getThisUpdate()));
+			crlProp.setProperty(CRLProperties.Key.nextExpectedDate, //
+					DateTimeUtil.toString(crl.getNextUpdate()));
+			crlProp.setProperty(CRLProperties.Key.crlFilename, //
+					getPathFilenameAsString(filename));
+
+			// Generate the properties file.
+			Path propertiesPath = filename.getParent();
+			String propertiesFilename = getPathFilenameAsString(filename);
+			propertiesFilename = propertiesFilename.substring(0, propertiesFilename.lastIndexOf('.'))
+					+ CRLProperties.DEFAULT_EXTENSION;
+			if(propertiesPath == null) {
+				throw new IllegalStateException("Properties Parent Path is NULL?");
+			}
+			propertiesPath = propertiesPath.resolve(propertiesFilename);
+			crlProp.setProperty(CRLProperties.Key.filename, propertiesFilename);
+
+			// And store.
+			try (OutputStream out = put(filename)) {
+				X509CRLEncoder.save(out, EncodingType.DER, crl);
+			}
+			try (OutputStream out = put(propertiesPath)) {
+				crlProp.store(out);
+			}
+			crls.put(propertiesPath, crlProp);
+			fireItemsChanged(PROPERTY_CRLS, crls, Collections.singletonList(crlProp), null, null);
+			return crlProp;
+		} finally {
+			storeLock.readLock().unlock();
+		}
 	}
 
 	/**
@@ -1168,10 +1576,23 @@ public class CertificateAuthority {
 	 * @throws DatastoreLockedException The datastore is locked
 	 */
 	private void checkDatastoreLock() throws DatastoreLockedException {
-		if (isLocked()) {
+		getIssuer();
+	}
+
+	/**
+	 * Get the issuer information, checking the lock on the data store. Operations read the issuer information once,
+	 * and use the instance returned throughout, as the datastore may be locked (or the issuer replaced) meanwhile.
+	 * 
+	 * @return The issuer information.
+	 * @throws DatastoreLockedException The datastore is locked
+	 */
+	IIssuedCertificate getIssuer() throws DatastoreLockedException {
+		IIssuedCertificate issuer = issuerInformation;
+		if (issuer == null) {
 			throw new DatastoreLockedException(
 					"The Certificate Authority Datastore is locked. Unable to complete requested operation.");
 		}
+		return issuer;
 	}
 
 	/**
@@ -1186,7 +1607,59 @@ public class CertificateAuthority {
 	 */
 	protected Path generateFilename(BigInteger serial, String element, String suffix) {
 		String value = String.format("%016x%s", serial, suffix);
-		return basePath.resolve(element).resolve(value);
+		return datastore.resolve(element, value);
+	}
+
+	/**
+	 * Read the given artefact (certificate store, CSR or CRL) from the datastore.
+	 * <p>
+	 * The artefact is searched for in all search containers of the datastore, in order.
+	 * 
+	 * @param filename The filename of the artefact.
+	 * @return The contents of the artefact.
+	 * @throws IOException If the artefact does not exist or reading it fails.
+	 */
+	public byte[] readArtefact(String filename) throws IOException {
+		if (filename == null) {
+			throw new NoSuchFileException("Missing filename");
+		}
+		String container = datastore.find(filename, searchContainers);
+		if (container == null) {
+			throw new NoSuchFileException(filename);
+		}
+		return datastore.read(container, filename);
+	}
+
+	/**
+	 * Open the item with the given logical path in the datastore for writing.
+	 * 
+	 * @param path The logical path of the item, as created by {@link IDatastore#resolve(String, String)}.
+	 * @return An output stream to write the item.
+	 * @throws IOException If opening the item fails.
+	 */
+	private OutputStream put(Path path) throws IOException {
+		return datastore.put(getContainer(path), getPathFilenameAsString(path));
+	}
+
+	/**
+	 * Delete the item with the given logical path from the datastore.
+	 * 
+	 * @param path The logical path of the item, as created by {@link IDatastore#resolve(String, String)}.
+	 * @throws IOException If deleting the item fails.
+	 */
+	private void delete(Path path) throws IOException {
+		datastore.delete(getContainer(path), getPathFilenameAsString(path));
+	}
+
+	/**
+	 * Get the datastore container of the given logical path.
+	 * 
+	 * @param path The logical path of the item.
+	 * @return The container name.
+	 */
+	private String getContainer(Path path) {
+		Path parent = basePath.relativize(path).getParent();
+		return (parent == null) ? IDatastore.ROOT : parent.toString();
 	}
 
 	/**
@@ -1206,7 +1679,7 @@ public class CertificateAuthority {
 	 * @return The default signature algorithm.
 	 * @throws DatastoreLockedException If the datastore is currently locked.
 	 */
-	public synchronized SignatureAlgorithm getSignatureAlgorithm() throws DatastoreLockedException {
+	public SignatureAlgorithm getSignatureAlgorithm() throws DatastoreLockedException {
 		checkDatastoreLock();
 		return settings.getSignatureAlgorithm();
 	}
@@ -1217,15 +1690,91 @@ public class CertificateAuthority {
 	 * @param signatureAlg The default signature algorithm
 	 * @throws IOException If storing the CA state fails.
 	 */
-	public synchronized void setSignatureAlgorithm(SignatureAlgorithm signatureAlg) throws IOException {
+	public void setSignatureAlgorithm(SignatureAlgorithm signatureAlg) throws IOException {
 		Objects.requireNonNull(signatureAlg, "Missing Signature Algorithm");
-		SignatureAlgorithm oldValue = settings.getSignatureAlgorithm();
-		settings.setSignatureAlgorithm(signatureAlg);
-		saveSettings();
+		SignatureAlgorithm oldValue = updateSettings(s -> {
+			SignatureAlgorithm previous = s.getSignatureAlgorithm();
+			s.setSignatureAlgorithm(signatureAlg);
+			return previous;
+		});
 		this.logger.log(Level.INFO, "Updating Certificate Authority Signature Algorithm {0}", signatureAlg);
 		propertySupport.firePropertyChange(PROPERTY_SIGNATURE, oldValue, signatureAlg);
 	}
 
+	/**
+	 * Replace the issuer certificate and signing key of this CA, as the final step of a key rollover.
+	 * <p>
+	 * The current issuer container is retained in the datastore under the given archive filename (if not already
+	 * present), and the new issuer is stored with the same password. Signing is blocked while the issuer is replaced.
+	 * 
+	 * @param issuer The new issuer information. Must have a public key, private key AND signed CA certificate.
+	 * @param signatureAlg The signature algorithm to use with the new key.
+	 * @param archiveFilename The filename for the archived issuer container.
+	 * @throws DatastoreLockedException If the datastore is currently locked.
+	 * @throws CertificateEncodingException The new certificate is invalid.
+	 * @throws IOException If storing the new issuer fails.
+	 * @throws IllegalArgumentException If the new issuer information is not a CA.
+	 */
+	public void replaceIssuer(IIssuedCertificate issuer, SignatureAlgorithm signatureAlg, String archiveFilename)
+			throws DatastoreLockedException, CertificateEncodingException, IOException {
+		Objects.requireNonNull(issuer, "Missing Issuer Information");
+		Objects.requireNonNull(signatureAlg, "Missing Signature Algorithm");
+		Objects.requireNonNull(archiveFilename, "Missing Archive Filename");
+		if (issuer.getPrivateKey() == null || !CertificateFactory.isCACertificate(issuer)) {
+			throw new IllegalArgumentException("Supplied Issuer Information is not a Certificate Authority");
+		}
+		storeLock.writeLock().lock();
+		try {
+			IIssuedCertificate previous = getIssuer();
+			String filename = settings.getPkcs12Filename();
+			if (!datastore.exists(IDatastore.ROOT, archiveFilename)) {
+				datastore.copy(IDatastore.ROOT, filename, IDatastore.ROOT, archiveFilename);
+			}
+			try (OutputStream out = datastore.put(IDatastore.ROOT, filename)) {
+				issuer.savePKCS12(out, previous.getPassword(), null, PKCS12Cipher.AES256);
+			}
+			issuerInformation = IssuedCertificate.loadPKCS12(
+					new ByteArrayInputStream(datastore.read(IDatastore.ROOT, filename)), previous.getPassword());
+			updateSettings(s -> {
+				s.setSignatureAlgorithm(signatureAlg);
+				return null;
+			});
+			this.logger.log(Level.INFO, "Replaced Certificate Authority Issuer, previous issuer retained as {0}",
+					archiveFilename);
+			propertySupport.firePropertyChange(PROPERTY_ISSUER, previous, issuerInformation);
+		} catch (KeyStoreException | InvalidPasswordException e) {
+			throw new IOException(e);
+		} finally {
+			storeLock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Take a snapshot of the datastore of this CA. Updates are held until the snapshot is complete, and the oldest
+	 * snapshots are then pruned. (See {@link SnapshotUtil#getKeep()}).
+	 * 
+	 * @return The snapshot.
+	 * @throws IOException If taking the snapshot fails.
+	 * @throws UnsupportedOperationException If the datastore is not held on the local filesystem.
+	 */
+	public Snapshot snapshot() throws IOException {
+		if (!(datastore instanceof FileSystemDatastore)) {
+			throw new UnsupportedOperationException("Snapshots are only supported for filesystem datastores");
+		}
+		Snapshot snapshot;
+		storeLock.writeLock().lock();
+		settingsLock.lock();
+		try {
+			snapshot = SnapshotUtil.create(basePath);
+		} finally {
+			settingsLock.unlock();
+			storeLock.writeLock().unlock();
+		}
+		this.logger.log(Level.INFO, "Created Certificate Authority Snapshot {0}", snapshot.getId());
+		SnapshotUtil.prune(basePath, SnapshotUtil.getKeep());
+		return snapshot;
+	}
+
 	/**
 	 * Get the Signing KeyPair for this CA
 	 * 
@@ -1233,9 +1782,9 @@ public class CertificateAuthority {
 	 * @throws DatastoreLockedException If the datastore is currently locked.
 	 */
 	public KeyPair getKeyPair() throws DatastoreLockedException {
-		checkDatastoreLock();
+		IIssuedCertificate issuer = getIssuer();
 		this.logger.log(Level.INFO, "Accessing Certificate Authority Keying Material");
-		return new KeyPair(issuerInformation.getPublicKey(), issuerInformation.getPrivateKey());
+		return new KeyPair(issuer.getPublicKey(), issuer.getPrivateKey());
 	}
 
 	/**
@@ -1245,20 +1794,18 @@ public class CertificateAuthority {
 	 * @throws DatastoreLockedException If the datastore is currently locked.
 	 */
 	public String getPassword() throws DatastoreLockedException {
-		checkDatastoreLock();
-		return issuerInformation.getPassword();
+		return getIssuer().getPassword();
 	}
 
 	/**
-	 * Get the next serial number for issued certificates
+	 * Get the next serial number for issued certificates. The next serial is corrected against the issued certificates
+	 * when the contents are loaded, so the contents should be loaded first.
 	 * 
 	 * @return The next serial number
 	 * @throws IOException If storing the CA state fails.
 	 */
-	public synchronized BigInteger getNextSerialNumber() throws IOException {
-		BigInteger bint = settings.getAndIncrementSerial();
-		saveSettings();
-		return bint;
+	public BigInteger getNextSerialNumber() throws IOException {
+		return updateSettings(CertificateAuthoritySettings::getAndIncrementSerial);
 	}
 
 	/**
@@ -1267,10 +1814,8 @@ public class CertificateAuthority {
 	 * @return The next serial number
 	 * @throws IOException If storing the CA state fails.
 	 */
-	public synchronized BigInteger getNextSerialCRLNumber() throws IOException {
-		BigInteger bint = settings.getAndIncrementCRLSerial();
-		saveSettings();
-		return bint;
+	public BigInteger getNextSerialCRLNumber() throws IOException {
+		return updateSettings(CertificateAuthoritySettings::getAndIncrementCRLSerial);
 	}
 
 	/**
@@ -1278,7 +1823,7 @@ public class CertificateAuthority {
 	 * 
 	 * @return The next serial number
 	 */
-	public synchronized BigInteger peekNextSerialCRLNumber() {
+	public BigInteger peekNextSerialCRLNumber() {
 		return settings.getCRLSerial();
 	}
 
@@ -1288,6 +1833,7 @@ public class CertificateAuthority {
 	 * @return A Collection of all Certificate Key Pair Templates.
 	 */
 	public Collection<ICertificateKeyPairTemplate> getCertificateKeyPairTemplates() {
+		ensureLoaded();
 		return templates.values();
 	}
 
@@ -1297,6 +1843,7 @@ public class CertificateAuthority {
 	 * @return A Collection of all Certificate Requests.
 	 */
 	public Collection<CertificateRequestProperties> getCertificateRequests() {
+		ensureLoaded();
 		return requests.values();
 	}
 
@@ -1306,6 +1853,7 @@ public class CertificateAuthority {
 	 * @return A Collection of all Certificate Created/Issued.
 	 */
 	public Collection<IssuedCertificateProperties> getIssuedCertificates() {
+		ensureLoaded();
 		return issuedCertificates.values();
 	}
 
@@ -1315,6 +1863,7 @@ public class CertificateAuthority {
 	 * @return A Collection of all Certificate Created/Issued that have been revoked.
 	 */
 	public Collection<IssuedCertificateProperties> getRevokedCertificates() {
+		ensureLoaded();
 		return revokedCertificates.values();
 	}
 
@@ -1324,6 +1873,7 @@ public class CertificateAuthority {
 	 * @return A Collection of all CRLs
 	 */
 	public Collection<CRLProperties> getCRLs() {
+		ensureLoaded();
 		return crls.values();
 	}
 
@@ -1333,175 +1883,334 @@ public class CertificateAuthority {
 	 * 
 	 * @throws IOException If reading from the backing store fails.
 	 */
-	public synchronized void refresh() throws IOException {
-		this.logger.log(Level.INFO, "Refreshing Certificate Authority Datastore");
-		/*
-		 * Issued...
-		 */
-		final AtomicReference<BigInteger> maxCertSerial = new AtomicReference<>(BigInteger.ZERO);
-		Path path = basePath.resolve(ISSUED_PATH);
-		List<IssuedCertificateProperties> oldValues = new ArrayList<>(issuedCertificates.values());
-		Set<Path> oldPaths = new HashSet<>(issuedCertificates.keySet());
-		final Set<Path> seenPaths = new HashSet<>();
-		Files.list(path).parallel()//
-				.filter(Files::isRegularFile)//
-				.filter(p -> {
-					Path f = p.getFileName();
-					return f != null && f.toString().toLowerCase().endsWith(IssuedCertificateProperties.DEFAULT_EXTENSION);
-				}).forEach(p -> issuedCertificates.computeIfAbsent(p, (x -> {
-					try {
-						seenPaths.add(x);
-						IssuedCertificateProperties icp =  IssuedCertificateProperties.create(this, x);
-						BigInteger serial = new BigInteger(icp.getProperty(IssuedCertificateProperties.Key.certificateSerialNumber));
-						maxCertSerial.updateAndGet(i -> i.compareTo(serial) <= 0 ? serial : i);
-//						synchronized (maxCertSerial) {
-//							if (maxCertSerial.get().compareTo(serial) <= 0) {
-//								maxCertSerial.set(serial);
-//							}
-//						}
-						return icp;
-					} catch (IOException e) {
-						return null;
-					}
-				})));
-		// if seenPaths != oldPaths, we have an update.
-		if (!seenPaths.equals(oldPaths)) {
-			issuedCertificates.keySet().retainAll(seenPaths);
-			propertySupport.firePropertyChange(PROPERTY_ISSUED, oldValues, issuedCertificates.values());
-		}
-		/*
-		 * Revoked
-		 */
-		path = basePath.resolve(REVOKED_PATH);
-		oldValues = new ArrayList<>(revokedCertificates.values());
-		oldPaths = new HashSet<>(revokedCertificates.keySet());
-		seenPaths.clear();
-		Files.list(path).parallel()//
-				.filter(Files::isRegularFile)//
-				.filter(p -> {
-					Path f = p.getFileName();
-					return f != null && f.toString().toLowerCase().endsWith(IssuedCertificateProperties.DEFAULT_EXTENSION);
-				}).forEach(p -> revokedCertificates.computeIfAbsent(p, (x -> {
-					try {
-						seenPaths.add(x);
-						IssuedCertificateProperties icp =  IssuedCertificateProperties.create(this, x);
-						BigInteger serial = new BigInteger(icp.getProperty(IssuedCertificateProperties.Key.certificateSerialNumber));
-						maxCertSerial.updateAndGet(i -> i.compareTo(serial) <= 0 ? serial : i);
-//						synchronized (maxCertSerial) {
-//							if (maxCertSerial.get().compareTo(serial) <= 0) {
-//								maxCertSerial.set(serial);
-//							}
-//						}
-						return icp;
-					} catch (IOException e) {
-						return null;
-					}
-				})));
-		// if seenPaths != oldPaths, we have an update.
-		if (!seenPaths.equals(oldPaths)) {
-			revokedCertificates.keySet().retainAll(seenPaths);
-			propertySupport.firePropertyChange(PROPERTY_REVOKED, oldValues, revokedCertificates.values());
-		}
-		// If our next  serial is less than what we have seen update the internal settings value.
-		if (settings.getSerial() == null || settings.getSerial().compareTo(maxCertSerial.get()) <= 0) {
-			settings.setSerial(maxCertSerial.get().add(BigInteger.ONE));
-			saveSettings();
-		}
-		/*
-		 * Requests
-		 */
-		path = basePath.resolve(REQUESTS_PATH);
-		List<CertificateRequestProperties> requestsOldValues = new ArrayList<>(requests.values());
-		oldPaths = new HashSet<>(requests.keySet());
-		seenPaths.clear();
-		Files.list(path).parallel()//
-				.filter(Files::isRegularFile)//
-				.filter(p -> {
-					Path f = p.getFileName();
-					return f != null && f.toString().toLowerCase().endsWith(CertificateRequestProperties.DEFAULT_EXTENSION);
-				}).forEach(p -> requests.computeIfAbsent(p, (x -> {
-					try {
-						seenPaths.add(x);
-						return CertificateRequestProperties.create(this, x);
-					} catch (IOException e) {
-						return null;
-					}
-				})));
-		// if seenPaths != oldPaths, we have an update.
-		if (!seenPaths.equals(oldPaths)) {
-			requests.keySet().retainAll(seenPaths);
-			propertySupport.firePropertyChange(PROPERTY_REQUESTS, requestsOldValues, requests.values());
-		}
-
-		/*
-		 * Templates
-		 */
-		path = basePath.resolve(TEMPLATES_PATH);
-		List<ICertificateKeyPairTemplate> templatesOldValues = new ArrayList<>(templates.values());
-		oldPaths = new HashSet<>(requests.keySet());
-		seenPaths.clear();
-		Files.list(path).parallel()//
-				.filter(Files::isRegularFile)//
-				.filter(p -> {
-					Path f = p.getFileName();
-					return f != null && f.toString().toLowerCase().endsWith(ICertificateKeyPairTemplate.DEFAULT_EXTENSION);
-				}).forEach(p -> templates.computeIfAbsent(p, (x -> {
-					try {
-						seenPaths.add(x);
-						return ICertificateKeyPairTemplate.open(x);
-					} catch (IOException e) {
-						return null;
-					}
-				})));
-		// if seenPaths != oldPaths, we have an update.
-		if (!seenPaths.equals(oldPaths)) {
-			templates.keySet().retainAll(seenPaths);
-			propertySupport.firePropertyChange(PROPERTY_TEMPLATE, templatesOldValues, templates.values());
-		}
-
-		/*
-		 * CRLs
-		 */
-		// Keep a tally of the largest CRL value...
-		final AtomicReference<BigInteger> maxCRLSerial = new AtomicReference<>(BigInteger.ZERO);
-		path = basePath.resolve(X509CRL_PATH);
-		List<CRLProperties> crlsOldValues = new ArrayList<>(crls.values());
-		oldPaths = new HashSet<>(crls.keySet());
-		seenPaths.clear();
-		Files.list(path).parallel()//
-				.filter(Files::isRegularFile)//
-				.filter(p -> {
-					Path f = p.getFileName();
-					return f != null && f.toString().toLowerCase().endsWith(CRLProperties.DEFAULT_EXTENSION);
-				}).forEach(p -> crls.computeIfAbsent(p, (x -> {
-					try {
-						seenPaths.add(x);
-						CRLProperties crl = CRLProperties.create(this, x);
-						BigInteger crlSerial = new BigInteger(crl.getProperty(CRLProperties.Key.crlSerialNumber));
-						maxCRLSerial.updateAndGet(i -> i.compareTo(crlSerial) <= 0 ? crlSerial : i);
-//						synchronized (maxCRLSerial) {
-//							if (maxCRLSerial.get().compareTo(crlSerial) <= 0) {
-//								maxCRLSerial.set(crlSerial);
-//							}
-//						}
-						return crl;
-					} catch (IOException e) {
-						return null;
-					}
-				})));
-		// If our next CRL serial is less than what we have seen update the internal settings value.
-		if (settings.getCRLSerial() == null || settings.getCRLSerial().compareTo(maxCRLSerial.get()) <= 0) {
-			settings.setCRLSerial(maxCRLSerial.get().add(BigInteger.ONE));
-			saveSettings();
+	public void refresh() throws IOException {
+		refresh(null);
+	}
+
+	/**
+	 * Have the contents (issued certificates, requests, etc) been loaded from the datastore?
+	 * 
+	 * @return TRUE if the contents have been loaded.
+	 */
+	public boolean isLoaded() {
+		return loaded;
+	}
+
+	/**
+	 * Load the contents from the datastore, if not already loaded. Listeners are notified of the items loaded as for
+	 * {@link #refresh(IProgressMonitor)}.
+	 * 
+	 * @param monitor The progress monitor. (may be NULL).
+	 * @throws IOException If reading from the backing store fails.
+	 * @throws OperationCanceledException If the load is cancelled via the monitor.
+	 * @throws IllegalStateException If the contents are not loaded, and this thread holds the shared store lock.
+	 */
+	public void load(IProgressMonitor monitor) throws IOException {
+		lastAccess = System.currentTimeMillis();
+		if (loaded || storeLock.isWriteLockedByCurrentThread()) {
+			// Loaded, or being loaded by this thread. (Listeners notified during a refresh see the partial contents).
+			return;
 		}
-		
-		// if seenPaths != oldPaths, we have an update.
-		if (!seenPaths.equals(oldPaths)) {
-			crls.keySet().retainAll(seenPaths);
-			propertySupport.firePropertyChange(PROPERTY_CRLS, crlsOldValues, crls.values());
+		if (storeLock.getReadHoldCount() > 0) {
+			// The shared lock can't be upgraded, so waiting for the exclusive lock would never return.
+			throw new IllegalStateException("Certificate Authority contents are not loaded while updating");
+		}
+		storeLock.writeLock().lock();
+		try {
+			if (loaded) {
+				return;
+			}
+			refresh(monitor);
+		} finally {
+			storeLock.writeLock().unlock();
+		}
+		// Notified once the lock is released, so listeners may load or unload other CAs.
+		propertySupport.firePropertyChange(PROPERTY_LOADED, false, true);
+	}
+
+	/**
+	 * Release the contents loaded from the datastore, so they are reloaded when next needed. Listeners are notified
+	 * of the items removed. The files of the ledger are closed, until next used.
+	 * 
+	 * @return TRUE if the contents were released, FALSE if not loaded.
+	 */
+	public boolean unload() {
+		return unload(true);
+	}
+
+	/**
+	 * Release the contents loaded from the datastore as for {@link #unload()}, unless the store lock is held (such as
+	 * during an update or load), in which case the contents are left loaded.
+	 * 
+	 * @return TRUE if the contents were released, FALSE if not loaded or in use.
+	 */
+	public boolean tryUnload() {
+		return unload(false);
+	}
+
+	/**
+	 * Release the contents loaded from the datastore.
+	 * 
+	 * @param wait TRUE to wait for the store lock, FALSE to leave the contents loaded if the lock is held.
+	 * @return TRUE if the contents were released.
+	 */
+	private boolean unload(boolean wait) {
+		if (wait) {
+			storeLock.writeLock().lock();
+		} else if (!storeLock.writeLock().tryLock()) {
+			return false;
+		}
+		try {
+			if (!loaded) {
+				return false;
+			}
+			this.logger.log(Level.INFO, "Unloading Certificate Authority Datastore");
+			loaded = false;
+			if (ledger != null) {
+				try {
+					ledger.close();
+				} catch (IOException e) {
+					this.logger.log(Level.WARNING, "Unable to close the issuance ledger");
+				}
+			}
+			update(PROPERTY_ISSUED, issuedCertificates, Collections.emptyMap());
+			update(PROPERTY_REVOKED, revokedCertificates, Collections.emptyMap());
+			update(PROPERTY_REQUESTS, requests, Collections.emptyMap());
+			update(PROPERTY_TEMPLATE, templates, Collections.emptyMap());
+			update(PROPERTY_CRLS, crls, Collections.emptyMap());
+		} finally {
+			storeLock.writeLock().unlock();
+		}
+		propertySupport.firePropertyChange(PROPERTY_LOADED, true, false);
+		return true;
+	}
+
+	/**
+	 * Get the time the contents were last accessed.
+	 * 
+	 * @return The time of last access (in milliseconds since the epoch).
+	 */
+	public long getLastAccess() {
+		return lastAccess;
+	}
+
+	/**
+	 * Get the number of items (issued and revoked certificates, requests, templates and CRLs) loaded.
+	 * 
+	 * @return The number of items loaded, or 0 if the contents are not loaded.
+	 */
+	public int getLoadedSize() {
+		if (!loaded) {
+			return 0;
+		}
+		return issuedCertificates.size() + revokedCertificates.size() + requests.size() + templates.size()
+				+ crls.size();
+	}
+
+	/**
+	 * Load the contents if not already loaded, for methods that may not fail. A failure is logged, and the load
+	 * retried on next access.
+	 */
+	private void ensureLoaded() {
+		if (loaded) {
+			lastAccess = System.currentTimeMillis();
+			return;
+		}
+		try {
+			load(null);
+		} catch (IOException | OperationCanceledException e) {
+			this.logger.log(Level.SEVERE, "Loading Certificate Authority failed: {0}", e.getMessage());
+		}
+	}
+
+	/**
+	 * Acquire the (shared) store lock for a modification, loading the contents first if not already loaded. (The
+	 * contents are loaded before the lock is acquired, as loading requires the exclusive lock. If unloaded before the
+	 * lock is acquired, the lock is released and the contents loaded again).
+	 * 
+	 * @throws IOException If loading the contents fails.
+	 */
+	private void lockForUpdate() throws IOException {
+		while (true) {
+			load(null);
+			storeLock.readLock().lock();
+			if (loaded) {
+				return;
+			}
+			storeLock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Refresh from the underlying datastore. (Since this uses the filesystem to store all objects, the underlying
+	 * filesystem may have changed).
+	 * <p>
+	 * Each container is scanned in parallel on the datastore scanning pool, and the internal collections are only
+	 * updated once a container has been fully scanned. If cancelled, collections not yet scanned are left unchanged.
+	 * 
+	 * @param monitor The progress monitor. (may be NULL).
+	 * @throws IOException If reading from the backing store fails.
+	 * @throws OperationCanceledException If the refresh is cancelled via the monitor.
+	 */
+	public void refresh(IProgressMonitor monitor) throws IOException {
+		storeLock.writeLock().lock();
+		try {
+			this.logger.log(Level.INFO, "Refreshing Certificate Authority Datastore");
+			SubMonitor progress = SubMonitor.convert(monitor, "Refreshing Certificate Authority", 5);
+			DatastoreScanner scanner = new DatastoreScanner(datastore);
+			/*
+			 * Issued...
+			 */
+			progress.subTask(ISSUED_PATH);
+			Map<Path, IssuedCertificateProperties> issued = scanner.scan(ISSUED_PATH,
+					IssuedCertificateProperties.DEFAULT_EXTENSION, issuedCertificates,
+					in -> IssuedCertificateProperties.load(this, in), progress.split(1));
+			update(PROPERTY_ISSUED, issuedCertificates, issued);
+			/*
+			 * Revoked
+			 */
+			progress.subTask(REVOKED_PATH);
+			Map<Path, IssuedCertificateProperties> revoked = scanner.scan(REVOKED_PATH,
+					IssuedCertificateProperties.DEFAULT_EXTENSION, revokedCertificates,
+					in -> IssuedCertificateProperties.load(this, in), progress.split(1));
+			update(PROPERTY_REVOKED, revokedCertificates, revoked);
+			// If our next serial is less than what we have seen update the internal settings value.
+			BigInteger maxCertSerial = getMaxSerial(issuedCertificates.values(),
+					IssuedCertificateProperties::getSerialNumber);
+			maxCertSerial = maxCertSerial.max(getMaxSerial(revokedCertificates.values(),
+					IssuedCertificateProperties::getSerialNumber));
+			if (settings.getSerial() == null || settings.getSerial().compareTo(maxCertSerial) <= 0) {
+				final BigInteger serial = maxCertSerial.add(BigInteger.ONE);
+				updateSettings(s -> {
+					s.setSerial(serial);
+					return null;
+				});
+			}
+			/*
+			 * Requests
+			 */
+			progress.subTask(REQUESTS_PATH);
+			Map<Path, CertificateRequestProperties> csrs = scanner.scan(REQUESTS_PATH,
+					CertificateRequestProperties.DEFAULT_EXTENSION, requests,
+					in -> CertificateRequestProperties.load(this, in), progress.split(1));
+			update(PROPERTY_REQUESTS, requests, csrs);
+			/*
+			 * Templates
+			 */
+			progress.subTask(TEMPLATES_PATH);
+			Map<Path, ICertificateKeyPairTemplate> templateItems = scanner.scan(TEMPLATES_PATH,
+					ICertificateKeyPairTemplate.DEFAULT_EXTENSION, templates, ICertificateKeyPairTemplate::load,
+					progress.split(1));
+			update(PROPERTY_TEMPLATE, templates, templateItems);
+			/*
+			 * CRLs
+			 */
+			progress.subTask(X509CRL_PATH);
+			Map<Path, CRLProperties> crlItems = scanner.scan(X509CRL_PATH, CRLProperties.DEFAULT_EXTENSION, crls,
+					in -> CRLProperties.load(this, in), progress.split(1));
+			update(PROPERTY_CRLS, crls, crlItems);
+			// If our next CRL serial is less than what we have seen update the internal settings value.
+			BigInteger maxCRLSerial = getMaxSerial(crls.values(), CRLProperties::getSerialNumber);
+			if (settings.getCRLSerial() == null || settings.getCRLSerial().compareTo(maxCRLSerial) <= 0) {
+				final BigInteger serial = maxCRLSerial.add(BigInteger.ONE);
+				updateSettings(s -> {
+					s.setCRLSerial(serial);
+					return null;
+				});
+			}
+			loaded = true;
+		} finally {
+			storeLock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Replace the contents of the target map with the scanned items, and notify listeners of any items added or
+	 * removed.
+	 * 
+	 * @param <T> The type of item.
+	 * @param property The property of the collection.
+	 * @param target The map to update.
+	 * @param scanned The items found in the datastore.
+	 */
+	private <T> void update(String property, Map<Path, T> target, Map<Path, T> scanned) {
+		List<T> added = new ArrayList<>();
+		List<T> removed = new ArrayList<>();
+		for (Iterator<Map.Entry<Path, T>> it = target.entrySet().iterator(); it.hasNext();) {
+			Map.Entry<Path, T> entry = it.next();
+			if (!scanned.containsKey(entry.getKey())) {
+				removed.add(entry.getValue());
+				it.remove();
+			}
+		}
+		for (Map.Entry<Path, T> entry : scanned.entrySet()) {
+			if (target.putIfAbsent(entry.getKey(), entry.getValue()) == null) {
+				added.add(entry.getValue());
+			}
+		}
+		if (!added.isEmpty() || !removed.isEmpty()) {
+			fireItemsChanged(property, target, added, removed, null);
+		}
+	}
+
+	/**
+	 * Notify listeners of a change to one of the item collections. The change must already have been applied.
+	 * <p>
+	 * An {@link ItemsChangeEvent} holding just the changed items is sent, unless legacy events are enabled, in which
+	 * case the prior and current contents of the collection are sent as the old and new values. (Legacy events are
+	 * not sent for updates).
+	 * 
+	 * @param <T> The type of item.
+	 * @param property The property of the collection.
+	 * @param items The collection (after the change).
+	 * @param added The items added. (May be NULL).
+	 * @param removed The items removed. (May be NULL).
+	 * @param updated The items updated. (May be NULL).
+	 * @see #setLegacyEvents(boolean)
+	 */
+	private <T> void fireItemsChanged(String property, Map<Path, T> items, Collection<T> added, Collection<T> removed,
+			Collection<T> updated) {
+		if (!legacyEvents) {
+			propertySupport.firePropertyChange(new ItemsChangeEvent<>(this, property, added, removed, updated));
+			return;
+		}
+		if ((added == null || added.isEmpty()) && (removed == null || removed.isEmpty())) {
+			return;
+		}
+		// Rebuild the prior contents of the collection.
+		List<T> oldValue = new ArrayList<>(items.values());
+		if (added != null) {
+			Set<T> addedItems = Collections.newSetFromMap(new IdentityHashMap<>());
+			addedItems.addAll(added);
+			oldValue.removeIf(addedItems::contains);
 		}
+		if (removed != null) {
+			oldValue.addAll(removed);
+		}
+		propertySupport.firePropertyChange(property, oldValue, items.values());
 	}
 
+	/**
+	 * Get the largest serial number of the given items.
+	 * 
+	 * @param <T> The type of item.
+	 * @param items The items.
+	 * @param serial The function to get the serial number from an item.
+	 * @return The largest serial number, or zero if none.
+	 */
+	private static <T> BigInteger getMaxSerial(Collection<T> items, Function<T, BigInteger> serial) {
+		BigInteger max = BigInteger.ZERO;
+		for (T item : items) {
+			// Invalid serial numbers are held as NULL, so are ignored.
+			BigInteger value = serial.apply(item);
+			if (value != null) {
+				max = max.max(value);
+			}
+		}
+		return max;
+	}
+
+
 	/**
 	 * Get an iterator for search paths when looking for artefacts.
 	 * 
@@ -1529,6 +2238,30 @@ public class CertificateAuthority {
 		propertySupport.removePropertyChangeListener(listener);
 	}
 
+	/**
+	 * Are changes to the item collections sent as full collection change events?
+	 * 
+	 * @return TRUE if the old and new contents of a collection are sent on each change, FALSE if an
+	 *         {@link ItemsChangeEvent} is sent.
+	 */
+	public boolean isLegacyEvents() {
+		return legacyEvents;
+	}
+
+	/**
+	 * Set if changes to the item collections are sent as full collection change events.
+	 * <p>
+	 * By default an {@link ItemsChangeEvent} holding only the items added, removed or updated is sent. For listeners
+	 * that expect the old and new contents of the collection as the old and new values of the event, legacy events
+	 * may be enabled, either here or for all CAs via the {@link #LEGACY_EVENTS} system property. Note: Legacy events
+	 * copy the collection on every change.
+	 * 
+	 * @param legacyEvents TRUE to send full collection change events.
+	 */
+	public void setLegacyEvents(boolean legacyEvents) {
+		this.legacyEvents = legacyEvents;
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
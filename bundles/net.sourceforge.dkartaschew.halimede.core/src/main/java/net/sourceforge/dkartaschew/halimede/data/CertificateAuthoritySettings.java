@@ -23,6 +23,8 @@ import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.math.BigInteger;
 import java.nio.file.Path;
 import java.util.UUID;
@@ -52,7 +54,18 @@ public class CertificateAuthoritySettings {
 	 * @throws Exception If writing the information failed.
 	 */
 	public static void write(CertificateAuthoritySettings settings, Path filename) throws Exception {
-		try (XMLEncoder encoder = new XMLEncoder(new BufferedOutputStream(new FileOutputStream(filename.toFile())))) {
+		save(settings, new FileOutputStream(filename.toFile()));
+	}
+
+	/**
+	 * Store the certificate authority settings.
+	 * 
+	 * @param settings The instance to store
+	 * @param stream The stream to store the settings to. (The stream is closed on completion).
+	 * @throws Exception If writing the information failed.
+	 */
+	public static void save(CertificateAuthoritySettings settings, OutputStream stream) throws Exception {
+		try (XMLEncoder encoder = new XMLEncoder(new BufferedOutputStream(stream))) {
 			// Add a specialised persistence delegate for UUIDs
 			encoder.setPersistenceDelegate(UUID.class, new UUIDPersistenceDelegate());
 			encoder.setPersistenceDelegate(BigInteger.class, new BigIntegerPersistanceDelegate());
@@ -68,7 +81,18 @@ public class CertificateAuthoritySettings {
 	 * @throws Exception If reading/decoding the settings failed.
 	 */
 	public static CertificateAuthoritySettings read(Path filename) throws Exception {
-		try (XMLDecoder decoder = new XMLDecoder(new BufferedInputStream(new FileInputStream(filename.toFile())))) {
+		return load(new FileInputStream(filename.toFile()));
+	}
+
+	/**
+	 * Read the certificate authority settings
+	 * 
+	 * @param stream The stream to read the settings from. (The stream is closed on completion).
+	 * @return An instance of the settings.
+	 * @throws Exception If reading/decoding the settings failed.
+	 */
+	public static CertificateAuthoritySettings load(InputStream stream) throws Exception {
+		try (XMLDecoder decoder = new XMLDecoder(new BufferedInputStream(stream))) {
 			return (CertificateAuthoritySettings) decoder.readObject();
 		}
 	}
@@ -131,6 +155,23 @@ public class CertificateAuthoritySettings {
 		this.incrementalSerial = true;
 	}
 
+	/**
+	 * Create a copy of the given settings.
+	 *
+	 * @param other The settings to copy.
+	 */
+	public CertificateAuthoritySettings(CertificateAuthoritySettings other) {
+		this.description = other.description;
+		this.pkcs12Filename = other.pkcs12Filename;
+		this.serial = other.serial;
+		this.incrementalSerial = other.incrementalSerial;
+		this.uuid = other.uuid;
+		this.signatureAlg = other.signatureAlg;
+		this.expiryDays = other.expiryDays;
+		this.crlSerial = other.crlSerial;
+		this.enableLog = other.enableLog;
+	}
+
 	/**
 	 * Get the plain text description
 	 * 
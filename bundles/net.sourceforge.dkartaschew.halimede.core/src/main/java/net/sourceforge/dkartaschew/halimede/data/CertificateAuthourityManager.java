@@ -23,19 +23,60 @@ import java.beans.PropertyChangeSupport;
 import java.io.IOException;
 import java.nio.file.Path;
 import java.security.cert.CertificateEncodingException;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
 import javax.inject.Singleton;
 
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
+import org.eclipse.core.runtime.SubMonitor;
 import org.eclipse.e4.core.di.annotations.Creatable;
 
+import net.sourceforge.dkartaschew.halimede.data.IssuedCertificateProperties.Key;
+import net.sourceforge.dkartaschew.halimede.data.search.CertificateIndex;
+import net.sourceforge.dkartaschew.halimede.data.search.SearchResult;
+import net.sourceforge.dkartaschew.halimede.enumeration.SearchField;
 import net.sourceforge.dkartaschew.halimede.util.ProviderUtil;
 
 /**
  * Manager class for handling Certificate Authorities.
- *
+ * <p>
+ * The contents of Certificate Authorities (see {@link CertificateAuthority#load(IProgressMonitor)}) are held within a
+ * budget, set via the {@link #CACHE_ITEMS} system property. When exceeded, the contents of locked Certificate
+ * Authorities that have been idle for at least {@link #CACHE_IDLE} seconds are unloaded, least recently used first.
+ * <p>
+ * Searches load the contents of Certificate Authorities that are not loaded on demand, one at a time and only while
+ * the items loaded are within the budget, and unload them again once searched.
  */
 @Creatable
 @Singleton
@@ -54,15 +95,76 @@ public class CertificateAuthourityManager implements PropertyChangeListener {
 	public static final String PROPERTY = "certificateAuthorities";
 
 	/**
-	 * Collection of Certificate Authorities.
+	 * System Properties key (number of search threads)
+	 */
+	public static final String SEARCH_THREADS = "net.sourceforge.dkartaschew.halimede.search.threads";
+
+	/**
+	 * System Properties key (number of threads opening Certificate Authorities)
+	 */
+	public static final String LOAD_THREADS = "net.sourceforge.dkartaschew.halimede.load.threads";
+
+	/**
+	 * System Properties key (number of items loaded across all Certificate Authorities before idle CAs are unloaded)
+	 */
+	public static final String CACHE_ITEMS = "net.sourceforge.dkartaschew.halimede.cache.items";
+
+	/**
+	 * System Properties key (time in seconds a locked Certificate Authority must be idle before it may be unloaded)
+	 */
+	public static final String CACHE_IDLE = "net.sourceforge.dkartaschew.halimede.cache.idle";
+
+	/**
+	 * The default number of items loaded before idle CAs are unloaded.
+	 */
+	private static final long DEFAULT_CACHE_ITEMS = 100000;
+
+	/**
+	 * The default time in seconds a locked CA must be idle before it may be unloaded.
+	 */
+	private static final long DEFAULT_CACHE_IDLE = 60;
+
+	/**
+	 * Interval (in milliseconds) between checks for cancellation while opening Certificate Authorities.
+	 */
+	private static final long POLL_INTERVAL = 100;
+
+	/**
+	 * Idle time (in seconds) before a search thread is released.
+	 */
+	private static final long KEEP_ALIVE = 30;
+
+	/**
+	 * The shared search pool.
 	 */
-	public Set<CertificateAuthority> certificateAuthorities = new HashSet<>();
+	private static ExecutorService executor;
+
+	/**
+	 * Collection of Certificate Authorities. (Thread safe, as Certificate Authorities may be opened concurrently).
+	 */
+	public Set<CertificateAuthority> certificateAuthorities = new CopyOnWriteArraySet<>();
 
 	/**
 	 * Property Support helper.
 	 */
 	private final PropertyChangeSupport propertySupport;
 
+	/**
+	 * The search index of each Certificate Authority. (Keyed by identity, as the CA hash code follows its settings).
+	 */
+	private final Map<CertificateAuthority, CertificateIndex> indexes = Collections
+			.synchronizedMap(new IdentityHashMap<>());
+
+	/**
+	 * Serialises the loading of contents on demand for searches.
+	 */
+	private final ReentrantLock paging = new ReentrantLock();
+
+	/**
+	 * The Certificate Authority whose contents are being loaded on demand. (Guarded by paging).
+	 */
+	private CertificateAuthority paged;
+
 	/**
 	 * Create a new Certificate Authority Manager
 	 */
@@ -87,25 +189,103 @@ public class CertificateAuthourityManager implements PropertyChangeListener {
 	 * @throws IOException If opening/reading the datastore failed.
 	 */
 	public CertificateAuthority open(Path path) throws IOException {
+		return open(path, true);
+	}
+
+	/**
+	 * Open an exiting instance of CA data store.
+	 * 
+	 * @param path The filepath of the CAs datastore.
+	 * @param load TRUE to load the contents of the CA when opened, FALSE to defer loading until first needed. (See
+	 *            {@link CertificateAuthority#load(IProgressMonitor)}).
+	 * @return The Certificate Authority instance. Returns NULL if the CA wasn't created or added (possible duplicate).
+	 * @throws IOException If opening/reading the datastore failed.
+	 */
+	public CertificateAuthority open(Path path, boolean load) throws IOException {
 		CertificateAuthority ca = null;
 		try {
-			ca = CertificateAuthority.open(path);
+			ca = CertificateAuthority.open(path, load);
 		} catch (CertificateEncodingException e) {
 			// Should NEVER happen.
 		}
 		if (ca != null) {
 			ca.addPropertyChangeListener(this);
-			Set<CertificateAuthority> old = new HashSet<>(certificateAuthorities);
-			if (!certificateAuthorities.add(ca)) {
-				// Duplicate so kill it.
-				ca.removePropertyChangeListener(this);
-				ca = null;
+			Set<CertificateAuthority> old;
+			synchronized (this) {
+				old = new HashSet<>(certificateAuthorities);
+				if (!certificateAuthorities.add(ca)) {
+					// Duplicate so kill it.
+					ca.removePropertyChangeListener(this);
+					ca = null;
+				} else {
+					indexes.put(ca, new CertificateIndex(ca));
+				}
 			}
 			this.propertySupport.firePropertyChange(PROPERTY, old, certificateAuthorities);
 		}
 		return ca;
 	};
 
+	/**
+	 * Open the CA data stores at the given paths concurrently.
+	 * <p>
+	 * Each CA is added (and listeners notified) as soon as it has been opened. The call blocks until all CAs have
+	 * been opened, or the monitor is cancelled. When cancelled, CAs already being opened are still added, but are not
+	 * included in the result.
+	 * 
+	 * @param paths The filepaths of the CAs datastores.
+	 * @param load TRUE to load the contents of each CA when opened, FALSE to defer loading until first needed.
+	 * @param monitor The progress monitor. (May be NULL).
+	 * @param errors Consumer of the paths that failed to open, and the cause. Called from the calling thread. (May be
+	 *            NULL).
+	 * @return The Certificate Authorities opened, in the order opened. (Duplicates are not included).
+	 */
+	public List<CertificateAuthority> openAll(Collection<Path> paths, boolean load, IProgressMonitor monitor,
+			BiConsumer<Path, Throwable> errors) {
+		Objects.requireNonNull(paths, "Paths are not valid");
+		List<CertificateAuthority> result = new ArrayList<>();
+		if (paths.isEmpty()) {
+			return result;
+		}
+		SubMonitor subMonitor = SubMonitor.convert(monitor, "Load Certificate Authorities", paths.size());
+		final AtomicBoolean cancelled = new AtomicBoolean();
+		ExecutorService pool = createLoadExecutor(Math.min(getLoadParallelism(), paths.size()));
+		try {
+			CompletionService<CertificateAuthority> service = new ExecutorCompletionService<>(pool);
+			Map<Future<CertificateAuthority>, Path> tasks = new HashMap<>();
+			for (Path path : paths) {
+				tasks.put(service.submit(() -> cancelled.get() ? null : open(path, load)), path);
+			}
+			int remaining = tasks.size();
+			while (remaining > 0 && !cancelled.get()) {
+				Future<CertificateAuthority> task = null;
+				try {
+					task = service.poll(POLL_INTERVAL, TimeUnit.MILLISECONDS);
+					if (task != null) {
+						remaining--;
+						subMonitor.worked(1);
+						CertificateAuthority ca = task.get();
+						if (ca != null) {
+							result.add(ca);
+						}
+					}
+				} catch (ExecutionException e) {
+					if (errors != null) {
+						errors.accept(tasks.get(task), e.getCause());
+					}
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				if (subMonitor.isCanceled() || Thread.currentThread().isInterrupted()) {
+					cancelled.set(true);
+				}
+			}
+		} finally {
+			pool.shutdown();
+		}
+		return result;
+	}
+
 	/**
 	 * Open an exiting instance of CA data store.
 	 * 
@@ -120,8 +300,12 @@ public class CertificateAuthourityManager implements PropertyChangeListener {
 			throws IOException, CertificateEncodingException {
 		CertificateAuthority ca = CertificateAuthority.create(path, certificate, description);
 		ca.addPropertyChangeListener(this);
-		Set<CertificateAuthority> old = new HashSet<>(certificateAuthorities);
-		certificateAuthorities.add(ca);
+		Set<CertificateAuthority> old;
+		synchronized (this) {
+			old = new HashSet<>(certificateAuthorities);
+			certificateAuthorities.add(ca);
+			indexes.put(ca, new CertificateIndex(ca));
+		}
 		this.propertySupport.firePropertyChange(PROPERTY, old, certificateAuthorities);
 		return ca;
 	};
@@ -136,14 +320,416 @@ public class CertificateAuthourityManager implements PropertyChangeListener {
 		if (ca == null) {
 			return false;
 		}
-		Set<CertificateAuthority> old = new HashSet<>(certificateAuthorities);
 		ca.lock();
 		ca.removePropertyChangeListener(this);
-		boolean res = certificateAuthorities.remove(ca);
+		Set<CertificateAuthority> old;
+		boolean res;
+		synchronized (this) {
+			old = new HashSet<>(certificateAuthorities);
+			res = certificateAuthorities.remove(ca);
+			indexes.remove(ca);
+		}
 		this.propertySupport.firePropertyChange(PROPERTY, old, certificateAuthorities);
 		return res;
 	};
 
+	/**
+	 * Search the issued and revoked certificates of all Certificate Authorities.
+	 * <p>
+	 * Each CA is searched in parallel using its own index, and the results of each CA are passed to the consumer as
+	 * soon as that CA has been searched. Calls to the consumer are made from the search threads, but never
+	 * concurrently. Cancelling the returned future stops any further results being passed to the consumer.
+	 * Certificate Authorities whose contents are not loaded are loaded on demand, see
+	 * {@link #search(String, Set, Consumer, Collection)}.
+	 * <p>
+	 * See {@link CertificateIndex#search(String, Set, java.util.function.BooleanSupplier)} for how the query is matched.
+	 * 
+	 * @param query The query.
+	 * @param fields The fields to search.
+	 * @param consumer The consumer of the results of each CA.
+	 * @return A future that completes with the total number of results once all CAs have been searched.
+	 */
+	public CompletableFuture<Integer> search(String query, Set<SearchField> fields,
+			Consumer<List<SearchResult>> consumer) {
+		return search(query, fields, consumer, null);
+	}
+
+	/**
+	 * Search the issued and revoked certificates of all Certificate Authorities, as for
+	 * {@link #search(String, Set, Consumer)}.
+	 * <p>
+	 * The contents of Certificate Authorities that are not loaded are loaded on demand, one at a time, and unloaded
+	 * again once searched if the CA is locked. Contents are only loaded while the items loaded (once idle CAs are
+	 * unloaded) are within the budget. A CA that could not be loaded within the budget, or whose contents failed to
+	 * load, is not searched, and is added to the given collection before the returned future completes.
+	 * 
+	 * @param query The query.
+	 * @param fields The fields to search.
+	 * @param consumer The consumer of the results of each CA.
+	 * @param skipped The collection to add the Certificate Authorities not searched to. (May be NULL).
+	 * @return A future that completes with the total number of results once all CAs have been searched.
+	 */
+	public CompletableFuture<Integer> search(String query, Set<SearchField> fields,
+			Consumer<List<SearchResult>> consumer, Collection<CertificateAuthority> skipped) {
+		Objects.requireNonNull(consumer, "Consumer is not valid");
+		final Set<SearchField> searchFields = (fields == null || fields.isEmpty()) ? EnumSet.noneOf(SearchField.class)
+				: EnumSet.copyOf(fields);
+		final CompletableFuture<Integer> result = new CompletableFuture<>();
+		final AtomicInteger count = new AtomicInteger();
+		List<CompletableFuture<Void>> tasks = new ArrayList<>();
+		for (CertificateAuthority ca : new ArrayList<>(certificateAuthorities)) {
+			tasks.add(CompletableFuture.runAsync(() -> {
+				CertificateIndex index = indexes.get(ca);
+				if (index == null || result.isDone()) {
+					return;
+				}
+				List<SearchResult> results = withContents(index, result::isDone,
+						i -> i.search(query, searchFields, result::isDone));
+				if (results == null) {
+					if (skipped != null && !result.isDone()) {
+						synchronized (skipped) {
+							skipped.add(ca);
+						}
+					}
+					return;
+				}
+				if (!results.isEmpty()) {
+					synchronized (result) {
+						if (!result.isDone()) {
+							count.addAndGet(results.size());
+							consumer.accept(results);
+						}
+					}
+				}
+			}, getSearchExecutor()));
+		}
+		CompletableFuture.allOf(tasks.toArray(new CompletableFuture<?>[tasks.size()])).whenComplete((v, e) -> {
+			if (e != null) {
+				result.completeExceptionally(e);
+			} else {
+				result.complete(count.get());
+			}
+		});
+		return result;
+	}
+
+	/**
+	 * Get the certificates of all Certificate Authorities whose validity period ends within the given range.
+	 * Certificate Authorities whose contents are not loaded are loaded on demand, as for
+	 * {@link #search(String, Set, Consumer, Collection)}.
+	 * 
+	 * @param from The start of the range. (Inclusive).
+	 * @param to The end of the range. (Inclusive).
+	 * @param includeRevoked TRUE to include revoked certificates.
+	 * @return The certificates, ordered by end date.
+	 */
+	public List<IssuedCertificateProperties> getExpiring(ZonedDateTime from, ZonedDateTime to,
+			boolean includeRevoked) {
+		return getExpiring(from, to, includeRevoked, null);
+	}
+
+	/**
+	 * Get the certificates of all Certificate Authorities whose validity period ends within the given range.
+	 * Certificate Authorities whose contents are not loaded are loaded on demand, as for
+	 * {@link #search(String, Set, Consumer, Collection)}.
+	 * 
+	 * @param from The start of the range. (Inclusive).
+	 * @param to The end of the range. (Inclusive).
+	 * @param includeRevoked TRUE to include revoked certificates.
+	 * @param skipped The collection to add the Certificate Authorities not searched to. (May be NULL).
+	 * @return The certificates, ordered by end date.
+	 */
+	public List<IssuedCertificateProperties> getExpiring(ZonedDateTime from, ZonedDateTime to,
+			boolean includeRevoked, Collection<CertificateAuthority> skipped) {
+		final long start = from.toInstant().toEpochMilli();
+		final long end = to.toInstant().toEpochMilli();
+		List<IssuedCertificateProperties> result = collect(i -> i.getExpiring(start, end, includeRevoked), skipped);
+		result.sort(Comparator.comparingLong(p -> p.getDate(Key.endDate)));
+		return result;
+	}
+
+	/**
+	 * Get the certificates of all Certificate Authorities that are valid at the given time. Certificate Authorities
+	 * whose contents are not loaded are loaded on demand, as for {@link #search(String, Set, Consumer, Collection)}.
+	 * 
+	 * @param time The time.
+	 * @param includeRevoked TRUE to include revoked certificates.
+	 * @return The certificates.
+	 */
+	public List<IssuedCertificateProperties> getValid(ZonedDateTime time, boolean includeRevoked) {
+		return getValid(time, includeRevoked, null);
+	}
+
+	/**
+	 * Get the certificates of all Certificate Authorities that are valid at the given time. Certificate Authorities
+	 * whose contents are not loaded are loaded on demand, as for {@link #search(String, Set, Consumer, Collection)}.
+	 * 
+	 * @param time The time.
+	 * @param includeRevoked TRUE to include revoked certificates.
+	 * @param skipped The collection to add the Certificate Authorities not searched to. (May be NULL).
+	 * @return The certificates.
+	 */
+	public List<IssuedCertificateProperties> getValid(ZonedDateTime time, boolean includeRevoked,
+			Collection<CertificateAuthority> skipped) {
+		final long t = time.toInstant().toEpochMilli();
+		return collect(i -> i.getValid(t, t, includeRevoked), skipped);
+	}
+
+	/**
+	 * Query the index of each Certificate Authority in parallel on the search pool, and collect the results.
+	 * 
+	 * @param query The query of a single index.
+	 * @param skipped The collection to add the Certificate Authorities not searched to. (May be NULL).
+	 * @return The certificates found.
+	 */
+	private List<IssuedCertificateProperties> collect(
+			Function<CertificateIndex, List<IssuedCertificateProperties>> query,
+			Collection<CertificateAuthority> skipped) {
+		List<CertificateIndex> searched = new ArrayList<>();
+		List<CompletableFuture<List<IssuedCertificateProperties>>> tasks = new ArrayList<>();
+		for (CertificateIndex index : getIndexes()) {
+			searched.add(index);
+			tasks.add(CompletableFuture.supplyAsync(() -> withContents(index, () -> false, query),
+					getSearchExecutor()));
+		}
+		List<IssuedCertificateProperties> result = new ArrayList<>();
+		for (int i = 0; i < tasks.size(); i++) {
+			List<IssuedCertificateProperties> items = tasks.get(i).join();
+			if (items != null) {
+				result.addAll(items);
+			} else if (skipped != null) {
+				skipped.add(searched.get(i).getCertificateAuthority());
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Query the index of a Certificate Authority, loading the contents of the CA on demand if not loaded. Contents
+	 * loaded on demand are unloaded again once queried, if the CA is locked.
+	 * <p>
+	 * Contents are loaded on demand one CA at a time, and only if the items loaded (once idle CAs are unloaded) are
+	 * within the budget, so the budget is exceeded by at most the contents of the CA being queried.
+	 * 
+	 * @param <T> The type of result.
+	 * @param index The index of the CA.
+	 * @param cancelled Supplier that returns TRUE if the query has been cancelled.
+	 * @param query The query.
+	 * @return The result of the query, or NULL if the contents could not be loaded or the query was cancelled.
+	 */
+	private <T> T withContents(CertificateIndex index, BooleanSupplier cancelled, Function<CertificateIndex, T> query) {
+		CertificateAuthority ca = index.getCertificateAuthority();
+		if (ca.isLoaded()) {
+			return query.apply(index);
+		}
+		try {
+			while (!paging.tryLock(POLL_INTERVAL, TimeUnit.MILLISECONDS)) {
+				if (cancelled.getAsBoolean()) {
+					return null;
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return null;
+		}
+		try {
+			if (ca.isLoaded()) {
+				// Loaded meanwhile.
+				return query.apply(index);
+			}
+			trim(null);
+			if (cancelled.getAsBoolean() || getLoadedItems() >= getLong(CACHE_ITEMS, DEFAULT_CACHE_ITEMS)) {
+				return null;
+			}
+			paged = ca;
+			try {
+				ca.load(null);
+				return query.apply(index);
+			} catch (IOException | OperationCanceledException e) {
+				return null;
+			} finally {
+				if (ca.isLocked()) {
+					ca.tryUnload();
+				}
+				paged = null;
+			}
+		} finally {
+			paging.unlock();
+		}
+	}
+
+	/**
+	 * Get the indexes of all Certificate Authorities.
+	 * 
+	 * @return The indexes.
+	 */
+	private List<CertificateIndex> getIndexes() {
+		synchronized (indexes) {
+			return new ArrayList<>(indexes.values());
+		}
+	}
+
+	/**
+	 * Get the number of items loaded across all Certificate Authorities.
+	 * 
+	 * @return The number of items loaded.
+	 */
+	private long getLoadedItems() {
+		long total = 0;
+		for (CertificateAuthority ca : certificateAuthorities) {
+			total += ca.getLoadedSize();
+		}
+		return total;
+	}
+
+	/**
+	 * Get the number of threads to use for searching.
+	 *
+	 * @return The number of search threads.
+	 */
+	public static int getSearchParallelism() {
+		String threads = System.getProperty(SEARCH_THREADS);
+		if (threads != null) {
+			try {
+				int value = Integer.parseInt(threads.trim());
+				if (value > 0) {
+					return value;
+				}
+			} catch (NumberFormatException e) {
+				// fall through to the default.
+			}
+		}
+		return Math.max(2, Math.min(8, Runtime.getRuntime().availableProcessors()));
+	}
+
+	/**
+	 * Unload the contents of locked, idle Certificate Authorities, least recently used first, until the items loaded
+	 * are within the budget.
+	 * <p>
+	 * The Certificate Authorities to unload are chosen under the manager lock, and unloaded once it is released. A CA
+	 * that is in use (such as during an update) is left loaded, and is unloaded by a later trim once idle.
+	 * 
+	 * @param retain A Certificate Authority that is never unloaded. (May be NULL).
+	 * @return The Certificate Authorities unloaded.
+	 */
+	public List<CertificateAuthority> trim(CertificateAuthority retain) {
+		List<CertificateAuthority> selected = new ArrayList<>();
+		synchronized (this) {
+			long budget = getLong(CACHE_ITEMS, DEFAULT_CACHE_ITEMS);
+			List<CertificateAuthority> loaded = new ArrayList<>();
+			long total = 0;
+			for (CertificateAuthority ca : certificateAuthorities) {
+				if (ca.isLoaded()) {
+					loaded.add(ca);
+					total += ca.getLoadedSize();
+				}
+			}
+			if (total <= budget) {
+				return Collections.emptyList();
+			}
+			long idleBefore = System.currentTimeMillis()
+					- TimeUnit.SECONDS.toMillis(getLong(CACHE_IDLE, DEFAULT_CACHE_IDLE));
+			loaded.sort(Comparator.comparingLong(CertificateAuthority::getLastAccess));
+			for (CertificateAuthority ca : loaded) {
+				if (total <= budget) {
+					break;
+				}
+				if (ca != retain && ca.isLocked() && ca.getLastAccess() <= idleBefore) {
+					total -= ca.getLoadedSize();
+					selected.add(ca);
+				}
+			}
+		}
+		List<CertificateAuthority> unloaded = new ArrayList<>();
+		for (CertificateAuthority ca : selected) {
+			if (ca.tryUnload()) {
+				unloaded.add(ca);
+			}
+		}
+		return unloaded;
+	}
+
+	/**
+	 * Get a non-negative long value from the system properties.
+	 * 
+	 * @param key The system property key.
+	 * @param defaultValue The value if unset or invalid.
+	 * @return The value.
+	 */
+	private static long getLong(String key, long defaultValue) {
+		String value = System.getProperty(key);
+		if (value != null) {
+			try {
+				long result = Long.parseLong(value.trim());
+				if (result >= 0) {
+					return result;
+				}
+			} catch (NumberFormatException e) {
+				// fall through to the default.
+			}
+		}
+		return defaultValue;
+	}
+
+	/**
+	 * Get the number of threads to use for opening Certificate Authorities.
+	 *
+	 * @return The number of threads.
+	 */
+	public static int getLoadParallelism() {
+		String threads = System.getProperty(LOAD_THREADS);
+		if (threads != null) {
+			try {
+				int value = Integer.parseInt(threads.trim());
+				if (value > 0) {
+					return value;
+				}
+			} catch (NumberFormatException e) {
+				// fall through to the default.
+			}
+		}
+		return Math.max(2, Math.min(8, Runtime.getRuntime().availableProcessors()));
+	}
+
+	/**
+	 * Create a pool for opening Certificate Authorities.
+	 *
+	 * @param threads The number of threads.
+	 * @return A new pool. (To be shut down by the caller).
+	 */
+	private static ExecutorService createLoadExecutor(int threads) {
+		final AtomicInteger count = new AtomicInteger();
+		ThreadFactory factory = r -> {
+			Thread t = new Thread(r, "Halimede CA Loader-" + count.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		};
+		return new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(),
+				factory);
+	}
+
+	/**
+	 * Get the shared search pool, creating it if needed.
+	 *
+	 * @return The search pool.
+	 */
+	private static synchronized ExecutorService getSearchExecutor() {
+		if (executor == null) {
+			final AtomicInteger count = new AtomicInteger();
+			ThreadFactory factory = r -> {
+				Thread t = new Thread(r, "Halimede Certificate Search-" + count.incrementAndGet());
+				t.setDaemon(true);
+				return t;
+			};
+			int threads = getSearchParallelism();
+			ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, KEEP_ALIVE, TimeUnit.SECONDS,
+					new LinkedBlockingQueue<>(), factory);
+			pool.allowCoreThreadTimeOut(true);
+			executor = pool;
+		}
+		return executor;
+	}
+
 	/**
 	 * Add a property change listener
 	 * 
@@ -170,6 +756,41 @@ public class CertificateAuthourityManager implements PropertyChangeListener {
 		if (evt == null) {
 			return;
 		}
-		this.propertySupport.firePropertyChange(evt);
+		// The contents of a CA loaded on demand for a search are unloaded once searched, so are not trimmed, and
+		// listeners are not notified of the load. (Notified from the searching thread, which holds the paging lock).
+		boolean onDemand = paging.isHeldByCurrentThread() && evt.getSource() == paged;
+		if (CertificateAuthority.PROPERTY_LOADED.equals(evt.getPropertyName())) {
+			if (Boolean.TRUE.equals(evt.getNewValue())) {
+				if (!onDemand) {
+					trim((CertificateAuthority) evt.getSource());
+				}
+			} else {
+				// Release the certificates, the index is rebuilt once the CA is loaded again.
+				CertificateIndex index = indexes.get(evt.getSource());
+				if (index != null) {
+					index.clear();
+				}
+			}
+		} else if (CertificateAuthority.PROPERTY_UNLOCK.equals(evt.getPropertyName())
+				&& Boolean.TRUE.equals(evt.getNewValue())) {
+			// Locked, so may now be unloaded.
+			trim(null);
+		}
+		if (CertificateAuthority.PROPERTY_ISSUED.equals(evt.getPropertyName())
+				|| CertificateAuthority.PROPERTY_REVOKED.equals(evt.getPropertyName())) {
+			CertificateIndex index = indexes.get(evt.getSource());
+			if (index != null) {
+				if (evt instanceof ItemsChangeEvent) {
+					ItemsChangeEvent<?> items = (ItemsChangeEvent<?>) evt;
+					index.itemsChanged(CertificateAuthority.PROPERTY_REVOKED.equals(evt.getPropertyName()),
+							items.getAdded(), items.getRemoved(), items.getUpdated());
+				} else {
+					index.invalidate();
+				}
+			}
+		}
+		if (!onDemand) {
+			this.propertySupport.firePropertyChange(evt);
+		}
 	}
 }
@@ -74,7 +74,6 @@ import org.bouncycastle.operator.RuntimeOperatorException;
 import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
 
 import net.sourceforge.dkartaschew.halimede.data.IssuedCertificateProperties.Key;
-import net.sourceforge.dkartaschew.halimede.enumeration.RevokeReasonCode;
 import net.sourceforge.dkartaschew.halimede.enumeration.SignatureAlgorithm;
 import net.sourceforge.dkartaschew.halimede.exceptions.DatastoreLockedException;
 import net.sourceforge.dkartaschew.halimede.util.DateTimeUtil;
@@ -266,6 +265,58 @@ public class CertificateFactory {
 		return conv.getCertificate(certGen.build(cs));
 	}
 
+	/**
+	 * Generate a cross certificate, certifying the subject and public key of a CA certificate with another CA key.
+	 * <p>
+	 * Used for CA key rollover, where the OldWithNew certificate certifies the new public key with the old key, and the
+	 * NewWithOld certificate certifies the old public key with the new key. The validity period is that of the
+	 * certificate, limited to the validity period of the issuer.
+	 * 
+	 * @param certificate The CA certificate whose subject and public key are certified.
+	 * @param issuer The CA certificate of the signing key.
+	 * @param issuerKey The signing key.
+	 * @param signatureAlgorithm The signature algorithm.
+	 * @param serial The serial number of the cross certificate.
+	 * @return A X509v3 certificate
+	 * @throws CertificateException Creation of the certificate fails
+	 * @throws OperatorCreationException Creation of the certificate fails
+	 * @throws CertIOException Creation of the certificate fails
+	 * @throws IOException Creation of the certificate fails
+	 */
+	public static X509Certificate generateCrossCertificate(X509Certificate certificate, X509Certificate issuer,
+			PrivateKey issuerKey, SignatureAlgorithm signatureAlgorithm, BigInteger serial)
+			throws CertificateException, OperatorCreationException, CertIOException, IOException {
+		Date notBefore = certificate.getNotBefore();
+		Date notAfter = certificate.getNotAfter().before(issuer.getNotAfter()) ? certificate.getNotAfter()
+				: issuer.getNotAfter();
+		if (notBefore.after(notAfter)) {
+			throw new IllegalArgumentException("Expiry Date before Start Date");
+		}
+		JcaX509CertificateHolder issuerHolder = new JcaX509CertificateHolder(issuer);
+		X509v3CertificateBuilder certGen = new X509v3CertificateBuilder(//
+				issuerHolder.getSubject(), //
+				serial, //
+				notBefore, //
+				notAfter, //
+				X500Name.getInstance(certificate.getSubjectX500Principal().getEncoded()), //
+				SubjectPublicKeyInfo.getInstance(ASN1Sequence.getInstance(certificate.getPublicKey().getEncoded())));
+
+		certGen.addExtension(Extension.subjectKeyIdentifier, true,
+				createSubjectKeyIdentifier(certificate.getPublicKey()));
+		certGen.addExtension(//
+				Extension.authorityKeyIdentifier, //
+				true, //
+				new AuthorityKeyIdentifier(//
+						new GeneralNames(new GeneralName(issuerHolder.getSubject())), issuerHolder.getSerialNumber()));
+		certGen.addExtension(Extension.basicConstraints, true, new BasicConstraints(true));
+		certGen.addExtension(Extension.keyUsage, true, new KeyUsage(KeyUsage.keyCertSign | KeyUsage.cRLSign));
+
+		JcaX509CertificateConverter conv = new JcaX509CertificateConverter();
+		conv.setProvider(BouncyCastleProvider.PROVIDER_NAME);
+		ContentSigner cs = getContentSigner(issuerKey, signatureAlgorithm);
+		return conv.getCertificate(certGen.build(cs));
+	}
+
 	/**
 	 * Create an ASN1 Subject Key Identifier
 	 * 
@@ -299,10 +350,37 @@ public class CertificateFactory {
 	public static Certificate signCertificateRequest(CertificateAuthority issuerInformation,
 			ICertificateRequest certRequest, ZonedDateTime startDate, ZonedDateTime expiryDate) throws IOException,
 			CertIOException, DatastoreLockedException, OperatorCreationException, CertificateException {
-
 		if (issuerInformation == null) {
 			throw new IllegalArgumentException("No Certificate Authority Provided");
 		}
+		return signCertificateRequest(issuerInformation, issuerInformation.getIssuer(), certRequest, startDate,
+				expiryDate);
+	}
+
+	/**
+	 * Sign the certificate request with the given issuer of the CA. (The issuer is read once by the caller, so the
+	 * certificate, chain and key used are consistent should the CA be locked meanwhile).
+	 * 
+	 * @param issuerInformation The CA
+	 * @param signer The issuer information of the CA.
+	 * @param certRequest The certificate request.
+	 * @param startDate The certificate start date.
+	 * @param expiryDate The certificate expiry date.
+	 * @return The signed certificate.
+	 * @throws IllegalArgumentException Certificate Request is missing details.
+	 * @throws CertIOException Creation of the certificate fails
+	 * @throws DatastoreLockedException Creation of the certificate fails
+	 * @throws OperatorCreationException Creation of the certificate fails
+	 * @throws CertificateException Creation of the certificate fails
+	 * @throws IOException Creation of the certificate fails
+	 */
+	static Certificate signCertificateRequest(CertificateAuthority issuerInformation, IIssuedCertificate signer,
+			ICertificateRequest certRequest, ZonedDateTime startDate, ZonedDateTime expiryDate) throws IOException,
+			CertIOException, DatastoreLockedException, OperatorCreationException, CertificateException {
+
+		if (issuerInformation == null || signer == null) {
+			throw new IllegalArgumentException("No Certificate Authority Provided");
+		}
 		if (certRequest == null) {
 			throw new IllegalArgumentException("No Certificate Request Provided");
 		}
@@ -316,8 +394,10 @@ public class CertificateFactory {
 			throw new IllegalArgumentException("Missing Certificate Date information");
 		}
 
-		X509Certificate caCert = (X509Certificate) issuerInformation.getCertificate();
+		X509Certificate caCert = (X509Certificate) signer.getCertificateChain()[0];
 		JcaX509CertificateHolder issuer = new JcaX509CertificateHolder(caCert);
+		// Read before the serial number is taken.
+		SignatureAlgorithm signatureAlgorithm = issuerInformation.getSignatureAlgorithm();
 		if (startDate.isAfter(expiryDate)) {
 			throw new IllegalArgumentException("Expiry Date before Start Date");
 		}
@@ -340,7 +420,7 @@ public class CertificateFactory {
 		 * Ensure the subject X500Name is not equal to any of the issuers in the issuer cert chain.
 		 */
 		X500Name subject = certRequest.getSubject();
-		Certificate[] issuerChain = issuerInformation.getCertificateChain();
+		Certificate[] issuerChain = signer.getCertificateChain();
 		for (Certificate c : issuerChain) {
 			X509Certificate ic = (X509Certificate) c;
 			X500Name ici = X500Name.getInstance(ic.getSubjectX500Principal().getEncoded());
@@ -388,7 +468,7 @@ public class CertificateFactory {
 		// Check for intermediate CA generation.
 		if (certRequest.isCARequest()) {
 			// Ensure CA Depth is fixed at 1.
-			if (issuerInformation.canCreateIntermediateCA()) {
+			if (caCert.getBasicConstraints() >= 1) {
 				certGen.addExtension(Extension.basicConstraints, true, new BasicConstraints(0));
 			} else {
 				throw new IllegalStateException("Unable to create Intermediate CA Certificate");
@@ -404,8 +484,7 @@ public class CertificateFactory {
 		// Now generate the certificate.
 		JcaX509CertificateConverter conv = new JcaX509CertificateConverter();
 		conv.setProvider(BouncyCastleProvider.PROVIDER_NAME);
-		ContentSigner cs = getContentSigner(issuerInformation.getKeyPair().getPrivate(),
-				issuerInformation.getSignatureAlgorithm());
+		ContentSigner cs = getContentSigner(signer.getPrivateKey(), signatureAlgorithm);
 		return conv.getCertificate(certGen.build(cs));
 	}
 
@@ -447,14 +526,34 @@ public class CertificateFactory {
 	 * @throws CertificateEncodingException Unable to create the signing information.
 	 * @throws OperatorCreationException Unable to create the DER encoded CRL
 	 * @throws DatastoreLockedException The issuers information is currently locked.
-	 * @throws CRLException If generation of the CRL fails.
+	 * @throws CRLException If generation of the CRL fails, or a revoked certificate has no valid end or revoke date.
 	 */
 	public static X509CRL generateCRL(CertificateAuthority issuerInformation, ZonedDateTime nextUpdate)
 			throws DatastoreLockedException, CertificateEncodingException, IOException, OperatorCreationException,
 			CRLException {
+		return generateCRL(issuerInformation, issuerInformation.getIssuer(), nextUpdate);
+	}
+
+	/**
+	 * Generate a CRL for the given CA, signed by the given issuer of the CA.
+	 * 
+	 * @param issuerInformation The CA which contains the revoked certificates.
+	 * @param signer The issuer information of the CA, as read once by the caller.
+	 * @param nextUpdate The next expected update of the CRL
+	 * @return The generated CRL
+	 * @throws IOException Writing to the file failed
+	 * @throws CertificateEncodingException Unable to create the signing information.
+	 * @throws OperatorCreationException Unable to create the DER encoded CRL
+	 * @throws DatastoreLockedException The issuers information is currently locked.
+	 * @throws CRLException If generation of the CRL fails, or a revoked certificate has no valid end or revoke date.
+	 */
+	static X509CRL generateCRL(CertificateAuthority issuerInformation, IIssuedCertificate signer,
+			ZonedDateTime nextUpdate) throws DatastoreLockedException, CertificateEncodingException, IOException,
+			OperatorCreationException, CRLException {
 
 		ZonedDateTime now = ZonedDateTime.now(DateTimeUtil.DEFAULT_ZONE);
-		X509Certificate caCert = (X509Certificate) issuerInformation.getCertificate();
+		X509Certificate caCert = (X509Certificate) signer.getCertificateChain()[0];
+		SignatureAlgorithm signatureAlgorithm = issuerInformation.getSignatureAlgorithm();
 		JcaX509CertificateHolder issuer = new JcaX509CertificateHolder(caCert);
 
 		X509v2CRLBuilder crlGen = new X509v2CRLBuilder(issuer.getSubject(), Date.from(now.toInstant()));
@@ -467,19 +566,26 @@ public class CertificateFactory {
 						new GeneralNames(new GeneralName(issuer.getSubject())), issuer.getSerialNumber()));
 
 		List<IssuedCertificateProperties> revoked = new ArrayList<>(issuerInformation.getRevokedCertificates());
+		long nowMillis = now.toInstant().toEpochMilli();
 		for (IssuedCertificateProperties cert : revoked) {
-			ZonedDateTime expiryDate = DateTimeUtil.toZonedDateTime(cert.getProperty(Key.endDate));
+			long endDate = cert.getDate(Key.endDate);
+			if (endDate == PropertyRecord.NO_DATE) {
+				throw new CRLException("Revoked certificate " + cert.getProperty(Key.certificateSerialNumber)
+						+ " has an invalid end date: " + cert.getProperty(Key.endDate));
+			}
 			// Only add if not already expired.
-			if (now.isBefore(expiryDate)) {
-				BigInteger serialNum = BigInteger
-						.valueOf(Long.parseLong(cert.getProperty(Key.certificateSerialNumber)));
-				ZonedDateTime revokeDate = DateTimeUtil.toZonedDateTime(cert.getProperty(Key.revokeDate));
-				int reason = RevokeReasonCode.valueOf(cert.getProperty(Key.revokeCode)).getCode();
-				crlGen.addCRLEntry(serialNum, Date.from(revokeDate.toInstant()), reason);
+			if (nowMillis < endDate) {
+				BigInteger serialNum = cert.getSerialNumber();
+				long revokeDate = cert.getDate(Key.revokeDate);
+				if (revokeDate == PropertyRecord.NO_DATE) {
+					throw new CRLException("Revoked certificate " + cert.getProperty(Key.certificateSerialNumber)
+							+ " has an invalid revoke date: " + cert.getProperty(Key.revokeDate));
+				}
+				int reason = cert.getRevokeCode().getCode();
+				crlGen.addCRLEntry(serialNum, new Date(revokeDate), reason);
 			}
 		}
-		ContentSigner cs = getContentSigner(issuerInformation.getKeyPair().getPrivate(),
-				issuerInformation.getSignatureAlgorithm());
+		ContentSigner cs = getContentSigner(signer.getPrivateKey(), signatureAlgorithm);
 		return new JcaX509CRLConverter().getCRL(crlGen.build(cs));
 	}
 
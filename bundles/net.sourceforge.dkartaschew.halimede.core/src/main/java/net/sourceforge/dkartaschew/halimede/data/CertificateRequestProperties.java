@@ -21,15 +21,12 @@ import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.Paths;
 import java.time.ZonedDateTime;
 import java.util.Comparator;
-import java.util.Iterator;
-import java.util.Properties;
 
 import net.sourceforge.dkartaschew.halimede.data.impl.CertificateRequestPKCS10;
+import net.sourceforge.dkartaschew.halimede.enumeration.KeyType;
 import net.sourceforge.dkartaschew.halimede.util.DateTimeUtil;
 
 /**
@@ -46,10 +43,22 @@ public class CertificateRequestProperties implements Comparable<CertificateReque
 	 * @throws IOException If reading the file failed.
 	 */
 	public static CertificateRequestProperties create(CertificateAuthority ca, Path file) throws IOException {
-		CertificateRequestProperties p = new CertificateRequestProperties(ca);
 		try (FileInputStream in = new FileInputStream(file.toFile())) {
-			p.load(in);
+			return load(ca, in);
 		}
+	}
+
+	/**
+	 * Create and populate a CRLProperties instance.
+	 * 
+	 * @param ca The Certificate Authorithy
+	 * @param stream The stream to load from
+	 * @return A CRLProperties instance
+	 * @throws IOException If reading the stream failed.
+	 */
+	public static CertificateRequestProperties load(CertificateAuthority ca, InputStream stream) throws IOException {
+		CertificateRequestProperties p = new CertificateRequestProperties(ca);
+		p.load(stream);
 		return p;
 	}
 
@@ -97,10 +106,18 @@ public class CertificateRequestProperties implements Comparable<CertificateReque
 		keyType
 	}
 
+	/**
+	 * The layout of the properties store.
+	 */
+	private final static PropertyRecord.Schema<Key> SCHEMA = new PropertyRecord.Schema<>(Key.class)//
+			.names(Key.subject)//
+			.dates(Key.importDate)//
+			.enumeration(Key.keyType, KeyType.class);
+
 	/**
 	 * The properties store
 	 */
-	private final Properties properties;
+	private final PropertyRecord<Key> properties;
 
 	/**
 	 * Create an empty properties store.
@@ -109,7 +126,7 @@ public class CertificateRequestProperties implements Comparable<CertificateReque
 	 */
 	public CertificateRequestProperties(CertificateAuthority ca) {
 		this.ca = ca;
-		properties = new Properties();
+		properties = new PropertyRecord<>(SCHEMA, ca != null ? ca::intern : null);
 	}
 
 	/**
@@ -121,7 +138,7 @@ public class CertificateRequestProperties implements Comparable<CertificateReque
 	public CertificateRequestProperties(CertificateAuthority ca, ICertificateRequest request) {
 		this.ca = ca;
 		this.request = request;
-		properties = new Properties();
+		properties = new PropertyRecord<>(SCHEMA, ca != null ? ca::intern : null);
 		if(ca == null) {
 			setProperty(CertificateRequestProperties.Key.subject, //
 					request.getSubject().toString());
@@ -143,7 +160,7 @@ public class CertificateRequestProperties implements Comparable<CertificateReque
 	 * @return The set value, or NULL if not present/set.
 	 */
 	public String getProperty(Key key) {
-		return properties.getProperty(key.name());
+		return properties.get(key);
 	}
 
 	/**
@@ -154,12 +171,25 @@ public class CertificateRequestProperties implements Comparable<CertificateReque
 	 * @return The prior value.
 	 */
 	public Object setProperty(Key key, String value) {
-		if(value == null) {
-			Object oldValue = getProperty(key);
-			properties.remove(key.name());
-			return oldValue;
-		}
-		return properties.setProperty(key.name(), value);
+		return properties.set(key, value);
+	}
+
+	/**
+	 * Get the import date, without parsing.
+	 * 
+	 * @return The import date as epoch milliseconds, or {@link PropertyRecord#NO_DATE} if not present/set.
+	 */
+	public long getImportDate() {
+		return properties.getDate(Key.importDate);
+	}
+
+	/**
+	 * Get the PKI key type.
+	 * 
+	 * @return The key type, or NULL if not present/set (or not a native type).
+	 */
+	public KeyType getKeyType() {
+		return properties.getEnum(Key.keyType, KeyType.class);
 	}
 
 	/**
@@ -170,7 +200,6 @@ public class CertificateRequestProperties implements Comparable<CertificateReque
 	 */
 	public synchronized void load(InputStream stream) throws IOException {
 		clearRequest();
-		properties.clear();
 		properties.load(stream);
 	}
 
@@ -213,31 +242,11 @@ public class CertificateRequestProperties implements Comparable<CertificateReque
 		}
 		// Locate and load. (The value store in the property field is the plain filename, not the full path).
 		if (getProperty(Key.csrFilename) != null) {
-			Path filename = findFile(Paths.get(getProperty(Key.csrFilename)));
-			request = CertificateRequestPKCS10.create(filename);
+			request = CertificateRequestPKCS10.decode(ca.readArtefact(getProperty(Key.csrFilename)));
 		}
 		return request;
 	}
 
-	/**
-	 * Attempt to locate the file within the CAs domain.
-	 * 
-	 * @param filename The filename of the CSR file.
-	 * @return The absolute filename for the CSR file.
-	 */
-	private Path findFile(Path filename) {
-		// Locate the PKCS12 file. (What is stored here is relative not absolute).
-		Iterator<Path> searchPaths = ca.getSearchPaths();
-		while (searchPaths.hasNext()) {
-			Path file = searchPaths.next().resolve(filename);
-			if (Files.exists(file) && Files.isReadable(file) && Files.isRegularFile(file)) {
-				return file;
-			}
-		}
-		// Not found? return the input.
-		return filename;
-	}
-
 	/**
 	 * Get the CA this certificate is tied to.
 	 * 
@@ -322,10 +331,10 @@ public class CertificateRequestProperties implements Comparable<CertificateReque
 				return res;
 			}
 		}
-		if (o.getProperty(Key.importDate) != null && this.getProperty(Key.importDate) != null) {
-			ZonedDateTime tS = DateTimeUtil.toZonedDateTime(this.getProperty(Key.importDate));
-			ZonedDateTime oS = DateTimeUtil.toZonedDateTime(o.getProperty(Key.importDate));
-			res = tS.compareTo(oS);
+		long tS = this.getImportDate();
+		long oS = o.getImportDate();
+		if (tS != PropertyRecord.NO_DATE && oS != PropertyRecord.NO_DATE) {
+			res = Long.compare(tS, oS);
 		}
 		return res;
 	}
@@ -0,0 +1,364 @@
+/*-
+ * Halimede Certificate Manager Plugin for Eclipse 
+ * Copyright (C) 2017-2021 Darran Kartaschew 
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v2.0 which
+ * accompanies this distribution and is available at
+ *
+ * http://www.eclipse.org/legal/epl-v20.html
+ * 
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the Eclipse
+ * Public License, v. 2.0 are satisfied: GNU General Public License, version 2
+ * with the GNU Classpath Exception which is
+ * available at https://www.gnu.org/software/classpath/license.html.
+ */
+
+package net.sourceforge.dkartaschew.halimede.data;
+
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Property change listener that batches bursts of events, and forwards them to a delegate listener at most once per
+ * interval (by default, once per UI frame).
+ * <p>
+ * Within an interval, {@link ItemsChangeEvent}s for the same source and collection are merged into a single event
+ * (an item added then removed is dropped, an item removed then added is updated, and so on), and other events for
+ * the same source and property are merged into a single event with the first old value and the last new value. If
+ * the merged value would be unchanged (for example, a lock then unlock), the first event and a second event back to
+ * the final value are forwarded instead, so listeners never miss a toggle of state.
+ * <p>
+ * Events are forwarded in the order their source and property were first seen, on a shared dispatch thread. Failures
+ * of the listener are logged, and do not stop later events.
+ */
+public class CoalescingDispatcher implements PropertyChangeListener {
+
+	/**
+	 * The default interval (in milliseconds) between notifications.
+	 */
+	public static final long DEFAULT_INTERVAL = 16;
+
+	/**
+	 * Change to a single item.
+	 */
+	private enum Change {
+		ADDED, REMOVED, UPDATED
+	}
+
+	/**
+	 * Key of pending events. (The source is compared by identity).
+	 */
+	private static final class EventKey {
+		private final Object source;
+		private final String propertyName;
+		private final boolean items;
+
+		EventKey(PropertyChangeEvent evt) {
+			this.source = evt.getSource();
+			this.propertyName = evt.getPropertyName();
+			this.items = evt instanceof ItemsChangeEvent;
+		}
+
+		@Override
+		public int hashCode() {
+			return System.identityHashCode(source) * 31 + Objects.hashCode(propertyName) + (items ? 1 : 0);
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof EventKey)) {
+				return false;
+			}
+			EventKey other = (EventKey) obj;
+			return source == other.source && items == other.items && Objects.equals(propertyName, other.propertyName);
+		}
+	}
+
+	/**
+	 * Events pending for a single key.
+	 */
+	private static final class Pending {
+		/**
+		 * The first event received.
+		 */
+		private final PropertyChangeEvent first;
+		/**
+		 * The last event received.
+		 */
+		private PropertyChangeEvent last;
+		/**
+		 * The merged item changes. (Only for ItemsChangeEvents).
+		 */
+		private final Map<Object, Change> changes;
+
+		Pending(PropertyChangeEvent first) {
+			this.first = first;
+			this.last = first;
+			this.changes = first instanceof ItemsChangeEvent ? new IdentityHashMap<>() : null;
+		}
+
+		/**
+		 * Merge the given event.
+		 *
+		 * @param evt The event.
+		 */
+		void merge(PropertyChangeEvent evt) {
+			last = evt;
+			if (changes != null) {
+				ItemsChangeEvent<?> items = (ItemsChangeEvent<?>) evt;
+				items.getRemoved().forEach(i -> merge(i, Change.REMOVED));
+				items.getAdded().forEach(i -> merge(i, Change.ADDED));
+				items.getUpdated().forEach(i -> merge(i, Change.UPDATED));
+			}
+		}
+
+		/**
+		 * Merge the change to the given item.
+		 *
+		 * @param item The item.
+		 * @param change The change.
+		 */
+		private void merge(Object item, Change change) {
+			Change prior = changes.get(item);
+			if (prior == null) {
+				changes.put(item, change);
+				return;
+			}
+			switch (prior) {
+			case ADDED:
+				if (change == Change.REMOVED) {
+					changes.remove(item);
+				}
+				break;
+			case REMOVED:
+				if (change == Change.ADDED) {
+					changes.put(item, Change.UPDATED);
+				}
+				break;
+			case UPDATED:
+				if (change == Change.REMOVED) {
+					changes.put(item, Change.REMOVED);
+				}
+				break;
+			}
+		}
+
+		/**
+		 * Get the merged events.
+		 *
+		 * @return The merged events, or an empty list if the item changes cancel out.
+		 */
+		List<PropertyChangeEvent> toEvents() {
+			if (changes == null) {
+				if (first == last) {
+					return Collections.singletonList(first);
+				}
+				Object oldValue = first.getOldValue();
+				Object newValue = last.getNewValue();
+				if (oldValue != null && oldValue.equals(newValue)) {
+					// The state toggled and returned, so forward the toggle and the return.
+					PropertyChangeEvent evt = new PropertyChangeEvent(first.getSource(), first.getPropertyName(),
+							first.getNewValue(), newValue);
+					evt.setPropagationId(last.getPropagationId());
+					return List.of(first, evt);
+				}
+				PropertyChangeEvent evt = new PropertyChangeEvent(first.getSource(), first.getPropertyName(),
+						oldValue, newValue);
+				evt.setPropagationId(last.getPropagationId());
+				return Collections.singletonList(evt);
+			}
+			List<Object> added = new ArrayList<>();
+			List<Object> removed = new ArrayList<>();
+			List<Object> updated = new ArrayList<>();
+			changes.forEach((item, change) -> {
+				switch (change) {
+				case ADDED:
+					added.add(item);
+					break;
+				case REMOVED:
+					removed.add(item);
+					break;
+				case UPDATED:
+					updated.add(item);
+					break;
+				}
+			});
+			ItemsChangeEvent<Object> evt = new ItemsChangeEvent<>(first.getSource(), first.getPropertyName(), added,
+					removed, updated);
+			return evt.isEmpty() ? Collections.emptyList() : Collections.singletonList(evt);
+		}
+	}
+
+	/**
+	 * The shared dispatch thread.
+	 */
+	private static ScheduledExecutorService timer;
+	/**
+	 * The thread of the dispatch executor.
+	 */
+	private static volatile Thread dispatchThread;
+
+	/**
+	 * Logger
+	 */
+	private final Logger logger = Logger.getLogger(getClass().getName());
+
+	/**
+	 * The delegate listener.
+	 */
+	private final PropertyChangeListener listener;
+	/**
+	 * The interval (in milliseconds) between notifications.
+	 */
+	private final long interval;
+	/**
+	 * The pending events.
+	 */
+	private Map<EventKey, Pending> pending = new LinkedHashMap<>();
+	/**
+	 * Is a flush scheduled?
+	 */
+	private boolean scheduled;
+
+	/**
+	 * Create a new dispatcher, which notifies the listener at most once per UI frame.
+	 *
+	 * @param listener The listener to forward events to.
+	 */
+	public CoalescingDispatcher(PropertyChangeListener listener) {
+		this(listener, DEFAULT_INTERVAL);
+	}
+
+	/**
+	 * Create a new dispatcher.
+	 *
+	 * @param listener The listener to forward events to.
+	 * @param interval The interval (in milliseconds) between notifications.
+	 */
+	public CoalescingDispatcher(PropertyChangeListener listener, long interval) {
+		this.listener = Objects.requireNonNull(listener, "Listener is not valid");
+		this.interval = Math.max(0, interval);
+	}
+
+	/**
+	 * Get the listener events are forwarded to.
+	 *
+	 * @return The delegate listener.
+	 */
+	public PropertyChangeListener getListener() {
+		return listener;
+	}
+
+	/**
+	 * Get the shared dispatch thread, creating it if needed.
+	 *
+	 * @return The dispatch thread.
+	 */
+	private static synchronized ScheduledExecutorService getTimer() {
+		if (timer == null) {
+			timer = Executors.newSingleThreadScheduledExecutor(r -> {
+				Thread t = new Thread(r, "Halimede Event Dispatcher");
+				t.setDaemon(true);
+				dispatchThread = t;
+				return t;
+			});
+		}
+		return timer;
+	}
+
+	@Override
+	public void propertyChange(PropertyChangeEvent evt) {
+		if (evt == null) {
+			return;
+		}
+		synchronized (this) {
+			EventKey key = new EventKey(evt);
+			Pending p = pending.get(key);
+			if (p == null) {
+				p = new Pending(evt);
+				pending.put(key, p);
+				if (p.changes != null) {
+					p.merge(evt);
+				}
+			} else {
+				p.merge(evt);
+			}
+			if (!scheduled) {
+				scheduled = true;
+				getTimer().schedule(this::dispatch, interval, TimeUnit.MILLISECONDS);
+			}
+		}
+	}
+
+	/**
+	 * Forward all pending events to the listener now, waiting until they have been delivered. The events are
+	 * delivered on the dispatch thread, so never concurrently with a scheduled delivery.
+	 */
+	public void flush() {
+		if (Thread.currentThread() == dispatchThread) {
+			dispatch();
+			return;
+		}
+		try {
+			getTimer().submit(this::dispatch).get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (ExecutionException e) {
+			logger.log(Level.WARNING, "Event dispatch failed", e.getCause());
+		}
+	}
+
+	/**
+	 * Forward all pending events to the listener. (Only called on the dispatch thread).
+	 */
+	private void dispatch() {
+		Map<EventKey, Pending> events;
+		synchronized (this) {
+			events = pending;
+			pending = new LinkedHashMap<>();
+			scheduled = false;
+		}
+		for (Pending p : events.values()) {
+			for (PropertyChangeEvent evt : p.toEvents()) {
+				try {
+					listener.propertyChange(evt);
+				} catch (RuntimeException e) {
+					// A failing listener must not stop later events (or kill the dispatch thread).
+					logger.log(Level.WARNING, "Listener failed handling " + evt.getPropertyName(), e);
+				}
+			}
+		}
+	}
+
+	@Override
+	public int hashCode() {
+		return listener.hashCode();
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (obj == null)
+			return false;
+		if (getClass() != obj.getClass())
+			return false;
+		CoalescingDispatcher other = (CoalescingDispatcher) obj;
+		return listener.equals(other.listener);
+	}
+}
@@ -18,6 +18,8 @@
 package net.sourceforge.dkartaschew.halimede.data;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.nio.file.Path;
 import java.time.ZonedDateTime;
 
@@ -48,6 +50,21 @@ public interface ICertificateKeyPairTemplate {
 		}
 	}
 
+	/**
+	 * Open a Certificate request as a templated instance.
+	 * 
+	 * @param stream The stream to read the template from.
+	 * @return A ICertificateKeyPairTemplate
+	 * @throws IOException Reading the template failed.
+	 */
+	public static ICertificateKeyPairTemplate load(InputStream stream) throws IOException {
+		try {
+			return CertificateKeyPairTemplate.load(stream);
+		} catch (Throwable e) {
+			throw new IOException("Failed to read template file", e);
+		}
+	}
+
 	/**
 	 * Store the template
 	 * 
@@ -56,6 +73,14 @@ public interface ICertificateKeyPairTemplate {
 	 */
 	void store(Path filename) throws Exception;
 
+	/**
+	 * Store the template
+	 * 
+	 * @param stream The stream to store the template to.
+	 * @throws Exception If serialisation fails.
+	 */
+	void save(OutputStream stream) throws Exception;
+
 	/**
 	 * Get this Template Instance as a Certificate Request, so a concrete X509Certificate can be created.
 	 * 
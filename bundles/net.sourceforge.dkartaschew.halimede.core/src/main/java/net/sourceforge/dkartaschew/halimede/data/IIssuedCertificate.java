@@ -18,6 +18,7 @@
 package net.sourceforge.dkartaschew.halimede.data;
 
 import java.io.IOException;
+import java.io.OutputStream;
 import java.nio.file.Path;
 import java.security.PrivateKey;
 import java.security.PublicKey;
@@ -102,6 +103,18 @@ public interface IIssuedCertificate {
 	 */
 	void createPKCS12(Path filename, String password, String alias, PKCS12Cipher cipher) throws IOException;
 
+	/**
+	 * Write this Issued Certificate as a PKCS12 container to the given stream
+	 * 
+	 * @param stream The stream to write to
+	 * @param password The password to use. (may be NULL for no password)
+	 * @param alias The alias to use within the PKCS12 container.
+	 * @param cipher The Cipher to use to encrypt the PKCS12 contents with. (Note: AES is not widely supported). If
+	 *            password is NULL, this value is ignored.
+	 * @throws IOException If writing to the stream failed.
+	 */
+	void savePKCS12(OutputStream stream, String password, String alias, PKCS12Cipher cipher) throws IOException;
+
 	/**
 	 * Save the client certificate to the given file.
 	 * 
@@ -120,6 +133,15 @@ public interface IIssuedCertificate {
 	 */
 	void createCertificateChain(Path filename, EncodingType encoding) throws IOException;
 
+	/**
+	 * Write the complete certificate chain to the given stream.
+	 * 
+	 * @param stream The stream to write to
+	 * @param encoding The encoding to use.
+	 * @throws IOException If writing to the stream failed.
+	 */
+	void saveCertificateChain(OutputStream stream, EncodingType encoding) throws IOException;
+
 	/**
 	 * Create PKCS8 or equivalent private key file.
 	 * 
@@ -0,0 +1,776 @@
+/*-
+ * Halimede Certificate Manager Plugin for Eclipse 
+ * Copyright (C) 2017-2021 Darran Kartaschew 
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v2.0 which
+ * accompanies this distribution and is available at
+ *
+ * http://www.eclipse.org/legal/epl-v20.html
+ * 
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the Eclipse
+ * Public License, v. 2.0 are satisfied: GNU General Public License, version 2
+ * with the GNU Classpath Exception which is
+ * available at https://www.gnu.org/software/classpath/license.html.
+ */
+
+package net.sourceforge.dkartaschew.halimede.data;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+import net.sourceforge.dkartaschew.halimede.util.MerkleTree;
+
+/**
+ * Append-only ledger of the certificates issued by a Certificate Authority, in the manner of Certificate Transparency
+ * (RFC 6962).
+ * <p>
+ * Each entry records the time of issue and the SHA-256 fingerprint of the (DER encoded) certificate, and the entries
+ * are the leaves of a Merkle tree. The entries are held as fixed size records in the {@link #ENTRIES} file, and the
+ * root of every complete subtree (including the leaves) is held, in the order completed, in the {@link #NODES} file.
+ * The roots of the complete subtrees of the current tree are also held in memory, so appending an entry hashes and
+ * writes at most log<sub>2</sub>(n) nodes, and inclusion and consistency proofs read only the subtree roots they
+ * hold. (See {@link MerkleTree} to verify the proofs).
+ * <p>
+ * The files are held open once used, until the ledger is closed (and are opened again if used after). An append
+ * returns once the entry is forced to disk; entries appended while another append forces the files are forced
+ * together, so concurrent appends share the cost of forcing. If writing or forcing fails, the files are truncated to
+ * the entries already forced (or, if that fails, when the ledger is next used), so an entry is only kept if its append
+ * returned. A partially written entry is discarded, and missing nodes are rebuilt from the entries, when the ledger is
+ * next read. The ledger is reloaded if the length of the entries file
+ * is changed by another writer. All methods are thread safe.
+ */
+public class IssuanceLedger implements Closeable {
+
+	/**
+	 * The filename of the entries.
+	 */
+	public static final String ENTRIES = "issuance.ledger";
+	/**
+	 * The filename of the subtree roots.
+	 */
+	public static final String NODES = "issuance.nodes";
+	/**
+	 * The length of an entry in bytes. (Time of issue and certificate fingerprint).
+	 */
+	public static final int ENTRY = Long.BYTES + MerkleTree.HASH;
+
+	/**
+	 * Magic number of the entries file. ("HLDG").
+	 */
+	private static final int MAGIC = 0x484c4447;
+	/**
+	 * Version of the entries file.
+	 */
+	private static final int VERSION = 1;
+	/**
+	 * The length of the header of the entries file.
+	 */
+	private static final int HEADER = 2 * Integer.BYTES;
+	/**
+	 * The number of entries read at a time when scanning.
+	 */
+	private static final int SCAN = 1024;
+
+	/**
+	 * An entry of the ledger.
+	 */
+	public static final class Entry {
+
+		/**
+		 * The index of the entry.
+		 */
+		private final long index;
+		/**
+		 * The time of issue, in milliseconds since the epoch.
+		 */
+		private final long issued;
+		/**
+		 * The certificate fingerprint.
+		 */
+		private final byte[] fingerprint;
+
+		/**
+		 * Create a new entry.
+		 *
+		 * @param index The index of the entry.
+		 * @param issued The time of issue, in milliseconds since the epoch.
+		 * @param fingerprint The SHA-256 fingerprint of the certificate.
+		 */
+		Entry(long index, long issued, byte[] fingerprint) {
+			this.index = index;
+			this.issued = issued;
+			this.fingerprint = fingerprint;
+		}
+
+		/**
+		 * Get the index of the entry.
+		 *
+		 * @return The index of the entry.
+		 */
+		public long getIndex() {
+			return index;
+		}
+
+		/**
+		 * Get the time of issue.
+		 *
+		 * @return The time of issue. (UTC).
+		 */
+		public ZonedDateTime getIssued() {
+			return ZonedDateTime.ofInstant(Instant.ofEpochMilli(issued), ZoneOffset.UTC);
+		}
+
+		/**
+		 * Get the certificate fingerprint.
+		 *
+		 * @return The SHA-256 fingerprint of the DER encoded certificate.
+		 */
+		public byte[] getFingerprint() {
+			return fingerprint.clone();
+		}
+
+		/**
+		 * Get the encoded entry, as hashed for the leaf of the tree.
+		 *
+		 * @return The encoded entry.
+		 */
+		public byte[] getEncoded() {
+			return ByteBuffer.allocate(ENTRY).putLong(issued).put(fingerprint).array();
+		}
+
+		/**
+		 * Get the leaf hash of the entry.
+		 *
+		 * @return The leaf hash.
+		 */
+		public byte[] getLeaf() {
+			return new MerkleTree().leaf(getEncoded());
+		}
+	}
+
+	/**
+	 * The entries file.
+	 */
+	private final Path entries;
+	/**
+	 * The nodes file.
+	 */
+	private final Path nodes;
+	/**
+	 * The tree hasher.
+	 */
+	private final MerkleTree tree = new MerkleTree();
+	/**
+	 * Lock held while forcing the files, so appends waiting on it are forced together.
+	 */
+	private final Object forceLock = new Object();
+	/**
+	 * The entries channel. (NULL if not open).
+	 */
+	private FileChannel entriesChannel;
+	/**
+	 * The nodes channel. (NULL if not open).
+	 */
+	private FileChannel nodesChannel;
+	/**
+	 * The number of entries forced to disk.
+	 */
+	private long durable;
+	/**
+	 * The number of entries to truncate the files to before next loaded, or -1 if none.
+	 */
+	private long truncate = -1;
+	/**
+	 * The number of times entries have been discarded after a failure.
+	 */
+	private long discards;
+	/**
+	 * The number of entries, or -1 if not yet loaded.
+	 */
+	private long size = -1;
+	/**
+	 * The roots of the complete subtrees of the tree, by height. (Present for each bit set in the size).
+	 */
+	private final byte[][] frontier = new byte[Long.SIZE][];
+
+	/**
+	 * Create a new ledger. The files are created when first used.
+	 *
+	 * @param directory The directory holding the ledger files.
+	 */
+	public IssuanceLedger(Path directory) {
+		Objects.requireNonNull(directory, "Path is not valid");
+		this.entries = directory.resolve(ENTRIES);
+		this.nodes = directory.resolve(NODES);
+	}
+
+	/**
+	 * Append an issued certificate to the ledger.
+	 *
+	 * @param certificate The DER encoded certificate.
+	 * @param issued The time of issue, in milliseconds since the epoch.
+	 * @return The index of the entry.
+	 * @throws IOException If writing the ledger fails.
+	 */
+	public long append(byte[] certificate, long issued) throws IOException {
+		Objects.requireNonNull(certificate, "Certificate is not valid");
+		byte[] entry;
+		long index = -1;
+		long discarded;
+		synchronized (this) {
+			byte[] fingerprint = tree.getDigest().digest(certificate);
+			entry = ByteBuffer.allocate(ENTRY).putLong(issued).put(fingerprint).array();
+			try {
+				load();
+				index = size;
+				add(tree.leaf(entry), nodesChannel);
+				write(entriesChannel, ByteBuffer.wrap(entry), offset(index));
+			} catch (IOException | RuntimeException ex) {
+				if (index < 0) {
+					release(ex);
+				} else {
+					discard(index, ex);
+				}
+				throw ex;
+			}
+			discarded = discards;
+		}
+		force(index, entry, discarded);
+		return index;
+	}
+
+	/**
+	 * Force the files to disk, unless the entry has already been forced by a concurrent append. All entries written
+	 * when forcing starts are forced, nodes first. (The files are reopened if closed since the entry was written). If
+	 * forcing fails, all entries not yet forced are discarded.
+	 *
+	 * @param index The index of the entry.
+	 * @param entry The encoded entry.
+	 * @param discarded The number of discards when the entry was written.
+	 * @throws IOException If forcing the files fails, or the entry was discarded by a failure since written.
+	 */
+	private void force(long index, byte[] entry, long discarded) throws IOException {
+		synchronized (forceLock) {
+			FileChannel e;
+			FileChannel n;
+			long count;
+			synchronized (this) {
+				if (discarded != discards) {
+					load();
+					if (index >= size || !Arrays.equals(entry, read(entriesChannel, ENTRY, offset(index)).array())) {
+						throw new IOException("Issuance ledger entry was discarded after a failed write");
+					}
+				}
+				if (index < durable) {
+					return;
+				}
+				load();
+				e = entriesChannel;
+				n = nodesChannel;
+				count = size;
+			}
+			try {
+				force(n);
+				force(e);
+			} catch (IOException ex) {
+				synchronized (this) {
+					discard(durable, ex);
+				}
+				throw ex;
+			}
+			synchronized (this) {
+				if (entriesChannel == e) {
+					durable = Math.max(durable, count);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Force a file to disk.
+	 *
+	 * @param channel The channel of the file.
+	 * @throws IOException If forcing the file fails.
+	 */
+	void force(FileChannel channel) throws IOException {
+		channel.force(false);
+	}
+
+	/**
+	 * Discard the entries from the given index after a failure, truncating the files and reloading. If that fails,
+	 * the files are closed, and truncated when next used.
+	 *
+	 * @param count The number of entries to keep.
+	 * @param failure The failure, to which any failure to discard is added.
+	 */
+	private void discard(long count, Exception failure) {
+		discards++;
+		truncate = count;
+		try {
+			load();
+		} catch (IOException | RuntimeException e) {
+			failure.addSuppressed(e);
+			release(failure);
+		}
+	}
+
+	/**
+	 * Get the number of entries.
+	 *
+	 * @return The number of entries.
+	 * @throws IOException If reading the ledger fails.
+	 */
+	public synchronized long size() throws IOException {
+		load();
+		return size;
+	}
+
+	/**
+	 * Get the root of the tree of all entries.
+	 *
+	 * @return The root hash.
+	 * @throws IOException If reading the ledger fails.
+	 */
+	public synchronized byte[] root() throws IOException {
+		load();
+		return fold(frontier, size, 0);
+	}
+
+	/**
+	 * Get the root of the tree of the first entries of the ledger.
+	 *
+	 * @param treeSize The number of entries in the tree.
+	 * @return The root hash.
+	 * @throws IOException If reading the ledger fails.
+	 * @throws IllegalArgumentException If the size is larger than the ledger.
+	 */
+	public synchronized byte[] root(long treeSize) throws IOException {
+		load();
+		checkSize(treeSize);
+		return fold(frontier(treeSize, nodesChannel), treeSize, 0);
+	}
+
+	/**
+	 * Get an entry.
+	 *
+	 * @param index The index of the entry.
+	 * @return The entry.
+	 * @throws IOException If reading the ledger fails.
+	 * @throws IllegalArgumentException If the index is not valid.
+	 */
+	public synchronized Entry get(long index) throws IOException {
+		load();
+		if (index < 0 || index >= size) {
+			throw new IllegalArgumentException("Entry index is not valid");
+		}
+		ByteBuffer buffer = read(entriesChannel, ENTRY, offset(index));
+		return entry(index, buffer);
+	}
+
+	/**
+	 * Find the entry of a certificate. (This scans the entries).
+	 *
+	 * @param certificate The DER encoded certificate.
+	 * @return The first entry of the certificate, or NULL if the certificate is not in the ledger.
+	 * @throws IOException If reading the ledger fails.
+	 */
+	public synchronized Entry find(byte[] certificate) throws IOException {
+		Objects.requireNonNull(certificate, "Certificate is not valid");
+		byte[] fingerprint = tree.getDigest().digest(certificate);
+		load();
+		byte[] hash = new byte[MerkleTree.HASH];
+		for (long index = 0; index < size; index += SCAN) {
+			int count = (int) Math.min(SCAN, size - index);
+			ByteBuffer buffer = read(entriesChannel, count * ENTRY, offset(index));
+			for (int i = 0; i < count; i++) {
+				buffer.position(i * ENTRY + Long.BYTES);
+				buffer.get(hash);
+				if (Arrays.equals(hash, fingerprint)) {
+					buffer.position(i * ENTRY);
+					return entry(index + i, buffer);
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Get the audit path of an entry, proving it is included in the tree of the given size.
+	 *
+	 * @param index The index of the entry.
+	 * @param treeSize The number of entries in the tree.
+	 * @return The audit path, nearest the entry first.
+	 * @throws IOException If reading the ledger fails.
+	 * @throws IllegalArgumentException If the index or size is not valid.
+	 */
+	public synchronized List<byte[]> inclusionProof(long index, long treeSize) throws IOException {
+		load();
+		checkSize(treeSize);
+		byte[][] roots = frontier(treeSize, nodesChannel);
+		return MerkleTree.path(index, treeSize, (from, to) -> subtree(from, to, treeSize, roots, nodesChannel));
+	}
+
+	/**
+	 * Get the consistency proof between two sizes of the tree, proving the later tree only appends to the earlier.
+	 *
+	 * @param first The number of entries in the earlier tree.
+	 * @param second The number of entries in the later tree.
+	 * @return The consistency proof.
+	 * @throws IOException If reading the ledger fails.
+	 * @throws IllegalArgumentException If the sizes are not valid.
+	 */
+	public synchronized List<byte[]> consistencyProof(long first, long second) throws IOException {
+		load();
+		checkSize(second);
+		byte[][] roots = frontier(second, nodesChannel);
+		return MerkleTree.consistency(first, second, (from, to) -> subtree(from, to, second, roots, nodesChannel));
+	}
+
+	/**
+	 * Close the files of the ledger. (They are opened again if the ledger is used after).
+	 *
+	 * @throws IOException If closing the files fails.
+	 */
+	@Override
+	public void close() throws IOException {
+		// Wait for any force in progress, so the files are not closed under it.
+		synchronized (forceLock) {
+			synchronized (this) {
+				closeFiles();
+			}
+		}
+	}
+
+	/**
+	 * Close the files.
+	 *
+	 * @throws IOException If closing the files fails.
+	 */
+	private void closeFiles() throws IOException {
+		unload();
+		try (FileChannel e = entriesChannel; FileChannel n = nodesChannel) {
+			entriesChannel = null;
+			nodesChannel = null;
+		}
+	}
+
+	/**
+	 * Close the files after a failure, so they are reopened and reloaded when next used.
+	 *
+	 * @param failure The failure, to which any failure to close is added.
+	 */
+	private void release(Exception failure) {
+		try {
+			closeFiles();
+		} catch (IOException e) {
+			failure.addSuppressed(e);
+		}
+	}
+
+	/**
+	 * Open the files if needed, and load the ledger.
+	 *
+	 * @throws IOException If opening, reading or repairing the ledger fails.
+	 */
+	private void load() throws IOException {
+		if (entriesChannel == null) {
+			FileChannel e = open(entries);
+			try {
+				nodesChannel = open(nodes);
+			} catch (IOException ex) {
+				e.close();
+				throw ex;
+			}
+			entriesChannel = e;
+		}
+		if (truncate >= 0) {
+			unload();
+			entriesChannel.truncate(offset(truncate));
+			nodesChannel.truncate(nodes(truncate) * MerkleTree.HASH);
+			nodesChannel.force(false);
+			entriesChannel.force(false);
+			truncate = -1;
+		}
+		load(entriesChannel, nodesChannel);
+	}
+
+	/**
+	 * Open a ledger file for reading and writing, creating it (and the directory) if needed.
+	 *
+	 * @param file The file.
+	 * @return The channel.
+	 * @throws IOException If opening the file fails.
+	 */
+	private static FileChannel open(Path file) throws IOException {
+		Files.createDirectories(file.getParent());
+		return FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+	}
+
+	/**
+	 * Load the ledger if not loaded (or changed since loaded), recovering from an incomplete append.
+	 *
+	 * @param e The entries channel.
+	 * @param n The nodes channel.
+	 * @throws IOException If reading or repairing the ledger fails.
+	 */
+	private void load(FileChannel e, FileChannel n) throws IOException {
+		long length = e.size();
+		if (size >= 0 && length == offset(size)) {
+			return;
+		}
+		unload();
+		if (length < HEADER) {
+			// New (or the header was never completed).
+			e.truncate(0);
+			write(e, ByteBuffer.allocate(HEADER).putInt(MAGIC).putInt(VERSION).flip(), 0);
+			e.force(false);
+			length = HEADER;
+		}
+		ByteBuffer header = read(e, HEADER, 0);
+		if (header.getInt() != MAGIC || header.getInt() != VERSION) {
+			throw new IOException("Not a valid issuance ledger: " + entries);
+		}
+		long count = (length - HEADER) / ENTRY;
+		durable = Math.min(durable, count);
+		if (length != offset(count)) {
+			// Partially written entry.
+			e.truncate(offset(count));
+		}
+		// Keep the nodes of the largest tree they are complete for, and rebuild the rest.
+		long available = n.size() / MerkleTree.HASH;
+		long complete = count;
+		if (available < nodes(count)) {
+			long low = 0;
+			while (low < complete) {
+				long mid = (low + complete + 1) >>> 1;
+				if (nodes(mid) <= available) {
+					low = mid;
+				} else {
+					complete = mid - 1;
+				}
+			}
+		}
+		n.truncate(nodes(complete) * MerkleTree.HASH);
+		byte[][] roots = frontier(complete, n);
+		System.arraycopy(roots, 0, frontier, 0, roots.length);
+		size = complete;
+		for (long index = complete; index < count; index += SCAN) {
+			int batch = (int) Math.min(SCAN, count - index);
+			ByteBuffer buffer = read(e, batch * ENTRY, offset(index));
+			for (int i = 0; i < batch; i++) {
+				add(tree.leaf(buffer.array(), i * ENTRY, ENTRY), n);
+			}
+		}
+		if (complete < count) {
+			n.force(false);
+		}
+	}
+
+	/**
+	 * Discard the loaded state.
+	 */
+	private void unload() {
+		size = -1;
+		Arrays.fill(frontier, null);
+	}
+
+	/**
+	 * Add a leaf to the tree, writing the leaf and the subtrees it completes.
+	 *
+	 * @param leaf The leaf hash.
+	 * @param n The nodes channel.
+	 * @throws IOException If writing the nodes fails.
+	 */
+	private void add(byte[] leaf, FileChannel n) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate((Long.numberOfTrailingZeros(~size) + 1) * MerkleTree.HASH);
+		byte[] hash = leaf;
+		buffer.put(hash);
+		int height = 0;
+		for (long s = size; (s & 1) == 1; s >>>= 1) {
+			hash = tree.node(frontier[height], hash);
+			frontier[height++] = null;
+			buffer.put(hash);
+		}
+		write(n, buffer.flip(), nodes(size) * MerkleTree.HASH);
+		frontier[height] = hash;
+		size++;
+	}
+
+	/**
+	 * Read the roots of the complete subtrees of the tree of the given size.
+	 *
+	 * @param treeSize The number of leaves.
+	 * @param n The nodes channel.
+	 * @return The roots, by height. (Present for each bit set in the size).
+	 * @throws IOException If reading the nodes fails.
+	 */
+	private byte[][] frontier(long treeSize, FileChannel n) throws IOException {
+		if (treeSize == size) {
+			return frontier.clone();
+		}
+		byte[][] roots = new byte[Long.SIZE][];
+		for (int height = 0; height < Long.SIZE; height++) {
+			if ((treeSize & (1L << height)) != 0) {
+				roots[height] = node(height, (treeSize >>> height) - 1, n);
+			}
+		}
+		return roots;
+	}
+
+	/**
+	 * Get the root of a subtree of the tree of the given size.
+	 *
+	 * @param from The first leaf of the subtree.
+	 * @param to The leaf following the subtree.
+	 * @param treeSize The number of leaves in the tree.
+	 * @param roots The roots of the complete subtrees of the tree.
+	 * @param n The nodes channel.
+	 * @return The root hash.
+	 * @throws IOException If reading the nodes fails.
+	 */
+	private byte[] subtree(long from, long to, long treeSize, byte[][] roots, FileChannel n) throws IOException {
+		long length = to - from;
+		if (Long.bitCount(length) == 1 && from % length == 0) {
+			int height = Long.numberOfTrailingZeros(length);
+			if (to == treeSize && roots[height] != null) {
+				return roots[height];
+			}
+			return node(height, from >>> height, n);
+		}
+		if (to != treeSize) {
+			throw new IllegalArgumentException("Subtree is not valid");
+		}
+		// The subtree ending at the last leaf is made of the smallest complete subtrees of the tree.
+		return fold(roots, treeSize, from);
+	}
+
+	/**
+	 * Get the root of the complete subtrees of a tree, starting from the given leaf.
+	 *
+	 * @param roots The roots of the complete subtrees of the tree.
+	 * @param treeSize The number of leaves in the tree.
+	 * @param from The first leaf.
+	 * @return The root hash.
+	 */
+	private byte[] fold(byte[][] roots, long treeSize, long from) {
+		byte[] hash = null;
+		for (int height = 0; height < Long.SIZE; height++) {
+			if ((treeSize & (1L << height)) != 0) {
+				long start = (treeSize >>> (height + 1)) << (height + 1);
+				if (start < from) {
+					break;
+				}
+				hash = hash == null ? roots[height] : tree.node(roots[height], hash);
+			}
+		}
+		return hash == null ? tree.getDigest().digest() : hash;
+	}
+
+	/**
+	 * Read the root of a complete subtree.
+	 *
+	 * @param height The height of the subtree. (0 for a leaf).
+	 * @param position The position of the subtree among those of the same height.
+	 * @param n The nodes channel.
+	 * @return The root hash.
+	 * @throws IOException If reading the nodes fails.
+	 */
+	private static byte[] node(int height, long position, FileChannel n) throws IOException {
+		// The subtree is completed by its last leaf, after the nodes of all preceding leaves and those below it.
+		long leaves = (position + 1) << height;
+		return read(n, MerkleTree.HASH, (nodes(leaves - 1) + height) * MerkleTree.HASH).array();
+	}
+
+	/**
+	 * Get the number of nodes held for a tree: the roots of all complete subtrees completed when appending.
+	 *
+	 * @param treeSize The number of leaves.
+	 * @return The number of nodes.
+	 */
+	private static long nodes(long treeSize) {
+		return 2 * treeSize - Long.bitCount(treeSize);
+	}
+
+	/**
+	 * Get the offset of an entry in the entries file.
+	 *
+	 * @param index The index of the entry.
+	 * @return The offset.
+	 */
+	private static long offset(long index) {
+		return HEADER + index * ENTRY;
+	}
+
+	/**
+	 * Check the size is within the ledger.
+	 *
+	 * @param treeSize The number of entries.
+	 */
+	private void checkSize(long treeSize) {
+		if (treeSize < 0 || treeSize > size) {
+			throw new IllegalArgumentException("Tree size is not valid");
+		}
+	}
+
+	/**
+	 * Decode an entry.
+	 *
+	 * @param index The index of the entry.
+	 * @param buffer The buffer, positioned at the entry.
+	 * @return The entry.
+	 */
+	private static Entry entry(long index, ByteBuffer buffer) {
+		long issued = buffer.getLong();
+		byte[] fingerprint = new byte[MerkleTree.HASH];
+		buffer.get(fingerprint);
+		return new Entry(index, issued, fingerprint);
+	}
+
+	/**
+	 * Read from the channel.
+	 *
+	 * @param channel The channel.
+	 * @param length The number of bytes to read.
+	 * @param position The position to read from.
+	 * @return The bytes read, with the buffer positioned at the start.
+	 * @throws IOException If reading fails, or the channel ends before all bytes are read.
+	 */
+	private static ByteBuffer read(FileChannel channel, int length, long position) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(length);
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer, position + buffer.position()) < 0) {
+				throw new EOFException("Issuance ledger is truncated");
+			}
+		}
+		return buffer.flip();
+	}
+
+	/**
+	 * Write to the channel.
+	 *
+	 * @param channel The channel.
+	 * @param buffer The bytes to write.
+	 * @param position The position to write at.
+	 * @throws IOException If writing fails.
+	 */
+	private static void write(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+		long offset = position;
+		while (buffer.hasRemaining()) {
+			offset += channel.write(buffer, offset);
+		}
+	}
+}
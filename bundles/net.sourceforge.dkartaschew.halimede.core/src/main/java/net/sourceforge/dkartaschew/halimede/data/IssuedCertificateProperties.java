@@ -17,22 +17,20 @@
 
 package net.sourceforge.dkartaschew.halimede.data;
 
+import java.io.ByteArrayInputStream;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.nio.file.Files;
+import java.math.BigInteger;
 import java.nio.file.Path;
-import java.nio.file.Paths;
 import java.security.KeyStoreException;
-import java.time.ZonedDateTime;
 import java.util.Comparator;
-import java.util.Iterator;
-import java.util.Properties;
 
 import net.sourceforge.dkartaschew.halimede.data.impl.IssuedCertificate;
+import net.sourceforge.dkartaschew.halimede.enumeration.KeyType;
+import net.sourceforge.dkartaschew.halimede.enumeration.RevokeReasonCode;
 import net.sourceforge.dkartaschew.halimede.exceptions.InvalidPasswordException;
-import net.sourceforge.dkartaschew.halimede.util.DateTimeUtil;
 
 /**
  * Holder for Issued Certificate Properties
@@ -49,10 +47,22 @@ public class IssuedCertificateProperties
 	 * @throws IOException If reading the file failed.
 	 */
 	public static IssuedCertificateProperties create(CertificateAuthority ca, Path file) throws IOException {
-		IssuedCertificateProperties p = new IssuedCertificateProperties(ca);
 		try (FileInputStream in = new FileInputStream(file.toFile())) {
-			p.load(in);
+			return load(ca, in);
 		}
+	}
+
+	/**
+	 * Create and populate a IssuedCertificateProperties instance.
+	 * 
+	 * @param ca The Certificate Authority
+	 * @param stream The stream to load from
+	 * @return A IssuedCertificateProperties instance
+	 * @throws IOException If reading the stream failed.
+	 */
+	public static IssuedCertificateProperties load(CertificateAuthority ca, InputStream stream) throws IOException {
+		IssuedCertificateProperties p = new IssuedCertificateProperties(ca);
+		p.load(stream);
 		return p;
 	}
 
@@ -131,13 +141,31 @@ public class IssuedCertificateProperties
 		/**
 		 * Original CSR if this cert was created from a CSR.
 		 */
-		csrStore
+		csrStore,
+		/**
+		 * Serial Number of the certificate this certificate renews.
+		 */
+		renewalOf,
+		/**
+		 * Serial Number of the certificate that renews this certificate.
+		 */
+		renewedBy
 	}
 
+	/**
+	 * The layout of the properties store.
+	 */
+	private final static PropertyRecord.Schema<Key> SCHEMA = new PropertyRecord.Schema<>(Key.class)//
+			.names(Key.subject)//
+			.dates(Key.startDate, Key.endDate, Key.revokeDate, Key.creationDate)//
+			.integers(Key.certificateSerialNumber)//
+			.enumeration(Key.keyType, KeyType.class)//
+			.enumeration(Key.revokeCode, RevokeReasonCode.class);
+
 	/**
 	 * The properties store
 	 */
-	private final Properties properties;
+	private final PropertyRecord<Key> properties;
 
 	/**
 	 * Create an empty properties store.
@@ -146,7 +174,7 @@ public class IssuedCertificateProperties
 	 */
 	public IssuedCertificateProperties(CertificateAuthority ca) {
 		this.ca = ca;
-		properties = new Properties();
+		properties = new PropertyRecord<>(SCHEMA, ca != null ? ca::intern : null);
 	}
 
 	/**
@@ -158,7 +186,7 @@ public class IssuedCertificateProperties
 	public IssuedCertificateProperties(CertificateAuthority ca, IIssuedCertificate issuedCertificate) {
 		this.ca = ca;
 		this.issuedCertificate = issuedCertificate;
-		properties = new Properties();
+		properties = new PropertyRecord<>(SCHEMA, ca != null ? ca::intern : null);
 	}
 
 	/**
@@ -168,7 +196,7 @@ public class IssuedCertificateProperties
 	 * @return The set value, or NULL if not present/set.
 	 */
 	public String getProperty(Key key) {
-		return properties.getProperty(key.name());
+		return properties.get(key);
 	}
 
 	/**
@@ -179,12 +207,44 @@ public class IssuedCertificateProperties
 	 * @return The prior value.
 	 */
 	public Object setProperty(Key key, String value) {
-		if(value == null) {
-			Object oldValue = getProperty(key);
-			properties.remove(key.name());
-			return oldValue;
-		}
-		return properties.setProperty(key.name(), value);
+		return properties.set(key, value);
+	}
+
+	/**
+	 * Get the given date value, without parsing.
+	 * 
+	 * @param key The date key to enquire (startDate, endDate, revokeDate or creationDate)
+	 * @return The date as epoch milliseconds, or {@link PropertyRecord#NO_DATE} if not present/set.
+	 */
+	public long getDate(Key key) {
+		return properties.getDate(key);
+	}
+
+	/**
+	 * Get the certificate serial number.
+	 * 
+	 * @return The serial number, or NULL if not present/set.
+	 */
+	public BigInteger getSerialNumber() {
+		return properties.getInteger(Key.certificateSerialNumber);
+	}
+
+	/**
+	 * Get the keying material type.
+	 * 
+	 * @return The key type, or NULL if not present/set.
+	 */
+	public KeyType getKeyType() {
+		return properties.getEnum(Key.keyType, KeyType.class);
+	}
+
+	/**
+	 * Get the reason for revocation.
+	 * 
+	 * @return The revocation reason, or NULL if not present/set.
+	 */
+	public RevokeReasonCode getRevokeCode() {
+		return properties.getEnum(Key.revokeCode, RevokeReasonCode.class);
 	}
 
 	/**
@@ -195,7 +255,6 @@ public class IssuedCertificateProperties
 	 */
 	public synchronized void load(InputStream stream) throws IOException {
 		clearIssuedCertificate();
-		properties.clear();
 		properties.load(stream);
 	}
 
@@ -226,34 +285,15 @@ public class IssuedCertificateProperties
 		}
 		// Locate and load. (The value store in the property field is the plain filename, not the full path).
 		if (getProperty(Key.pkcs12store) != null) {
-			Path filename = findFile(Paths.get(getProperty(Key.pkcs12store)));
-			issuedCertificate = IssuedCertificate.openPKCS12(filename, password);
+			byte[] data = ca.readArtefact(getProperty(Key.pkcs12store));
+			issuedCertificate = IssuedCertificate.loadPKCS12(new ByteArrayInputStream(data), password);
 		} else {
-			Path filename = findFile(Paths.get(getProperty(Key.pkcs7store)));
-			issuedCertificate = IssuedCertificate.openPKCS7(filename);
+			byte[] data = ca.readArtefact(getProperty(Key.pkcs7store));
+			issuedCertificate = IssuedCertificate.decodePKCS7(data);
 		}
 		return issuedCertificate;
 	}
 
-	/**
-	 * Attempt to locate the file within the CAs domain.
-	 * 
-	 * @param filename The filename of the PKCS12 file.
-	 * @return The absolute filename for the PKCS12 file.
-	 */
-	private Path findFile(Path filename) {
-		// Locate the PKCS12 file. (What is stored here is relative not absolute).
-		Iterator<Path> searchPaths = ca.getSearchPaths();
-		while (searchPaths.hasNext()) {
-			Path file = searchPaths.next().resolve(filename);
-			if (Files.exists(file) && Files.isReadable(file) && Files.isRegularFile(file)) {
-				return file;
-			}
-		}
-		// Not found? return the input.
-		return filename;
-	}
-
 	/**
 	 * Reset any loaded issued certificate.
 	 */
@@ -360,18 +400,18 @@ public class IssuedCertificateProperties
 				return res;
 			}
 		}
-		if (o.getProperty(Key.startDate) != null && this.getProperty(Key.startDate) != null) {
-			ZonedDateTime tS = DateTimeUtil.toZonedDateTime(this.getProperty(Key.startDate));
-			ZonedDateTime oS = DateTimeUtil.toZonedDateTime(o.getProperty(Key.startDate));
-			res = tS.compareTo(oS);
+		long tS = this.getDate(Key.startDate);
+		long oS = o.getDate(Key.startDate);
+		if (tS != PropertyRecord.NO_DATE && oS != PropertyRecord.NO_DATE) {
+			res = Long.compare(tS, oS);
 			if (res != 0) {
 				return res;
 			}
 		}
-		if (o.getProperty(Key.endDate) != null && this.getProperty(Key.endDate) != null) {
-			ZonedDateTime tS = DateTimeUtil.toZonedDateTime(this.getProperty(Key.endDate));
-			ZonedDateTime oS = DateTimeUtil.toZonedDateTime(o.getProperty(Key.endDate));
-			res = tS.compareTo(oS);
+		tS = this.getDate(Key.endDate);
+		oS = o.getDate(Key.endDate);
+		if (tS != PropertyRecord.NO_DATE && oS != PropertyRecord.NO_DATE) {
+			res = Long.compare(tS, oS);
 		}
 		return res;
 	}
@@ -0,0 +1,119 @@
+/*-
+ * Halimede Certificate Manager Plugin for Eclipse 
+ * Copyright (C) 2017-2021 Darran Kartaschew 
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v2.0 which
+ * accompanies this distribution and is available at
+ *
+ * http://www.eclipse.org/legal/epl-v20.html
+ * 
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the Eclipse
+ * Public License, v. 2.0 are satisfied: GNU General Public License, version 2
+ * with the GNU Classpath Exception which is
+ * available at https://www.gnu.org/software/classpath/license.html.
+ */
+
+package net.sourceforge.dkartaschew.halimede.data;
+
+import java.beans.PropertyChangeEvent;
+import java.util.Collection;
+import java.util.Collections;
+
+/**
+ * Change event for a collection of items of a Certificate Authority (issued, revoked, requests, templates or CRLs),
+ * describing only the items that were added, removed or updated.
+ * <p>
+ * The property name is the collection that changed (eg {@link CertificateAuthority#PROPERTY_ISSUED}). The old and new
+ * values of the event are always NULL.
+ *
+ * @param <T> The type of item.
+ */
+public class ItemsChangeEvent<T> extends PropertyChangeEvent {
+
+	private static final long serialVersionUID = -4226874637473436447L;
+
+	/**
+	 * The items added.
+	 */
+	private final transient Collection<T> added;
+	/**
+	 * The items removed.
+	 */
+	private final transient Collection<T> removed;
+	/**
+	 * The items updated.
+	 */
+	private final transient Collection<T> updated;
+
+	/**
+	 * Create a new event.
+	 *
+	 * @param source The source of the event.
+	 * @param propertyName The collection that changed.
+	 * @param added The items added. (May be NULL for none).
+	 * @param removed The items removed. (May be NULL for none).
+	 * @param updated The items updated. (May be NULL for none).
+	 */
+	public ItemsChangeEvent(Object source, String propertyName, Collection<T> added, Collection<T> removed,
+			Collection<T> updated) {
+		super(source, propertyName, null, null);
+		this.added = unmodifiable(added);
+		this.removed = unmodifiable(removed);
+		this.updated = unmodifiable(updated);
+	}
+
+	/**
+	 * Get an unmodifiable view of the collection.
+	 *
+	 * @param <T> The type of item.
+	 * @param items The items. (May be NULL).
+	 * @return An unmodifiable view of the items.
+	 */
+	private static <T> Collection<T> unmodifiable(Collection<T> items) {
+		return items == null ? Collections.emptyList() : Collections.unmodifiableCollection(items);
+	}
+
+	/**
+	 * Get the items added.
+	 *
+	 * @return The items added.
+	 */
+	public Collection<T> getAdded() {
+		return added;
+	}
+
+	/**
+	 * Get the items removed.
+	 *
+	 * @return The items removed.
+	 */
+	public Collection<T> getRemoved() {
+		return removed;
+	}
+
+	/**
+	 * Get the items whose properties were updated.
+	 *
+	 * @return The items updated.
+	 */
+	public Collection<T> getUpdated() {
+		return updated;
+	}
+
+	/**
+	 * Does this event hold no changes?
+	 *
+	 * @return TRUE if no items were added, removed or updated.
+	 */
+	public boolean isEmpty() {
+		return added.isEmpty() && removed.isEmpty() && updated.isEmpty();
+	}
+
+	@Override
+	public String toString() {
+		return getClass().getName() + "[propertyName=" + getPropertyName() + "; added=" + added.size() + "; removed="
+				+ removed.size() + "; updated=" + updated.size() + "; source=" + getSource() + "]";
+	}
+}
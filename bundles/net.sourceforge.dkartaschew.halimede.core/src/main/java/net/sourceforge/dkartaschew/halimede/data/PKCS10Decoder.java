@@ -17,7 +17,7 @@
 
 package net.sourceforge.dkartaschew.halimede.data;
 
-import java.io.FileInputStream;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.UnsupportedEncodingException;
@@ -49,12 +49,23 @@ public class PKCS10Decoder {
 	 * @throws IOException The file was unable to be read.
 	 */
 	public static ICertificateRequest open(Path filename) throws IOException {
+		return decode(Files.readAllBytes(filename));
+	}
+
+	/**
+	 * Decode the given encoded certificate request
+	 * 
+	 * @param data The encoded certificate request
+	 * @return A CertificateRequest instance, with certificate and signing information available.
+	 * @throws IOException The data was unable to be decoded.
+	 */
+	public static ICertificateRequest decode(byte[] data) throws IOException {
 		try (PEMParser pemParser = new PEMParser(new InputStreamReader(
-				new FileInputStream(filename.toFile()), StandardCharsets.UTF_8))) {
+				new ByteArrayInputStream(data), StandardCharsets.UTF_8))) {
 			Object object = pemParser.readObject();
 			if (object == null) {
 				// May be plain DER without enough info for PEMParser
-				return attemptDER(filename);
+				return attemptDER(data);
 			}
 			if (object instanceof PKCS10CertificationRequest) {
 				// Encrypted key - we will use provided password
@@ -75,14 +86,13 @@ public class PKCS10Decoder {
 	}
 
 	/**
-	 * Attempt to read the file as straight DER
+	 * Attempt to read the data as straight DER
 	 * 
-	 * @param file The file to read
+	 * @param data The data to decode
 	 * @return A CertificateRequest instance, with certificate and signing information available.
-	 * @throws IOException The file was unable to be read.
+	 * @throws IOException The data was unable to be decoded.
 	 */
-	private static ICertificateRequest attemptDER(Path file) throws IOException {
-		byte[] data = Files.readAllBytes(file);
+	private static ICertificateRequest attemptDER(byte[] data) throws IOException {
 		try (ASN1InputStream input = new ASN1InputStream(data)) {
 			ASN1Primitive p;
 			while ((p = input.readObject()) != null) {
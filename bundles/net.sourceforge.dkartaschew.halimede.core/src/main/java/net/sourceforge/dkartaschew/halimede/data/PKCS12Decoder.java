@@ -19,6 +19,7 @@ package net.sourceforge.dkartaschew.halimede.data;
 
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.file.Path;
 import java.security.Key;
 import java.security.KeyPair;
@@ -67,6 +68,23 @@ public class PKCS12Decoder {
 	 */
 	public static PKCS12Decoder open(Path filename, String password)
 			throws InvalidPasswordException, KeyStoreException, IOException {
+		try (FileInputStream fis = new FileInputStream(filename.toFile())) {
+			return load(fis, password);
+		}
+	}
+
+	/**
+	 * Create a new PKCS12 instance.
+	 * 
+	 * @param stream The stream holding the PKCS12 container.
+	 * @param password The password. (May be null)
+	 * @return A PKCS12 instance, with the Certificate and keypair available.
+	 * @throws InvalidPasswordException The password was not valid.
+	 * @throws KeyStoreException Creating the underlying Java Keystore failed.
+	 * @throws IOException Reading the stream failed.
+	 */
+	public static PKCS12Decoder load(InputStream stream, String password)
+			throws InvalidPasswordException, KeyStoreException, IOException {
 		KeyStore p12;
 		try {
 			p12 = KeyStore.getInstance(KEYSTORE, BouncyCastleProvider.PROVIDER_NAME);
@@ -74,8 +92,8 @@ public class PKCS12Decoder {
 			p12 = KeyStore.getInstance(KEYSTORE);
 		}
 		char[] pass = (password != null) ? password.toCharArray() : new char[0];
-		try (FileInputStream fis = new FileInputStream(filename.toFile())) {
-			p12.load(fis, pass);
+		try {
+			p12.load(stream, pass);
 			Enumeration<String> e = p12.aliases();
 			while (e.hasMoreElements()) {
 				String alias = (String) e.nextElement();
@@ -17,8 +17,7 @@
 
 package net.sourceforge.dkartaschew.halimede.data;
 
-import java.io.BufferedInputStream;
-import java.io.FileInputStream;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.UnsupportedEncodingException;
@@ -70,15 +69,25 @@ public class PKCS7Decoder {
 	private final Certificate[] certificates;
 
 	public static PKCS7Decoder open(Path filename) throws IOException {
+		return decode(Files.readAllBytes(filename));
+	}
+
+	/**
+	 * Decode the given encoded certificate or certificate chain.
+	 * 
+	 * @param data The encoded certificate or certificate chain.
+	 * @return A PKCS7 instance, with the certificate chain available.
+	 * @throws IOException If decoding fails.
+	 */
+	public static PKCS7Decoder decode(byte[] data) throws IOException {
 		try (PEMParser pemParser = new PEMParser(new InputStreamReader(
-				new FileInputStream(filename.toFile()), StandardCharsets.UTF_8))) {
+				new ByteArrayInputStream(data), StandardCharsets.UTF_8))) {
 			Object object = pemParser.readObject();
 			if (object == null) {
 				// May be plain DER without enough info for PEMParser
 
 				// Try simple X509 certificate.
-				try (FileInputStream fis = new FileInputStream(filename.toFile());) {
-					BufferedInputStream bis = new BufferedInputStream(fis);
+				try (ByteArrayInputStream bis = new ByteArrayInputStream(data)) {
 
 					CertificateFactory cf = CertificateFactory.getInstance("X.509", //
 							BouncyCastleProvider.PROVIDER_NAME);
@@ -91,7 +100,6 @@ public class PKCS7Decoder {
 					// throw new IOException("Parsing of file failed", e);
 				}
 				// Retry with DER PKCS7
-				byte[] data = Files.readAllBytes(filename);
 				try {
 					List<Certificate> certificates = new ArrayList<>();
 					CMSSignedData cms = new CMSSignedData(data);
@@ -0,0 +1,459 @@
+/*-
+ * Halimede Certificate Manager Plugin for Eclipse 
+ * Copyright (C) 2017-2021 Darran Kartaschew 
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v2.0 which
+ * accompanies this distribution and is available at
+ *
+ * http://www.eclipse.org/legal/epl-v20.html
+ * 
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the Eclipse
+ * Public License, v. 2.0 are satisfied: GNU General Public License, version 2
+ * with the GNU Classpath Exception which is
+ * available at https://www.gnu.org/software/classpath/license.html.
+ */
+
+package net.sourceforge.dkartaschew.halimede.data;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.Arrays;
+import java.util.Properties;
+import java.util.function.UnaryOperator;
+
+import net.sourceforge.dkartaschew.halimede.util.DateTimeUtil;
+
+/**
+ * Compact, typed store of the properties of a single CA item.
+ * <p>
+ * Values are held in a slot per key rather than a Hashtable of strings. Dates are held as epoch milliseconds, serial
+ * numbers as BigInteger, enumerated values as the enum constant, and names may be interned. The string form of a
+ * value is recreated on request, so {@link #get(Enum)} always returns exactly the value that was set. Values that
+ * don't parse (or wouldn't be recreated verbatim) are kept as the string given. A date that parses but is not in
+ * canonical form (eg has a different offset) keeps the string given for output, along with the parsed date.
+ * <p>
+ * The file format is that of {@link Properties}, and keys not known to the schema are retained.
+ *
+ * @param <K> The key type.
+ */
+public final class PropertyRecord<K extends Enum<K>> {
+
+	/**
+	 * Value returned for a date that is not set, or not a valid date.
+	 */
+	public static final long NO_DATE = Long.MIN_VALUE;
+
+	/**
+	 * The type of value held against a key.
+	 */
+	private enum Type {
+		/**
+		 * A general string.
+		 */
+		TEXT,
+		/**
+		 * A string that is commonly repeated (eg a subject name) and so is interned.
+		 */
+		NAME,
+		/**
+		 * A date in {@link DateTimeUtil#DEFAULT_FORMAT}, held as epoch milliseconds.
+		 */
+		DATE,
+		/**
+		 * An integer value, held as BigInteger.
+		 */
+		INTEGER,
+		/**
+		 * An enumerated value, held as the enum constant.
+		 */
+		ENUM
+	}
+
+	/**
+	 * Description of the keys of a record, and the type held against each key.
+	 *
+	 * @param <K> The key type.
+	 */
+	public static final class Schema<K extends Enum<K>> {
+
+		/**
+		 * The keys, indexed by ordinal.
+		 */
+		private final K[] keys;
+		/**
+		 * The type of each key, indexed by ordinal.
+		 */
+		private final Type[] types;
+		/**
+		 * The enum class of ENUM keys, indexed by ordinal.
+		 */
+		private final Class<?>[] enums;
+		/**
+		 * The index into the date array of DATE keys, indexed by ordinal.
+		 */
+		private final int[] dateSlots;
+		/**
+		 * The number of DATE keys.
+		 */
+		private int dates;
+
+		/**
+		 * Create a new schema, where all keys are general strings.
+		 *
+		 * @param keyClass The key class.
+		 */
+		public Schema(Class<K> keyClass) {
+			this.keys = keyClass.getEnumConstants();
+			this.types = new Type[keys.length];
+			this.enums = new Class<?>[keys.length];
+			this.dateSlots = new int[keys.length];
+			Arrays.fill(types, Type.TEXT);
+			Arrays.fill(dateSlots, -1);
+		}
+
+		/**
+		 * Set the given keys as holding names, which are interned.
+		 *
+		 * @param names The keys.
+		 * @return This schema.
+		 */
+		@SafeVarargs
+		public final Schema<K> names(K... names) {
+			for (K key : names) {
+				types[key.ordinal()] = Type.NAME;
+			}
+			return this;
+		}
+
+		/**
+		 * Set the given keys as holding dates.
+		 *
+		 * @param dateKeys The keys.
+		 * @return This schema.
+		 */
+		@SafeVarargs
+		public final Schema<K> dates(K... dateKeys) {
+			for (K key : dateKeys) {
+				if (types[key.ordinal()] != Type.DATE) {
+					types[key.ordinal()] = Type.DATE;
+					dateSlots[key.ordinal()] = dates++;
+				}
+			}
+			return this;
+		}
+
+		/**
+		 * Set the given keys as holding integers.
+		 *
+		 * @param integers The keys.
+		 * @return This schema.
+		 */
+		@SafeVarargs
+		public final Schema<K> integers(K... integers) {
+			for (K key : integers) {
+				types[key.ordinal()] = Type.INTEGER;
+			}
+			return this;
+		}
+
+		/**
+		 * Set the given key as holding the name of an enum constant.
+		 *
+		 * @param key The key.
+		 * @param enumClass The enum.
+		 * @return This schema.
+		 */
+		public Schema<K> enumeration(K key, Class<? extends Enum<?>> enumClass) {
+			types[key.ordinal()] = Type.ENUM;
+			enums[key.ordinal()] = enumClass;
+			return this;
+		}
+	}
+
+	/**
+	 * The schema.
+	 */
+	private final Schema<K> schema;
+	/**
+	 * The interner used for names. (May be NULL).
+	 */
+	private final UnaryOperator<String> interner;
+	/**
+	 * The values, indexed by key ordinal. Holds the typed value, or the string given if it isn't held typed. Dates
+	 * held as epoch milliseconds have a NULL value here, unless the string given was not in canonical form.
+	 */
+	private final Object[] values;
+	/**
+	 * The dates, indexed by date slot.
+	 */
+	private final long[] dates;
+	/**
+	 * Properties with keys not in the schema. (NULL if none).
+	 */
+	private Properties unknown;
+
+	/**
+	 * Create a new empty record.
+	 *
+	 * @param schema The schema.
+	 * @param interner The interner used for names. (May be NULL for no interning).
+	 */
+	public PropertyRecord(Schema<K> schema, UnaryOperator<String> interner) {
+		this.schema = schema;
+		this.interner = interner;
+		this.values = new Object[schema.keys.length];
+		this.dates = new long[schema.dates];
+		Arrays.fill(dates, NO_DATE);
+	}
+
+	/**
+	 * Get the value of the given key.
+	 *
+	 * @param key The key.
+	 * @return The value, or NULL if not set.
+	 */
+	public synchronized String get(K key) {
+		int i = key.ordinal();
+		Object value = values[i];
+		if (value instanceof String) {
+			return (String) value;
+		}
+		switch (schema.types[i]) {
+		case DATE:
+			long date = dates[schema.dateSlots[i]];
+			return date == NO_DATE ? null : DateTimeUtil.FORMATTER.format(Instant.ofEpochMilli(date));
+		case INTEGER:
+			return value == null ? null : value.toString();
+		case ENUM:
+			return value == null ? null : ((Enum<?>) value).name();
+		default:
+			return null;
+		}
+	}
+
+	/**
+	 * Set the value of the given key.
+	 *
+	 * @param key The key.
+	 * @param value The value. (NULL to remove).
+	 * @return The prior value.
+	 */
+	public synchronized String set(K key, String value) {
+		String old = get(key);
+		int i = key.ordinal();
+		Type type = schema.types[i];
+		values[i] = null;
+		if (type == Type.DATE) {
+			dates[schema.dateSlots[i]] = NO_DATE;
+		}
+		if (value == null) {
+			return old;
+		}
+		switch (type) {
+		case NAME:
+			values[i] = interner != null ? interner.apply(value) : value;
+			break;
+		case DATE:
+			long date = parseDate(value);
+			dates[schema.dateSlots[i]] = date;
+			if (date == NO_DATE || !value.equals(DateTimeUtil.FORMATTER.format(Instant.ofEpochMilli(date)))) {
+				values[i] = value;
+			}
+			break;
+		case INTEGER:
+			values[i] = parseInteger(value);
+			break;
+		case ENUM:
+			values[i] = parseEnum(schema.enums[i], value);
+			break;
+		default:
+			values[i] = value;
+		}
+		return old;
+	}
+
+	/**
+	 * Get the value of a date key.
+	 *
+	 * @param key The key.
+	 * @return The date as epoch milliseconds, or {@link #NO_DATE} if not set or not a valid date.
+	 */
+	public synchronized long getDate(K key) {
+		int i = key.ordinal();
+		if (schema.types[i] != Type.DATE) {
+			return NO_DATE;
+		}
+		return dates[schema.dateSlots[i]];
+	}
+
+	/**
+	 * Get the value of an integer key.
+	 *
+	 * @param key The key.
+	 * @return The value, or NULL if not set or not a valid integer.
+	 */
+	public synchronized BigInteger getInteger(K key) {
+		Object value = values[key.ordinal()];
+		return value instanceof BigInteger ? (BigInteger) value : null;
+	}
+
+	/**
+	 * Get the value of an enumerated key.
+	 *
+	 * @param <E> The enum type.
+	 * @param key The key.
+	 * @param enumClass The enum class.
+	 * @return The value, or NULL if not set or not a valid constant.
+	 */
+	public synchronized <E extends Enum<E>> E getEnum(K key, Class<E> enumClass) {
+		Object value = values[key.ordinal()];
+		return enumClass.isInstance(value) ? enumClass.cast(value) : null;
+	}
+
+	/**
+	 * Load the record from the given stream, replacing all values.
+	 *
+	 * @param stream The stream to read the properties from.
+	 * @throws IOException If the load failed.
+	 */
+	public void load(InputStream stream) throws IOException {
+		Properties properties = new Properties();
+		properties.load(stream);
+		synchronized (this) {
+			Arrays.fill(values, null);
+			Arrays.fill(dates, NO_DATE);
+			for (K key : schema.keys) {
+				Object value = properties.remove(key.name());
+				if (value != null) {
+					set(key, value.toString());
+				}
+			}
+			unknown = properties.isEmpty() ? null : properties;
+		}
+	}
+
+	/**
+	 * Store the record to the given stream.
+	 *
+	 * @param stream The stream to write to.
+	 * @param comments The comment to write in the header.
+	 * @throws IOException If the store failed.
+	 */
+	public void store(OutputStream stream, String comments) throws IOException {
+		Properties properties = new Properties();
+		synchronized (this) {
+			if (unknown != null) {
+				properties.putAll(unknown);
+			}
+			for (K key : schema.keys) {
+				String value = get(key);
+				if (value != null) {
+					properties.setProperty(key.name(), value);
+				}
+			}
+		}
+		properties.store(stream, comments);
+	}
+
+	/**
+	 * Parse a date.
+	 *
+	 * @param value The value.
+	 * @return The epoch milliseconds, or {@link #NO_DATE} if it is not a date.
+	 */
+	private static long parseDate(String value) {
+		try {
+			return DateTimeUtil.toZonedDateTime(value).toInstant().toEpochMilli();
+		} catch (DateTimeParseException | ArithmeticException e) {
+			// Not a date, so held as given.
+		}
+		return NO_DATE;
+	}
+
+	/**
+	 * Parse an integer.
+	 *
+	 * @param value The value.
+	 * @return The BigInteger, or the value if it is not an integer that formats back to the same value.
+	 */
+	private static Object parseInteger(String value) {
+		try {
+			BigInteger integer = new BigInteger(value);
+			if (value.equals(integer.toString())) {
+				return integer;
+			}
+		} catch (NumberFormatException e) {
+			// Not an integer, so held as given.
+		}
+		return value;
+	}
+
+	/**
+	 * Parse an enum constant.
+	 *
+	 * @param enumClass The enum class.
+	 * @param value The value.
+	 * @return The constant, or the value if it is not a constant of the enum.
+	 */
+	private static Object parseEnum(Class<?> enumClass, String value) {
+		for (Object constant : enumClass.getEnumConstants()) {
+			if (((Enum<?>) constant).name().equals(value)) {
+				return constant;
+			}
+		}
+		return value;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * The hash code is that of the equivalent {@link Properties}, so is stable across the change of representation.
+	 */
+	@Override
+	public synchronized int hashCode() {
+		int result = (unknown == null) ? 0 : unknown.hashCode();
+		for (K key : schema.keys) {
+			String value = get(key);
+			if (value != null) {
+				result += key.name().hashCode() ^ value.hashCode();
+			}
+		}
+		return result;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (obj == null)
+			return false;
+		if (getClass() != obj.getClass())
+			return false;
+		PropertyRecord<?> other = (PropertyRecord<?>) obj;
+		if (schema != other.schema)
+			return false;
+		// Values are held in a canonical form, so compare directly. Copy the other under its own lock so two
+		// records are never locked together.
+		Object[] otherValues;
+		long[] otherDates;
+		Properties otherUnknown;
+		synchronized (other) {
+			otherValues = other.values.clone();
+			otherDates = other.dates.clone();
+			otherUnknown = other.unknown;
+		}
+		synchronized (this) {
+			if (!Arrays.equals(values, otherValues) || !Arrays.equals(dates, otherDates))
+				return false;
+			if (unknown == null)
+				return otherUnknown == null;
+			return unknown.equals(otherUnknown);
+		}
+	}
+}
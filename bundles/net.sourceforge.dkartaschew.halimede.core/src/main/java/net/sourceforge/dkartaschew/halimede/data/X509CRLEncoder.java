@@ -17,6 +17,7 @@
 
 package net.sourceforge.dkartaschew.halimede.data;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
@@ -53,20 +54,30 @@ public class X509CRLEncoder {
 	}
 
 	public static X509CRL open(Path filename) throws IOException {
+		return decode(Files.readAllBytes(filename));
+	}
+
+	/**
+	 * Decode the given encoded CRL.
+	 * 
+	 * @param data The encoded CRL
+	 * @return The CRL.
+	 * @throws IOException If decoding fails.
+	 */
+	public static X509CRL decode(byte[] data) throws IOException {
 		try (PEMParser pemParser = new PEMParser(new InputStreamReader(
-				Files.newInputStream(filename), StandardCharsets.UTF_8))) {
+				new ByteArrayInputStream(data), StandardCharsets.UTF_8))) {
 			Object object = pemParser.readObject();
 			if (object == null) {
 				// May be plain DER without enough info for PEMParser
 
 				// Try simple X509 CRL .
-				try (InputStream fis = Files.newInputStream(filename)) {
+				try (InputStream fis = new ByteArrayInputStream(data)) {
 					return new JcaX509CRLConverter().getCRL(new X509CRLHolder(fis));
 				} catch (CRLException | CertIOException e) {
 					// throw new IOException("Parsing of file failed", e);
 				}
 				// Retry with DER CMS Store
-				byte[] data = Files.readAllBytes(filename);
 				try {
 					CMSSignedData cms = new CMSSignedData(data);
 					Store<X509CRLHolder> crls = cms.getCRLs();
@@ -130,22 +141,34 @@ public class X509CRLEncoder {
 	 */
 	public static void create(Path filename, EncodingType encoding, X509CRL crl) throws IOException {
 		try (OutputStream out = Files.newOutputStream(filename)) {
-			switch (encoding) {
-			case PEM:
-				try (JcaPEMWriter writer = new JcaPEMWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));) {
-					writer.writeObject(crl);
-				}
-				break;
-			case DER:
-			default:
-				try {
-					out.write(crl.getEncoded());
-					out.flush();
-				} catch (CRLException e) {
-					throw new IOException(e);
-				}
-				break;
+			save(out, encoding, crl);
+		}
+	}
+
+	/**
+	 * Write the CRL to the given stream
+	 * 
+	 * @param out The stream to write to.
+	 * @param encoding The encoding type
+	 * @param crl The build CRL information
+	 * @throws IOException Writing to the stream failed
+	 */
+	public static void save(OutputStream out, EncodingType encoding, X509CRL crl) throws IOException {
+		switch (encoding) {
+		case PEM:
+			try (JcaPEMWriter writer = new JcaPEMWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));) {
+				writer.writeObject(crl);
+			}
+			break;
+		case DER:
+		default:
+			try {
+				out.write(crl.getEncoded());
+				out.flush();
+			} catch (CRLException e) {
+				throw new IOException(e);
 			}
+			break;
 		}
 	}
 }
@@ -23,6 +23,8 @@ import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.nio.file.Path;
 import java.time.ZonedDateTime;
 import java.util.Collection;
@@ -56,7 +58,18 @@ public class CertificateKeyPairTemplate implements ICertificateKeyPairTemplate,
 	 * @throws Exception If writing the information failed.
 	 */
 	public static void write(CertificateKeyPairTemplate settings, Path filename) throws Exception {
-		try (XMLEncoder encoder = new XMLEncoder(new BufferedOutputStream(new FileOutputStream(filename.toFile())))) {
+		save(settings, new FileOutputStream(filename.toFile()));
+	}
+
+	/**
+	 * Store the certificate template.
+	 * 
+	 * @param settings The instance to store
+	 * @param stream The stream to store the template to. (The stream is closed on completion).
+	 * @throws Exception If writing the information failed.
+	 */
+	public static void save(CertificateKeyPairTemplate settings, OutputStream stream) throws Exception {
+		try (XMLEncoder encoder = new XMLEncoder(new BufferedOutputStream(stream))) {
 
 			// Add a specialised persistence delegate for ZonedDateTime, etc
 			encoder.setPersistenceDelegate(ZonedDateTime.class, new ZonedDateTimePersistenceDelegate());
@@ -79,7 +92,18 @@ public class CertificateKeyPairTemplate implements ICertificateKeyPairTemplate,
 	 * @throws Exception If reading/decoding the settings failed.
 	 */
 	public static CertificateKeyPairTemplate read(Path filename) throws Exception {
-		try (XMLDecoder decoder = new XMLDecoder(new BufferedInputStream(new FileInputStream(filename.toFile())))) {
+		return load(new FileInputStream(filename.toFile()));
+	}
+
+	/**
+	 * Read the certificate template
+	 * 
+	 * @param stream The stream to read the template from. (The stream is closed on completion).
+	 * @return An instance of the template.
+	 * @throws Exception If reading/decoding the template failed.
+	 */
+	public static CertificateKeyPairTemplate load(InputStream stream) throws Exception {
+		try (XMLDecoder decoder = new XMLDecoder(new BufferedInputStream(stream))) {
 			return (CertificateKeyPairTemplate) decoder.readObject();
 		}
 	}
@@ -361,6 +385,11 @@ public class CertificateKeyPairTemplate implements ICertificateKeyPairTemplate,
 		write(this, filename);
 	}
 
+	@Override
+	public void save(OutputStream stream) throws Exception {
+		save(this, stream);
+	}
+
 	@Override
 	public ICertificateRequest asCertificateRequest() {
 		CertificateRequest request = new CertificateRequest();
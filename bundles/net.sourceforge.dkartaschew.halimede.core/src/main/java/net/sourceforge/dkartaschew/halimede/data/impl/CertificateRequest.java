@@ -17,6 +17,7 @@
 
 package net.sourceforge.dkartaschew.halimede.data.impl;
 
+import java.io.OutputStream;
 import java.nio.file.Path;
 import java.security.InvalidAlgorithmParameterException;
 import java.security.KeyPair;
@@ -406,6 +407,20 @@ public class CertificateRequest implements ICertificateRequest, ICertificateKeyP
 
 	@Override
 	public void store(Path filename) throws Exception {
+		CertificateKeyPairTemplate.write(toTemplate(), filename);
+	}
+
+	@Override
+	public void save(OutputStream stream) throws Exception {
+		CertificateKeyPairTemplate.save(toTemplate(), stream);
+	}
+
+	/**
+	 * Convert this request to a template instance for storage.
+	 * 
+	 * @return A template holding the same information as this request.
+	 */
+	private CertificateKeyPairTemplate toTemplate() {
 		CertificateKeyPairTemplate template = new CertificateKeyPairTemplate();
 		template.setSubject(subject);
 		template.setKeyType(keyType);
@@ -423,7 +438,7 @@ public class CertificateRequest implements ICertificateRequest, ICertificateKeyP
 		template.setCrlLocation(crlLocation);
 		template.setCrlIssuer(crlIssuer);
 		template.setCreationDate(creationDate);
-		CertificateKeyPairTemplate.write(template, filename);
+		return template;
 	}
 
 	@Override
@@ -66,6 +66,17 @@ public class CertificateRequestPKCS10 implements ICertificateRequest {
 		return PKCS10Decoder.open(filename);
 	}
 
+	/**
+	 * Create a new Certificate Request Instance
+	 * 
+	 * @param data The encoded CSR
+	 * @return A Certificate Request
+	 * @throws IOException Unable to decode the PKCS10 CSR.
+	 */
+	public static ICertificateRequest decode(byte[] data) throws IOException {
+		return PKCS10Decoder.decode(data);
+	}
+
 	/**
 	 * Create a new certificate request
 	 * 
@@ -19,6 +19,7 @@ package net.sourceforge.dkartaschew.halimede.data.impl;
 
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.nio.charset.StandardCharsets;
@@ -139,6 +140,36 @@ public class IssuedCertificate implements IIssuedCertificate {
 		return new IssuedCertificate(null, file.getCertificateChain(), filename, null, null);
 	}
 
+	/**
+	 * Read a PKCS#12 container from the given stream and decode as a single private key + certificate.
+	 * 
+	 * @param stream The stream holding the PKCS#12 container.
+	 * @param password The password required to open the container. (may be NULL if no password supplied. Note: a empty
+	 *            string will be a considered a supplied password).
+	 * @return An Issued Certificate instance.
+	 * @throws InvalidPasswordException The password supplied to unlock the private key or PKCS#12 file was invalid.
+	 * @throws IOException If reading the stream fails
+	 * @throws KeyStoreException The keystore failed.
+	 */
+	public static IIssuedCertificate loadPKCS12(InputStream stream, String password)
+			throws InvalidPasswordException, IOException, KeyStoreException {
+		Objects.requireNonNull(stream, "No stream provided");
+		PKCS12Decoder file = PKCS12Decoder.load(stream, password);
+		return new IssuedCertificate(file.getKeyPair(), file.getCertificateChain(), null, null, password);
+	}
+
+	/**
+	 * Decode a PKCS#7 container as a certificate.
+	 * 
+	 * @param data The encoded PKCS#7 container.
+	 * @return An Issued Certificate instance, without a private key available.
+	 * @throws IOException If decoding fails
+	 */
+	public static IIssuedCertificate decodePKCS7(byte[] data) throws IOException {
+		PKCS7Decoder file = PKCS7Decoder.decode(data);
+		return new IssuedCertificate(null, file.getCertificateChain(), null, null, null);
+	}
+
 	/**
 	 * Read a PKCS#7 file and decode as a certificate, and a PKCS#8 file and decode as a keypair.
 	 * 
@@ -301,6 +332,20 @@ public class IssuedCertificate implements IIssuedCertificate {
 
 	@Override
 	public void createPKCS12(Path filename, String password, String alias) throws IOException {
+		try (OutputStream out = new FileOutputStream(filename.toFile())) {
+			savePKCS12(out, password, alias);
+		}
+	}
+
+	/**
+	 * Write this Issued Certificate as a PKCS12 container using the JSSE keystore implementation.
+	 * 
+	 * @param out The stream to write to
+	 * @param password The password to use. (may be NULL for no password)
+	 * @param alias The alias to use within the PKCS12 container.
+	 * @throws IOException If writing to the stream failed.
+	 */
+	private void savePKCS12(OutputStream out, String password, String alias) throws IOException {
 		char[] pass = (password != null) ? password.toCharArray() : new char[0];
 		alias = (alias == null || alias.isEmpty()) ? "1" : alias;
 		try {
@@ -311,10 +356,8 @@ public class IssuedCertificate implements IIssuedCertificate {
 			KeyStore p12 = KeyStore.getInstance(PKCS12Decoder.KEYSTORE);// ,BouncyCastleProvider.PROVIDER_NAME);
 			p12.load(null, pass);
 			p12.setKeyEntry(alias, keyPair.getPrivate(), pass, certificates);
-			try (OutputStream out = new FileOutputStream(filename.toFile())) {
-				p12.store(out, pass);
-				out.flush();
-			}
+			p12.store(out, pass);
+			out.flush();
 		} catch (KeyStoreException | NoSuchAlgorithmException | CertificateException e) {
 			throw new IOException("Failed to store information", e);
 		}
@@ -322,8 +365,15 @@ public class IssuedCertificate implements IIssuedCertificate {
 
 	@Override
 	public void createPKCS12(Path filename, String password, String alias, PKCS12Cipher cipher) throws IOException {
+		try (OutputStream out = new FileOutputStream(filename.toFile())) {
+			savePKCS12(out, password, alias, cipher);
+		}
+	}
+
+	@Override
+	public void savePKCS12(OutputStream out, String password, String alias, PKCS12Cipher cipher) throws IOException {
 		if (cipher == null || cipher == PKCS12Cipher.DES3 || password == null || password.isEmpty()) {
-			createPKCS12(filename, password, alias);
+			savePKCS12(out, password, alias);
 			return;
 		}
 		try {
@@ -360,10 +410,8 @@ public class IssuedCertificate implements IIssuedCertificate {
 			pfxPduBuilder.addData(keyBagBuilder.build());
 
 			PKCS12PfxPdu pfx = pfxPduBuilder.build(new BcPKCS12MacCalculatorBuilder(), password.toCharArray());
-			try (OutputStream out = new FileOutputStream(filename.toFile())) {
-				out.write(pfx.getEncoded());
-				out.flush();
-			}
+			out.write(pfx.getEncoded());
+			out.flush();
 		} catch (NoSuchAlgorithmException | PKCSException | OperatorCreationException e) {
 			throw new IOException("Failed to store information", e);
 		}
@@ -394,29 +442,33 @@ public class IssuedCertificate implements IIssuedCertificate {
 	@Override
 	public void createCertificateChain(Path filename, EncodingType encoding) throws IOException {
 		try (OutputStream out = new FileOutputStream(filename.toFile())) {
-			switch (encoding) {
-			case PEM:
-				try (JcaPEMWriter writer = new JcaPEMWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));) {
-					for (Certificate c : certificates) {
-						writer.writeObject(c);
-					}
-				}
-				break;
-			case DER:
-			default:
-				CMSTypedData msg = new CMSProcessableByteArray(PluginDefaults.ID.getBytes(StandardCharsets.UTF_8));
-				try {
-					CMSSignedDataGenerator gen = new CMSSignedDataGenerator();
-					gen.addCertificates(new JcaCertStore(Arrays.asList(certificates)));
-					CMSSignedData sigData = gen.generate(msg, false);
-					out.write(sigData.getEncoded());
-					out.flush();
-				} catch (CertificateEncodingException | CMSException e) {
-					throw new IOException("Failed to store information", e);
+			saveCertificateChain(out, encoding);
+		}
+	}
+
+	@Override
+	public void saveCertificateChain(OutputStream out, EncodingType encoding) throws IOException {
+		switch (encoding) {
+		case PEM:
+			try (JcaPEMWriter writer = new JcaPEMWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));) {
+				for (Certificate c : certificates) {
+					writer.writeObject(c);
 				}
-				break;
 			}
-
+			break;
+		case DER:
+		default:
+			CMSTypedData msg = new CMSProcessableByteArray(PluginDefaults.ID.getBytes(StandardCharsets.UTF_8));
+			try {
+				CMSSignedDataGenerator gen = new CMSSignedDataGenerator();
+				gen.addCertificates(new JcaCertStore(Arrays.asList(certificates)));
+				CMSSignedData sigData = gen.generate(msg, false);
+				out.write(sigData.getEncoded());
+				out.flush();
+			} catch (CertificateEncodingException | CMSException e) {
+				throw new IOException("Failed to store information", e);
+			}
+			break;
 		}
 	}
 
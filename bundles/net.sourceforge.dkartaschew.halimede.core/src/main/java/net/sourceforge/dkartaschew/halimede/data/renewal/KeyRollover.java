@@ -0,0 +1,452 @@
+/*-
+ * Halimede Certificate Manager Plugin for Eclipse 
+ * Copyright (C) 2017-2021 Darran Kartaschew 
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v2.0 which
+ * accompanies this distribution and is available at
+ *
+ * http://www.eclipse.org/legal/epl-v20.html
+ * 
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the Eclipse
+ * Public License, v. 2.0 are satisfied: GNU General Public License, version 2
+ * with the GNU Classpath Exception which is
+ * available at https://www.gnu.org/software/classpath/license.html.
+ */
+
+package net.sourceforge.dkartaschew.halimede.data.renewal;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.KeyPair;
+import java.security.cert.Certificate;
+import java.security.cert.X509Certificate;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Properties;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+
+import org.bouncycastle.asn1.x500.X500Name;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.SubMonitor;
+
+import net.sourceforge.dkartaschew.halimede.data.CertificateAuthority;
+import net.sourceforge.dkartaschew.halimede.data.CertificateFactory;
+import net.sourceforge.dkartaschew.halimede.data.IssuedCertificateProperties;
+import net.sourceforge.dkartaschew.halimede.data.IssuedCertificateProperties.Key;
+import net.sourceforge.dkartaschew.halimede.data.KeyPairFactory;
+import net.sourceforge.dkartaschew.halimede.data.impl.IssuedCertificate;
+import net.sourceforge.dkartaschew.halimede.data.renewal.RenewalReport.Result;
+import net.sourceforge.dkartaschew.halimede.data.store.IDatastore;
+import net.sourceforge.dkartaschew.halimede.enumeration.KeyType;
+import net.sourceforge.dkartaschew.halimede.enumeration.SignatureAlgorithm;
+import net.sourceforge.dkartaschew.halimede.exceptions.DatastoreLockedException;
+import net.sourceforge.dkartaschew.halimede.util.DateTimeUtil;
+
+/**
+ * Rollover of the signing key of a (root) Certificate Authority.
+ * <p>
+ * The rollover generates a new CA key and self signed certificate, creates the OldWithNew and NewWithOld cross
+ * certificates (so relying parties trusting either key can validate the other), and replaces the CA issuer. All valid
+ * issued certificates are then re-issued under the new key, retaining their keying material and expiry date, in blocks
+ * which are renewed in parallel by the {@link RenewalEngine}.
+ * <p>
+ * Progress is check-pointed to the {@link #STATE_FILENAME} file of the CA after the key is replaced and after each
+ * block, so an interrupted or cancelled rollover can be resumed via {@link #resume(String, IProgressMonitor)}.
+ * Certificates are never re-issued twice, as the re-issued certificates are linked to the originals.
+ */
+public class KeyRollover {
+
+	/**
+	 * The filename of the rollover state.
+	 */
+	public static final String STATE_FILENAME = "rollover.properties";
+
+	/**
+	 * The number of certificates re-issued between check-points.
+	 */
+	public static final int BLOCK_SIZE = 64;
+
+	/**
+	 * The phase of a key rollover.
+	 */
+	public enum Phase {
+		/**
+		 * The new key is being generated and the CA issuer replaced.
+		 */
+		KEY,
+		/**
+		 * The certificates are being re-issued.
+		 */
+		REISSUE,
+		/**
+		 * The rollover is complete.
+		 */
+		COMPLETE
+	}
+
+	/*
+	 * State keys
+	 */
+	private static final String PHASE = "phase";
+	private static final String KEY_TYPE = "keyType";
+	private static final String SIGNATURE = "signatureAlgorithm";
+	private static final String EXPIRY = "expiryDate";
+	private static final String OLD_SERIAL = "oldSerial";
+	private static final String NEW_SERIAL = "newSerial";
+	private static final String OLD_WITH_NEW = "oldWithNew";
+	private static final String NEW_WITH_OLD = "newWithOld";
+	private static final String CERTIFICATES = "certificates";
+	private static final String COMPLETED = "completed";
+	private static final String FAILED = "failed";
+
+	/**
+	 * Separator of serial numbers in the state.
+	 */
+	private static final String SEPARATOR = ",";
+
+	/**
+	 * The logger.
+	 */
+	private final Logger logger = Logger.getLogger(getClass().getName());
+
+	/**
+	 * The Certificate Authority.
+	 */
+	private final CertificateAuthority ca;
+
+	/**
+	 * Create a new key rollover.
+	 * 
+	 * @param ca The Certificate Authority whose key is rolled over.
+	 */
+	public KeyRollover(CertificateAuthority ca) {
+		this.ca = Objects.requireNonNull(ca, "Certificate Authority is not valid");
+	}
+
+	/**
+	 * Get the phase of the current (or last) rollover.
+	 * 
+	 * @return The phase, or NULL if no rollover has been started.
+	 * @throws IOException If reading the rollover state fails.
+	 */
+	public synchronized Phase getPhase() throws IOException {
+		Properties state = readState();
+		return state == null ? null : Phase.valueOf(state.getProperty(PHASE));
+	}
+
+	/**
+	 * Is a rollover in progress (started, but not complete)?
+	 * 
+	 * @return TRUE if a rollover can be resumed.
+	 * @throws IOException If reading the rollover state fails.
+	 */
+	public boolean isInProgress() throws IOException {
+		Phase phase = getPhase();
+		return phase != null && phase != Phase.COMPLETE;
+	}
+
+	/**
+	 * Get the filename of the OldWithNew cross certificate (the new public key signed by the old key).
+	 * 
+	 * @return The filename (in the CA root), or NULL if not yet created.
+	 * @throws IOException If reading the rollover state fails.
+	 */
+	public synchronized String getOldWithNewFilename() throws IOException {
+		Properties state = readState();
+		return state == null ? null : state.getProperty(OLD_WITH_NEW);
+	}
+
+	/**
+	 * Get the filename of the NewWithOld cross certificate (the old public key signed by the new key).
+	 * 
+	 * @return The filename (in the CA root), or NULL if not yet created.
+	 * @throws IOException If reading the rollover state fails.
+	 */
+	public synchronized String getNewWithOldFilename() throws IOException {
+		Properties state = readState();
+		return state == null ? null : state.getProperty(NEW_WITH_OLD);
+	}
+
+	/**
+	 * Start a key rollover.
+	 * 
+	 * @param keyType The type of the new CA key.
+	 * @param signatureAlg The signature algorithm to use with the new key.
+	 * @param expiryDate The expiry date of the new CA certificate.
+	 * @param password The password to read the PKCS12 containers of the issued certificates, and for the re-issued
+	 *            containers.
+	 * @param monitor The progress monitor. (May be NULL).
+	 * @return The report of the re-issued certificates.
+	 * @throws DatastoreLockedException If the Certificate Authority is locked.
+	 * @throws IllegalStateException If a rollover is in progress, or the CA is not a root CA.
+	 * @throws IllegalArgumentException If the signature algorithm is not applicable to the key type.
+	 * @throws Exception If generating the new key or certificates, or storing them fails.
+	 */
+	public synchronized RenewalReport start(KeyType keyType, SignatureAlgorithm signatureAlg,
+			ZonedDateTime expiryDate, String password, IProgressMonitor monitor) throws Exception {
+		Objects.requireNonNull(keyType, "Key Type is not valid");
+		Objects.requireNonNull(signatureAlg, "Signature Algorithm is not valid");
+		Objects.requireNonNull(expiryDate, "Expiry Date is not valid");
+		if (ca.isLocked()) {
+			throw new DatastoreLockedException("The Certificate Authority is locked");
+		}
+		if (isInProgress()) {
+			throw new IllegalStateException("A key rollover is already in progress");
+		}
+		if (!SignatureAlgorithm.forType(keyType).contains(signatureAlg)) {
+			throw new IllegalArgumentException("Signature Algorithm is not applicable to the Key Type");
+		}
+		if (!expiryDate.isAfter(ZonedDateTime.now(DateTimeUtil.DEFAULT_ZONE))) {
+			throw new IllegalArgumentException("Expiry Date is in the past");
+		}
+		X509Certificate current = (X509Certificate) ca.getCertificate();
+		if (ca.getCertificateChain().length != 1
+				|| !current.getSubjectX500Principal().equals(current.getIssuerX500Principal())) {
+			throw new IllegalStateException("Key rollover is only supported for root Certificate Authorities");
+		}
+
+		// Fix the certificates to re-issue, so a resumed rollover re-issues the same certificates.
+		long now = Instant.now().toEpochMilli();
+		String certificates = ca.getIssuedCertificates().stream()//
+				.filter(p -> p.getProperty(Key.renewedBy) == null && p.getDate(Key.endDate) > now)//
+				.sorted(Comparator.comparingLong(p -> p.getDate(Key.endDate)))//
+				.map(p -> p.getProperty(Key.certificateSerialNumber))//
+				.collect(Collectors.joining(SEPARATOR));
+
+		Properties state = new Properties();
+		state.setProperty(PHASE, Phase.KEY.name());
+		state.setProperty(KEY_TYPE, keyType.name());
+		state.setProperty(SIGNATURE, signatureAlg.name());
+		state.setProperty(EXPIRY, DateTimeUtil.toString(expiryDate));
+		state.setProperty(OLD_SERIAL, current.getSerialNumber().toString());
+		state.setProperty(CERTIFICATES, certificates);
+		state.setProperty(COMPLETED, "0");
+		writeState(state);
+		logger.log(Level.INFO, "Started key rollover to {0} ({1})", new Object[] { keyType, signatureAlg });
+		return resume(state, password, monitor);
+	}
+
+	/**
+	 * Resume an interrupted or cancelled key rollover.
+	 * 
+	 * @param password The password to read the PKCS12 containers of the issued certificates, and for the re-issued
+	 *            containers.
+	 * @param monitor The progress monitor. (May be NULL).
+	 * @return The report of the certificates re-issued during this call.
+	 * @throws DatastoreLockedException If the Certificate Authority is locked.
+	 * @throws IllegalStateException If no rollover is in progress, or the CA issuer was changed since the rollover
+	 *             started.
+	 * @throws Exception If generating the new key or certificates, or storing them fails.
+	 */
+	public synchronized RenewalReport resume(String password, IProgressMonitor monitor) throws Exception {
+		if (ca.isLocked()) {
+			throw new DatastoreLockedException("The Certificate Authority is locked");
+		}
+		Properties state = readState();
+		if (state == null || Phase.valueOf(state.getProperty(PHASE)) == Phase.COMPLETE) {
+			throw new IllegalStateException("No key rollover is in progress");
+		}
+		return resume(state, password, monitor);
+	}
+
+	/**
+	 * Continue the rollover from the given state.
+	 * 
+	 * @param state The rollover state.
+	 * @param password The password for the PKCS12 containers.
+	 * @param monitor The progress monitor. (May be NULL).
+	 * @return The report of the certificates re-issued.
+	 * @throws Exception If the rollover fails.
+	 */
+	private RenewalReport resume(Properties state, String password, IProgressMonitor monitor) throws Exception {
+		SubMonitor subMonitor = SubMonitor.convert(monitor, "Key Rollover", 100);
+		if (Phase.valueOf(state.getProperty(PHASE)) == Phase.KEY) {
+			subMonitor.subTask("Replacing Certificate Authority key");
+			replaceKey(state);
+		}
+		subMonitor.worked(10);
+		return reissue(state, password, subMonitor.newChild(90));
+	}
+
+	/**
+	 * Generate the new key, self signed and cross certificates, and replace the CA issuer.
+	 * 
+	 * @param state The rollover state.
+	 * @throws Exception If generating or storing the new key or certificates fails.
+	 */
+	private void replaceKey(Properties state) throws Exception {
+		X509Certificate current = (X509Certificate) ca.getCertificate();
+		String currentSerial = current.getSerialNumber().toString();
+		// The key may have been replaced before the state was updated.
+		if (!currentSerial.equals(state.getProperty(NEW_SERIAL))) {
+			if (!currentSerial.equals(state.getProperty(OLD_SERIAL))) {
+				throw new IllegalStateException("The Certificate Authority issuer has changed since the rollover started");
+			}
+			KeyType keyType = KeyType.valueOf(state.getProperty(KEY_TYPE));
+			SignatureAlgorithm signatureAlg = SignatureAlgorithm.valueOf(state.getProperty(SIGNATURE));
+			ZonedDateTime expiryDate = DateTimeUtil.toZonedDateTime(state.getProperty(EXPIRY));
+
+			// The next serial number is corrected against the issued certificates when loaded.
+			ca.load(null);
+			KeyPair keyPair = KeyPairFactory.generateKeyPair(keyType);
+			X500Name subject = X500Name.getInstance(current.getSubjectX500Principal().getEncoded());
+			X509Certificate certificate = CertificateFactory.generateSelfSignedCertificate(subject,
+					ZonedDateTime.now(DateTimeUtil.DEFAULT_ZONE), expiryDate, keyPair, signatureAlg, true);
+			X509Certificate oldWithNew = CertificateFactory.generateCrossCertificate(certificate, current,
+					ca.getKeyPair().getPrivate(), ca.getSignatureAlgorithm(), ca.getNextSerialNumber());
+			X509Certificate newWithOld = CertificateFactory.generateCrossCertificate(current, certificate,
+					keyPair.getPrivate(), signatureAlg, ca.getNextSerialNumber());
+
+			String base = "ca-" + currentSerial;
+			String oldWithNewFilename = base + "-OldWithNew.cer";
+			String newWithOldFilename = base + "-NewWithOld.cer";
+			write(oldWithNewFilename, oldWithNew.getEncoded());
+			write(newWithOldFilename, newWithOld.getEncoded());
+			state.setProperty(NEW_SERIAL, certificate.getSerialNumber().toString());
+			state.setProperty(OLD_WITH_NEW, oldWithNewFilename);
+			state.setProperty(NEW_WITH_OLD, newWithOldFilename);
+			writeState(state);
+
+			ca.replaceIssuer(new IssuedCertificate(keyPair, new Certificate[] { certificate }, null, null,
+					ca.getPassword()), signatureAlg, base + ".p12");
+			logger.log(Level.INFO, "Replaced Certificate Authority key {0} with {1}",
+					new Object[] { currentSerial, state.getProperty(NEW_SERIAL) });
+		}
+		state.setProperty(PHASE, Phase.REISSUE.name());
+		writeState(state);
+	}
+
+	/**
+	 * Re-issue the remaining certificates under the new key, check-pointing after each block.
+	 * 
+	 * @param state The rollover state.
+	 * @param password The password for the PKCS12 containers.
+	 * @param monitor The progress monitor.
+	 * @return The report of the certificates re-issued.
+	 * @throws Exception If storing the state fails.
+	 */
+	private RenewalReport reissue(Properties state, String password, IProgressMonitor monitor) throws Exception {
+		List<String> serials = split(state.getProperty(CERTIFICATES));
+		Map<String, IssuedCertificateProperties> issued = new HashMap<>();
+		for (IssuedCertificateProperties p : ca.getIssuedCertificates()) {
+			issued.putIfAbsent(p.getProperty(Key.certificateSerialNumber), p);
+		}
+		// Those revoked or re-issued since the rollover started are skipped.
+		List<IssuedCertificateProperties> pending = new ArrayList<>();
+		for (String serial : serials) {
+			IssuedCertificateProperties p = issued.get(serial);
+			if (p != null && p.getProperty(Key.renewedBy) == null) {
+				pending.add(p);
+			}
+		}
+		Set<String> failed = new LinkedHashSet<>(split(state.getProperty(FAILED)));
+		int completed = serials.size() - pending.size();
+
+		RenewalEngine engine = new RenewalEngine(ca);
+		engine.setRetainKeys(true);
+		engine.setRetainExpiry(true);
+		SubMonitor subMonitor = SubMonitor.convert(monitor, "Re-issuing Certificates", pending.size());
+		List<Result> results = new ArrayList<>(pending.size());
+		boolean cancelled = false;
+		for (int i = 0; i < pending.size() && !cancelled; i += BLOCK_SIZE) {
+			if (subMonitor.isCanceled()) {
+				cancelled = true;
+				break;
+			}
+			List<IssuedCertificateProperties> block = pending.subList(i, Math.min(pending.size(), i + BLOCK_SIZE));
+			RenewalReport report = engine.renew(block, password, subMonitor.newChild(block.size()));
+			for (Result r : report.getResults()) {
+				String serial = r.getOriginal().getProperty(Key.certificateSerialNumber);
+				if (r.isRenewed()) {
+					failed.remove(serial);
+					completed++;
+				} else if (r.getError() != null) {
+					failed.add(serial);
+				}
+			}
+			results.addAll(report.getResults());
+			cancelled = report.isCancelled();
+			// Check-point.
+			state.setProperty(COMPLETED, Integer.toString(completed));
+			state.setProperty(FAILED, String.join(SEPARATOR, failed));
+			writeState(state);
+		}
+		if (!cancelled) {
+			state.setProperty(PHASE, Phase.COMPLETE.name());
+			writeState(state);
+			logger.log(Level.INFO, "Key rollover complete: {0} of {1} certificates re-issued",
+					new Object[] { completed, serials.size() });
+		}
+		return new RenewalReport(results, cancelled);
+	}
+
+	/**
+	 * Split the list of serial numbers.
+	 * 
+	 * @param value The separated list. (May be NULL).
+	 * @return The serial numbers.
+	 */
+	private static List<String> split(String value) {
+		if (value == null || value.isEmpty()) {
+			return new ArrayList<>();
+		}
+		return new ArrayList<>(Arrays.asList(value.split(SEPARATOR)));
+	}
+
+	/**
+	 * Write the item to the CA root.
+	 * 
+	 * @param filename The filename.
+	 * @param data The contents.
+	 * @throws IOException If writing fails.
+	 */
+	private void write(String filename, byte[] data) throws IOException {
+		try (OutputStream out = ca.getDatastore().put(IDatastore.ROOT, filename)) {
+			out.write(data);
+		}
+	}
+
+	/**
+	 * Read the rollover state.
+	 * 
+	 * @return The state, or NULL if no rollover has been started.
+	 * @throws IOException If reading the state fails.
+	 */
+	private Properties readState() throws IOException {
+		IDatastore datastore = ca.getDatastore();
+		if (!datastore.exists(IDatastore.ROOT, STATE_FILENAME)) {
+			return null;
+		}
+		Properties state = new Properties();
+		try (InputStream in = datastore.get(IDatastore.ROOT, STATE_FILENAME)) {
+			state.load(in);
+		}
+		return state;
+	}
+
+	/**
+	 * Write the rollover state.
+	 * 
+	 * @param state The state.
+	 * @throws IOException If writing the state fails.
+	 */
+	private void writeState(Properties state) throws IOException {
+		try (OutputStream out = ca.getDatastore().put(IDatastore.ROOT, STATE_FILENAME)) {
+			state.store(out, "Certificate Authority Key Rollover");
+		}
+	}
+}
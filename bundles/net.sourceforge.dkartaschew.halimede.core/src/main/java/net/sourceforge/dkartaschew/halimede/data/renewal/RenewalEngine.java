@@ -0,0 +1,545 @@
+/*-
+ * Halimede Certificate Manager Plugin for Eclipse 
+ * Copyright (C) 2017-2021 Darran Kartaschew 
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v2.0 which
+ * accompanies this distribution and is available at
+ *
+ * http://www.eclipse.org/legal/epl-v20.html
+ * 
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the Eclipse
+ * Public License, v. 2.0 are satisfied: GNU General Public License, version 2
+ * with the GNU Classpath Exception which is
+ * available at https://www.gnu.org/software/classpath/license.html.
+ */
+
+package net.sourceforge.dkartaschew.halimede.data.renewal;
+
+import java.io.ByteArrayInputStream;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.security.KeyPair;
+import java.security.cert.X509Certificate;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+
+import org.bouncycastle.asn1.ASN1EncodableVector;
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.asn1.x509.BasicConstraints;
+import org.bouncycastle.asn1.x509.ExtendedKeyUsage;
+import org.bouncycastle.asn1.x509.Extension;
+import org.bouncycastle.asn1.x509.Extensions;
+import org.bouncycastle.asn1.x509.GeneralNames;
+import org.bouncycastle.asn1.x509.KeyPurposeId;
+import org.bouncycastle.asn1.x509.KeyUsage;
+import org.bouncycastle.cert.jcajce.JcaX509CertificateHolder;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.SubMonitor;
+
+import net.sourceforge.dkartaschew.halimede.data.CertificateAuthority;
+import net.sourceforge.dkartaschew.halimede.data.ICertificateRequest;
+import net.sourceforge.dkartaschew.halimede.data.IIssuedCertificate;
+import net.sourceforge.dkartaschew.halimede.data.IssuedCertificateProperties;
+import net.sourceforge.dkartaschew.halimede.data.IssuedCertificateProperties.Key;
+import net.sourceforge.dkartaschew.halimede.data.PropertyRecord;
+import net.sourceforge.dkartaschew.halimede.data.impl.CertificateRequest;
+import net.sourceforge.dkartaschew.halimede.data.impl.CertificateRequestPKCS10;
+import net.sourceforge.dkartaschew.halimede.data.impl.IssuedCertificate;
+import net.sourceforge.dkartaschew.halimede.data.renewal.RenewalReport.Method;
+import net.sourceforge.dkartaschew.halimede.data.renewal.RenewalReport.Result;
+import net.sourceforge.dkartaschew.halimede.enumeration.KeyType;
+import net.sourceforge.dkartaschew.halimede.exceptions.DatastoreLockedException;
+import net.sourceforge.dkartaschew.halimede.util.DateTimeUtil;
+
+/**
+ * Renewal of the expiring certificates of a Certificate Authority.
+ * <p>
+ * Each certificate is renewed by signing its stored CSR again, or if no CSR is held, by creating a new request from the
+ * subject and extensions of the original certificate (with new keying material if the original was generated by the
+ * CA, unless keys are retained). The original and renewed certificates are linked via the {@link Key#renewedBy} and
+ * {@link Key#renewalOf} properties, and certificates already renewed are not candidates for renewal.
+ * <p>
+ * Candidates are renewed in batches on a dedicated, bounded pool of daemon threads. The number of threads may be set
+ * via the {@link #THREADS} system property.
+ */
+public class RenewalEngine {
+
+	/**
+	 * System Properties key (number of renewal threads)
+	 */
+	public static final String THREADS = "net.sourceforge.dkartaschew.halimede.renewal.threads";
+
+	/**
+	 * The number of certificates renewed per task.
+	 */
+	public static final int BATCH_SIZE = 8;
+
+	/**
+	 * Idle time (in seconds) before a renewal thread is released.
+	 */
+	private static final long KEEP_ALIVE = 30;
+
+	/**
+	 * Interval (in milliseconds) between progress updates.
+	 */
+	private static final long POLL_INTERVAL = 100;
+
+	/**
+	 * The shared renewal pool.
+	 */
+	private static ExecutorService executor;
+
+	/**
+	 * The logger.
+	 */
+	private final Logger logger = Logger.getLogger(getClass().getName());
+
+	/**
+	 * The Certificate Authority.
+	 */
+	private final CertificateAuthority ca;
+
+	/**
+	 * The validity period (in days) of renewed certificates, or 0 to retain the original validity period.
+	 */
+	private volatile int validityDays;
+
+	/**
+	 * Retain the expiry date of the original certificates.
+	 */
+	private volatile boolean retainExpiry;
+
+	/**
+	 * Retain the keying material of the original certificates.
+	 */
+	private volatile boolean retainKeys;
+
+	/**
+	 * Create a new renewal engine.
+	 * 
+	 * @param ca The Certificate Authority whose certificates are renewed.
+	 */
+	public RenewalEngine(CertificateAuthority ca) {
+		this.ca = Objects.requireNonNull(ca, "Certificate Authority is not valid");
+	}
+
+	/**
+	 * Get the number of threads to use for renewal.
+	 *
+	 * @return The number of renewal threads.
+	 */
+	public static int getParallelism() {
+		String threads = System.getProperty(THREADS);
+		if (threads != null) {
+			try {
+				int value = Integer.parseInt(threads.trim());
+				if (value > 0) {
+					return value;
+				}
+			} catch (NumberFormatException e) {
+				// fall through to the default.
+			}
+		}
+		return Math.max(2, Math.min(8, Runtime.getRuntime().availableProcessors()));
+	}
+
+	/**
+	 * Get the shared renewal pool, creating it if needed.
+	 *
+	 * @return The renewal pool.
+	 */
+	private static synchronized ExecutorService getExecutor() {
+		if (executor == null) {
+			final AtomicInteger count = new AtomicInteger();
+			ThreadFactory factory = r -> {
+				Thread t = new Thread(r, "Halimede Certificate Renewal-" + count.incrementAndGet());
+				t.setDaemon(true);
+				return t;
+			};
+			int threads = getParallelism();
+			ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, KEEP_ALIVE, TimeUnit.SECONDS,
+					new LinkedBlockingQueue<>(), factory);
+			pool.allowCoreThreadTimeOut(true);
+			executor = pool;
+		}
+		return executor;
+	}
+
+	/**
+	 * Get the Certificate Authority.
+	 * 
+	 * @return The Certificate Authority.
+	 */
+	public CertificateAuthority getCertificateAuthority() {
+		return ca;
+	}
+
+	/**
+	 * Get the validity period of renewed certificates.
+	 * 
+	 * @return The validity period in days, or 0 if the original validity period is retained.
+	 */
+	public int getValidityDays() {
+		return validityDays;
+	}
+
+	/**
+	 * Set the validity period of renewed certificates.
+	 * 
+	 * @param validityDays The validity period in days, or 0 to retain the original validity period.
+	 * @throws IllegalArgumentException If the validity period is negative.
+	 */
+	public void setValidityDays(int validityDays) {
+		if (validityDays < 0) {
+			throw new IllegalArgumentException("Validity period must not be negative");
+		}
+		this.validityDays = validityDays;
+	}
+
+	/**
+	 * Is the expiry date of the original certificates retained?
+	 * 
+	 * @return TRUE if the renewed certificates expire at the same time as the originals.
+	 */
+	public boolean isRetainExpiry() {
+		return retainExpiry;
+	}
+
+	/**
+	 * Set if the expiry date of the original certificates is retained, rather than applying a validity period.
+	 * 
+	 * @param retainExpiry TRUE if the renewed certificates expire at the same time as the originals.
+	 */
+	public void setRetainExpiry(boolean retainExpiry) {
+		this.retainExpiry = retainExpiry;
+	}
+
+	/**
+	 * Is the keying material of the original certificates retained?
+	 * 
+	 * @return TRUE if the keying material is retained.
+	 */
+	public boolean isRetainKeys() {
+		return retainKeys;
+	}
+
+	/**
+	 * Set if the keying material of the original certificates is retained, rather than re-keying certificates
+	 * generated by the CA.
+	 * <p>
+	 * The original key pair is re-signed (and stored as PKCS12) if the original PKCS12 container can be read with the
+	 * password given for renewal, otherwise only the public key is re-signed.
+	 * 
+	 * @param retainKeys TRUE if the keying material is retained.
+	 */
+	public void setRetainKeys(boolean retainKeys) {
+		this.retainKeys = retainKeys;
+	}
+
+	/**
+	 * Find the certificates to renew. These are issued certificates which have not been renewed, and which expire
+	 * within the given window (including those which have already expired).
+	 * 
+	 * @param days The window in days from now.
+	 * @return The candidates, ordered by expiry date.
+	 */
+	public List<IssuedCertificateProperties> findCandidates(int days) {
+		long limit = Instant.now().plus(Duration.ofDays(Math.max(0, days))).toEpochMilli();
+		return ca.getIssuedCertificates().stream()//
+				.filter(p -> p.getProperty(Key.renewedBy) == null)//
+				.filter(p -> {
+					long end = p.getDate(Key.endDate);
+					return end != PropertyRecord.NO_DATE && end <= limit;
+				})//
+				.sorted(Comparator.comparingLong(p -> p.getDate(Key.endDate)))//
+				.collect(Collectors.toList());
+	}
+
+	/**
+	 * Renew the given certificates.
+	 * <p>
+	 * The call blocks until all certificates are processed, or the monitor is cancelled. When cancelled, batches in
+	 * progress complete the certificate being renewed, and the remaining certificates are reported as not processed.
+	 * 
+	 * @param candidates The certificates to renew.
+	 * @param password The password for any new PKCS12 containers, and to read the original PKCS12 containers.
+	 * @param monitor The progress monitor. (May be NULL).
+	 * @return The report of the renewal.
+	 * @throws DatastoreLockedException If the Certificate Authority is locked.
+	 */
+	public RenewalReport renew(Collection<IssuedCertificateProperties> candidates, String password,
+			IProgressMonitor monitor) throws DatastoreLockedException {
+		Objects.requireNonNull(candidates, "Candidates are not valid");
+		if (ca.isLocked()) {
+			throw new DatastoreLockedException("The Certificate Authority is locked");
+		}
+		List<IssuedCertificateProperties> items = new ArrayList<>(candidates);
+		SubMonitor subMonitor = SubMonitor.convert(monitor, "Renewing Certificates", items.size());
+		AtomicBoolean cancelled = new AtomicBoolean();
+		AtomicInteger done = new AtomicInteger();
+
+		List<Future<List<Result>>> batches = new ArrayList<>();
+		for (int i = 0; i < items.size(); i += BATCH_SIZE) {
+			List<IssuedCertificateProperties> batch = items.subList(i, Math.min(items.size(), i + BATCH_SIZE));
+			batches.add(getExecutor().submit(() -> {
+				List<Result> results = new ArrayList<>(batch.size());
+				for (IssuedCertificateProperties p : batch) {
+					if (cancelled.get()) {
+						results.add(new Result(p, null, null, null));
+					} else {
+						results.add(renew(p, password));
+						done.incrementAndGet();
+					}
+				}
+				return results;
+			}));
+		}
+
+		List<Result> results = new ArrayList<>(items.size());
+		int reported = 0;
+		for (int i = 0; i < batches.size(); i++) {
+			List<Result> batch = null;
+			while (batch == null) {
+				try {
+					batch = batches.get(i).get(POLL_INTERVAL, TimeUnit.MILLISECONDS);
+				} catch (TimeoutException e) {
+					// Report progress below.
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					cancelled.set(true);
+				} catch (ExecutionException e) {
+					// Not expected, as failures are recorded in the results.
+					throw new IllegalStateException(e.getCause());
+				}
+				int count = done.get();
+				subMonitor.worked(count - reported);
+				reported = count;
+				if (subMonitor.isCanceled() || Thread.currentThread().isInterrupted()) {
+					cancelled.set(true);
+				}
+			}
+			results.addAll(batch);
+		}
+		RenewalReport report = new RenewalReport(results, cancelled.get());
+		logger.log(Level.INFO, "Renewal complete: {0} of {1} certificates renewed, {2} failed",
+				new Object[] { report.getRenewedCount(), results.size(), report.getFailedCount() });
+		return report;
+	}
+
+	/**
+	 * Renew a single certificate.
+	 * 
+	 * @param original The certificate to renew.
+	 * @param password The password for a new PKCS12 container, and to read the original PKCS12 container.
+	 * @return The result of the renewal.
+	 */
+	private Result renew(IssuedCertificateProperties original, String password) {
+		try {
+			ZonedDateTime start = ZonedDateTime.now(DateTimeUtil.DEFAULT_ZONE);
+			ZonedDateTime end = getExpiryDate(original, start);
+			IssuedCertificateProperties renewed;
+			Method method;
+			String csrStore = original.getProperty(Key.csrStore);
+			if (csrStore != null) {
+				byte[] csr = ca.readArtefact(csrStore);
+				renewed = ca.signAndStoreCertificateRequest(CertificateRequestPKCS10.decode(csr), start, end,
+						password);
+				renewed.setProperty(Key.csrStore, storeRequest(renewed, csr));
+				method = Method.CSR;
+			} else {
+				IIssuedCertificate issued = readIssued(original, password);
+				X509Certificate cert = getCertificate(issued);
+				CertificateRequest request = createRequest(original, cert);
+				KeyType keyType = original.getKeyType();
+				if (retainKeys && cert != null) {
+					request.setKeyPair(new KeyPair(cert.getPublicKey(), issued.getPrivateKey()));
+					if (issued.getPrivateKey() != null) {
+						request.setKeyType(keyType != null ? keyType : KeyType.forKey(cert.getPublicKey()));
+					}
+					method = Method.RESIGN;
+				} else if (!retainKeys && keyType != null) {
+					request.setKeyType(keyType);
+					method = Method.REKEY;
+				} else if (cert != null) {
+					request.setKeyPair(new KeyPair(cert.getPublicKey(), null));
+					method = Method.RESIGN;
+				} else {
+					throw new IllegalStateException("The certificate and its key type are not known");
+				}
+				if (request.getKeyType() != null && password == null) {
+					throw new IllegalArgumentException("A password is required to store the keying material");
+				}
+				renewed = ca.signAndStoreCertificateRequest(request, start, end, password);
+			}
+			link(original, renewed);
+			logger.log(Level.INFO, "Renewed Certificate {0} as {1}", new Object[] {
+					original.getProperty(Key.certificateSerialNumber), renewed.getProperty(Key.certificateSerialNumber) });
+			return new Result(original, renewed, method, null);
+		} catch (Exception e) {
+			logger.log(Level.WARNING, "Renewal of Certificate " + original.getProperty(Key.certificateSerialNumber)
+					+ " failed", e);
+			String message = e.getMessage();
+			return new Result(original, null, null, message != null ? message : e.getClass().getSimpleName());
+		}
+	}
+
+	/**
+	 * Get the expiry date of the renewed certificate.
+	 * 
+	 * @param original The certificate to renew.
+	 * @param start The start date of the renewed certificate.
+	 * @return The expiry date.
+	 */
+	private ZonedDateTime getExpiryDate(IssuedCertificateProperties original, ZonedDateTime start) {
+		long startDate = original.getDate(Key.startDate);
+		long endDate = original.getDate(Key.endDate);
+		if (retainExpiry && endDate != PropertyRecord.NO_DATE) {
+			return ZonedDateTime.ofInstant(Instant.ofEpochMilli(endDate), DateTimeUtil.DEFAULT_ZONE);
+		}
+		int days = validityDays;
+		if (days == 0) {
+			if (startDate != PropertyRecord.NO_DATE && endDate != PropertyRecord.NO_DATE && endDate > startDate) {
+				return start.plus(Duration.ofMillis(endDate - startDate));
+			}
+			days = ca.getExpiryDays();
+		}
+		return start.plus(Duration.ofDays(days));
+	}
+
+	/**
+	 * Store a copy of the CSR alongside the renewed certificate.
+	 * 
+	 * @param renewed The renewed certificate.
+	 * @param csr The encoded CSR.
+	 * @return The filename of the stored CSR.
+	 * @throws Exception If storing the CSR fails.
+	 */
+	private String storeRequest(IssuedCertificateProperties renewed, byte[] csr) throws Exception {
+		String filename = renewed.getProperty(Key.pkcs12store);
+		if (filename == null) {
+			filename = renewed.getProperty(Key.pkcs7store);
+		}
+		filename = filename.substring(0, filename.lastIndexOf('.')) + ICertificateRequest.DEFAULT_EXTENSION;
+		try (OutputStream out = ca.getDatastore().put(CertificateAuthority.ISSUED_PATH, filename)) {
+			out.write(csr);
+		}
+		return filename;
+	}
+
+	/**
+	 * Create a new request from the original certificate. The subject and extensions are taken from the original
+	 * certificate if it can be read, otherwise from its properties. The keying material is not set.
+	 * 
+	 * @param original The certificate to renew.
+	 * @param cert The original certificate, or NULL if it can't be read.
+	 * @return The new request.
+	 * @throws Exception If no request can be created.
+	 */
+	private CertificateRequest createRequest(IssuedCertificateProperties original, X509Certificate cert)
+			throws Exception {
+		CertificateRequest request = new CertificateRequest();
+		request.setCreationDate(ZonedDateTime.now(DateTimeUtil.DEFAULT_ZONE));
+		request.setDescription(original.getProperty(Key.description));
+		if (cert != null) {
+			request.setSubject(X500Name.getInstance(cert.getSubjectX500Principal().getEncoded()));
+			Extensions extensions = new JcaX509CertificateHolder(cert).getExtensions();
+			if (extensions != null) {
+				request.setKeyUsage(KeyUsage.fromExtensions(extensions));
+				ExtendedKeyUsage eku = ExtendedKeyUsage.fromExtensions(extensions);
+				if (eku != null) {
+					ASN1EncodableVector usages = new ASN1EncodableVector();
+					for (KeyPurposeId id : eku.getUsages()) {
+						usages.add(id);
+					}
+					request.setExtendedKeyUsage(usages);
+				}
+				request.setSubjectAlternativeName(GeneralNames.fromExtensions(extensions,
+						Extension.subjectAlternativeName));
+				BasicConstraints constraints = BasicConstraints.fromExtensions(extensions);
+				request.setcARequest(constraints != null && constraints.isCA());
+			}
+		} else if (original.getProperty(Key.subject) != null) {
+			request.setSubject(new X500Name(original.getProperty(Key.subject)));
+		} else {
+			throw new IllegalStateException("The certificate subject is not known");
+		}
+		return request;
+	}
+
+	/**
+	 * Read the original certificate, without retaining it (or any private key) in the properties.
+	 * 
+	 * @param original The certificate to renew.
+	 * @param password The password to read the original PKCS12 container.
+	 * @return The issued certificate, or NULL if it can't be read.
+	 */
+	private IIssuedCertificate readIssued(IssuedCertificateProperties original, String password) {
+		try {
+			if (original.hasIssuedCertificate()) {
+				return original.loadIssuedCertificate(null);
+			} else if (original.getProperty(Key.pkcs7store) != null) {
+				return IssuedCertificate.decodePKCS7(ca.readArtefact(original.getProperty(Key.pkcs7store)));
+			} else if (original.getProperty(Key.pkcs12store) != null) {
+				return IssuedCertificate.loadPKCS12(
+						new ByteArrayInputStream(ca.readArtefact(original.getProperty(Key.pkcs12store))), password);
+			}
+		} catch (Exception e) {
+			logger.log(Level.FINE, "Unable to read certificate " + original.getProperty(Key.certificateSerialNumber),
+					e);
+		}
+		return null;
+	}
+
+	/**
+	 * Get the end entity certificate.
+	 * 
+	 * @param issued The issued certificate. (May be NULL).
+	 * @return The end entity certificate, or NULL if not available.
+	 */
+	private static X509Certificate getCertificate(IIssuedCertificate issued) {
+		if (issued != null && issued.getCertificateChain() != null && issued.getCertificateChain().length > 0
+				&& issued.getCertificateChain()[0] instanceof X509Certificate) {
+			return (X509Certificate) issued.getCertificateChain()[0];
+		}
+		return null;
+	}
+
+	/**
+	 * Link the original and renewed certificates, and store both.
+	 * 
+	 * @param original The original certificate.
+	 * @param renewed The renewed certificate.
+	 * @throws Exception If storing the properties fails.
+	 */
+	private void link(IssuedCertificateProperties original, IssuedCertificateProperties renewed) throws Exception {
+		BigInteger serial = renewed.getSerialNumber();
+		renewed.setProperty(Key.renewalOf, original.getProperty(Key.certificateSerialNumber));
+		if (renewed.getProperty(Key.description) == null && original.getProperty(Key.description) != null) {
+			renewed.setProperty(Key.description, original.getProperty(Key.description));
+		}
+		ca.updateIssuedCertificateProperties(renewed);
+		original.setProperty(Key.renewedBy, serial != null ? serial.toString() : null);
+		ca.updateIssuedCertificateProperties(original);
+	}
+}
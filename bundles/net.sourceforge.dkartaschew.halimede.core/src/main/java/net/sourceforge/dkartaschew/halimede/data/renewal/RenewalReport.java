@@ -0,0 +1,244 @@
+/*-
+ * Halimede Certificate Manager Plugin for Eclipse 
+ * Copyright (C) 2017-2021 Darran Kartaschew 
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v2.0 which
+ * accompanies this distribution and is available at
+ *
+ * http://www.eclipse.org/legal/epl-v20.html
+ * 
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the Eclipse
+ * Public License, v. 2.0 are satisfied: GNU General Public License, version 2
+ * with the GNU Classpath Exception which is
+ * available at https://www.gnu.org/software/classpath/license.html.
+ */
+
+package net.sourceforge.dkartaschew.halimede.data.renewal;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+import net.sourceforge.dkartaschew.halimede.data.IssuedCertificateProperties;
+import net.sourceforge.dkartaschew.halimede.data.IssuedCertificateProperties.Key;
+
+/**
+ * Summary of a renewal run.
+ */
+public class RenewalReport {
+
+	/**
+	 * How a certificate was renewed.
+	 */
+	public enum Method {
+		/**
+		 * The stored CSR was signed again.
+		 */
+		CSR("Signed stored CSR"),
+		/**
+		 * New keying material was generated using the original request parameters.
+		 */
+		REKEY("Re-keyed"),
+		/**
+		 * The existing public key was signed again.
+		 */
+		RESIGN("Signed existing public key");
+
+		/**
+		 * Plain text description
+		 */
+		private final String description;
+
+		private Method(String description) {
+			this.description = description;
+		}
+
+		/**
+		 * Get the plain text description
+		 * 
+		 * @return The plain text description.
+		 */
+		public String getDescription() {
+			return description;
+		}
+	}
+
+	/**
+	 * The outcome of renewing a single certificate.
+	 */
+	public static class Result {
+		private final IssuedCertificateProperties original;
+		private final IssuedCertificateProperties renewed;
+		private final Method method;
+		private final String error;
+
+		/**
+		 * Create a new result.
+		 * 
+		 * @param original The original certificate.
+		 * @param renewed The renewed certificate. (NULL if renewal failed or was not attempted).
+		 * @param method How the certificate was renewed. (NULL if renewal failed or was not attempted).
+		 * @param error The reason renewal failed. (NULL if renewed).
+		 */
+		public Result(IssuedCertificateProperties original, IssuedCertificateProperties renewed, Method method,
+				String error) {
+			this.original = Objects.requireNonNull(original, "Original certificate is not valid");
+			this.renewed = renewed;
+			this.method = method;
+			this.error = error;
+		}
+
+		/**
+		 * Get the original certificate.
+		 * 
+		 * @return The original certificate.
+		 */
+		public IssuedCertificateProperties getOriginal() {
+			return original;
+		}
+
+		/**
+		 * Get the renewed certificate.
+		 * 
+		 * @return The renewed certificate, or NULL if not renewed.
+		 */
+		public IssuedCertificateProperties getRenewed() {
+			return renewed;
+		}
+
+		/**
+		 * Get how the certificate was renewed.
+		 * 
+		 * @return The method, or NULL if not renewed.
+		 */
+		public Method getMethod() {
+			return method;
+		}
+
+		/**
+		 * Get the reason renewal failed.
+		 * 
+		 * @return The reason, or NULL if renewed.
+		 */
+		public String getError() {
+			return error;
+		}
+
+		/**
+		 * Was the certificate renewed?
+		 * 
+		 * @return TRUE if renewed.
+		 */
+		public boolean isRenewed() {
+			return renewed != null;
+		}
+	}
+
+	/**
+	 * The results, in candidate order.
+	 */
+	private final List<Result> results;
+	/**
+	 * Was the run cancelled before all candidates were processed?
+	 */
+	private final boolean cancelled;
+
+	/**
+	 * Create a new report.
+	 * 
+	 * @param results The results, in candidate order.
+	 * @param cancelled TRUE if the run was cancelled.
+	 */
+	public RenewalReport(List<Result> results, boolean cancelled) {
+		this.results = Collections.unmodifiableList(new ArrayList<>(results));
+		this.cancelled = cancelled;
+	}
+
+	/**
+	 * Get the results.
+	 * 
+	 * @return The results, in candidate order.
+	 */
+	public List<Result> getResults() {
+		return results;
+	}
+
+	/**
+	 * Was the run cancelled before all candidates were processed?
+	 * 
+	 * @return TRUE if cancelled.
+	 */
+	public boolean isCancelled() {
+		return cancelled;
+	}
+
+	/**
+	 * Get the number of certificates renewed.
+	 * 
+	 * @return The number of certificates renewed.
+	 */
+	public int getRenewedCount() {
+		return (int) results.stream().filter(Result::isRenewed).count();
+	}
+
+	/**
+	 * Get the number of certificates renewed by the given method.
+	 * 
+	 * @param method The method.
+	 * @return The number of certificates renewed by the method.
+	 */
+	public int getRenewedCount(Method method) {
+		return (int) results.stream().filter(r -> r.getMethod() == method).count();
+	}
+
+	/**
+	 * Get the number of certificates that failed to renew.
+	 * 
+	 * @return The number of failures.
+	 */
+	public int getFailedCount() {
+		return (int) results.stream().filter(r -> r.getError() != null).count();
+	}
+
+	/**
+	 * Get the plain text summary of the run, listing each certificate.
+	 * 
+	 * @return The summary.
+	 */
+	public String getSummary() {
+		StringBuilder sb = new StringBuilder();
+		String nl = System.lineSeparator();
+		sb.append("Renewed ").append(getRenewedCount()).append(" of ").append(results.size())
+				.append(" certificates");
+		if (cancelled) {
+			sb.append(" (cancelled)");
+		}
+		sb.append(nl);
+		for (Method m : Method.values()) {
+			sb.append("  ").append(m.getDescription()).append(": ").append(getRenewedCount(m)).append(nl);
+		}
+		sb.append("  Failed: ").append(getFailedCount()).append(nl);
+		for (Result r : results) {
+			sb.append(nl).append(r.getOriginal().getProperty(Key.subject)) //
+					.append(" #").append(r.getOriginal().getProperty(Key.certificateSerialNumber)).append(": ");
+			if (r.isRenewed()) {
+				sb.append(r.getMethod().getDescription()).append(" as #")
+						.append(r.getRenewed().getProperty(Key.certificateSerialNumber)).append(", valid until ")
+						.append(r.getRenewed().getProperty(Key.endDate));
+			} else if (r.getError() != null) {
+				sb.append("Failed - ").append(r.getError());
+			} else {
+				sb.append("Not processed");
+			}
+		}
+		return sb.toString();
+	}
+
+	@Override
+	public String toString() {
+		return getSummary();
+	}
+}
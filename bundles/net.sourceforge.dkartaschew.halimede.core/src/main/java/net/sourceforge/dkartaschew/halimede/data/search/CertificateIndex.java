@@ -0,0 +1,627 @@
+/*-
+ * Halimede Certificate Manager Plugin for Eclipse 
+ * Copyright (C) 2017-2021 Darran Kartaschew 
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v2.0 which
+ * accompanies this distribution and is available at
+ *
+ * http://www.eclipse.org/legal/epl-v20.html
+ * 
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the Eclipse
+ * Public License, v. 2.0 are satisfied: GNU General Public License, version 2
+ * with the GNU Classpath Exception which is
+ * available at https://www.gnu.org/software/classpath/license.html.
+ */
+
+package net.sourceforge.dkartaschew.halimede.data.search;
+
+import java.math.BigInteger;
+import java.security.cert.CertificateEncodingException;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.BooleanSupplier;
+
+import org.bouncycastle.asn1.x509.Extension;
+import org.bouncycastle.asn1.x509.GeneralName;
+import org.bouncycastle.asn1.x509.GeneralNames;
+import org.bouncycastle.cert.jcajce.JcaX509CertificateHolder;
+
+import net.sourceforge.dkartaschew.halimede.data.CertificateAuthority;
+import net.sourceforge.dkartaschew.halimede.data.IIssuedCertificate;
+import net.sourceforge.dkartaschew.halimede.data.IssuedCertificateProperties;
+import net.sourceforge.dkartaschew.halimede.data.IssuedCertificateProperties.Key;
+import net.sourceforge.dkartaschew.halimede.data.PropertyRecord;
+import net.sourceforge.dkartaschew.halimede.data.impl.IssuedCertificate;
+import net.sourceforge.dkartaschew.halimede.enumeration.GeneralNameTag;
+import net.sourceforge.dkartaschew.halimede.enumeration.SearchField;
+import net.sourceforge.dkartaschew.halimede.util.Digest;
+import net.sourceforge.dkartaschew.halimede.util.Strings;
+import net.sourceforge.dkartaschew.halimede.util.TextIndex;
+
+/**
+ * Search index of the issued and revoked certificates of a single Certificate Authority.
+ * <p>
+ * The index is built from the certificate properties on the first search, and then kept current by applying the item
+ * changes reported by the CA. Changes are only recorded as they arrive, and applied at the next search, so listeners
+ * are never delayed by index maintenance. The subject alternative names and public key fingerprints need the
+ * certificate itself, so are only loaded on the first search of those fields. Certificates held in a PKCS#12 store are
+ * encrypted, so these fields are only known for certificates held in a PKCS#7 store, or already loaded.
+ * <p>
+ * The validity periods are indexed by both start and end date, so certificates expiring within a range, or valid at a
+ * point in time, are found without parsing the dates of every certificate. A certificate is valid at a time if its start
+ * date is no later than the time and its end date no earlier, so only the certificates whose start date lies within the
+ * longest validity period before the time are examined.
+ * <p>
+ * The index never loads the contents of the CA. While the contents are not loaded, the CA has no certificates in the
+ * index, and the index should be cleared when the contents are unloaded so the certificates may be released.
+ * <p>
+ * All methods are thread safe.
+ */
+public class CertificateIndex {
+
+	/**
+	 * Indexed certificate.
+	 */
+	private static final class Entry {
+		private final IssuedCertificateProperties certificate;
+		private final boolean revoked;
+		private final BigInteger serial;
+		private final String subject;
+		private final long start;
+		private final long end;
+		/**
+		 * The subject alternative names. (NULL if none, or not loaded).
+		 */
+		private String[] names;
+		/**
+		 * The SHA-256 fingerprint of the public key, as lower case hex. (NULL if unknown, or not loaded).
+		 */
+		private String fingerprint;
+		/**
+		 * Has loading the names and fingerprint been attempted?
+		 */
+		private boolean loaded;
+
+		Entry(IssuedCertificateProperties certificate, boolean revoked) {
+			this.certificate = certificate;
+			this.revoked = revoked;
+			this.serial = certificate.getSerialNumber();
+			this.subject = certificate.getProperty(Key.subject);
+			this.start = certificate.getDate(Key.startDate);
+			this.end = certificate.getDate(Key.endDate);
+		}
+
+		/**
+		 * Does the entry have a validity period?
+		 * 
+		 * @return TRUE if both the start and end dates are known.
+		 */
+		boolean hasValidity() {
+			return start != PropertyRecord.NO_DATE && end != PropertyRecord.NO_DATE;
+		}
+	}
+
+	/**
+	 * Recorded change to a certificate, not yet applied.
+	 */
+	private static final class Change {
+		private final boolean add;
+		private final boolean revoked;
+
+		Change(boolean add, boolean revoked) {
+			this.add = add;
+			this.revoked = revoked;
+		}
+	}
+
+	/**
+	 * The Certificate Authority.
+	 */
+	private final CertificateAuthority ca;
+	/**
+	 * The indexed certificates.
+	 */
+	private final Map<IssuedCertificateProperties, Entry> entries = new IdentityHashMap<>();
+	/**
+	 * Certificates by serial number.
+	 */
+	private final Map<BigInteger, List<Entry>> serials = new HashMap<>();
+	/**
+	 * Certificates by subject.
+	 */
+	private final TextIndex<Entry> subjects = new TextIndex<>(e -> new String[] { e.subject });
+	/**
+	 * Certificates by subject alternative name.
+	 */
+	private final TextIndex<Entry> names = new TextIndex<>(e -> e.names);
+	/**
+	 * Certificates by public key fingerprint.
+	 */
+	private final NavigableMap<String, List<Entry>> fingerprints = new TreeMap<>();
+	/**
+	 * Certificates by start date.
+	 */
+	private final NavigableMap<Long, List<Entry>> starts = new TreeMap<>();
+	/**
+	 * Certificates by end date.
+	 */
+	private final NavigableMap<Long, List<Entry>> ends = new TreeMap<>();
+	/**
+	 * The longest validity period (in milliseconds) of the indexed certificates. (Not reduced on removal).
+	 */
+	private long maxDuration;
+	/**
+	 * Have the names and fingerprints been loaded?
+	 */
+	private boolean detailed;
+	/**
+	 * Changes not yet applied. (Guarded by itself).
+	 */
+	private final Map<IssuedCertificateProperties, Change> pending = new IdentityHashMap<>();
+	/**
+	 * Must the index be rebuilt? (Guarded by pending).
+	 */
+	private boolean stale = true;
+
+	/**
+	 * Create a new (empty) index for the given CA. The index is built on first search.
+	 * 
+	 * @param ca The Certificate Authority.
+	 */
+	public CertificateIndex(CertificateAuthority ca) {
+		this.ca = Objects.requireNonNull(ca, "CA is not valid");
+	}
+
+	/**
+	 * Get the Certificate Authority.
+	 * 
+	 * @return The Certificate Authority.
+	 */
+	public CertificateAuthority getCertificateAuthority() {
+		return ca;
+	}
+
+	/**
+	 * Record changes to the issued or revoked certificates, to be applied at the next search.
+	 * 
+	 * @param revoked TRUE if the changes are to the revoked certificates, FALSE for the issued certificates.
+	 * @param added The certificates added.
+	 * @param removed The certificates removed.
+	 * @param updated The certificates updated.
+	 */
+	public void itemsChanged(boolean revoked, Collection<?> added, Collection<?> removed, Collection<?> updated) {
+		synchronized (pending) {
+			if (stale) {
+				// Rebuilt on next search anyway.
+				return;
+			}
+			for (Object item : removed) {
+				if (item instanceof IssuedCertificateProperties) {
+					// A revoked certificate is removed from the issued certificates, and added to the revoked.
+					Change c = pending.get(item);
+					if (c == null || !c.add || c.revoked == revoked) {
+						pending.put((IssuedCertificateProperties) item, new Change(false, revoked));
+					}
+				}
+			}
+			for (Object item : updated) {
+				if (item instanceof IssuedCertificateProperties) {
+					pending.put((IssuedCertificateProperties) item, new Change(true, revoked));
+				}
+			}
+			for (Object item : added) {
+				if (item instanceof IssuedCertificateProperties) {
+					pending.put((IssuedCertificateProperties) item, new Change(true, revoked));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Mark the index as out of date, so it is rebuilt on the next search.
+	 */
+	public void invalidate() {
+		synchronized (pending) {
+			stale = true;
+			pending.clear();
+		}
+	}
+
+	/**
+	 * Release all indexed certificates. The index is rebuilt on the next search once the contents of the CA are loaded.
+	 */
+	public synchronized void clear() {
+		invalidate();
+		reset();
+	}
+
+	/**
+	 * Find the certificates matching the query in any of the given fields.
+	 * <p>
+	 * Serial numbers match exactly, and may be given in decimal or hex (with an optional 0x prefix, and optional colon
+	 * separators). Subjects and subject alternative names match if they contain all whitespace separated terms of the
+	 * query, ignoring case. Fingerprints match if they start with the given hex (with optional colon separators).
+	 * 
+	 * @param query The query.
+	 * @param fields The fields to search.
+	 * @param cancelled Supplier that returns TRUE if the search has been cancelled. (May be NULL).
+	 * @return The matching certificates, each listed once. Empty if the query is empty, the search was cancelled, or
+	 *         the contents of the CA are not loaded.
+	 */
+	public synchronized List<SearchResult> search(String query, Set<SearchField> fields, BooleanSupplier cancelled) {
+		if (query == null || query.trim().isEmpty() || fields == null || fields.isEmpty() || !refresh()) {
+			return Collections.emptyList();
+		}
+		if (!detailed && fields.stream().anyMatch(SearchField::requiresCertificate)) {
+			for (Entry e : entries.values()) {
+				if (cancelled != null && cancelled.getAsBoolean()) {
+					return Collections.emptyList();
+				}
+				if (!e.loaded) {
+					load(e);
+					addDetails(e);
+				}
+			}
+			detailed = true;
+		}
+		Map<Entry, SearchField> matched = new LinkedHashMap<>();
+		for (SearchField field : SearchField.values()) {
+			if (fields.contains(field)) {
+				for (Entry e : find(field, query)) {
+					matched.putIfAbsent(e, field);
+				}
+			}
+		}
+		List<SearchResult> results = new ArrayList<>(matched.size());
+		for (Map.Entry<Entry, SearchField> m : matched.entrySet()) {
+			results.add(new SearchResult(m.getKey().certificate, m.getValue(), m.getKey().revoked));
+		}
+		return results;
+	}
+
+	/**
+	 * Find the certificates whose validity period ends within the given range.
+	 * 
+	 * @param from The start of the range, as epoch milliseconds. (Inclusive).
+	 * @param to The end of the range, as epoch milliseconds. (Inclusive).
+	 * @param includeRevoked TRUE to include revoked certificates.
+	 * @return The certificates, ordered by end date. Empty if the contents of the CA are not loaded.
+	 */
+	public synchronized List<IssuedCertificateProperties> getExpiring(long from, long to, boolean includeRevoked) {
+		List<IssuedCertificateProperties> result = new ArrayList<>();
+		if (from > to || !refresh()) {
+			return result;
+		}
+		for (List<Entry> l : ends.subMap(from, true, to, true).values()) {
+			for (Entry e : l) {
+				if (includeRevoked || !e.revoked) {
+					result.add(e.certificate);
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Find the certificates that are valid at any time within the given range. Use the same time for both ends of the
+	 * range to find the certificates valid at that time.
+	 * 
+	 * @param from The start of the range, as epoch milliseconds. (Inclusive).
+	 * @param to The end of the range, as epoch milliseconds. (Inclusive).
+	 * @param includeRevoked TRUE to include revoked certificates.
+	 * @return The certificates, ordered by start date. Empty if the contents of the CA are not loaded.
+	 */
+	public synchronized List<IssuedCertificateProperties> getValid(long from, long to, boolean includeRevoked) {
+		List<IssuedCertificateProperties> result = new ArrayList<>();
+		if (from > to || !refresh()) {
+			return result;
+		}
+		// Certificates starting earlier than this have ended before the range.
+		long earliest = from > Long.MIN_VALUE + maxDuration ? from - maxDuration : Long.MIN_VALUE;
+		for (List<Entry> l : starts.subMap(earliest, true, to, true).values()) {
+			for (Entry e : l) {
+				if (e.end >= from && (includeRevoked || !e.revoked)) {
+					result.add(e.certificate);
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Get the number of indexed certificates.
+	 * 
+	 * @return The number of indexed certificates. (As of the last search).
+	 */
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	/**
+	 * Bring the index up to date, rebuilding it or applying the recorded changes.
+	 * 
+	 * @return TRUE if the index is up to date, FALSE if the contents of the CA are not loaded.
+	 */
+	private boolean refresh() {
+		boolean loaded = ca.isLoaded();
+		boolean rebuild;
+		Map<IssuedCertificateProperties, Change> changes;
+		synchronized (pending) {
+			rebuild = stale;
+			// Rebuilt once loaded, rather than loading the CA here.
+			stale = !loaded;
+			changes = new IdentityHashMap<>(pending);
+			pending.clear();
+		}
+		if (!loaded) {
+			reset();
+			return false;
+		}
+		if (rebuild) {
+			reset();
+			// Changes made while reading are recorded, and applied on the next search.
+			for (IssuedCertificateProperties p : ca.getIssuedCertificates()) {
+				put(new Entry(p, false));
+			}
+			for (IssuedCertificateProperties p : ca.getRevokedCertificates()) {
+				put(new Entry(p, true));
+			}
+			return true;
+		}
+		for (Map.Entry<IssuedCertificateProperties, Change> c : changes.entrySet()) {
+			Change change = c.getValue();
+			if (change.add) {
+				put(new Entry(c.getKey(), change.revoked));
+			} else {
+				Entry e = entries.get(c.getKey());
+				if (e != null && e.revoked == change.revoked) {
+					remove(e);
+				}
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Remove all entries.
+	 */
+	private void reset() {
+		entries.clear();
+		serials.clear();
+		subjects.clear();
+		names.clear();
+		fingerprints.clear();
+		starts.clear();
+		ends.clear();
+		maxDuration = 0;
+		detailed = false;
+	}
+
+	/**
+	 * Add (or replace) the entry.
+	 * 
+	 * @param e The entry.
+	 */
+	private void put(Entry e) {
+		Entry old = entries.get(e.certificate);
+		if (old != null) {
+			remove(old);
+			// The certificate itself never changes.
+			e.names = old.names;
+			e.fingerprint = old.fingerprint;
+			e.loaded = old.loaded;
+		}
+		entries.put(e.certificate, e);
+		if (e.serial != null) {
+			serials.computeIfAbsent(e.serial, s -> new ArrayList<>(1)).add(e);
+		}
+		subjects.add(e);
+		if (e.hasValidity()) {
+			starts.computeIfAbsent(e.start, s -> new ArrayList<>(1)).add(e);
+			ends.computeIfAbsent(e.end, s -> new ArrayList<>(1)).add(e);
+			maxDuration = Math.max(maxDuration, e.end - e.start);
+		}
+		if (detailed && !e.loaded) {
+			load(e);
+		}
+		addDetails(e);
+	}
+
+	/**
+	 * Remove the entry.
+	 * 
+	 * @param e The entry.
+	 */
+	private void remove(Entry e) {
+		entries.remove(e.certificate);
+		if (e.serial != null) {
+			removeFrom(serials, e.serial, e);
+		}
+		subjects.remove(e);
+		names.remove(e);
+		if (e.hasValidity()) {
+			removeFrom(starts, e.start, e);
+			removeFrom(ends, e.end, e);
+		}
+		if (e.fingerprint != null) {
+			removeFrom(fingerprints, e.fingerprint, e);
+		}
+	}
+
+	/**
+	 * Index the names and fingerprint of the entry (if loaded).
+	 * 
+	 * @param e The entry.
+	 */
+	private void addDetails(Entry e) {
+		if (e.names != null) {
+			names.add(e);
+		}
+		if (e.fingerprint != null) {
+			fingerprints.computeIfAbsent(e.fingerprint, s -> new ArrayList<>(1)).add(e);
+		}
+	}
+
+	/**
+	 * Load the names and fingerprint of the entry from its certificate, if the certificate can be read without a
+	 * password.
+	 * 
+	 * @param e The entry.
+	 */
+	private void load(Entry e) {
+		e.loaded = true;
+		try {
+			IIssuedCertificate issued = null;
+			if (e.certificate.hasIssuedCertificate()) {
+				issued = e.certificate.loadIssuedCertificate(null);
+			} else if (e.certificate.getProperty(Key.pkcs7store) != null) {
+				// Not retained by the properties, as only the certificate details are needed.
+				issued = IssuedCertificate.decodePKCS7(ca.readArtefact(e.certificate.getProperty(Key.pkcs7store)));
+			}
+			if (issued == null || issued.getCertificateChain() == null || issued.getCertificateChain().length == 0
+					|| !(issued.getCertificateChain()[0] instanceof X509Certificate)) {
+				return;
+			}
+			X509Certificate cert = (X509Certificate) issued.getCertificateChain()[0];
+			e.fingerprint = Strings.toHexString(Digest.sha256(cert.getPublicKey().getEncoded()));
+			e.names = getSubjectAltNames(cert);
+		} catch (Exception ex) {
+			// Unreadable, so the names and fingerprint are unknown.
+		}
+	}
+
+	/**
+	 * Get the values of the subject alternative names of the certificate.
+	 * 
+	 * @param cert The certificate.
+	 * @return The values, or NULL if none.
+	 * @throws CertificateEncodingException If the certificate can't be decoded.
+	 */
+	private static String[] getSubjectAltNames(X509Certificate cert) throws CertificateEncodingException {
+		JcaX509CertificateHolder holder = new JcaX509CertificateHolder(cert);
+		GeneralNames altNames = GeneralNames.fromExtensions(holder.getExtensions(), Extension.subjectAlternativeName);
+		if (altNames == null) {
+			return null;
+		}
+		GeneralName[] values = altNames.getNames();
+		String[] result = new String[values.length];
+		for (int i = 0; i < values.length; i++) {
+			result[i] = GeneralNameTag.getValue(values[i]);
+		}
+		return result;
+	}
+
+	/**
+	 * Find the entries matching the query in the given field.
+	 * 
+	 * @param field The field.
+	 * @param query The query.
+	 * @return The matching entries.
+	 */
+	private Collection<Entry> find(SearchField field, String query) {
+		switch (field) {
+		case SERIAL: {
+			List<Entry> result = new ArrayList<>();
+			for (BigInteger serial : parseSerial(query)) {
+				result.addAll(serials.getOrDefault(serial, Collections.emptyList()));
+			}
+			return result;
+		}
+		case SUBJECT:
+			return subjects.search(query);
+		case SUBJECT_ALT_NAME:
+			return names.search(query);
+		case FINGERPRINT: {
+			String prefix = normalizeHex(query);
+			if (prefix == null) {
+				return Collections.emptyList();
+			}
+			List<Entry> result = new ArrayList<>();
+			for (List<Entry> l : fingerprints.subMap(prefix, true, prefix + Character.MAX_VALUE, false).values()) {
+				result.addAll(l);
+			}
+			return result;
+		}
+		}
+		return Collections.emptyList();
+	}
+
+	/**
+	 * Parse the query as a serial number.
+	 * 
+	 * @param query The query.
+	 * @return The possible serial numbers: none if not a number, the hex value if prefixed with 0x, otherwise the
+	 *         decimal and hex values.
+	 */
+	static Set<BigInteger> parseSerial(String query) {
+		Set<BigInteger> result = new LinkedHashSet<>(2);
+		if (query == null) {
+			return result;
+		}
+		String value = query.replaceAll("[\\s:]", "");
+		boolean hexOnly = value.startsWith("0x") || value.startsWith("0X");
+		if (hexOnly) {
+			value = value.substring(2);
+		}
+		if (value.isEmpty()) {
+			return result;
+		}
+		if (!hexOnly && value.chars().allMatch(c -> c >= '0' && c <= '9')) {
+			result.add(new BigInteger(value));
+		}
+		String hex = normalizeHex(value);
+		if (hex != null) {
+			result.add(new BigInteger(hex, 16));
+		}
+		return result;
+	}
+
+	/**
+	 * Normalise the query as hex.
+	 * 
+	 * @param query The query.
+	 * @return The query in lower case without whitespace or colon separators, or NULL if empty or not hex.
+	 */
+	static String normalizeHex(String query) {
+		if (query == null) {
+			return null;
+		}
+		String value = query.replaceAll("[\\s:]", "").toLowerCase();
+		if (value.isEmpty() || !value.chars().allMatch(c -> (c >= '0' && c <= '9') || (c >= 'a' && c <= 'f'))) {
+			return null;
+		}
+		return value;
+	}
+
+	/**
+	 * Remove the entry from the list held under the key, dropping the list once empty.
+	 * 
+	 * @param <K> The type of key.
+	 * @param map The map.
+	 * @param key The key.
+	 * @param e The entry.
+	 */
+	private static <K> void removeFrom(Map<K, List<Entry>> map, K key, Entry e) {
+		List<Entry> l = map.get(key);
+		if (l != null) {
+			l.remove(e);
+			if (l.isEmpty()) {
+				map.remove(key);
+			}
+		}
+	}
+}
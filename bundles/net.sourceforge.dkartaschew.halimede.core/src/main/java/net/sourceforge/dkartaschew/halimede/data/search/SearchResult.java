@@ -0,0 +1,97 @@
+/*-
+ * Halimede Certificate Manager Plugin for Eclipse 
+ * Copyright (C) 2017-2021 Darran Kartaschew 
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v2.0 which
+ * accompanies this distribution and is available at
+ *
+ * http://www.eclipse.org/legal/epl-v20.html
+ * 
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the Eclipse
+ * Public License, v. 2.0 are satisfied: GNU General Public License, version 2
+ * with the GNU Classpath Exception which is
+ * available at https://www.gnu.org/software/classpath/license.html.
+ */
+
+package net.sourceforge.dkartaschew.halimede.data.search;
+
+import java.util.Objects;
+
+import net.sourceforge.dkartaschew.halimede.data.CertificateAuthority;
+import net.sourceforge.dkartaschew.halimede.data.IssuedCertificateProperties;
+import net.sourceforge.dkartaschew.halimede.enumeration.SearchField;
+
+/**
+ * A single certificate matched by a search.
+ */
+public class SearchResult {
+
+	/**
+	 * The matched certificate.
+	 */
+	private final IssuedCertificateProperties certificate;
+	/**
+	 * The field that matched.
+	 */
+	private final SearchField field;
+	/**
+	 * Is the certificate revoked?
+	 */
+	private final boolean revoked;
+
+	/**
+	 * Create a new search result.
+	 * 
+	 * @param certificate The matched certificate.
+	 * @param field The field that matched.
+	 * @param revoked TRUE if the certificate is revoked.
+	 */
+	public SearchResult(IssuedCertificateProperties certificate, SearchField field, boolean revoked) {
+		this.certificate = Objects.requireNonNull(certificate, "Certificate is not valid");
+		this.field = Objects.requireNonNull(field, "Field is not valid");
+		this.revoked = revoked;
+	}
+
+	/**
+	 * Get the Certificate Authority that issued the certificate.
+	 * 
+	 * @return The Certificate Authority.
+	 */
+	public CertificateAuthority getCertificateAuthority() {
+		return certificate.getCertificateAuthority();
+	}
+
+	/**
+	 * Get the matched certificate.
+	 * 
+	 * @return The matched certificate.
+	 */
+	public IssuedCertificateProperties getCertificate() {
+		return certificate;
+	}
+
+	/**
+	 * Get the field that matched. (If several fields matched, the first in declaration order).
+	 * 
+	 * @return The field that matched.
+	 */
+	public SearchField getField() {
+		return field;
+	}
+
+	/**
+	 * Is the certificate revoked?
+	 * 
+	 * @return TRUE if the certificate is revoked.
+	 */
+	public boolean isRevoked() {
+		return revoked;
+	}
+
+	@Override
+	public String toString() {
+		return "SearchResult [certificate=" + certificate + ", field=" + field + ", revoked=" + revoked + "]";
+	}
+}
@@ -0,0 +1,243 @@
+/*-
+ * Halimede Certificate Manager Plugin for Eclipse 
+ * Copyright (C) 2017-2021 Darran Kartaschew 
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v2.0 which
+ * accompanies this distribution and is available at
+ *
+ * http://www.eclipse.org/legal/epl-v20.html
+ * 
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the Eclipse
+ * Public License, v. 2.0 are satisfied: GNU General Public License, version 2
+ * with the GNU Classpath Exception which is
+ * available at https://www.gnu.org/software/classpath/license.html.
+ */
+
+package net.sourceforge.dkartaschew.halimede.data.store;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
+import org.eclipse.core.runtime.SubMonitor;
+
+/**
+ * Parallel loader for the items of a datastore container.
+ * <p>
+ * Items are loaded on a dedicated, bounded pool of daemon threads (rather than the common fork/join pool), so that
+ * slow storage does not starve other users of the common pool. The number of threads may be set via the
+ * {@link #THREADS} system property.
+ */
+public class DatastoreScanner {
+
+	/**
+	 * System Properties key (number of scanning threads)
+	 */
+	public static final String THREADS = "net.sourceforge.dkartaschew.halimede.scan.threads";
+
+	/**
+	 * The maximum number of loads queued per thread. Bounds the memory used when scanning very large containers.
+	 */
+	private static final int QUEUE_DEPTH = 4;
+
+	/**
+	 * Idle time (in seconds) before a scanning thread is released.
+	 */
+	private static final long KEEP_ALIVE = 30;
+
+	/**
+	 * Loader of a single item.
+	 *
+	 * @param <T> The type of the loaded item.
+	 */
+	@FunctionalInterface
+	public interface Loader<T> {
+
+		/**
+		 * Load the item from the given stream.
+		 *
+		 * @param stream The stream holding the item. (The stream is closed by the caller).
+		 * @return The loaded item, or NULL if the item should be ignored.
+		 * @throws IOException If the item can't be read.
+		 */
+		public T load(InputStream stream) throws IOException;
+	}
+
+	/**
+	 * The shared scanning pool.
+	 */
+	private static ExecutorService executor;
+
+	/**
+	 * The datastore being scanned.
+	 */
+	private final IDatastore datastore;
+
+	/**
+	 * Logger
+	 */
+	private final Logger logger = Logger.getLogger(getClass().getName());
+
+	/**
+	 * Create a new scanner.
+	 *
+	 * @param datastore The datastore to scan.
+	 */
+	public DatastoreScanner(IDatastore datastore) {
+		this.datastore = Objects.requireNonNull(datastore, "Datastore is not valid");
+	}
+
+	/**
+	 * Get the number of threads to use for scanning.
+	 *
+	 * @return The number of scanning threads.
+	 */
+	public static int getParallelism() {
+		String threads = System.getProperty(THREADS);
+		if (threads != null) {
+			try {
+				int value = Integer.parseInt(threads.trim());
+				if (value > 0) {
+					return value;
+				}
+			} catch (NumberFormatException e) {
+				// fall through to the default.
+			}
+		}
+		return Math.max(2, Math.min(8, Runtime.getRuntime().availableProcessors()));
+	}
+
+	/**
+	 * Get the shared scanning pool, creating it if needed.
+	 *
+	 * @return The scanning pool.
+	 */
+	private static synchronized ExecutorService getExecutor() {
+		if (executor == null) {
+			final AtomicInteger count = new AtomicInteger();
+			ThreadFactory factory = r -> {
+				Thread t = new Thread(r, "Halimede Datastore Scanner-" + count.incrementAndGet());
+				t.setDaemon(true);
+				return t;
+			};
+			int threads = getParallelism();
+			ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, KEEP_ALIVE, TimeUnit.SECONDS,
+					new LinkedBlockingQueue<>(), factory);
+			pool.allowCoreThreadTimeOut(true);
+			executor = pool;
+		}
+		return executor;
+	}
+
+	/**
+	 * Load all items in the container with the given extension.
+	 * <p>
+	 * Items already present in the existing map (keyed by {@link IDatastore#resolve(String, String)}) are reused
+	 * rather than reloaded. Items that fail to load (including loader runtime exceptions, for example a corrupt
+	 * properties file) are logged and skipped. The existing map is not modified. If the scan fails or is cancelled,
+	 * loads not yet started are cancelled.
+	 *
+	 * @param <T> The type of the loaded items.
+	 * @param container The container to scan.
+	 * @param extension The extension of the items to load.
+	 * @param existing The currently known items.
+	 * @param loader The loader for new items.
+	 * @param monitor The progress monitor. (may be NULL).
+	 * @return A map of all items currently in the container.
+	 * @throws IOException If listing the container fails, or the scan is interrupted.
+	 * @throws OperationCanceledException If the scan is cancelled via the monitor.
+	 */
+	public <T> Map<Path, T> scan(String container, String extension, Map<Path, T> existing, Loader<T> loader,
+			IProgressMonitor monitor) throws IOException {
+		List<String> names = datastore.list(container, extension);
+		SubMonitor progress = SubMonitor.convert(monitor, names.size());
+		final Map<Path, T> result = new ConcurrentHashMap<>();
+		final CompletionService<Void> completion = new ExecutorCompletionService<>(getExecutor());
+		final int limit = getParallelism() * QUEUE_DEPTH;
+		// Only the loads in flight are held (at most the limit), so they may be cancelled.
+		final Set<Future<Void>> pending = new HashSet<>();
+		Iterator<String> iterator = names.iterator();
+		boolean complete = false;
+		try {
+			while (iterator.hasNext() || !pending.isEmpty()) {
+				// Keep the pool busy, but don't queue more than needed.
+				while (iterator.hasNext() && pending.size() < limit) {
+					final String name = iterator.next();
+					final Path key = datastore.resolve(container, name);
+					T value = existing.get(key);
+					if (value != null) {
+						result.put(key, value);
+						progress.worked(1);
+						continue;
+					}
+					pending.add(completion.submit(() -> {
+						try (InputStream in = datastore.get(container, name)) {
+							T item = loader.load(in);
+							if (item != null) {
+								result.put(key, item);
+							}
+						} catch (IOException | RuntimeException e) {
+							// Unreadable, corrupt or removed since listing, so skip.
+							logger.log(Level.WARNING, "Skipping " + container + "/" + name + ": " + e.getMessage(), e);
+						}
+						return null;
+					}));
+				}
+				if (!pending.isEmpty()) {
+					Future<Void> done = completion.take();
+					pending.remove(done);
+					done.get();
+					progress.worked(1);
+				}
+				if (progress.isCanceled()) {
+					throw new OperationCanceledException();
+				}
+			}
+			complete = true;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Scan of " + container + " interrupted");
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw new IOException(cause);
+		} finally {
+			if (!complete) {
+				// Don't leave the remaining loads occupying the shared pool.
+				for (Future<Void> f : pending) {
+					f.cancel(false);
+				}
+			}
+		}
+		return result;
+	}
+}
@@ -0,0 +1,197 @@
+/*-
+ * Halimede Certificate Manager Plugin for Eclipse 
+ * Copyright (C) 2017-2021 Darran Kartaschew 
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v2.0 which
+ * accompanies this distribution and is available at
+ *
+ * http://www.eclipse.org/legal/epl-v20.html
+ * 
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the Eclipse
+ * Public License, v. 2.0 are satisfied: GNU General Public License, version 2
+ * with the GNU Classpath Exception which is
+ * available at https://www.gnu.org/software/classpath/license.html.
+ */
+
+package net.sourceforge.dkartaschew.halimede.data.store;
+
+import java.io.FileInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Datastore that holds all items as files on the local filesystem.
+ * <p>
+ * Each container is a sub-folder of the base path, and each item is a file within that folder. This is the default
+ * layout of a Certificate Authority.
+ * <p>
+ * Items are written to a temporary file, which replaces the item when closed. An item is therefore never seen partly
+ * written, and an existing file is never modified in place, so files hard linked elsewhere (eg snapshots) are never
+ * changed by updates.
+ */
+public class FileSystemDatastore implements IDatastore {
+
+	/**
+	 * Suffix of files being written.
+	 */
+	private static final String TEMP_SUFFIX = ".tmp";
+
+	/**
+	 * The base path of the datastore.
+	 */
+	private final Path basePath;
+
+	/**
+	 * Create a new filesystem datastore.
+	 *
+	 * @param basePath The base path of the datastore.
+	 */
+	public FileSystemDatastore(Path basePath) {
+		this.basePath = Objects.requireNonNull(basePath, "Path is not valid");
+	}
+
+	@Override
+	public Path getLocation() {
+		return basePath;
+	}
+
+	@Override
+	public void createContainer(String container) throws IOException {
+		Path path = basePath.resolve(container);
+		if (!Files.exists(path)) {
+			Files.createDirectories(path);
+		}
+	}
+
+	@Override
+	public boolean exists(String container, String name) {
+		Path file = resolve(container, name);
+		return Files.exists(file) && Files.isReadable(file) && Files.isRegularFile(file);
+	}
+
+	@Override
+	public InputStream get(String container, String name) throws IOException {
+		return new FileInputStream(resolve(container, name).toFile());
+	}
+
+	@Override
+	public OutputStream put(String container, String name) throws IOException {
+		Path target = resolve(container, name);
+		Path temp = target.resolveSibling("." + target.getFileName() + "." + UUID.randomUUID() + TEMP_SUFFIX);
+		return new ReplacingOutputStream(temp, target);
+	}
+
+	@Override
+	public void copy(String container, String name, String targetContainer, String targetName) throws IOException {
+		Files.copy(resolve(container, name), resolve(targetContainer, targetName), //
+				StandardCopyOption.COPY_ATTRIBUTES, StandardCopyOption.REPLACE_EXISTING);
+	}
+
+	@Override
+	public void move(String container, String name, String targetContainer) throws IOException {
+		Files.move(resolve(container, name), resolve(targetContainer, name), StandardCopyOption.REPLACE_EXISTING);
+	}
+
+	@Override
+	public List<String> list(String container, String extension) throws IOException {
+		final String ext = (extension != null) ? extension.toLowerCase(Locale.ROOT) : null;
+		try (Stream<Path> files = Files.list(basePath.resolve(container))) {
+			return files.filter(Files::isRegularFile)//
+					.map(Path::getFileName)//
+					.filter(Objects::nonNull)//
+					.map(Path::toString)//
+					.filter(f -> !isTemporary(f))//
+					.filter(f -> ext == null || f.toLowerCase(Locale.ROOT).endsWith(ext))//
+					.collect(Collectors.toList());
+		}
+	}
+
+	@Override
+	public void delete(String container, String name) throws IOException {
+		Files.delete(resolve(container, name));
+	}
+
+	@Override
+	public String toString() {
+		return basePath.toString();
+	}
+
+	/**
+	 * Is the file a temporary file holding an item being written?
+	 * 
+	 * @param filename The filename.
+	 * @return TRUE if the file is an item being written.
+	 */
+	public static boolean isTemporary(String filename) {
+		return filename.startsWith(".") && filename.endsWith(TEMP_SUFFIX);
+	}
+
+	/**
+	 * Output stream to a temporary file, which replaces the target file when closed.
+	 */
+	private static class ReplacingOutputStream extends FilterOutputStream {
+
+		/**
+		 * The temporary file.
+		 */
+		private final Path temp;
+		/**
+		 * The target file.
+		 */
+		private final Path target;
+		/**
+		 * Has the stream been closed?
+		 */
+		private boolean closed;
+
+		/**
+		 * Create a new stream.
+		 * 
+		 * @param temp The temporary file.
+		 * @param target The target file.
+		 * @throws IOException If the temporary file cannot be created.
+		 */
+		ReplacingOutputStream(Path temp, Path target) throws IOException {
+			super(Files.newOutputStream(temp));
+			this.temp = temp;
+			this.target = target;
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			out.write(b, off, len);
+		}
+
+		@Override
+		public void close() throws IOException {
+			if (closed) {
+				return;
+			}
+			closed = true;
+			try {
+				super.close();
+				try {
+					Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+				} catch (AtomicMoveNotSupportedException e) {
+					Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+				}
+			} finally {
+				Files.deleteIfExists(temp);
+			}
+		}
+	}
+}
@@ -0,0 +1,169 @@
+/*-
+ * Halimede Certificate Manager Plugin for Eclipse 
+ * Copyright (C) 2017-2021 Darran Kartaschew 
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v2.0 which
+ * accompanies this distribution and is available at
+ *
+ * http://www.eclipse.org/legal/epl-v20.html
+ * 
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the Eclipse
+ * Public License, v. 2.0 are satisfied: GNU General Public License, version 2
+ * with the GNU Classpath Exception which is
+ * available at https://www.gnu.org/software/classpath/license.html.
+ */
+
+package net.sourceforge.dkartaschew.halimede.data.store;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Storage backend for a Certificate Authority's artefacts and metadata.
+ * <p>
+ * A datastore is a flat set of named containers (folders), each holding named items (files). The root container is
+ * denoted by {@link #ROOT}. Items are addressed by their container and name, and each item also has a logical
+ * {@link Path} (see {@link #resolve(String, String)}) that is used as a stable key by the Certificate Authority.
+ */
+public interface IDatastore {
+
+	/**
+	 * The name of the root container.
+	 */
+	public final static String ROOT = "";
+
+	/**
+	 * Get the location of the datastore.
+	 * <p>
+	 * For filesystem backed datastores, this is the base path of the datastore. For other datastores, this is a logical
+	 * location used to identify the datastore only, and may not exist on any filesystem.
+	 *
+	 * @return The location of the datastore.
+	 */
+	public Path getLocation();
+
+	/**
+	 * Create the given container if it doesn't already exist.
+	 *
+	 * @param container The container name.
+	 * @throws IOException If creating the container fails.
+	 */
+	public void createContainer(String container) throws IOException;
+
+	/**
+	 * Does the given item exist?
+	 *
+	 * @param container The container name.
+	 * @param name The item name.
+	 * @return TRUE if the item exists and is readable.
+	 */
+	public boolean exists(String container, String name);
+
+	/**
+	 * Open the given item for reading.
+	 *
+	 * @param container The container name.
+	 * @param name The item name.
+	 * @return An input stream of the item contents. The caller is responsible for closing the stream.
+	 * @throws IOException If the item doesn't exist or opening the item fails.
+	 */
+	public InputStream get(String container, String name) throws IOException;
+
+	/**
+	 * Open the given item for writing, replacing any existing contents.
+	 * <p>
+	 * The item contents are only guaranteed to be visible to other callers once the returned stream is closed.
+	 *
+	 * @param container The container name.
+	 * @param name The item name.
+	 * @return An output stream to write the item contents to. The caller is responsible for closing the stream.
+	 * @throws IOException If opening the item fails.
+	 */
+	public OutputStream put(String container, String name) throws IOException;
+
+	/**
+	 * Copy the given item, replacing any existing target item.
+	 *
+	 * @param container The source container name.
+	 * @param name The source item name.
+	 * @param targetContainer The target container name.
+	 * @param targetName The target item name.
+	 * @throws IOException If the source item doesn't exist or the copy fails.
+	 */
+	public void copy(String container, String name, String targetContainer, String targetName) throws IOException;
+
+	/**
+	 * Move the given item to another container, keeping the item name and replacing any existing target item.
+	 *
+	 * @param container The source container name.
+	 * @param name The item name.
+	 * @param targetContainer The target container name.
+	 * @throws IOException If the source item doesn't exist or the move fails.
+	 */
+	public void move(String container, String name, String targetContainer) throws IOException;
+
+	/**
+	 * List the names of all items in the container that end with the given extension.
+	 *
+	 * @param container The container name.
+	 * @param extension The extension to filter on (case insensitive). (NULL for all items).
+	 * @return A list of item names.
+	 * @throws IOException If listing the container fails.
+	 */
+	public List<String> list(String container, String extension) throws IOException;
+
+	/**
+	 * Delete the given item.
+	 *
+	 * @param container The container name.
+	 * @param name The item name.
+	 * @throws IOException If the item doesn't exist or deleting the item fails.
+	 */
+	public void delete(String container, String name) throws IOException;
+
+	/**
+	 * Get the logical path for the given item.
+	 *
+	 * @param container The container name.
+	 * @param name The item name.
+	 * @return The logical path of the item.
+	 */
+	public default Path resolve(String container, String name) {
+		return getLocation().resolve(container).resolve(name);
+	}
+
+	/**
+	 * Read the entire contents of the given item.
+	 *
+	 * @param container The container name.
+	 * @param name The item name.
+	 * @return The contents of the item.
+	 * @throws IOException If the item doesn't exist or reading the item fails.
+	 */
+	public default byte[] read(String container, String name) throws IOException {
+		try (InputStream in = get(container, name)) {
+			return in.readAllBytes();
+		}
+	}
+
+	/**
+	 * Find the first container (in the given order) that holds an item with the given name.
+	 *
+	 * @param name The item name.
+	 * @param containers The containers to search.
+	 * @return The container name, or NULL if no container holds the item.
+	 */
+	public default String find(String name, List<String> containers) {
+		for (String container : containers) {
+			if (exists(container, name)) {
+				return container;
+			}
+		}
+		return null;
+	}
+}
@@ -0,0 +1,184 @@
+/*-
+ * Halimede Certificate Manager Plugin for Eclipse 
+ * Copyright (C) 2017-2021 Darran Kartaschew 
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v2.0 which
+ * accompanies this distribution and is available at
+ *
+ * http://www.eclipse.org/legal/epl-v20.html
+ * 
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the Eclipse
+ * Public License, v. 2.0 are satisfied: GNU General Public License, version 2
+ * with the GNU Classpath Exception which is
+ * available at https://www.gnu.org/software/classpath/license.html.
+ */
+
+package net.sourceforge.dkartaschew.halimede.data.store;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Datastore that holds all items in memory.
+ * <p>
+ * This is intended for testing and bulk operations where the contents of the datastore do not need to survive the
+ * process. Nothing is written to disk.
+ */
+public class MemoryDatastore implements IDatastore {
+
+	/**
+	 * The logical location of the datastore.
+	 */
+	private final Path location;
+
+	/**
+	 * The containers, each holding a map of item name to contents.
+	 */
+	private final Map<String, Map<String, byte[]>> containers = new ConcurrentHashMap<>();
+
+	/**
+	 * Create a new empty in-memory datastore, with a unique logical location.
+	 */
+	public MemoryDatastore() {
+		this(Paths.get("memory", UUID.randomUUID().toString()));
+	}
+
+	/**
+	 * Create a new empty in-memory datastore.
+	 *
+	 * @param location The logical location of the datastore.
+	 */
+	public MemoryDatastore(Path location) {
+		this.location = Objects.requireNonNull(location, "Path is not valid");
+		containers.put(ROOT, new ConcurrentHashMap<>());
+	}
+
+	@Override
+	public Path getLocation() {
+		return location;
+	}
+
+	@Override
+	public void createContainer(String container) throws IOException {
+		containers.computeIfAbsent(container, c -> new ConcurrentHashMap<>());
+	}
+
+	@Override
+	public boolean exists(String container, String name) {
+		Map<String, byte[]> items = containers.get(container);
+		return items != null && items.containsKey(name);
+	}
+
+	@Override
+	public InputStream get(String container, String name) throws IOException {
+		return new ByteArrayInputStream(getItem(container, name));
+	}
+
+	@Override
+	public byte[] read(String container, String name) throws IOException {
+		return getItem(container, name).clone();
+	}
+
+	@Override
+	public OutputStream put(String container, String name) throws IOException {
+		final Map<String, byte[]> items = getContainer(container);
+		return new ByteArrayOutputStream() {
+
+			private boolean closed = false;
+
+			@Override
+			public void close() throws IOException {
+				if (!closed) {
+					closed = true;
+					items.put(name, toByteArray());
+				}
+			}
+		};
+	}
+
+	@Override
+	public void copy(String container, String name, String targetContainer, String targetName) throws IOException {
+		byte[] data = getItem(container, name);
+		getContainer(targetContainer).put(targetName, data);
+	}
+
+	@Override
+	public void move(String container, String name, String targetContainer) throws IOException {
+		Map<String, byte[]> target = getContainer(targetContainer);
+		byte[] data = getContainer(container).remove(name);
+		if (data == null) {
+			throw new NoSuchFileException(resolve(container, name).toString());
+		}
+		target.put(name, data);
+	}
+
+	@Override
+	public List<String> list(String container, String extension) throws IOException {
+		final String ext = (extension != null) ? extension.toLowerCase(Locale.ROOT) : null;
+		List<String> names = new ArrayList<>();
+		for (String name : getContainer(container).keySet()) {
+			if (ext == null || name.toLowerCase(Locale.ROOT).endsWith(ext)) {
+				names.add(name);
+			}
+		}
+		return names;
+	}
+
+	@Override
+	public void delete(String container, String name) throws IOException {
+		if (getContainer(container).remove(name) == null) {
+			throw new NoSuchFileException(resolve(container, name).toString());
+		}
+	}
+
+	/**
+	 * Get the given container.
+	 *
+	 * @param container The container name.
+	 * @return The container items.
+	 * @throws IOException If the container doesn't exist.
+	 */
+	private Map<String, byte[]> getContainer(String container) throws IOException {
+		Map<String, byte[]> items = containers.get(container);
+		if (items == null) {
+			throw new NoSuchFileException(location.resolve(container).toString());
+		}
+		return items;
+	}
+
+	/**
+	 * Get the contents of the given item.
+	 *
+	 * @param container The container name.
+	 * @param name The item name.
+	 * @return The item contents.
+	 * @throws IOException If the item doesn't exist.
+	 */
+	private byte[] getItem(String container, String name) throws IOException {
+		byte[] data = getContainer(container).get(name);
+		if (data == null) {
+			throw new NoSuchFileException(resolve(container, name).toString());
+		}
+		return data;
+	}
+
+	@Override
+	public String toString() {
+		return "memory:" + location;
+	}
+}
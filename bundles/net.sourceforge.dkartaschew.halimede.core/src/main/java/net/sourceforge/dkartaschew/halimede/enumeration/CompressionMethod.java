@@ -0,0 +1,56 @@
+/*-
+ * Halimede Certificate Manager Plugin for Eclipse 
+ * Copyright (C) 2017-2021 Darran Kartaschew 
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v2.0 which
+ * accompanies this distribution and is available at
+ *
+ * http://www.eclipse.org/legal/epl-v20.html
+ * 
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the Eclipse
+ * Public License, v. 2.0 are satisfied: GNU General Public License, version 2
+ * with the GNU Classpath Exception which is
+ * available at https://www.gnu.org/software/classpath/license.html.
+ */
+
+package net.sourceforge.dkartaschew.halimede.enumeration;
+
+/**
+ * The compression method of a backup entry.
+ */
+public enum CompressionMethod {
+
+	/**
+	 * Stored without compression
+	 */
+	STORED(0), //
+	/**
+	 * DEFLATE compressed
+	 */
+	DEFLATED(8);
+
+	/**
+	 * The zip method ID
+	 */
+	private final int id;
+
+	/**
+	 * Construct the enum with the given ID
+	 * 
+	 * @param id The zip method ID
+	 */
+	private CompressionMethod(int id) {
+		this.id = id;
+	}
+
+	/**
+	 * Get the zip method ID, as used in zip file headers.
+	 * 
+	 * @return The zip method ID
+	 */
+	public int getID() {
+		return id;
+	}
+}
@@ -17,13 +17,18 @@
 
 package net.sourceforge.dkartaschew.halimede.enumeration;
 
+import java.net.InetAddress;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.net.UnknownHostException;
 import java.util.Arrays;
 import java.util.NoSuchElementException;
 import java.util.Objects;
 import java.util.regex.Pattern;
 
+import org.bouncycastle.asn1.ASN1OctetString;
+import org.bouncycastle.asn1.DERIA5String;
+import org.bouncycastle.asn1.x500.X500Name;
 import org.bouncycastle.asn1.x509.GeneralName;
 
 import net.sourceforge.dkartaschew.halimede.util.ExceptionUtil;
@@ -141,6 +146,37 @@ public enum GeneralNameTag {
 		return new GeneralName(tag, value);
 	}
 
+	/**
+	 * Get the value of the general name as a string. (The reverse of {@link #asGeneralName(String)}).
+	 * 
+	 * @param name The general name.
+	 * @return The value, or an empty string if NULL.
+	 * @throws NoSuchElementException The tag no is invalid.
+	 */
+	public static String getValue(GeneralName name) {
+		if (name == null) {
+			return "";
+		}
+		switch (forTag(name.getTagNo())) {
+		case rfc822Name:
+		case dNSName:
+		case uniformResourceIdentifier:
+			return DERIA5String.getInstance(name.getName()).getString();
+		case directoryName:
+			return X500Name.getInstance(name.getName()).toString();
+		case iPAddress:
+			byte[] addr = ASN1OctetString.getInstance(name.getName()).getOctets();
+			try {
+				return InetAddress.getByAddress(addr).getHostAddress();
+			} catch (UnknownHostException e) {
+				// Should never happen
+				return ASN1OctetString.getInstance(name.getName()).toString();
+			}
+		default:
+			return name.getName().toString();
+		}
+	}
+
 	/**
 	 * Get the GeneralNameTag for the given tag ID
 	 * 
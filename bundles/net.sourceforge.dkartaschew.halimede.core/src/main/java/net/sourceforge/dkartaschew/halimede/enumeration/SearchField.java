@@ -0,0 +1,66 @@
+/*-
+ * Halimede Certificate Manager Plugin for Eclipse 
+ * Copyright (C) 2017-2021 Darran Kartaschew 
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v2.0 which
+ * accompanies this distribution and is available at
+ *
+ * http://www.eclipse.org/legal/epl-v20.html
+ * 
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the Eclipse
+ * Public License, v. 2.0 are satisfied: GNU General Public License, version 2
+ * with the GNU Classpath Exception which is
+ * available at https://www.gnu.org/software/classpath/license.html.
+ */
+
+package net.sourceforge.dkartaschew.halimede.enumeration;
+
+/**
+ * The certificate fields that may be searched across Certificate Authorities.
+ */
+public enum SearchField {
+
+	SERIAL("Serial Number"), //
+	SUBJECT("Subject"), //
+	SUBJECT_ALT_NAME("Subject Alternative Name"), //
+	FINGERPRINT("Public Key Fingerprint");
+
+	/**
+	 * Plain text description
+	 */
+	private final String description;
+
+	/**
+	 * Create a new search field enumeration
+	 * 
+	 * @param description The plain text description.
+	 */
+	private SearchField(String description) {
+		this.description = description;
+	}
+
+	/**
+	 * Get the plain text description
+	 * 
+	 * @return The plain text description.
+	 */
+	public String getDescription() {
+		return description;
+	}
+
+	/**
+	 * Does searching this field require the certificate itself, rather than just the certificate properties?
+	 * 
+	 * @return TRUE if the certificate is needed.
+	 */
+	public boolean requiresCertificate() {
+		return this == SUBJECT_ALT_NAME || this == FINGERPRINT;
+	}
+
+	@Override
+	public String toString() {
+		return description;
+	}
+}
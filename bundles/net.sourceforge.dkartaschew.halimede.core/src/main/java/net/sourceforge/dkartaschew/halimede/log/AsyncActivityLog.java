@@ -0,0 +1,276 @@
+/*-
+ * Halimede Certificate Manager Plugin for Eclipse 
+ * Copyright (C) 2017-2021 Darran Kartaschew 
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v2.0 which
+ * accompanies this distribution and is available at
+ *
+ * http://www.eclipse.org/legal/epl-v20.html
+ * 
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the Eclipse
+ * Public License, v. 2.0 are satisfied: GNU General Public License, version 2
+ * with the GNU Classpath Exception which is
+ * available at https://www.gnu.org/software/classpath/license.html.
+ */
+
+package net.sourceforge.dkartaschew.halimede.log;
+
+import java.beans.PropertyChangeEvent;
+import java.io.IOException;
+import java.lang.ref.Cleaner;
+import java.nio.file.Path;
+import java.util.logging.Level;
+
+import net.sourceforge.dkartaschew.halimede.data.CertificateAuthority;
+import net.sourceforge.dkartaschew.halimede.data.store.FileSystemDatastore;
+import net.sourceforge.dkartaschew.halimede.exceptions.DatastoreLockedException;
+
+/**
+ * Activity Logger that logs to a file in the CA /log folder, without blocking the caller on file I/O.
+ * <p>
+ * Records are queued and written by a single background writer in batches, as structured JSON lines (see
+ * {@link AuditLog}), or as set via the {@link #FORMAT} system property in the same format and files as
+ * {@link FileActivityLog}. The queue size ({@link #BUFFER}), the time records may wait to be written
+ * ({@link #FLUSH_INTERVAL}) and whether writes are forced to storage ({@link #SYNC}) are set via system properties.
+ * If the queue is full, logging waits for space rather than dropping records. Structured logs may be hash chained and
+ * signed ({@link #CHAIN}), to be verified with {@link AuditVerifier}.
+ */
+public class AsyncActivityLog implements IActivityLogger {
+
+	/**
+	 * System Properties key (use the asynchronous logger, default true)
+	 */
+	public static final String ASYNC = "net.sourceforge.dkartaschew.halimede.log.async";
+	/**
+	 * System Properties key (number of records which may be queued)
+	 */
+	public static final String BUFFER = "net.sourceforge.dkartaschew.halimede.log.buffer";
+	/**
+	 * System Properties key (time in milliseconds records may wait before being written, 0 to write at once)
+	 */
+	public static final String FLUSH_INTERVAL = "net.sourceforge.dkartaschew.halimede.log.flushInterval";
+	/**
+	 * System Properties key (force each write to storage, default false)
+	 */
+	public static final String SYNC = "net.sourceforge.dkartaschew.halimede.log.sync";
+	/**
+	 * System Properties key (log format, json or text, default json)
+	 */
+	public static final String FORMAT = "net.sourceforge.dkartaschew.halimede.log.format";
+	/**
+	 * System Properties key (hash chain and sign the records of structured logs, default false)
+	 */
+	public static final String CHAIN = "net.sourceforge.dkartaschew.halimede.log.chain";
+
+	/**
+	 * Default number of records which may be queued.
+	 */
+	private final static int DEFAULT_BUFFER = 8192;
+	/**
+	 * Default log file size before roll over.
+	 */
+	private final static int LOG_SIZE = 10 * 1024 * 1024;
+	/**
+	 * Cleaner to close the log file once the logger is no longer used.
+	 */
+	private final static Cleaner CLEANER = Cleaner.create();
+
+	/**
+	 * If logging is enabled.
+	 */
+	private volatile boolean enabled = true;
+	/**
+	 * The writer.
+	 */
+	private final LogWriter writer;
+	/**
+	 * The log file.
+	 */
+	private final LogWriter.LogFile file;
+
+	/**
+	 * Create a new log.
+	 * 
+	 * @param ca The certificate authority.
+	 * @throws IOException Creation failed.
+	 */
+	AsyncActivityLog(CertificateAuthority ca) throws IOException {
+		this(ca, LogWriter.getDefault(), getFormat(), isChained());
+	}
+
+	/**
+	 * Create a new log.
+	 * 
+	 * @param ca The certificate authority.
+	 * @param writer The writer.
+	 * @param format The format.
+	 * @throws IOException Creation failed.
+	 */
+	AsyncActivityLog(CertificateAuthority ca, LogWriter writer, LogFormat format) throws IOException {
+		this(ca, writer, format, false);
+	}
+
+	/**
+	 * Create a new log.
+	 * 
+	 * @param ca The certificate authority.
+	 * @param writer The writer.
+	 * @param format The format.
+	 * @param chained TRUE to hash chain the records. (JSON format only).
+	 * @throws IOException Creation failed.
+	 */
+	AsyncActivityLog(CertificateAuthority ca, LogWriter writer, LogFormat format, boolean chained)
+			throws IOException {
+		this.enabled = ca.isEnableLog();
+		this.writer = writer;
+		if (!(ca.getDatastore() instanceof FileSystemDatastore)) {
+			throw new IOException("File logging requires a filesystem datastore");
+		}
+		Path baseLocation = ca.getBasePath().resolve(CertificateAuthority.LOG_PATH);
+		LogWriter.LogFile logFile = new LogWriter.LogFile(baseLocation, ca.getCertificateAuthorityID().toString(),
+				LOG_SIZE, format, chained ? () -> getPassword(ca) : null);
+		this.file = logFile;
+		CLEANER.register(this, () -> writer.close(logFile));
+	}
+
+	@Override
+	public synchronized void propertyChange(PropertyChangeEvent evt) {
+		try {
+			if (evt.getPropertyName().contentEquals(CertificateAuthority.PROPERTY_ENABLE_LOG)) {
+				enabled = (boolean) evt.getNewValue();
+			}
+		} catch (NullPointerException | ClassCastException e) {
+			// ignore.
+		}
+	}
+
+	@Override
+	public void log(Level level, String msg) {
+		if (enabled) {
+			writer.log(file, level, msg, null);
+		}
+	}
+
+	@Override
+	public void log(Level level, String msg, Object param1) {
+		if (enabled) {
+			writer.log(file, level, msg, new Object[] { param1 });
+		}
+	}
+
+	@Override
+	public void log(Level level, String msg, Object[] params) {
+		if (enabled) {
+			writer.log(file, level, msg, params);
+		}
+	}
+
+	@Override
+	public void logCertificate(Level level, String msg, String subject, String serial, Object[] params) {
+		if (enabled) {
+			writer.log(file, level, msg, subject, serial, params);
+		}
+	}
+
+	/**
+	 * Get the password protecting the audit key, being the password of the CA.
+	 *
+	 * @param ca The certificate authority.
+	 * @return The password (empty if the CA has no password), or NULL if the CA is locked.
+	 */
+	private static String getPassword(CertificateAuthority ca) {
+		try {
+			String password = ca.getPassword();
+			return password == null ? "" : password;
+		} catch (DatastoreLockedException | NullPointerException e) {
+			// Locked, or locked while reading.
+			return null;
+		}
+	}
+
+	/**
+	 * Wait until all records logged are written.
+	 */
+	public void flush() {
+		writer.flush();
+	}
+
+	/**
+	 * Is the asynchronous logger to be used?
+	 *
+	 * @return TRUE unless disabled via the {@link #ASYNC} system property.
+	 */
+	public static boolean isAsync() {
+		String async = System.getProperty(ASYNC);
+		return async == null || !async.trim().equalsIgnoreCase("false");
+	}
+
+	/**
+	 * Get the number of records which may be queued.
+	 *
+	 * @return The number of records.
+	 */
+	public static int getBufferSize() {
+		String buffer = System.getProperty(BUFFER);
+		if (buffer != null) {
+			try {
+				int value = Integer.parseInt(buffer.trim());
+				if (value > 0 && value <= (1 << 30)) {
+					return value;
+				}
+			} catch (NumberFormatException e) {
+				// fall through to the default.
+			}
+		}
+		return DEFAULT_BUFFER;
+	}
+
+	/**
+	 * Get the time records may wait before being written.
+	 *
+	 * @return The time in milliseconds, or 0 to write records as soon as taken.
+	 */
+	public static long getFlushInterval() {
+		String interval = System.getProperty(FLUSH_INTERVAL);
+		if (interval != null) {
+			try {
+				long value = Long.parseLong(interval.trim());
+				if (value >= 0) {
+					return value;
+				}
+			} catch (NumberFormatException e) {
+				// fall through to the default.
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 * Get the format of the log.
+	 *
+	 * @return The format set via the {@link #FORMAT} system property, or {@link LogFormat#JSON} if not set.
+	 */
+	public static LogFormat getFormat() {
+		return LogFormat.forName(System.getProperty(FORMAT), LogFormat.JSON);
+	}
+
+	/**
+	 * Are the records of structured logs to be hash chained and signed?
+	 *
+	 * @return TRUE if set via the {@link #CHAIN} system property.
+	 */
+	public static boolean isChained() {
+		return Boolean.parseBoolean(System.getProperty(CHAIN, "false").trim());
+	}
+
+	/**
+	 * Are writes to be forced to storage?
+	 *
+	 * @return TRUE if set via the {@link #SYNC} system property.
+	 */
+	public static boolean isSync() {
+		return Boolean.parseBoolean(System.getProperty(SYNC, "false").trim());
+	}
+}
@@ -0,0 +1,368 @@
+/*-
+ * Halimede Certificate Manager Plugin for Eclipse 
+ * Copyright (C) 2017-2021 Darran Kartaschew 
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v2.0 which
+ * accompanies this distribution and is available at
+ *
+ * http://www.eclipse.org/legal/epl-v20.html
+ * 
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the Eclipse
+ * Public License, v. 2.0 are satisfied: GNU General Public License, version 2
+ * with the GNU Classpath Exception which is
+ * available at https://www.gnu.org/software/classpath/license.html.
+ */
+
+package net.sourceforge.dkartaschew.halimede.log;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.PrivateKey;
+import java.security.Signature;
+import java.security.cert.Certificate;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.bouncycastle.operator.OperatorCreationException;
+
+import net.sourceforge.dkartaschew.halimede.data.CertificateFactory;
+import net.sourceforge.dkartaschew.halimede.data.KeyPairFactory;
+import net.sourceforge.dkartaschew.halimede.data.impl.IssuedCertificate;
+import net.sourceforge.dkartaschew.halimede.enumeration.KeyType;
+import net.sourceforge.dkartaschew.halimede.enumeration.PKCS12Cipher;
+import net.sourceforge.dkartaschew.halimede.enumeration.SignatureAlgorithm;
+import net.sourceforge.dkartaschew.halimede.exceptions.InvalidPasswordException;
+import net.sourceforge.dkartaschew.halimede.util.MerkleTree;
+
+/**
+ * The hash chain of a log file being written. (Only accessed by the writer thread, once created).
+ * <p>
+ * The lines of the records are hashed as the leaves of a Merkle tree, and each batch of records is closed by a
+ * checkpoint line holding the tree root, chained to the previous checkpoint. A batch is closed when full, and whenever
+ * records are written to the file (so is only left open by a failure). Checkpoints are signed with the audit key of
+ * the log when the last signature is older than {@link #SIGN_INTERVAL}, after {@link #SIGN_BATCHES} unsigned batches,
+ * before the segment is sealed and when the log is closed; signing a few checkpoints covers every record, without
+ * signing each record.
+ * <p>
+ * The audit key is held in a PKCS#12 container protected by the password of the CA, so checkpoints are only signed
+ * while the CA is unlocked (those written while locked are covered by the next signature). The key is created with the
+ * first signature, and is never replaced: once the log has been signed, a missing key fails the log rather than
+ * starting a new key. The public key held alongside ({@value #PUBLIC_KEY}) is a copy for convenience only, and may be
+ * replaced along with the log; verifiers must use a copy exported when the key was created and kept apart from the log.
+ */
+final class AuditChain {
+
+	/**
+	 * The maximum number of records in a batch.
+	 */
+	final static int BATCH = 256;
+	/**
+	 * The maximum number of unsigned batches.
+	 */
+	final static int SIGN_BATCHES = 64;
+	/**
+	 * The maximum time between signatures, in milliseconds.
+	 */
+	final static long SIGN_INTERVAL = TimeUnit.SECONDS.toMillis(10);
+	/**
+	 * Suffix of the private audit key (PKCS#12, encrypted with the password of the CA).
+	 */
+	final static String PRIVATE_KEY = ".audit.p12";
+	/**
+	 * The alias of the audit key within the container.
+	 */
+	private final static String ALIAS = "audit";
+	/**
+	 * Suffix of the public audit key (X.509 SubjectPublicKeyInfo, DER).
+	 */
+	final static String PUBLIC_KEY = ".audit.pub";
+	/**
+	 * The type of the audit key.
+	 */
+	private final static KeyType KEY_TYPE = KeyType.EC_P256;
+	/**
+	 * Reports failures to sign checkpoints.
+	 */
+	private final static Logger logger = Logger.getLogger(AuditChain.class.getName());
+
+	/**
+	 * The tree hasher.
+	 */
+	private final MerkleTree tree = new MerkleTree();
+	/**
+	 * The log directory.
+	 */
+	private final Path directory;
+	/**
+	 * The base name of the log segments.
+	 */
+	private final String name;
+	/**
+	 * The source of the password protecting the audit key.
+	 */
+	private final Supplier<String> password;
+	/**
+	 * The audit key. (NULL until first used, or while the password is not available).
+	 */
+	private PrivateKey key;
+	/**
+	 * The leaf hashes of the current batch.
+	 */
+	private final List<byte[]> leaves = new ArrayList<>(BATCH);
+	/**
+	 * The chain hash of the last checkpoint. (NULL if none).
+	 */
+	private byte[] chain;
+	/**
+	 * The number of the last batch.
+	 */
+	private long batch;
+	/**
+	 * The time of the last signature.
+	 */
+	private long signed;
+	/**
+	 * The number of batches since the last signature.
+	 */
+	private int unsigned;
+	/**
+	 * If signing has failed (and been reported).
+	 */
+	private boolean failed;
+
+	/**
+	 * Create a new chain.
+	 *
+	 * @param directory The log directory.
+	 * @param name The base name of the log segments.
+	 * @param password The source of the password protecting the audit key, returning NULL while not available (the CA
+	 *            is locked).
+	 */
+	AuditChain(Path directory, String name, Supplier<String> password) {
+		this.directory = directory;
+		this.name = name;
+		this.password = password;
+	}
+
+	/**
+	 * Recover the chain from the log: continue from the last checkpoint, including all records following it in the
+	 * next batch. If the log has no checkpoint, a new chain is started (and earlier records are not chained).
+	 *
+	 * @param segments The segments of the log.
+	 * @throws IOException Reading the log failed, or the audit key of a signed log is missing.
+	 */
+	void recover(NavigableMap<Long, Path> segments) throws IOException {
+		List<byte[]> following = new ArrayList<>();
+		for (Path file : segments.descendingMap().values()) {
+			List<byte[]> lines = new ArrayList<>();
+			AuditCheckpoint[] last = { null };
+			AuditLog.LineVisitor visitor = (line, ordinal) -> {
+				if (AuditCheckpoint.isCheckpoint(line)) {
+					try {
+						last[0] = AuditCheckpoint.parse(line, null);
+						lines.clear();
+						return true;
+					} catch (IllegalArgumentException e) {
+						// A record, as for the verifier.
+					}
+				}
+				lines.add(tree.leaf(line.getBytes(StandardCharsets.UTF_8)));
+				return true;
+			};
+			try {
+				AuditLog.read(file, visitor);
+			} catch (NoSuchFileException e) {
+				if (AuditLog.isSealed(file)) {
+					throw e;
+				}
+				// Sealed since listed.
+				String plain = file.getFileName().toString();
+				AuditLog.read(file.resolveSibling(
+						plain.substring(0, plain.length() - AuditLog.SEGMENT.length()) + AuditLog.SEALED), visitor);
+			}
+			lines.addAll(following);
+			following = lines;
+			if (last[0] != null) {
+				checkKey(last[0].isSigned());
+				chain = last[0].getChain();
+				batch = last[0].getBatch();
+				leaves.clear();
+				leaves.addAll(following);
+				// Sign the next checkpoint.
+				signed = 0;
+				unsigned = last[0].isSigned() ? 0 : 1;
+				return;
+			}
+		}
+		checkKey(false);
+		chain = null;
+		batch = 0;
+		leaves.clear();
+	}
+
+	/**
+	 * Chain the pending records (JSON lines), inserting a checkpoint after each full batch and after the last record.
+	 *
+	 * @param pending The pending records, to be replaced by the records and checkpoints.
+	 * @param sign TRUE to sign the last checkpoint, adding an empty batch if needed to sign earlier unsigned batches.
+	 */
+	void commit(StringBuilder pending, boolean sign) {
+		String records = pending.toString();
+		pending.setLength(0);
+		if (chain == null && !records.isEmpty()) {
+			checkpoint(pending, true);
+		}
+		int start = 0;
+		while (start < records.length()) {
+			int end = records.indexOf('\n', start);
+			if (end < 0) {
+				end = records.length();
+			}
+			leaves.add(tree.leaf(records.substring(start, end).getBytes(StandardCharsets.UTF_8)));
+			pending.append(records, start, end).append('\n');
+			if (leaves.size() >= BATCH) {
+				checkpoint(pending, false);
+			}
+			start = end + 1;
+		}
+		if (!leaves.isEmpty() || (sign && unsigned > 0)) {
+			checkpoint(pending, sign);
+		}
+	}
+
+	/**
+	 * Close the current batch.
+	 *
+	 * @param sb The buffer to append the checkpoint to.
+	 * @param sign TRUE to sign the checkpoint. (Otherwise signed if due).
+	 */
+	private void checkpoint(StringBuilder sb, boolean sign) {
+		long now = System.currentTimeMillis();
+		sign |= chain == null || unsigned + 1 >= SIGN_BATCHES || now - signed >= SIGN_INTERVAL;
+		byte[] previous = chain == null ? new byte[MerkleTree.HASH] : chain;
+		long number = chain == null ? 0 : batch + 1;
+		byte[] root = tree.root(leaves);
+		byte[] hash = AuditCheckpoint.chain(tree, number, now, leaves.size(), root, previous);
+		byte[] signature = sign ? sign(hash) : null;
+		new AuditCheckpoint(number, now, leaves.size(), root, previous, hash, signature, null).append(sb);
+		sb.append('\n');
+		chain = hash;
+		batch = number;
+		leaves.clear();
+		if (signature != null) {
+			signed = now;
+			unsigned = 0;
+		} else {
+			unsigned++;
+		}
+	}
+
+	/**
+	 * Sign the chain hash.
+	 *
+	 * @return The signature, or NULL if the password is not available or signing failed.
+	 */
+	private byte[] sign(byte[] hash) {
+		String pass = password.get();
+		if (pass == null) {
+			// Locked; the key is not held until unlocked again.
+			key = null;
+			return null;
+		}
+		try {
+			if (key == null) {
+				key = getKey(pass);
+			}
+			Signature signer = Signature.getInstance(AuditCheckpoint.ALGORITHM, BouncyCastleProvider.PROVIDER_NAME);
+			signer.initSign(key);
+			signer.update(hash);
+			byte[] signature = signer.sign();
+			failed = false;
+			return signature;
+		} catch (GeneralSecurityException | IOException e) {
+			if (!failed) {
+				// Report once, until signing succeeds again.
+				failed = true;
+				logger.log(Level.WARNING, "Unable to sign activity log checkpoint", e);
+			}
+			return null;
+		}
+	}
+
+	/**
+	 * Check the audit key has not been lost: once a key has been created (or the log signed), a new key is never
+	 * created in its place, as records signed with the lost key could then be replaced and signed again.
+	 *
+	 * @param signed TRUE if the log has a signed checkpoint.
+	 * @throws IOException The audit key is missing.
+	 */
+	private void checkKey(boolean signed) throws IOException {
+		Path file = directory.resolve(name + PRIVATE_KEY);
+		if (!Files.exists(file) && (signed || Files.exists(directory.resolve(name + PUBLIC_KEY)))) {
+			throw new IOException("The audit key " + file + " of the signed log is missing. Restore the key, "
+					+ "or move the log aside to start a new log.");
+		}
+	}
+
+	/**
+	 * Get the audit key of the log, creating it if the log has no key. The key is stored as PKCS#12, encrypted with
+	 * the password, and the public key is held alongside ({@value #PUBLIC_KEY}).
+	 *
+	 * @param password The password of the key.
+	 * @return The private audit key.
+	 * @throws IOException The key could not be read or created, or is missing.
+	 */
+	private PrivateKey getKey(String password) throws IOException {
+		Path file = directory.resolve(name + PRIVATE_KEY);
+		if (Files.exists(file)) {
+			try (InputStream in = Files.newInputStream(file)) {
+				return IssuedCertificate.loadPKCS12(in, password).getPrivateKey();
+			} catch (InvalidPasswordException | GeneralSecurityException e) {
+				throw new IOException("Unable to read audit key " + file, e);
+			}
+		}
+		checkKey(false);
+		// The log lock is held, so no other logger writes the key.
+		try {
+			KeyPair pair = KeyPairFactory.generateKeyPair(KEY_TYPE);
+			// PKCS#12 holds a key with its certificate.
+			Certificate certificate = CertificateFactory.generateSelfSignedCertificate(
+					new X500Name("CN=Activity Log " + name), ZonedDateTime.now().plusYears(100), pair,
+					SignatureAlgorithm.SHA256withECDSA);
+			IssuedCertificate issued = new IssuedCertificate(pair, new Certificate[] { certificate }, null, null,
+					password);
+			// Temporary files are created readable by the owner only.
+			Path tmp = Files.createTempFile(directory, name, PRIVATE_KEY);
+			try {
+				try (OutputStream out = Files.newOutputStream(tmp)) {
+					issued.savePKCS12(out, password, ALIAS, PKCS12Cipher.AES256);
+				}
+				Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+				Files.write(directory.resolve(name + PUBLIC_KEY), pair.getPublic().getEncoded());
+			} finally {
+				Files.deleteIfExists(tmp);
+			}
+			return pair.getPrivate();
+		} catch (GeneralSecurityException | OperatorCreationException e) {
+			throw new IOException("Unable to create audit key", e);
+		}
+	}
+}
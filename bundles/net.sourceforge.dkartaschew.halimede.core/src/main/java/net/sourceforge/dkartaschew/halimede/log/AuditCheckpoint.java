@@ -0,0 +1,353 @@
+/*-
+ * Halimede Certificate Manager Plugin for Eclipse 
+ * Copyright (C) 2017-2021 Darran Kartaschew 
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v2.0 which
+ * accompanies this distribution and is available at
+ *
+ * http://www.eclipse.org/legal/epl-v20.html
+ * 
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the Eclipse
+ * Public License, v. 2.0 are satisfied: GNU General Public License, version 2
+ * with the GNU Classpath Exception which is
+ * available at https://www.gnu.org/software/classpath/license.html.
+ */
+
+package net.sourceforge.dkartaschew.halimede.log;
+
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+import java.util.Map;
+
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+
+import net.sourceforge.dkartaschew.halimede.util.MerkleTree;
+import net.sourceforge.dkartaschew.halimede.util.ProviderUtil;
+import net.sourceforge.dkartaschew.halimede.util.Strings;
+
+/**
+ * A checkpoint of the hash-chained activity log, closing a batch of records.
+ * <p>
+ * Each checkpoint is held on its own line of the log, following the records of its batch, as a flat JSON object with
+ * the fields {@value #CHECKPOINT} (the batch number), {@value #TIME}, {@value #RECORDS} (the number of records in the
+ * batch), {@value #ROOT} (the Merkle tree root of the batch's lines), {@value #PREVIOUS} and {@value #CHAIN} (the chain
+ * hash of the previous checkpoint and of this one), and optionally {@value #SIGNATURE} (of the chain hash, by the
+ * audit key of the log). The chain hash commits to every field other than the signature, and to the chain hash of the
+ * previous checkpoint, so a single signature covers all records written before it. The first checkpoint of a log
+ * (batch 0) closes an empty batch, and follows a chain hash of zeroes.
+ */
+public final class AuditCheckpoint {
+
+	/**
+	 * Field name of the batch number.
+	 */
+	public static final String CHECKPOINT = "checkpoint";
+	/**
+	 * Field name of the timestamp.
+	 */
+	public static final String TIME = AuditRecord.TIME;
+	/**
+	 * Field name of the number of records.
+	 */
+	public static final String RECORDS = "records";
+	/**
+	 * Field name of the Merkle tree root of the records.
+	 */
+	public static final String ROOT = "root";
+	/**
+	 * Field name of the chain hash of the previous checkpoint.
+	 */
+	public static final String PREVIOUS = "previous";
+	/**
+	 * Field name of the chain hash.
+	 */
+	public static final String CHAIN = "chain";
+	/**
+	 * Field name of the signature.
+	 */
+	public static final String SIGNATURE = "signature";
+	/**
+	 * The signature algorithm of the audit key.
+	 */
+	public static final String ALGORITHM = "SHA256withECDSA";
+
+	/**
+	 * Prefix of a checkpoint line.
+	 */
+	private static final String PREFIX = "{\"" + CHECKPOINT + "\":";
+	/**
+	 * Prefix of a chain hash.
+	 */
+	private static final byte LINK = 2;
+
+	/*
+	 * Setup BC crypto provider.
+	 */
+	static {
+		ProviderUtil.setupProviders();
+	}
+
+	private final long batch;
+	private final long millis;
+	private final int records;
+	private final byte[] root;
+	private final byte[] previous;
+	private final byte[] chain;
+	private final byte[] signature;
+	private final AuditLog.Position position;
+
+	/**
+	 * Create a new checkpoint.
+	 *
+	 * @param batch The batch number.
+	 * @param millis The time in milliseconds since the epoch.
+	 * @param records The number of records in the batch.
+	 * @param root The Merkle tree root of the records.
+	 * @param previous The chain hash of the previous checkpoint.
+	 * @param chain The chain hash.
+	 * @param signature The signature of the chain hash. (May be NULL).
+	 * @param position The position in the log. (May be NULL).
+	 */
+	public AuditCheckpoint(long batch, long millis, int records, byte[] root, byte[] previous, byte[] chain,
+			byte[] signature, AuditLog.Position position) {
+		this.batch = batch;
+		this.millis = millis;
+		this.records = records;
+		this.root = root;
+		this.previous = previous;
+		this.chain = chain;
+		this.signature = signature;
+		this.position = position;
+	}
+
+	/**
+	 * Get the batch number.
+	 *
+	 * @return The batch number.
+	 */
+	public long getBatch() {
+		return batch;
+	}
+
+	/**
+	 * Get the time.
+	 *
+	 * @return The time in milliseconds since the epoch.
+	 */
+	public long getMillis() {
+		return millis;
+	}
+
+	/**
+	 * Get the number of records in the batch.
+	 *
+	 * @return The number of records.
+	 */
+	public int getRecords() {
+		return records;
+	}
+
+	/**
+	 * Get the Merkle tree root of the records in the batch.
+	 *
+	 * @return The root hash.
+	 */
+	public byte[] getRoot() {
+		return root.clone();
+	}
+
+	/**
+	 * Get the chain hash of the previous checkpoint.
+	 *
+	 * @return The chain hash.
+	 */
+	public byte[] getPrevious() {
+		return previous.clone();
+	}
+
+	/**
+	 * Get the chain hash.
+	 *
+	 * @return The chain hash.
+	 */
+	public byte[] getChain() {
+		return chain.clone();
+	}
+
+	/**
+	 * Is the checkpoint signed?
+	 *
+	 * @return TRUE if signed.
+	 */
+	public boolean isSigned() {
+		return signature != null;
+	}
+
+	/**
+	 * Get the position in the log.
+	 *
+	 * @return The position, or NULL if not known.
+	 */
+	public AuditLog.Position getPosition() {
+		return position;
+	}
+
+	/**
+	 * Does the chain hash match the other fields?
+	 *
+	 * @param tree The tree hasher.
+	 * @return TRUE if the chain hash is valid.
+	 */
+	boolean isChained(MerkleTree tree) {
+		return MessageDigest.isEqual(chain, chain(tree, batch, millis, records, root, previous));
+	}
+
+	/**
+	 * Does this checkpoint directly follow the given checkpoint?
+	 *
+	 * @param checkpoint The previous checkpoint.
+	 * @return TRUE if the batch number and previous chain hash follow on.
+	 */
+	boolean follows(AuditCheckpoint checkpoint) {
+		return batch == checkpoint.batch + 1 && MessageDigest.isEqual(previous, checkpoint.chain);
+	}
+
+	/**
+	 * Verify the signature of the checkpoint.
+	 *
+	 * @param key The public audit key.
+	 * @return TRUE if signed by the audit key.
+	 */
+	public boolean verify(PublicKey key) {
+		if (signature == null || key == null) {
+			return false;
+		}
+		try {
+			Signature verifier = Signature.getInstance(ALGORITHM, BouncyCastleProvider.PROVIDER_NAME);
+			verifier.initVerify(key);
+			verifier.update(chain);
+			return verifier.verify(signature);
+		} catch (GeneralSecurityException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Append the checkpoint as a JSON line (without line separator).
+	 *
+	 * @param sb The buffer to append to.
+	 */
+	void append(StringBuilder sb) {
+		sb.append(PREFIX);
+		AuditRecord.quote(sb, Long.toString(batch));
+		field(sb, TIME, Instant.ofEpochMilli(millis).toString());
+		field(sb, RECORDS, Integer.toString(records));
+		field(sb, ROOT, Strings.toHexString(root));
+		field(sb, PREVIOUS, Strings.toHexString(previous));
+		field(sb, CHAIN, Strings.toHexString(chain));
+		if (signature != null) {
+			field(sb, SIGNATURE, Base64.getEncoder().encodeToString(signature));
+		}
+		sb.append('}');
+	}
+
+	/**
+	 * Append a field.
+	 */
+	private static void field(StringBuilder sb, String name, String value) {
+		sb.append(",\"").append(name).append("\":");
+		AuditRecord.quote(sb, value);
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+		append(sb);
+		return sb.toString();
+	}
+
+	/**
+	 * Is the line a checkpoint? (Records are never taken as checkpoints, but the line may not be valid).
+	 *
+	 * @param line The line.
+	 * @return TRUE if the line is a checkpoint.
+	 */
+	public static boolean isCheckpoint(String line) {
+		return line.startsWith(PREFIX);
+	}
+
+	/**
+	 * Parse a checkpoint from a line of the log.
+	 *
+	 * @param line The line.
+	 * @param position The position of the line in the log. (May be NULL).
+	 * @return The checkpoint.
+	 * @throws IllegalArgumentException The line is not a valid checkpoint.
+	 */
+	public static AuditCheckpoint parse(String line, AuditLog.Position position) {
+		Map<String, String> fields = AuditRecord.fields(line);
+		try {
+			String signature = fields.get(SIGNATURE);
+			return new AuditCheckpoint(Long.parseLong(get(fields, CHECKPOINT)),
+					Instant.parse(get(fields, TIME)).toEpochMilli(), Integer.parseInt(get(fields, RECORDS)),
+					hash(get(fields, ROOT)), hash(get(fields, PREVIOUS)), hash(get(fields, CHAIN)),
+					signature == null ? null : Base64.getDecoder().decode(signature), position);
+		} catch (NumberFormatException | DateTimeParseException e) {
+			throw new IllegalArgumentException("Checkpoint is not valid", e);
+		}
+	}
+
+	/**
+	 * Get a required field.
+	 */
+	private static String get(Map<String, String> fields, String name) {
+		String value = fields.get(name);
+		if (value == null) {
+			throw new IllegalArgumentException("Checkpoint missing " + name);
+		}
+		return value;
+	}
+
+	/**
+	 * Decode a hash.
+	 */
+	private static byte[] hash(String value) {
+		if (value.length() != MerkleTree.HASH * 2) {
+			throw new IllegalArgumentException("Checkpoint hash is not valid");
+		}
+		try {
+			return Strings.fromHexString(value);
+		} catch (RuntimeException e) {
+			throw new IllegalArgumentException("Checkpoint hash is not valid", e);
+		}
+	}
+
+	/**
+	 * Compute the chain hash of a checkpoint.
+	 *
+	 * @param tree The tree hasher.
+	 * @param batch The batch number.
+	 * @param millis The time in milliseconds since the epoch.
+	 * @param records The number of records in the batch.
+	 * @param root The Merkle tree root of the records.
+	 * @param previous The chain hash of the previous checkpoint.
+	 * @return The chain hash.
+	 */
+	static byte[] chain(MerkleTree tree, long batch, long millis, int records, byte[] root, byte[] previous) {
+		MessageDigest digest = tree.getDigest();
+		digest.update(LINK);
+		digest.update(previous);
+		digest.update(root);
+		digest.update(ByteBuffer.allocate(Long.BYTES * 2 + Integer.BYTES).putLong(batch).putLong(millis)
+				.putInt(records).array());
+		return digest.digest();
+	}
+}
@@ -0,0 +1,327 @@
+/*-
+ * Halimede Certificate Manager Plugin for Eclipse 
+ * Copyright (C) 2017-2021 Darran Kartaschew 
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v2.0 which
+ * accompanies this distribution and is available at
+ *
+ * http://www.eclipse.org/legal/epl-v20.html
+ * 
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the Eclipse
+ * Public License, v. 2.0 are satisfied: GNU General Public License, version 2
+ * with the GNU Classpath Exception which is
+ * available at https://www.gnu.org/software/classpath/license.html.
+ */
+
+package net.sourceforge.dkartaschew.halimede.log;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Sidecar index of a sealed segment of the structured activity log.
+ * <p>
+ * A sealed segment is a sequence of independently compressed blocks of records. The index holds the location and
+ * time range of each block, and the blocks holding each certificate serial and subject, so a query reads only the
+ * blocks which may match.
+ */
+final class AuditIndex {
+
+	/**
+	 * File magic ("HAIX").
+	 */
+	private final static int MAGIC = 0x48414958;
+	/**
+	 * File version.
+	 */
+	private final static int VERSION = 1;
+
+	/**
+	 * The number of records.
+	 */
+	final int records;
+	/**
+	 * The earliest time of any record.
+	 */
+	final long first;
+	/**
+	 * The latest time of any record.
+	 */
+	final long last;
+	/**
+	 * The offset of each block in the segment.
+	 */
+	final long[] offsets;
+	/**
+	 * The (compressed) length of each block.
+	 */
+	final int[] lengths;
+	/**
+	 * The earliest time in each block.
+	 */
+	final long[] firsts;
+	/**
+	 * The latest time in each block.
+	 */
+	final long[] lasts;
+	/**
+	 * The blocks of each serial.
+	 */
+	final Map<String, int[]> serials;
+	/**
+	 * The blocks of each (folded) subject.
+	 */
+	final Map<String, int[]> subjects;
+
+	/**
+	 * Builder of an index, block by block.
+	 */
+	static final class Builder {
+		private int records;
+		private int blocks;
+		private long[] offsets = new long[16];
+		private int[] lengths = new int[16];
+		private long[] firsts = new long[16];
+		private long[] lasts = new long[16];
+		private long first = Long.MAX_VALUE;
+		private long last = Long.MIN_VALUE;
+		private long blockFirst = Long.MAX_VALUE;
+		private long blockLast = Long.MIN_VALUE;
+		private final Map<String, BitSet> serials = new TreeMap<>();
+		private final Map<String, BitSet> subjects = new TreeMap<>();
+
+		/**
+		 * Add a record to the current block.
+		 *
+		 * @param record The record.
+		 */
+		void add(AuditRecord record) {
+			records++;
+			blockFirst = Math.min(blockFirst, record.getMillis());
+			blockLast = Math.max(blockLast, record.getMillis());
+			if (record.getSerial() != null) {
+				serials.computeIfAbsent(record.getSerial().toLowerCase(Locale.ROOT), k -> new BitSet())
+						.set(blocks);
+			}
+			String subject = AuditQuery.fold(record.getSubject());
+			if (subject != null) {
+				subjects.computeIfAbsent(subject, k -> new BitSet()).set(blocks);
+			}
+		}
+
+		/**
+		 * Count a record that could not be read, in the current block.
+		 */
+		void skip() {
+			records++;
+		}
+
+		/**
+		 * Complete the current block.
+		 *
+		 * @param offset The offset of the block.
+		 * @param length The length of the block.
+		 */
+		void block(long offset, int length) {
+			if (blocks == offsets.length) {
+				offsets = Arrays.copyOf(offsets, blocks * 2);
+				lengths = Arrays.copyOf(lengths, blocks * 2);
+				firsts = Arrays.copyOf(firsts, blocks * 2);
+				lasts = Arrays.copyOf(lasts, blocks * 2);
+			}
+			offsets[blocks] = offset;
+			lengths[blocks] = length;
+			firsts[blocks] = blockFirst;
+			lasts[blocks] = blockLast;
+			first = Math.min(first, blockFirst);
+			last = Math.max(last, blockLast);
+			blockFirst = Long.MAX_VALUE;
+			blockLast = Long.MIN_VALUE;
+			blocks++;
+		}
+
+		/**
+		 * Create the index.
+		 *
+		 * @return The index.
+		 */
+		AuditIndex build() {
+			return new AuditIndex(records, first, last, Arrays.copyOf(offsets, blocks), Arrays.copyOf(lengths, blocks),
+					Arrays.copyOf(firsts, blocks), Arrays.copyOf(lasts, blocks), toArrays(serials), toArrays(subjects));
+		}
+
+		private static Map<String, int[]> toArrays(Map<String, BitSet> terms) {
+			Map<String, int[]> result = new HashMap<>();
+			for (Map.Entry<String, BitSet> e : terms.entrySet()) {
+				result.put(e.getKey(), e.getValue().stream().toArray());
+			}
+			return result;
+		}
+	}
+
+	private AuditIndex(int records, long first, long last, long[] offsets, int[] lengths, long[] firsts,
+			long[] lasts, Map<String, int[]> serials, Map<String, int[]> subjects) {
+		this.records = records;
+		this.first = first;
+		this.last = last;
+		this.offsets = offsets;
+		this.lengths = lengths;
+		this.firsts = firsts;
+		this.lasts = lasts;
+		this.serials = serials;
+		this.subjects = subjects;
+	}
+
+	/**
+	 * Get the number of blocks.
+	 *
+	 * @return The number of blocks.
+	 */
+	int getBlockCount() {
+		return offsets.length;
+	}
+
+	/**
+	 * Get the blocks which may hold records matching the query.
+	 *
+	 * @param query The query.
+	 * @return The candidate blocks.
+	 */
+	BitSet candidates(AuditQuery query) {
+		BitSet result = new BitSet();
+		if (!query.overlaps(first, last)) {
+			return result;
+		}
+		for (int i = 0; i < offsets.length; i++) {
+			if (query.overlaps(firsts[i], lasts[i])) {
+				result.set(i);
+			}
+		}
+		if (query.getSerial() != null) {
+			result.and(toBitSet(serials.get(query.getSerial().toLowerCase(Locale.ROOT))));
+		}
+		if (query.getSubject() != null) {
+			// The dictionary of subjects is small, so is scanned.
+			BitSet matched = new BitSet();
+			for (Map.Entry<String, int[]> e : subjects.entrySet()) {
+				if (e.getKey().contains(query.getSubject())) {
+					matched.or(toBitSet(e.getValue()));
+				}
+			}
+			result.and(matched);
+		}
+		return result;
+	}
+
+	private static BitSet toBitSet(int[] blocks) {
+		BitSet result = new BitSet();
+		if (blocks != null) {
+			for (int b : blocks) {
+				result.set(b);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Write the index.
+	 *
+	 * @param file The file to write to.
+	 * @throws IOException Writing failed.
+	 */
+	void write(Path file) throws IOException {
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(records);
+			out.writeLong(first);
+			out.writeLong(last);
+			out.writeInt(offsets.length);
+			for (int i = 0; i < offsets.length; i++) {
+				out.writeLong(offsets[i]);
+				out.writeInt(lengths[i]);
+				out.writeLong(firsts[i]);
+				out.writeLong(lasts[i]);
+			}
+			writeTerms(out, serials);
+			writeTerms(out, subjects);
+		}
+	}
+
+	private static void writeTerms(DataOutputStream out, Map<String, int[]> terms) throws IOException {
+		out.writeInt(terms.size());
+		for (Map.Entry<String, int[]> e : terms.entrySet()) {
+			out.writeUTF(e.getKey());
+			out.writeInt(e.getValue().length);
+			for (int b : e.getValue()) {
+				out.writeInt(b);
+			}
+		}
+	}
+
+	/**
+	 * Read an index.
+	 *
+	 * @param file The file to read.
+	 * @return The index.
+	 * @throws IOException Reading failed, or the file is not an index.
+	 */
+	static AuditIndex read(Path file) throws IOException {
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+			if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+				throw new IOException("Not a valid log index: " + file);
+			}
+			int records = in.readInt();
+			long first = in.readLong();
+			long last = in.readLong();
+			int blocks = in.readInt();
+			if (blocks < 0) {
+				throw new IOException("Not a valid log index: " + file);
+			}
+			long[] offsets = new long[blocks];
+			int[] lengths = new int[blocks];
+			long[] firsts = new long[blocks];
+			long[] lasts = new long[blocks];
+			for (int i = 0; i < blocks; i++) {
+				offsets[i] = in.readLong();
+				lengths[i] = in.readInt();
+				firsts[i] = in.readLong();
+				lasts[i] = in.readLong();
+			}
+			Map<String, int[]> serials = readTerms(in, blocks);
+			Map<String, int[]> subjects = readTerms(in, blocks);
+			return new AuditIndex(records, first, last, offsets, lengths, firsts, lasts, serials, subjects);
+		}
+	}
+
+	private static Map<String, int[]> readTerms(DataInputStream in, int blocks) throws IOException {
+		int count = in.readInt();
+		Map<String, int[]> terms = new HashMap<>();
+		for (int i = 0; i < count; i++) {
+			String key = in.readUTF();
+			int n = in.readInt();
+			if (n < 0 || n > blocks) {
+				throw new IOException("Not a valid log index");
+			}
+			int[] values = new int[n];
+			for (int j = 0; j < n; j++) {
+				values[j] = in.readInt();
+			}
+			terms.put(key, values);
+		}
+		return terms;
+	}
+}
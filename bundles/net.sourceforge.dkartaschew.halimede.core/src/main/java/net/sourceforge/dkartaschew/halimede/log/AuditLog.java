@@ -0,0 +1,795 @@
+/*-
+ * Halimede Certificate Manager Plugin for Eclipse 
+ * Copyright (C) 2017-2021 Darran Kartaschew 
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v2.0 which
+ * accompanies this distribution and is available at
+ *
+ * http://www.eclipse.org/legal/epl-v20.html
+ * 
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the Eclipse
+ * Public License, v. 2.0 are satisfied: GNU General Public License, version 2
+ * with the GNU Classpath Exception which is
+ * available at https://www.gnu.org/software/classpath/license.html.
+ */
+
+package net.sourceforge.dkartaschew.halimede.log;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.PublicKey;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import net.sourceforge.dkartaschew.halimede.data.CertificateAuthority;
+import net.sourceforge.dkartaschew.halimede.data.PublicKeyDecoder;
+
+/**
+ * Reader of the structured (JSON lines) activity log of a Certificate Authority.
+ * <p>
+ * The log is held as numbered segments. The current segment is appended to as plain text ({@value #SEGMENT}); once
+ * full it is sealed, being compressed in blocks of {@value #BLOCK} records ({@value #SEALED}) with a sidecar index
+ * ({@value #INDEX}) by time, certificate serial and subject. Queries page backwards from the newest record, reading
+ * only the index and the blocks which may match, and the current segment may be followed from a position without
+ * rereading it.
+ * <p>
+ * A hash-chained log also holds checkpoint lines ({@link AuditCheckpoint}) between the records, which are not returned
+ * by queries; see {@link AuditVerifier}.
+ */
+public class AuditLog {
+
+	/**
+	 * Suffix of the current (plain) segment.
+	 */
+	public static final String SEGMENT = ".jsonl";
+	/**
+	 * Suffix of a sealed (compressed) segment.
+	 */
+	public static final String SEALED = ".jsonl.gz";
+	/**
+	 * Suffix of the index of a sealed segment.
+	 */
+	public static final String INDEX = ".idx";
+	/**
+	 * Suffix of the lock file of the log.
+	 */
+	public static final String LOCK = ".jsonl.lck";
+	/**
+	 * The number of records in each compressed block.
+	 */
+	public static final int BLOCK = 256;
+	/**
+	 * Temporary file suffix.
+	 */
+	private static final String TMP = ".tmp";
+
+	/**
+	 * A position in the log.
+	 */
+	public static final class Position implements Comparable<Position> {
+		private final long segment;
+		private final long ordinal;
+
+		/**
+		 * Create a new position.
+		 *
+		 * @param segment The segment number.
+		 * @param ordinal The record number in the segment.
+		 */
+		public Position(long segment, long ordinal) {
+			this.segment = segment;
+			this.ordinal = ordinal;
+		}
+
+		/**
+		 * Get the segment number.
+		 *
+		 * @return The segment number.
+		 */
+		public long getSegment() {
+			return segment;
+		}
+
+		/**
+		 * Get the record number in the segment.
+		 *
+		 * @return The record number.
+		 */
+		public long getOrdinal() {
+			return ordinal;
+		}
+
+		@Override
+		public int compareTo(Position o) {
+			int res = Long.compare(segment, o.segment);
+			return res != 0 ? res : Long.compare(ordinal, o.ordinal);
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(segment, ordinal);
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			return obj instanceof Position && compareTo((Position) obj) == 0;
+		}
+
+		@Override
+		public String toString() {
+			return segment + ":" + ordinal;
+		}
+	}
+
+	/**
+	 * A page of query results.
+	 */
+	public static final class Page {
+		private final List<AuditRecord> records;
+		private final Position next;
+
+		Page(List<AuditRecord> records, Position next) {
+			this.records = Collections.unmodifiableList(records);
+			this.next = next;
+		}
+
+		/**
+		 * Get the matching records, newest first.
+		 *
+		 * @return The records.
+		 */
+		public List<AuditRecord> getRecords() {
+			return records;
+		}
+
+		/**
+		 * Get the position to query before for the next (older) page.
+		 *
+		 * @return The position, or NULL if there are no more records.
+		 */
+		public Position getNext() {
+			return next;
+		}
+	}
+
+	/**
+	 * The position of a reader following the log.
+	 */
+	public static final class Tail {
+		private long segment;
+		private long offset;
+		private long ordinal;
+
+		private Tail(long segment, long offset, long ordinal) {
+			this.segment = segment;
+			this.offset = offset;
+			this.ordinal = ordinal;
+		}
+
+		/**
+		 * Get the position of the next record.
+		 *
+		 * @return The position.
+		 */
+		public Position getPosition() {
+			return new Position(segment, ordinal);
+		}
+	}
+
+	/**
+	 * Callback for each line of a segment.
+	 */
+	interface LineVisitor {
+		/**
+		 * Visit a line.
+		 *
+		 * @param line The line.
+		 * @param ordinal The record number.
+		 * @return FALSE to stop.
+		 */
+		boolean visit(String line, long ordinal);
+	}
+
+	/**
+	 * The log directory.
+	 */
+	private final Path directory;
+	/**
+	 * The base name of the segments.
+	 */
+	private final String name;
+	/**
+	 * Pattern of the segment file names.
+	 */
+	private final Pattern pattern;
+	/**
+	 * The indexes of sealed segments. (Sealed segments are never changed).
+	 */
+	private final Map<Long, AuditIndex> indexes = new ConcurrentHashMap<>();
+
+	/**
+	 * Create a reader of the log.
+	 *
+	 * @param directory The log directory.
+	 * @param name The base name of the segments.
+	 */
+	public AuditLog(Path directory, String name) {
+		this.directory = Objects.requireNonNull(directory, "Directory is not valid");
+		this.name = Objects.requireNonNull(name, "Name is not valid");
+		this.pattern = segmentPattern(name);
+	}
+
+	/**
+	 * Create a reader of the log of the given Certificate Authority.
+	 *
+	 * @param ca The Certificate Authority.
+	 * @return A reader of the log.
+	 */
+	public static AuditLog of(CertificateAuthority ca) {
+		return new AuditLog(ca.getBasePath().resolve(CertificateAuthority.LOG_PATH),
+				ca.getCertificateAuthorityID().toString());
+	}
+
+	/**
+	 * Get the segments of the log.
+	 *
+	 * @return The path of each segment, by segment number. (Sealed segments in preference to plain).
+	 * @throws IOException Listing the directory failed.
+	 */
+	public NavigableMap<Long, Path> getSegments() throws IOException {
+		return segments(directory, pattern);
+	}
+
+	/**
+	 * Get the public key of the audit key which signs the checkpoints of the log, when hash-chained.
+	 * <p>
+	 * The key is read from alongside the log, so whoever can replace the log can replace the key; it is only suitable
+	 * for exporting when the key is created. Verifiers must use a copy of the key kept apart from the log (pinned).
+	 *
+	 * @return The public key, or NULL if the log has no audit key.
+	 * @throws IOException Reading the key failed.
+	 */
+	public PublicKey getAuditKey() throws IOException {
+		Path key = directory.resolve(name + AuditChain.PUBLIC_KEY);
+		if (!Files.exists(key)) {
+			return null;
+		}
+		return PublicKeyDecoder.open(key);
+	}
+
+	/**
+	 * Query the log.
+	 *
+	 * @param query The query.
+	 * @param before The position to find records before (the next position of the previous page), or NULL for the
+	 *            newest records.
+	 * @param limit The maximum number of records.
+	 * @return The matching records, newest first.
+	 * @throws IOException Reading the log failed.
+	 */
+	public Page query(AuditQuery query, Position before, int limit) throws IOException {
+		if (limit <= 0) {
+			throw new IllegalArgumentException("Limit is not valid");
+		}
+		List<AuditRecord> result = new ArrayList<>();
+		NavigableMap<Long, Path> segments = getSegments();
+		if (before != null) {
+			segments = segments.headMap(before.getSegment(), true);
+		}
+		for (Map.Entry<Long, Path> e : segments.descendingMap().entrySet()) {
+			long segment = e.getKey();
+			long end = before != null && before.getSegment() == segment ? before.getOrdinal() : Long.MAX_VALUE;
+			try {
+				if (isSealed(e.getValue())) {
+					querySealed(segment, e.getValue(), query, end, limit, result);
+				} else {
+					queryPlain(segment, e.getValue(), query, end, limit, result);
+				}
+			} catch (NoSuchFileException ex) {
+				// Sealed since listed.
+				Path sealed = directory.resolve(segmentName(name, segment) + SEALED);
+				querySealed(segment, sealed, query, end, limit, result);
+			}
+			if (result.size() >= limit) {
+				return new Page(result, result.get(result.size() - 1).getPosition());
+			}
+		}
+		return new Page(result, null);
+	}
+
+	/**
+	 * Query a sealed segment.
+	 */
+	private void querySealed(long segment, Path file, AuditQuery query, long end, int limit,
+			List<AuditRecord> result) throws IOException {
+		AuditIndex index = getIndex(segment);
+		BitSet blocks = index.candidates(query);
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			for (int b = blocks.previousSetBit(index.getBlockCount() - 1); b >= 0; b = blocks.previousSetBit(b - 1)) {
+				long base = (long) b * BLOCK;
+				if (base >= end) {
+					continue;
+				}
+				List<String> lines = readBlock(channel, index, b);
+				for (int i = lines.size() - 1; i >= 0; i--) {
+					long ordinal = base + i;
+					if (ordinal >= end) {
+						continue;
+					}
+					AuditRecord record = parse(lines.get(i), segment, ordinal);
+					if (record != null && query.matches(record)) {
+						result.add(record);
+						if (result.size() >= limit) {
+							return;
+						}
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Query a plain segment, streaming through it and keeping only the newest matches.
+	 */
+	private void queryPlain(long segment, Path file, AuditQuery query, long end, int limit,
+			List<AuditRecord> result) throws IOException {
+		int remaining = limit - result.size();
+		Deque<AuditRecord> matches = new ArrayDeque<>(Math.min(remaining, 1024));
+		scan(file, 0, 0, (line, ordinal) -> {
+			if (ordinal >= end) {
+				return false;
+			}
+			AuditRecord record = parse(line, segment, ordinal);
+			if (record != null && query.matches(record)) {
+				if (matches.size() == remaining) {
+					matches.removeFirst();
+				}
+				matches.addLast(record);
+			}
+			return true;
+		});
+		while (!matches.isEmpty()) {
+			result.add(matches.removeLast());
+		}
+	}
+
+	/**
+	 * Get the position following the newest record, to follow the log from.
+	 *
+	 * @return The position.
+	 * @throws IOException Reading the log failed.
+	 */
+	public Tail tail() throws IOException {
+		NavigableMap<Long, Path> segments = getSegments();
+		if (segments.isEmpty()) {
+			return new Tail(1, 0, 0);
+		}
+		Map.Entry<Long, Path> last = segments.lastEntry();
+		if (isSealed(last.getValue())) {
+			return new Tail(last.getKey(), -1, getIndex(last.getKey()).records);
+		}
+		Tail tail = new Tail(last.getKey(), 0, 0);
+		try {
+			long[] counts = scan(last.getValue(), 0, 0, (line, ordinal) -> true);
+			tail.offset = counts[0];
+			tail.ordinal = counts[1];
+		} catch (NoSuchFileException e) {
+			// Sealed since listed.
+			return new Tail(last.getKey(), -1, getIndex(last.getKey()).records);
+		}
+		return tail;
+	}
+
+	/**
+	 * Read the records added since the tail position, and advance the position.
+	 *
+	 * @param tail The position, from {@link #tail()}.
+	 * @return The records added, oldest first.
+	 * @throws IOException Reading the log failed.
+	 */
+	public List<AuditRecord> follow(Tail tail) throws IOException {
+		List<AuditRecord> result = new ArrayList<>();
+		for (;;) {
+			NavigableMap<Long, Path> segments = getSegments();
+			Long next = segments.higherKey(tail.segment);
+			Path sealed = directory.resolve(segmentName(name, tail.segment) + SEALED);
+			if (next != null || tail.offset < 0) {
+				// The segment is complete; read the remainder, from the sealed segment if present.
+				if (Files.exists(sealed)) {
+					readSealed(tail, sealed, result);
+				} else {
+					readPlain(tail, directory.resolve(segmentName(name, tail.segment) + SEGMENT), result);
+				}
+				if (next == null) {
+					return result;
+				}
+				tail.segment = next;
+				tail.offset = 0;
+				tail.ordinal = 0;
+			} else {
+				if (!readPlain(tail, directory.resolve(segmentName(name, tail.segment) + SEGMENT), result)) {
+					if (Files.exists(sealed)) {
+						// Sealed while reading.
+						tail.offset = -1;
+						continue;
+					}
+				}
+				return result;
+			}
+		}
+	}
+
+	/**
+	 * Read the records of the plain segment from the tail position.
+	 *
+	 * @return FALSE if the segment does not exist.
+	 */
+	private boolean readPlain(Tail tail, Path file, List<AuditRecord> result) throws IOException {
+		if (tail.offset < 0) {
+			return true;
+		}
+		long segment = tail.segment;
+		try {
+			long[] counts = scan(file, tail.offset, tail.ordinal, (line, ordinal) -> {
+				AuditRecord record = parse(line, segment, ordinal);
+				if (record != null) {
+					result.add(record);
+				}
+				return true;
+			});
+			tail.offset = counts[0];
+			tail.ordinal = counts[1];
+			return true;
+		} catch (NoSuchFileException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Read the records of the sealed segment from the tail position.
+	 */
+	private void readSealed(Tail tail, Path file, List<AuditRecord> result) throws IOException {
+		AuditIndex index = getIndex(tail.segment);
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			for (int b = (int) (tail.ordinal / BLOCK); b < index.getBlockCount(); b++) {
+				List<String> lines = readBlock(channel, index, b);
+				for (int i = 0; i < lines.size(); i++) {
+					long ordinal = (long) b * BLOCK + i;
+					if (ordinal >= tail.ordinal) {
+						AuditRecord record = parse(lines.get(i), tail.segment, ordinal);
+						if (record != null) {
+							result.add(record);
+						}
+					}
+				}
+			}
+		}
+		tail.offset = -1;
+		tail.ordinal = index.records;
+	}
+
+	/**
+	 * Visit each line of a segment, in order.
+	 *
+	 * @param segment The segment number.
+	 * @param file The segment, as listed.
+	 * @param visitor The visitor.
+	 * @throws IOException Reading failed.
+	 */
+	void read(long segment, Path file, LineVisitor visitor) throws IOException {
+		try {
+			read(file, visitor);
+		} catch (NoSuchFileException e) {
+			if (isSealed(file)) {
+				throw e;
+			}
+			// Sealed since listed.
+			read(directory.resolve(segmentName(name, segment) + SEALED), visitor);
+		}
+	}
+
+	/**
+	 * Get the index of a sealed segment.
+	 */
+	private AuditIndex getIndex(long segment) throws IOException {
+		AuditIndex index = indexes.get(segment);
+		if (index == null) {
+			index = AuditIndex.read(directory.resolve(segmentName(name, segment) + INDEX));
+			indexes.put(segment, index);
+		}
+		return index;
+	}
+
+	/**
+	 * Read the lines of a block of a sealed segment.
+	 */
+	private static List<String> readBlock(FileChannel channel, AuditIndex index, int block) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(index.lengths[block]);
+		long position = index.offsets[block];
+		while (buffer.hasRemaining()) {
+			int read = channel.read(buffer, position + buffer.position());
+			if (read < 0) {
+				throw new IOException("Log segment truncated");
+			}
+		}
+		List<String> lines = new ArrayList<>(BLOCK);
+		try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+				new GZIPInputStream(new ByteArrayInputStream(buffer.array())), StandardCharsets.UTF_8))) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				lines.add(line);
+			}
+		}
+		return lines;
+	}
+
+	/**
+	 * Parse a line, ignoring lines which are not valid records.
+	 */
+	private static AuditRecord parse(String line, long segment, long ordinal) {
+		try {
+			return AuditRecord.parse(line, new Position(segment, ordinal));
+		} catch (IllegalArgumentException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Visit each complete line of a plain segment from the given offset.
+	 *
+	 * @param file The segment.
+	 * @param offset The offset to start from (the start of a line).
+	 * @param ordinal The record number of the line at the offset.
+	 * @param visitor The visitor.
+	 * @return The offset and record number following the last complete line visited.
+	 * @throws IOException Reading failed.
+	 */
+	private static long[] scan(Path file, long offset, long ordinal, LineVisitor visitor) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+			byte[] line = new byte[256];
+			int length = 0;
+			long position = offset;
+			while (channel.read(buffer, position) > 0) {
+				buffer.flip();
+				position += buffer.remaining();
+				while (buffer.hasRemaining()) {
+					byte c = buffer.get();
+					if (c != '\n') {
+						if (length == line.length) {
+							line = Arrays.copyOf(line, length * 2);
+						}
+						line[length++] = c;
+						continue;
+					}
+					if (!visitor.visit(new String(line, 0, length, StandardCharsets.UTF_8), ordinal)) {
+						return new long[] { offset, ordinal };
+					}
+					ordinal++;
+					offset += length + 1;
+					length = 0;
+				}
+				buffer.clear();
+			}
+			// Any remainder is a partial line being written.
+			return new long[] { offset, ordinal };
+		}
+	}
+
+	/**
+	 * Visit each complete line of a plain or sealed segment, in order.
+	 *
+	 * @param file The segment.
+	 * @param visitor The visitor.
+	 * @throws IOException Reading failed.
+	 */
+	static void read(Path file, LineVisitor visitor) throws IOException {
+		if (!isSealed(file)) {
+			scan(file, 0, 0, visitor);
+			return;
+		}
+		// The compressed blocks are read as one stream.
+		try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+				new GZIPInputStream(Files.newInputStream(file), 64 * 1024), StandardCharsets.UTF_8))) {
+			long ordinal = 0;
+			String line;
+			while ((line = reader.readLine()) != null) {
+				if (!visitor.visit(line, ordinal++)) {
+					return;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Seal a plain segment, compressing it in blocks and writing its index.
+	 *
+	 * @param file The plain segment.
+	 * @throws IOException Sealing failed.
+	 */
+	static void seal(Path file) throws IOException {
+		String fileName = file.getFileName().toString();
+		if (!fileName.endsWith(SEGMENT)) {
+			throw new IOException("Not a log segment: " + file);
+		}
+		String base = fileName.substring(0, fileName.length() - SEGMENT.length());
+		Path sealed = file.resolveSibling(base + SEALED);
+		Path index = file.resolveSibling(base + INDEX);
+		Path sealedTmp = file.resolveSibling(base + SEALED + TMP);
+		Path indexTmp = file.resolveSibling(base + INDEX + TMP);
+		AuditIndex.Builder builder = new AuditIndex.Builder();
+		try (OutputStream out = Files.newOutputStream(sealedTmp)) {
+			ByteArrayOutputStream block = new ByteArrayOutputStream(64 * 1024);
+			GZIPOutputStream[] gzip = { new GZIPOutputStream(block) };
+			int[] count = { 0 };
+			long[] offset = { 0 };
+			// Any partial last line, as left by a failure, is dropped.
+			scan(file, 0, 0, (line, ordinal) -> {
+				try {
+					AuditRecord record = AuditRecord.parse(line, null);
+					builder.add(record);
+				} catch (IllegalArgumentException e) {
+					builder.skip();
+				}
+				try {
+					gzip[0].write(line.getBytes(StandardCharsets.UTF_8));
+					gzip[0].write('\n');
+					if (++count[0] == BLOCK) {
+						offset[0] += flushBlock(gzip[0], block, out, builder, offset[0]);
+						gzip[0] = new GZIPOutputStream(block);
+						count[0] = 0;
+					}
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+				return true;
+			});
+			if (count[0] > 0) {
+				flushBlock(gzip[0], block, out, builder, offset[0]);
+			}
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+		builder.build().write(indexTmp);
+		Files.move(indexTmp, index, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		// The sealed segment is present only once complete.
+		Files.move(sealedTmp, sealed, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		Files.delete(file);
+	}
+
+	/**
+	 * Complete a compressed block.
+	 *
+	 * @return The length of the block.
+	 */
+	private static int flushBlock(GZIPOutputStream gzip, ByteArrayOutputStream block, OutputStream out,
+			AuditIndex.Builder builder, long offset) throws IOException {
+		gzip.finish();
+		int length = block.size();
+		block.writeTo(out);
+		block.reset();
+		builder.block(offset, length);
+		return length;
+	}
+
+	/**
+	 * Remove the segments before the given segment.
+	 *
+	 * @param directory The log directory.
+	 * @param name The base name of the segments.
+	 * @param keep The first segment to keep.
+	 * @throws IOException Removing failed.
+	 */
+	static void prune(Path directory, String name, long keep) throws IOException {
+		Pattern pattern = segmentPattern(name);
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+			for (Path p : stream) {
+				Matcher m = pattern.matcher(p.getFileName().toString());
+				if (m.matches() && Long.parseLong(m.group(1)) < keep) {
+					Files.deleteIfExists(p);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Get the segments of a log.
+	 *
+	 * @param directory The log directory.
+	 * @param pattern The pattern of the segment names.
+	 * @return The path of each segment, by segment number. (Sealed segments in preference to plain).
+	 * @throws IOException Listing the directory failed.
+	 */
+	private static NavigableMap<Long, Path> segments(Path directory, Pattern pattern) throws IOException {
+		NavigableMap<Long, Path> result = new TreeMap<>();
+		if (!Files.isDirectory(directory)) {
+			return result;
+		}
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+			for (Path p : stream) {
+				Matcher m = pattern.matcher(p.getFileName().toString());
+				if (m.matches() && !m.group(2).equals(INDEX)) {
+					long segment = Long.parseLong(m.group(1));
+					if (m.group(2).equals(SEALED) || !result.containsKey(segment)) {
+						result.put(segment, p);
+					}
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Get the segments of a log.
+	 *
+	 * @param directory The log directory.
+	 * @param name The base name of the segments.
+	 * @return The path of each segment, by segment number. (Sealed segments in preference to plain).
+	 * @throws IOException Listing the directory failed.
+	 */
+	static NavigableMap<Long, Path> segments(Path directory, String name) throws IOException {
+		return segments(directory, segmentPattern(name));
+	}
+
+	/**
+	 * Is the segment sealed?
+	 *
+	 * @param file The segment.
+	 * @return TRUE if sealed.
+	 */
+	static boolean isSealed(Path file) {
+		return file.getFileName().toString().endsWith(SEALED);
+	}
+
+	/**
+	 * Get the name of a segment, without suffix.
+	 *
+	 * @param name The base name of the segments.
+	 * @param segment The segment number.
+	 * @return The name of the segment.
+	 */
+	static String segmentName(String name, long segment) {
+		return String.format("%s.%06d", name, segment);
+	}
+
+	/**
+	 * Get the pattern of the file names of segments (and indexes).
+	 *
+	 * @param name The base name of the segments.
+	 * @return The pattern, with the segment number and suffix as groups.
+	 */
+	private static Pattern segmentPattern(String name) {
+		return Pattern.compile(Pattern.quote(name) + "\\.(\\d+)(" + Pattern.quote(SEGMENT) + "|"
+				+ Pattern.quote(SEALED) + "|" + Pattern.quote(INDEX) + ")");
+	}
+}
@@ -0,0 +1,125 @@
+/*-
+ * Halimede Certificate Manager Plugin for Eclipse 
+ * Copyright (C) 2017-2021 Darran Kartaschew 
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v2.0 which
+ * accompanies this distribution and is available at
+ *
+ * http://www.eclipse.org/legal/epl-v20.html
+ * 
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the Eclipse
+ * Public License, v. 2.0 are satisfied: GNU General Public License, version 2
+ * with the GNU Classpath Exception which is
+ * available at https://www.gnu.org/software/classpath/license.html.
+ */
+
+package net.sourceforge.dkartaschew.halimede.log;
+
+import java.nio.charset.StandardCharsets;
+import java.security.PublicKey;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import net.sourceforge.dkartaschew.halimede.util.MerkleTree;
+
+/**
+ * Proof that a record is held in the hash-chained activity log, unchanged.
+ * <p>
+ * The proof holds the line of the record, its audit path in the Merkle tree of its batch, the checkpoint of the batch,
+ * and the checkpoints following it up to the first signed checkpoint. It is verified against the public audit key
+ * alone, without the log: the path is at most log<sub>2</sub>({@value AuditChain#BATCH}) hashes, and at most
+ * {@value AuditChain#SIGN_BATCHES} checkpoints follow.
+ */
+public final class AuditProof {
+
+	private final String line;
+	private final AuditLog.Position position;
+	private final int index;
+	private final List<byte[]> path;
+	private final List<AuditCheckpoint> checkpoints;
+
+	/**
+	 * Create a new proof.
+	 *
+	 * @param line The line of the record.
+	 * @param position The position of the record.
+	 * @param index The index of the record in its batch.
+	 * @param path The audit path of the record in its batch, nearest the record first.
+	 * @param checkpoints The checkpoint of the batch, followed by those up to and including a signed checkpoint.
+	 */
+	AuditProof(String line, AuditLog.Position position, int index, List<byte[]> path,
+			List<AuditCheckpoint> checkpoints) {
+		this.line = line;
+		this.position = position;
+		this.index = index;
+		this.path = Collections.unmodifiableList(new ArrayList<>(path));
+		this.checkpoints = Collections.unmodifiableList(new ArrayList<>(checkpoints));
+	}
+
+	/**
+	 * Get the record proven.
+	 *
+	 * @return The record.
+	 * @throws IllegalArgumentException The line is not a valid record.
+	 */
+	public AuditRecord getRecord() {
+		return AuditRecord.parse(line, position);
+	}
+
+	/**
+	 * Get the line of the record proven.
+	 *
+	 * @return The line.
+	 */
+	public String getLine() {
+		return line;
+	}
+
+	/**
+	 * Get the audit path of the record in its batch.
+	 *
+	 * @return The audit path, nearest the record first.
+	 */
+	public List<byte[]> getPath() {
+		return path;
+	}
+
+	/**
+	 * Get the checkpoints of the proof.
+	 *
+	 * @return The checkpoint of the batch of the record, followed by those up to and including the signed checkpoint.
+	 */
+	public List<AuditCheckpoint> getCheckpoints() {
+		return checkpoints;
+	}
+
+	/**
+	 * Verify the proof.
+	 *
+	 * @param key The public audit key of the log. (A copy kept apart from the log; see {@link AuditLog#getAuditKey()}).
+	 * @return TRUE if the record is included in a batch, chained to a checkpoint signed by the key.
+	 */
+	public boolean verify(PublicKey key) {
+		if (checkpoints.isEmpty()) {
+			return false;
+		}
+		MerkleTree tree = new MerkleTree();
+		AuditCheckpoint checkpoint = checkpoints.get(0);
+		byte[] leaf = tree.leaf(line.getBytes(StandardCharsets.UTF_8));
+		if (!checkpoint.isChained(tree)
+				|| !tree.verify(leaf, index, checkpoint.getRecords(), path, checkpoint.getRoot())) {
+			return false;
+		}
+		for (int i = 1; i < checkpoints.size(); i++) {
+			AuditCheckpoint next = checkpoints.get(i);
+			if (!next.follows(checkpoint) || !next.isChained(tree)) {
+				return false;
+			}
+			checkpoint = next;
+		}
+		return checkpoint.verify(key);
+	}
+}
@@ -0,0 +1,217 @@
+/*-
+ * Halimede Certificate Manager Plugin for Eclipse 
+ * Copyright (C) 2017-2021 Darran Kartaschew 
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v2.0 which
+ * accompanies this distribution and is available at
+ *
+ * http://www.eclipse.org/legal/epl-v20.html
+ * 
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the Eclipse
+ * Public License, v. 2.0 are satisfied: GNU General Public License, version 2
+ * with the GNU Classpath Exception which is
+ * available at https://www.gnu.org/software/classpath/license.html.
+ */
+
+package net.sourceforge.dkartaschew.halimede.log;
+
+import java.util.Locale;
+import java.util.logging.Level;
+
+/**
+ * Query of the structured activity log. All criteria are optional; a record must match all those set.
+ */
+public class AuditQuery {
+
+	/**
+	 * The earliest time (inclusive), or NULL.
+	 */
+	private Long from;
+	/**
+	 * The latest time (exclusive), or NULL.
+	 */
+	private Long to;
+	/**
+	 * The minimum level, or NULL.
+	 */
+	private Level level;
+	/**
+	 * The certificate serial, or NULL.
+	 */
+	private String serial;
+	/**
+	 * The folded subject text, or NULL.
+	 */
+	private String subject;
+	/**
+	 * The folded message text, or NULL.
+	 */
+	private String text;
+
+	/**
+	 * Get the earliest time.
+	 *
+	 * @return The earliest time (inclusive) in milliseconds since the epoch, or NULL if none.
+	 */
+	public Long getFrom() {
+		return from;
+	}
+
+	/**
+	 * Set the earliest time.
+	 *
+	 * @param from The earliest time (inclusive) in milliseconds since the epoch, or NULL if none.
+	 */
+	public void setFrom(Long from) {
+		this.from = from;
+	}
+
+	/**
+	 * Get the latest time.
+	 *
+	 * @return The latest time (exclusive) in milliseconds since the epoch, or NULL if none.
+	 */
+	public Long getTo() {
+		return to;
+	}
+
+	/**
+	 * Set the latest time.
+	 *
+	 * @param to The latest time (exclusive) in milliseconds since the epoch, or NULL if none.
+	 */
+	public void setTo(Long to) {
+		this.to = to;
+	}
+
+	/**
+	 * Get the minimum level.
+	 *
+	 * @return The minimum level, or NULL if none.
+	 */
+	public Level getLevel() {
+		return level;
+	}
+
+	/**
+	 * Set the minimum level.
+	 *
+	 * @param level The minimum level, or NULL if none.
+	 */
+	public void setLevel(Level level) {
+		this.level = level;
+	}
+
+	/**
+	 * Get the certificate serial.
+	 *
+	 * @return The serial, or NULL if none.
+	 */
+	public String getSerial() {
+		return serial;
+	}
+
+	/**
+	 * Set the certificate serial.
+	 *
+	 * @param serial The serial to match exactly, or NULL (or empty) if none.
+	 */
+	public void setSerial(String serial) {
+		this.serial = serial == null || serial.trim().isEmpty() ? null : serial.trim();
+	}
+
+	/**
+	 * Get the subject text.
+	 *
+	 * @return The (folded) subject text, or NULL if none.
+	 */
+	public String getSubject() {
+		return subject;
+	}
+
+	/**
+	 * Set the subject text.
+	 *
+	 * @param subject The text the certificate subject contains (ignoring case), or NULL (or empty) if none.
+	 */
+	public void setSubject(String subject) {
+		this.subject = fold(subject);
+	}
+
+	/**
+	 * Get the message text.
+	 *
+	 * @return The (folded) message text, or NULL if none.
+	 */
+	public String getText() {
+		return text;
+	}
+
+	/**
+	 * Set the message text.
+	 *
+	 * @param text The text the message contains (ignoring case), or NULL (or empty) if none.
+	 */
+	public void setText(String text) {
+		this.text = fold(text);
+	}
+
+	/**
+	 * Does the record match the time range?
+	 *
+	 * @param first The first time of a range of records.
+	 * @param last The last time of a range of records.
+	 * @return FALSE if no record in the range can match.
+	 */
+	boolean overlaps(long first, long last) {
+		return (from == null || last >= from) && (to == null || first < to);
+	}
+
+	/**
+	 * Does the subject match?
+	 *
+	 * @param value The subject. (May be NULL).
+	 * @return TRUE if matched.
+	 */
+	boolean matchesSubject(String value) {
+		return subject == null || (value != null && fold(value).contains(subject));
+	}
+
+	/**
+	 * Does the record match the query?
+	 *
+	 * @param record The record.
+	 * @return TRUE if matched.
+	 */
+	public boolean matches(AuditRecord record) {
+		long millis = record.getMillis();
+		if ((from != null && millis < from) || (to != null && millis >= to)) {
+			return false;
+		}
+		if (level != null && record.getLevel().intValue() < level.intValue()) {
+			return false;
+		}
+		if (serial != null && !serial.equalsIgnoreCase(record.getSerial())) {
+			return false;
+		}
+		if (!matchesSubject(record.getSubject())) {
+			return false;
+		}
+		return text == null || (record.getMessage() != null && fold(record.getMessage()).contains(text));
+	}
+
+	/**
+	 * Fold the case of the text.
+	 *
+	 * @param value The text.
+	 * @return The folded text, or NULL if NULL or empty.
+	 */
+	static String fold(String value) {
+		if (value == null || value.trim().isEmpty()) {
+			return null;
+		}
+		return value.trim().toLowerCase(Locale.ROOT);
+	}
+}
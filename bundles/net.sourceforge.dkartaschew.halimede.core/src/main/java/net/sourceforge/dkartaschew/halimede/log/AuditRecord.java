@@ -0,0 +1,423 @@
+/*-
+ * Halimede Certificate Manager Plugin for Eclipse 
+ * Copyright (C) 2017-2021 Darran Kartaschew 
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v2.0 which
+ * accompanies this distribution and is available at
+ *
+ * http://www.eclipse.org/legal/epl-v20.html
+ * 
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the Eclipse
+ * Public License, v. 2.0 are satisfied: GNU General Public License, version 2
+ * with the GNU Classpath Exception which is
+ * available at https://www.gnu.org/software/classpath/license.html.
+ */
+
+package net.sourceforge.dkartaschew.halimede.log;
+
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.logging.Level;
+
+/**
+ * A record of the structured (JSON lines) activity log.
+ * <p>
+ * Each record is held on a single line as a flat JSON object, with the fields {@value #TIME} (ISO 8601, UTC),
+ * {@value #LEVEL}, {@value #MESSAGE}, and optionally {@value #SUBJECT} and {@value #SERIAL} of the certificate the
+ * record relates to.
+ */
+public final class AuditRecord {
+
+	/**
+	 * Field name of the timestamp.
+	 */
+	public static final String TIME = "time";
+	/**
+	 * Field name of the level.
+	 */
+	public static final String LEVEL = "level";
+	/**
+	 * Field name of the message.
+	 */
+	public static final String MESSAGE = "message";
+	/**
+	 * Field name of the certificate subject.
+	 */
+	public static final String SUBJECT = "subject";
+	/**
+	 * Field name of the certificate serial.
+	 */
+	public static final String SERIAL = "serial";
+
+	/**
+	 * Hex digits.
+	 */
+	private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+	private final long millis;
+	private final Level level;
+	private final String message;
+	private final String subject;
+	private final String serial;
+	private final AuditLog.Position position;
+
+	/**
+	 * Create a new record.
+	 *
+	 * @param millis The time in milliseconds since the epoch.
+	 * @param level The level.
+	 * @param message The (formatted) message.
+	 * @param subject The certificate subject. (May be NULL).
+	 * @param serial The certificate serial. (May be NULL).
+	 * @param position The position in the log. (May be NULL).
+	 */
+	public AuditRecord(long millis, Level level, String message, String subject, String serial,
+			AuditLog.Position position) {
+		this.millis = millis;
+		this.level = level;
+		this.message = message;
+		this.subject = subject;
+		this.serial = serial;
+		this.position = position;
+	}
+
+	/**
+	 * Get the time.
+	 *
+	 * @return The time in milliseconds since the epoch.
+	 */
+	public long getMillis() {
+		return millis;
+	}
+
+	/**
+	 * Get the level.
+	 *
+	 * @return The level.
+	 */
+	public Level getLevel() {
+		return level;
+	}
+
+	/**
+	 * Get the message.
+	 *
+	 * @return The message.
+	 */
+	public String getMessage() {
+		return message;
+	}
+
+	/**
+	 * Get the subject of the certificate the record relates to.
+	 *
+	 * @return The subject, or NULL if none.
+	 */
+	public String getSubject() {
+		return subject;
+	}
+
+	/**
+	 * Get the serial of the certificate the record relates to.
+	 *
+	 * @return The serial, or NULL if none.
+	 */
+	public String getSerial() {
+		return serial;
+	}
+
+	/**
+	 * Get the position of the record in the log.
+	 *
+	 * @return The position, or NULL if not read from a log.
+	 */
+	public AuditLog.Position getPosition() {
+		return position;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+		append(sb, Instant.ofEpochMilli(millis).toString(), level.getName(), message, subject, serial);
+		return sb.toString();
+	}
+
+	/**
+	 * Append a record as a JSON object (without line separator).
+	 *
+	 * @param sb The buffer to append to.
+	 * @param time The ISO 8601 timestamp.
+	 * @param level The level name.
+	 * @param message The message.
+	 * @param subject The certificate subject. (May be NULL).
+	 * @param serial The certificate serial. (May be NULL).
+	 */
+	static void append(StringBuilder sb, String time, String level, String message, String subject, String serial) {
+		sb.append("{\"").append(TIME).append("\":");
+		quote(sb, time);
+		sb.append(",\"").append(LEVEL).append("\":");
+		quote(sb, level);
+		sb.append(",\"").append(MESSAGE).append("\":");
+		quote(sb, message);
+		if (subject != null) {
+			sb.append(",\"").append(SUBJECT).append("\":");
+			quote(sb, subject);
+		}
+		if (serial != null) {
+			sb.append(",\"").append(SERIAL).append("\":");
+			quote(sb, serial);
+		}
+		sb.append('}');
+	}
+
+	/**
+	 * Append the value as a JSON string.
+	 *
+	 * @param sb The buffer to append to.
+	 * @param value The value. (NULL is appended as the empty string).
+	 */
+	static void quote(StringBuilder sb, String value) {
+		sb.append('"');
+		if (value != null) {
+			for (int i = 0; i < value.length(); i++) {
+				char c = value.charAt(i);
+				switch (c) {
+				case '"':
+					sb.append("\\\"");
+					break;
+				case '\\':
+					sb.append("\\\\");
+					break;
+				case '\n':
+					sb.append("\\n");
+					break;
+				case '\r':
+					sb.append("\\r");
+					break;
+				case '\t':
+					sb.append("\\t");
+					break;
+				default:
+					if (c < 0x20 || c == 0x2028 || c == 0x2029) {
+						// Control characters, and line and paragraph separators.
+						sb.append("\\u").append(HEX[(c >> 12) & 0xf]).append(HEX[(c >> 8) & 0xf])
+								.append(HEX[(c >> 4) & 0xf]).append(HEX[c & 0xf]);
+					} else {
+						sb.append(c);
+					}
+				}
+			}
+		}
+		sb.append('"');
+	}
+
+	/**
+	 * Parse a record from a line of the log.
+	 *
+	 * @param line The line.
+	 * @param position The position of the line in the log. (May be NULL).
+	 * @return The record.
+	 * @throws IllegalArgumentException The line is not a valid record.
+	 */
+	public static AuditRecord parse(String line, AuditLog.Position position) {
+		String time = null;
+		String level = null;
+		String message = null;
+		String subject = null;
+		String serial = null;
+		int[] pos = { skip(line, 0) };
+		expect(line, pos, '{');
+		if (peek(line, pos) != '}') {
+			for (;;) {
+				String name = string(line, pos);
+				expect(line, pos, ':');
+				String value = string(line, pos);
+				switch (name) {
+				case TIME:
+					time = value;
+					break;
+				case LEVEL:
+					level = value;
+					break;
+				case MESSAGE:
+					message = value;
+					break;
+				case SUBJECT:
+					subject = value;
+					break;
+				case SERIAL:
+					serial = value;
+					break;
+				default:
+					// Ignore unknown fields.
+				}
+				if (peek(line, pos) == ',') {
+					pos[0]++;
+					continue;
+				}
+				break;
+			}
+		}
+		expect(line, pos, '}');
+		if (time == null || level == null) {
+			throw new IllegalArgumentException("Record missing time or level");
+		}
+		try {
+			return new AuditRecord(Instant.parse(time).toEpochMilli(), Level.parse(level), message, subject, serial,
+					position);
+		} catch (DateTimeParseException e) {
+			throw new IllegalArgumentException("Record time is not valid", e);
+		}
+	}
+
+	/**
+	 * Parse the fields of a line of the log.
+	 *
+	 * @param line The line.
+	 * @return The field values, by name.
+	 * @throws IllegalArgumentException The line is not a flat JSON object of string values.
+	 */
+	static Map<String, String> fields(String line) {
+		Map<String, String> fields = new HashMap<>();
+		int[] pos = { skip(line, 0) };
+		expect(line, pos, '{');
+		if (peek(line, pos) != '}') {
+			for (;;) {
+				String name = string(line, pos);
+				expect(line, pos, ':');
+				fields.put(name, string(line, pos));
+				if (peek(line, pos) == ',') {
+					pos[0]++;
+					continue;
+				}
+				break;
+			}
+		}
+		expect(line, pos, '}');
+		return fields;
+	}
+
+	/**
+	 * Skip whitespace.
+	 *
+	 * @param s The string.
+	 * @param i The index.
+	 * @return The index of the next non whitespace character.
+	 */
+	private static int skip(String s, int i) {
+		while (i < s.length() && Character.isWhitespace(s.charAt(i))) {
+			i++;
+		}
+		return i;
+	}
+
+	/**
+	 * Get the next non whitespace character.
+	 *
+	 * @param s The string.
+	 * @param pos The position, updated to that of the character.
+	 * @return The character.
+	 * @throws IllegalArgumentException At the end of the string.
+	 */
+	private static char peek(String s, int[] pos) {
+		pos[0] = skip(s, pos[0]);
+		if (pos[0] >= s.length()) {
+			throw new IllegalArgumentException("Unexpected end of record");
+		}
+		return s.charAt(pos[0]);
+	}
+
+	/**
+	 * Consume the expected character.
+	 *
+	 * @param s The string.
+	 * @param pos The position.
+	 * @param c The expected character.
+	 * @throws IllegalArgumentException If not the expected character.
+	 */
+	private static void expect(String s, int[] pos, char c) {
+		if (peek(s, pos) != c) {
+			throw new IllegalArgumentException("Expected '" + c + "' at " + pos[0]);
+		}
+		pos[0]++;
+	}
+
+	/**
+	 * Consume a JSON string, or scalar value.
+	 *
+	 * @param s The string.
+	 * @param pos The position.
+	 * @return The value. (NULL for a JSON null).
+	 * @throws IllegalArgumentException If not a valid value.
+	 */
+	private static String string(String s, int[] pos) {
+		if (peek(s, pos) != '"') {
+			// Numbers, booleans and null.
+			int start = pos[0];
+			while (pos[0] < s.length() && ",}: \t".indexOf(s.charAt(pos[0])) < 0) {
+				pos[0]++;
+			}
+			String value = s.substring(start, pos[0]);
+			if (value.isEmpty() || value.charAt(0) == '{' || value.charAt(0) == '[') {
+				throw new IllegalArgumentException("Unsupported value at " + start);
+			}
+			return value.equals("null") ? null : value;
+		}
+		StringBuilder sb = new StringBuilder();
+		int i = pos[0] + 1;
+		for (;;) {
+			if (i >= s.length()) {
+				throw new IllegalArgumentException("Unterminated string");
+			}
+			char c = s.charAt(i++);
+			if (c == '"') {
+				break;
+			}
+			if (c != '\\') {
+				sb.append(c);
+				continue;
+			}
+			if (i >= s.length()) {
+				throw new IllegalArgumentException("Unterminated string");
+			}
+			c = s.charAt(i++);
+			switch (c) {
+			case 'n':
+				sb.append('\n');
+				break;
+			case 'r':
+				sb.append('\r');
+				break;
+			case 't':
+				sb.append('\t');
+				break;
+			case 'b':
+				sb.append('\b');
+				break;
+			case 'f':
+				sb.append('\f');
+				break;
+			case 'u':
+				if (i + 4 > s.length()) {
+					throw new IllegalArgumentException("Invalid escape");
+				}
+				try {
+					sb.append((char) Integer.parseInt(s.substring(i, i + 4), 16));
+				} catch (NumberFormatException e) {
+					throw new IllegalArgumentException("Invalid escape", e);
+				}
+				i += 4;
+				break;
+			default:
+				// Quote, backslash and solidus.
+				sb.append(c);
+			}
+		}
+		pos[0] = i;
+		return sb.toString();
+	}
+}
@@ -0,0 +1,400 @@
+/*-
+ * Halimede Certificate Manager Plugin for Eclipse 
+ * Copyright (C) 2017-2021 Darran Kartaschew 
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v2.0 which
+ * accompanies this distribution and is available at
+ *
+ * http://www.eclipse.org/legal/epl-v20.html
+ * 
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the Eclipse
+ * Public License, v. 2.0 are satisfied: GNU General Public License, version 2
+ * with the GNU Classpath Exception which is
+ * available at https://www.gnu.org/software/classpath/license.html.
+ */
+
+package net.sourceforge.dkartaschew.halimede.log;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.PublicKey;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Objects;
+
+import net.sourceforge.dkartaschew.halimede.util.MerkleTree;
+
+/**
+ * Verifier of the hash-chained (tamper evident) activity log.
+ * <p>
+ * The whole log is verified in one streaming pass, holding only the leaf hashes of one batch: every batch of records
+ * must match the Merkle tree root of its checkpoint, every checkpoint must follow on from the previous one, and every
+ * signature must be made by the audit key. Records changed, inserted or removed before the last signed checkpoint are
+ * detected; records following it are only chained. Records before the first checkpoint (written before the log was
+ * chained, or in a batch whose earlier segments have been removed) cannot be verified, and are counted as such.
+ * <p>
+ * A single record may be proven with an {@link AuditProof}, which is verified without the log.
+ */
+public class AuditVerifier {
+
+	/**
+	 * The result of verifying a log.
+	 */
+	public static final class Result {
+		private long records;
+		private long batches;
+		private long signatures;
+		private long unverified;
+		private long pending;
+		private long unsigned;
+		private boolean complete;
+		private AuditCheckpoint last;
+		private AuditCheckpoint lastSigned;
+		private String error;
+		private AuditLog.Position errorPosition;
+
+		private Result() {
+		}
+
+		/**
+		 * Is the log valid?
+		 *
+		 * @return TRUE if no tampering was detected.
+		 */
+		public boolean isValid() {
+			return error == null;
+		}
+
+		/**
+		 * Get the reason the log is not valid.
+		 *
+		 * @return The reason, or NULL if valid.
+		 */
+		public String getError() {
+			return error;
+		}
+
+		/**
+		 * Get the position of the line at which the log was found not valid.
+		 *
+		 * @return The position, or NULL if valid (or not at a line).
+		 */
+		public AuditLog.Position getErrorPosition() {
+			return errorPosition;
+		}
+
+		/**
+		 * Get the number of records verified, in closed batches.
+		 *
+		 * @return The number of records.
+		 */
+		public long getRecords() {
+			return records;
+		}
+
+		/**
+		 * Get the number of checkpoints verified.
+		 *
+		 * @return The number of checkpoints.
+		 */
+		public long getBatches() {
+			return batches;
+		}
+
+		/**
+		 * Get the number of checkpoint signatures verified.
+		 *
+		 * @return The number of signatures.
+		 */
+		public long getSignatures() {
+			return signatures;
+		}
+
+		/**
+		 * Get the number of records before the first checkpoint, which cannot be verified.
+		 *
+		 * @return The number of records.
+		 */
+		public long getUnverified() {
+			return unverified;
+		}
+
+		/**
+		 * Get the number of records following the last checkpoint, in a batch not yet closed.
+		 *
+		 * @return The number of records.
+		 */
+		public long getPending() {
+			return pending;
+		}
+
+		/**
+		 * Get the number of checkpoints following the last signed checkpoint.
+		 *
+		 * @return The number of checkpoints.
+		 */
+		public long getUnsigned() {
+			return unsigned;
+		}
+
+		/**
+		 * Does the chain start at the first checkpoint of the log? (Otherwise earlier segments have been removed).
+		 *
+		 * @return TRUE if the whole chain is present.
+		 */
+		public boolean isComplete() {
+			return complete;
+		}
+
+		/**
+		 * Get the last checkpoint.
+		 *
+		 * @return The last checkpoint, or NULL if none.
+		 */
+		public AuditCheckpoint getLast() {
+			return last;
+		}
+
+		/**
+		 * Get the last signed checkpoint. (Comparing its chain hash to one recorded earlier detects removal of the end
+		 * of the log).
+		 *
+		 * @return The last signed checkpoint, or NULL if none.
+		 */
+		public AuditCheckpoint getLastSigned() {
+			return lastSigned;
+		}
+
+		/**
+		 * Record the log as not valid.
+		 *
+		 * @return FALSE, to stop reading.
+		 */
+		private boolean fail(String reason, AuditLog.Position position) {
+			error = reason;
+			errorPosition = position;
+			return false;
+		}
+	}
+
+	/**
+	 * The log.
+	 */
+	private final AuditLog log;
+	/**
+	 * The public audit key. (May be NULL).
+	 */
+	private final PublicKey key;
+
+	/**
+	 * Create a new verifier.
+	 *
+	 * @param log The log.
+	 * @param key The public audit key of the log, or NULL to verify the chain only (any signature then fails). The key
+	 *            must be a copy exported and kept apart from the log, not read from alongside it; see
+	 *            {@link AuditLog#getAuditKey()}.
+	 */
+	public AuditVerifier(AuditLog log, PublicKey key) {
+		this.log = Objects.requireNonNull(log, "Log is not valid");
+		this.key = key;
+	}
+
+	/**
+	 * Verify the whole log.
+	 *
+	 * @return The result.
+	 * @throws IOException Reading the log failed.
+	 */
+	public Result verify() throws IOException {
+		Result result = new Result();
+		MerkleTree tree = new MerkleTree();
+		List<byte[]> leaves = new ArrayList<>(AuditChain.BATCH);
+		Long previous = null;
+		for (Map.Entry<Long, Path> e : log.getSegments().entrySet()) {
+			long segment = e.getKey();
+			if (previous != null && segment != previous + 1) {
+				result.fail("Log segment " + (previous + 1) + " is missing", null);
+				return result;
+			}
+			previous = segment;
+			log.read(segment, e.getValue(), (line, ordinal) -> {
+				if (!AuditCheckpoint.isCheckpoint(line)) {
+					leaves.add(tree.leaf(line.getBytes(StandardCharsets.UTF_8)));
+					return true;
+				}
+				AuditLog.Position position = new AuditLog.Position(segment, ordinal);
+				AuditCheckpoint checkpoint;
+				try {
+					checkpoint = AuditCheckpoint.parse(line, position);
+				} catch (IllegalArgumentException ex) {
+					return result.fail("Checkpoint is not valid", position);
+				}
+				if (!checkpoint.isChained(tree)) {
+					return result.fail("Checkpoint chain hash is not valid", position);
+				}
+				if (result.last == null) {
+					// The start of the chain, or of the segments held.
+					result.complete = checkpoint.getBatch() == 0;
+					if (result.complete && (checkpoint.getRecords() != 0
+							|| !MessageDigest.isEqual(checkpoint.getPrevious(), new byte[MerkleTree.HASH]))) {
+						return result.fail("First checkpoint is not valid", position);
+					}
+					result.unverified = leaves.size();
+				} else {
+					if (!checkpoint.follows(result.last)) {
+						return result.fail("Checkpoint does not follow the previous checkpoint", position);
+					}
+					if (checkpoint.getRecords() != leaves.size()) {
+						return result.fail("Batch has " + leaves.size() + " records, expected "
+								+ checkpoint.getRecords(), position);
+					}
+					if (!MessageDigest.isEqual(tree.root(leaves), checkpoint.getRoot())) {
+						return result.fail("Batch records do not match the checkpoint", position);
+					}
+					result.records += leaves.size();
+				}
+				if (checkpoint.isSigned()) {
+					if (!checkpoint.verify(key)) {
+						return result.fail("Checkpoint signature is not valid", position);
+					}
+					result.signatures++;
+					result.lastSigned = checkpoint;
+					result.unsigned = 0;
+				} else {
+					result.unsigned++;
+				}
+				result.batches++;
+				result.last = checkpoint;
+				leaves.clear();
+				return true;
+			});
+			if (!result.isValid()) {
+				return result;
+			}
+		}
+		if (result.last == null) {
+			result.unverified = leaves.size();
+		} else {
+			result.pending = leaves.size();
+		}
+		return result;
+	}
+
+	/**
+	 * Prove a record is held in the log.
+	 *
+	 * @param position The position of the record.
+	 * @return The proof, or NULL if the position is not of a record in a batch followed by a signed checkpoint.
+	 * @throws IOException Reading the log failed, or the log is not valid.
+	 */
+	public AuditProof prove(AuditLog.Position position) throws IOException {
+		NavigableMap<Long, Path> segments = log.getSegments();
+		if (!segments.containsKey(position.getSegment())) {
+			return null;
+		}
+		// Find the segment holding the start of the batch (the checkpoint preceding the record).
+		long start = position.getSegment();
+		for (;;) {
+			long end = start == position.getSegment() ? position.getOrdinal() : Long.MAX_VALUE;
+			boolean[] found = { false };
+			log.read(start, segments.get(start), (line, ordinal) -> {
+				if (ordinal >= end) {
+					return false;
+				}
+				found[0] |= AuditCheckpoint.isCheckpoint(line);
+				return true;
+			});
+			if (found[0] || !segments.containsKey(start - 1)) {
+				break;
+			}
+			start--;
+		}
+		Prover prover = new Prover(position);
+		for (Map.Entry<Long, Path> e : segments.tailMap(start, true).entrySet()) {
+			log.read(e.getKey(), e.getValue(), (line, ordinal) -> prover.visit(line, e.getKey(), ordinal));
+			if (prover.done) {
+				break;
+			}
+		}
+		if (prover.error != null) {
+			throw new IOException(prover.error);
+		}
+		if (!prover.done || prover.line == null) {
+			return null;
+		}
+		return new AuditProof(prover.line, position, prover.index, prover.path, prover.checkpoints);
+	}
+
+	/**
+	 * Builder of a proof, visiting the lines from the start of the batch of the record.
+	 */
+	private static final class Prover {
+		private final MerkleTree tree = new MerkleTree();
+		private final List<byte[]> leaves = new ArrayList<>(AuditChain.BATCH);
+		private final List<AuditCheckpoint> checkpoints = new ArrayList<>();
+		private final AuditLog.Position target;
+		private String line;
+		private int index;
+		private List<byte[]> path;
+		private boolean done;
+		private String error;
+
+		Prover(AuditLog.Position target) {
+			this.target = target;
+		}
+
+		/**
+		 * Visit a line.
+		 *
+		 * @return FALSE once done.
+		 */
+		boolean visit(String text, long segment, long ordinal) {
+			boolean checkpoint = AuditCheckpoint.isCheckpoint(text);
+			if (segment == target.getSegment() && ordinal == target.getOrdinal()) {
+				if (checkpoint) {
+					done = true;
+					return false;
+				}
+				line = text;
+				index = leaves.size();
+			}
+			if (!checkpoint) {
+				if (path == null) {
+					leaves.add(tree.leaf(text.getBytes(StandardCharsets.UTF_8)));
+				}
+				return true;
+			}
+			AuditCheckpoint c;
+			try {
+				c = AuditCheckpoint.parse(text, new AuditLog.Position(segment, ordinal));
+			} catch (IllegalArgumentException e) {
+				error = "Checkpoint is not valid at " + segment + ":" + ordinal;
+				return false;
+			}
+			if (line == null) {
+				// Before the record; the next batch starts.
+				leaves.clear();
+				return true;
+			}
+			if (path == null) {
+				if (c.getRecords() != leaves.size()) {
+					// The start of the batch is not held.
+					done = true;
+					line = null;
+					return false;
+				}
+				path = tree.path(leaves, index);
+				leaves.clear();
+			}
+			checkpoints.add(c);
+			done = c.isSigned();
+			return !done;
+		}
+	}
+}
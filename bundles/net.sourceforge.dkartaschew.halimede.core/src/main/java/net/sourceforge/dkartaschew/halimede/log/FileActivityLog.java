@@ -32,6 +32,7 @@ import java.util.logging.Logger;
 
 import net.sourceforge.dkartaschew.halimede.PluginDefaults;
 import net.sourceforge.dkartaschew.halimede.data.CertificateAuthority;
+import net.sourceforge.dkartaschew.halimede.data.store.FileSystemDatastore;
 
 /**
  * Activity Logger that logs to a file in the CA /log folder.
@@ -88,6 +89,9 @@ public class FileActivityLog implements IActivityLogger {
 
 		UUID id = ca.getCertificateAuthorityID();
 
+		if (!(ca.getDatastore() instanceof FileSystemDatastore)) {
+			throw new IOException("File logging requires a filesystem datastore");
+		}
 		Path baseLocation = ca.getBasePath().resolve(CertificateAuthority.LOG_PATH);
 		String logFile = baseLocation.toString() + File.separator + id.toString() + ".%g.log";
 
@@ -20,6 +20,7 @@ package net.sourceforge.dkartaschew.halimede.log;
 import java.beans.PropertyChangeListener;
 import java.io.IOException;
 import java.util.logging.Level;
+import java.util.logging.Logger;
 
 import net.sourceforge.dkartaschew.halimede.data.CertificateAuthority;
 
@@ -38,10 +39,12 @@ public interface IActivityLogger extends PropertyChangeListener {
 	 */
 	public static IActivityLogger createLogger(CertificateAuthority ca) {
 		try {
-			IActivityLogger logger = new FileActivityLog(ca);
+			IActivityLogger logger = AsyncActivityLog.isAsync() ? new AsyncActivityLog(ca) : new FileActivityLog(ca);
 			ca.addPropertyChangeListener(logger);
 			return logger;
 		} catch (IOException | SecurityException e) {
+			Logger.getLogger(IActivityLogger.class.getName()).log(Level.SEVERE,
+					"Unable to open the activity log of " + ca.getCertificateAuthorityID(), e);
 			// Reset to console logger!
 			IActivityLogger logger = new ConsoleActivityLog(ca);
 			ca.addPropertyChangeListener(logger);
@@ -81,4 +84,20 @@ public interface IActivityLogger extends PropertyChangeListener {
 	 */
 	public void log(Level level, String msg, Object params[]);
 
+	/**
+	 * Log a message relating to a certificate, with an array of object arguments.
+	 * <p>
+	 * Structured logs record the subject and serial of the certificate as separate fields, so the log may be queried
+	 * by certificate. Other logs log the message only.
+	 *
+	 * @param level One of the message level identifiers, e.g., SEVERE
+	 * @param msg The string message (or a key in the message catalog)
+	 * @param subject The subject of the certificate
+	 * @param serial The serial of the certificate
+	 * @param params array of parameters to the message
+	 */
+	public default void logCertificate(Level level, String msg, String subject, String serial, Object params[]) {
+		log(level, msg, params);
+	}
+
 }
@@ -0,0 +1,52 @@
+/*-
+ * Halimede Certificate Manager Plugin for Eclipse 
+ * Copyright (C) 2017-2021 Darran Kartaschew 
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v2.0 which
+ * accompanies this distribution and is available at
+ *
+ * http://www.eclipse.org/legal/epl-v20.html
+ * 
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the Eclipse
+ * Public License, v. 2.0 are satisfied: GNU General Public License, version 2
+ * with the GNU Classpath Exception which is
+ * available at https://www.gnu.org/software/classpath/license.html.
+ */
+
+package net.sourceforge.dkartaschew.halimede.log;
+
+/**
+ * The format of the activity log files.
+ */
+public enum LogFormat {
+
+	/**
+	 * Plain text lines, as written by {@link FileActivityLog}. Files are rolled over as numbered generations.
+	 */
+	TEXT,
+
+	/**
+	 * Structured JSON lines, as read by {@link AuditLog}. Full segments are sealed, being compressed and indexed.
+	 */
+	JSON;
+
+	/**
+	 * Get the format of the given name.
+	 *
+	 * @param name The name (ignoring case).
+	 * @param defaultFormat The format to use if the name is not valid.
+	 * @return The format.
+	 */
+	public static LogFormat forName(String name, LogFormat defaultFormat) {
+		if (name != null) {
+			for (LogFormat f : values()) {
+				if (f.name().equalsIgnoreCase(name.trim())) {
+					return f;
+				}
+			}
+		}
+		return defaultFormat;
+	}
+}
@@ -0,0 +1,938 @@
+/*-
+ * Halimede Certificate Manager Plugin for Eclipse 
+ * Copyright (C) 2017-2021 Darran Kartaschew 
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v2.0 which
+ * accompanies this distribution and is available at
+ *
+ * http://www.eclipse.org/legal/epl-v20.html
+ * 
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the Eclipse
+ * Public License, v. 2.0 are satisfied: GNU General Public License, version 2
+ * with the GNU Classpath Exception which is
+ * available at https://www.gnu.org/software/classpath/license.html.
+ */
+
+package net.sourceforge.dkartaschew.halimede.log;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.text.MessageFormat;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Single writer thread for asynchronous activity logs.
+ * <p>
+ * Records are queued by the logging threads into a bounded ring buffer, and formatted and written by this thread in
+ * batches, one write per log file per batch. If the buffer is full, the logging thread waits for space; records are
+ * never dropped.
+ * <p>
+ * If writing a log file fails, its records are retained and written again with the next batch, or after
+ * {@link #RETRY} if there is none. Once {@link #RETAIN} characters are retained, no more records are taken from the
+ * buffer until the file is written, so the logging threads wait for space as for a full buffer.
+ * <p>
+ * Full segments of JSON log files are sealed by a separate (shared) thread, so compressing and indexing a segment
+ * doesn't delay the records following it.
+ */
+final class LogWriter implements Runnable {
+
+	/**
+	 * Default timezone.
+	 */
+	private final static ZoneId ZONE = ZoneId.of("UTC");
+	/**
+	 * Timestamp format. (As for the {@link FileActivityLog} template).
+	 */
+	private final static DateTimeFormatter TIMESTAMP = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss")
+			.withZone(ZONE);
+	/**
+	 * The line separator.
+	 */
+	private final static String EOL = System.lineSeparator();
+	/**
+	 * The maximum number of records written in a batch.
+	 */
+	private final static int BATCH = 1024;
+	/**
+	 * The number of spins by a logging thread waiting on a full buffer, before parking.
+	 */
+	private final static int SPINS = 100;
+	/**
+	 * The time a logging thread parks waiting on a full buffer.
+	 */
+	private final static long BACKOFF = TimeUnit.MICROSECONDS.toNanos(50);
+	/**
+	 * The time the writer parks when idle.
+	 */
+	private final static long IDLE = TimeUnit.SECONDS.toNanos(1);
+	/**
+	 * The time before writing a log file is retried after a failure.
+	 */
+	private final static long RETRY = TimeUnit.SECONDS.toNanos(1);
+	/**
+	 * The number of characters retained by a log file that failed to write, before records are no longer taken.
+	 */
+	final static int RETAIN = 1 << 20;
+	/**
+	 * The number of log file generations kept.
+	 */
+	final static int COUNT = 1000;
+	/**
+	 * The maximum number of log files open for the same name.
+	 */
+	private final static int UNIQUE = 100;
+	/**
+	 * The maximum number of parsed messages cached.
+	 */
+	private final static int FORMATS = 256;
+	/**
+	 * The time in seconds the sealer thread is kept while idle.
+	 */
+	private final static long KEEP_ALIVE = 60;
+
+	/**
+	 * Reports failures to write the log files.
+	 */
+	private final static Logger logger = Logger.getLogger(LogWriter.class.getName());
+	/**
+	 * The sealer thread. (Created when first used).
+	 */
+	private static ExecutorService sealer;
+
+	/**
+	 * A queued record, or a request to close a log file (with no level).
+	 */
+	private static final class Entry {
+		private final LogFile file;
+		private final long millis;
+		private final Level level;
+		private final String msg;
+		private final String subject;
+		private final String serial;
+		private final Object[] params;
+
+		Entry(LogFile file, long millis, Level level, String msg, String subject, String serial, Object[] params) {
+			this.file = file;
+			this.millis = millis;
+			this.level = level;
+			this.msg = msg;
+			this.subject = subject;
+			this.serial = serial;
+			this.params = params;
+		}
+	}
+
+	/**
+	 * A log file, rolled over by size. (Other than creation, only accessed by the writer thread).
+	 */
+	static final class LogFile {
+		private final Path directory;
+		private final String name;
+		private final long limit;
+		private final LogFormat format;
+		private final FileChannel lockChannel;
+		private final FileLock lock;
+		private final Path lockFile;
+		private final Object lockKey;
+		private final String suffix;
+		private final StringBuilder pending = new StringBuilder();
+		private final AuditChain chain;
+		/**
+		 * The records formatted (and chained) but not yet written, after a failure. (NULL if none).
+		 */
+		private ByteBuffer unwritten;
+		private FileChannel channel;
+		private long size;
+		private long segment;
+		private boolean failed;
+		/**
+		 * The last sealing of earlier segments handed to the sealer. (NULL if none).
+		 */
+		private Future<?> sealing;
+
+		/**
+		 * Open the log file, taking the lock file as for {@link java.util.logging.FileHandler}.
+		 *
+		 * @param directory The directory.
+		 * @param name The base name of the log file.
+		 * @param limit The size of the log file before roll over.
+		 * @throws IOException The log file could not be opened.
+		 */
+		LogFile(Path directory, String name, long limit) throws IOException {
+			this(directory, name, limit, LogFormat.TEXT);
+		}
+
+		/**
+		 * Open the log file, taking the lock file as for {@link java.util.logging.FileHandler}.
+		 *
+		 * @param directory The directory.
+		 * @param name The base name of the log file.
+		 * @param limit The size of the log file (or segment) before roll over.
+		 * @param format The format.
+		 * @throws IOException The log file could not be opened.
+		 */
+		LogFile(Path directory, String name, long limit, LogFormat format) throws IOException {
+			this(directory, name, limit, format, null);
+		}
+
+		/**
+		 * Open the log file, taking the lock file as for {@link java.util.logging.FileHandler}.
+		 *
+		 * @param directory The directory.
+		 * @param name The base name of the log file.
+		 * @param limit The size of the log file (or segment) before roll over.
+		 * @param format The format.
+		 * @param password The source of the password protecting the audit key (returning NULL while not available), to
+		 *            hash chain the records, or NULL to not chain. (JSON format only).
+		 * @throws IOException The log file could not be opened, or the audit key of a signed log is missing.
+		 */
+		LogFile(Path directory, String name, long limit, LogFormat format, Supplier<String> password)
+				throws IOException {
+			this.directory = directory;
+			this.name = name;
+			this.limit = limit;
+			this.format = format;
+			Files.createDirectories(directory);
+			// Take a unique lock file, so separate loggers never share a file.
+			for (int unique = 0;; unique++) {
+				if (unique == UNIQUE) {
+					throw new IOException("Unable to lock log file " + name);
+				}
+				String s;
+				Path p;
+				if (format == LogFormat.JSON) {
+					s = unique == 0 ? "" : "-" + unique;
+					p = directory.resolve(name + s + AuditLog.LOCK);
+				} else {
+					s = unique == 0 ? "" : "." + unique;
+					p = directory.resolve(name + ".0.log" + s + ".lck");
+				}
+				FileChannel c = FileChannel.open(p, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+				FileLock l = null;
+				try {
+					l = c.tryLock();
+				} catch (OverlappingFileLockException e) {
+					// Held by another logger in this process.
+				} catch (IOException e) {
+					c.close();
+					throw e;
+				}
+				if (l != null) {
+					this.lockChannel = c;
+					this.lock = l;
+					this.lockFile = p;
+					this.lockKey = Files.readAttributes(p, BasicFileAttributes.class).fileKey();
+					this.suffix = s;
+					break;
+				}
+				c.close();
+			}
+			try {
+				this.chain = password != null && format == LogFormat.JSON
+						? new AuditChain(directory, getSegmentName(), password)
+						: null;
+				open(true);
+			} catch (IOException e) {
+				release();
+				throw e;
+			}
+		}
+
+		/**
+		 * Get the path of the given generation.
+		 *
+		 * @param generation The generation.
+		 * @return The path.
+		 */
+		Path getPath(int generation) {
+			return directory.resolve(name + "." + generation + ".log" + suffix);
+		}
+
+		/**
+		 * Get the base name of the segments. (JSON format).
+		 *
+		 * @return The base name of the segments.
+		 */
+		String getSegmentName() {
+			return name + suffix;
+		}
+
+		/**
+		 * Get the path of the file being written.
+		 *
+		 * @return The path.
+		 */
+		Path getCurrent() {
+			if (format == LogFormat.JSON) {
+				return directory.resolve(AuditLog.segmentName(getSegmentName(), segment) + AuditLog.SEGMENT);
+			}
+			return getPath(0);
+		}
+
+		/**
+		 * Open the current generation (or segment).
+		 *
+		 * @param append TRUE to append to an existing file.
+		 * @throws IOException The file could not be opened.
+		 */
+		private void open(boolean append) throws IOException {
+			boolean recovering = format == LogFormat.JSON && append;
+			if (recovering) {
+				recover();
+			}
+			Path p = getCurrent();
+			if (append && Files.exists(p) && Files.size(p) >= limit) {
+				rotate();
+				append = false;
+			}
+			channel = FileChannel.open(getCurrent(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+					append ? StandardOpenOption.APPEND : StandardOpenOption.TRUNCATE_EXISTING);
+			size = channel.size();
+			if (recovering && size > 0) {
+				// End any partial last line left by a failure, so the next record starts a line of its own.
+				ByteBuffer last = ByteBuffer.allocate(1);
+				try (FileChannel reader = FileChannel.open(getCurrent(), StandardOpenOption.READ)) {
+					reader.read(last, size - 1);
+				}
+				if (last.get(0) != '\n') {
+					size += channel.write(ByteBuffer.wrap(new byte[] { '\n' }));
+				}
+			}
+			if (recovering && chain != null) {
+				chain.recover(AuditLog.segments(directory, getSegmentName()));
+			}
+		}
+
+		/**
+		 * Find the current segment, and seal any earlier segments left unsealed by a failure. (JSON format).
+		 *
+		 * @throws IOException The segments could not be listed.
+		 */
+		private void recover() throws IOException {
+			NavigableMap<Long, Path> segments = AuditLog.segments(directory, getSegmentName());
+			if (segments.isEmpty()) {
+				segment = Math.max(segment, 1);
+				return;
+			}
+			long last = segments.lastKey();
+			// Never a segment already handed to the sealer, when reopened.
+			segment = Math.max(segment, AuditLog.isSealed(segments.get(last)) ? last + 1 : last);
+			seal(0);
+		}
+
+		/**
+		 * Shift each generation up by one, dropping the oldest. (Or for JSON format, start the next segment, and seal
+		 * the current segment in the background).
+		 *
+		 * @throws IOException The files could not be renamed.
+		 */
+		private void rotate() throws IOException {
+			if (format == LogFormat.JSON) {
+				segment++;
+				seal(segment - COUNT + 1);
+				return;
+			}
+			for (int i = COUNT - 2; i >= 0; i--) {
+				Path p = getPath(i);
+				if (Files.exists(p)) {
+					Files.move(p, getPath(i + 1), StandardCopyOption.REPLACE_EXISTING);
+				}
+			}
+		}
+
+		/**
+		 * Seal the segments before the current segment, and remove the oldest, in the background. (JSON format).
+		 *
+		 * @param keep The first segment to keep.
+		 */
+		private void seal(long keep) {
+			Path directory = this.directory;
+			String name = getSegmentName();
+			long before = segment;
+			sealing = getSealer().submit(() -> seal(directory, name, before, keep));
+		}
+
+		/**
+		 * Seal the segments of a log before the given segment, and remove the oldest. (Sealer thread). Segments left
+		 * unsealed by a failure are sealed when next rotated (or opened).
+		 *
+		 * @param directory The directory.
+		 * @param name The base name of the segments.
+		 * @param before The current segment.
+		 * @param keep The first segment to keep.
+		 */
+		private static void seal(Path directory, String name, long before, long keep) {
+			try {
+				AuditLog.prune(directory, name, keep);
+				for (Map.Entry<Long, Path> e : AuditLog.segments(directory, name).headMap(before).entrySet()) {
+					Path plain = directory.resolve(AuditLog.segmentName(name, e.getKey()) + AuditLog.SEGMENT);
+					if (AuditLog.isSealed(e.getValue())) {
+						Files.deleteIfExists(plain);
+					} else {
+						AuditLog.seal(plain);
+					}
+				}
+			} catch (IOException e) {
+				logger.log(Level.WARNING, "Unable to seal log " + directory.resolve(name) + ", retrying", e);
+			}
+		}
+
+		/**
+		 * Write the pending records, rolling over if the file is full.
+		 *
+		 * @param sync TRUE to force the records to storage.
+		 */
+		void write(boolean sync) {
+			write(sync, false);
+		}
+
+		/**
+		 * Write the pending records, rolling over if the file is full. If writing fails, the records not written are
+		 * retained, and written first on the next call.
+		 *
+		 * @param sync TRUE to force the records to storage.
+		 * @param closing TRUE if the file is to be closed. (Signs the hash chain).
+		 */
+		void write(boolean sync, boolean closing) {
+			if (pending.length() == 0 && unwritten == null && (chain == null || !closing)) {
+				return;
+			}
+			try {
+				if (channel == null) {
+					if (unwritten != null && format == LogFormat.JSON) {
+						requeue();
+					}
+					open(true);
+				}
+				if (unwritten != null) {
+					drain();
+				}
+				if (pending.length() != 0 || (chain != null && closing)) {
+					if (chain != null) {
+						// Chained once the file is open, so always following the records written; the last checkpoint
+						// of a segment is signed.
+						chain.commit(pending, closing || size + pending.length() >= limit);
+					}
+					unwritten = StandardCharsets.UTF_8.encode(pending.toString());
+					pending.setLength(0);
+					drain();
+				}
+				if (sync) {
+					channel.force(false);
+				}
+				if (size >= limit) {
+					channel.close();
+					channel = null;
+					rotate();
+					open(false);
+				}
+				if (failed) {
+					failed = false;
+					logger.log(Level.INFO, "Writing log file {0} resumed", getCurrent());
+				}
+			} catch (IOException e) {
+				if (!failed) {
+					// Report once, until writing succeeds again.
+					failed = true;
+					logger.log(Level.WARNING, "Unable to write log file " + getCurrent() + ", retrying", e);
+				}
+				if (channel != null && !channel.isOpen()) {
+					// Reopened on the next write.
+					channel = null;
+				}
+			}
+		}
+
+		/**
+		 * Write the records left by a failure, or just formatted.
+		 *
+		 * @throws IOException Writing failed. (The records not written are kept).
+		 */
+		private void drain() throws IOException {
+			while (unwritten.hasRemaining()) {
+				size += channel.write(unwritten);
+			}
+			unwritten = null;
+		}
+
+		/**
+		 * Return the records not written to the pending records, before reopening the file. (JSON format). Reopening
+		 * ends any partly written line and recovers the chain from the file, so the records are chained again, and a
+		 * partly written record is written again in full.
+		 */
+		private void requeue() {
+			int start = unwritten.position();
+			while (start > 0 && unwritten.get(start - 1) != '\n') {
+				start--;
+			}
+			ByteBuffer rest = unwritten.duplicate();
+			rest.position(start);
+			String text = StandardCharsets.UTF_8.decode(rest).toString();
+			StringBuilder records = new StringBuilder(text.length() + pending.length());
+			int from = 0;
+			while (from < text.length()) {
+				int end = text.indexOf('\n', from);
+				if (end < 0) {
+					end = text.length();
+				}
+				String line = text.substring(from, end);
+				if (chain == null || !AuditCheckpoint.isCheckpoint(line)) {
+					records.append(line).append('\n');
+				}
+				from = end + 1;
+			}
+			pending.insert(0, records);
+			unwritten = null;
+		}
+
+		/**
+		 * Discard the records retained by a failure.
+		 */
+		void discard() {
+			if (retained() != 0) {
+				logger.log(Level.SEVERE, "Unable to write log file {0}, {1} characters discarded",
+						new Object[] { getCurrent(), retained() });
+				pending.setLength(0);
+				unwritten = null;
+			}
+		}
+
+		/**
+		 * Get the number of characters formatted but not yet written.
+		 *
+		 * @return The number of characters (or bytes, if encoded).
+		 */
+		int retained() {
+			return pending.length() + (unwritten == null ? 0 : unwritten.remaining());
+		}
+
+		/**
+		 * Close the file, and remove the lock file (once any segments being sealed are sealed). Records retained by a
+		 * failure are discarded.
+		 */
+		void close() {
+			discard();
+			try {
+				if (channel != null) {
+					channel.close();
+					channel = null;
+				}
+			} catch (IOException e) {
+				// ignore.
+			}
+			if (sealing != null && !sealing.isDone()) {
+				// Held until sealed, so another writer never seals the same segments.
+				getSealer().execute(this::release);
+			} else {
+				release();
+			}
+		}
+
+		/**
+		 * Release the lock file.
+		 */
+		private void release() {
+			try {
+				lock.release();
+				lockChannel.close();
+				// Only if not since removed, and replaced by another logger.
+				if (lockKey == null
+						|| lockKey.equals(Files.readAttributes(lockFile, BasicFileAttributes.class).fileKey())) {
+					Files.deleteIfExists(lockFile);
+				}
+			} catch (IOException e) {
+				// ignore.
+			}
+		}
+	}
+
+	/**
+	 * The default writer.
+	 */
+	private static class Holder {
+		private final static LogWriter WRITER = new LogWriter(AsyncActivityLog.getBufferSize(),
+				AsyncActivityLog.getFlushInterval(), AsyncActivityLog.isSync());
+
+		static {
+			WRITER.start();
+			Runtime.getRuntime().addShutdownHook(new Thread(WRITER::stop, "Halimede Activity Log Shutdown"));
+		}
+	}
+
+	/**
+	 * The queued records.
+	 */
+	private final RingBuffer<Entry> ring;
+	/**
+	 * The time records may wait before being written.
+	 */
+	private final long interval;
+	/**
+	 * If written records are forced to storage.
+	 */
+	private final boolean sync;
+	/**
+	 * The writer thread.
+	 */
+	private final Thread thread;
+	/**
+	 * The number of records written.
+	 */
+	private volatile long written;
+	/**
+	 * If the writer thread is parked.
+	 */
+	private volatile boolean waiting;
+	/**
+	 * If pending records are to be written now.
+	 */
+	private volatile boolean flushing;
+	/**
+	 * If the writer is to stop once the buffer is drained.
+	 */
+	private volatile boolean stopping;
+	/**
+	 * Parsed messages. (Writer thread only).
+	 */
+	private final Map<String, MessageFormat> formats = new HashMap<>();
+	/**
+	 * Level names. (Writer thread only).
+	 */
+	private final Map<Level, String> levels = new IdentityHashMap<>();
+	/**
+	 * The second of the last timestamp formatted. (Writer thread only).
+	 */
+	private long second = Long.MIN_VALUE;
+	/**
+	 * The last timestamp formatted, to the second. (Writer thread only).
+	 */
+	private String timestamp;
+	/**
+	 * The timestamp being formatted. (Writer thread only).
+	 */
+	private final StringBuilder time = new StringBuilder(32);
+
+	/**
+	 * Create a new writer.
+	 *
+	 * @param capacity The number of records which may be queued.
+	 * @param interval The time in milliseconds records may wait before being written, or 0 to write each batch as
+	 *            soon as taken.
+	 * @param sync TRUE to force each write to storage.
+	 */
+	LogWriter(int capacity, long interval, boolean sync) {
+		this.ring = new RingBuffer<>(capacity);
+		this.interval = TimeUnit.MILLISECONDS.toNanos(Math.max(0, interval));
+		this.sync = sync;
+		this.thread = new Thread(this, "Halimede Activity Log");
+		this.thread.setDaemon(true);
+	}
+
+	/**
+	 * Get the sealer thread, creating it if needed.
+	 *
+	 * @return The sealer.
+	 */
+	static synchronized ExecutorService getSealer() {
+		if (sealer == null) {
+			ThreadPoolExecutor pool = new ThreadPoolExecutor(1, 1, KEEP_ALIVE, TimeUnit.SECONDS,
+					new LinkedBlockingQueue<>(), r -> {
+						Thread t = new Thread(r, "Halimede Activity Log Sealer");
+						t.setDaemon(true);
+						return t;
+					});
+			pool.allowCoreThreadTimeOut(true);
+			sealer = pool;
+		}
+		return sealer;
+	}
+
+	/**
+	 * Get the default writer, starting it if needed.
+	 *
+	 * @return The default writer.
+	 */
+	static LogWriter getDefault() {
+		return Holder.WRITER;
+	}
+
+	/**
+	 * Start the writer thread.
+	 */
+	void start() {
+		thread.start();
+	}
+
+	/**
+	 * Queue a record, waiting for space if the buffer is full. (Records logged once the writer has stopped are
+	 * discarded).
+	 *
+	 * @param file The log file.
+	 * @param level The level. (NULL to close the file).
+	 * @param msg The message.
+	 * @param params The message parameters. (Formatted by the writer, so must not be changed once logged).
+	 */
+	void log(LogFile file, Level level, String msg, Object[] params) {
+		log(file, level, msg, null, null, params);
+	}
+
+	/**
+	 * Queue a record relating to a certificate, waiting for space if the buffer is full. (Records logged once the
+	 * writer has stopped are discarded).
+	 *
+	 * @param file The log file.
+	 * @param level The level. (NULL to close the file).
+	 * @param msg The message.
+	 * @param subject The certificate subject. (May be NULL).
+	 * @param serial The certificate serial. (May be NULL).
+	 * @param params The message parameters. (Formatted by the writer, so must not be changed once logged).
+	 */
+	void log(LogFile file, Level level, String msg, String subject, String serial, Object[] params) {
+		Entry entry = new Entry(file, System.currentTimeMillis(), level, msg, subject, serial, params);
+		if (ring.offer(entry) < 0) {
+			int spins = 0;
+			do {
+				LockSupport.unpark(thread);
+				if (spins++ < SPINS) {
+					Thread.onSpinWait();
+				} else {
+					LockSupport.parkNanos(BACKOFF);
+				}
+			} while (thread.isAlive() && ring.offer(entry) < 0);
+		}
+		if (waiting) {
+			LockSupport.unpark(thread);
+		}
+	}
+
+	/**
+	 * Close the log file, once all records queued before it are written.
+	 *
+	 * @param file The log file.
+	 */
+	void close(LogFile file) {
+		log(file, null, null, null);
+	}
+
+	/**
+	 * Wait until all records queued before this call are written, and the segments they completed are sealed.
+	 */
+	void flush() {
+		long target = ring.claimed();
+		while (written < target && thread.isAlive()) {
+			flushing = true;
+			LockSupport.unpark(thread);
+			LockSupport.parkNanos(BACKOFF);
+		}
+		ExecutorService sealer;
+		synchronized (LogWriter.class) {
+			sealer = LogWriter.sealer;
+		}
+		if (sealer == null) {
+			return;
+		}
+		try {
+			// Segments are sealed in turn.
+			sealer.submit(() -> {}).get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (ExecutionException e) {
+			// Not thrown.
+		}
+	}
+
+	/**
+	 * Stop the writer thread, once all queued records are written.
+	 */
+	void stop() {
+		stopping = true;
+		LockSupport.unpark(thread);
+		try {
+			thread.join(TimeUnit.SECONDS.toMillis(5));
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	@Override
+	public void run() {
+		List<LogFile> files = new ArrayList<>();
+		// The files that failed to write, and the time to retry.
+		List<LogFile> failed = new ArrayList<>();
+		long retry = 0;
+		int count = 0;
+		long deadline = 0;
+		for (;;) {
+			Entry entry = null;
+			// Logging threads wait while too much is retained. (Until stopping, when all records are taken).
+			boolean blocked = !stopping && failed.stream().anyMatch(f -> f.retained() >= RETAIN);
+			while (!blocked && count < BATCH && (entry = ring.poll()) != null) {
+				if (count++ == 0) {
+					deadline = System.nanoTime() + interval;
+				}
+				LogFile file = entry.file;
+				if (file.pending.length() == 0 && !files.contains(file)) {
+					files.add(file);
+				}
+				if (entry.level == null) {
+					file.write(sync, true);
+					file.close();
+				} else {
+					format(entry, file.pending);
+				}
+			}
+			boolean drained = entry == null;
+			boolean retrying = !failed.isEmpty() && (stopping || System.nanoTime() - retry >= 0);
+			if ((count > 0 && (count >= BATCH || flushing || stopping || System.nanoTime() - deadline >= 0))
+					|| retrying) {
+				for (LogFile file : failed) {
+					if (!files.contains(file)) {
+						files.add(file);
+					}
+				}
+				failed.clear();
+				for (LogFile file : files) {
+					file.write(sync);
+					if (file.retained() != 0) {
+						failed.add(file);
+					}
+				}
+				files.clear();
+				count = 0;
+				written = ring.consumed();
+				retry = System.nanoTime() + RETRY;
+			}
+			if (drained) {
+				if (count == 0 && ring.isEmpty()) {
+					if (stopping) {
+						// Retried once more above, then given up.
+						failed.forEach(LogFile::discard);
+						return;
+					}
+					flushing = false;
+				}
+				waiting = true;
+				if (blocked) {
+					// Not woken by the waiting logging threads until retrying.
+					long timeout;
+					while (!stopping && (timeout = retry - System.nanoTime()) > 0) {
+						LockSupport.parkNanos(this, timeout);
+					}
+				} else if (ring.isEmpty() && !stopping && !flushing) {
+					long timeout = count > 0 ? deadline - System.nanoTime() : IDLE;
+					if (!failed.isEmpty()) {
+						timeout = Math.min(timeout, retry - System.nanoTime());
+					}
+					LockSupport.parkNanos(this, Math.max(0, timeout));
+				}
+				waiting = false;
+			}
+		}
+	}
+
+	/**
+	 * Format the record. (As for the {@link FileActivityLog} template, or as a JSON line).
+	 *
+	 * @param entry The record.
+	 * @param sb The buffer to append to.
+	 */
+	private void format(Entry entry, StringBuilder sb) {
+		long s = Math.floorDiv(entry.millis, 1000);
+		if (s != second) {
+			second = s;
+			timestamp = TIMESTAMP.format(Instant.ofEpochSecond(s));
+		}
+		int millis = (int) Math.floorMod(entry.millis, 1000);
+		StringBuilder time = this.time;
+		time.setLength(0);
+		time.append(timestamp).append('.').append((char) ('0' + millis / 100))
+				.append((char) ('0' + millis / 10 % 10)).append((char) ('0' + millis % 10)).append('Z');
+		String message = entry.msg;
+		if (isFormatted(entry.msg, entry.params)) {
+			MessageFormat format = formats.get(entry.msg);
+			try {
+				if (format == null) {
+					if (formats.size() == FORMATS) {
+						formats.clear();
+					}
+					format = new MessageFormat(entry.msg);
+					formats.put(entry.msg, format);
+				}
+				message = format.format(entry.params);
+			} catch (Exception e) {
+				// Unformatted.
+			}
+		}
+		if (entry.file.format == LogFormat.JSON) {
+			AuditRecord.append(sb, time.toString(), entry.level.getName(), message, entry.subject, entry.serial);
+			sb.append('\n');
+			return;
+		}
+		sb.append('[').append(time).append("] [");
+		String level = levels.computeIfAbsent(entry.level, Level::getLocalizedName);
+		sb.append(level);
+		for (int i = level.length(); i < 7; i++) {
+			sb.append(' ');
+		}
+		sb.append("] ").append(message).append(' ').append(EOL);
+	}
+
+	/**
+	 * Does the message take the parameters? (As for {@link java.util.logging.Formatter#formatMessage}).
+	 *
+	 * @param msg The message.
+	 * @param params The parameters.
+	 * @return TRUE if the message is to be formatted with the parameters.
+	 */
+	private static boolean isFormatted(String msg, Object[] params) {
+		return msg != null && params != null && params.length != 0 && (msg.indexOf("{0") >= 0
+				|| msg.indexOf("{1") >= 0 || msg.indexOf("{2") >= 0 || msg.indexOf("{3") >= 0);
+	}
+
+	/**
+	 * Format the message with the parameters. (As for {@link java.util.logging.Formatter#formatMessage}).
+	 *
+	 * @param msg The message.
+	 * @param params The parameters.
+	 * @return The formatted message.
+	 */
+	static String formatMessage(String msg, Object[] params) {
+		if (!isFormatted(msg, params)) {
+			return msg;
+		}
+		try {
+			return MessageFormat.format(msg, params);
+		} catch (Exception e) {
+			return msg;
+		}
+	}
+}
@@ -0,0 +1,160 @@
+/*-
+ * Halimede Certificate Manager Plugin for Eclipse 
+ * Copyright (C) 2017-2021 Darran Kartaschew 
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v2.0 which
+ * accompanies this distribution and is available at
+ *
+ * http://www.eclipse.org/legal/epl-v20.html
+ * 
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the Eclipse
+ * Public License, v. 2.0 are satisfied: GNU General Public License, version 2
+ * with the GNU Classpath Exception which is
+ * available at https://www.gnu.org/software/classpath/license.html.
+ */
+
+package net.sourceforge.dkartaschew.halimede.log;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bounded lock-free ring buffer, for many producers and a single consumer.
+ * <p>
+ * Each slot holds a sequence number, which tells producers when the slot is free to fill, and the consumer when the
+ * slot has been filled. Producers claim a position by compare and swap on the tail, so never block each other beyond
+ * a retry; the consumer alone advances the head.
+ *
+ * @param <E> The type of element.
+ */
+final class RingBuffer<E> {
+
+	/**
+	 * The elements.
+	 */
+	private final Object[] items;
+	/**
+	 * The sequence of each slot. (Equal to the position when free, position + 1 when filled).
+	 */
+	private final AtomicLongArray sequences;
+	/**
+	 * Mask of the position to the slot index.
+	 */
+	private final int mask;
+	/**
+	 * The next position to claim by producers.
+	 */
+	private final AtomicLong tail = new AtomicLong();
+	/**
+	 * The next position to consume. (Written by the consumer only).
+	 */
+	private volatile long head;
+
+	/**
+	 * Create a new ring buffer.
+	 *
+	 * @param capacity The minimum capacity. (Rounded up to a power of 2).
+	 */
+	RingBuffer(int capacity) {
+		if (capacity < 1 || capacity > (1 << 30)) {
+			throw new IllegalArgumentException("Capacity is not valid");
+		}
+		int size = Integer.highestOneBit(capacity);
+		if (size < capacity) {
+			size <<= 1;
+		}
+		this.items = new Object[size];
+		this.sequences = new AtomicLongArray(size);
+		this.mask = size - 1;
+		for (int i = 0; i < size; i++) {
+			sequences.set(i, i);
+		}
+	}
+
+	/**
+	 * Get the capacity.
+	 *
+	 * @return The number of elements that can be held.
+	 */
+	int capacity() {
+		return items.length;
+	}
+
+	/**
+	 * Add the element, if there is space.
+	 *
+	 * @param item The element. (Not NULL).
+	 * @return The position of the element, or -1 if the buffer is full.
+	 */
+	long offer(E item) {
+		long pos = tail.get();
+		for (;;) {
+			int index = (int) pos & mask;
+			long diff = sequences.get(index) - pos;
+			if (diff == 0) {
+				if (tail.compareAndSet(pos, pos + 1)) {
+					items[index] = item;
+					// Publishes the element to the consumer.
+					sequences.set(index, pos + 1);
+					return pos;
+				}
+				pos = tail.get();
+			} else if (diff < 0) {
+				// Slot not yet consumed from the previous lap.
+				return -1;
+			} else {
+				// Claimed by another producer.
+				pos = tail.get();
+			}
+		}
+	}
+
+	/**
+	 * Remove the next element. (Consumer thread only).
+	 *
+	 * @return The element, or NULL if the buffer is empty (or the next element is not yet published).
+	 */
+	@SuppressWarnings("unchecked")
+	E poll() {
+		long pos = head;
+		int index = (int) pos & mask;
+		if (sequences.get(index) != pos + 1) {
+			return null;
+		}
+		E item = (E) items[index];
+		items[index] = null;
+		// Frees the slot for the next lap.
+		sequences.set(index, pos + items.length);
+		head = pos + 1;
+		return item;
+	}
+
+	/**
+	 * Get the position of the next element to be added.
+	 *
+	 * @return The number of elements claimed by producers.
+	 */
+	long claimed() {
+		return tail.get();
+	}
+
+	/**
+	 * Get the position of the next element to be consumed.
+	 *
+	 * @return The number of elements consumed.
+	 */
+	long consumed() {
+		return head;
+	}
+
+	/**
+	 * Is the buffer empty?
+	 *
+	 * @return TRUE if all claimed elements have been consumed.
+	 */
+	boolean isEmpty() {
+		return head == tail.get();
+	}
+}
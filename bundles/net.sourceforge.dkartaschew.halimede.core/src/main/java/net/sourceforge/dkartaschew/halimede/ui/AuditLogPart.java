@@ -0,0 +1,511 @@
+/*-
+ * Halimede Certificate Manager Plugin for Eclipse 
+ * Copyright (C) 2017-2021 Darran Kartaschew 
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v2.0 which
+ * accompanies this distribution and is available at
+ *
+ * http://www.eclipse.org/legal/epl-v20.html
+ * 
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the Eclipse
+ * Public License, v. 2.0 are satisfied: GNU General Public License, version 2
+ * with the GNU Classpath Exception which is
+ * available at https://www.gnu.org/software/classpath/license.html.
+ */
+
+package net.sourceforge.dkartaschew.halimede.ui;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.function.Function;
+import java.util.logging.Level;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.inject.Inject;
+
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.e4.core.services.log.Logger;
+import org.eclipse.e4.ui.di.Focus;
+import org.eclipse.e4.ui.di.UISynchronize;
+import org.eclipse.e4.ui.model.application.ui.basic.MPart;
+import org.eclipse.e4.ui.workbench.modeling.EPartService;
+import org.eclipse.jface.viewers.ArrayContentProvider;
+import org.eclipse.jface.viewers.ColumnLabelProvider;
+import org.eclipse.jface.viewers.TableViewer;
+import org.eclipse.jface.viewers.TableViewerColumn;
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.layout.GridData;
+import org.eclipse.swt.layout.GridLayout;
+import org.eclipse.swt.widgets.Button;
+import org.eclipse.swt.widgets.Combo;
+import org.eclipse.swt.widgets.Composite;
+import org.eclipse.swt.widgets.Label;
+import org.eclipse.swt.widgets.Table;
+import org.eclipse.swt.widgets.Text;
+
+import net.sourceforge.dkartaschew.halimede.data.CertificateAuthority;
+import net.sourceforge.dkartaschew.halimede.log.AuditLog;
+import net.sourceforge.dkartaschew.halimede.log.AuditQuery;
+import net.sourceforge.dkartaschew.halimede.log.AuditRecord;
+import net.sourceforge.dkartaschew.halimede.util.ExceptionUtil;
+
+/**
+ * Part to view the structured activity log of a Certificate Authority.
+ * <p>
+ * Records are read a page at a time, newest first, using the log index to skip records that cannot match the filter.
+ * When following, new records are read from the end of the current log segment as they are written.
+ */
+@SuppressWarnings("restriction")
+public class AuditLogPart {
+
+	/**
+	 * The ID of the view as specified by the extension.
+	 */
+	public static final String ID = "net.sourceforge.dkartaschew.halimede.view.auditlog";
+
+	/**
+	 * Primary Label for the Part
+	 */
+	public static final String LABEL = "Activity Log";
+
+	/**
+	 * Description of the Part
+	 */
+	public static final String DESCRIPTION = "Halimede Certificate Authority";
+
+	/**
+	 * The CA key.
+	 */
+	public static final String CA = "net.sourceforge.dkartaschew.halimede.data.certificateauthority";
+
+	/**
+	 * The number of records per page.
+	 */
+	public static final int PAGE = 200;
+
+	/**
+	 * The maximum number of records shown when following.
+	 */
+	private static final int MAX_FOLLOW = 1000;
+
+	/**
+	 * The interval between reads when following, in milliseconds.
+	 */
+	private static final int FOLLOW_INTERVAL = 1000;
+
+	/**
+	 * The levels to filter by.
+	 */
+	private static final Level[] LEVELS = { null, Level.INFO, Level.WARNING, Level.SEVERE };
+
+	/**
+	 * The column names.
+	 */
+	private static final String[] COLUMN_NAMES = { "Time", "Level", "Message", "Subject", "Serial" };
+	/**
+	 * The column widths.
+	 */
+	private static final int[] COLUMN_SIZES = { 200, 80, 400, 250, 150 };
+
+	/**
+	 * Reference to the containing part.
+	 */
+	private MPart part;
+	/**
+	 * The CA.
+	 */
+	private CertificateAuthority ca;
+	/**
+	 * The log.
+	 */
+	private AuditLog log;
+	/**
+	 * The query of the records shown.
+	 */
+	private AuditQuery query = new AuditQuery();
+	/**
+	 * The position the current page was read before. (NULL for the newest page).
+	 */
+	private AuditLog.Position before;
+	/**
+	 * The position to read the next (older) page before. (NULL if none).
+	 */
+	private AuditLog.Position next;
+	/**
+	 * The positions of the newer pages.
+	 */
+	private final Deque<AuditLog.Position> newer = new ArrayDeque<>();
+	/**
+	 * The records shown, newest first.
+	 */
+	private List<AuditRecord> records = new ArrayList<>();
+	/**
+	 * The position being followed from. (NULL if not following).
+	 */
+	private AuditLog.Tail tail;
+
+	private Text from;
+	private Text to;
+	private Combo level;
+	private Text subject;
+	private Text serial;
+	private Text text;
+	private Button newerButton;
+	private Button olderButton;
+	private Button follow;
+	private Label status;
+	private TableViewer tableViewer;
+
+	@Inject
+	private Logger logger;
+
+	@Inject
+	private EPartService partService;
+
+	@Inject
+	private UISynchronize sync;
+
+	/**
+	 * Create contents of the view part.
+	 * 
+	 * @param part The part which this is part of.
+	 * @param parent The parent composite
+	 */
+	@PostConstruct
+	public void createControls(MPart part, Composite parent) {
+		this.part = part;
+		if (this.part != null) {
+			this.ca = (CertificateAuthority) this.part.getTransientData().get(CA);
+			if (ca == null) {
+				logger.info("View Activity Log missing CA information. Closing");
+				close();
+				return;
+			}
+		}
+		log = AuditLog.of(ca);
+
+		parent.setLayout(new GridLayout(1, false));
+
+		Composite bar = new Composite(parent, SWT.NONE);
+		bar.setLayout(new GridLayout(13, false));
+		bar.setLayoutData(new GridData(SWT.FILL, SWT.TOP, true, false));
+		from = createText(bar, "From", "Earliest date (yyyy-mm-dd, UTC)", 80);
+		to = createText(bar, "To", "Latest date (yyyy-mm-dd, UTC)", 80);
+		new Label(bar, SWT.NONE).setText("Level");
+		level = new Combo(bar, SWT.READ_ONLY);
+		level.setItems("All", "Info", "Warning", "Severe");
+		level.select(0);
+		subject = createText(bar, "Subject", "Text contained in the certificate subject", 150);
+		serial = createText(bar, "Serial", "The certificate serial", 100);
+		text = createText(bar, "Message", "Text contained in the message", 150);
+		Button search = new Button(bar, SWT.PUSH);
+		search.setText("Search");
+		search.addListener(SWT.Selection, e -> search());
+		parent.getShell().setDefaultButton(search);
+
+		Composite paging = new Composite(parent, SWT.NONE);
+		paging.setLayout(new GridLayout(4, false));
+		paging.setLayoutData(new GridData(SWT.FILL, SWT.TOP, true, false));
+		newerButton = new Button(paging, SWT.PUSH);
+		newerButton.setText("Newer");
+		newerButton.addListener(SWT.Selection, e -> {
+			if (!newer.isEmpty()) {
+				AuditLog.Position p = newer.pop();
+				load(p.getSegment() < 0 ? null : p);
+			}
+		});
+		olderButton = new Button(paging, SWT.PUSH);
+		olderButton.setText("Older");
+		olderButton.addListener(SWT.Selection, e -> {
+			if (next != null) {
+				// Negative segment marks the newest page.
+				newer.push(before == null ? new AuditLog.Position(-1, 0) : before);
+				load(next);
+			}
+		});
+		follow = new Button(paging, SWT.CHECK);
+		follow.setText("Follow");
+		follow.setToolTipText("Show new records as they are logged");
+		follow.addListener(SWT.Selection, e -> setFollow(follow.getSelection()));
+		status = new Label(paging, SWT.NONE);
+		status.setLayoutData(new GridData(SWT.FILL, SWT.CENTER, true, false));
+
+		tableViewer = new TableViewer(parent, SWT.H_SCROLL | SWT.V_SCROLL | SWT.BORDER | SWT.FULL_SELECTION);
+		Table table = tableViewer.getTable();
+		table.setHeaderVisible(true);
+		table.setLinesVisible(false);
+		table.setLayoutData(new GridData(SWT.FILL, SWT.FILL, true, true));
+		createColumn(0, r -> Instant.ofEpochMilli(r.getMillis()).toString());
+		createColumn(1, r -> r.getLevel().getLocalizedName());
+		createColumn(2, AuditRecord::getMessage);
+		createColumn(3, AuditRecord::getSubject);
+		createColumn(4, AuditRecord::getSerial);
+		tableViewer.setContentProvider(ArrayContentProvider.getInstance());
+
+		search();
+	}
+
+	/**
+	 * Create a labelled text field.
+	 */
+	private Text createText(Composite bar, String label, String tooltip, int width) {
+		new Label(bar, SWT.NONE).setText(label);
+		Text t = new Text(bar, SWT.BORDER);
+		t.setToolTipText(tooltip);
+		GridData data = new GridData(SWT.FILL, SWT.CENTER, false, false);
+		data.widthHint = width;
+		t.setLayoutData(data);
+		return t;
+	}
+
+	/**
+	 * Create a table column.
+	 * 
+	 * @param index The column index.
+	 * @param text Function to get the text of the column.
+	 */
+	private void createColumn(int index, Function<AuditRecord, String> text) {
+		TableViewerColumn col = new TableViewerColumn(tableViewer, SWT.NONE);
+		col.getColumn().setText(COLUMN_NAMES[index]);
+		col.getColumn().setWidth(COLUMN_SIZES[index]);
+		col.getColumn().setResizable(true);
+		col.setLabelProvider(new ColumnLabelProvider() {
+			@Override
+			public String getText(Object element) {
+				if (element instanceof AuditRecord) {
+					String value = text.apply((AuditRecord) element);
+					return value != null ? value : "";
+				}
+				return "";
+			}
+		});
+	}
+
+	/**
+	 * Apply the filter, and show the newest matching records.
+	 */
+	private void search() {
+		AuditQuery q = new AuditQuery();
+		try {
+			q.setFrom(parseDate(from.getText(), false));
+			q.setTo(parseDate(to.getText(), true));
+		} catch (DateTimeParseException e) {
+			status.setText("Dates must be as yyyy-mm-dd");
+			return;
+		}
+		q.setLevel(LEVELS[Math.max(0, level.getSelectionIndex())]);
+		q.setSubject(subject.getText());
+		q.setSerial(serial.getText());
+		q.setText(text.getText());
+		query = q;
+		newer.clear();
+		setFollow(follow.getSelection());
+	}
+
+	/**
+	 * Parse a date.
+	 *
+	 * @param value The date (yyyy-mm-dd).
+	 * @param end TRUE for the end of the day.
+	 * @return The start (or end) of the day in milliseconds since the epoch, or NULL if not set.
+	 */
+	private static Long parseDate(String value, boolean end) {
+		if (value == null || value.trim().isEmpty()) {
+			return null;
+		}
+		LocalDate date = LocalDate.parse(value.trim());
+		if (end) {
+			date = date.plusDays(1);
+		}
+		return date.atStartOfDay(ZoneOffset.UTC).toInstant().toEpochMilli();
+	}
+
+	/**
+	 * Start or stop following the log.
+	 *
+	 * @param enable TRUE to follow.
+	 */
+	private void setFollow(boolean enable) {
+		tail = null;
+		if (!enable) {
+			load(null);
+			return;
+		}
+		AuditQuery q = query;
+		run("Follow Activity Log", () -> {
+			AuditLog.Tail t = log.tail();
+			AuditLog.Page page = log.query(q, t.getPosition(), PAGE);
+			sync.asyncExec(() -> {
+				if (q == query && follow.getSelection()) {
+					tail = t;
+					newer.clear();
+					show(null, page);
+					poll(t);
+				}
+			});
+		});
+	}
+
+	/**
+	 * Read the records added since the last read in the background, while following. (The next read is scheduled
+	 * once the records read are shown, so only one read of the position is made at a time).
+	 *
+	 * @param t The position being followed from.
+	 */
+	private void poll(AuditLog.Tail t) {
+		if (tableViewer.getTable().isDisposed() || tail != t) {
+			return;
+		}
+		AuditQuery q = query;
+		run("Follow Activity Log", () -> {
+			List<AuditRecord> added = new ArrayList<>();
+			String error = null;
+			try {
+				List<AuditRecord> read = log.follow(t);
+				for (int i = read.size() - 1; i >= 0 && added.size() < MAX_FOLLOW; i--) {
+					if (q.matches(read.get(i))) {
+						added.add(read.get(i));
+					}
+				}
+			} catch (IOException e) {
+				error = "Reading the log failed: " + ExceptionUtil.getMessage(e);
+			}
+			final String message = error;
+			sync.asyncExec(() -> {
+				if (tableViewer.getTable().isDisposed() || tail != t) {
+					return;
+				}
+				if (message != null) {
+					status.setText(message);
+				} else if (!added.isEmpty()) {
+					List<AuditRecord> list = new ArrayList<>(MAX_FOLLOW);
+					list.addAll(added);
+					for (int i = 0; i < records.size() && list.size() < MAX_FOLLOW; i++) {
+						list.add(records.get(i));
+					}
+					records = list;
+					tableViewer.setInput(records);
+					updateStatus();
+				}
+				tableViewer.getTable().getDisplay().timerExec(FOLLOW_INTERVAL, () -> poll(t));
+			});
+		});
+	}
+
+	/**
+	 * Load a page of records.
+	 *
+	 * @param position The position to read before, or NULL for the newest records.
+	 */
+	private void load(AuditLog.Position position) {
+		AuditQuery q = query;
+		run("Query Activity Log", () -> {
+			AuditLog.Page page = log.query(q, position, PAGE);
+			sync.asyncExec(() -> {
+				if (q == query && tail == null) {
+					show(position, page);
+				}
+			});
+		});
+	}
+
+	/**
+	 * Show a page of records.
+	 *
+	 * @param position The position the page was read before.
+	 * @param page The page.
+	 */
+	private void show(AuditLog.Position position, AuditLog.Page page) {
+		if (tableViewer.getTable().isDisposed()) {
+			return;
+		}
+		before = position;
+		next = page.getNext();
+		records = new ArrayList<>(page.getRecords());
+		tableViewer.setInput(records);
+		updateStatus();
+	}
+
+	/**
+	 * Update the paging buttons and status.
+	 */
+	private void updateStatus() {
+		newerButton.setEnabled(tail == null && !newer.isEmpty());
+		olderButton.setEnabled(tail == null && next != null);
+		if (records.isEmpty()) {
+			status.setText("No matching records");
+		} else {
+			status.setText(records.size() + (records.size() == 1 ? " record" : " records") + " from "
+					+ Instant.ofEpochMilli(records.get(records.size() - 1).getMillis()) + " to "
+					+ Instant.ofEpochMilli(records.get(0).getMillis()));
+		}
+	}
+
+	/**
+	 * Operation reading the log.
+	 */
+	private interface LogOperation {
+		void run() throws IOException;
+	}
+
+	/**
+	 * Run an operation reading the log in the background.
+	 *
+	 * @param name The name of the job.
+	 * @param operation The operation.
+	 */
+	private void run(String name, LogOperation operation) {
+		Job job = Job.create(name, monitor -> {
+			try {
+				operation.run();
+			} catch (IOException e) {
+				logger.error(e, "Reading the activity log failed");
+				sync.asyncExec(() -> {
+					if (!status.isDisposed()) {
+						status.setText("Reading the log failed: " + ExceptionUtil.getMessage(e));
+					}
+				});
+			}
+			return Status.OK_STATUS;
+		});
+		job.setSystem(true);
+		job.schedule();
+	}
+
+	@PreDestroy
+	public void dispose() {
+		tail = null;
+	}
+
+	/**
+	 * Close this part.
+	 */
+	public void close() {
+		sync.asyncExec(() -> {
+			// This will call @PreDestroy
+			partService.hidePart(part, true);
+		});
+	}
+
+	@Focus
+	public void setFocus() {
+		if (this.text != null) {
+			sync.asyncExec(() -> {
+				if (!this.text.isDisposed()) {
+					this.text.setFocus();
+				}
+			});
+		}
+	}
+}
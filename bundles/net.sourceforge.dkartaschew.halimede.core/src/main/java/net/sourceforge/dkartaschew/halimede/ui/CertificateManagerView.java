@@ -20,16 +20,22 @@ package net.sourceforge.dkartaschew.halimede.ui;
 import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
 import java.io.File;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
 import javax.inject.Inject;
 
+import org.eclipse.core.runtime.OperationCanceledException;
 import org.eclipse.core.runtime.Status;
-import org.eclipse.core.runtime.SubMonitor;
 import org.eclipse.core.runtime.jobs.Job;
 import org.eclipse.core.runtime.preferences.IEclipsePreferences;
 import org.eclipse.core.runtime.preferences.InstanceScope;
@@ -50,6 +56,7 @@ import org.osgi.service.prefs.Preferences;
 import net.sourceforge.dkartaschew.halimede.PluginDefaults;
 import net.sourceforge.dkartaschew.halimede.data.CertificateAuthority;
 import net.sourceforge.dkartaschew.halimede.data.CertificateAuthourityManager;
+import net.sourceforge.dkartaschew.halimede.data.CoalescingDispatcher;
 import net.sourceforge.dkartaschew.halimede.ui.composite.CADetailPane;
 import net.sourceforge.dkartaschew.halimede.ui.composite.CAListPane;
 import net.sourceforge.dkartaschew.halimede.ui.node.CertificateAuthorityNode;
@@ -97,11 +104,26 @@ public class CertificateManagerView implements PropertyChangeListener {
 	 */
 	private CADetailPane caDetails;
 
+	/**
+	 * Batches CA change events to this view, so bursts of changes refresh the CA list once per frame.
+	 */
+	private final CoalescingDispatcher dispatcher = new CoalescingDispatcher(this);
+
+	/**
+	 * Batches CA change events to the details pane.
+	 */
+	private CoalescingDispatcher caDetailsDispatcher;
+
 	/**
 	 * The part stack we add to.
 	 */
 	private String partStack;
 
+	/**
+	 * The locations of the CAs still being opened at startup. (Retained in the preference store until opened).
+	 */
+	private final Set<String> pendingLocations = ConcurrentHashMap.newKeySet();
+
 	/**
 	 * Create the Part
 	 * 
@@ -133,14 +155,21 @@ public class CertificateManagerView implements PropertyChangeListener {
 
 		caDetails = new CADetailPane(sashForm, SWT.DOUBLE_BUFFERED, manager, this);
 		ContextInjectionFactory.inject(caDetails, context);
+		caDetailsDispatcher = new CoalescingDispatcher(caDetails);
 
 		caList.addSelectionListener(caDetails);
 		caList.expandAll();
 
 		sashForm.setWeights(new int[] { 1, 4 });
 		/*
-		 * Load all the active CAs as a separate job.
+		 * Open all the active CAs as a separate job. CAs are opened concurrently, and each is added to the CA List as
+		 * soon as it is opened. The contents of each CA are loaded when it is first expanded.
+		 */
+		manager.addPropertyChangeListener(dispatcher);
+		/*
+		 * Ensure the CA Details panes get updates as well to ensure the tables are updated based on actions of the CA
 		 */
+		manager.addPropertyChangeListener(caDetailsDispatcher);
 		Job job = Job.create("Load Certificate Authorities", monitor -> {
 
 			try {
@@ -148,20 +177,18 @@ public class CertificateManagerView implements PropertyChangeListener {
 				IEclipsePreferences preferences = InstanceScope.INSTANCE.getNode(PluginDefaults.ID);
 				if (preferences.nodeExists(PluginDefaults.PREFERENCES_NODE_PATHS)) {
 					Preferences paths = preferences.node(PluginDefaults.PREFERENCES_NODE_PATHS);
-					String[] locations = paths.get(PluginDefaults.PREFERENCES_NODE_PATHS, "").split(File.pathSeparator);
-					if (locations.length > 0) {
-						SubMonitor subMonitor = SubMonitor.convert(monitor, "Load Certificate Authorities", locations.length);
-						for (String location : locations) {
-							if (subMonitor.isCanceled()) {
-								return Status.CANCEL_STATUS;
-							}
-							subMonitor.newChild(1);
-							try {
-								manager.open(Paths.get(location));
-							} catch (Throwable e) {
-								logger.error(e, "Failed to load CA.");
-							}
-						}
+					List<String> locations = Arrays.stream(paths.get(PluginDefaults.PREFERENCES_NODE_PATHS, "")//
+							.split(File.pathSeparator))//
+							.filter(l -> !l.isEmpty())//
+							.collect(Collectors.toList());
+					pendingLocations.addAll(locations);
+					List<Path> locationPaths = locations.stream().map(l -> Paths.get(l)).collect(Collectors.toList());
+					manager.openAll(locationPaths, false, monitor, (location, e) -> {
+						logger.error(e, "Failed to load CA.");
+						pendingLocations.remove(location.toString());
+					});
+					if (monitor != null && monitor.isCanceled()) {
+						return Status.CANCEL_STATUS;
 					}
 				}
 				return Status.OK_STATUS;
@@ -172,13 +199,7 @@ public class CertificateManagerView implements PropertyChangeListener {
 				if (monitor != null) {
 					monitor.done();
 				}
-				manager.addPropertyChangeListener(this);
-				/*
-				 * Ensure the CA Details panes get updates as well to ensure the tables are updated based on actions of
-				 * the CA
-				 */
-				manager.addPropertyChangeListener(caDetails);
-
+				pendingLocations.clear();
 				CertificateAuthorityNode[] nodes = manager.getCertificateAuthorities().stream()
 						.map(i -> new CertificateAuthorityNode(i))//
 						.toArray(CertificateAuthorityNode[]::new);
@@ -192,6 +213,32 @@ public class CertificateManagerView implements PropertyChangeListener {
 
 	}
 
+	/**
+	 * Load the contents of the given CA as a separate job, if not already loaded.
+	 * 
+	 * @param ca The Certificate Authority.
+	 */
+	public void load(CertificateAuthority ca) {
+		if (ca == null || ca.isLoaded()) {
+			return;
+		}
+		Job job = Job.create("Load Certificate Authority - " + ca.getDescription(), monitor -> {
+			try {
+				ca.load(monitor);
+			} catch (OperationCanceledException e) {
+				return Status.CANCEL_STATUS;
+			} catch (Throwable e) {
+				logger.error(e, "Failed to load CA.");
+			} finally {
+				if (monitor != null) {
+					monitor.done();
+				}
+			}
+			return Status.OK_STATUS;
+		});
+		job.schedule();
+	}
+
 	@Focus
 	public void setFocus() {
 		caList.setFocus();
@@ -232,17 +279,25 @@ public class CertificateManagerView implements PropertyChangeListener {
 			try {
 				IEclipsePreferences preferences = InstanceScope.INSTANCE.getNode(PluginDefaults.ID);
 				Preferences paths = preferences.node(PluginDefaults.PREFERENCES_NODE_PATHS);
-				String locations = cas.stream()//
+				// Retain the CAs still being opened.
+				Set<String> locations = cas.stream()//
 						.map(i -> i.getBasePath().toFile().getAbsolutePath())//
-						.collect(Collectors.joining(File.pathSeparator));
-				paths.put(PluginDefaults.PREFERENCES_NODE_PATHS, locations);
+						.collect(Collectors.toCollection(LinkedHashSet::new));
+				locations.addAll(pendingLocations);
+				paths.put(PluginDefaults.PREFERENCES_NODE_PATHS, String.join(File.pathSeparator, locations));
 				preferences.flush();
 			} catch (Throwable e) {
 				logger.error(e, "Saving Active CAs failed.");
 			}
 		} else {
 			// CA update...
+			boolean unloaded = CertificateAuthority.PROPERTY_LOADED.equals(event.getPropertyName())
+					&& Boolean.FALSE.equals(event.getNewValue());
 			sync.asyncExec(() -> {
+				if (unloaded) {
+					// Collapse, so the contents are loaded again when next expanded.
+					caList.collapse((CertificateAuthority) event.getSource());
+				}
 				caList.refresh();
 			});
 		}
@@ -272,8 +327,8 @@ public class CertificateManagerView implements PropertyChangeListener {
 	@PreDestroy
 	public void deregisterListeners() {
 		if (manager != null) {
-			manager.removePropertyChangeListener(this);
-			manager.removePropertyChangeListener(caDetails);
+			manager.removePropertyChangeListener(dispatcher);
+			manager.removePropertyChangeListener(caDetailsDispatcher);
 		}
 	}
 }
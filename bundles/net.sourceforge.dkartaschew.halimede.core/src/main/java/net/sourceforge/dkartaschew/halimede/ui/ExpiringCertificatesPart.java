@@ -0,0 +1,285 @@
+/*-
+ * Halimede Certificate Manager Plugin for Eclipse 
+ * Copyright (C) 2017-2021 Darran Kartaschew 
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v2.0 which
+ * accompanies this distribution and is available at
+ *
+ * http://www.eclipse.org/legal/epl-v20.html
+ * 
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the Eclipse
+ * Public License, v. 2.0 are satisfied: GNU General Public License, version 2
+ * with the GNU Classpath Exception which is
+ * available at https://www.gnu.org/software/classpath/license.html.
+ */
+
+package net.sourceforge.dkartaschew.halimede.ui;
+
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.inject.Inject;
+
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.e4.core.contexts.ContextInjectionFactory;
+import org.eclipse.e4.core.contexts.IEclipseContext;
+import org.eclipse.e4.ui.di.Focus;
+import org.eclipse.e4.ui.di.UISynchronize;
+import org.eclipse.e4.ui.model.application.ui.basic.MPart;
+import org.eclipse.jface.viewers.ArrayContentProvider;
+import org.eclipse.jface.viewers.ColumnLabelProvider;
+import org.eclipse.jface.viewers.IStructuredSelection;
+import org.eclipse.jface.viewers.TableViewer;
+import org.eclipse.jface.viewers.TableViewerColumn;
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.layout.GridData;
+import org.eclipse.swt.layout.GridLayout;
+import org.eclipse.swt.widgets.Composite;
+import org.eclipse.swt.widgets.Label;
+import org.eclipse.swt.widgets.Spinner;
+import org.eclipse.swt.widgets.Table;
+
+import net.sourceforge.dkartaschew.halimede.data.CertificateAuthority;
+import net.sourceforge.dkartaschew.halimede.data.CertificateAuthourityManager;
+import net.sourceforge.dkartaschew.halimede.data.IssuedCertificateProperties;
+import net.sourceforge.dkartaschew.halimede.data.IssuedCertificateProperties.Key;
+import net.sourceforge.dkartaschew.halimede.ui.actions.ViewCertificateInformationAction;
+import net.sourceforge.dkartaschew.halimede.util.DateTimeUtil;
+
+/**
+ * Dashboard part listing the certificates of all open Certificate Authorities that expire soon.
+ * <p>
+ * The list is read from the validity index of each CA in a background job, and refreshed as certificates are issued
+ * or revoked. The contents of Certificate Authorities that are not loaded are loaded on demand while within the
+ * budget, and the Certificate Authorities not searched are named.
+ */
+public class ExpiringCertificatesPart implements PropertyChangeListener {
+
+	/**
+	 * The ID of the view as specified by the extension.
+	 */
+	public static final String ID = "net.sourceforge.dkartaschew.halimede.view.expiring";
+
+	/**
+	 * Primary Label for the Part
+	 */
+	public static final String LABEL = "Expiring Certificates";
+
+	/**
+	 * Description of the Part
+	 */
+	public static final String DESCRIPTION = "Halimede Certificate Authority";
+
+	/**
+	 * The part stack to open certificates in.
+	 */
+	public static final String PARTSTACK_EDITOR = "net.sourceforge.dkartaschew.halimede.data.editor";
+
+	/**
+	 * The default number of days to look ahead.
+	 */
+	public static final int DEFAULT_DAYS = 30;
+
+	/**
+	 * The column names.
+	 */
+	private static final String[] COLUMN_NAMES = { "Expires", "Days Left", "Authority", "Subject", "Serial" };
+	/**
+	 * The column widths.
+	 */
+	private static final int[] COLUMN_SIZES = { 200, 80, 150, 300, 150 };
+
+	/**
+	 * The part stack to open certificates in.
+	 */
+	private String editor;
+
+	/**
+	 * The number of days to look ahead.
+	 */
+	private Spinner days;
+	/**
+	 * The summary.
+	 */
+	private Label status;
+	/**
+	 * The certificate table.
+	 */
+	private TableViewer tableViewer;
+	/**
+	 * Is a refresh pending?
+	 */
+	private final AtomicBoolean scheduled = new AtomicBoolean();
+	/**
+	 * The last job started to read the list.
+	 */
+	private Job job;
+
+	@Inject
+	private CertificateAuthourityManager manager;
+
+	@Inject
+	private IEclipseContext context;
+
+	@Inject
+	private UISynchronize sync;
+
+	/**
+	 * Create contents of the view part.
+	 * 
+	 * @param part The part which this is part of.
+	 * @param parent The parent composite
+	 */
+	@PostConstruct
+	public void createControls(MPart part, Composite parent) {
+		if (part != null) {
+			editor = (String) part.getTransientData().get(PARTSTACK_EDITOR);
+		}
+
+		parent.setLayout(new GridLayout(1, false));
+
+		Composite bar = new Composite(parent, SWT.NONE);
+		bar.setLayout(new GridLayout(3, false));
+		bar.setLayoutData(new GridData(SWT.FILL, SWT.TOP, true, false));
+		new Label(bar, SWT.NONE).setText("Expiring within");
+		days = new Spinner(bar, SWT.BORDER);
+		days.setValues(DEFAULT_DAYS, 1, 3650, 0, 1, 30);
+		days.addModifyListener(e -> refresh());
+		new Label(bar, SWT.NONE).setText("days");
+
+		tableViewer = new TableViewer(parent, SWT.H_SCROLL | SWT.V_SCROLL | SWT.BORDER | SWT.FULL_SELECTION);
+		Table table = tableViewer.getTable();
+		table.setHeaderVisible(true);
+		table.setLinesVisible(false);
+		table.setLayoutData(new GridData(SWT.FILL, SWT.FILL, true, true));
+		createColumn(0, p -> p.getProperty(Key.endDate));
+		createColumn(1, p -> Long.toString(
+				Math.max(0, Duration.ofMillis(p.getDate(Key.endDate) - System.currentTimeMillis()).toDays())));
+		createColumn(2, p -> {
+			CertificateAuthority ca = p.getCertificateAuthority();
+			return ca != null ? ca.getDescription() : "";
+		});
+		createColumn(3, p -> p.getProperty(Key.subject));
+		createColumn(4, p -> p.getProperty(Key.certificateSerialNumber));
+		tableViewer.setContentProvider(ArrayContentProvider.getInstance());
+		tableViewer.addDoubleClickListener(e -> {
+			Object element = ((IStructuredSelection) e.getSelection()).getFirstElement();
+			if (element instanceof IssuedCertificateProperties) {
+				ViewCertificateInformationAction action = new ViewCertificateInformationAction(
+						(IssuedCertificateProperties) element, null, editor);
+				ContextInjectionFactory.inject(action, context);
+				action.run();
+			}
+		});
+
+		status = new Label(parent, SWT.NONE);
+		status.setLayoutData(new GridData(SWT.FILL, SWT.BOTTOM, true, false));
+
+		manager.addPropertyChangeListener(this);
+		refresh();
+	}
+
+	/**
+	 * Create a table column.
+	 * 
+	 * @param index The column index.
+	 * @param text Function to get the text of the column.
+	 */
+	private void createColumn(int index, Function<IssuedCertificateProperties, String> text) {
+		TableViewerColumn col = new TableViewerColumn(tableViewer, SWT.NONE);
+		col.getColumn().setText(COLUMN_NAMES[index]);
+		col.getColumn().setWidth(COLUMN_SIZES[index]);
+		col.getColumn().setResizable(true);
+		col.setLabelProvider(new ColumnLabelProvider() {
+			@Override
+			public String getText(Object element) {
+				return element instanceof IssuedCertificateProperties ? text.apply((IssuedCertificateProperties) element)
+						: "";
+			}
+		});
+	}
+
+	/**
+	 * Reload the list of expiring certificates from the indexes. (The list is read in a background job, superseding
+	 * any earlier job).
+	 */
+	private void refresh() {
+		scheduled.set(false);
+		if (tableViewer == null || tableViewer.getTable().isDisposed()) {
+			return;
+		}
+		if (job != null) {
+			job.cancel();
+		}
+		final int lookahead = days.getSelection();
+		job = Job.create(LABEL, monitor -> {
+			ZonedDateTime now = ZonedDateTime.now(DateTimeUtil.DEFAULT_ZONE);
+			List<CertificateAuthority> skipped = new ArrayList<>();
+			List<IssuedCertificateProperties> items = manager.getExpiring(now, now.plusDays(lookahead), false,
+					skipped);
+			StringBuilder text = new StringBuilder();
+			text.append(items.size()).append(items.size() == 1 ? " certificate expires" : " certificates expire")
+					.append(" within ").append(lookahead).append(" days");
+			if (!skipped.isEmpty()) {
+				text.append(" (not searched: ").append(skipped.stream().map(CertificateAuthority::getDescription)
+						.collect(Collectors.joining(", "))).append(")");
+			}
+			sync.asyncExec(() -> {
+				if (monitor.isCanceled() || tableViewer.getTable().isDisposed()) {
+					return;
+				}
+				tableViewer.setInput(items);
+				status.setText(text.toString());
+			});
+			return Status.OK_STATUS;
+		});
+		job.setSystem(true);
+		job.schedule();
+	}
+
+	@Override
+	public void propertyChange(PropertyChangeEvent evt) {
+		String property = evt.getPropertyName();
+		if (CertificateAuthourityManager.PROPERTY.equals(property)
+				|| CertificateAuthority.PROPERTY_ISSUED.equals(property)
+				|| CertificateAuthority.PROPERTY_REVOKED.equals(property)
+				|| CertificateAuthority.PROPERTY_LOADED.equals(property)
+				|| CertificateAuthority.PROPERTY_DESCRIPTION.equals(property)) {
+			// Refresh once per batch of changes.
+			if (scheduled.compareAndSet(false, true)) {
+				sync.asyncExec(this::refresh);
+			}
+		}
+	}
+
+	@PreDestroy
+	public void dispose() {
+		manager.removePropertyChangeListener(this);
+		if (job != null) {
+			job.cancel();
+		}
+	}
+
+	@Focus
+	public void setFocus() {
+		if (this.days != null) {
+			sync.asyncExec(() -> {
+				if (!this.days.isDisposed()) {
+					this.days.setFocus();
+				}
+			});
+		}
+	}
+}
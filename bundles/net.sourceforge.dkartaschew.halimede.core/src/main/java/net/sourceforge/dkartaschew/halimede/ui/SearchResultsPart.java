@@ -0,0 +1,363 @@
+/*-
+ * Halimede Certificate Manager Plugin for Eclipse 
+ * Copyright (C) 2017-2021 Darran Kartaschew 
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v2.0 which
+ * accompanies this distribution and is available at
+ *
+ * http://www.eclipse.org/legal/epl-v20.html
+ * 
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the Eclipse
+ * Public License, v. 2.0 are satisfied: GNU General Public License, version 2
+ * with the GNU Classpath Exception which is
+ * available at https://www.gnu.org/software/classpath/license.html.
+ */
+
+package net.sourceforge.dkartaschew.halimede.ui;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.inject.Inject;
+
+import org.eclipse.e4.core.contexts.ContextInjectionFactory;
+import org.eclipse.e4.core.contexts.IEclipseContext;
+import org.eclipse.e4.core.services.log.Logger;
+import org.eclipse.e4.ui.di.Focus;
+import org.eclipse.e4.ui.di.UISynchronize;
+import org.eclipse.e4.ui.model.application.ui.basic.MPart;
+import org.eclipse.jface.viewers.ArrayContentProvider;
+import org.eclipse.jface.viewers.ColumnLabelProvider;
+import org.eclipse.jface.viewers.IStructuredSelection;
+import org.eclipse.jface.viewers.TableViewer;
+import org.eclipse.jface.viewers.TableViewerColumn;
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.events.SelectionAdapter;
+import org.eclipse.swt.events.SelectionEvent;
+import org.eclipse.swt.layout.GridData;
+import org.eclipse.swt.layout.GridLayout;
+import org.eclipse.swt.widgets.Button;
+import org.eclipse.swt.widgets.Composite;
+import org.eclipse.swt.widgets.Label;
+import org.eclipse.swt.widgets.Table;
+import org.eclipse.swt.widgets.Text;
+
+import net.sourceforge.dkartaschew.halimede.data.CertificateAuthority;
+import net.sourceforge.dkartaschew.halimede.data.CertificateAuthourityManager;
+import net.sourceforge.dkartaschew.halimede.data.IssuedCertificateProperties.Key;
+import net.sourceforge.dkartaschew.halimede.data.search.SearchResult;
+import net.sourceforge.dkartaschew.halimede.enumeration.SearchField;
+import net.sourceforge.dkartaschew.halimede.ui.actions.ViewCertificateInformationAction;
+
+/**
+ * Part to search the certificates of all open Certificate Authorities, and open the matching certificates.
+ */
+@SuppressWarnings("restriction")
+public class SearchResultsPart {
+
+	/**
+	 * The ID of the view as specified by the extension.
+	 */
+	public static final String ID = "net.sourceforge.dkartaschew.halimede.view.search";
+
+	/**
+	 * Primary Label for the Part
+	 */
+	public static final String LABEL = "Search Certificates";
+
+	/**
+	 * Description of the Part
+	 */
+	public static final String DESCRIPTION = "Halimede Certificate Authority";
+
+	/**
+	 * The initial query. (Optional).
+	 */
+	public static final String QUERY = "net.sourceforge.dkartaschew.halimede.data.query";
+
+	/**
+	 * The part stack to open certificates in.
+	 */
+	public static final String PARTSTACK_EDITOR = "net.sourceforge.dkartaschew.halimede.data.editor";
+
+	/**
+	 * The column names.
+	 */
+	private static final String[] COLUMN_NAMES = { "Authority", "Subject", "Serial", "Matched", "Status" };
+	/**
+	 * The column widths.
+	 */
+	private static final int[] COLUMN_SIZES = { 150, 300, 150, 150, 80 };
+
+	/**
+	 * Reference to the containing part.
+	 */
+	private MPart part;
+
+	/**
+	 * The part stack to open certificates in.
+	 */
+	private String editor;
+
+	/**
+	 * The query
+	 */
+	private Text queryText;
+	/**
+	 * The field selection buttons.
+	 */
+	private final Map<SearchField, Button> fieldButtons = new EnumMap<>(SearchField.class);
+	/**
+	 * The search status.
+	 */
+	private Label status;
+	/**
+	 * The result table.
+	 */
+	private TableViewer tableViewer;
+
+	/**
+	 * The results shown.
+	 */
+	private final List<SearchResult> results = new ArrayList<>();
+	/**
+	 * Results received, but not yet shown. (Guarded by itself).
+	 */
+	private final List<SearchResult> received = new ArrayList<>();
+	/**
+	 * The running search. (NULL if none).
+	 */
+	private CompletableFuture<Integer> search;
+	/**
+	 * Token of the running search; results of any other search are dropped. (Guarded by received).
+	 */
+	private Object token;
+
+	@Inject
+	private CertificateAuthourityManager manager;
+
+	@Inject
+	private IEclipseContext context;
+
+	@Inject
+	private UISynchronize sync;
+
+	@Inject
+	private Logger logger;
+
+	/**
+	 * Create contents of the view part.
+	 * 
+	 * @param part The part which this is part of.
+	 * @param parent The parent composite
+	 */
+	@PostConstruct
+	public void createControls(MPart part, Composite parent) {
+		this.part = part;
+		String query = null;
+		if (this.part != null) {
+			editor = (String) this.part.getTransientData().get(PARTSTACK_EDITOR);
+			query = (String) this.part.getTransientData().get(QUERY);
+		}
+
+		parent.setLayout(new GridLayout(1, false));
+
+		Composite bar = new Composite(parent, SWT.NONE);
+		bar.setLayout(new GridLayout(SearchField.values().length + 1, false));
+		bar.setLayoutData(new GridData(SWT.FILL, SWT.TOP, true, false));
+
+		queryText = new Text(bar, SWT.SEARCH | SWT.ICON_SEARCH | SWT.ICON_CANCEL);
+		queryText.setMessage("Serial, subject, alternative name or fingerprint");
+		queryText.setToolTipText("Press Enter to search all open Certificate Authorities");
+		queryText.setLayoutData(new GridData(SWT.FILL, SWT.CENTER, true, false));
+		queryText.addSelectionListener(new SelectionAdapter() {
+			@Override
+			public void widgetDefaultSelected(SelectionEvent e) {
+				runSearch();
+			}
+		});
+		for (SearchField field : SearchField.values()) {
+			Button button = new Button(bar, SWT.CHECK);
+			button.setText(field.getDescription());
+			button.setSelection(true);
+			button.addSelectionListener(new SelectionAdapter() {
+				@Override
+				public void widgetSelected(SelectionEvent e) {
+					runSearch();
+				}
+			});
+			fieldButtons.put(field, button);
+		}
+
+		tableViewer = new TableViewer(parent, SWT.H_SCROLL | SWT.V_SCROLL | SWT.BORDER | SWT.FULL_SELECTION);
+		Table table = tableViewer.getTable();
+		table.setHeaderVisible(true);
+		table.setLinesVisible(false);
+		table.setLayoutData(new GridData(SWT.FILL, SWT.FILL, true, true));
+		createColumn(0, r -> r.getCertificateAuthority().getDescription());
+		createColumn(1, r -> r.getCertificate().getProperty(Key.subject));
+		createColumn(2, r -> r.getCertificate().getProperty(Key.certificateSerialNumber));
+		createColumn(3, r -> r.getField().getDescription());
+		createColumn(4, r -> r.isRevoked() ? "Revoked" : "Issued");
+		tableViewer.setContentProvider(ArrayContentProvider.getInstance());
+		tableViewer.setInput(results);
+		tableViewer.addDoubleClickListener(e -> {
+			Object element = ((IStructuredSelection) e.getSelection()).getFirstElement();
+			if (element instanceof SearchResult) {
+				ViewCertificateInformationAction action = new ViewCertificateInformationAction(
+						((SearchResult) element).getCertificate(), null, editor);
+				ContextInjectionFactory.inject(action, context);
+				action.run();
+			}
+		});
+
+		status = new Label(parent, SWT.NONE);
+		status.setLayoutData(new GridData(SWT.FILL, SWT.BOTTOM, true, false));
+
+		if (query != null && !query.isEmpty()) {
+			queryText.setText(query);
+			runSearch();
+		}
+	}
+
+	/**
+	 * Create a table column.
+	 * 
+	 * @param index The column index.
+	 * @param text Function to get the text of the column.
+	 */
+	private void createColumn(int index, Function<SearchResult, String> text) {
+		TableViewerColumn col = new TableViewerColumn(tableViewer, SWT.NONE);
+		col.getColumn().setText(COLUMN_NAMES[index]);
+		col.getColumn().setWidth(COLUMN_SIZES[index]);
+		col.getColumn().setResizable(true);
+		col.setLabelProvider(new ColumnLabelProvider() {
+			@Override
+			public String getText(Object element) {
+				return element instanceof SearchResult ? text.apply((SearchResult) element) : "";
+			}
+		});
+	}
+
+	/**
+	 * Start a new search, cancelling any running search.
+	 */
+	private void runSearch() {
+		cancel();
+		results.clear();
+		tableViewer.refresh();
+		String query = queryText.getText().trim();
+		Set<SearchField> fields = EnumSet.noneOf(SearchField.class);
+		fieldButtons.forEach((field, button) -> {
+			if (button.getSelection()) {
+				fields.add(field);
+			}
+		});
+		if (query.isEmpty() || fields.isEmpty()) {
+			status.setText("");
+			return;
+		}
+		status.setText("Searching...");
+		final Object searchToken = new Object();
+		synchronized (received) {
+			token = searchToken;
+		}
+		final List<CertificateAuthority> skipped = new ArrayList<>();
+		final CompletableFuture<Integer> current = manager.search(query, fields, r -> {
+			boolean schedule;
+			synchronized (received) {
+				if (token != searchToken) {
+					return;
+				}
+				schedule = received.isEmpty();
+				received.addAll(r);
+			}
+			// One update per batch of arrivals, rather than per CA.
+			if (schedule) {
+				sync.asyncExec(this::showReceived);
+			}
+		}, skipped);
+		search = current;
+		current.whenComplete((count, e) -> sync.asyncExec(() -> {
+			if (search != current || status.isDisposed()) {
+				return;
+			}
+			showReceived();
+			if (e != null) {
+				logger.error(e, "Search failed");
+				status.setText("Search failed");
+			} else {
+				StringBuilder text = new StringBuilder();
+				text.append(count).append(count == 1 ? " certificate found" : " certificates found");
+				synchronized (skipped) {
+					if (!skipped.isEmpty()) {
+						text.append(" (not searched: ").append(skipped.stream()
+								.map(CertificateAuthority::getDescription).collect(Collectors.joining(", ")))
+								.append(")");
+					}
+				}
+				status.setText(text.toString());
+			}
+			search = null;
+		}));
+	}
+
+	/**
+	 * Add the received results to the table.
+	 */
+	private void showReceived() {
+		SearchResult[] items;
+		synchronized (received) {
+			items = received.toArray(new SearchResult[received.size()]);
+			received.clear();
+		}
+		if (items.length == 0 || tableViewer.getTable().isDisposed()) {
+			return;
+		}
+		for (SearchResult r : items) {
+			results.add(r);
+		}
+		tableViewer.add(items);
+	}
+
+	/**
+	 * Cancel the running search (if any).
+	 */
+	private void cancel() {
+		if (search != null) {
+			search.cancel(false);
+			search = null;
+		}
+		synchronized (received) {
+			token = null;
+			received.clear();
+		}
+	}
+
+	@PreDestroy
+	public void dispose() {
+		cancel();
+	}
+
+	@Focus
+	public void setFocus() {
+		if (this.queryText != null) {
+			sync.asyncExec(() -> {
+				if (!this.queryText.isDisposed()) {
+					this.queryText.setFocus();
+				}
+			});
+		}
+	}
+}
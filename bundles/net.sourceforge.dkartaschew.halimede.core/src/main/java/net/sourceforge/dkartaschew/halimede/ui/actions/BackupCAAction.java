@@ -18,7 +18,9 @@
 package net.sourceforge.dkartaschew.halimede.ui.actions;
 
 import java.lang.reflect.InvocationTargetException;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.time.LocalDate;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.logging.Level;
 
@@ -55,6 +57,11 @@ public class BackupCAAction extends Action {
 	 */
 	private final CertificateAuthorityNode node;
 
+	/**
+	 * Flag to indicate an incremental backup
+	 */
+	private final boolean incremental;
+
 	@Inject
 	private Logger logger;
 
@@ -64,21 +71,51 @@ public class BackupCAAction extends Action {
 	 * @param node The node to act on
 	 */
 	public BackupCAAction(CertificateAuthorityNode node) {
-		super("Backup Certificate Authority");
-		setToolTipText("Create a backup of this Certificate Authority");
+		this(node, false);
+	}
+
+	/**
+	 * Create a new action that creates a backup of the CA.
+	 * 
+	 * @param node The node to act on
+	 * @param incremental TRUE to backup only the changes since a previous backup.
+	 */
+	public BackupCAAction(CertificateAuthorityNode node, boolean incremental) {
+		super(incremental ? "Incremental Backup Certificate Authority" : "Backup Certificate Authority");
+		setToolTipText(incremental //
+				? "Create a backup of the changes to this Certificate Authority since a previous backup"
+				: "Create a backup of this Certificate Authority");
 		this.node = node;
+		this.incremental = incremental;
 	}
 
 	@Override
 	public void run() {
 		node.getCertificateAuthority().getActivityLogger().log(Level.INFO, "Start Backup Certificate Authority");
+		/*
+		 * Get the backup to base an incremental backup on.
+		 */
+		String base = null;
+		if (incremental) {
+			FileDialog baseDialog = new FileDialog(shell, SWT.OPEN);
+			baseDialog.setText("Select Previous Backup");
+			baseDialog.setFilterExtensions(new String[] { "*.zip", "*.*" });
+			baseDialog.setFilterNames(new String[] { "Zip File (*.zip)", "All Files (*.*)" });
+			base = baseDialog.open();
+			if (base == null) {
+				node.getCertificateAuthority().getActivityLogger().log(Level.INFO,
+						"Backup Certificate Authority Aborted");
+				return;
+			}
+		}
+		final Path basePath = base != null ? Paths.get(base) : null;
 		/*
 		 * Get the filename to backup to.
 		 */
 		FileDialog dialog = new FileDialog(shell, SWT.SAVE);
 		dialog.setText("Backup Certificate Authority");
 		dialog.setOverwrite(true);
-		dialog.setFileName(node.getDescription() + ".zip");
+		dialog.setFileName(node.getDescription() + (incremental ? "-" + LocalDate.now() : "") + ".zip");
 		dialog.setFilterExtensions(new String[] { "*.zip", "*.*" });
 		dialog.setFilterNames(new String[] { "Zip File (*.zip)", "All Files (*.*)" });
 		String filename = dialog.open();
@@ -97,7 +134,7 @@ public class BackupCAAction extends Action {
 			try {
 				progressDialog.run(true, true, m -> {
 					try {
-						BackupUtil.backup(ca, Paths.get(filename), m);
+						BackupUtil.backup(ca, Paths.get(filename), basePath, m);
 					} catch (Throwable e) {
 						failure.set(e);
 					}
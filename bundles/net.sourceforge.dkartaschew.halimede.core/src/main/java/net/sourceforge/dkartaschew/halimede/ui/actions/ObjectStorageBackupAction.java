@@ -0,0 +1,132 @@
+/*-
+ * Halimede Certificate Manager Plugin for Eclipse 
+ * Copyright (C) 2017-2021 Darran Kartaschew 
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v2.0 which
+ * accompanies this distribution and is available at
+ *
+ * http://www.eclipse.org/legal/epl-v20.html
+ * 
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the Eclipse
+ * Public License, v. 2.0 are satisfied: GNU General Public License, version 2
+ * with the GNU Classpath Exception which is
+ * available at https://www.gnu.org/software/classpath/license.html.
+ */
+
+package net.sourceforge.dkartaschew.halimede.ui.actions;
+
+import java.lang.reflect.InvocationTargetException;
+import java.time.LocalDate;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Level;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+
+import org.eclipse.e4.core.services.log.Logger;
+import org.eclipse.e4.ui.services.IServiceConstants;
+import org.eclipse.jface.action.Action;
+import org.eclipse.jface.dialogs.InputDialog;
+import org.eclipse.jface.dialogs.MessageDialog;
+import org.eclipse.jface.dialogs.ProgressMonitorDialog;
+import org.eclipse.jface.window.Window;
+import org.eclipse.swt.widgets.Shell;
+
+import net.sourceforge.dkartaschew.halimede.backup.S3BackupTarget;
+import net.sourceforge.dkartaschew.halimede.data.CertificateAuthority;
+import net.sourceforge.dkartaschew.halimede.ui.node.CertificateAuthorityNode;
+import net.sourceforge.dkartaschew.halimede.util.BackupUtil;
+import net.sourceforge.dkartaschew.halimede.util.ExceptionUtil;
+
+@SuppressWarnings("restriction")
+public class ObjectStorageBackupAction extends Action {
+
+	/**
+	 * UI Shell
+	 */
+	@Inject
+	@Named(IServiceConstants.ACTIVE_SHELL)
+	private Shell shell;
+
+	/**
+	 * CA Node
+	 */
+	private final CertificateAuthorityNode node;
+
+	@Inject
+	private Logger logger;
+
+	/**
+	 * Create a new action that creates a backup of the CA in the configured object store.
+	 * 
+	 * @param node The node to act on
+	 */
+	public ObjectStorageBackupAction(CertificateAuthorityNode node) {
+		super("Backup Certificate Authority to Object Storage");
+		setToolTipText("Create a backup of this Certificate Authority in the configured object storage");
+		setEnabled(S3BackupTarget.isConfigured());
+		this.node = node;
+	}
+
+	@Override
+	public void run() {
+		final CertificateAuthority ca = node.getCertificateAuthority();
+		final S3BackupTarget target;
+		try {
+			target = S3BackupTarget.getConfigured();
+		} catch (IllegalArgumentException e) {
+			MessageDialog.openError(shell, "Backup Failed",
+					"Object storage is not correctly configured: " + ExceptionUtil.getMessage(e));
+			return;
+		}
+		if (target == null) {
+			MessageDialog.openError(shell, "Backup Failed", "Object storage is not configured.");
+			return;
+		}
+		InputDialog dialog = new InputDialog(shell, "Backup Certificate Authority to Object Storage",
+				"Backup name in '" + target + "'", node.getDescription() + "-" + LocalDate.now() + ".zip",
+				v -> v == null || v.trim().isEmpty() ? "A backup name is required" : null);
+		if (dialog.open() != Window.OK) {
+			ca.getActivityLogger().log(Level.INFO, "Backup Certificate Authority Aborted");
+			return;
+		}
+		final String name = dialog.getValue().trim();
+		if (logger != null) {
+			logger.info("User selected to backup the CA to object storage as: " + target + name);
+		}
+
+		/*
+		 * Create the progress dialog and run.
+		 */
+		ProgressMonitorDialog progressDialog = new ProgressMonitorDialog(shell);
+		AtomicReference<Throwable> failure = new AtomicReference<>();
+		try {
+			progressDialog.run(true, true, m -> {
+				try {
+					BackupUtil.backup(ca, target, name, null, m);
+				} catch (Throwable e) {
+					failure.set(e);
+				}
+			});
+		} catch (InvocationTargetException | InterruptedException e) {
+			failure.set(e);
+		}
+		/*
+		 * Get the completion status, and display completion dialog.
+		 */
+		String status = progressDialog.getReturnCode() != Window.CANCEL ? "Complete" : "Cancelled";
+		if (failure.get() == null) {
+			MessageDialog.openInformation(shell, "Backup " + status, "Backup of Certificate Authority '"
+					+ ca.getDescription() + "' to '" + target + name + "' " + status);
+		} else {
+			if (logger != null) {
+				logger.error(failure.get(), "Backup Failed with: " + ExceptionUtil.getMessage(failure.get()));
+			}
+			MessageDialog.openError(shell, "Backup Failed", "Backup of Certificate Authority '" + ca.getDescription()
+					+ "' to '" + target + name + "' failed with error: " + ExceptionUtil.getMessage(failure.get()));
+		}
+		ca.getActivityLogger().log(Level.INFO, "Backup Certificate Authority " + status);
+	}
+}
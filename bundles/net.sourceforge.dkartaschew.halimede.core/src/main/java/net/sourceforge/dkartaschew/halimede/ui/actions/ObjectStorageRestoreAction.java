@@ -0,0 +1,166 @@
+/*-
+ * Halimede Certificate Manager Plugin for Eclipse 
+ * Copyright (C) 2017-2021 Darran Kartaschew 
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v2.0 which
+ * accompanies this distribution and is available at
+ *
+ * http://www.eclipse.org/legal/epl-v20.html
+ * 
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the Eclipse
+ * Public License, v. 2.0 are satisfied: GNU General Public License, version 2
+ * with the GNU Classpath Exception which is
+ * available at https://www.gnu.org/software/classpath/license.html.
+ */
+
+package net.sourceforge.dkartaschew.halimede.ui.actions;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+
+import org.eclipse.core.runtime.SubMonitor;
+import org.eclipse.e4.core.services.log.Logger;
+import org.eclipse.e4.ui.services.IServiceConstants;
+import org.eclipse.jface.action.Action;
+import org.eclipse.jface.dialogs.MessageDialog;
+import org.eclipse.jface.dialogs.ProgressMonitorDialog;
+import org.eclipse.jface.viewers.ArrayContentProvider;
+import org.eclipse.jface.viewers.LabelProvider;
+import org.eclipse.jface.window.Window;
+import org.eclipse.swt.widgets.DirectoryDialog;
+import org.eclipse.swt.widgets.Shell;
+import org.eclipse.ui.dialogs.ListDialog;
+
+import net.sourceforge.dkartaschew.halimede.backup.S3BackupTarget;
+import net.sourceforge.dkartaschew.halimede.data.CertificateAuthourityManager;
+import net.sourceforge.dkartaschew.halimede.util.BackupUtil;
+import net.sourceforge.dkartaschew.halimede.util.ExceptionUtil;
+
+@SuppressWarnings("restriction")
+public class ObjectStorageRestoreAction extends Action {
+
+	/**
+	 * UI Shell
+	 */
+	@Inject
+	@Named(IServiceConstants.ACTIVE_SHELL)
+	private Shell shell;
+
+	/**
+	 * CA Manager
+	 */
+	private final CertificateAuthourityManager manager;
+
+	@Inject
+	private Logger logger;
+
+	/**
+	 * Create a new action that restores a CA from the configured object store.
+	 * 
+	 * @param manager The CA Manager
+	 */
+	public ObjectStorageRestoreAction(CertificateAuthourityManager manager) {
+		super("Restore Certificate Authority from Object Storage");
+		setToolTipText("Restore Certificate Authority from a backup in the configured object storage.");
+		setEnabled(S3BackupTarget.isConfigured());
+		this.manager = manager;
+	}
+
+	@Override
+	public void run() {
+		final S3BackupTarget target;
+		final List<String> backups;
+		try {
+			target = S3BackupTarget.getConfigured();
+			if (target == null) {
+				MessageDialog.openError(shell, "Restore Failed", "Object storage is not configured.");
+				return;
+			}
+			backups = target.list();
+		} catch (IOException | IllegalArgumentException e) {
+			if (logger != null) {
+				logger.error(e, "Listing Backups Failed with: " + ExceptionUtil.getMessage(e));
+			}
+			MessageDialog.openError(shell, "Restore Failed",
+					"Unable to list the backups in object storage due to error: " + ExceptionUtil.getMessage(e));
+			return;
+		}
+		if (backups.isEmpty()) {
+			MessageDialog.openInformation(shell, "Restore Certificate Authority",
+					"No backups found in '" + target + "'.");
+			return;
+		}
+		/*
+		 * Get the restoration details
+		 */
+		ListDialog dialog = new ListDialog(shell);
+		dialog.setTitle("Restore Certificate Authority from Object Storage");
+		dialog.setMessage("Select the backup in '" + target + "' to restore");
+		dialog.setContentProvider(ArrayContentProvider.getInstance());
+		dialog.setLabelProvider(new LabelProvider());
+		dialog.setInput(backups);
+		if (dialog.open() != Window.OK || dialog.getResult() == null || dialog.getResult().length == 0) {
+			return;
+		}
+		final String name = (String) dialog.getResult()[0];
+		DirectoryDialog directoryDialog = new DirectoryDialog(shell);
+		directoryDialog.setText("Restore Location");
+		directoryDialog.setMessage("Select the location to restore the Certificate Authority to");
+		String directory = directoryDialog.open();
+		if (directory == null) {
+			return;
+		}
+		final Path destination = Paths.get(directory);
+		if (logger != null) {
+			logger.info("User selected to restore '" + target + name + "' to location: " + destination);
+		}
+
+		/*
+		 * Create the progress dialog and run.
+		 */
+		ProgressMonitorDialog progressDialog = new ProgressMonitorDialog(shell);
+		AtomicReference<Throwable> failure = new AtomicReference<>();
+		try {
+			progressDialog.run(true, true, m -> {
+				try {
+					Path location = BackupUtil.restore(target, name, destination, m);
+					if (location != null) {
+						m.subTask("");
+						progressDialog.setCancelable(false);
+						SubMonitor subMonitor = SubMonitor.convert(m, //
+								"Opening Certificate Authority - " + location, 1);
+						manager.open(location);
+						subMonitor.done();
+					}
+				} catch (Throwable e) {
+					failure.set(e);
+				}
+			});
+		} catch (InvocationTargetException | InterruptedException e) {
+			failure.set(e);
+		}
+		/*
+		 * Get the completion status, and display completion dialog.
+		 */
+		String status = progressDialog.getReturnCode() != Window.CANCEL ? "Complete" : "Cancelled";
+		if (failure.get() == null) {
+			MessageDialog.openInformation(shell, "Restore " + status, "Restore of Certificate Authority backup '"
+					+ target + name + "' to '" + destination + "' " + status);
+		} else {
+			if (logger != null) {
+				logger.error(failure.get(), "Restore Failed with: " + ExceptionUtil.getMessage(failure.get()));
+			}
+			MessageDialog.openError(shell, "Restore Failed", "Restore of Certificate Authority '" + target + name
+					+ "' to '" + destination + "' failed with error: " + ExceptionUtil.getMessage(failure.get()));
+		}
+	}
+}
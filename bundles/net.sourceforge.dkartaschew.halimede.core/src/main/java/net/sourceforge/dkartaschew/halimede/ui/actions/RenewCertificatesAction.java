@@ -0,0 +1,150 @@
+/*-
+ * Halimede Certificate Manager Plugin for Eclipse 
+ * Copyright (C) 2017-2021 Darran Kartaschew 
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v2.0 which
+ * accompanies this distribution and is available at
+ *
+ * http://www.eclipse.org/legal/epl-v20.html
+ * 
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the Eclipse
+ * Public License, v. 2.0 are satisfied: GNU General Public License, version 2
+ * with the GNU Classpath Exception which is
+ * available at https://www.gnu.org/software/classpath/license.html.
+ */
+
+package net.sourceforge.dkartaschew.halimede.ui.actions;
+
+import java.util.List;
+import java.util.logging.Level;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.e4.core.services.log.Logger;
+import org.eclipse.e4.ui.di.UISynchronize;
+import org.eclipse.e4.ui.services.IServiceConstants;
+import org.eclipse.jface.action.Action;
+import org.eclipse.jface.dialogs.IDialogConstants;
+import org.eclipse.jface.dialogs.MessageDialog;
+import org.eclipse.swt.widgets.Shell;
+
+import net.sourceforge.dkartaschew.halimede.data.CertificateAuthority;
+import net.sourceforge.dkartaschew.halimede.data.IssuedCertificateProperties;
+import net.sourceforge.dkartaschew.halimede.data.renewal.RenewalEngine;
+import net.sourceforge.dkartaschew.halimede.data.renewal.RenewalReport;
+import net.sourceforge.dkartaschew.halimede.ui.dialogs.InputDialogEx;
+import net.sourceforge.dkartaschew.halimede.ui.dialogs.PassphraseDialog;
+import net.sourceforge.dkartaschew.halimede.util.ExceptionUtil;
+
+@SuppressWarnings("restriction")
+public class RenewCertificatesAction extends Action {
+
+	/**
+	 * The default renewal window in days.
+	 */
+	private final static int DEFAULT_WINDOW = 30;
+
+	/**
+	 * The node that contains the reference to the CA
+	 */
+	private CertificateAuthority ca;
+
+	@Inject
+	private Logger logger;
+
+	@Inject
+	private UISynchronize sync;
+
+	@Inject
+	@Named(IServiceConstants.ACTIVE_SHELL)
+	private Shell shell;
+
+	/**
+	 * Create a new renew certificates action
+	 * 
+	 * @param ca The Certificate Authority
+	 */
+	public RenewCertificatesAction(CertificateAuthority ca) {
+		super("Renew Expiring Certificates");
+		this.ca = ca;
+		setEnabled(!ca.isLocked());
+		if (!ca.isLocked()) {
+			setToolTipText("Renew the certificates of this authority which expire soon");
+		} else {
+			setToolTipText("Unlock the authority to enable renewal of certificates.");
+		}
+	}
+
+	@Override
+	public void setEnabled(boolean enabled) {
+		super.setEnabled(!ca.isLocked() ? enabled : false);
+	}
+
+	@Override
+	public void run() {
+		InputDialogEx dialog = new InputDialogEx(shell, "Renew Expiring Certificates",
+				"Renew certificates which expire within the number of days", Integer.toString(DEFAULT_WINDOW), value -> {
+					try {
+						return Integer.parseInt(value.trim()) >= 0 ? null : "The number of days must not be negative";
+					} catch (NumberFormatException e) {
+						return "Enter the number of days";
+					}
+				}, "Find", "Cancel", "Number of days from now.");
+		if (dialog.open() != IDialogConstants.OK_ID) {
+			return;
+		}
+		int days = Integer.parseInt(dialog.getValue().trim());
+
+		RenewalEngine engine = new RenewalEngine(ca);
+		List<IssuedCertificateProperties> candidates = engine.findCandidates(days);
+		if (candidates.isEmpty()) {
+			MessageDialog.openInformation(shell, "Renew Expiring Certificates",
+					"No certificates expire within " + days + " days.");
+			return;
+		}
+		if (!MessageDialog.openQuestion(shell, "Renew Expiring Certificates",
+				candidates.size() + " certificates expire within " + days + " days. Renew these certificates?")) {
+			return;
+		}
+		PassphraseDialog passwordDialog = new PassphraseDialog(shell, "Certificate Passphrase",
+				"Enter the passphrase for re-keyed Certificates", "");
+		if (passwordDialog.open() != IDialogConstants.OK_ID) {
+			return;
+		}
+		String password = passwordDialog.getValue();
+
+		ca.getActivityLogger().log(Level.INFO, "Start renewal of {0} certificates", candidates.size());
+		Job job = Job.create("Renew Certificates - " + ca.getDescription(), monitor -> {
+			try {
+				RenewalReport report = engine.renew(candidates, password, monitor);
+				ca.getActivityLogger().log(Level.INFO, "Renewed {0} of {1} certificates",
+						new Object[] { report.getRenewedCount(), candidates.size() });
+				sync.asyncExec(() -> {
+					if (report.getFailedCount() == 0) {
+						MessageDialog.openInformation(shell, "Renew Expiring Certificates", report.getSummary());
+					} else {
+						MessageDialog.openWarning(shell, "Renew Expiring Certificates", report.getSummary());
+					}
+				});
+			} catch (Throwable e) {
+				if (logger != null)
+					logger.error(e, "Renewing the certificates Failed");
+				sync.asyncExec(() -> {
+					MessageDialog.openError(shell, "Renewing the Certificates Failed",
+							"Renewing the certificates failed with the following error: "
+									+ ExceptionUtil.getMessage(e));
+				});
+			}
+			if (monitor != null) {
+				monitor.done();
+			}
+			return Status.OK_STATUS;
+		});
+		job.schedule();
+	}
+}
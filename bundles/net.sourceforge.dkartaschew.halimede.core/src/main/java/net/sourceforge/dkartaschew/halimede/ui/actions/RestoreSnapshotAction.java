@@ -0,0 +1,180 @@
+/*-
+ * Halimede Certificate Manager Plugin for Eclipse 
+ * Copyright (C) 2017-2021 Darran Kartaschew 
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v2.0 which
+ * accompanies this distribution and is available at
+ *
+ * http://www.eclipse.org/legal/epl-v20.html
+ * 
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the Eclipse
+ * Public License, v. 2.0 are satisfied: GNU General Public License, version 2
+ * with the GNU Classpath Exception which is
+ * available at https://www.gnu.org/software/classpath/license.html.
+ */
+
+package net.sourceforge.dkartaschew.halimede.ui.actions;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.nio.file.Path;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.FormatStyle;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Level;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.e4.core.services.log.Logger;
+import org.eclipse.e4.ui.services.IServiceConstants;
+import org.eclipse.jface.action.Action;
+import org.eclipse.jface.dialogs.MessageDialog;
+import org.eclipse.jface.dialogs.ProgressMonitorDialog;
+import org.eclipse.jface.viewers.ArrayContentProvider;
+import org.eclipse.jface.viewers.LabelProvider;
+import org.eclipse.jface.window.Window;
+import org.eclipse.swt.widgets.Shell;
+import org.eclipse.ui.dialogs.ListDialog;
+
+import net.sourceforge.dkartaschew.halimede.backup.Snapshot;
+import net.sourceforge.dkartaschew.halimede.data.CertificateAuthority;
+import net.sourceforge.dkartaschew.halimede.data.CertificateAuthourityManager;
+import net.sourceforge.dkartaschew.halimede.ui.node.CertificateAuthorityNode;
+import net.sourceforge.dkartaschew.halimede.ui.util.Dialogs;
+import net.sourceforge.dkartaschew.halimede.util.ExceptionUtil;
+import net.sourceforge.dkartaschew.halimede.util.SnapshotUtil;
+
+@SuppressWarnings("restriction")
+public class RestoreSnapshotAction extends Action {
+
+	/**
+	 * UI Shell
+	 */
+	@Inject
+	@Named(IServiceConstants.ACTIVE_SHELL)
+	private Shell shell;
+	/**
+	 * CA Manager.
+	 */
+	private final CertificateAuthourityManager manager;
+	/**
+	 * CA Node
+	 */
+	private final CertificateAuthorityNode node;
+
+	@Inject
+	private Logger logger;
+
+	/**
+	 * Create a new action that restores the CA to a snapshot.
+	 * 
+	 * @param manager The CA Manager which owns the CA.
+	 * @param node The node to act on
+	 */
+	public RestoreSnapshotAction(CertificateAuthourityManager manager, CertificateAuthorityNode node) {
+		super("Restore Certificate Authority Snapshot");
+		setToolTipText("Restore this Certificate Authority to a previous local snapshot");
+		this.manager = manager;
+		this.node = node;
+	}
+
+	@Override
+	public void run() {
+		final CertificateAuthority ca = node.getCertificateAuthority();
+		final Path basePath = ca.getBasePath();
+		List<Snapshot> snapshots;
+		try {
+			snapshots = SnapshotUtil.list(basePath);
+		} catch (IOException e) {
+			if (logger != null) {
+				logger.error(e, "Listing Snapshots Failed with: " + ExceptionUtil.getMessage(e));
+			}
+			MessageDialog.openError(shell, "Restore Snapshot Failed",
+					"Unable to list the snapshots of Certificate Authority '" + ca.getDescription()
+							+ "' due to error: " + ExceptionUtil.getMessage(e));
+			return;
+		}
+		if (snapshots.isEmpty()) {
+			MessageDialog.openInformation(shell, "Restore Snapshot",
+					"Certificate Authority '" + ca.getDescription() + "' has no snapshots.");
+			return;
+		}
+		/*
+		 * Select the snapshot.
+		 */
+		final DateTimeFormatter format = DateTimeFormatter.ofLocalizedDateTime(FormatStyle.MEDIUM);
+		ListDialog dialog = new ListDialog(shell);
+		dialog.setTitle("Restore Certificate Authority Snapshot");
+		dialog.setMessage("Select the snapshot of '" + ca.getDescription() + "' to restore");
+		dialog.setContentProvider(ArrayContentProvider.getInstance());
+		dialog.setLabelProvider(new LabelProvider() {
+			@Override
+			public String getText(Object element) {
+				Snapshot s = (Snapshot) element;
+				return format.format(s.getCreated().withZoneSameInstant(ZoneId.systemDefault())) + " ("
+						+ s.getId() + ")";
+			}
+		});
+		dialog.setInput(snapshots);
+		dialog.setInitialSelections(snapshots.get(0));
+		if (dialog.open() != Window.OK || dialog.getResult() == null || dialog.getResult().length == 0) {
+			return;
+		}
+		final Snapshot snapshot = (Snapshot) dialog.getResult()[0];
+		if (!Dialogs.openConfirm(shell, "Restore Certificate Authority Snapshot",
+				"Are you sure you wish to restore Certificate Authority '" + ca.getDescription() + "' to snapshot '"
+						+ snapshot.getId() + "'? The Certificate Authority will be closed and reopened.",
+				"Restore", "Cancel")) {
+			return;
+		}
+		if (logger != null) {
+			logger.info("User selected to restore the CA at location: " + basePath + " to snapshot: "
+					+ snapshot.getId());
+		}
+		ca.getActivityLogger().log(Level.INFO, "Restoring Certificate Authority Snapshot {0}", snapshot.getId());
+		/*
+		 * Close the CA, restore and reopen.
+		 */
+		manager.remove(ca);
+		ProgressMonitorDialog progressDialog = new ProgressMonitorDialog(shell);
+		AtomicReference<Throwable> failure = new AtomicReference<>();
+		try {
+			progressDialog.run(true, false, m -> {
+				m.beginTask("Restoring Snapshot '" + snapshot.getId() + "'", IProgressMonitor.UNKNOWN);
+				try {
+					SnapshotUtil.restore(basePath, snapshot);
+					m.subTask("Opening Certificate Authority - " + basePath);
+				} catch (Throwable e) {
+					failure.set(e);
+				}
+				try {
+					// Reopen even if the restore failed, as the previous state was snapshot first.
+					manager.open(basePath);
+				} catch (Throwable e) {
+					failure.compareAndSet(null, e);
+				} finally {
+					m.done();
+				}
+			});
+		} catch (InvocationTargetException | InterruptedException e) {
+			failure.set(e);
+		}
+		if (failure.get() == null) {
+			MessageDialog.openInformation(shell, "Restore Snapshot Complete", "Restore of Certificate Authority '"
+					+ ca.getDescription() + "' to snapshot '" + snapshot.getId() + "' Complete");
+		} else {
+			if (logger != null) {
+				logger.error(failure.get(), "Restore Snapshot Failed with: " + ExceptionUtil.getMessage(failure.get()));
+			}
+			MessageDialog.openError(shell, "Restore Snapshot Failed",
+					"Restore of Certificate Authority '" + ca.getDescription() + "' to snapshot '" + snapshot.getId()
+							+ "' failed with error: " + ExceptionUtil.getMessage(failure.get()));
+		}
+	}
+}
@@ -0,0 +1,163 @@
+/*-
+ * Halimede Certificate Manager Plugin for Eclipse 
+ * Copyright (C) 2017-2021 Darran Kartaschew 
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v2.0 which
+ * accompanies this distribution and is available at
+ *
+ * http://www.eclipse.org/legal/epl-v20.html
+ * 
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the Eclipse
+ * Public License, v. 2.0 are satisfied: GNU General Public License, version 2
+ * with the GNU Classpath Exception which is
+ * available at https://www.gnu.org/software/classpath/license.html.
+ */
+
+package net.sourceforge.dkartaschew.halimede.ui.actions;
+
+import java.time.ZonedDateTime;
+import java.util.logging.Level;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.e4.core.services.log.Logger;
+import org.eclipse.e4.ui.di.UISynchronize;
+import org.eclipse.e4.ui.services.IServiceConstants;
+import org.eclipse.jface.action.Action;
+import org.eclipse.jface.dialogs.IDialogConstants;
+import org.eclipse.jface.dialogs.MessageDialog;
+import org.eclipse.swt.widgets.Shell;
+
+import net.sourceforge.dkartaschew.halimede.data.CertificateAuthority;
+import net.sourceforge.dkartaschew.halimede.data.renewal.KeyRollover;
+import net.sourceforge.dkartaschew.halimede.data.renewal.RenewalReport;
+import net.sourceforge.dkartaschew.halimede.ui.dialogs.KeyRolloverDialog;
+import net.sourceforge.dkartaschew.halimede.ui.dialogs.PassphraseDialog;
+import net.sourceforge.dkartaschew.halimede.util.DateTimeUtil;
+import net.sourceforge.dkartaschew.halimede.util.ExceptionUtil;
+
+@SuppressWarnings("restriction")
+public class RolloverCAKeyAction extends Action {
+
+	/**
+	 * The default validity period (in years) of the new CA certificate.
+	 */
+	private final static int DEFAULT_VALIDITY = 10;
+
+	/**
+	 * The node that contains the reference to the CA
+	 */
+	private CertificateAuthority ca;
+
+	@Inject
+	private Logger logger;
+
+	@Inject
+	private UISynchronize sync;
+
+	@Inject
+	@Named(IServiceConstants.ACTIVE_SHELL)
+	private Shell shell;
+
+	/**
+	 * Create a new key rollover action
+	 * 
+	 * @param ca The Certificate Authority
+	 */
+	public RolloverCAKeyAction(CertificateAuthority ca) {
+		super("Roll Over Key");
+		this.ca = ca;
+		setEnabled(!ca.isLocked());
+		if (!ca.isLocked()) {
+			setToolTipText("Replace the key of this authority, and re-issue all valid certificates");
+		} else {
+			setToolTipText("Unlock the authority to enable key rollover.");
+		}
+	}
+
+	@Override
+	public void setEnabled(boolean enabled) {
+		super.setEnabled(!ca.isLocked() ? enabled : false);
+	}
+
+	@Override
+	public void run() {
+		KeyRollover rollover = new KeyRollover(ca);
+		boolean resume;
+		try {
+			resume = rollover.isInProgress();
+		} catch (Exception e) {
+			if (logger != null)
+				logger.error(e, "Reading the key rollover state Failed");
+			MessageDialog.openError(shell, "Key Rollover Failed",
+					"Reading the key rollover state failed with the following error: " + ExceptionUtil.getMessage(e));
+			return;
+		}
+		KeyRolloverDialog dialog = null;
+		if (resume) {
+			if (!MessageDialog.openQuestion(shell, "Roll Over Key",
+					"A key rollover of this authority was interrupted. Resume the rollover?")) {
+				return;
+			}
+		} else {
+			dialog = new KeyRolloverDialog(shell, ca.getDescription(),
+					ZonedDateTime.now(DateTimeUtil.DEFAULT_ZONE).plusYears(DEFAULT_VALIDITY));
+			if (dialog.open() != IDialogConstants.OK_ID) {
+				return;
+			}
+			if (!MessageDialog.openConfirm(shell, "Roll Over Key", "The key of this authority will be replaced with a new "
+					+ dialog.getKeyType().getDescription() + " key, and all valid certificates re-issued. Continue?")) {
+				return;
+			}
+		}
+		PassphraseDialog passwordDialog = new PassphraseDialog(shell, "Certificate Passphrase",
+				"Enter the passphrase of the issued Certificates", "");
+		if (passwordDialog.open() != IDialogConstants.OK_ID) {
+			return;
+		}
+		String password = passwordDialog.getValue();
+		final KeyRolloverDialog settings = dialog;
+
+		ca.getActivityLogger().log(Level.INFO, resume ? "Resume key rollover" : "Start key rollover");
+		Job job = Job.create("Key Rollover - " + ca.getDescription(), monitor -> {
+			try {
+				RenewalReport report = settings == null ? rollover.resume(password, monitor)
+						: rollover.start(settings.getKeyType(), settings.getSignatureAlgorithm(),
+								settings.getExpiryDate(), password, monitor);
+				ca.getActivityLogger().log(Level.INFO, "Key rollover re-issued {0} certificates",
+						report.getRenewedCount());
+				String message = report.getSummary();
+				if (report.isCancelled()) {
+					message = "The key rollover was cancelled, and may be resumed later." + System.lineSeparator()
+							+ System.lineSeparator() + message;
+				}
+				final String summary = message;
+				sync.asyncExec(() -> {
+					if (report.getFailedCount() == 0 && !report.isCancelled()) {
+						MessageDialog.openInformation(shell, "Roll Over Key", summary);
+					} else {
+						MessageDialog.openWarning(shell, "Roll Over Key", summary);
+					}
+				});
+			} catch (Throwable e) {
+				if (logger != null)
+					logger.error(e, "Key Rollover Failed");
+				sync.asyncExec(() -> {
+					MessageDialog.openError(shell, "Key Rollover Failed",
+							"The key rollover failed with the following error: " + ExceptionUtil.getMessage(e)
+									+ System.lineSeparator() + "The rollover may be resumed.");
+				});
+			}
+			if (monitor != null) {
+				monitor.done();
+			}
+			return Status.OK_STATUS;
+		});
+		job.schedule();
+	}
+}
@@ -0,0 +1,98 @@
+/*-
+ * Halimede Certificate Manager Plugin for Eclipse 
+ * Copyright (C) 2017-2021 Darran Kartaschew 
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v2.0 which
+ * accompanies this distribution and is available at
+ *
+ * http://www.eclipse.org/legal/epl-v20.html
+ * 
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the Eclipse
+ * Public License, v. 2.0 are satisfied: GNU General Public License, version 2
+ * with the GNU Classpath Exception which is
+ * available at https://www.gnu.org/software/classpath/license.html.
+ */
+
+package net.sourceforge.dkartaschew.halimede.ui.actions;
+
+import java.util.List;
+
+import javax.inject.Inject;
+
+import org.eclipse.e4.core.services.log.Logger;
+import org.eclipse.e4.ui.model.application.MApplication;
+import org.eclipse.e4.ui.model.application.ui.basic.MBasicFactory;
+import org.eclipse.e4.ui.model.application.ui.basic.MPart;
+import org.eclipse.e4.ui.model.application.ui.basic.MPartStack;
+import org.eclipse.e4.ui.workbench.modeling.EModelService;
+import org.eclipse.e4.ui.workbench.modeling.EPartService;
+import org.eclipse.e4.ui.workbench.modeling.EPartService.PartState;
+import org.eclipse.jface.action.Action;
+
+import net.sourceforge.dkartaschew.halimede.PluginDefaults;
+import net.sourceforge.dkartaschew.halimede.ui.SearchResultsPart;
+import net.sourceforge.dkartaschew.halimede.ui.lifecycle.CAManagerProcessor;
+
+@SuppressWarnings("restriction")
+public class SearchCertificatesAction extends Action {
+
+	/**
+	 * The ID of the stack to add to.
+	 */
+	private String editor;
+
+	@Inject
+	private Logger logger;
+
+	@Inject
+	private EPartService partService;
+
+	@Inject
+	private MApplication application;
+
+	@Inject
+	private EModelService modelService;
+
+	/**
+	 * Create a new action.
+	 * 
+	 * @param editor The ID of the part stack to add the part to.
+	 */
+	public SearchCertificatesAction(String editor) {
+		super("Search Certificates");
+		setToolTipText("Search the certificates of all open Certificate Authorities");
+		this.editor = editor;
+	}
+
+	@Override
+	public void run() {
+		List<MPartStack> stacks = modelService.findElements(application, null, MPartStack.class, null);
+		if (stacks == null || stacks.isEmpty()) {
+			logger.error("No Part Stacks found, unable to add view to existing Part");
+			return;
+		}
+
+		// Create a new one.
+		MPart part = MBasicFactory.INSTANCE.createPart();
+		part.setLabel(SearchResultsPart.LABEL);
+		part.setDescription(SearchResultsPart.DESCRIPTION);
+		part.setContributionURI("bundleclass://" + PluginDefaults.ID + "/" + SearchResultsPart.class.getName());
+		part.setElementId(SearchResultsPart.ID + "#" + System.currentTimeMillis());
+		part.setCloseable(true);
+		part.setToBeRendered(true);
+		part.getTags().add(CAManagerProcessor.CLOSE_TAG);
+
+		// Add our data to the part.
+		part.getTransientData().put(SearchResultsPart.PARTSTACK_EDITOR, editor);
+
+		// Find the preferred part stack, otherwise just use the first one.
+		MPartStack stack = stacks.stream().filter(p -> p.getElementId().equals(editor)).findFirst()
+				.orElse(stacks.get(0));
+
+		// Add our element.
+		stack.getChildren().add(part);
+		partService.showPart(part, PartState.ACTIVATE);
+	}
+}
@@ -0,0 +1,113 @@
+/*-
+ * Halimede Certificate Manager Plugin for Eclipse 
+ * Copyright (C) 2017-2021 Darran Kartaschew 
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v2.0 which
+ * accompanies this distribution and is available at
+ *
+ * http://www.eclipse.org/legal/epl-v20.html
+ * 
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the Eclipse
+ * Public License, v. 2.0 are satisfied: GNU General Public License, version 2
+ * with the GNU Classpath Exception which is
+ * available at https://www.gnu.org/software/classpath/license.html.
+ */
+
+package net.sourceforge.dkartaschew.halimede.ui.actions;
+
+import java.util.List;
+import java.util.logging.Level;
+
+import javax.inject.Inject;
+
+import org.eclipse.e4.core.services.log.Logger;
+import org.eclipse.e4.ui.model.application.MApplication;
+import org.eclipse.e4.ui.model.application.ui.basic.MBasicFactory;
+import org.eclipse.e4.ui.model.application.ui.basic.MPart;
+import org.eclipse.e4.ui.model.application.ui.basic.MPartStack;
+import org.eclipse.e4.ui.workbench.modeling.EModelService;
+import org.eclipse.e4.ui.workbench.modeling.EPartService;
+import org.eclipse.e4.ui.workbench.modeling.EPartService.PartState;
+import org.eclipse.jface.action.Action;
+
+import net.sourceforge.dkartaschew.halimede.PluginDefaults;
+import net.sourceforge.dkartaschew.halimede.data.CertificateAuthority;
+import net.sourceforge.dkartaschew.halimede.data.store.FileSystemDatastore;
+import net.sourceforge.dkartaschew.halimede.ui.AuditLogPart;
+import net.sourceforge.dkartaschew.halimede.ui.lifecycle.CAManagerProcessor;
+import net.sourceforge.dkartaschew.halimede.util.Strings;
+
+@SuppressWarnings("restriction")
+public class ShowAuditLogAction extends Action {
+
+	/**
+	 * The CA.
+	 */
+	private CertificateAuthority ca;
+
+	/**
+	 * The ID of the stack to add to.
+	 */
+	private String editor;
+
+	@Inject
+	private Logger logger;
+
+	@Inject
+	private EPartService partService;
+
+	@Inject
+	private MApplication application;
+
+	@Inject
+	private EModelService modelService;
+
+	/**
+	 * Create a new action.
+	 * 
+	 * @param ca The Certificate Authority.
+	 * @param editor The ID of the part stack to add the part to.
+	 */
+	public ShowAuditLogAction(CertificateAuthority ca, String editor) {
+		super("View Activity Log");
+		this.ca = ca;
+		this.editor = editor;
+		setToolTipText("Search and follow the activity log of this authority");
+		setEnabled(ca.getDatastore() instanceof FileSystemDatastore);
+	}
+
+	@Override
+	public void run() {
+		List<MPartStack> stacks = modelService.findElements(application, null, MPartStack.class, null);
+		if (stacks == null || stacks.isEmpty()) {
+			logger.error("No Part Stacks found, unable to add view to existing Part");
+			return;
+		}
+
+		ca.getActivityLogger().log(Level.INFO, "View Activity Log");
+
+		// Create a new one.
+		MPart part = MBasicFactory.INSTANCE.createPart();
+		String desc = Strings.trim(ca.getDescription(), PluginDefaults.PART_HEADER_LENGTH);
+		part.setLabel("CA '" + desc + "' " + AuditLogPart.LABEL);
+		part.setDescription(AuditLogPart.DESCRIPTION);
+		part.setContributionURI("bundleclass://" + PluginDefaults.ID + "/" + AuditLogPart.class.getName());
+		part.setElementId(AuditLogPart.ID + "#" + System.currentTimeMillis());
+		part.setCloseable(true);
+		part.setToBeRendered(true);
+		part.getTags().add(CAManagerProcessor.CLOSE_TAG);
+
+		// Add our data to the part.
+		part.getTransientData().put(AuditLogPart.CA, ca);
+
+		// Find the preferred part stack, otherwise just use the first one.
+		MPartStack stack = stacks.stream().filter(p -> p.getElementId().equals(editor)).findFirst()
+				.orElse(stacks.get(0));
+
+		// Add our element.
+		stack.getChildren().add(part);
+		partService.showPart(part, PartState.ACTIVATE);
+	}
+}
@@ -0,0 +1,104 @@
+/*-
+ * Halimede Certificate Manager Plugin for Eclipse 
+ * Copyright (C) 2017-2021 Darran Kartaschew 
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v2.0 which
+ * accompanies this distribution and is available at
+ *
+ * http://www.eclipse.org/legal/epl-v20.html
+ * 
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the Eclipse
+ * Public License, v. 2.0 are satisfied: GNU General Public License, version 2
+ * with the GNU Classpath Exception which is
+ * available at https://www.gnu.org/software/classpath/license.html.
+ */
+
+package net.sourceforge.dkartaschew.halimede.ui.actions;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Level;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.e4.core.services.log.Logger;
+import org.eclipse.e4.ui.services.IServiceConstants;
+import org.eclipse.jface.action.Action;
+import org.eclipse.jface.dialogs.MessageDialog;
+import org.eclipse.jface.dialogs.ProgressMonitorDialog;
+import org.eclipse.swt.widgets.Shell;
+
+import net.sourceforge.dkartaschew.halimede.backup.Snapshot;
+import net.sourceforge.dkartaschew.halimede.data.CertificateAuthority;
+import net.sourceforge.dkartaschew.halimede.ui.node.CertificateAuthorityNode;
+import net.sourceforge.dkartaschew.halimede.util.ExceptionUtil;
+
+@SuppressWarnings("restriction")
+public class SnapshotCAAction extends Action {
+
+	/**
+	 * UI Shell
+	 */
+	@Inject
+	@Named(IServiceConstants.ACTIVE_SHELL)
+	private Shell shell;
+
+	/**
+	 * CA Node
+	 */
+	private final CertificateAuthorityNode node;
+
+	@Inject
+	private Logger logger;
+
+	/**
+	 * Create a new action that takes a snapshot of the CA.
+	 * 
+	 * @param node The node to act on
+	 */
+	public SnapshotCAAction(CertificateAuthorityNode node) {
+		super("Snapshot Certificate Authority");
+		setToolTipText("Take a local snapshot of this Certificate Authority");
+		this.node = node;
+	}
+
+	@Override
+	public void run() {
+		final CertificateAuthority ca = node.getCertificateAuthority();
+		if (logger != null) {
+			logger.info("User selected to snapshot the CA at location: " + ca.getBasePath());
+		}
+		ProgressMonitorDialog progressDialog = new ProgressMonitorDialog(shell);
+		AtomicReference<Snapshot> snapshot = new AtomicReference<>();
+		AtomicReference<Throwable> failure = new AtomicReference<>();
+		try {
+			progressDialog.run(true, false, m -> {
+				m.beginTask("Snapshot of '" + ca.getDescription() + "'", IProgressMonitor.UNKNOWN);
+				try {
+					snapshot.set(ca.snapshot());
+				} catch (Throwable e) {
+					failure.set(e);
+				} finally {
+					m.done();
+				}
+			});
+		} catch (InvocationTargetException | InterruptedException e) {
+			failure.set(e);
+		}
+		if (failure.get() == null) {
+			MessageDialog.openInformation(shell, "Snapshot Complete", "Snapshot '" + snapshot.get().getId()
+					+ "' of Certificate Authority '" + ca.getDescription() + "' Complete");
+		} else {
+			if (logger != null) {
+				logger.error(failure.get(), "Snapshot Failed with: " + ExceptionUtil.getMessage(failure.get()));
+			}
+			ca.getActivityLogger().log(Level.INFO, "Snapshot Certificate Authority Failed");
+			MessageDialog.openError(shell, "Snapshot Failed", "Snapshot of Certificate Authority '"
+					+ ca.getDescription() + "' failed with error: " + ExceptionUtil.getMessage(failure.get()));
+		}
+	}
+}
@@ -0,0 +1,110 @@
+/*-
+ * Halimede Certificate Manager Plugin for Eclipse 
+ * Copyright (C) 2017-2021 Darran Kartaschew 
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v2.0 which
+ * accompanies this distribution and is available at
+ *
+ * http://www.eclipse.org/legal/epl-v20.html
+ * 
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the Eclipse
+ * Public License, v. 2.0 are satisfied: GNU General Public License, version 2
+ * with the GNU Classpath Exception which is
+ * available at https://www.gnu.org/software/classpath/license.html.
+ */
+
+package net.sourceforge.dkartaschew.halimede.ui.actions;
+
+import java.lang.reflect.InvocationTargetException;
+import java.nio.file.Paths;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+
+import org.eclipse.e4.core.services.log.Logger;
+import org.eclipse.e4.ui.services.IServiceConstants;
+import org.eclipse.jface.action.Action;
+import org.eclipse.jface.dialogs.MessageDialog;
+import org.eclipse.jface.dialogs.ProgressMonitorDialog;
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.widgets.FileDialog;
+import org.eclipse.swt.widgets.Shell;
+
+import net.sourceforge.dkartaschew.halimede.backup.BackupManifest;
+import net.sourceforge.dkartaschew.halimede.util.BackupUtil;
+import net.sourceforge.dkartaschew.halimede.util.ExceptionUtil;
+
+@SuppressWarnings("restriction")
+public class VerifyBackupAction extends Action {
+
+	/**
+	 * UI Shell
+	 */
+	@Inject
+	@Named(IServiceConstants.ACTIVE_SHELL)
+	private Shell shell;
+
+	@Inject
+	private Logger logger;
+
+	/**
+	 * Create a new action that verifies a backup file, without restoring it.
+	 */
+	public VerifyBackupAction() {
+		super("Verify Backup");
+		setToolTipText("Verify the integrity of a Certificate Authority Backup File.");
+	}
+
+	@Override
+	public void run() {
+		FileDialog dialog = new FileDialog(shell, SWT.OPEN);
+		dialog.setText("Verify Backup");
+		dialog.setFilterExtensions(new String[] { "*.zip", "*.*" });
+		dialog.setFilterNames(new String[] { "Zip File (*.zip)", "All Files (*.*)" });
+		String filename = dialog.open();
+		if (filename == null) {
+			return;
+		}
+		if (logger != null) {
+			logger.info("User selected to verify backup '" + filename + "'");
+		}
+		/*
+		 * Create the progress dialog and run.
+		 */
+		ProgressMonitorDialog progressDialog = new ProgressMonitorDialog(shell);
+		AtomicReference<BackupManifest> result = new AtomicReference<>();
+		AtomicReference<Throwable> failure = new AtomicReference<>();
+		try {
+			progressDialog.run(true, true, m -> {
+				try {
+					result.set(BackupUtil.verify(Paths.get(filename), m));
+				} catch (Throwable e) {
+					failure.set(e);
+				}
+			});
+		} catch (InvocationTargetException | InterruptedException e) {
+			failure.set(e);
+		}
+		/*
+		 * Display completion dialog.
+		 */
+		if (failure.get() != null) {
+			if (logger != null) {
+				logger.error(failure.get(), "Verify Failed with: " + ExceptionUtil.getMessage(failure.get()));
+			}
+			MessageDialog.openError(shell, "Verify Failed", "Verification of backup '" + filename
+					+ "' failed with error: " + ExceptionUtil.getMessage(failure.get()));
+		} else if (result.get() == null) {
+			MessageDialog.openInformation(shell, "Verify Cancelled",
+					"Verification of backup '" + filename + "' Cancelled");
+		} else {
+			BackupManifest manifest = result.get();
+			MessageDialog.openInformation(shell, "Verify Complete",
+					"Backup '" + filename + "' of Certificate Authority '" + manifest.getDescription() + "' ("
+							+ manifest.getEntries().size() + " files) verified successfully.");
+		}
+	}
+}
@@ -17,7 +17,6 @@
 
 package net.sourceforge.dkartaschew.halimede.ui.actions;
 
-import java.nio.file.Path;
 import java.util.List;
 import java.util.logging.Level;
 
@@ -146,15 +145,14 @@ public class ViewCertificateRequestInformationAction extends Action implements S
 				return;
 			}
 			try {
-				Path p = null;
+				String container = null;
 				if (model2.getProperty(IssuedCertificateProperties.Key.revokeDate) == null) {
-					p = model2.getCertificateAuthority().getBasePath()//
-							.resolve(CertificateAuthority.ISSUED_PATH).resolve(filename);
+					container = CertificateAuthority.ISSUED_PATH;
 				} else {
-					p = model2.getCertificateAuthority().getBasePath()//
-							.resolve(CertificateAuthority.REVOKED_PATH).resolve(filename);
+					container = CertificateAuthority.REVOKED_PATH;
 				}
-				ICertificateRequest csr = CertificateRequestPKCS10.create(p);
+				ICertificateRequest csr = CertificateRequestPKCS10.decode(//
+						model2.getCertificateAuthority().getDatastore().read(container, filename));
 				model = new CertificateRequestProperties(null, csr);
 			} catch (Throwable e) {
 				if (logger != null) {
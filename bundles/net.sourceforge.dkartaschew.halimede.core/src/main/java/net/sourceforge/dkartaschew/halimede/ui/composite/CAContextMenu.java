@@ -43,8 +43,18 @@ import net.sourceforge.dkartaschew.halimede.ui.actions.CreateNewTemplateAction;
 import net.sourceforge.dkartaschew.halimede.ui.actions.DeleteCAAction;
 import net.sourceforge.dkartaschew.halimede.ui.actions.ImportCSRAction;
 import net.sourceforge.dkartaschew.halimede.ui.actions.LockUnlockAction;
+import net.sourceforge.dkartaschew.halimede.ui.actions.ObjectStorageBackupAction;
+import net.sourceforge.dkartaschew.halimede.ui.actions.ObjectStorageRestoreAction;
 import net.sourceforge.dkartaschew.halimede.ui.actions.OpenCAAction;
+import net.sourceforge.dkartaschew.halimede.ui.actions.RenewCertificatesAction;
 import net.sourceforge.dkartaschew.halimede.ui.actions.RestoreCAAction;
+import net.sourceforge.dkartaschew.halimede.ui.actions.RestoreSnapshotAction;
+import net.sourceforge.dkartaschew.halimede.ui.actions.RolloverCAKeyAction;
+import net.sourceforge.dkartaschew.halimede.ui.actions.SearchCertificatesAction;
+import net.sourceforge.dkartaschew.halimede.ui.actions.ShowAuditLogAction;
+import net.sourceforge.dkartaschew.halimede.ui.actions.ShowExpiringCertificatesAction;
+import net.sourceforge.dkartaschew.halimede.ui.actions.SnapshotCAAction;
+import net.sourceforge.dkartaschew.halimede.ui.actions.VerifyBackupAction;
 import net.sourceforge.dkartaschew.halimede.ui.actions.ViewCACertificateInformationAction;
 import net.sourceforge.dkartaschew.halimede.ui.node.CertificateAuthorityElement;
 import net.sourceforge.dkartaschew.halimede.ui.node.CertificateAuthorityNode;
@@ -89,6 +99,11 @@ public class CAContextMenu implements IMenuListener {
 			manager.add(toACI(new CreateNewCAExistingMaterialAction(this.manager)));
 			manager.add(toACI(new OpenCAAction(this.manager)));
 			manager.add(toACI(new RestoreCAAction(this.manager)));
+			manager.add(toACI(new ObjectStorageRestoreAction(this.manager)));
+			manager.add(toACI(new VerifyBackupAction()));
+			manager.add(new Separator());
+			manager.add(toACI(new SearchCertificatesAction(editor)));
+			manager.add(toACI(new ShowExpiringCertificatesAction(editor)));
 			injectMenuItems(manager);
 			return;
 		}
@@ -100,8 +115,14 @@ public class CAContextMenu implements IMenuListener {
 				CertificateAuthority ca = element.getCertificateAuthority();
 				manager.add(toACI(new ViewCACertificateInformationAction(ca, editor)));
 				manager.add(toACI(new CASettingsAction(element)));
+				manager.add(toACI(new ShowAuditLogAction(ca, editor)));
 				manager.add(toACI(new LockUnlockAction(viewer, element)));
 				manager.add(toACI(new BackupCAAction(element)));
+				manager.add(toACI(new BackupCAAction(element, true)));
+				manager.add(toACI(new ObjectStorageBackupAction(element)));
+				manager.add(toACI(new SnapshotCAAction(element)));
+				manager.add(toACI(new RestoreSnapshotAction(this.manager, element)));
+				manager.add(toACI(new RolloverCAKeyAction(ca)));
 				manager.add(toACI(new CloseCAAction(this.manager, element)));
 				manager.add(toACI(new DeleteCAAction(this.manager, element)));
 				manager.add(new Separator());
@@ -109,10 +130,16 @@ public class CAContextMenu implements IMenuListener {
 				manager.add(toACI(new CreateNewCAExistingMaterialAction(this.manager)));
 				manager.add(toACI(new OpenCAAction(this.manager)));
 				manager.add(toACI(new RestoreCAAction(this.manager)));
+				manager.add(toACI(new ObjectStorageRestoreAction(this.manager)));
+				manager.add(toACI(new VerifyBackupAction()));
 				manager.add(new Separator());
 				manager.add(toACI(new CreateIssuedCertificateAction(ca, editor)));
 				manager.add(toACI(new CreateNewTemplateAction(ca, editor)));
 				manager.add(toACI(new CreateCRLAction(ca, editor)));
+				manager.add(toACI(new RenewCertificatesAction(ca)));
+				manager.add(new Separator());
+				manager.add(toACI(new SearchCertificatesAction(editor)));
+				manager.add(toACI(new ShowExpiringCertificatesAction(editor)));
 			}
 			if (object instanceof CertificateAuthorityElement) {
 				CertificateAuthorityElement element = (CertificateAuthorityElement) object;
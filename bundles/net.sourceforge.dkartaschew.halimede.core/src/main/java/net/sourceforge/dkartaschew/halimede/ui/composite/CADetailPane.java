@@ -19,7 +19,9 @@ package net.sourceforge.dkartaschew.halimede.ui.composite;
 
 import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
+import java.util.ArrayList;
 import java.util.EnumMap;
+import java.util.List;
 
 import javax.inject.Inject;
 
@@ -28,10 +30,15 @@ import org.eclipse.e4.ui.di.UISynchronize;
 import org.eclipse.jface.viewers.ISelectionChangedListener;
 import org.eclipse.jface.viewers.IStructuredSelection;
 import org.eclipse.jface.viewers.SelectionChangedEvent;
+import org.eclipse.swt.SWT;
 import org.eclipse.swt.custom.StackLayout;
+import org.eclipse.swt.layout.GridData;
+import org.eclipse.swt.layout.GridLayout;
 import org.eclipse.swt.widgets.Composite;
+import org.eclipse.swt.widgets.Text;
 import net.sourceforge.dkartaschew.halimede.data.CertificateAuthority;
 import net.sourceforge.dkartaschew.halimede.data.CertificateAuthourityManager;
+import net.sourceforge.dkartaschew.halimede.data.ItemsChangeEvent;
 import net.sourceforge.dkartaschew.halimede.ui.CertificateManagerView;
 import net.sourceforge.dkartaschew.halimede.ui.composite.cadetails.AbstractDetailsPane;
 import net.sourceforge.dkartaschew.halimede.ui.composite.cadetails.IssuedCertificatesPane;
@@ -48,6 +55,16 @@ import net.sourceforge.dkartaschew.halimede.util.ExceptionUtil;
 @SuppressWarnings("restriction")
 public class CADetailPane extends Composite implements ISelectionChangedListener, PropertyChangeListener {
 
+	/**
+	 * The filter bar hint.
+	 */
+	private static final String FILTER_MESSAGE = "Filter";
+	/**
+	 * The filter bar tooltip.
+	 */
+	private static final String FILTER_TOOLTIP = "Show only items whose subject, description, comments, serial number "
+			+ "or key type contain all the words entered";
+
 	@Inject
 	private Logger logger;
 	
@@ -66,6 +83,14 @@ public class CADetailPane extends Composite implements ISelectionChangedListener
 	 * Stack layout for tables.
 	 */
 	private final StackLayout stack;
+	/**
+	 * The composite holding the table stack.
+	 */
+	private final Composite stackComposite;
+	/**
+	 * The filter bar.
+	 */
+	private final Text filterText;
 
 	/**
 	 * The last node we received a selected changed update from.
@@ -76,6 +101,15 @@ public class CADetailPane extends Composite implements ISelectionChangedListener
 	 */
 	private ElementType type;
 
+	/**
+	 * Events received, but not yet processed.
+	 */
+	private final List<PropertyChangeEvent> pending = new ArrayList<>();
+	/**
+	 * Is processing of the pending events scheduled?
+	 */
+	private boolean scheduled;
+
 	/**
 	 * Create the composite.
 	 * 
@@ -89,13 +123,27 @@ public class CADetailPane extends Composite implements ISelectionChangedListener
 		super(parent, style);
 		this.manager = manager;
 		this.tableViewerElements = new EnumMap<>(ElementType.class);
+		GridLayout layout = new GridLayout(1, false);
+		layout.marginWidth = 0;
+		layout.marginHeight = 0;
+		this.setLayout(layout);
+
+		// Filter bar; filters the displayed table as the user types.
+		filterText = new Text(this, SWT.SEARCH | SWT.ICON_SEARCH | SWT.ICON_CANCEL);
+		filterText.setMessage(FILTER_MESSAGE);
+		filterText.setToolTipText(FILTER_TOOLTIP);
+		filterText.setLayoutData(new GridData(SWT.FILL, SWT.CENTER, true, false, 1, 1));
+		filterText.addModifyListener(e -> applyFilter());
+
+		this.stackComposite = new Composite(this, SWT.NONE);
+		this.stackComposite.setLayoutData(new GridData(SWT.FILL, SWT.FILL, true, true, 1, 1));
 		this.stack = new StackLayout();
-		this.setLayout(stack);
-		tableViewerElements.put(ElementType.Issued, new IssuedCertificatesPane(this, this, view));
-		tableViewerElements.put(ElementType.Pending, new PendingCertificatesPane(this, this, view));
-		tableViewerElements.put(ElementType.Revoked, new RevokedCertificatesPane(this, this, view));
-		tableViewerElements.put(ElementType.CRLs, new CRLPane(this, this, view));
-		tableViewerElements.put(ElementType.Template, new TemplatesPane(this, this, view));
+		this.stackComposite.setLayout(stack);
+		tableViewerElements.put(ElementType.Issued, new IssuedCertificatesPane(stackComposite, this, view));
+		tableViewerElements.put(ElementType.Pending, new PendingCertificatesPane(stackComposite, this, view));
+		tableViewerElements.put(ElementType.Revoked, new RevokedCertificatesPane(stackComposite, this, view));
+		tableViewerElements.put(ElementType.CRLs, new CRLPane(stackComposite, this, view));
+		tableViewerElements.put(ElementType.Template, new TemplatesPane(stackComposite, this, view));
 
 		// Set default layout.
 		setLayout(ElementType.Issued);
@@ -133,55 +181,129 @@ public class CADetailPane extends Composite implements ISelectionChangedListener
 
 	@Override
 	public void propertyChange(final PropertyChangeEvent evt) {
-		sync.asyncExec(() -> {
-			if (tableViewerElements.get(ElementType.Issued).isDisposed()) {
+		// Queue the event, and process all queued events at most once per UI frame.
+		synchronized (pending) {
+			pending.add(evt);
+			if (scheduled) {
 				return;
 			}
-			if (lastNode != null) {
-				try {
-					// If the update came from the
-					if (lastNode instanceof CertificateAuthorityElement) {
-						CertificateAuthorityElement element = (CertificateAuthorityElement) lastNode;
-						if (evt.getSource() == element.getParent().getCertificateAuthority()) {
-							if (lastNode.getItems() != null) {
-								Object[] items = lastNode.getItems();
-								tableViewerElements.get(lastNode.getType()).setInput(items);
-							}
-						}
-					}
-					if (lastNode instanceof CertificateAuthorityNode) {
-						CertificateAuthorityNode element = (CertificateAuthorityNode) lastNode;
-						if (evt.getSource() == element.getCertificateAuthority()) {
-							ICertificateTreeNode node = (ICertificateTreeNode) element.getChildren()[0];
-							if (node.getItems() != null) {
-								Object[] items = node.getItems();
-								tableViewerElements.get(node.getType()).setInput(items);
-							}
+			scheduled = true;
+		}
+		sync.asyncExec(this::processEvents);
+	}
+
+	/**
+	 * Process all queued events. Item changes to the displayed table are applied as deltas; any other change to the
+	 * displayed CA reloads the table (once).
+	 */
+	private void processEvents() {
+		List<PropertyChangeEvent> events;
+		synchronized (pending) {
+			events = new ArrayList<>(pending);
+			pending.clear();
+			scheduled = false;
+		}
+		if (tableViewerElements.get(ElementType.Issued).isDisposed()) {
+			return;
+		}
+		boolean reload = false;
+		for (PropertyChangeEvent evt : events) {
+			if (evt instanceof ItemsChangeEvent) {
+				// Drop the cached rows of changed items.
+				ItemsChangeEvent<?> items = (ItemsChangeEvent<?>) evt;
+				for (AbstractDetailsPane<?> pane : tableViewerElements.values()) {
+					pane.invalidate(items.getUpdated());
+					pane.invalidate(items.getRemoved());
+				}
+			}
+			if (lastNode == null) {
+				continue;
+			}
+			try {
+				CertificateAuthority ca = getCertificateAuthority();
+				if (evt.getSource() == ca && ca != null) {
+					if (evt instanceof ItemsChangeEvent) {
+						ItemsChangeEvent<?> items = (ItemsChangeEvent<?>) evt;
+						ElementType shown = getShownType();
+						if (!reload && shown != null && shown == getElementType(items.getPropertyName())) {
+							tableViewerElements.get(shown).update(items.getAdded(), items.getRemoved(),
+									items.getUpdated());
 						}
+					} else {
+						reload = true;
 					}
-					if (evt.getSource() == manager) {
-						// Ensure the last node's CA still exists. If not, clear the table...
-						CertificateAuthority ca = null;
-						if (lastNode instanceof CertificateAuthorityElement) {
-							ca = ((CertificateAuthorityElement) lastNode).getParent().getCertificateAuthority();
-						}
-						if (lastNode instanceof CertificateAuthorityNode) {
-							ca = ((CertificateAuthorityNode) lastNode).getCertificateAuthority();
-						}
-						if (!manager.getCertificateAuthorities().contains(ca)) {
-							lastNode = null;
-							for (ElementType t : ElementType.values()) {
-								tableViewerElements.get(t).setInput(new Object[0]);
-							}
-							setLayout(ElementType.Issued);
+				}
+				if (evt.getSource() == manager) {
+					// Ensure the last node's CA still exists. If not, clear the table...
+					if (!manager.getCertificateAuthorities().contains(ca)) {
+						lastNode = null;
+						reload = false;
+						for (ElementType t : ElementType.values()) {
+							tableViewerElements.get(t).setInput(new Object[0]);
 						}
+						setLayout(ElementType.Issued);
 					}
-				} catch (Throwable e) {
-					if (logger != null)
-						logger.error(e, ExceptionUtil.getMessage(e));
 				}
+			} catch (Throwable e) {
+				if (logger != null)
+					logger.error(e, ExceptionUtil.getMessage(e));
 			}
-		});
+		}
+		if (reload) {
+			try {
+				ICertificateTreeNode node = lastNode;
+				if (lastNode instanceof CertificateAuthorityNode) {
+					node = (ICertificateTreeNode) ((CertificateAuthorityNode) lastNode).getChildren()[0];
+				}
+				if (node.getItems() != null) {
+					Object[] items = node.getItems();
+					tableViewerElements.get(node.getType()).setInput(items);
+				}
+			} catch (Throwable e) {
+				if (logger != null)
+					logger.error(e, ExceptionUtil.getMessage(e));
+			}
+		}
+	}
+
+	/**
+	 * Get the element type of the table showing the items of the last node.
+	 * 
+	 * @return The element type, or NULL if no node is selected.
+	 */
+	private ElementType getShownType() {
+		if (lastNode instanceof CertificateAuthorityElement) {
+			return lastNode.getType();
+		}
+		if (lastNode instanceof CertificateAuthorityNode) {
+			return ElementType.Issued;
+		}
+		return null;
+	}
+
+	/**
+	 * Get the element type for the given CA collection property.
+	 * 
+	 * @param property The property name.
+	 * @return The element type, or NULL if the property is not a collection.
+	 */
+	private static ElementType getElementType(String property) {
+		if (CertificateAuthority.PROPERTY_ISSUED.equals(property)) {
+			return ElementType.Issued;
+		}
+		if (CertificateAuthority.PROPERTY_REVOKED.equals(property)) {
+			return ElementType.Revoked;
+		}
+		if (CertificateAuthority.PROPERTY_REQUESTS.equals(property)) {
+			return ElementType.Pending;
+		}
+		if (CertificateAuthority.PROPERTY_TEMPLATE.equals(property)) {
+			return ElementType.Template;
+		}
+		if (CertificateAuthority.PROPERTY_CRLS.equals(property)) {
+			return ElementType.CRLs;
+		}
+		return null;
 	}
 
 	/**
@@ -216,14 +338,28 @@ public class CADetailPane extends Composite implements ISelectionChangedListener
 	private void setLayout(ElementType type) {
 		this.type = type;
 		this.stack.topControl = tableViewerElements.get(type).getTableViewer().getControl();
-		this.requestLayout();
+		this.stackComposite.layout();
+		applyFilter();
+	}
+
+	/**
+	 * Apply the filter bar's query to the displayed table.
+	 */
+	private void applyFilter() {
+		if (type != null && !filterText.isDisposed()) {
+			tableViewerElements.get(type).setFilter(filterText.getText());
+		}
 	}
 
 	/**
 	 * Signal a refresh is required.
 	 */
 	public void refresh() {
-		sync.asyncExec(() -> tableViewerElements.get(type).getTableViewer().refresh());
+		sync.asyncExec(() -> {
+			AbstractDetailsPane<?> pane = tableViewerElements.get(type);
+			pane.invalidate(null);
+			pane.refresh();
+		});
 	}
 
 }
@@ -20,10 +20,13 @@ package net.sourceforge.dkartaschew.halimede.ui.composite;
 import org.eclipse.e4.core.contexts.ContextInjectionFactory;
 import org.eclipse.jface.action.IAction;
 import org.eclipse.jface.action.MenuManager;
+import org.eclipse.jface.viewers.AbstractTreeViewer;
 import org.eclipse.jface.viewers.ColumnViewerToolTipSupport;
 import org.eclipse.jface.viewers.DecoratingStyledCellLabelProvider;
 import org.eclipse.jface.viewers.ISelectionChangedListener;
 import org.eclipse.jface.viewers.IStructuredSelection;
+import org.eclipse.jface.viewers.ITreeViewerListener;
+import org.eclipse.jface.viewers.TreeExpansionEvent;
 import org.eclipse.jface.viewers.TreeViewer;
 import org.eclipse.jface.viewers.TreeViewerColumn;
 import org.eclipse.jface.viewers.ViewerComparator;
@@ -91,6 +94,22 @@ public class CAListPane {
 		menuMgr.setRemoveAllWhenShown(true);
 		caList.getControl().setMenu(menu);
 
+		// Load the contents of a CA when first expanded.
+		caList.addTreeListener(new ITreeViewerListener() {
+
+			@Override
+			public void treeExpanded(TreeExpansionEvent event) {
+				if (event.getElement() instanceof CertificateAuthorityNode) {
+					view.load(((CertificateAuthorityNode) event.getElement()).getCertificateAuthority());
+				}
+			}
+
+			@Override
+			public void treeCollapsed(TreeExpansionEvent event) {
+				// Nothing to do.
+			}
+		});
+
 		// Add double click listener to view the CA Details if the selected element was the CA Node.
 		caList.addDoubleClickListener(e -> {
 			if (e.getSelection() instanceof IStructuredSelection) {
@@ -117,12 +136,17 @@ public class CAListPane {
 	 * fails if this viewer does not have a content provider. Subclassers are advised to override
 	 * <code>inputChanged</code> rather than this method, but may extend this method if required.
 	 * 
+	 * <p>
+	 * Nodes that were expanded remain expanded.
+	 * 
 	 * @param input The input object.
 	 */
 	public void setInput(Object input) {
 		if (!caList.getTree().isDisposed()) {
+			Object[] expanded = caList.getExpandedElements();
 			caList.setInput(input);
 			caList.refresh();
+			caList.setExpandedElements(expanded);
 		}
 	}
 
@@ -166,6 +190,17 @@ public class CAListPane {
 		caList.addSelectionChangedListener(listener);
 	}
 
+	/**
+	 * Collapse the node of the given CA.
+	 * 
+	 * @param ca The Certificate Authority.
+	 */
+	public void collapse(CertificateAuthority ca) {
+		if (!caList.getTree().isDisposed()) {
+			caList.collapseToLevel(new CertificateAuthorityNode(ca), AbstractTreeViewer.ALL_LEVELS);
+		}
+	}
+
 	/**
 	 * Force a UI refresh of the List.
 	 */
@@ -16,6 +16,9 @@
  */
 package net.sourceforge.dkartaschew.halimede.ui.composite.cadetails;
 
+import java.util.Collection;
+import java.util.NoSuchElementException;
+
 import org.eclipse.e4.core.contexts.ContextInjectionFactory;
 import org.eclipse.jface.action.MenuManager;
 import org.eclipse.jface.viewers.TableViewer;
@@ -26,11 +29,15 @@ import org.eclipse.swt.events.SelectionEvent;
 import org.eclipse.swt.widgets.Menu;
 import org.eclipse.swt.widgets.TableColumn;
 
+import net.sourceforge.dkartaschew.halimede.enumeration.KeyType;
 import net.sourceforge.dkartaschew.halimede.ui.CertificateManagerView;
 import net.sourceforge.dkartaschew.halimede.ui.actions.CADetailsDblClickListener;
 import net.sourceforge.dkartaschew.halimede.ui.composite.CADetailContextMenu;
 import net.sourceforge.dkartaschew.halimede.ui.composite.CADetailPane;
+import net.sourceforge.dkartaschew.halimede.ui.data.AbstractRowComparator;
 import net.sourceforge.dkartaschew.halimede.ui.data.CADetailsComparator;
+import net.sourceforge.dkartaschew.halimede.ui.data.RowModelCache;
+import net.sourceforge.dkartaschew.halimede.ui.labelproviders.CADetailsLabelProvider;
 import net.sourceforge.dkartaschew.halimede.ui.node.ElementType;
 
 /**
@@ -43,6 +50,16 @@ public abstract class AbstractDetailsPane<T> {
 	 */
 	private final ElementType type;
 
+	/**
+	 * The content provider, serving the sorted view of the input.
+	 */
+	private SortedLazyContentProvider contentProvider;
+
+	/**
+	 * The row view model cache. (May be NULL).
+	 */
+	private RowModelCache<T> rows;
+
 	/**
 	 * Create a new Details Pane instance
 	 * 
@@ -75,6 +92,53 @@ public abstract class AbstractDetailsPane<T> {
 	 */
 	public abstract CADetailsComparator<T> getTableComparator();
 
+	/**
+	 * Get the text fields of the element which the table may be filtered on.
+	 * 
+	 * @param element The element.
+	 * @return The text fields. (Fields may be NULL).
+	 */
+	protected abstract String[] getFilterText(T element);
+
+	/**
+	 * Create the lazy content provider for the (virtual) table.
+	 * 
+	 * @return The content provider.
+	 */
+	@SuppressWarnings("unchecked")
+	protected SortedLazyContentProvider createContentProvider() {
+		contentProvider = new SortedLazyContentProvider(getTableViewer(), getTableComparator(),
+				e -> getFilterText((T) e));
+		return contentProvider;
+	}
+
+	/**
+	 * Get the description of the key type, for filtering.
+	 * 
+	 * @param keyType The key type name.
+	 * @return The key type description, or NULL if not a valid key type.
+	 */
+	protected static String getKeyTypeDescription(String keyType) {
+		try {
+			return KeyType.getKeyTypeDescription(keyType);
+		} catch (NoSuchElementException | NullPointerException | IllegalArgumentException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Create the row view model cache, shared by the comparator (for sort keys) and the label provider (for cell and
+	 * tooltip text).
+	 * 
+	 * @param comparator The column comparator.
+	 * @param labels The label provider.
+	 */
+	protected void createRowModelCache(AbstractRowComparator<T> comparator, CADetailsLabelProvider<T> labels) {
+		rows = new RowModelCache<>(comparator, labels);
+		comparator.setCache(rows);
+		labels.setCache(rows);
+	}
+
 	/**
 	 * Create the columns for the table
 	 */
@@ -105,7 +169,7 @@ public abstract class AbstractDetailsPane<T> {
 					int dir = getTableComparator().getDirection();
 					column.getParent().setSortDirection(dir);
 					column.getParent().setSortColumn(column);
-					getTableViewer().refresh();
+					refresh();
 				}
 			}
 		};
@@ -148,6 +212,63 @@ public abstract class AbstractDetailsPane<T> {
 		getTableViewer().setInput(items);
 	}
 
+	/**
+	 * Apply changes to individual items of the current input, retaining the sort order, selection and scroll
+	 * position.
+	 * 
+	 * @param added The items added.
+	 * @param removed The items removed.
+	 * @param updated The items updated.
+	 */
+	public void update(Collection<?> added, Collection<?> removed, Collection<?> updated) {
+		if (contentProvider != null) {
+			contentProvider.update(added, removed, updated);
+		} else {
+			TableViewer viewer = getTableViewer();
+			viewer.remove(removed.toArray());
+			viewer.add(added.toArray());
+			viewer.update(updated.toArray(), null);
+		}
+	}
+
+	/**
+	 * Filter the table, showing only items whose text contains all the terms of the query.
+	 * 
+	 * @param query The query, or NULL (or blank) to show all items.
+	 */
+	public void setFilter(String query) {
+		if (contentProvider != null) {
+			contentProvider.setFilter(query);
+		}
+	}
+
+	/**
+	 * Drop the cached rows of the given elements, so their sort keys and text are recreated.
+	 * 
+	 * @param elements The elements which have changed, or NULL for all elements.
+	 */
+	public void invalidate(Collection<?> elements) {
+		if (rows == null) {
+			return;
+		}
+		if (elements == null) {
+			rows.clear();
+		} else {
+			rows.invalidate(elements);
+		}
+	}
+
+	/**
+	 * Sort and redisplay the current input.
+	 */
+	public void refresh() {
+		if (contentProvider != null) {
+			contentProvider.sort();
+		} else {
+			getTableViewer().refresh();
+		}
+	}
+
 	/**
 	 * Returns <code>true</code> if the widget has been disposed, and
 	 * <code>false</code> otherwise.
@@ -16,7 +16,6 @@
  */
 package net.sourceforge.dkartaschew.halimede.ui.composite.cadetails;
 
-import org.eclipse.jface.viewers.ArrayContentProvider;
 import org.eclipse.jface.viewers.ColumnViewerToolTipSupport;
 import org.eclipse.jface.viewers.TableViewer;
 import org.eclipse.swt.SWT;
@@ -55,19 +54,22 @@ public class CRLPane extends AbstractDetailsPane<CRLProperties> {
 
 	public CRLPane(Composite parent, CADetailPane pane, CertificateManagerView view) {
 		super(ElementType.CRLs);
-		this.comparator = new CADetailsComparator<CRLProperties>(new CRLColumnComparator());
+		CRLColumnComparator columns = new CRLColumnComparator();
+		CRLColumnLabelProvider labels = new CRLColumnLabelProvider();
+		createRowModelCache(columns, labels);
+		this.comparator = new CADetailsComparator<CRLProperties>(columns);
 		tableViewer = new TableViewer(parent,
-				SWT.H_SCROLL | SWT.V_SCROLL | SWT.BORDER | SWT.FULL_SELECTION | SWT.DOUBLE_BUFFERED);
+				SWT.VIRTUAL | SWT.H_SCROLL | SWT.V_SCROLL | SWT.BORDER | SWT.FULL_SELECTION | SWT.DOUBLE_BUFFERED);
 		Table table = tableViewer.getTable();
 		table.setHeaderVisible(true);
 		table.setLinesVisible(false);
 
 		// set the content provider
 		createColumns(COLUMN_NAMES, COLUMN_SIZES);
-		tableViewer.setContentProvider(ArrayContentProvider.getInstance());
-		tableViewer.setLabelProvider(new CRLColumnLabelProvider());
+		tableViewer.setUseHashlookup(true);
+		tableViewer.setContentProvider(createContentProvider());
+		tableViewer.setLabelProvider(labels);
 		ColumnViewerToolTipSupport.enableFor(tableViewer);
-		tableViewer.setComparator(comparator);
 
 		// Add double click listener.
 		addDoubleClickListener(pane, view);
@@ -86,4 +88,11 @@ public class CRLPane extends AbstractDetailsPane<CRLProperties> {
 		return comparator;
 	}
 
+	@Override
+	protected String[] getFilterText(CRLProperties element) {
+		return new String[] { element.getProperty(CRLProperties.Key.issuer),
+				element.getProperty(CRLProperties.Key.comments),
+				element.getProperty(CRLProperties.Key.crlSerialNumber) };
+	}
+
 }
@@ -16,7 +16,6 @@
  */
 package net.sourceforge.dkartaschew.halimede.ui.composite.cadetails;
 
-import org.eclipse.jface.viewers.ArrayContentProvider;
 import org.eclipse.jface.viewers.ColumnViewerToolTipSupport;
 import org.eclipse.jface.viewers.TableViewer;
 import org.eclipse.swt.SWT;
@@ -24,6 +23,7 @@ import org.eclipse.swt.widgets.Composite;
 import org.eclipse.swt.widgets.Table;
 
 import net.sourceforge.dkartaschew.halimede.data.IssuedCertificateProperties;
+import net.sourceforge.dkartaschew.halimede.data.IssuedCertificateProperties.Key;
 import net.sourceforge.dkartaschew.halimede.ui.CertificateManagerView;
 import net.sourceforge.dkartaschew.halimede.ui.composite.CADetailPane;
 import net.sourceforge.dkartaschew.halimede.ui.data.CADetailsComparator;
@@ -66,9 +66,12 @@ public class IssuedCertificatesPane extends AbstractDetailsPane<IssuedCertificat
 	 */
 	public IssuedCertificatesPane(Composite parent, CADetailPane pane, CertificateManagerView view) {
 		super(ElementType.Issued);
-		this.comparator = new CADetailsComparator<IssuedCertificateProperties>(new IssuedCertificateComparator());
+		IssuedCertificateComparator columns = new IssuedCertificateComparator();
+		IssuedCertificateColumnLabelProvider labels = new IssuedCertificateColumnLabelProvider();
+		createRowModelCache(columns, labels);
+		this.comparator = new CADetailsComparator<IssuedCertificateProperties>(columns);
 		tableViewer = new TableViewer(parent,
-				SWT.H_SCROLL | SWT.V_SCROLL | SWT.BORDER | SWT.FULL_SELECTION | SWT.DOUBLE_BUFFERED);
+				SWT.VIRTUAL | SWT.H_SCROLL | SWT.V_SCROLL | SWT.BORDER | SWT.FULL_SELECTION | SWT.DOUBLE_BUFFERED);
 
 		Table table = tableViewer.getTable();
 		table.setHeaderVisible(true);
@@ -76,10 +79,10 @@ public class IssuedCertificatesPane extends AbstractDetailsPane<IssuedCertificat
 
 		// set the content provider
 		createColumns(COLUMN_NAMES, COLUMN_SIZES);
-		tableViewer.setContentProvider(ArrayContentProvider.getInstance());
-		tableViewer.setLabelProvider(new IssuedCertificateColumnLabelProvider());
+		tableViewer.setUseHashlookup(true);
+		tableViewer.setContentProvider(createContentProvider());
+		tableViewer.setLabelProvider(labels);
 		ColumnViewerToolTipSupport.enableFor(tableViewer);
-		tableViewer.setComparator(comparator);
 
 		// Add double click listener.
 		addDoubleClickListener(pane, view);
@@ -97,4 +100,11 @@ public class IssuedCertificatesPane extends AbstractDetailsPane<IssuedCertificat
 	public CADetailsComparator<IssuedCertificateProperties> getTableComparator() {
 		return comparator;
 	}
+
+	@Override
+	protected String[] getFilterText(IssuedCertificateProperties element) {
+		return new String[] { element.getProperty(Key.subject), element.getProperty(Key.description),
+				element.getProperty(Key.comments), element.getProperty(Key.certificateSerialNumber),
+				element.getProperty(Key.keyType), getKeyTypeDescription(element.getProperty(Key.keyType)) };
+	}
 }
@@ -16,7 +16,6 @@
  */
 package net.sourceforge.dkartaschew.halimede.ui.composite.cadetails;
 
-import org.eclipse.jface.viewers.ArrayContentProvider;
 import org.eclipse.jface.viewers.ColumnViewerToolTipSupport;
 import org.eclipse.jface.viewers.TableViewer;
 import org.eclipse.swt.SWT;
@@ -24,6 +23,7 @@ import org.eclipse.swt.widgets.Composite;
 import org.eclipse.swt.widgets.Table;
 
 import net.sourceforge.dkartaschew.halimede.data.CertificateRequestProperties;
+import net.sourceforge.dkartaschew.halimede.data.CertificateRequestProperties.Key;
 import net.sourceforge.dkartaschew.halimede.ui.CertificateManagerView;
 import net.sourceforge.dkartaschew.halimede.ui.composite.CADetailPane;
 import net.sourceforge.dkartaschew.halimede.ui.data.CADetailsComparator;
@@ -54,9 +54,12 @@ public class PendingCertificatesPane extends AbstractDetailsPane<CertificateRequ
 
 	public PendingCertificatesPane(Composite parent, CADetailPane pane, CertificateManagerView view) {
 		super(ElementType.Pending);
-		this.comparator = new CADetailsComparator<CertificateRequestProperties>(new CSRColumnComparator());
+		CSRColumnComparator columns = new CSRColumnComparator();
+		CSRColumnLabelProvider labels = new CSRColumnLabelProvider();
+		createRowModelCache(columns, labels);
+		this.comparator = new CADetailsComparator<CertificateRequestProperties>(columns);
 		tableViewer = new TableViewer(parent,
-				SWT.H_SCROLL | SWT.V_SCROLL | SWT.BORDER | SWT.FULL_SELECTION | SWT.DOUBLE_BUFFERED);
+				SWT.VIRTUAL | SWT.H_SCROLL | SWT.V_SCROLL | SWT.BORDER | SWT.FULL_SELECTION | SWT.DOUBLE_BUFFERED);
 
 		Table table = tableViewer.getTable();
 		table.setHeaderVisible(true);
@@ -64,10 +67,10 @@ public class PendingCertificatesPane extends AbstractDetailsPane<CertificateRequ
 
 		// set the content provider
 		createColumns(COLUMN_NAMES, COLUMN_SIZES);
-		tableViewer.setContentProvider(ArrayContentProvider.getInstance());
-		tableViewer.setLabelProvider(new CSRColumnLabelProvider());
+		tableViewer.setUseHashlookup(true);
+		tableViewer.setContentProvider(createContentProvider());
+		tableViewer.setLabelProvider(labels);
 		ColumnViewerToolTipSupport.enableFor(tableViewer);
-		tableViewer.setComparator(comparator);
 
 		// Add double click listener.
 		addDoubleClickListener(pane, view);
@@ -86,4 +89,10 @@ public class PendingCertificatesPane extends AbstractDetailsPane<CertificateRequ
 		return comparator;
 	}
 
+	@Override
+	protected String[] getFilterText(CertificateRequestProperties element) {
+		return new String[] { element.getProperty(Key.subject), element.getProperty(Key.comments),
+				element.getProperty(Key.keyType), getKeyTypeDescription(element.getProperty(Key.keyType)) };
+	}
+
 }
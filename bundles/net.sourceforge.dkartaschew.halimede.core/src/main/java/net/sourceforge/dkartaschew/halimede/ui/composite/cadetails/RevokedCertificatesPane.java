@@ -16,7 +16,6 @@
  */
 package net.sourceforge.dkartaschew.halimede.ui.composite.cadetails;
 
-import org.eclipse.jface.viewers.ArrayContentProvider;
 import org.eclipse.jface.viewers.ColumnViewerToolTipSupport;
 import org.eclipse.jface.viewers.TableViewer;
 import org.eclipse.swt.SWT;
@@ -24,6 +23,7 @@ import org.eclipse.swt.widgets.Composite;
 import org.eclipse.swt.widgets.Table;
 
 import net.sourceforge.dkartaschew.halimede.data.IssuedCertificateProperties;
+import net.sourceforge.dkartaschew.halimede.data.IssuedCertificateProperties.Key;
 import net.sourceforge.dkartaschew.halimede.ui.CertificateManagerView;
 import net.sourceforge.dkartaschew.halimede.ui.composite.CADetailPane;
 import net.sourceforge.dkartaschew.halimede.ui.data.CADetailsComparator;
@@ -60,9 +60,12 @@ public class RevokedCertificatesPane extends AbstractDetailsPane<IssuedCertifica
 
 	public RevokedCertificatesPane(Composite parent, CADetailPane pane, CertificateManagerView view) {
 		super(ElementType.Revoked);
-		this.comparator = new CADetailsComparator<IssuedCertificateProperties>(new RevokedCertificateComparator());
+		RevokedCertificateComparator columns = new RevokedCertificateComparator();
+		RevokedCertificateColumnLabelProvider labels = new RevokedCertificateColumnLabelProvider();
+		createRowModelCache(columns, labels);
+		this.comparator = new CADetailsComparator<IssuedCertificateProperties>(columns);
 		tableViewer = new TableViewer(parent,
-				SWT.H_SCROLL | SWT.V_SCROLL | SWT.BORDER | SWT.FULL_SELECTION | SWT.DOUBLE_BUFFERED);
+				SWT.VIRTUAL | SWT.H_SCROLL | SWT.V_SCROLL | SWT.BORDER | SWT.FULL_SELECTION | SWT.DOUBLE_BUFFERED);
 
 		Table table = tableViewer.getTable();
 		table.setHeaderVisible(true);
@@ -70,10 +73,10 @@ public class RevokedCertificatesPane extends AbstractDetailsPane<IssuedCertifica
 
 		// set the content provider
 		createColumns(COLUMN_NAMES, COLUMN_SIZES);
-		tableViewer.setContentProvider(ArrayContentProvider.getInstance());
-		tableViewer.setLabelProvider(new RevokedCertificateColumnLabelProvider());
+		tableViewer.setUseHashlookup(true);
+		tableViewer.setContentProvider(createContentProvider());
+		tableViewer.setLabelProvider(labels);
 		ColumnViewerToolTipSupport.enableFor(tableViewer);
-		tableViewer.setComparator(comparator);
 
 		// Add double click listener.
 		addDoubleClickListener(pane, view);
@@ -92,4 +95,11 @@ public class RevokedCertificatesPane extends AbstractDetailsPane<IssuedCertifica
 		return comparator;
 	}
 
+	@Override
+	protected String[] getFilterText(IssuedCertificateProperties element) {
+		return new String[] { element.getProperty(Key.subject), element.getProperty(Key.description),
+				element.getProperty(Key.comments), element.getProperty(Key.certificateSerialNumber),
+				element.getProperty(Key.keyType), getKeyTypeDescription(element.getProperty(Key.keyType)) };
+	}
+
 }
@@ -0,0 +1,401 @@
+/*-
+ * Halimede Certificate Manager Plugin for Eclipse 
+ * Copyright (C) 2017-2021 Darran Kartaschew 
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v2.0 which
+ * accompanies this distribution and is available at
+ *
+ * http://www.eclipse.org/legal/epl-v20.html
+ * 
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the Eclipse
+ * Public License, v. 2.0 are satisfied: GNU General Public License, version 2
+ * with the GNU Classpath Exception which is
+ * available at https://www.gnu.org/software/classpath/license.html.
+ */
+package net.sourceforge.dkartaschew.halimede.ui.composite.cadetails;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.jface.viewers.ILazyContentProvider;
+import org.eclipse.jface.viewers.IStructuredSelection;
+import org.eclipse.jface.viewers.TableViewer;
+import org.eclipse.jface.viewers.Viewer;
+import org.eclipse.swt.widgets.Table;
+
+import net.sourceforge.dkartaschew.halimede.ui.data.CADetailsComparator;
+import net.sourceforge.dkartaschew.halimede.util.TextIndex;
+
+/**
+ * Lazy content provider for a virtual (SWT.VIRTUAL) table, serving rows from a sorted view of the input.
+ * <p>
+ * Only the rows that are visible are materialised by the table. Large inputs are sorted in a background job, with the
+ * table showing the previous view until the sort completes. Changes to individual items may be applied with
+ * {@link #update(Collection, Collection, Collection)}, which merges them into the sorted view without a full sort.
+ * <p>
+ * The view may be filtered with a text query (see {@link #setFilter(String)}), using a {@link TextIndex} of the input
+ * that is built when first filtered and then kept up to date with the changes applied.
+ */
+public class SortedLazyContentProvider implements ILazyContentProvider {
+
+	/**
+	 * The largest input that is sorted directly on the UI thread.
+	 */
+	public static final int SYNC_SORT_LIMIT = 2000;
+
+	/**
+	 * The table viewer.
+	 */
+	private final TableViewer viewer;
+	/**
+	 * The comparator for the sort column.
+	 */
+	private final CADetailsComparator<?> comparator;
+	/**
+	 * The current (unsorted) input.
+	 */
+	private Object[] input = new Object[0];
+	/**
+	 * The sorted view of the input being displayed.
+	 */
+	private Object[] sorted = new Object[0];
+	/**
+	 * The sort generation. Results from earlier generations are discarded.
+	 */
+	private long generation;
+	/**
+	 * Is a background sort in progress? (The sorted view does not reflect the input until it completes).
+	 */
+	private boolean sorting;
+	/**
+	 * Function to get the text fields of an item to filter on. (NULL if filtering is not supported).
+	 */
+	private final Function<Object, String[]> fields;
+	/**
+	 * The current filter query. (NULL if not filtered).
+	 */
+	private String filter;
+	/**
+	 * The text index of the input. (NULL until first needed).
+	 */
+	private TextIndex<Object> index;
+
+	/**
+	 * Create a new content provider, which does not support filtering.
+	 *
+	 * @param viewer The (virtual) table viewer.
+	 * @param comparator The comparator for the sort column.
+	 */
+	public SortedLazyContentProvider(TableViewer viewer, CADetailsComparator<?> comparator) {
+		this(viewer, comparator, null);
+	}
+
+	/**
+	 * Create a new content provider.
+	 *
+	 * @param viewer The (virtual) table viewer.
+	 * @param comparator The comparator for the sort column.
+	 * @param fields Function to get the text fields of an item to filter on. (NULL if filtering is not supported).
+	 */
+	public SortedLazyContentProvider(TableViewer viewer, CADetailsComparator<?> comparator,
+			Function<Object, String[]> fields) {
+		this.viewer = viewer;
+		this.comparator = comparator;
+		this.fields = fields;
+	}
+
+	/**
+	 * Set the filter query. Only items whose text fields contain all the (whitespace separated) terms of the query,
+	 * ignoring case, are shown.
+	 * <p>
+	 * Must be called from the UI thread.
+	 *
+	 * @param query The query, or NULL (or blank) to show all items.
+	 */
+	public void setFilter(String query) {
+		String q = query == null || query.trim().isEmpty() ? null : query.trim();
+		if (fields == null || Objects.equals(q, filter)) {
+			return;
+		}
+		filter = q;
+		sort(false);
+	}
+
+	/**
+	 * Get the filter query.
+	 *
+	 * @return The query, or NULL if not filtered.
+	 */
+	public String getFilter() {
+		return filter;
+	}
+
+	@Override
+	public void inputChanged(Viewer viewer, Object oldInput, Object newInput) {
+		if (newInput instanceof Object[]) {
+			input = (Object[]) newInput;
+		} else if (newInput instanceof Collection) {
+			input = ((Collection<?>) newInput).toArray();
+		} else {
+			input = new Object[0];
+		}
+		index = null;
+		sort();
+	}
+
+	/**
+	 * Sort the input with the current sort column and direction, and update the table once done.
+	 * <p>
+	 * Must be called from the UI thread.
+	 */
+	public void sort() {
+		sort(false);
+	}
+
+	/**
+	 * Sort the input with the current sort column and direction, and update the table once done.
+	 *
+	 * @param keepTop TRUE to keep the current top row in view, rather than scrolling to the selection.
+	 */
+	private void sort(boolean keepTop) {
+		final Object[] items = input.clone();
+		final Consumer<Object[]> sorter = comparator.getSorter();
+		final String query = filter;
+		final TextIndex<Object> current = index;
+		final long gen = ++generation;
+		if (items.length <= SYNC_SORT_LIMIT) {
+			index = getIndex(current, items, query);
+			Object[] view = select(index, items, query);
+			sorter.accept(view);
+			show(view, keepTop);
+			return;
+		}
+		sorting = true;
+		final Table table = viewer.getTable();
+		Job job = Job.create("Sorting", monitor -> {
+			final TextIndex<Object> built = getIndex(current, items, query);
+			final Object[] view = select(built, items, query);
+			sorter.accept(view);
+			if (!table.isDisposed()) {
+				table.getDisplay().asyncExec(() -> {
+					if (gen == generation && !table.isDisposed()) {
+						index = built;
+						show(view, keepTop);
+					}
+				});
+			}
+			return Status.OK_STATUS;
+		});
+		job.setSystem(true);
+		job.schedule();
+	}
+
+	/**
+	 * Get the text index of the input, building it if needed to filter.
+	 *
+	 * @param current The current index. (May be NULL).
+	 * @param items The input.
+	 * @param query The filter query. (May be NULL).
+	 * @return The index, or NULL if not built and not needed.
+	 */
+	private TextIndex<Object> getIndex(TextIndex<Object> current, Object[] items, String query) {
+		if (current != null || query == null) {
+			return current;
+		}
+		TextIndex<Object> idx = new TextIndex<>(fields);
+		idx.addAll(Arrays.asList(items));
+		return idx;
+	}
+
+	/**
+	 * Select the items matching the filter query.
+	 *
+	 * @param idx The text index of the items.
+	 * @param items The items.
+	 * @param query The filter query. (May be NULL).
+	 * @return The matching items (as a new array if filtered).
+	 */
+	private static Object[] select(TextIndex<Object> idx, Object[] items, String query) {
+		if (query == null) {
+			return items;
+		}
+		return idx.search(query).toArray();
+	}
+
+	/**
+	 * Apply changes to individual items of the input, merging them into the sorted view rather than sorting the whole
+	 * input again. The selection and scroll position are retained.
+	 * <p>
+	 * If a background sort is in progress, or there are too many changes to merge, the input is sorted again instead.
+	 * Must be called from the UI thread.
+	 *
+	 * @param added The items added.
+	 * @param removed The items removed.
+	 * @param updated The items whose properties (and so sort position or text) have changed.
+	 */
+	public void update(Collection<?> added, Collection<?> removed, Collection<?> updated) {
+		if (viewer.getTable().isDisposed()) {
+			return;
+		}
+		List<Object> changed = new ArrayList<>(added.size() + updated.size());
+		changed.addAll(added);
+		changed.addAll(updated);
+		if (changed.isEmpty() && removed.isEmpty()) {
+			return;
+		}
+		Set<Object> drop = Collections.newSetFromMap(new IdentityHashMap<>());
+		drop.addAll(removed);
+		drop.addAll(changed);
+		List<Object> patched = new ArrayList<>(input.length + changed.size());
+		for (Object item : input) {
+			if (!drop.contains(item)) {
+				patched.add(item);
+			}
+		}
+		patched.addAll(changed);
+		input = patched.toArray();
+		if (index != null && !sorting) {
+			index.update(added, removed, updated);
+		} else {
+			// Rebuilt by the next sort, if needed.
+			index = null;
+		}
+		if (sorting || changed.size() > SYNC_SORT_LIMIT || (filter != null && index == null)) {
+			sort(true);
+			return;
+		}
+		List<Object> hidden = new ArrayList<>(removed);
+		if (filter != null) {
+			// Changed items which no longer match the filter are removed from the view.
+			List<Object> shown = new ArrayList<>(changed.size());
+			for (Object item : changed) {
+				if (index.matches(item, filter)) {
+					shown.add(item);
+				} else {
+					hidden.add(item);
+				}
+			}
+			changed = shown;
+		}
+		Object[] items = comparator.merge(sorted, hidden, changed);
+		generation++;
+		if (samePositions(items, sorted)) {
+			// Only the text has changed; just redraw the updated rows.
+			Set<Object> redraw = Collections.newSetFromMap(new IdentityHashMap<>());
+			redraw.addAll(changed);
+			int[] indices = new int[redraw.size()];
+			int count = 0;
+			for (int i = 0; i < items.length && count < indices.length; i++) {
+				if (redraw.contains(items[i])) {
+					indices[count++] = i;
+				}
+			}
+			sorted = items;
+			viewer.getTable().clear(Arrays.copyOf(indices, count));
+			return;
+		}
+		show(items, true);
+	}
+
+	/**
+	 * Are all items at the same position in both arrays? (Compared by identity).
+	 *
+	 * @param a The first array.
+	 * @param b The second array.
+	 * @return TRUE if both arrays are the same length, with all items at the same position.
+	 */
+	private static boolean samePositions(Object[] a, Object[] b) {
+		if (a.length != b.length) {
+			return false;
+		}
+		for (int i = 0; i < a.length; i++) {
+			if (a[i] != b[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Display the sorted view, retaining the current selection.
+	 *
+	 * @param items The sorted items.
+	 * @param keepTop TRUE to keep the current top row in view, rather than scrolling to the selection.
+	 */
+	private void show(Object[] items, boolean keepTop) {
+		Table table = viewer.getTable();
+		if (table.isDisposed()) {
+			return;
+		}
+		sorting = false;
+		Object[] selection = sorted.length == 0 ? new Object[0]
+				: ((IStructuredSelection) viewer.getStructuredSelection()).toArray();
+		int top = table.getTopIndex();
+		Object topItem = keepTop && top >= 0 && top < sorted.length ? sorted[top] : null;
+		sorted = items;
+		viewer.setItemCount(items.length);
+		table.clearAll();
+		if (selection.length != 0) {
+			Map<Object, Boolean> selected = new IdentityHashMap<>();
+			for (Object o : selection) {
+				selected.put(o, Boolean.TRUE);
+			}
+			int[] indices = new int[selection.length];
+			int count = 0;
+			for (int i = 0; i < items.length && count < indices.length; i++) {
+				if (selected.containsKey(items[i])) {
+					indices[count++] = i;
+				}
+			}
+			table.setSelection(Arrays.copyOf(indices, count));
+		}
+		if (topItem != null && items.length != 0) {
+			int index = -1;
+			for (int i = 0; i < items.length && index == -1; i++) {
+				if (items[i] == topItem) {
+					index = i;
+				}
+			}
+			// If the top row was removed, stay at the same offset.
+			table.setTopIndex(index != -1 ? index : Math.min(top, items.length - 1));
+		}
+	}
+
+	@Override
+	public void updateElement(int index) {
+		if (index >= 0 && index < sorted.length) {
+			viewer.replace(sorted[index], index);
+		}
+	}
+
+	/**
+	 * Get the number of rows in the sorted view.
+	 *
+	 * @return The number of rows.
+	 */
+	public int size() {
+		return sorted.length;
+	}
+
+	@Override
+	public void dispose() {
+		generation++;
+		sorting = false;
+		index = null;
+		input = new Object[0];
+		sorted = new Object[0];
+	}
+}
@@ -16,7 +16,6 @@
  */
 package net.sourceforge.dkartaschew.halimede.ui.composite.cadetails;
 
-import org.eclipse.jface.viewers.ArrayContentProvider;
 import org.eclipse.jface.viewers.ColumnViewerToolTipSupport;
 import org.eclipse.jface.viewers.TableViewer;
 import org.eclipse.swt.SWT;
@@ -56,7 +55,7 @@ public class TemplatesPane extends AbstractDetailsPane<CertificateKeyPairTemplat
 		super(ElementType.Template);
 		this.comparator = new CADetailsComparator<CertificateKeyPairTemplate>(new TemplateColumnComparator());
 		tableViewer = new TableViewer(parent,
-				SWT.H_SCROLL | SWT.V_SCROLL | SWT.BORDER | SWT.FULL_SELECTION | SWT.DOUBLE_BUFFERED);
+				SWT.VIRTUAL | SWT.H_SCROLL | SWT.V_SCROLL | SWT.BORDER | SWT.FULL_SELECTION | SWT.DOUBLE_BUFFERED);
 
 		Table table = tableViewer.getTable();
 		table.setHeaderVisible(true);
@@ -64,10 +63,10 @@ public class TemplatesPane extends AbstractDetailsPane<CertificateKeyPairTemplat
 
 		// set the content provider
 		createColumns(COLUMN_NAMES, COLUMN_SIZES);
-		tableViewer.setContentProvider(ArrayContentProvider.getInstance());
+		tableViewer.setUseHashlookup(true);
+		tableViewer.setContentProvider(createContentProvider());
 		tableViewer.setLabelProvider(new TemplateColumnLabelProvider());
 		ColumnViewerToolTipSupport.enableFor(tableViewer);
-		tableViewer.setComparator(comparator);
 
 		// Add double click listener.
 		addDoubleClickListener(pane, view);
@@ -86,4 +85,11 @@ public class TemplatesPane extends AbstractDetailsPane<CertificateKeyPairTemplat
 		return comparator;
 	}
 
+	@Override
+	protected String[] getFilterText(CertificateKeyPairTemplate element) {
+		return new String[] { element.getSubject() != null ? element.getSubject().toString() : null,
+				element.getDescription(), element.getKeyType() != null ? element.getKeyType().name() : null,
+				element.getKeyType() != null ? element.getKeyType().getDescription() : null };
+	}
+
 }
@@ -0,0 +1,224 @@
+/*-
+ * Halimede Certificate Manager Plugin for Eclipse 
+ * Copyright (C) 2017-2021 Darran Kartaschew 
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v2.0 which
+ * accompanies this distribution and is available at
+ *
+ * http://www.eclipse.org/legal/epl-v20.html
+ * 
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the Eclipse
+ * Public License, v. 2.0 are satisfied: GNU General Public License, version 2
+ * with the GNU Classpath Exception which is
+ * available at https://www.gnu.org/software/classpath/license.html.
+ */
+
+package net.sourceforge.dkartaschew.halimede.ui.data;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.function.Supplier;
+
+import net.sourceforge.dkartaschew.halimede.data.PropertyRecord;
+import net.sourceforge.dkartaschew.halimede.enumeration.KeyType;
+import net.sourceforge.dkartaschew.halimede.enumeration.RevokeReasonCode;
+
+/**
+ * Column comparator which compares precomputed sort keys held in a {@link RowModel}, rather than parsing the
+ * element's properties on every comparison.
+ * <p>
+ * Keys are taken from the typed values already held by the properties (dates, integers and enumerations), so no
+ * property strings are parsed, and are ordered the same way as the string based comparisons of
+ * {@link AbstractColumnComparator}. The property string is only read when there is no typed value, to tell an unset
+ * value from an invalid one.
+ *
+ * @param <V> The type of element.
+ */
+public abstract class AbstractRowComparator<V> extends AbstractColumnComparator<V> {
+
+	/**
+	 * The rank of each key type, in {@link KeyType#compare(KeyType)} order.
+	 */
+	private static final long[] KEY_TYPE_RANK = rank(KeyType.values(), (k1, k2) -> k1.compare(k2));
+	/**
+	 * The rank of each revoke reason, in description order.
+	 */
+	private static final long[] REVOKE_REASON_RANK = rank(RevokeReasonCode.values(),
+			(k1, k2) -> k1.getDescription().compareToIgnoreCase(k2.getDescription()));
+
+	/**
+	 * The row cache. (May be NULL).
+	 */
+	private volatile RowModelCache<V> cache;
+
+	/**
+	 * Get the number of columns.
+	 *
+	 * @return The number of columns.
+	 */
+	protected abstract int getColumnCount();
+
+	/**
+	 * Set the sort keys of the row for the given element.
+	 *
+	 * @param element The element.
+	 * @param row The row to fill in.
+	 */
+	protected abstract void createSortKeys(V element, RowModel row);
+
+	/**
+	 * Set the row cache used for comparisons.
+	 *
+	 * @param cache The row cache, or NULL to create rows as needed.
+	 */
+	public void setCache(RowModelCache<V> cache) {
+		this.cache = cache;
+	}
+
+	/**
+	 * Get the row cache used for comparisons.
+	 *
+	 * @return The row cache, or NULL if none.
+	 */
+	public RowModelCache<V> getCache() {
+		return cache;
+	}
+
+	/**
+	 * Create a new row (with sort keys only) for the given element.
+	 *
+	 * @param element The element.
+	 * @return A new row.
+	 */
+	public RowModel createRow(V element) {
+		RowModel row = new RowModel(element, getColumnCount());
+		if (element != null) {
+			createSortKeys(element, row);
+		}
+		return row;
+	}
+
+	/**
+	 * Get the row for the given element, from the cache if present.
+	 *
+	 * @param element The element.
+	 * @return The row.
+	 */
+	public RowModel getRow(V element) {
+		RowModelCache<V> c = cache;
+		return c != null ? c.get(element) : createRow(element);
+	}
+
+	@Override
+	public int compare(int columnIndex, V e1, V e2) {
+		if (e1 == null && e2 == null) {
+			return 0;
+		}
+		if (e1 == null) {
+			return 1;
+		}
+		if (e2 == null) {
+			return -1;
+		}
+		return compareRows(columnIndex, getRow(e1), getRow(e2));
+	}
+
+	/**
+	 * Compare the two rows.
+	 *
+	 * @param columnIndex The column index, or -1 for default ordering (the first column).
+	 * @param r1 The first row
+	 * @param r2 The second row
+	 * @return The comparison.
+	 */
+	public int compareRows(int columnIndex, RowModel r1, RowModel r2) {
+		return r1.compare(columnIndex == -1 ? 0 : columnIndex, r2);
+	}
+
+	/**
+	 * Get the sort key of a date.
+	 *
+	 * @param date The date as epoch milliseconds, or {@link PropertyRecord#NO_DATE} if unset or not a valid date.
+	 * @param value Supplier of the property string, read only if the date is unset.
+	 * @return The date as epoch milliseconds, {@link RowModel#NONE} if unset or {@link RowModel#INVALID} if not a
+	 *         valid date.
+	 */
+	protected static long dateKey(long date, Supplier<String> value) {
+		return date != PropertyRecord.NO_DATE ? date : missingKey(value.get());
+	}
+
+	/**
+	 * Get the sort key of a key type.
+	 *
+	 * @param keyType The key type, or NULL if unset or not a valid key type.
+	 * @param value Supplier of the property string, read only if the key type is unset.
+	 * @return The rank of the key type, {@link RowModel#NONE} if unset or {@link RowModel#INVALID} if not a valid key
+	 *         type.
+	 */
+	protected static long keyTypeKey(KeyType keyType, Supplier<String> value) {
+		return keyType != null ? KEY_TYPE_RANK[keyType.ordinal()] : missingKey(value.get());
+	}
+
+	/**
+	 * Get the sort key of a revoke reason.
+	 *
+	 * @param code The revoke reason, or NULL if unset or not a valid reason.
+	 * @param value Supplier of the property string, read only if the reason is unset.
+	 * @return The rank of the reason, {@link RowModel#NONE} if unset or {@link RowModel#INVALID} if not a valid
+	 *         reason.
+	 */
+	protected static long revokeReasonKey(RevokeReasonCode code, Supplier<String> value) {
+		return code != null ? REVOKE_REASON_RANK[code.ordinal()] : missingKey(value.get());
+	}
+
+	/**
+	 * Set the integer as the sort key of the column.
+	 *
+	 * @param row The row.
+	 * @param column The column.
+	 * @param integer The integer, or NULL if unset or not a valid integer.
+	 * @param value Supplier of the property string, read only if the integer is unset.
+	 */
+	protected static void setIntegerKey(RowModel row, int column, BigInteger integer, Supplier<String> value) {
+		if (integer != null) {
+			row.setInteger(column, integer);
+		} else {
+			row.setNumber(column, missingKey(value.get()));
+		}
+	}
+
+	/**
+	 * Get the sort key of a value without a typed value.
+	 *
+	 * @param value The property string.
+	 * @return {@link RowModel#NONE} if unset, otherwise {@link RowModel#INVALID}.
+	 */
+	private static long missingKey(String value) {
+		return value == null || value.isEmpty() ? RowModel.NONE : RowModel.INVALID;
+	}
+
+	/**
+	 * Rank the enumeration constants by the given order. Constants that compare as equal have the same rank.
+	 *
+	 * @param <E> The type of enumeration.
+	 * @param values All constants of the enumeration.
+	 * @param order The order.
+	 * @return The rank of each constant, indexed by ordinal.
+	 */
+	private static <E extends Enum<E>> long[] rank(E[] values, Comparator<E> order) {
+		E[] sorted = values.clone();
+		Arrays.sort(sorted, order);
+		long[] ranks = new long[values.length];
+		long rank = 0;
+		for (int i = 0; i < sorted.length; i++) {
+			if (i > 0 && order.compare(sorted[i - 1], sorted[i]) != 0) {
+				rank++;
+			}
+			ranks[sorted[i].ordinal()] = rank;
+		}
+		return ranks;
+	}
+}
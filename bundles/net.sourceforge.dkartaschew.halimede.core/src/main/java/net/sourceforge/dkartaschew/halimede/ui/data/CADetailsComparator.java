@@ -17,7 +17,13 @@
 
 package net.sourceforge.dkartaschew.halimede.ui.data;
 
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.Set;
+import java.util.function.Consumer;
 
 import org.eclipse.jface.viewers.Viewer;
 import org.eclipse.jface.viewers.ViewerComparator;
@@ -95,6 +101,120 @@ public class CADetailsComparator<U> extends ViewerComparator implements Comparat
 		return compare(DEFAULT_SORT, o1, o2);
 	}
 
+	/**
+	 * Get a comparator for the current sort column and direction.
+	 * <p>
+	 * Later changes to the sort column or direction do not affect the returned comparator, so it may safely be used
+	 * to sort away from the UI thread.
+	 * 
+	 * @return A comparator for the current sort column and direction.
+	 */
+	public Comparator<Object> getColumnComparator() {
+		final int column = propertyIndex;
+		final int dir = direction;
+		return (e1, e2) -> compare(column, dir, e1, e2);
+	}
+
+	/**
+	 * Get a sorter for the current sort column and direction.
+	 * <p>
+	 * Later changes to the sort column or direction do not affect the returned sorter, so it may safely be used to
+	 * sort away from the UI thread. If the column comparator has a row cache, the rows of all elements are fetched once
+	 * and their precomputed keys are compared, rather than the elements.
+	 * 
+	 * @return A sorter, which sorts the given array in place.
+	 */
+	public Consumer<Object[]> getSorter() {
+		final int column = propertyIndex;
+		final int dir = direction;
+		final RowModelCache<U> cache = comparator instanceof AbstractRowComparator
+				? ((AbstractRowComparator<U>) comparator).getCache()
+				: null;
+		if (cache == null) {
+			final Comparator<Object> order = getColumnComparator();
+			return items -> Arrays.parallelSort(items, order);
+		}
+		final AbstractRowComparator<U> rowComparator = (AbstractRowComparator<U>) comparator;
+		return items -> {
+			RowModel[] rows = cache.rows(items);
+			if (column != -1 && dir == REVERSED) {
+				Arrays.parallelSort(rows, (r1, r2) -> rowComparator.compareRows(column, r2, r1));
+			} else {
+				Arrays.parallelSort(rows, (r1, r2) -> rowComparator.compareRows(column, r1, r2));
+			}
+			for (int i = 0; i < rows.length; i++) {
+				items[i] = rows[i].getElement();
+			}
+		};
+	}
+
+	/**
+	 * Apply changes to an already sorted array, using the current sort column and direction.
+	 * <p>
+	 * Removed and changed elements are dropped from the sorted array, and the changed elements are inserted at their
+	 * sorted position (after any equal elements). This costs O(k log n) comparisons for k changes, rather than the
+	 * O(n log n) of sorting the whole array again. Elements are compared by identity.
+	 * 
+	 * @param sorted The sorted array. (Not modified).
+	 * @param removed The elements to remove.
+	 * @param changed The elements added or updated, to be (re)inserted.
+	 * @return A new sorted array with the changes applied.
+	 */
+	public Object[] merge(Object[] sorted, Collection<?> removed, Collection<?> changed) {
+		final Comparator<Object> order = getColumnComparator();
+		Set<Object> drop = Collections.newSetFromMap(new IdentityHashMap<>());
+		drop.addAll(removed);
+		drop.addAll(changed);
+		Object[] remaining = without(sorted, drop);
+		Set<Object> unique = Collections.newSetFromMap(new IdentityHashMap<>());
+		unique.addAll(changed);
+		Object[] inserts = unique.toArray();
+		Arrays.sort(inserts, order);
+		Object[] result = new Object[remaining.length + inserts.length];
+		int from = 0;
+		int count = 0;
+		for (Object insert : inserts) {
+			// Find the first remaining element ordered after the insert.
+			int low = from;
+			int high = remaining.length;
+			while (low < high) {
+				int mid = (low + high) >>> 1;
+				if (order.compare(remaining[mid], insert) <= 0) {
+					low = mid + 1;
+				} else {
+					high = mid;
+				}
+			}
+			System.arraycopy(remaining, from, result, count, low - from);
+			count += low - from;
+			result[count++] = insert;
+			from = low;
+		}
+		System.arraycopy(remaining, from, result, count, remaining.length - from);
+		return result;
+	}
+
+	/**
+	 * Get the elements of the array, less the given elements.
+	 * 
+	 * @param items The elements.
+	 * @param drop The elements to drop (by identity).
+	 * @return The remaining elements, in the same order.
+	 */
+	private static Object[] without(Object[] items, Set<Object> drop) {
+		if (drop.isEmpty()) {
+			return items.clone();
+		}
+		Object[] result = new Object[items.length];
+		int count = 0;
+		for (Object item : items) {
+			if (!drop.contains(item)) {
+				result[count++] = item;
+			}
+		}
+		return Arrays.copyOf(result, count);
+	}
+
 	/**
 	 * Compare the two objects based on the column ID.
 	 * 
@@ -103,8 +223,21 @@ public class CADetailsComparator<U> extends ViewerComparator implements Comparat
 	 * @param e2 The second object
 	 * @return The comparison.
 	 */
-	@SuppressWarnings("unchecked")
 	private int compare(int column, Object e1, Object e2) {
+		return compare(column, direction, e1, e2);
+	}
+
+	/**
+	 * Compare the two objects based on the column ID and direction.
+	 * 
+	 * @param column The column
+	 * @param direction The direction of sort
+	 * @param e1 The first object
+	 * @param e2 The second object
+	 * @return The comparison.
+	 */
+	@SuppressWarnings("unchecked")
+	private int compare(int column, int direction, Object e1, Object e2) {
 		if (column != -1 && direction == REVERSED) {
 			// If reversed order, flip the direction
 			return comparator.compare(column, (U)e2, (U)e1);
@@ -18,40 +18,26 @@
 package net.sourceforge.dkartaschew.halimede.ui.data;
 
 import net.sourceforge.dkartaschew.halimede.data.CRLProperties;
+import net.sourceforge.dkartaschew.halimede.data.CRLProperties.Key;
 import net.sourceforge.dkartaschew.halimede.ui.composite.cadetails.CRLPane;
 
-public class CRLColumnComparator extends AbstractColumnComparator<CRLProperties> {
+public class CRLColumnComparator extends AbstractRowComparator<CRLProperties> {
 
 	@Override
-	public int compare(int columnIndex, CRLProperties e1, CRLProperties e2) {
-		if (e1 == null && e2 == null) {
-			return 0;
-		}
-		if (e1 == null) {
-			return 1;
-		}
-		if (e2 == null) {
-			return -1;
-		}
-		switch (columnIndex) {
-		case -1:
-		case CRLPane.COLUMN_CRL_NUMBER:
-			return compareInteger(e1.getProperty(CRLProperties.Key.crlSerialNumber),
-					e2.getProperty(CRLProperties.Key.crlSerialNumber));
-		case CRLPane.COLUMN_SUBJECT:
-			return compareString(e1.getProperty(CRLProperties.Key.issuer), 
-					e2.getProperty(CRLProperties.Key.issuer));
-		case CRLPane.COLUMN_START_DATE:
-			return compareDate(e1.getProperty(CRLProperties.Key.issueDate),
-					e2.getProperty(CRLProperties.Key.issueDate));
-		case CRLPane.COLUMN_EXPIRY_DATE:
-			return compareDate(e1.getProperty(CRLProperties.Key.nextExpectedDate),
-					e2.getProperty(CRLProperties.Key.nextExpectedDate));
-		case CRLPane.COLUMN_COMMENTS:
-			return compareString(e1.getProperty(CRLProperties.Key.comments),
-					e2.getProperty(CRLProperties.Key.comments));
-		}
-		return 0;
+	protected int getColumnCount() {
+		return CRLPane.COLUMN_COMMENTS + 1;
+	}
+
+	@Override
+	protected void createSortKeys(CRLProperties element, RowModel row) {
+		setIntegerKey(row, CRLPane.COLUMN_CRL_NUMBER, element.getSerialNumber(),
+				() -> element.getProperty(Key.crlSerialNumber));
+		row.setString(CRLPane.COLUMN_SUBJECT, element.getProperty(Key.issuer));
+		row.setNumber(CRLPane.COLUMN_START_DATE,
+				dateKey(element.getDate(Key.issueDate), () -> element.getProperty(Key.issueDate)));
+		row.setNumber(CRLPane.COLUMN_EXPIRY_DATE,
+				dateKey(element.getDate(Key.nextExpectedDate), () -> element.getProperty(Key.nextExpectedDate)));
+		row.setString(CRLPane.COLUMN_COMMENTS, element.getProperty(Key.comments));
 	}
 
 }
@@ -18,37 +18,24 @@
 package net.sourceforge.dkartaschew.halimede.ui.data;
 
 import net.sourceforge.dkartaschew.halimede.data.CertificateRequestProperties;
+import net.sourceforge.dkartaschew.halimede.data.CertificateRequestProperties.Key;
 import net.sourceforge.dkartaschew.halimede.ui.composite.cadetails.PendingCertificatesPane;
 
-public class CSRColumnComparator extends AbstractColumnComparator<CertificateRequestProperties> {
+public class CSRColumnComparator extends AbstractRowComparator<CertificateRequestProperties> {
 
 	@Override
-	public int compare(int columnIndex, CertificateRequestProperties e1, CertificateRequestProperties e2) {
-		if (e1 == null && e2 == null) {
-			return 0;
-		}
-		if (e1 == null) {
-			return 1;
-		}
-		if (e2 == null) {
-			return -1;
-		}
-		switch (columnIndex) {
-		case -1:
-		case PendingCertificatesPane.COLUMN_SUBJECT:
-			return compareString(e1.getProperty(CertificateRequestProperties.Key.subject),
-					e2.getProperty(CertificateRequestProperties.Key.subject));
-		case PendingCertificatesPane.COLUMN_IMPORT_DATE:
-			return compareDate(e1.getProperty(CertificateRequestProperties.Key.importDate),
-					e2.getProperty(CertificateRequestProperties.Key.importDate));
-		case PendingCertificatesPane.COLUMN_COMMENTS:
-			return compareString(e1.getProperty(CertificateRequestProperties.Key.comments),
-					e2.getProperty(CertificateRequestProperties.Key.comments));
-		case PendingCertificatesPane.COLUMN_KEY_TYPE:
-			return compareKeyType(e1.getProperty(CertificateRequestProperties.Key.keyType),
-					e2.getProperty(CertificateRequestProperties.Key.keyType));
-		}
-		return 0;
+	protected int getColumnCount() {
+		return PendingCertificatesPane.COLUMN_COMMENTS + 1;
+	}
+
+	@Override
+	protected void createSortKeys(CertificateRequestProperties element, RowModel row) {
+		row.setString(PendingCertificatesPane.COLUMN_SUBJECT, element.getProperty(Key.subject));
+		row.setNumber(PendingCertificatesPane.COLUMN_KEY_TYPE,
+				keyTypeKey(element.getKeyType(), () -> element.getProperty(Key.keyType)));
+		row.setNumber(PendingCertificatesPane.COLUMN_IMPORT_DATE,
+				dateKey(element.getImportDate(), () -> element.getProperty(Key.importDate)));
+		row.setString(PendingCertificatesPane.COLUMN_COMMENTS, element.getProperty(Key.comments));
 	}
 
 }
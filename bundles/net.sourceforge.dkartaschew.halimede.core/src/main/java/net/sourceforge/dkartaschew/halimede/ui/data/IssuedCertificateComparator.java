@@ -21,36 +21,25 @@ import net.sourceforge.dkartaschew.halimede.data.IssuedCertificateProperties;
 import net.sourceforge.dkartaschew.halimede.data.IssuedCertificateProperties.Key;
 import net.sourceforge.dkartaschew.halimede.ui.composite.cadetails.IssuedCertificatesPane;
 
-public class IssuedCertificateComparator extends AbstractColumnComparator<IssuedCertificateProperties> {
+public class IssuedCertificateComparator extends AbstractRowComparator<IssuedCertificateProperties> {
 
 	@Override
-	public int compare(int columnIndex, IssuedCertificateProperties e1, IssuedCertificateProperties e2) {
-		if (e1 == null && e2 == null) {
-			return 0;
-		}
-		if (e1 == null) {
-			return 1;
-		}
-		if (e2 == null) {
-			return -1;
-		}
-		switch (columnIndex) {
-		case -1:
-		case IssuedCertificatesPane.COLUMN_DESCRIPTION:
-			return compareString(e1.getProperty(Key.description), e2.getProperty(Key.description));
-		case IssuedCertificatesPane.COLUMN_SUBJECT:
-			return compareString(e1.getProperty(Key.subject), e2.getProperty(Key.subject));
-		case IssuedCertificatesPane.COLUMN_KEY_TYPE:
-			return compareKeyType(e1.getProperty(Key.keyType), e2.getProperty(Key.keyType));
-		case IssuedCertificatesPane.COLUMN_ISSUE_DATE:
-			return compareDate(e1.getProperty(Key.creationDate), e2.getProperty(Key.creationDate));
-		case IssuedCertificatesPane.COLUMN_START_DATE:
-			return compareDate(e1.getProperty(Key.startDate), e2.getProperty(Key.startDate));
-		case IssuedCertificatesPane.COLUMN_EXPIRY_DATE:
-			return compareDate(e1.getProperty(Key.endDate), e2.getProperty(Key.endDate));
-		case IssuedCertificatesPane.COLUMN_COMMENTS:
-			return compareString(e1.getProperty(Key.comments), e2.getProperty(Key.comments));
-		}
-		return 0;
+	protected int getColumnCount() {
+		return IssuedCertificatesPane.COLUMN_COMMENTS + 1;
+	}
+
+	@Override
+	protected void createSortKeys(IssuedCertificateProperties element, RowModel row) {
+		row.setString(IssuedCertificatesPane.COLUMN_DESCRIPTION, element.getProperty(Key.description));
+		row.setString(IssuedCertificatesPane.COLUMN_SUBJECT, element.getProperty(Key.subject));
+		row.setNumber(IssuedCertificatesPane.COLUMN_KEY_TYPE,
+				keyTypeKey(element.getKeyType(), () -> element.getProperty(Key.keyType)));
+		row.setNumber(IssuedCertificatesPane.COLUMN_ISSUE_DATE,
+				dateKey(element.getDate(Key.creationDate), () -> element.getProperty(Key.creationDate)));
+		row.setNumber(IssuedCertificatesPane.COLUMN_START_DATE,
+				dateKey(element.getDate(Key.startDate), () -> element.getProperty(Key.startDate)));
+		row.setNumber(IssuedCertificatesPane.COLUMN_EXPIRY_DATE,
+				dateKey(element.getDate(Key.endDate), () -> element.getProperty(Key.endDate)));
+		row.setString(IssuedCertificatesPane.COLUMN_COMMENTS, element.getProperty(Key.comments));
 	}
 }
@@ -21,40 +21,29 @@ import net.sourceforge.dkartaschew.halimede.data.IssuedCertificateProperties;
 import net.sourceforge.dkartaschew.halimede.data.IssuedCertificateProperties.Key;
 import net.sourceforge.dkartaschew.halimede.ui.composite.cadetails.RevokedCertificatesPane;
 
-public class RevokedCertificateComparator extends AbstractColumnComparator<IssuedCertificateProperties> {
+public class RevokedCertificateComparator extends AbstractRowComparator<IssuedCertificateProperties> {
 
 	@Override
-	public int compare(int columnIndex, IssuedCertificateProperties e1, IssuedCertificateProperties e2) {
-		if (e1 == null && e2 == null) {
-			return 0;
-		}
-		if (e1 == null) {
-			return 1;
-		}
-		if (e2 == null) {
-			return -1;
-		}
-		switch (columnIndex) {
-		case -1:
-		case RevokedCertificatesPane.COLUMN_DESCRIPTION:
-			return compareString(e1.getProperty(Key.description), e2.getProperty(Key.description));
-		case RevokedCertificatesPane.COLUMN_SUBJECT:
-			return compareString(e1.getProperty(Key.subject), e2.getProperty(Key.subject));
-		case RevokedCertificatesPane.COLUMN_KEY_TYPE:
-			return compareKeyType(e1.getProperty(Key.keyType), e2.getProperty(Key.keyType));
-		case RevokedCertificatesPane.COLUMN_ISSUE_DATE:
-			return compareDate(e1.getProperty(Key.creationDate), e2.getProperty(Key.creationDate));
-		case RevokedCertificatesPane.COLUMN_START_DATE:
-			return compareDate(e1.getProperty(Key.startDate), e2.getProperty(Key.startDate));
-		case RevokedCertificatesPane.COLUMN_EXPIRY_DATE:
-			return compareDate(e1.getProperty(Key.endDate), e2.getProperty(Key.endDate));
-		case RevokedCertificatesPane.COLUMN_REVOKE_DATE:
-			return compareDate(e1.getProperty(Key.revokeDate), e2.getProperty(Key.revokeDate));
-		case RevokedCertificatesPane.COLUMN_REVOKE_REASON:
-			return compareRevokeReason(e1.getProperty(Key.revokeCode), e2.getProperty(Key.revokeCode));
-		case RevokedCertificatesPane.COLUMN_COMMENTS:
-			return compareString(e1.getProperty(Key.comments), e2.getProperty(Key.comments));
-		}
-		return 0;
+	protected int getColumnCount() {
+		return RevokedCertificatesPane.COLUMN_COMMENTS + 1;
+	}
+
+	@Override
+	protected void createSortKeys(IssuedCertificateProperties element, RowModel row) {
+		row.setString(RevokedCertificatesPane.COLUMN_DESCRIPTION, element.getProperty(Key.description));
+		row.setString(RevokedCertificatesPane.COLUMN_SUBJECT, element.getProperty(Key.subject));
+		row.setNumber(RevokedCertificatesPane.COLUMN_KEY_TYPE,
+				keyTypeKey(element.getKeyType(), () -> element.getProperty(Key.keyType)));
+		row.setNumber(RevokedCertificatesPane.COLUMN_ISSUE_DATE,
+				dateKey(element.getDate(Key.creationDate), () -> element.getProperty(Key.creationDate)));
+		row.setNumber(RevokedCertificatesPane.COLUMN_START_DATE,
+				dateKey(element.getDate(Key.startDate), () -> element.getProperty(Key.startDate)));
+		row.setNumber(RevokedCertificatesPane.COLUMN_EXPIRY_DATE,
+				dateKey(element.getDate(Key.endDate), () -> element.getProperty(Key.endDate)));
+		row.setNumber(RevokedCertificatesPane.COLUMN_REVOKE_DATE,
+				dateKey(element.getDate(Key.revokeDate), () -> element.getProperty(Key.revokeDate)));
+		row.setNumber(RevokedCertificatesPane.COLUMN_REVOKE_REASON,
+				revokeReasonKey(element.getRevokeCode(), () -> element.getProperty(Key.revokeCode)));
+		row.setString(RevokedCertificatesPane.COLUMN_COMMENTS, element.getProperty(Key.comments));
 	}
 }
@@ -0,0 +1,222 @@
+/*-
+ * Halimede Certificate Manager Plugin for Eclipse 
+ * Copyright (C) 2017-2021 Darran Kartaschew 
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v2.0 which
+ * accompanies this distribution and is available at
+ *
+ * http://www.eclipse.org/legal/epl-v20.html
+ * 
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the Eclipse
+ * Public License, v. 2.0 are satisfied: GNU General Public License, version 2
+ * with the GNU Classpath Exception which is
+ * available at https://www.gnu.org/software/classpath/license.html.
+ */
+
+package net.sourceforge.dkartaschew.halimede.ui.data;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+
+import net.sourceforge.dkartaschew.halimede.util.Strings;
+
+/**
+ * View model of a single table row, holding typed sort keys and the rendered cell and tooltip text for each column.
+ * <p>
+ * Each column holds either a string key (compared ignoring case) or a numeric key (dates as epoch milliseconds,
+ * enumerations as their rank, integers as their value). Unset keys always sort after set keys, and numeric keys that
+ * could not be parsed sort between the two.
+ */
+public final class RowModel {
+
+	/**
+	 * Numeric key value for an unset key.
+	 */
+	public static final long NONE = Long.MIN_VALUE;
+	/**
+	 * Numeric key value for a key that is set, but not valid. Invalid keys sort after valid keys, and before unset
+	 * keys.
+	 */
+	public static final long INVALID = Long.MIN_VALUE + 1;
+
+	/**
+	 * The element this row represents.
+	 */
+	private final Object element;
+	/**
+	 * The numeric keys.
+	 */
+	private final long[] numbers;
+	/**
+	 * The string keys (case folded), or integer keys too large for a long.
+	 */
+	private final Object[] keys;
+	/**
+	 * The cell text. (NULL until rendered).
+	 */
+	private String[] text;
+	/**
+	 * The tooltip text. (NULL until rendered).
+	 */
+	private String[] tooltips;
+
+	/**
+	 * Create a new row with all keys unset.
+	 *
+	 * @param element The element this row represents.
+	 * @param columns The number of columns.
+	 */
+	public RowModel(Object element, int columns) {
+		this.element = element;
+		this.numbers = new long[columns];
+		this.keys = new Object[columns];
+		Arrays.fill(numbers, NONE);
+	}
+
+	/**
+	 * Get the element this row represents.
+	 *
+	 * @return The element.
+	 */
+	public Object getElement() {
+		return element;
+	}
+
+	/**
+	 * Get the number of columns.
+	 *
+	 * @return The number of columns.
+	 */
+	public int getColumnCount() {
+		return numbers.length;
+	}
+
+	/**
+	 * Set a string key. The key is compared ignoring case.
+	 *
+	 * @param column The column.
+	 * @param value The value. (NULL or empty is unset).
+	 */
+	public void setString(int column, String value) {
+		keys[column] = Strings.fold(value);
+	}
+
+	/**
+	 * Set a numeric key.
+	 *
+	 * @param column The column.
+	 * @param value The value, {@link #NONE} if unset or {@link #INVALID} if not valid.
+	 */
+	public void setNumber(int column, long value) {
+		numbers[column] = value;
+	}
+
+	/**
+	 * Set an integer key.
+	 *
+	 * @param column The column.
+	 * @param value The value. (NULL is unset).
+	 */
+	public void setInteger(int column, BigInteger value) {
+		if (value == null) {
+			numbers[column] = NONE;
+		} else if (value.bitLength() < Long.SIZE && value.longValue() > INVALID) {
+			numbers[column] = value.longValue();
+		} else {
+			// Out of range; keep the value, and order by sign against smaller values.
+			numbers[column] = value.signum() > 0 ? Long.MAX_VALUE : INVALID + 1;
+			keys[column] = value;
+		}
+	}
+
+	/**
+	 * Compare this row against another on the given column.
+	 *
+	 * @param column The column.
+	 * @param other The other row.
+	 * @return -1, 0 or 1 if this row is ordered before, the same or after the other row. Columns out of range are
+	 *         always the same.
+	 */
+	public int compare(int column, RowModel other) {
+		if (column < 0 || column >= numbers.length || column >= other.numbers.length) {
+			return 0;
+		}
+		Object k1 = keys[column];
+		Object k2 = other.keys[column];
+		if (k1 instanceof String || k2 instanceof String) {
+			if (k1 == null) {
+				return 1;
+			}
+			if (k2 == null) {
+				return -1;
+			}
+			return Integer.signum(((String) k1).compareTo((String) k2));
+		}
+		long n1 = numbers[column];
+		long n2 = other.numbers[column];
+		if (n1 == n2 && (n1 == NONE || n1 == INVALID)) {
+			return 0;
+		}
+		if (n1 == NONE || (n1 == INVALID && n2 != NONE)) {
+			return 1;
+		}
+		if (n2 == NONE || n2 == INVALID) {
+			return -1;
+		}
+		int res = Long.compare(n1, n2);
+		if (res != 0 || (k1 == null && k2 == null)) {
+			return res;
+		}
+		BigInteger b1 = k1 != null ? (BigInteger) k1 : BigInteger.valueOf(n1);
+		BigInteger b2 = k2 != null ? (BigInteger) k2 : BigInteger.valueOf(n2);
+		return Integer.signum(b1.compareTo(b2));
+	}
+
+	/**
+	 * Has the text of this row been rendered?
+	 *
+	 * @return TRUE if the text has been rendered.
+	 */
+	synchronized boolean hasText() {
+		return text != null;
+	}
+
+	/**
+	 * Set the rendered cell and tooltip text.
+	 *
+	 * @param text The cell text of each column.
+	 * @param tooltips The tooltip text of each column.
+	 */
+	synchronized void setText(String[] text, String[] tooltips) {
+		this.text = text;
+		this.tooltips = tooltips;
+	}
+
+	/**
+	 * Get the rendered cell text.
+	 *
+	 * @param column The column.
+	 * @return The text, or NULL if none (or not rendered).
+	 */
+	public synchronized String getText(int column) {
+		if (text == null || column < 0 || column >= text.length) {
+			return null;
+		}
+		return text[column];
+	}
+
+	/**
+	 * Get the rendered tooltip text.
+	 *
+	 * @param column The column.
+	 * @return The tooltip text, or NULL if none (or not rendered).
+	 */
+	public synchronized String getTooltip(int column) {
+		if (tooltips == null || column < 0 || column >= tooltips.length) {
+			return null;
+		}
+		return tooltips[column];
+	}
+}
@@ -0,0 +1,201 @@
+/*-
+ * Halimede Certificate Manager Plugin for Eclipse 
+ * Copyright (C) 2017-2021 Darran Kartaschew 
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v2.0 which
+ * accompanies this distribution and is available at
+ *
+ * http://www.eclipse.org/legal/epl-v20.html
+ * 
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the Eclipse
+ * Public License, v. 2.0 are satisfied: GNU General Public License, version 2
+ * with the GNU Classpath Exception which is
+ * available at https://www.gnu.org/software/classpath/license.html.
+ */
+
+package net.sourceforge.dkartaschew.halimede.ui.data;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import net.sourceforge.dkartaschew.halimede.ui.composite.IColumnLabelProvider;
+
+/**
+ * Cache of the row view models of a table, keyed by element identity.
+ * <p>
+ * Sort keys are created when a row is first needed; the cell and tooltip text is rendered when first displayed. Rows
+ * must be invalidated when their element changes.
+ *
+ * @param <V> The type of element.
+ */
+public class RowModelCache<V> {
+
+	/**
+	 * Identity key of an element.
+	 */
+	private static final class Ref {
+		private final Object element;
+
+		Ref(Object element) {
+			this.element = element;
+		}
+
+		@Override
+		public int hashCode() {
+			return System.identityHashCode(element);
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			return obj instanceof Ref && ((Ref) obj).element == element;
+		}
+	}
+
+	/**
+	 * The comparator that creates the sort keys.
+	 */
+	private final AbstractRowComparator<V> comparator;
+	/**
+	 * The label provider that renders the text.
+	 */
+	private final IColumnLabelProvider<V> labels;
+	/**
+	 * The cached rows.
+	 */
+	private final Map<Ref, RowModel> rows = new ConcurrentHashMap<>();
+
+	/**
+	 * Create a new cache.
+	 *
+	 * @param comparator The comparator that creates the sort keys.
+	 * @param labels The label provider that renders the cell and tooltip text.
+	 */
+	public RowModelCache(AbstractRowComparator<V> comparator, IColumnLabelProvider<V> labels) {
+		this.comparator = comparator;
+		this.labels = labels;
+	}
+
+	/**
+	 * Get the row of the given element, creating it if needed.
+	 *
+	 * @param element The element.
+	 * @return The row.
+	 */
+	public RowModel get(V element) {
+		Ref ref = new Ref(element);
+		RowModel row = rows.get(ref);
+		if (row == null) {
+			row = comparator.createRow(element);
+			RowModel existing = rows.putIfAbsent(ref, row);
+			if (existing != null) {
+				row = existing;
+			}
+		}
+		return row;
+	}
+
+	/**
+	 * Get the rows of the given elements, creating them as needed. Rows of elements not given are dropped from the
+	 * cache.
+	 *
+	 * @param elements The elements. (All must be of type V).
+	 * @return The rows, in the same order as the elements.
+	 */
+	@SuppressWarnings("unchecked")
+	public RowModel[] rows(Object[] elements) {
+		Set<Ref> retained = new HashSet<>(Math.max(16, elements.length * 4 / 3 + 1));
+		RowModel[] result = new RowModel[elements.length];
+		for (int i = 0; i < elements.length; i++) {
+			Ref ref = new Ref(elements[i]);
+			RowModel row = rows.get(ref);
+			if (row == null) {
+				row = comparator.createRow((V) elements[i]);
+				RowModel existing = rows.putIfAbsent(ref, row);
+				if (existing != null) {
+					row = existing;
+				}
+			}
+			retained.add(ref);
+			result[i] = row;
+		}
+		if (rows.size() > retained.size()) {
+			rows.keySet().retainAll(retained);
+		}
+		return result;
+	}
+
+	/**
+	 * Get the cell text of the given element.
+	 *
+	 * @param element The element.
+	 * @param column The column.
+	 * @return The cell text.
+	 */
+	public String getText(V element, int column) {
+		return render(element).getText(column);
+	}
+
+	/**
+	 * Get the tooltip text of the given element.
+	 *
+	 * @param element The element.
+	 * @param column The column.
+	 * @return The tooltip text.
+	 */
+	public String getTooltip(V element, int column) {
+		return render(element).getTooltip(column);
+	}
+
+	/**
+	 * Get the row of the given element, rendering the text if needed.
+	 *
+	 * @param element The element.
+	 * @return The row.
+	 */
+	private RowModel render(V element) {
+		RowModel row = get(element);
+		if (!row.hasText()) {
+			int columns = row.getColumnCount();
+			String[] text = new String[columns];
+			String[] tooltips = new String[columns];
+			for (int i = 0; i < columns; i++) {
+				text[i] = labels.getColumnText(element, i);
+				tooltips[i] = labels.getColumnTooltipText(element, i);
+			}
+			row.setText(text, tooltips);
+		}
+		return row;
+	}
+
+	/**
+	 * Drop the rows of the given elements, so they are recreated when next needed.
+	 *
+	 * @param elements The elements which have changed.
+	 */
+	public void invalidate(Collection<?> elements) {
+		for (Object element : elements) {
+			rows.remove(new Ref(element));
+		}
+	}
+
+	/**
+	 * Drop all rows.
+	 */
+	public void clear() {
+		rows.clear();
+	}
+
+	/**
+	 * Get the number of cached rows.
+	 *
+	 * @return The number of cached rows.
+	 */
+	public int size() {
+		return rows.size();
+	}
+}
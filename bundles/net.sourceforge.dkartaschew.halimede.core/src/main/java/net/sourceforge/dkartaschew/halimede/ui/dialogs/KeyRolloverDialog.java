@@ -0,0 +1,229 @@
+/*-
+ * Halimede Certificate Manager Plugin for Eclipse 
+ * Copyright (C) 2017-2021 Darran Kartaschew 
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v2.0 which
+ * accompanies this distribution and is available at
+ *
+ * http://www.eclipse.org/legal/epl-v20.html
+ * 
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the Eclipse
+ * Public License, v. 2.0 are satisfied: GNU General Public License, version 2
+ * with the GNU Classpath Exception which is
+ * available at https://www.gnu.org/software/classpath/license.html.
+ */
+
+package net.sourceforge.dkartaschew.halimede.ui.dialogs;
+
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.TimeZone;
+
+import org.eclipse.jface.dialogs.Dialog;
+import org.eclipse.jface.dialogs.IDialogConstants;
+import org.eclipse.jface.viewers.ArrayContentProvider;
+import org.eclipse.jface.viewers.ComboViewer;
+import org.eclipse.jface.viewers.LabelProvider;
+import org.eclipse.nebula.widgets.cdatetime.CDT;
+import org.eclipse.nebula.widgets.cdatetime.CDateTime;
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.layout.GridData;
+import org.eclipse.swt.layout.GridLayout;
+import org.eclipse.swt.widgets.Combo;
+import org.eclipse.swt.widgets.Composite;
+import org.eclipse.swt.widgets.Control;
+import org.eclipse.swt.widgets.Label;
+import org.eclipse.swt.widgets.Shell;
+import org.eclipse.swt.widgets.Text;
+
+import net.sourceforge.dkartaschew.halimede.PluginDefaults;
+import net.sourceforge.dkartaschew.halimede.enumeration.KeyType;
+import net.sourceforge.dkartaschew.halimede.enumeration.SignatureAlgorithm;
+import net.sourceforge.dkartaschew.halimede.util.DateTimeUtil;
+
+/**
+ * Dialog to select the new key type, signature algorithm and expiry date for a CA key rollover.
+ */
+public class KeyRolloverDialog extends Dialog {
+
+	/**
+	 * The CA description.
+	 */
+	private final String description;
+	/**
+	 * The selected key type.
+	 */
+	private KeyType keyType;
+	/**
+	 * The selected signature algorithm.
+	 */
+	private SignatureAlgorithm signatureAlgorithm;
+	/**
+	 * The selected expiry date.
+	 */
+	private ZonedDateTime expiryDate;
+
+	private ComboViewer comboViewerKeyType;
+	private ComboViewer comboViewerSigAlg;
+	private CDateTime dateExpiry;
+
+	/**
+	 * Create the dialog.
+	 * 
+	 * @param parentShell The parent shell.
+	 * @param description The description of the CA.
+	 * @param expiryDate The initial expiry date of the new CA certificate.
+	 */
+	public KeyRolloverDialog(Shell parentShell, String description, ZonedDateTime expiryDate) {
+		super(parentShell);
+		setShellStyle(SWT.BORDER | SWT.CLOSE | SWT.APPLICATION_MODAL);
+		this.description = description;
+		this.keyType = KeyType.getDefaultKeyType();
+		this.expiryDate = expiryDate;
+	}
+
+	@Override
+	protected void configureShell(Shell shell) {
+		super.configureShell(shell);
+		shell.setText("Roll Over Certificate Authority Key");
+		shell.setImage(PluginDefaults.getResourceManager()
+				.createImage(PluginDefaults.createImageDescriptor(PluginDefaults.IMG_CERTIFICATE)));
+	}
+
+	@Override
+	protected Control createDialogArea(Composite parent) {
+		Composite container = (Composite) super.createDialogArea(parent);
+		GridLayout layout = new GridLayout(2, false);
+		layout.horizontalSpacing = 10;
+		container.setLayout(layout);
+
+		Label lblCertificateAuthority = new Label(container, SWT.NONE);
+		lblCertificateAuthority.setLayoutData(new GridData(SWT.RIGHT, SWT.CENTER, false, false, 1, 1));
+		lblCertificateAuthority.setText("Certificate Authority:");
+
+		Text textDescription = new Text(container, SWT.BORDER);
+		textDescription.setLayoutData(new GridData(SWT.FILL, SWT.CENTER, true, false, 1, 1));
+		textDescription.setText(description != null ? description : "");
+		textDescription.setEditable(false);
+
+		Label lblKeyType = new Label(container, SWT.NONE);
+		lblKeyType.setLayoutData(new GridData(SWT.RIGHT, SWT.CENTER, false, false, 1, 1));
+		lblKeyType.setText("New Key Type:");
+
+		comboViewerKeyType = new ComboViewer(container, SWT.READ_ONLY);
+		Combo comboKeyType = comboViewerKeyType.getCombo();
+		comboKeyType.setLayoutData(new GridData(SWT.FILL, SWT.CENTER, true, false, 1, 1));
+		comboViewerKeyType.setLabelProvider(new KeyTypeLabelProvider());
+		comboViewerKeyType.setContentProvider(new ArrayContentProvider());
+		comboViewerKeyType.setInput(KeyType.getAllowedValues());
+		comboKeyType.setToolTipText("The Keying material type of the new Certificate Authority key");
+		comboKeyType.select(KeyType.getIndex(keyType));
+		comboKeyType.addListener(SWT.Selection, e -> {
+			keyType = KeyType.getAllowedValues()[comboKeyType.getSelectionIndex()];
+			updateSignatureAlgorithms();
+		});
+
+		Label lblSignature = new Label(container, SWT.NONE);
+		lblSignature.setLayoutData(new GridData(SWT.RIGHT, SWT.CENTER, false, false, 1, 1));
+		lblSignature.setText("Signature Algorithm:");
+
+		comboViewerSigAlg = new ComboViewer(container, SWT.READ_ONLY);
+		Combo comboSigAlg = comboViewerSigAlg.getCombo();
+		comboSigAlg.setLayoutData(new GridData(SWT.FILL, SWT.CENTER, true, false, 1, 1));
+		comboViewerSigAlg.setLabelProvider(new LabelProvider());
+		comboViewerSigAlg.setContentProvider(new ArrayContentProvider());
+		comboSigAlg.setToolTipText("The signature algorithm for signing with the new key");
+		comboSigAlg.addListener(SWT.Selection, e -> {
+			List<SignatureAlgorithm> algs = getSignatureAlgorithms();
+			int index = comboSigAlg.getSelectionIndex();
+			signatureAlgorithm = index >= 0 && index < algs.size() ? algs.get(index) : null;
+		});
+		updateSignatureAlgorithms();
+
+		Label lblExpiry = new Label(container, SWT.NONE);
+		lblExpiry.setLayoutData(new GridData(SWT.RIGHT, SWT.CENTER, false, false, 1, 1));
+		lblExpiry.setText("Expiry Date:");
+
+		dateExpiry = new CDateTime(container, CDT.BORDER | CDT.TAB_FIELDS);
+		dateExpiry.setLayoutData(new GridData(SWT.FILL, SWT.CENTER, true, false, 1, 1));
+		dateExpiry.setPattern(DateTimeUtil.DEFAULT_FORMAT);
+		dateExpiry.setTimeZone(TimeZone.getTimeZone(DateTimeUtil.DEFAULT_ZONE));
+		dateExpiry.setSelection(expiryDate != null ? DateTimeUtil.toDate(expiryDate) : new Date());
+		dateExpiry.setToolTipText("The expiry date of the new Certificate Authority certificate");
+
+		Label lblNote = new Label(container, SWT.WRAP);
+		lblNote.setLayoutData(new GridData(SWT.FILL, SWT.CENTER, true, false, 2, 1));
+		lblNote.setText("All valid issued certificates will be re-issued under the new key.");
+		return container;
+	}
+
+	/**
+	 * Get the signature algorithms applicable to the selected key type.
+	 * 
+	 * @return The signature algorithms.
+	 */
+	private List<SignatureAlgorithm> getSignatureAlgorithms() {
+		return new ArrayList<>(SignatureAlgorithm.forType(keyType));
+	}
+
+	/**
+	 * Update the signature algorithms for the selected key type.
+	 */
+	private void updateSignatureAlgorithms() {
+		List<SignatureAlgorithm> algs = getSignatureAlgorithms();
+		comboViewerSigAlg.setInput(algs);
+		signatureAlgorithm = algs.isEmpty() ? null : algs.get(0);
+		if (!algs.isEmpty()) {
+			comboViewerSigAlg.getCombo().select(0);
+		}
+		Control ok = getButton(IDialogConstants.OK_ID);
+		if (ok != null) {
+			ok.setEnabled(signatureAlgorithm != null);
+		}
+	}
+
+	@Override
+	protected void createButtonsForButtonBar(Composite parent) {
+		createButton(parent, IDialogConstants.OK_ID, "Roll Over", true);
+		createButton(parent, IDialogConstants.CANCEL_ID, IDialogConstants.CANCEL_LABEL, false);
+		getButton(IDialogConstants.OK_ID).setEnabled(signatureAlgorithm != null);
+	}
+
+	@Override
+	protected void okPressed() {
+		Date date = dateExpiry.getSelection();
+		expiryDate = date != null ? DateTimeUtil.toZonedDateTime(date) : null;
+		super.okPressed();
+	}
+
+	/**
+	 * Get the selected key type.
+	 * 
+	 * @return The key type.
+	 */
+	public KeyType getKeyType() {
+		return keyType;
+	}
+
+	/**
+	 * Get the selected signature algorithm.
+	 * 
+	 * @return The signature algorithm.
+	 */
+	public SignatureAlgorithm getSignatureAlgorithm() {
+		return signatureAlgorithm;
+	}
+
+	/**
+	 * Get the selected expiry date.
+	 * 
+	 * @return The expiry date.
+	 */
+	public ZonedDateTime getExpiryDate() {
+		return expiryDate;
+	}
+}
@@ -25,6 +25,7 @@ import org.eclipse.swt.graphics.Point;
 import org.eclipse.swt.widgets.Display;
 
 import net.sourceforge.dkartaschew.halimede.ui.composite.IColumnLabelProvider;
+import net.sourceforge.dkartaschew.halimede.ui.data.RowModelCache;
 
 public abstract class CADetailsLabelProvider<V> extends CellLabelProvider implements IColumnLabelProvider<V>{
 	
@@ -33,11 +34,26 @@ public abstract class CADetailsLabelProvider<V> extends CellLabelProvider implem
 	 */
 	private ColumnViewer viewer = null;
 
+	/**
+	 * The row cache holding the rendered text. (May be NULL).
+	 */
+	private RowModelCache<V> cache = null;
+
+	/**
+	 * Set the row cache to serve the cell and tooltip text from.
+	 * 
+	 * @param cache The row cache, or NULL to render the text on every update.
+	 */
+	public void setCache(RowModelCache<V> cache) {
+		this.cache = cache;
+	}
+
 	@SuppressWarnings("unchecked")
 	@Override
 	public void update(ViewerCell cell) {
 		final int col = cell.getColumnIndex();
-		cell.setText(getColumnText((V)cell.getElement(), col));
+		final RowModelCache<V> c = cache;
+		cell.setText(c != null ? c.getText((V) cell.getElement(), col) : getColumnText((V) cell.getElement(), col));
 		cell.setImage(getColumnImage((V)cell.getElement(), col));
 	}
 
@@ -62,6 +78,10 @@ public abstract class CADetailsLabelProvider<V> extends CellLabelProvider implem
 
 		ViewerCell cell = this.viewer.getCell(pt);
 		int column = cell != null ? cell.getColumnIndex() : -1;
+		final RowModelCache<V> c = cache;
+		if (c != null && column != -1) {
+			return c.getTooltip((V) element, column);
+		}
 		return getColumnTooltipText((V)element, column);
 	}
 
@@ -17,42 +17,100 @@
 
 package net.sourceforge.dkartaschew.halimede.util;
 
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOError;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.DirectoryStream;
 import java.nio.file.FileVisitResult;
 import java.nio.file.Files;
 import java.nio.file.InvalidPathException;
 import java.nio.file.Path;
 import java.nio.file.SimpleFileVisitor;
 import java.nio.file.attribute.BasicFileAttributes;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.time.ZonedDateTime;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
+import java.util.stream.Stream;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
-import java.util.zip.ZipOutputStream;
 
 import org.eclipse.core.runtime.IProgressMonitor;
 
 import net.sourceforge.dkartaschew.halimede.backup.BackupManifest;
 import net.sourceforge.dkartaschew.halimede.backup.BackupManifestEntry;
+import net.sourceforge.dkartaschew.halimede.backup.BackupTarget;
+import net.sourceforge.dkartaschew.halimede.backup.CompressionPolicy;
+import net.sourceforge.dkartaschew.halimede.backup.DeflatedEntry;
+import net.sourceforge.dkartaschew.halimede.backup.FileBackupTarget;
+import net.sourceforge.dkartaschew.halimede.backup.ZipWriter;
 import net.sourceforge.dkartaschew.halimede.data.CertificateAuthority;
+import net.sourceforge.dkartaschew.halimede.data.store.FileSystemDatastore;
 
 /**
  * Backup and Restore Utility Functions.
+ * <p>
+ * Backups stream each file through a digest and compressor. Files are compressed in parallel (set via the
+ * {@link #THREADS} system property) with the compressed data held in memory up to a threshold, and spilled to a
+ * temporary file (alongside the backup file) beyond it. The compressed entries are written to the container in order.
+ * Entries which will not compress (such as encrypted key stores) are stored rather than compressed, with the level of
+ * compression of other entries set via the {@link CompressionPolicy#LEVEL} system property.
+ * <p>
+ * Incremental backups hold only the files changed since a base backup, and are restored together with the backups
+ * they are based on.
  */
 public class BackupUtil {
 
 	public final static String MANIFEST = "manifest.xml";
 
+	/**
+	 * System Properties key (number of compression threads)
+	 */
+	public static final String THREADS = "net.sourceforge.dkartaschew.halimede.backup.threads";
+
+	/**
+	 * The size of compressed data held in memory per entry, before spilling to a temporary file.
+	 */
+	private static final int SPILL_THRESHOLD = 1024 * 1024;
+
+	/**
+	 * Interval (in milliseconds) between checks for cancellation while waiting for an entry to be compressed.
+	 */
+	private static final long POLL_INTERVAL = 100;
+
+	/**
+	 * The size of the buffer used when extracting entries.
+	 */
+	private static final int BUFFER_SIZE = 64 * 1024;
+
 	/**
 	 * Create a backup of the Certificate Authority
 	 * 
@@ -62,96 +120,449 @@ public class BackupUtil {
 	 * @throws IOException If the operation fails.
 	 */
 	public static void backup(CertificateAuthority ca, Path filename, IProgressMonitor listener) throws IOException {
+		backup(ca, filename, null, listener);
+	}
+
+	/**
+	 * Create a backup of the Certificate Authority, holding only the files changed since the given base backup.
+	 * <p>
+	 * A file is unchanged if its size and modification time are unchanged, or if its size and digest are unchanged.
+	 * Basing each backup on the previous backup gives incremental backups, while basing each on the same full backup
+	 * gives differential backups.
+	 * 
+	 * @param ca The Certificate Authority
+	 * @param filename The filename to write to.
+	 * @param base The backup to base this backup on. (NULL for a full backup).
+	 * @param listener The activity listener. (may be NULL).
+	 * @throws IOException If the operation fails, or the base backup is not a backup of the CA.
+	 */
+	public static void backup(CertificateAuthority ca, Path filename, Path base, IProgressMonitor listener)
+			throws IOException {
 		Objects.requireNonNull(ca, "Certificate Authority not defined");
 		Objects.requireNonNull(filename, "Target filename not defined");
-		if (Files.exists(filename)) {
-			Files.delete(filename);
+		Path folder = filename.toAbsolutePath().getParent();
+		Path name = filename.getFileName();
+		if (folder == null || name == null) {
+			throw new IOException("Target filename '" + filename + "' is not valid");
 		}
-		ca.getActivityLogger().log(Level.INFO, "Backup CA to {0}", filename);
+		backup(ca, new FileBackupTarget(folder), name.toString(), base != null ? readManifest(base) : null, base,
+				folder, listener);
+	}
+
+	/**
+	 * Create a backup of the Certificate Authority in the given backup target, holding only the files changed since
+	 * the given base backup in the same target. (See {@link #backup(CertificateAuthority, Path, Path,
+	 * IProgressMonitor)}).
+	 * 
+	 * @param ca The Certificate Authority
+	 * @param target The target to write to.
+	 * @param name The name of the backup in the target.
+	 * @param base The name of the backup in the target to base this backup on. (NULL for a full backup).
+	 * @param listener The activity listener. (may be NULL).
+	 * @throws IOException If the operation fails, or the base backup is not a backup of the CA.
+	 */
+	public static void backup(CertificateAuthority ca, BackupTarget target, String name, String base,
+			IProgressMonitor listener) throws IOException {
+		Objects.requireNonNull(ca, "Certificate Authority not defined");
+		Objects.requireNonNull(target, "Target not defined");
+		Objects.requireNonNull(name, "Target name not defined");
+		backup(ca, target, name, base != null ? target.readManifest(base) : null, base, null, listener);
+	}
+
+	/**
+	 * Create a backup of the Certificate Authority.
+	 * 
+	 * @param ca The Certificate Authority
+	 * @param target The target to write to.
+	 * @param name The name of the backup in the target.
+	 * @param previous The manifest of the backup to base this backup on. (NULL for a full backup).
+	 * @param base The location of the base backup, for messages.
+	 * @param spillDirectory The directory for temporary files. (NULL for the default temporary directory).
+	 * @param listener The activity listener. (may be NULL).
+	 * @throws IOException If the operation fails, or the base backup is not a backup of the CA.
+	 */
+	private static void backup(CertificateAuthority ca, BackupTarget target, String name, BackupManifest previous,
+			Object base, Path spillDirectory, IProgressMonitor listener) throws IOException {
+		if (!(ca.getDatastore() instanceof FileSystemDatastore)) {
+			throw new IOException("Backup requires a filesystem datastore");
+		}
+		final Map<String, BackupManifestEntry> previousEntries = new HashMap<>();
+		if (previous != null) {
+			if (!ca.getCertificateAuthorityID().equals(previous.getUuid())) {
+				throw new IOException("Base backup '" + base + "' is not a backup of this Certificate Authority");
+			}
+			if (previous.getId() == null) {
+				throw new IOException("Base backup '" + base + "' does not support incremental backups");
+			}
+			if (previous.getEntries() != null) {
+				for (BackupManifestEntry e : previous.getEntries()) {
+					previousEntries.put(e.getFilename(), e);
+				}
+			}
+		}
+		ca.getActivityLogger().log(Level.INFO, "Backup CA to {0}", target + File.separator + name);
+
+		BackupManifest manifest = new BackupManifest();
+		manifest.setCreationDate(ZonedDateTime.now());
+		manifest.setUuid(ca.getCertificateAuthorityID());
+		manifest.setDescription(ca.getDescription());
+		manifest.setId(UUID.randomUUID());
+		if (previous != null) {
+			manifest.setBase(previous.getId());
+		}
+
 		final Path basePath = ca.getBasePath().toAbsolutePath();
-		final List<Path> entries = new ArrayList<>();
+		final List<String> names = new ArrayList<>();
+		final List<Path> files = new ArrayList<>();
+		final List<BasicFileAttributes> attributes = new ArrayList<>();
+		final Path snapshots = basePath.resolve(SnapshotUtil.SNAPSHOTS_PATH);
 		Files.walkFileTree(basePath, new SimpleFileVisitor<Path>() {
+			@Override
+			public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+				// Snapshots are local copies of the datastore, and not backed up.
+				return dir.equals(snapshots) ? FileVisitResult.SKIP_SUBTREE : FileVisitResult.CONTINUE;
+			}
+
 			@Override
 			public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
-				if (!attrs.isDirectory()) {
-					entries.add(file);
+				if (!attrs.isDirectory() && !FileSystemDatastore.isTemporary(file.getFileName().toString())) {
+					names.add(getEntryName(manifest, basePath, file));
+					files.add(file);
+					attributes.add(attrs);
 				}
 				return FileVisitResult.CONTINUE;
 			}
 		});
+		// Deletions since the base backup.
+		Set<String> current = new HashSet<>(names);
+		for (String entry : previousEntries.keySet()) {
+			if (!current.contains(entry)) {
+				manifest.addDeleted(entry);
+			}
+		}
 
 		boolean cancelActivity = false;
-
-		BackupManifest manifest = new BackupManifest();
-		manifest.setCreationDate(ZonedDateTime.now());
-		manifest.setUuid(ca.getCertificateAuthorityID());
-		manifest.setDescription(ca.getDescription());
+		boolean complete = false;
 
 		if (listener != null) {
-			listener.beginTask("Backup of '" + ca.getDescription() + "'", entries.size());
+			listener.beginTask("Backup of '" + ca.getDescription() + "'", files.size());
 		}
 
-		try (ZipOutputStream zip = new ZipOutputStream(new FileOutputStream(filename.toFile()))) {
+		final CompressionPolicy policy = CompressionPolicy.getDefault();
+		final AtomicBoolean cancelled = new AtomicBoolean();
+		final int threads = getParallelism();
+		final ExecutorService executor = createExecutor(threads);
+		final List<Future<DeflatedEntry>> tasks = new ArrayList<>(Collections.nCopies(files.size(), null));
+		final BackupTarget.Output out = target.create(name);
+		try {
+			// Not closed unless complete, as closing stores the backup.
+			@SuppressWarnings("resource")
+			ZipWriter zip = new ZipWriter(new BufferedOutputStream(out));
 			zip.setComment(ca.getCertificateAuthorityID().toString());
-			// Add our entrie
-			for (Path file : entries) {
-
-				String entry = file.subpath(basePath.getNameCount(), file.getNameCount()).toString();
-				if (entry.startsWith(File.separator)) {
-					entry = entry.substring(1);
+			// Add our entries, compressing changed files ahead of the entry being written.
+			int next = 0;
+			for (int i = 0; i < files.size(); i++) {
+				while (next < files.size() && next - i < threads * 2) {
+					if (!isUnchanged(previousEntries.get(names.get(next)), attributes.get(next))) {
+						final Path file = files.get(next);
+						final String entry = names.get(next);
+						tasks.set(next, executor.submit(() -> {
+							DeflatedEntry e;
+							try (InputStream in = Files.newInputStream(file)) {
+								e = DeflatedEntry.compress(entry, in, policy, SPILL_THRESHOLD, spillDirectory);
+							}
+							if (cancelled.get()) {
+								e.close();
+								return null;
+							}
+							return e;
+						}));
+					}
+					next++;
 				}
-				// Ensure entry uses '/' as path - 4.4.17.1 of the zip spec.
-				entry = entry.replace('\\', '/');
-				entry = manifest.getDescription() + "/" + entry;
-
 				if (listener != null) {
-					listener.subTask(entry);
-					cancelActivity = listener.isCanceled();
-				}
-				if (cancelActivity) {
-					break;
+					listener.subTask(names.get(i));
 				}
-				ZipEntry e = new ZipEntry(entry);
-				try {
-					zip.putNextEntry(e);
-					byte[] data = Files.readAllBytes(file);
-					zip.write(data, 0, data.length);
-
-					manifest.addEntry(new BackupManifestEntry(entry, //
-							data.length, //
-							Strings.toHexString(Digest.sha512(data))));
-				} finally {
-					zip.closeEntry();
+				BackupManifestEntry prior = previousEntries.get(names.get(i));
+				long modified = attributes.get(i).lastModifiedTime().toMillis();
+				Future<DeflatedEntry> task = tasks.set(i, null);
+				if (task == null) {
+					if (listener != null && listener.isCanceled()) {
+						cancelActivity = true;
+						break;
+					}
+					manifest.addEntry(reference(prior, previous, modified));
+				} else {
+					DeflatedEntry e = await(task, listener);
+					if (e == null) {
+						cancelActivity = true;
+						break;
+					}
+					try {
+						if (prior != null && prior.getSize() == e.getSize()
+								&& e.getSha512().equalsIgnoreCase(prior.getSha512())) {
+							// Touched, but not changed.
+							manifest.addEntry(reference(prior, previous, modified));
+						} else {
+							zip.write(e, manifest.getCreationDate());
+							BackupManifestEntry entry = new BackupManifestEntry(e.getName(), e.getSize(),
+									e.getSha512(), e.getMethod());
+							entry.setModified(modified);
+							manifest.addEntry(entry);
+						}
+					} finally {
+						e.close();
+					}
 				}
 				if (listener != null) {
 					listener.worked(1);
 				}
 			}
-			// Add in the manifest.
-			ByteArrayOutputStream stream = new ByteArrayOutputStream();
-			BackupManifest.write(stream, manifest);
-
-			ZipEntry e = new ZipEntry(MANIFEST);
-			try {
-				zip.putNextEntry(e);
-				byte[] data = stream.toByteArray();
-				zip.write(data, 0, data.length);
-			} finally {
-				zip.closeEntry();
+			if (!cancelActivity) {
+				// Add in the manifest.
+				ByteArrayOutputStream stream = new ByteArrayOutputStream();
+				BackupManifest.write(stream, manifest);
+				try (DeflatedEntry e = DeflatedEntry.compress(MANIFEST, new ByteArrayInputStream(stream.toByteArray()),
+						policy, Integer.MAX_VALUE, null)) {
+					zip.write(e, manifest.getCreationDate());
+				}
+				zip.close();
+				complete = true;
 			}
 		} finally {
+			// Release any entries compressed ahead.
+			cancelled.set(true);
+			executor.shutdownNow();
+			for (Future<DeflatedEntry> task : tasks) {
+				if (task != null && task.isDone() && !task.isCancelled()) {
+					try {
+						DeflatedEntry e = task.get();
+						if (e != null) {
+							e.close();
+						}
+					} catch (InterruptedException | ExecutionException e) {
+						// Nothing to release.
+					}
+				}
+			}
 			if (listener != null) {
 				listener.subTask("Complete");
 				listener.done();
 			}
-			if (cancelActivity) {
-				Files.delete(filename);
+			if (!complete) {
+				out.abort();
+			}
+		}
+		if (complete) {
+			target.putManifest(name, manifest);
+		}
+	}
+
+	/**
+	 * Is the file unchanged since the base backup, going by its size and modification time?
+	 * 
+	 * @param prior The entry of the file in the base backup. (May be NULL).
+	 * @param attributes The attributes of the file.
+	 * @return TRUE if the file is unchanged.
+	 */
+	private static boolean isUnchanged(BackupManifestEntry prior, BasicFileAttributes attributes) {
+		return prior != null && prior.getModified() != 0 //
+				&& prior.getSize() == attributes.size() //
+				&& prior.getModified() == attributes.lastModifiedTime().toMillis();
+	}
+
+	/**
+	 * Create an entry referencing the content of an entry in the base backup.
+	 * 
+	 * @param prior The entry in the base backup.
+	 * @param previous The manifest of the base backup.
+	 * @param modified The last modified time of the file.
+	 * @return A new entry.
+	 */
+	private static BackupManifestEntry reference(BackupManifestEntry prior, BackupManifest previous, long modified) {
+		BackupManifestEntry entry = new BackupManifestEntry(prior.getFilename(), prior.getSize(), prior.getSha512(),
+				prior.getMethod());
+		entry.setModified(modified);
+		entry.setSource(prior.getSource() != null ? prior.getSource() : previous.getId());
+		return entry;
+	}
+
+	/**
+	 * Read the manifest of the given backup file.
+	 * 
+	 * @param filename The filename of the backup file.
+	 * @return The manifest.
+	 * @throws IOException If the file is not a valid backup file.
+	 */
+	public static BackupManifest readManifest(Path filename) throws IOException {
+		Objects.requireNonNull(filename, "Backup filename not defined");
+		try (ZipFile zip = new ZipFile(filename.toFile())) {
+			return readManifest(zip);
+		}
+	}
+
+	/**
+	 * Read the manifest of the given backup container, and compare the CA UUID to the zip comment.
+	 * 
+	 * @param zip The backup container.
+	 * @return The manifest.
+	 * @throws IOException If the container is not a valid backup file.
+	 */
+	private static BackupManifest readManifest(ZipFile zip) throws IOException {
+		// Check for manifest
+		ZipEntry zipEntry = zip.getEntry(MANIFEST);
+		if (zipEntry == null) {
+			throw new IOException("File does not appear to be a Halimede Backup file. Missing backup manifest.");
+		}
+		// Read in the manifest and compare the CA UUID to the zip comment.
+		BackupManifest manifest = BackupManifest.read(zip.getInputStream(zipEntry));
+		UUID uuid = null;
+		try {
+			uuid = UUID.fromString(zip.getComment());
+		} catch (NullPointerException | IllegalArgumentException e) {
+			throw new IOException("File does not appear to be a Halimede Backup file. " + "Missing UUID identifier.",
+					e);
+		}
+		if (manifest.getUuid() == null || !manifest.getUuid().equals(uuid)) {
+			throw new IOException("File does not appear to be a Halimede Backup file. "
+					+ "Certificate Authority UUID doesn't match backup file UUID.");
+		}
+		return manifest;
+	}
+
+	/**
+	 * Find the backups an incremental backup is based on, in the same folder as the backup.
+	 * 
+	 * @param filename The filename of the backup file.
+	 * @return The backup file, followed by the backups it is based on (most recent first).
+	 * @throws IOException If a backup in the chain cannot be found.
+	 */
+	public static List<Path> findChain(Path filename) throws IOException {
+		List<Path> chain = new ArrayList<>();
+		chain.add(filename);
+		BackupManifest manifest = readManifest(filename);
+		if (!manifest.isIncremental()) {
+			return chain;
+		}
+		// Index the backups of this CA alongside the backup file.
+		Map<UUID, Path> backups = new HashMap<>();
+		Path folder = filename.toAbsolutePath().getParent();
+		if (folder != null) {
+			try (DirectoryStream<Path> stream = Files.newDirectoryStream(folder, "*.zip")) {
+				for (Path file : stream) {
+					if (!Files.isRegularFile(file) || Files.isSameFile(file, filename)) {
+						continue;
+					}
+					try {
+						BackupManifest m = readManifest(file);
+						if (m.getId() != null && manifest.getUuid().equals(m.getUuid())) {
+							backups.put(m.getId(), file);
+						}
+					} catch (IOException | RuntimeException e) {
+						// Not a backup.
+					}
+				}
+			}
+		}
+		UUID base = manifest.getBase();
+		while (base != null) {
+			Path file = backups.remove(base);
+			if (file == null) {
+				throw new IOException("Backup '" + filename + "' is based on backup " + base
+						+ ", which was not found in '" + folder + "'");
 			}
+			chain.add(file);
+			base = readManifest(file).getBase();
 		}
+		return chain;
 	}
 
 	/**
-	 * Restore the given backup file to the given destination
+	 * Get the name of the zip entry for the given file.
+	 * 
+	 * @param manifest The backup manifest.
+	 * @param basePath The base path of the CA.
+	 * @param file The file.
+	 * @return The entry name.
+	 */
+	private static String getEntryName(BackupManifest manifest, Path basePath, Path file) {
+		String entry = file.subpath(basePath.getNameCount(), file.getNameCount()).toString();
+		if (entry.startsWith(File.separator)) {
+			entry = entry.substring(1);
+		}
+		// Ensure entry uses '/' as path - 4.4.17.1 of the zip spec.
+		entry = entry.replace('\\', '/');
+		return manifest.getDescription() + "/" + entry;
+	}
+
+	/**
+	 * Wait for an entry to be compressed.
+	 * 
+	 * @param task The compression task.
+	 * @param listener The activity listener. (may be NULL).
+	 * @return The compressed entry, or NULL if cancelled.
+	 * @throws IOException If compression of the entry failed.
+	 */
+	private static DeflatedEntry await(Future<DeflatedEntry> task, IProgressMonitor listener) throws IOException {
+		while (true) {
+			if ((listener != null && listener.isCanceled()) || Thread.currentThread().isInterrupted()) {
+				return null;
+			}
+			try {
+				return task.get(POLL_INTERVAL, TimeUnit.MILLISECONDS);
+			} catch (TimeoutException e) {
+				// Check for cancellation, and wait again.
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			} catch (ExecutionException e) {
+				if (e.getCause() instanceof IOException) {
+					throw (IOException) e.getCause();
+				}
+				throw new IOException(e.getCause());
+			}
+		}
+	}
+
+	/**
+	 * Get the number of threads to use for compression.
+	 *
+	 * @return The number of compression threads.
+	 */
+	public static int getParallelism() {
+		String threads = System.getProperty(THREADS);
+		if (threads != null) {
+			try {
+				int value = Integer.parseInt(threads.trim());
+				if (value > 0) {
+					return value;
+				}
+			} catch (NumberFormatException e) {
+				// fall through to the default.
+			}
+		}
+		return Math.max(1, Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Create a pool for compressing entries.
+	 *
+	 * @param threads The number of threads.
+	 * @return A new pool. (To be shut down by the caller).
+	 */
+	private static ExecutorService createExecutor(int threads) {
+		final AtomicInteger count = new AtomicInteger();
+		ThreadFactory factory = r -> {
+			Thread t = new Thread(r, "Halimede Backup-" + count.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		};
+		return new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(),
+				factory);
+	}
+
+	/**
+	 * Restore the given backup file to the given destination. The backups an incremental backup is based on are
+	 * found alongside the backup file.
 	 * 
 	 * @param filename The filename of the backup file
 	 * @param destination The destination location
@@ -162,12 +573,115 @@ public class BackupUtil {
 	public static Path restore(Path filename, Path destination, IProgressMonitor listener) throws IOException {
 		Objects.requireNonNull(filename, "Backup filename not defined");
 		Objects.requireNonNull(destination, "Destination Location not defined");
-		if (!Files.exists(filename) || !Files.isReadable(filename) || !Files.isRegularFile(filename)) {
-			throw new IOException("Backup file '" + filename.toString() + "' does not exist or is not readable");
+		checkRestore(filename, destination);
+		return restoreChain(findChain(filename), destination, listener);
+	}
+
+	/**
+	 * Restore the given backup held in the backup target to the given destination. The backups an incremental backup
+	 * is based on are found in the same target.
+	 * <p>
+	 * The backups are fetched to temporary files, and removed once restored.
+	 * 
+	 * @param target The backup target holding the backup.
+	 * @param name The name of the backup in the target.
+	 * @param destination The destination location
+	 * @param listener The activity listener. (may be NULL).
+	 * @return The base location of the CA. (Will be NULL is operation cancelled or failed).
+	 * @throws IOException If fetching the backups fails, or restoring operation fails.
+	 */
+	public static Path restore(BackupTarget target, String name, Path destination, IProgressMonitor listener)
+			throws IOException {
+		Objects.requireNonNull(target, "Backup target not defined");
+		Objects.requireNonNull(name, "Backup name not defined");
+		Objects.requireNonNull(destination, "Destination Location not defined");
+		List<String> chain = findChain(target, name);
+		Path folder = Files.createTempDirectory("halimede-restore-");
+		try {
+			List<Path> backups = new ArrayList<>();
+			for (String backup : chain) {
+				Path file = folder.resolve(backups.size() + ".zip");
+				if (!target.fetch(backup, file, listener)) {
+					return null;
+				}
+				backups.add(file);
+			}
+			return restoreChain(backups, destination, listener);
+		} finally {
+			try (Stream<Path> files = Files.walk(folder)) {
+				files.sorted(Comparator.reverseOrder())//
+						.map(Path::toFile)//
+						.forEach(File::delete);
+			}
 		}
-		if (!Files.isDirectory(destination) || !Files.isWritable(destination)) {
-			throw new IOException("Destination Location '" + filename.toString()
-					+ "' does not exist, is not a Directory or is not writable");
+	}
+
+	/**
+	 * Find the backups an incremental backup is based on, in the same backup target as the backup.
+	 * 
+	 * @param target The backup target holding the backup.
+	 * @param name The name of the backup in the target.
+	 * @return The name of the backup, followed by the names of the backups it is based on (most recent first).
+	 * @throws IOException If a backup in the chain cannot be found.
+	 */
+	public static List<String> findChain(BackupTarget target, String name) throws IOException {
+		List<String> chain = new ArrayList<>();
+		chain.add(name);
+		BackupManifest manifest = target.readManifest(name);
+		if (!manifest.isIncremental()) {
+			return chain;
+		}
+		// Index the backups of this CA in the target.
+		Map<UUID, String> backups = new HashMap<>();
+		Map<String, UUID> bases = new HashMap<>();
+		for (String backup : target.list()) {
+			if (backup.equals(name)) {
+				continue;
+			}
+			try {
+				BackupManifest m = target.readManifest(backup);
+				if (m.getId() != null && manifest.getUuid().equals(m.getUuid())) {
+					backups.put(m.getId(), backup);
+					bases.put(backup, m.getBase());
+				}
+			} catch (IOException | RuntimeException e) {
+				// Not a backup.
+			}
+		}
+		UUID base = manifest.getBase();
+		while (base != null) {
+			String backup = backups.remove(base);
+			if (backup == null) {
+				throw new IOException("Backup '" + name + "' is based on backup " + base
+						+ ", which was not found in '" + target + "'");
+			}
+			chain.add(backup);
+			base = bases.get(backup);
+		}
+		return chain;
+	}
+
+	/**
+	 * Restore the given backup to the given destination
+	 * <p>
+	 * Entries are streamed to disk and verified against the manifest in parallel.
+	 * 
+	 * @param backups The filename of the backup file, followed by the filenames of the backups it is based on (if
+	 *            an incremental backup).
+	 * @param destination The destination location
+	 * @param listener The activity listener. (may be NULL).
+	 * @return The base location of the CA. (Will be NULL is operation cancelled or failed).
+	 * @throws IOException If reading the backup files fails, or restoring operation fails.
+	 */
+	public static Path restoreChain(List<Path> backups, Path destination, IProgressMonitor listener)
+			throws IOException {
+		Objects.requireNonNull(backups, "Backup filename not defined");
+		Objects.requireNonNull(destination, "Destination Location not defined");
+		if (backups.isEmpty()) {
+			throw new IOException("Backup filename not defined");
+		}
+		for (Path backup : backups) {
+			checkRestore(Objects.requireNonNull(backup, "Backup filename not defined"), destination);
 		}
 		boolean cancelActivity = false;
 		Path basePath = null;
@@ -181,26 +695,10 @@ public class BackupUtil {
 			listener.setTaskName("Start Restoration");
 		}
 
-		// Open the zip container.
-		try (ZipFile zip = new ZipFile(filename.toFile())) {
-			// Check for manifest
-			ZipEntry zipEntry = zip.getEntry(MANIFEST);
-			if (zipEntry == null) {
-				throw new IOException("File does not appear to be a Halimede Backup file. Missing backup manifest.");
-			}
-			// Read in the manifest and compare the CA UUID to the zip comment.
-			BackupManifest manifest = BackupManifest.read(zip.getInputStream(zipEntry));
-			UUID uuid = null;
-			try {
-				uuid = UUID.fromString(zip.getComment());
-			} catch (NullPointerException | IllegalArgumentException e) {
-				throw new IOException(
-						"File does not appear to be a Halimede Backup file. " + "Missing UUID identifier.", e);
-			}
-			if (manifest.getUuid() == null || !manifest.getUuid().equals(uuid)) {
-				throw new IOException("File does not appear to be a Halimede Backup file. "
-						+ "Certificate Authority UUID doesn't match backup file UUID.");
-			}
+		// Open the zip container, and the containers it is based on.
+		final Map<UUID, ZipFile> sources = new HashMap<>();
+		try (ZipFile zip = new ZipFile(backups.get(0).toFile())) {
+			BackupManifest manifest = openChain(zip, backups, sources);
 			// Start extraction
 			try {
 				basePath = destination.resolve(manifest.getDescription()).toAbsolutePath().normalize();
@@ -213,81 +711,24 @@ public class BackupUtil {
 			if (Files.exists(basePath)) {
 				throw new IOException("Restore function will overwrite existing files, aborting");
 			}
-			if (manifest.getEntries().size() < 2) {
-				// We MUST have at least 2 entries...
-				cancelActivity = true;
-				throw new IOException("Backup Manifest appears malformed?");
-			}
+			List<Extraction> work = resolve(manifest, zip, sources, destination, basePath);
 			if (listener != null) {
-				listener.beginTask("Restoring '" + manifest.getDescription() + "'", manifest.getEntries().size());
+				listener.beginTask("Restoring '" + manifest.getDescription() + "'", work.size());
 			}
-			for (BackupManifestEntry e : manifest.getEntries()) {
-				// Notification listener.
-				if (listener != null) {
-					listener.subTask(e.getFilename());
-					cancelActivity = listener.isCanceled();
-				}
-				if (cancelActivity) {
-					break;
-				}
-
-				/*
-				 * Get the target location. Ensure the target location is strictly in the destination folder.
-				 */
-				String entry = e.getFilename();
-				if (entry == null || entry.trim().isEmpty()) {
-					cancelActivity = true;
-					throw new IOException("Invalid entry in backup file found");
-				}
-				Path target = destination.resolve(entry).toAbsolutePath().normalize();
-				if (!target.startsWith(basePath)) {
-					cancelActivity = true;
-					throw new IOException("Invalid entry in backup file found");
-				}
-				zipEntry = zip.getEntry(entry);
-				if (zipEntry == null) {
-					cancelActivity = true;
-					throw new IOException("Invalid entry in backup file found. Backup Container is missing entry '"
-							+ e.getFilename() + "'");
-				}
-				if (zipEntry.getSize() != e.getSize()) {
-					cancelActivity = true;
-					throw new IOException("Invalid entry in backup file found. File entry size is different for entry '"
-							+ e.getFilename() + "'");
-				}
-				Path parent = target.getParent();
+			// From here, anything written is removed on failure.
+			cancelActivity = true;
+			for (Extraction x : work) {
+				Path parent = x.target.getParent();
 				if (parent == null) {
 					throw new IOException("Invalid entry in backup file found. Missing parent information");
 				}
-				if (!Files.exists(parent)) {
-					Files.createDirectories(parent);
-				}
-
-				/*
-				 * Extract the contents of file, verify the contents, and then write out...
-				 */
-				try (FileOutputStream out = new FileOutputStream(target.toFile(), false);
-						InputStream in = zip.getInputStream(zipEntry)) {
-					byte[] data = new byte[(int) e.getSize()];
-					int read = read(in, data);
-					if (read != e.getSize()) {
-						cancelActivity = true;
-						throw new IOException("Entry '" + e.getFilename() + "' not read fully?");
-					}
-					String sha512 = Strings.toHexString(Digest.sha512(data));
-					if (!sha512.equalsIgnoreCase(e.getSha512())) {
-						cancelActivity = true;
-						throw new IOException("Entry '" + e.getFilename() + "' fails digest verification?");
-					}
-					out.write(data);
-					out.flush();
-				}
-				if (listener != null) {
-					listener.worked(1);
-				}
-
+				Files.createDirectories(parent);
 			}
+			cancelActivity = !extract(work, listener);
 		} finally {
+			for (ZipFile source : sources.values()) {
+				source.close();
+			}
 			if (listener != null) {
 				listener.subTask("Complete");
 				listener.done();
@@ -308,28 +749,269 @@ public class BackupUtil {
 	}
 
 	/**
-	 * Read from the input stream filling the buffer until EOF.
+	 * Verify the integrity of the given backup file without extracting it. The backups an incremental backup is based
+	 * on are found alongside the backup file.
 	 * 
-	 * @param in The Inputstream to read from.
-	 * @param data The data buffer to read into.
-	 * @return The number of bytes read.
-	 * @throws IOException If reading from the stream fails.
+	 * @param filename The filename of the backup file
+	 * @param listener The activity listener. (may be NULL).
+	 * @return The manifest of the backup. (Will be NULL if the operation is cancelled).
+	 * @throws IOException If reading the backup file fails, or any entry fails verification.
+	 */
+	public static BackupManifest verify(Path filename, IProgressMonitor listener) throws IOException {
+		Objects.requireNonNull(filename, "Backup filename not defined");
+		return verifyChain(findChain(filename), listener);
+	}
+
+	/**
+	 * Verify the integrity of the given backup without extracting it. Every file of the backup is checked against the
+	 * size and digest recorded in the manifest.
+	 * 
+	 * @param backups The filename of the backup file, followed by the filenames of the backups it is based on (if
+	 *            an incremental backup).
+	 * @param listener The activity listener. (may be NULL).
+	 * @return The manifest of the backup. (Will be NULL if the operation is cancelled).
+	 * @throws IOException If reading the backup files fails, or any entry fails verification.
 	 */
-	private static int read(InputStream in, byte[] data) throws IOException {
-		int toRead = data.length;
-		int offset = 0;
-		int read = 0;
-		while (toRead > 0) {
-			int r = in.read(data, offset, data.length - offset);
-			if (r == -1) {
-				// EOF
-				return read;
-			}
-			offset += r;
-			toRead -= r;
-			read += r;
-		}
-		return read;
+	public static BackupManifest verifyChain(List<Path> backups, IProgressMonitor listener) throws IOException {
+		Objects.requireNonNull(backups, "Backup filename not defined");
+		if (backups.isEmpty()) {
+			throw new IOException("Backup filename not defined");
+		}
+		if (listener != null) {
+			listener.setTaskName("Start Verification");
+		}
+		final Map<UUID, ZipFile> sources = new HashMap<>();
+		try (ZipFile zip = new ZipFile(backups.get(0).toFile())) {
+			BackupManifest manifest = openChain(zip, backups, sources);
+			List<Extraction> work = resolve(manifest, zip, sources, null, null);
+			if (listener != null) {
+				listener.beginTask("Verifying '" + manifest.getDescription() + "'", work.size());
+			}
+			return extract(work, listener) ? manifest : null;
+		} finally {
+			for (ZipFile source : sources.values()) {
+				source.close();
+			}
+			if (listener != null) {
+				listener.subTask("Complete");
+				listener.done();
+			}
+		}
+	}
+
+	/**
+	 * An entry to extract (or verify).
+	 */
+	private static final class Extraction {
+		private final BackupManifestEntry entry;
+		private final ZipFile container;
+		private final ZipEntry zipEntry;
+		private final Path target;
+
+		Extraction(BackupManifestEntry entry, ZipFile container, ZipEntry zipEntry, Path target) {
+			this.entry = entry;
+			this.container = container;
+			this.zipEntry = zipEntry;
+			this.target = target;
+		}
+	}
+
+	/**
+	 * Read the manifest of the backup, and open the backups it is based on.
+	 * 
+	 * @param zip The backup container.
+	 * @param backups The filename of the backup file, followed by the filenames of the backups it is based on.
+	 * @param sources The map to add the opened backups to, by backup ID. (To be closed by the caller).
+	 * @return The manifest of the backup.
+	 * @throws IOException If a backup is not valid, or not of the same CA.
+	 */
+	private static BackupManifest openChain(ZipFile zip, List<Path> backups, Map<UUID, ZipFile> sources)
+			throws IOException {
+		BackupManifest manifest = readManifest(zip);
+		for (Path backup : backups.subList(1, backups.size())) {
+			ZipFile source = new ZipFile(backup.toFile());
+			UUID id = UUID.randomUUID();
+			sources.put(id, source);
+			BackupManifest m = readManifest(source);
+			if (!manifest.getUuid().equals(m.getUuid()) || m.getId() == null) {
+				throw new IOException("Backup file '" + backup + "' is not part of this backup set");
+			}
+			sources.put(m.getId(), sources.remove(id));
+		}
+		return manifest;
+	}
+
+	/**
+	 * Locate the content of each entry of the manifest, and the target location to extract to.
+	 * 
+	 * @param manifest The manifest.
+	 * @param zip The backup container.
+	 * @param sources The backups the backup is based on, by backup ID.
+	 * @param destination The destination location. (NULL if verifying only).
+	 * @param basePath The base location of the CA. (NULL if verifying only).
+	 * @return The entries to extract.
+	 * @throws IOException If the manifest or an entry is not valid.
+	 */
+	private static List<Extraction> resolve(BackupManifest manifest, ZipFile zip, Map<UUID, ZipFile> sources,
+			Path destination, Path basePath) throws IOException {
+		if (manifest.getEntries() == null || manifest.getEntries().size() < 2) {
+			// We MUST have at least 2 entries...
+			throw new IOException("Backup Manifest appears malformed?");
+		}
+		List<Extraction> work = new ArrayList<>(manifest.getEntries().size());
+		for (BackupManifestEntry e : manifest.getEntries()) {
+			String entry = e.getFilename();
+			if (entry == null || entry.trim().isEmpty()) {
+				throw new IOException("Invalid entry in backup file found");
+			}
+			/*
+			 * Get the target location. Ensure the target location is strictly in the destination folder.
+			 */
+			Path target = null;
+			if (destination != null) {
+				try {
+					target = destination.resolve(entry).toAbsolutePath().normalize();
+				} catch (InvalidPathException | IOError ex) {
+					throw new IOException("Invalid entry in backup file found", ex);
+				}
+				if (!target.startsWith(basePath) || target.equals(basePath)) {
+					throw new IOException("Invalid entry in backup file found");
+				}
+			}
+			ZipFile container = zip;
+			if (e.getSource() != null) {
+				container = sources.get(e.getSource());
+				if (container == null) {
+					throw new IOException(
+							"Backup " + e.getSource() + " holding entry '" + e.getFilename() + "' is not available");
+				}
+			}
+			ZipEntry zipEntry = container.getEntry(entry);
+			if (zipEntry == null) {
+				throw new IOException("Invalid entry in backup file found. Backup Container is missing entry '"
+						+ e.getFilename() + "'");
+			}
+			if (zipEntry.getSize() != e.getSize()) {
+				throw new IOException("Invalid entry in backup file found. File entry size is different for entry '"
+						+ e.getFilename() + "'");
+			}
+			work.add(new Extraction(e, container, zipEntry, target));
+		}
+		return work;
+	}
+
+	/**
+	 * Extract (or verify) the entries in parallel.
+	 * 
+	 * @param work The entries to extract.
+	 * @param listener The activity listener. (may be NULL).
+	 * @return TRUE if all entries were extracted and verified, or FALSE if cancelled.
+	 * @throws IOException If any entry fails to extract or fails verification.
+	 */
+	private static boolean extract(List<Extraction> work, IProgressMonitor listener) throws IOException {
+		final AtomicBoolean cancelled = new AtomicBoolean();
+		final ExecutorService executor = createExecutor(getParallelism());
+		final CompletionService<Extraction> completion = new ExecutorCompletionService<>(executor);
+		try {
+			for (Extraction x : work) {
+				completion.submit(() -> {
+					extract(x, cancelled);
+					return x;
+				});
+			}
+			for (int i = 0; i < work.size(); i++) {
+				Future<Extraction> task = null;
+				while (task == null) {
+					if ((listener != null && listener.isCanceled()) || Thread.currentThread().isInterrupted()) {
+						return false;
+					}
+					try {
+						task = completion.poll(POLL_INTERVAL, TimeUnit.MILLISECONDS);
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+				}
+				try {
+					Extraction x = task.get();
+					if (listener != null) {
+						listener.subTask(x.entry.getFilename());
+						listener.worked(1);
+					}
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					return false;
+				} catch (ExecutionException e) {
+					if (e.getCause() instanceof IOException) {
+						throw (IOException) e.getCause();
+					}
+					throw new IOException(e.getCause());
+				}
+			}
+			return true;
+		} finally {
+			// Wait for running extractions to stop, before the caller removes anything extracted.
+			cancelled.set(true);
+			executor.shutdownNow();
+			try {
+				executor.awaitTermination(1, TimeUnit.MINUTES);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	/**
+	 * Stream the entry to its target (if any), and verify its size and digest.
+	 * 
+	 * @param x The entry to extract.
+	 * @param cancelled Flag to indicate the operation has been cancelled.
+	 * @throws IOException If the entry fails to extract or fails verification.
+	 */
+	private static void extract(Extraction x, AtomicBoolean cancelled) throws IOException {
+		MessageDigest digest;
+		try {
+			digest = Digest.createSha512();
+		} catch (NoSuchAlgorithmException e) {
+			throw new IOException("SHA512 digest is not available", e);
+		}
+		long size = 0;
+		try (InputStream in = new DigestInputStream(x.container.getInputStream(x.zipEntry), digest);
+				OutputStream out = x.target != null ? Files.newOutputStream(x.target)
+						: OutputStream.nullOutputStream()) {
+			byte[] b = new byte[BUFFER_SIZE];
+			int read;
+			while ((read = in.read(b)) != -1) {
+				if (cancelled.get()) {
+					return;
+				}
+				out.write(b, 0, read);
+				size += read;
+			}
+		}
+		if (size != x.entry.getSize()) {
+			throw new IOException("Entry '" + x.entry.getFilename() + "' not read fully?");
+		}
+		String sha512 = Strings.toHexString(digest.digest());
+		if (!sha512.equalsIgnoreCase(x.entry.getSha512())) {
+			throw new IOException("Entry '" + x.entry.getFilename() + "' fails digest verification?");
+		}
+	}
+
+	/**
+	 * Check the backup file can be restored to the destination.
+	 * 
+	 * @param filename The filename of the backup file
+	 * @param destination The destination location
+	 * @throws IOException If the file is not readable, or the destination is not writable.
+	 */
+	private static void checkRestore(Path filename, Path destination) throws IOException {
+		if (!Files.exists(filename) || !Files.isReadable(filename) || !Files.isRegularFile(filename)) {
+			throw new IOException("Backup file '" + filename.toString() + "' does not exist or is not readable");
+		}
+		if (!Files.isDirectory(destination) || !Files.isWritable(destination)) {
+			throw new IOException("Destination Location '" + filename.toString()
+					+ "' does not exist, is not a Directory or is not writable");
+		}
 	}
 
 }
@@ -84,6 +84,20 @@ public class Digest {
 		return digest("SHA512", content);
 	}
 
+	/**
+	 * Create a new SHA512 digest, for digesting streamed content.
+	 * 
+	 * @return A new digest.
+	 * @throws NoSuchAlgorithmException If the digest is not available.
+	 */
+	public static MessageDigest createSha512() throws NoSuchAlgorithmException {
+		try {
+			return MessageDigest.getInstance("SHA512", BouncyCastleProvider.PROVIDER_NAME);
+		} catch (NoSuchProviderException e) {
+			throw new NoSuchAlgorithmException(e);
+		}
+	}
+
 	/**
 	 * Get the digest for the given input
 	 * 
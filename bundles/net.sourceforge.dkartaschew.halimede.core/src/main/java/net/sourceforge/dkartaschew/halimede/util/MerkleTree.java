@@ -0,0 +1,388 @@
+/*-
+ * Halimede Certificate Manager Plugin for Eclipse 
+ * Copyright (C) 2017-2021 Darran Kartaschew 
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v2.0 which
+ * accompanies this distribution and is available at
+ *
+ * http://www.eclipse.org/legal/epl-v20.html
+ * 
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the Eclipse
+ * Public License, v. 2.0 are satisfied: GNU General Public License, version 2
+ * with the GNU Classpath Exception which is
+ * available at https://www.gnu.org/software/classpath/license.html.
+ */
+
+package net.sourceforge.dkartaschew.halimede.util;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Merkle tree hashing, as for Certificate Transparency (RFC 6962), using SHA-256.
+ * <p>
+ * Leaves and interior nodes are hashed with distinct prefixes, so a leaf can never be presented as a node. The tree of
+ * n leaves splits at the largest power of two less than n, so the audit path of a leaf (which proves it is included
+ * under a root) and the consistency proof between two sizes of the tree (which proves the larger tree only appends to
+ * the smaller) each hold at most about log<sub>2</sub>(n) hashes. Proofs may be built over any source of subtree
+ * roots (see {@link Subtrees}), so a tree held on disk need not be read in full. Instances hold a digest, so are not
+ * thread safe.
+ */
+public final class MerkleTree {
+
+	/**
+	 * The length of a hash in bytes.
+	 */
+	public static final int HASH = 32;
+
+	/**
+	 * Prefix of a leaf hash.
+	 */
+	private static final byte LEAF = 0;
+	/**
+	 * Prefix of an interior node hash.
+	 */
+	private static final byte NODE = 1;
+
+	/**
+	 * Source of the roots of the subtrees of a tree, from which proofs are built.
+	 * <p>
+	 * Subtrees requested either hold a power of two leaves, starting at a multiple of that size, or end at the last
+	 * leaf of the tree the proof is for.
+	 *
+	 * @param <E> The type of exception thrown if a root cannot be read.
+	 */
+	@FunctionalInterface
+	public interface Subtrees<E extends Exception> {
+
+		/**
+		 * Get the root of a subtree.
+		 *
+		 * @param from The first leaf of the subtree.
+		 * @param to The leaf following the subtree.
+		 * @return The root hash.
+		 * @throws E If the root cannot be read.
+		 */
+		byte[] root(long from, long to) throws E;
+	}
+
+	/**
+	 * The digest.
+	 */
+	private final MessageDigest digest;
+
+	/**
+	 * Create a new tree hasher.
+	 */
+	public MerkleTree() {
+		try {
+			digest = MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("SHA-256 is not available", e);
+		}
+	}
+
+	/**
+	 * Get the digest, for hashing other content.
+	 *
+	 * @return The (reset) digest.
+	 */
+	public MessageDigest getDigest() {
+		digest.reset();
+		return digest;
+	}
+
+	/**
+	 * Hash a leaf.
+	 *
+	 * @param data The leaf data.
+	 * @return The leaf hash.
+	 */
+	public byte[] leaf(byte[] data) {
+		return leaf(data, 0, data.length);
+	}
+
+	/**
+	 * Hash a leaf.
+	 *
+	 * @param data The buffer holding the leaf data.
+	 * @param offset The offset of the leaf data.
+	 * @param length The length of the leaf data.
+	 * @return The leaf hash.
+	 */
+	public byte[] leaf(byte[] data, int offset, int length) {
+		digest.reset();
+		digest.update(LEAF);
+		digest.update(data, offset, length);
+		return digest.digest();
+	}
+
+	/**
+	 * Hash an interior node.
+	 *
+	 * @param left The hash of the left subtree.
+	 * @param right The hash of the right subtree.
+	 * @return The node hash.
+	 */
+	public byte[] node(byte[] left, byte[] right) {
+		digest.reset();
+		digest.update(NODE);
+		digest.update(left);
+		digest.update(right);
+		return digest.digest();
+	}
+
+	/**
+	 * Get the root of the tree of the given leaves.
+	 *
+	 * @param leaves The leaf hashes.
+	 * @return The root hash. (The hash of no data for an empty tree).
+	 */
+	public byte[] root(List<byte[]> leaves) {
+		return root(leaves, 0, leaves.size());
+	}
+
+	/**
+	 * Get the root of the subtree of the given leaves.
+	 *
+	 * @param leaves The leaf hashes.
+	 * @param from The first leaf of the subtree.
+	 * @param to The leaf following the subtree.
+	 * @return The root hash.
+	 */
+	public byte[] root(List<byte[]> leaves, int from, int to) {
+		if (from == to) {
+			digest.reset();
+			return digest.digest();
+		}
+		// Fold complete subtrees left to right; what remains are the complete subtrees of decreasing size.
+		byte[][] stack = new byte[Integer.SIZE][];
+		int depth = 0;
+		for (int i = from; i < to; i++) {
+			byte[] hash = leaves.get(i);
+			for (int n = i - from; (n & 1) == 1; n >>>= 1) {
+				hash = node(stack[--depth], hash);
+			}
+			stack[depth++] = hash;
+		}
+		byte[] hash = stack[--depth];
+		while (depth > 0) {
+			hash = node(stack[--depth], hash);
+		}
+		return hash;
+	}
+
+	/**
+	 * Get the audit path of a leaf.
+	 *
+	 * @param leaves The leaf hashes.
+	 * @param index The index of the leaf.
+	 * @return The audit path, nearest the leaf first.
+	 */
+	public List<byte[]> path(List<byte[]> leaves, int index) {
+		return path(index, leaves.size(), (from, to) -> root(leaves, (int) from, (int) to));
+	}
+
+	/**
+	 * Get the audit path of a leaf.
+	 *
+	 * @param <E> The type of exception thrown if a root cannot be read.
+	 * @param index The index of the leaf.
+	 * @param size The number of leaves in the tree.
+	 * @param subtrees The source of the subtree roots.
+	 * @return The audit path, nearest the leaf first.
+	 * @throws E If a subtree root cannot be read.
+	 */
+	public static <E extends Exception> List<byte[]> path(long index, long size, Subtrees<E> subtrees) throws E {
+		if (index < 0 || index >= size) {
+			throw new IllegalArgumentException("Leaf index is not valid");
+		}
+		List<byte[]> path = new ArrayList<>();
+		path(index, 0, size, subtrees, path);
+		return path;
+	}
+
+	/**
+	 * Append the audit path of a leaf within a subtree, nearest the leaf first.
+	 */
+	private static <E extends Exception> void path(long index, long from, long to, Subtrees<E> subtrees,
+			List<byte[]> path) throws E {
+		if (to - from <= 1) {
+			return;
+		}
+		long k = split(to - from);
+		if (index < from + k) {
+			path(index, from, from + k, subtrees, path);
+			path.add(subtrees.root(from + k, to));
+		} else {
+			path(index, from + k, to, subtrees, path);
+			path.add(subtrees.root(from, from + k));
+		}
+	}
+
+	/**
+	 * Get the consistency proof between two sizes of a tree.
+	 *
+	 * @param <E> The type of exception thrown if a root cannot be read.
+	 * @param first The number of leaves in the earlier tree.
+	 * @param second The number of leaves in the later tree.
+	 * @param subtrees The source of the subtree roots (of the later tree).
+	 * @return The consistency proof. (Empty if either tree is empty, or they are the same size).
+	 * @throws E If a subtree root cannot be read.
+	 */
+	public static <E extends Exception> List<byte[]> consistency(long first, long second, Subtrees<E> subtrees)
+			throws E {
+		if (first < 0 || first > second) {
+			throw new IllegalArgumentException("Tree sizes are not valid");
+		}
+		List<byte[]> proof = new ArrayList<>();
+		if (first > 0 && first < second) {
+			consistency(first, 0, second, true, subtrees, proof);
+		}
+		return proof;
+	}
+
+	/**
+	 * Append the consistency proof of the first m leaves of a subtree, as defined by RFC 6962.
+	 */
+	private static <E extends Exception> void consistency(long m, long from, long to, boolean complete,
+			Subtrees<E> subtrees, List<byte[]> proof) throws E {
+		if (m == to - from) {
+			// The earlier root is known to the verifier if this is the whole earlier tree.
+			if (!complete) {
+				proof.add(subtrees.root(from, to));
+			}
+			return;
+		}
+		long k = split(to - from);
+		if (m <= k) {
+			consistency(m, from, from + k, complete, subtrees, proof);
+			proof.add(subtrees.root(from + k, to));
+		} else {
+			consistency(m - k, from + k, to, false, subtrees, proof);
+			proof.add(subtrees.root(from, from + k));
+		}
+	}
+
+	/**
+	 * Get the root implied by the audit path of a leaf.
+	 *
+	 * @param leaf The leaf hash.
+	 * @param index The index of the leaf.
+	 * @param size The number of leaves in the tree.
+	 * @param path The audit path, nearest the leaf first.
+	 * @return The root hash, or NULL if the path is not valid for the index and size.
+	 */
+	public byte[] root(byte[] leaf, long index, long size, List<byte[]> path) {
+		if (index < 0 || index >= size) {
+			return null;
+		}
+		long fn = index;
+		long sn = size - 1;
+		byte[] hash = leaf;
+		for (byte[] p : path) {
+			if (sn == 0) {
+				return null;
+			}
+			if ((fn & 1) == 1 || fn == sn) {
+				hash = node(p, hash);
+				while ((fn & 1) == 0 && fn != 0) {
+					fn >>>= 1;
+					sn >>>= 1;
+				}
+			} else {
+				hash = node(hash, p);
+			}
+			fn >>>= 1;
+			sn >>>= 1;
+		}
+		return sn == 0 ? hash : null;
+	}
+
+	/**
+	 * Is the leaf included under the root?
+	 *
+	 * @param leaf The leaf hash.
+	 * @param index The index of the leaf.
+	 * @param size The number of leaves in the tree.
+	 * @param path The audit path, nearest the leaf first.
+	 * @param root The expected root hash.
+	 * @return TRUE if the path proves the leaf is included.
+	 */
+	public boolean verify(byte[] leaf, long index, long size, List<byte[]> path, byte[] root) {
+		byte[] hash = root(leaf, index, size, path);
+		return hash != null && MessageDigest.isEqual(hash, root);
+	}
+
+	/**
+	 * Does the consistency proof show the later tree only appends to the earlier tree? (As for RFC 9162).
+	 *
+	 * @param first The number of leaves in the earlier tree.
+	 * @param second The number of leaves in the later tree.
+	 * @param firstRoot The root hash of the earlier tree.
+	 * @param secondRoot The root hash of the later tree.
+	 * @param proof The consistency proof.
+	 * @return TRUE if the proof is valid for the two trees.
+	 */
+	public boolean consistent(long first, long second, byte[] firstRoot, byte[] secondRoot, List<byte[]> proof) {
+		if (first < 0 || first > second) {
+			return false;
+		}
+		if (first == second) {
+			return proof.isEmpty() && MessageDigest.isEqual(firstRoot, secondRoot);
+		}
+		if (first == 0) {
+			// Any tree extends the empty tree.
+			return proof.isEmpty();
+		}
+		if (proof.isEmpty()) {
+			return false;
+		}
+		// A complete earlier tree is a subtree of the later tree, so its root is omitted from the proof.
+		int i = 0;
+		byte[] fr = firstRoot;
+		if (Long.bitCount(first) != 1) {
+			fr = proof.get(i++);
+		}
+		byte[] sr = fr;
+		long fn = first - 1;
+		long sn = second - 1;
+		while ((fn & 1) == 1) {
+			fn >>>= 1;
+			sn >>>= 1;
+		}
+		for (; i < proof.size(); i++) {
+			byte[] p = proof.get(i);
+			if (sn == 0) {
+				return false;
+			}
+			if ((fn & 1) == 1 || fn == sn) {
+				fr = node(p, fr);
+				sr = node(p, sr);
+				while ((fn & 1) == 0 && fn != 0) {
+					fn >>>= 1;
+					sn >>>= 1;
+				}
+			} else {
+				sr = node(sr, p);
+			}
+			fn >>>= 1;
+			sn >>>= 1;
+		}
+		return sn == 0 && MessageDigest.isEqual(fr, firstRoot) && MessageDigest.isEqual(sr, secondRoot);
+	}
+
+	/**
+	 * Get the size of the left subtree of a tree: the largest power of two less than the number of leaves.
+	 *
+	 * @param size The number of leaves. (At least 2).
+	 * @return The size of the left subtree.
+	 */
+	private static long split(long size) {
+		return Long.highestOneBit(size - 1);
+	}
+}
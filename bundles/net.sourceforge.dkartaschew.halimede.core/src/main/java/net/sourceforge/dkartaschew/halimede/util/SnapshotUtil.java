@@ -0,0 +1,446 @@
+/*-
+ * Halimede Certificate Manager Plugin for Eclipse 
+ * Copyright (C) 2017-2021 Darran Kartaschew 
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v2.0 which
+ * accompanies this distribution and is available at
+ *
+ * http://www.eclipse.org/legal/epl-v20.html
+ * 
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the Eclipse
+ * Public License, v. 2.0 are satisfied: GNU General Public License, version 2
+ * with the GNU Classpath Exception which is
+ * available at https://www.gnu.org/software/classpath/license.html.
+ */
+
+package net.sourceforge.dkartaschew.halimede.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystemException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import net.sourceforge.dkartaschew.halimede.backup.Snapshot;
+import net.sourceforge.dkartaschew.halimede.data.CertificateAuthority;
+import net.sourceforge.dkartaschew.halimede.data.CertificateAuthoritySettings;
+import net.sourceforge.dkartaschew.halimede.data.IssuanceLedger;
+import net.sourceforge.dkartaschew.halimede.data.store.FileSystemDatastore;
+
+/**
+ * Snapshot Utility Functions.
+ * <p>
+ * Snapshots are point-in-time copies of a Certificate Authority datastore, held in the {@link #SNAPSHOTS_PATH}
+ * folder of the datastore. Artefacts which are never modified once written (PKCS#12 stores, PKCS#7 bundles, CRLs and
+ * requests) are hard linked into the snapshot, and only the remaining (mutable) files are copied, so a snapshot takes
+ * little time or space. (The filesystem datastore replaces, rather than rewrites, files it updates, so linked files
+ * are never changed through the datastore). Files are copied if the filesystem does not support hard links.
+ */
+public class SnapshotUtil {
+
+	/**
+	 * The folder name where snapshots are stored.
+	 */
+	public final static String SNAPSHOTS_PATH = "Snapshots";
+
+	/**
+	 * System Properties key (number of snapshots retained when pruning)
+	 */
+	public static final String KEEP = "net.sourceforge.dkartaschew.halimede.snapshot.keep";
+
+	/**
+	 * The default number of snapshots retained.
+	 */
+	private static final int DEFAULT_KEEP = 10;
+
+	/**
+	 * Suffix of snapshots being created.
+	 */
+	private static final String PARTIAL = ".partial";
+
+	/**
+	 * Suffix of the staged copy of a snapshot being restored. (Also incomplete, so never listed).
+	 */
+	private static final String RESTORING = "-restore" + PARTIAL;
+
+	/**
+	 * Format of the snapshot ID (creation time in UTC).
+	 */
+	private static final DateTimeFormatter ID_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss-SSS", Locale.ROOT);
+
+	/**
+	 * Extensions of files which are linked rather than copied.
+	 */
+	private static final Set<String> LINKED_EXTENSIONS = Collections
+			.unmodifiableSet(new HashSet<>(Arrays.asList("p12", "p7b", "crl", "csr")));
+
+	/**
+	 * Create a snapshot of the datastore at the given location.
+	 * <p>
+	 * The datastore should not be updated while the snapshot is taken. (See {@link CertificateAuthority#snapshot()}).
+	 * 
+	 * @param basePath The location of the datastore.
+	 * @return The snapshot.
+	 * @throws IOException If creating the snapshot fails.
+	 */
+	public static Snapshot create(Path basePath) throws IOException {
+		Objects.requireNonNull(basePath, "Location not defined");
+		Path snapshots = basePath.resolve(SNAPSHOTS_PATH);
+		Files.createDirectories(snapshots);
+		ZonedDateTime now = ZonedDateTime.now(ZoneOffset.UTC).truncatedTo(ChronoUnit.MILLIS);
+		String base = ID_FORMAT.format(now);
+		String id = base;
+		for (int i = 1; Files.exists(snapshots.resolve(id)) || Files.exists(snapshots.resolve(id + PARTIAL)); i++) {
+			id = base + "-" + i;
+		}
+		// Created under a temporary name, so incomplete snapshots are never listed.
+		Path partial = snapshots.resolve(id + PARTIAL);
+		Files.createDirectory(partial);
+		try {
+			copy(basePath, partial);
+			Path location = snapshots.resolve(id);
+			Files.move(partial, location, StandardCopyOption.ATOMIC_MOVE);
+			return new Snapshot(id, location, now);
+		} catch (IOException | RuntimeException e) {
+			delete(partial);
+			throw e;
+		}
+	}
+
+	/**
+	 * List the snapshots of the datastore at the given location.
+	 * 
+	 * @param basePath The location of the datastore.
+	 * @return The snapshots, most recent first.
+	 * @throws IOException If listing the snapshots fails.
+	 */
+	public static List<Snapshot> list(Path basePath) throws IOException {
+		Objects.requireNonNull(basePath, "Location not defined");
+		Path snapshots = basePath.resolve(SNAPSHOTS_PATH);
+		List<Snapshot> result = new ArrayList<>();
+		if (!Files.isDirectory(snapshots)) {
+			return result;
+		}
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(snapshots, Files::isDirectory)) {
+			for (Path location : stream) {
+				String id = location.getFileName().toString();
+				ZonedDateTime created = parseId(id);
+				if (created != null && !id.endsWith(PARTIAL)) {
+					result.add(new Snapshot(id, location, created));
+				}
+			}
+		}
+		Collections.sort(result);
+		return result;
+	}
+
+	/**
+	 * Restore the datastore at the given location to the snapshot. A snapshot of the current state is taken first.
+	 * <p>
+	 * The snapshot is first copied to a staging folder, so a failed copy leaves the datastore as it was; the current
+	 * contents are then replaced with those staged, and if that fails, restored from the snapshot taken first. The
+	 * next certificate and CRL serial numbers are never rolled back, so serials are never issued twice.
+	 * <p>
+	 * The Certificate Authority must be closed while restoring, and opened again afterwards.
+	 * 
+	 * @param basePath The location of the datastore.
+	 * @param snapshot The snapshot to restore.
+	 * @return The snapshot of the state before the restore.
+	 * @throws IOException If the snapshot is not of the datastore, or restoring fails.
+	 */
+	public static Snapshot restore(Path basePath, Snapshot snapshot) throws IOException {
+		Objects.requireNonNull(basePath, "Location not defined");
+		Objects.requireNonNull(snapshot, "Snapshot not defined");
+		Path location = snapshot.getLocation().toAbsolutePath().normalize();
+		Path snapshots = basePath.resolve(SNAPSHOTS_PATH).toAbsolutePath().normalize();
+		if (!snapshots.equals(location.getParent()) || !Files.isDirectory(location)) {
+			throw new IOException("Snapshot '" + snapshot.getId() + "' is not a snapshot of '" + basePath + "'");
+		}
+		Snapshot previous = create(basePath);
+		Path staging = snapshots.resolve(previous.getId() + RESTORING);
+		try {
+			Files.createDirectory(staging);
+			copy(location, staging);
+			carrySerials(basePath, staging);
+			// Replace the current contents with those staged, moving them within the datastore.
+			try {
+				clear(basePath);
+				try (DirectoryStream<Path> stream = Files.newDirectoryStream(staging)) {
+					for (Path item : stream) {
+						Files.move(item, basePath.resolve(item.getFileName().toString()));
+					}
+				}
+			} catch (IOException | RuntimeException e) {
+				try {
+					clear(basePath);
+					copy(previous.getLocation(), basePath);
+				} catch (IOException | RuntimeException ex) {
+					e.addSuppressed(ex);
+				}
+				throw e;
+			}
+		} finally {
+			delete(staging);
+		}
+		return previous;
+	}
+
+	/**
+	 * Carry the next serial numbers of the current datastore forward to the staged configuration, where greater.
+	 * (The next certificate serial is at least past the entries of the issuance ledger).
+	 * 
+	 * @param basePath The location of the datastore.
+	 * @param staging The staged snapshot.
+	 * @throws IOException If the staged configuration can't be read or written.
+	 */
+	private static void carrySerials(Path basePath, Path staging) throws IOException {
+		Path config = staging.resolve(CertificateAuthoritySettings.DEFAULT_NAME);
+		if (!Files.exists(config)) {
+			return;
+		}
+		CertificateAuthoritySettings settings;
+		try {
+			settings = CertificateAuthoritySettings.read(config);
+		} catch (Exception e) {
+			throw new IOException("Unable to read the configuration of the snapshot", e);
+		}
+		BigInteger serial = settings.getSerial();
+		BigInteger crlSerial = settings.getCRLSerial();
+		Path current = basePath.resolve(CertificateAuthoritySettings.DEFAULT_NAME);
+		if (Files.exists(current)) {
+			try {
+				CertificateAuthoritySettings live = CertificateAuthoritySettings.read(current);
+				settings.setSerial(live.getSerial());
+				settings.setCRLSerial(live.getCRLSerial());
+			} catch (Exception e) {
+				// Not readable, so only the ledger applies.
+			}
+		}
+		Path ledger = basePath.resolve(CertificateAuthority.LEDGER_PATH);
+		if (Files.exists(ledger.resolve(IssuanceLedger.ENTRIES))) {
+			try (IssuanceLedger l = new IssuanceLedger(ledger)) {
+				settings.setSerial(BigInteger.valueOf(l.size() + 1));
+			} catch (IOException e) {
+				// Not readable, so no bound.
+			}
+		}
+		if (Objects.equals(serial, settings.getSerial()) && Objects.equals(crlSerial, settings.getCRLSerial())) {
+			return;
+		}
+		try {
+			// A copy, as only immutable files are linked.
+			CertificateAuthoritySettings.write(settings, config);
+		} catch (Exception e) {
+			throw new IOException("Unable to write the configuration of the snapshot", e);
+		}
+	}
+
+	/**
+	 * Remove the contents of the datastore, other than the excluded folders.
+	 * 
+	 * @param basePath The location of the datastore.
+	 * @throws IOException If deleting fails.
+	 */
+	private static void clear(Path basePath) throws IOException {
+		Files.walkFileTree(basePath, new SimpleFileVisitor<Path>() {
+			@Override
+			public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+				return isExcluded(basePath, dir) ? FileVisitResult.SKIP_SUBTREE : FileVisitResult.CONTINUE;
+			}
+
+			@Override
+			public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+				Files.delete(file);
+				return FileVisitResult.CONTINUE;
+			}
+
+			@Override
+			public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
+				if (exc != null) {
+					throw exc;
+				}
+				if (!dir.equals(basePath)) {
+					Files.delete(dir);
+				}
+				return FileVisitResult.CONTINUE;
+			}
+		});
+	}
+
+	/**
+	 * Delete the snapshot.
+	 * 
+	 * @param snapshot The snapshot.
+	 * @throws IOException If deleting fails.
+	 */
+	public static void delete(Snapshot snapshot) throws IOException {
+		Objects.requireNonNull(snapshot, "Snapshot not defined");
+		delete(snapshot.getLocation());
+	}
+
+	/**
+	 * Delete all but the most recent snapshots, and any incomplete snapshots.
+	 * 
+	 * @param basePath The location of the datastore.
+	 * @param keep The number of snapshots to keep.
+	 * @return The snapshots deleted.
+	 * @throws IOException If deleting fails.
+	 */
+	public static List<Snapshot> prune(Path basePath, int keep) throws IOException {
+		List<Snapshot> snapshots = list(basePath);
+		List<Snapshot> deleted = new ArrayList<>();
+		for (int i = Math.max(0, keep); i < snapshots.size(); i++) {
+			delete(snapshots.get(i));
+			deleted.add(snapshots.get(i));
+		}
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(basePath.resolve(SNAPSHOTS_PATH),
+				"*" + PARTIAL)) {
+			for (Path partial : stream) {
+				delete(partial);
+			}
+		}
+		return deleted;
+	}
+
+	/**
+	 * Get the number of snapshots retained when pruning.
+	 * 
+	 * @return The number of snapshots to keep.
+	 */
+	public static int getKeep() {
+		String keep = System.getProperty(KEEP);
+		if (keep != null) {
+			try {
+				int value = Integer.parseInt(keep.trim());
+				if (value >= 0) {
+					return value;
+				}
+			} catch (NumberFormatException e) {
+				// fall through to the default.
+			}
+		}
+		return DEFAULT_KEEP;
+	}
+
+	/**
+	 * Is the folder excluded from snapshots? (The snapshots themselves, and the activity logs and issuance ledger,
+	 * which are append only, so are never rolled back by a restore).
+	 * 
+	 * @param basePath The location of the datastore.
+	 * @param dir The folder.
+	 * @return TRUE if the folder is excluded.
+	 */
+	public static boolean isExcluded(Path basePath, Path dir) {
+		return dir.equals(basePath.resolve(SNAPSHOTS_PATH))
+				|| dir.equals(basePath.resolve(CertificateAuthority.LOG_PATH))
+				|| dir.equals(basePath.resolve(CertificateAuthority.LEDGER_PATH));
+	}
+
+	/**
+	 * Copy the contents of the source folder to the target, linking immutable files.
+	 * 
+	 * @param source The source folder.
+	 * @param target The target folder.
+	 * @throws IOException If copying fails.
+	 */
+	private static void copy(Path source, Path target) throws IOException {
+		Files.walkFileTree(source, new SimpleFileVisitor<Path>() {
+			@Override
+			public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+				if (isExcluded(source, dir)) {
+					return FileVisitResult.SKIP_SUBTREE;
+				}
+				Files.createDirectories(target.resolve(source.relativize(dir).toString()));
+				return FileVisitResult.CONTINUE;
+			}
+
+			@Override
+			public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+				String name = file.getFileName().toString();
+				if (FileSystemDatastore.isTemporary(name)) {
+					// Item being written.
+					return FileVisitResult.CONTINUE;
+				}
+				Path to = target.resolve(source.relativize(file).toString());
+				if (isLinked(name)) {
+					try {
+						Files.createLink(to, file);
+						return FileVisitResult.CONTINUE;
+					} catch (UnsupportedOperationException | FileSystemException e) {
+						// Copy instead.
+					}
+				}
+				Files.copy(file, to, StandardCopyOption.COPY_ATTRIBUTES);
+				return FileVisitResult.CONTINUE;
+			}
+		});
+	}
+
+	/**
+	 * Is the file immutable, so linked rather than copied?
+	 * 
+	 * @param name The filename.
+	 * @return TRUE if the file is linked.
+	 */
+	private static boolean isLinked(String name) {
+		int dot = name.lastIndexOf('.');
+		return dot >= 0 && LINKED_EXTENSIONS.contains(name.substring(dot + 1).toLowerCase(Locale.ROOT));
+	}
+
+	/**
+	 * Parse the creation time from the snapshot ID.
+	 * 
+	 * @param id The snapshot ID.
+	 * @return The creation time, or NULL if not a snapshot ID.
+	 */
+	private static ZonedDateTime parseId(String id) {
+		if (id.length() < 19) {
+			return null;
+		}
+		try {
+			return LocalDateTime.parse(id.substring(0, 19), ID_FORMAT).atZone(ZoneOffset.UTC);
+		} catch (DateTimeParseException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Delete the folder and its contents.
+	 * 
+	 * @param path The folder.
+	 * @throws IOException If deleting fails.
+	 */
+	private static void delete(Path path) throws IOException {
+		if (Files.exists(path)) {
+			try (Stream<Path> files = Files.walk(path)) {
+				files.sorted(Comparator.reverseOrder())//
+						.map(Path::toFile)//
+						.forEach(File::delete);
+			}
+		}
+	}
+}
@@ -520,4 +520,21 @@ public class Strings {
 		return c - 'A' + 10;
 	}
 
+	/**
+	 * Fold the case of the string, so that {@link String#compareTo(String)} orders the folded strings the same as
+	 * {@link String#compareToIgnoreCase(String)} orders the originals.
+	 *
+	 * @param value The string.
+	 * @return The folded string, or NULL if NULL or empty.
+	 */
+	public static String fold(String value) {
+		if (value == null || value.isEmpty()) {
+			return null;
+		}
+		char[] chars = value.toCharArray();
+		for (int i = 0; i < chars.length; i++) {
+			chars[i] = Character.toLowerCase(Character.toUpperCase(chars[i]));
+		}
+		return new String(chars);
+	}
 }
@@ -0,0 +1,389 @@
+/*-
+ * Halimede Certificate Manager Plugin for Eclipse 
+ * Copyright (C) 2017-2021 Darran Kartaschew 
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v2.0 which
+ * accompanies this distribution and is available at
+ *
+ * http://www.eclipse.org/legal/epl-v20.html
+ * 
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the Eclipse
+ * Public License, v. 2.0 are satisfied: GNU General Public License, version 2
+ * with the GNU Classpath Exception which is
+ * available at https://www.gnu.org/software/classpath/license.html.
+ */
+
+package net.sourceforge.dkartaschew.halimede.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+
+/**
+ * Incremental full-text index of a collection of elements, supporting case-insensitive substring queries.
+ * <p>
+ * The text fields of each element are held case folded, and each element is listed in an inverted index under every
+ * trigram (3 character sequence) of its text. A query is split on whitespace into terms, and matches elements whose
+ * text contains every term. Candidates are found by intersecting the postings of the trigrams of the query terms, and
+ * then checked against the held text, so only a small fraction of the elements is examined. Terms shorter than a
+ * trigram are checked against the held text only.
+ * <p>
+ * Elements are compared by identity. All methods are thread safe.
+ *
+ * @param <T> The type of element.
+ */
+public class TextIndex<T> {
+
+	/**
+	 * The length of the indexed n-grams.
+	 */
+	public static final int GRAM = 3;
+
+	/**
+	 * The number of removed entries tolerated before the index is compacted.
+	 */
+	private static final int COMPACT_THRESHOLD = 1024;
+
+	/**
+	 * Separator between the fields of an element. (Query terms never contain whitespace, so never span fields).
+	 */
+	private static final char SEPARATOR = '\n';
+
+	/**
+	 * Sorted list of the IDs of the elements containing an n-gram.
+	 */
+	private static final class Postings {
+		private int[] ids = new int[4];
+		private int size;
+
+		void add(int id) {
+			// IDs are allocated in increasing order, so appending retains the order.
+			if (size == 0 || ids[size - 1] != id) {
+				if (size == ids.length) {
+					ids = Arrays.copyOf(ids, size * 2);
+				}
+				ids[size++] = id;
+			}
+		}
+	}
+
+	/**
+	 * Function to get the text fields of an element.
+	 */
+	private final Function<T, String[]> fields;
+	/**
+	 * The ID of each indexed element.
+	 */
+	private final Map<T, Integer> ids = new IdentityHashMap<>();
+	/**
+	 * The elements, by ID. (NULL if removed).
+	 */
+	private Object[] elements = new Object[64];
+	/**
+	 * The folded text of the elements, by ID. (NULL if removed).
+	 */
+	private String[] texts = new String[64];
+	/**
+	 * The next ID to allocate.
+	 */
+	private int next;
+	/**
+	 * The inverted index of n-gram to postings.
+	 */
+	private final Map<Long, Postings> postings = new HashMap<>();
+
+	/**
+	 * Create a new empty index.
+	 *
+	 * @param fields Function to get the text fields of an element. (Fields may be NULL).
+	 */
+	public TextIndex(Function<T, String[]> fields) {
+		this.fields = Objects.requireNonNull(fields, "Fields are not valid");
+	}
+
+	/**
+	 * Add (or replace) the given elements.
+	 *
+	 * @param items The elements.
+	 */
+	public synchronized void addAll(Collection<? extends T> items) {
+		for (T item : items) {
+			add(item);
+		}
+	}
+
+	/**
+	 * Add (or replace) the given element.
+	 *
+	 * @param item The element.
+	 */
+	public synchronized void add(T item) {
+		if (item == null) {
+			return;
+		}
+		remove(item);
+		String text = getText(item);
+		if (next == elements.length) {
+			elements = Arrays.copyOf(elements, next * 2);
+			texts = Arrays.copyOf(texts, next * 2);
+		}
+		int id = next++;
+		elements[id] = item;
+		texts[id] = text;
+		ids.put(item, id);
+		for (long gram : grams(text)) {
+			postings.computeIfAbsent(gram, g -> new Postings()).add(id);
+		}
+	}
+
+	/**
+	 * Remove the given element.
+	 *
+	 * @param item The element.
+	 */
+	public synchronized void remove(Object item) {
+		Integer id = ids.remove(item);
+		if (id != null) {
+			// Postings of removed elements are dropped when compacted.
+			elements[id] = null;
+			texts[id] = null;
+			int dead = next - ids.size();
+			if (dead >= COMPACT_THRESHOLD && dead > ids.size()) {
+				compact();
+			}
+		}
+	}
+
+	/**
+	 * Apply changes to the indexed elements.
+	 *
+	 * @param added The elements added.
+	 * @param removed The elements removed.
+	 * @param updated The elements whose text has changed.
+	 */
+	public synchronized void update(Collection<? extends T> added, Collection<?> removed,
+			Collection<? extends T> updated) {
+		for (Object item : removed) {
+			remove(item);
+		}
+		addAll(updated);
+		addAll(added);
+	}
+
+	/**
+	 * Remove all elements.
+	 */
+	public synchronized void clear() {
+		ids.clear();
+		postings.clear();
+		elements = new Object[64];
+		texts = new String[64];
+		next = 0;
+	}
+
+	/**
+	 * Get the number of indexed elements.
+	 *
+	 * @return The number of indexed elements.
+	 */
+	public synchronized int size() {
+		return ids.size();
+	}
+
+	/**
+	 * Is the given element indexed?
+	 *
+	 * @param item The element.
+	 * @return TRUE if the element is indexed.
+	 */
+	public synchronized boolean contains(Object item) {
+		return ids.containsKey(item);
+	}
+
+	/**
+	 * Find the elements matching the query.
+	 *
+	 * @param query The query. Whitespace separated terms, which must all be contained in the text of an element
+	 *            (ignoring case).
+	 * @return The matching elements, in no particular order. An empty query matches all elements.
+	 */
+	@SuppressWarnings("unchecked")
+	public synchronized List<T> search(String query) {
+		String[] terms = terms(query);
+		// Intersect the postings of all n-grams, smallest first.
+		List<Postings> lists = new ArrayList<>();
+		for (String term : terms) {
+			for (long gram : grams(term)) {
+				Postings p = postings.get(gram);
+				if (p == null) {
+					return Collections.emptyList();
+				}
+				lists.add(p);
+			}
+		}
+		int[] candidates = null;
+		int count = next;
+		if (!lists.isEmpty()) {
+			lists.sort((p1, p2) -> Integer.compare(p1.size, p2.size));
+			candidates = Arrays.copyOf(lists.get(0).ids, lists.get(0).size);
+			count = candidates.length;
+			for (int i = 1; i < lists.size() && count != 0; i++) {
+				count = intersect(candidates, count, lists.get(i));
+			}
+		}
+		List<T> result = new ArrayList<>(Math.min(count, ids.size()));
+		for (int i = 0; i < count; i++) {
+			int id = candidates == null ? i : candidates[i];
+			if (texts[id] != null && containsAll(texts[id], terms)) {
+				result.add((T) elements[id]);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Does the element match the query?
+	 *
+	 * @param item The element.
+	 * @param query The query. (As for {@link #search(String)}).
+	 * @return TRUE if the text of the element contains all terms of the query.
+	 */
+	public synchronized boolean matches(T item, String query) {
+		Integer id = ids.get(item);
+		String text = id != null ? texts[id] : getText(item);
+		return containsAll(text, terms(query));
+	}
+
+	/**
+	 * Get the folded text of the element.
+	 *
+	 * @param item The element.
+	 * @return The text of all fields, folded and separated.
+	 */
+	private String getText(T item) {
+		String[] values = fields.apply(item);
+		StringBuilder sb = new StringBuilder();
+		if (values != null) {
+			for (String value : values) {
+				if (value != null && !value.isEmpty()) {
+					sb.append(value).append(SEPARATOR);
+				}
+			}
+		}
+		String text = Strings.fold(sb.toString());
+		return text == null ? "" : text;
+	}
+
+	/**
+	 * Rebuild the index without the removed elements.
+	 */
+	@SuppressWarnings("unchecked")
+	private void compact() {
+		Object[] live = new Object[ids.size()];
+		int count = 0;
+		for (int i = 0; i < next; i++) {
+			if (elements[i] != null) {
+				live[count++] = elements[i];
+			}
+		}
+		clear();
+		for (int i = 0; i < count; i++) {
+			add((T) live[i]);
+		}
+	}
+
+	/**
+	 * Split the query into folded terms.
+	 *
+	 * @param query The query.
+	 * @return The terms.
+	 */
+	static String[] terms(String query) {
+		String folded = Strings.fold(query == null ? null : query.trim());
+		if (folded == null) {
+			return new String[0];
+		}
+		return folded.split("\\s+");
+	}
+
+	/**
+	 * Get the distinct n-grams of the text, excluding any which contain whitespace.
+	 *
+	 * @param text The (folded) text.
+	 * @return The n-grams, packed as longs.
+	 */
+	static long[] grams(String text) {
+		int len = text.length() - GRAM + 1;
+		if (len <= 0) {
+			return new long[0];
+		}
+		long[] grams = new long[len];
+		int count = 0;
+		int run = 0;
+		long gram = 0;
+		for (int i = 0; i < text.length(); i++) {
+			char c = text.charAt(i);
+			gram = (gram << Character.SIZE) | c;
+			run = Character.isWhitespace(c) ? 0 : run + 1;
+			if (run >= GRAM) {
+				grams[count++] = gram & ((1L << (Character.SIZE * GRAM)) - 1);
+			}
+		}
+		Arrays.sort(grams, 0, count);
+		int unique = 0;
+		for (int i = 0; i < count; i++) {
+			if (unique == 0 || grams[unique - 1] != grams[i]) {
+				grams[unique++] = grams[i];
+			}
+		}
+		return Arrays.copyOf(grams, unique);
+	}
+
+	/**
+	 * Intersect the candidates with the postings, in place.
+	 *
+	 * @param candidates The sorted candidate IDs.
+	 * @param count The number of candidates.
+	 * @param p The postings.
+	 * @return The number of remaining candidates.
+	 */
+	private static int intersect(int[] candidates, int count, Postings p) {
+		int result = 0;
+		int j = 0;
+		for (int i = 0; i < count && j < p.size; i++) {
+			int id = candidates[i];
+			while (j < p.size && p.ids[j] < id) {
+				j++;
+			}
+			if (j < p.size && p.ids[j] == id) {
+				candidates[result++] = id;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Does the text contain all the terms?
+	 *
+	 * @param text The folded text.
+	 * @param terms The folded terms.
+	 * @return TRUE if all terms are contained in the text.
+	 */
+	private static boolean containsAll(String text, String[] terms) {
+		for (String term : terms) {
+			if (!text.contains(term)) {
+				return false;
+			}
+		}
+		return true;
+	}
+}
@@ -0,0 +1,159 @@
+/*-
+ * Halimede Certificate Manager Plugin for Eclipse 
+ * Copyright (C) 2017-2021 Darran Kartaschew 
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v2.0 which
+ * accompanies this distribution and is available at
+ *
+ * http://www.eclipse.org/legal/epl-v20.html
+ * 
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the Eclipse
+ * Public License, v. 2.0 are satisfied: GNU General Public License, version 2
+ * with the GNU Classpath Exception which is
+ * available at https://www.gnu.org/software/classpath/license.html.
+ */
+
+package net.sourceforge.dkartaschew.halimede;
+
+import java.security.KeyPair;
+import java.security.NoSuchAlgorithmException;
+import java.security.cert.X509Certificate;
+import java.time.ZonedDateTime;
+
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.asn1.x509.GeneralName;
+import org.bouncycastle.asn1.x509.GeneralNames;
+import org.bouncycastle.crypto.CryptoServicesRegistrar;
+
+import net.sourceforge.dkartaschew.halimede.data.CertificateAuthority;
+import net.sourceforge.dkartaschew.halimede.data.IssuedCertificateProperties;
+import net.sourceforge.dkartaschew.halimede.data.KeyPairFactory;
+import net.sourceforge.dkartaschew.halimede.data.impl.CertificateKeyPairTemplate;
+import net.sourceforge.dkartaschew.halimede.data.impl.CertificateRequest;
+import net.sourceforge.dkartaschew.halimede.data.impl.IssuedCertificate;
+import net.sourceforge.dkartaschew.halimede.data.store.MemoryDatastore;
+import net.sourceforge.dkartaschew.halimede.enumeration.KeyType;
+import net.sourceforge.dkartaschew.halimede.random.NotSecureRandom;
+import net.sourceforge.dkartaschew.halimede.util.ProviderUtil;
+
+/**
+ * Shared fixture for tests that issue certificates from an in-memory CA.
+ */
+public class CertificateAuthorityFixture {
+
+	/**
+	 * The password of the CA and of all certificates stored as PKCS12.
+	 */
+	public final static String PASSWORD = "changeme";
+
+	/**
+	 * Setup the providers and a repeatable random source.
+	 * 
+	 * @throws NoSuchAlgorithmException The random source is not available.
+	 */
+	public static void setup() throws NoSuchAlgorithmException {
+		ProviderUtil.setupProviders();
+		NotSecureRandom rnd = new NotSecureRandom();
+		CryptoServicesRegistrar.setSecureRandom(rnd);
+		KeyPairFactory.resetSecureRandom(rnd);
+	}
+
+	/**
+	 * Restore the default random source.
+	 */
+	public static void teardown() {
+		CryptoServicesRegistrar.setSecureRandom(null);
+		KeyPairFactory.resetSecureRandom(null);
+	}
+
+	/**
+	 * Create a new CA in a memory datastore.
+	 * 
+	 * @return The CA.
+	 * @throws Exception Creating the CA failed.
+	 */
+	public static CertificateAuthority createCA() throws Exception {
+		return CertificateAuthority.createInDatastore(new MemoryDatastore(),
+				IssuedCertificate.openPKCS12(TestUtilities.getFile("ec521_aes_2.p12"), PASSWORD), "Memory CA");
+	}
+
+	/**
+	 * Create a template for a new EC key pair.
+	 * 
+	 * @param cn The common name.
+	 * @return The template.
+	 */
+	public static CertificateKeyPairTemplate template(String cn) {
+		CertificateKeyPairTemplate template = new CertificateKeyPairTemplate();
+		template.setCreationDate(ZonedDateTime.now());
+		template.setKeyType(KeyType.EC_secp256r1);
+		template.setSubject(new X500Name("CN=" + cn));
+		return template;
+	}
+
+	/**
+	 * Sign a new certificate with the given validity, stored as PKCS12.
+	 * 
+	 * @param ca The CA.
+	 * @param cn The common name.
+	 * @param start The start of validity.
+	 * @param end The end of validity.
+	 * @return The issued certificate.
+	 * @throws Exception Signing failed.
+	 */
+	public static IssuedCertificateProperties sign(CertificateAuthority ca, String cn, ZonedDateTime start,
+			ZonedDateTime end) throws Exception {
+		return sign(ca, template(cn), start, end);
+	}
+
+	/**
+	 * Sign a new certificate from the template with the given validity, stored as PKCS12.
+	 * 
+	 * @param ca The CA.
+	 * @param template The template.
+	 * @param start The start of validity.
+	 * @param end The end of validity.
+	 * @return The issued certificate.
+	 * @throws Exception Signing failed.
+	 */
+	public static IssuedCertificateProperties sign(CertificateAuthority ca, CertificateKeyPairTemplate template,
+			ZonedDateTime start, ZonedDateTime end) throws Exception {
+		return ca.signAndStoreCertificateRequest(template.asCertificateRequest(), start, end, PASSWORD);
+	}
+
+	/**
+	 * Sign a new certificate from a public key only, stored as PKCS7.
+	 * 
+	 * @param ca The CA.
+	 * @param cn The common name.
+	 * @param dns The DNS subject alternative name, or NULL for none.
+	 * @param start The start of validity.
+	 * @param end The end of validity.
+	 * @return The issued certificate.
+	 * @throws Exception Signing failed.
+	 */
+	public static IssuedCertificateProperties signPublic(CertificateAuthority ca, String cn, String dns,
+			ZonedDateTime start, ZonedDateTime end) throws Exception {
+		KeyPair pair = KeyPairFactory.generateKeyPair(KeyType.EC_secp256r1);
+		CertificateRequest request = new CertificateRequest();
+		request.setSubject(new X500Name("CN=" + cn));
+		request.setKeyPair(new KeyPair(pair.getPublic(), null));
+		if (dns != null) {
+			request.setSubjectAlternativeName(new GeneralNames(new GeneralName(GeneralName.dNSName, dns)));
+		}
+		return ca.signAndStoreCertificateRequest(request, start, end, null);
+	}
+
+	/**
+	 * Get the certificate of an issued certificate.
+	 * 
+	 * @param p The issued certificate.
+	 * @return The X509 certificate.
+	 * @throws Exception Loading the certificate failed.
+	 */
+	public static X509Certificate getCertificate(IssuedCertificateProperties p) throws Exception {
+		return (X509Certificate) p.loadIssuedCertificate(PASSWORD).getCertificateChain()[0];
+	}
+}
@@ -0,0 +1,226 @@
+/*-
+ * Halimede Certificate Manager Plugin for Eclipse 
+ * Copyright (C) 2017-2021 Darran Kartaschew 
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v2.0 which
+ * accompanies this distribution and is available at
+ *
+ * http://www.eclipse.org/legal/epl-v20.html
+ * 
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the Eclipse
+ * Public License, v. 2.0 are satisfied: GNU General Public License, version 2
+ * with the GNU Classpath Exception which is
+ * available at https://www.gnu.org/software/classpath/license.html.
+ */
+
+package net.sourceforge.dkartaschew.halimede.backup;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.ZonedDateTime;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.Random;
+import java.util.stream.Stream;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import net.sourceforge.dkartaschew.halimede.TestUtilities;
+import net.sourceforge.dkartaschew.halimede.enumeration.CompressionMethod;
+import net.sourceforge.dkartaschew.halimede.util.Digest;
+import net.sourceforge.dkartaschew.halimede.util.ProviderUtil;
+import net.sourceforge.dkartaschew.halimede.util.Strings;
+
+/**
+ * Test the backup container writer.
+ */
+public class TestZipWriter {
+
+	private final static Random rnd = new Random();
+
+	@BeforeClass
+	public static void setup() {
+		ProviderUtil.setupProviders();
+	}
+
+	@AfterClass
+	public static void cleanup() throws IOException {
+		TestUtilities.cleanup(Paths.get(TestUtilities.TMP, "zipwriter"));
+	}
+
+	private static byte[] content(int size) {
+		byte[] data = new byte[size];
+		// Half random, half compressible.
+		byte[] random = new byte[size / 2];
+		rnd.nextBytes(random);
+		System.arraycopy(random, 0, data, 0, random.length);
+		return data;
+	}
+
+	private static byte[] random(int size) {
+		byte[] data = new byte[size];
+		rnd.nextBytes(data);
+		return data;
+	}
+
+	private static byte[] read(InputStream in) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		in.transferTo(out);
+		return out.toByteArray();
+	}
+
+	private static Path folder() throws IOException {
+		Path folder = Paths.get(TestUtilities.TMP, "zipwriter");
+		Files.createDirectories(folder);
+		return folder;
+	}
+
+	@Test
+	public void testRoundTrip() throws IOException {
+		Path folder = folder();
+		Path file = folder.resolve("roundtrip.zip");
+		byte[][] data = { content(0), content(17), content(256 * 1024), random(64 * 1024) };
+		String[] names = { "ca/empty", "ca/small", "ca/élève/large", "ca/random" };
+		try (ZipWriter zip = new ZipWriter(Files.newOutputStream(file))) {
+			zip.setComment("comment");
+			for (int i = 0; i < data.length; i++) {
+				try (DeflatedEntry e = DeflatedEntry.compress(names[i], new ByteArrayInputStream(data[i]),
+						CompressionPolicy.getDefault(), 1024 * 1024, folder)) {
+					assertEquals(data[i].length, e.getSize());
+					assertFalse(e.isSpilled());
+					assertEquals(Strings.toHexString(Digest.sha512(data[i])), e.getSha512());
+					zip.write(e, ZonedDateTime.now());
+				}
+			}
+		}
+		try (ZipFile zip = new ZipFile(file.toFile())) {
+			assertEquals("comment", zip.getComment());
+			assertEquals(data.length, zip.size());
+			for (int i = 0; i < data.length; i++) {
+				ZipEntry entry = zip.getEntry(names[i]);
+				assertNotNull(entry);
+				assertEquals(data[i].length, entry.getSize());
+				assertArrayEquals(data[i], read(zip.getInputStream(entry)));
+			}
+		}
+		try (ZipInputStream zip = new ZipInputStream(Files.newInputStream(file), StandardCharsets.UTF_8)) {
+			for (int i = 0; i < data.length; i++) {
+				ZipEntry entry = zip.getNextEntry();
+				assertEquals(names[i], entry.getName());
+				assertArrayEquals(data[i], read(zip));
+			}
+		}
+	}
+
+	@Test
+	public void testCompressionMethod() throws IOException {
+		CompressionPolicy policy = new CompressionPolicy(Deflater.DEFAULT_COMPRESSION);
+		byte[] text = new byte[8192];
+		Arrays.fill(text, (byte) 'a');
+		byte[] random = random(8192);
+		// By extension
+		assertEquals(CompressionMethod.STORED, policy.select("ca/keys/1.p12", text, text.length));
+		assertEquals(CompressionMethod.STORED, policy.select("ca/CRL.CRL", text, text.length));
+		assertEquals(CompressionMethod.DEFLATED, policy.select("ca/ca.xml", random, random.length));
+		assertEquals(CompressionMethod.DEFLATED, policy.select("ca/issued/1.prop", random, random.length));
+		// By content
+		assertEquals(CompressionMethod.DEFLATED, policy.select("ca/data", text, text.length));
+		assertEquals(CompressionMethod.STORED, policy.select("ca/data", random, random.length));
+		assertEquals(CompressionMethod.STORED, policy.select("ca.xml/data", random, random.length));
+		assertEquals(CompressionMethod.DEFLATED, policy.select("ca/data", random, 0));
+		// Level 0 stores all.
+		policy = new CompressionPolicy(Deflater.NO_COMPRESSION);
+		assertEquals(CompressionMethod.STORED, policy.select("ca/ca.xml", text, text.length));
+
+		assertEquals(0, CompressionPolicy.entropy(text, text.length), 0.0001);
+		assertEquals(8, CompressionPolicy.entropy(random, random.length), 0.1);
+
+		try (DeflatedEntry e = DeflatedEntry.compress("1.p12", new ByteArrayInputStream(text),
+				CompressionPolicy.getDefault(), 1024 * 1024, null)) {
+			assertEquals(CompressionMethod.STORED, e.getMethod());
+			assertEquals(text.length, e.getCompressedSize());
+		}
+		try (DeflatedEntry e = DeflatedEntry.compress("1.prop", new ByteArrayInputStream(text),
+				CompressionPolicy.getDefault(), 1024 * 1024, null)) {
+			assertEquals(CompressionMethod.DEFLATED, e.getMethod());
+			assertTrue(e.getCompressedSize() < text.length);
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidLevel() {
+		new CompressionPolicy(10);
+	}
+
+	@Test
+	public void testSpill() throws IOException {
+		Path folder = folder().resolve("spill");
+		Files.createDirectories(folder);
+		Path file = folder().resolve("spill.zip");
+		byte[] data = content(512 * 1024);
+		try (ZipWriter zip = new ZipWriter(Files.newOutputStream(file))) {
+			DeflatedEntry e = DeflatedEntry.compress("spilled", new ByteArrayInputStream(data),
+					new CompressionPolicy(Deflater.BEST_SPEED), 1024, folder);
+			assertTrue(e.isSpilled());
+			try (Stream<Path> files = Files.list(folder)) {
+				assertEquals(1, files.count());
+			}
+			zip.write(e, ZonedDateTime.now());
+			e.close();
+			try (Stream<Path> files = Files.list(folder)) {
+				assertEquals(0, files.count());
+			}
+		}
+		try (ZipFile zip = new ZipFile(file.toFile())) {
+			assertArrayEquals(data, read(zip.getInputStream(zip.getEntry("spilled"))));
+		}
+	}
+
+	@Test
+	public void testZip64EntryCount() throws IOException {
+		Path file = folder().resolve("zip64.zip");
+		int count = 0x10000 + 10;
+		try (ZipWriter zip = new ZipWriter(Files.newOutputStream(file))) {
+			ZonedDateTime time = ZonedDateTime.now();
+			for (int i = 0; i < count; i++) {
+				byte[] data = Integer.toString(i).getBytes(StandardCharsets.UTF_8);
+				try (DeflatedEntry e = DeflatedEntry.compress("entry" + i, new ByteArrayInputStream(data),
+						new CompressionPolicy(Deflater.BEST_SPEED), 1024, null)) {
+					zip.write(e, time);
+				}
+			}
+		}
+		try (ZipFile zip = new ZipFile(file.toFile())) {
+			assertEquals(count, zip.size());
+			Enumeration<? extends ZipEntry> entries = zip.entries();
+			int i = 0;
+			while (entries.hasMoreElements()) {
+				ZipEntry entry = entries.nextElement();
+				assertEquals("entry" + i, entry.getName());
+				i++;
+			}
+			assertEquals(Integer.toString(count - 1),
+					new String(read(zip.getInputStream(zip.getEntry("entry" + (count - 1)))), StandardCharsets.UTF_8));
+		}
+	}
+}
@@ -1578,6 +1578,11 @@ public class TestCertificateAuthority {
 			assertEquals(1, events.size());
 			assertEquals(CertificateAuthority.PROPERTY_ISSUED, events.get(0).getPropertyName());
 
+			// Recorded in the issuance ledger.
+			assertEquals(1, ca.getLedger().size());
+			byte[] encoded = issued.loadIssuedCertificate(ca.getPassword()).getCertificateChain()[0].getEncoded();
+			assertEquals(0, ca.getLedger().find(encoded).getIndex());
+
 			events.clear();
 
 			ca.moveCertificateSigningRequest(req, issued);
@@ -0,0 +1,223 @@
+/*-
+ * Halimede Certificate Manager Plugin for Eclipse 
+ * Copyright (C) 2017-2021 Darran Kartaschew 
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v2.0 which
+ * accompanies this distribution and is available at
+ *
+ * http://www.eclipse.org/legal/epl-v20.html
+ * 
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the Eclipse
+ * Public License, v. 2.0 are satisfied: GNU General Public License, version 2
+ * with the GNU Classpath Exception which is
+ * available at https://www.gnu.org/software/classpath/license.html.
+ */
+
+package net.sourceforge.dkartaschew.halimede.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.math.BigInteger;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.NoSuchAlgorithmException;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.crypto.CryptoServicesRegistrar;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+
+import net.sourceforge.dkartaschew.halimede.TestUtilities;
+import net.sourceforge.dkartaschew.halimede.data.IssuedCertificateProperties.Key;
+import net.sourceforge.dkartaschew.halimede.data.impl.CertificateKeyPairTemplate;
+import net.sourceforge.dkartaschew.halimede.data.impl.IssuedCertificate;
+import net.sourceforge.dkartaschew.halimede.data.store.IDatastore;
+import net.sourceforge.dkartaschew.halimede.data.store.MemoryDatastore;
+import net.sourceforge.dkartaschew.halimede.enumeration.KeyType;
+import net.sourceforge.dkartaschew.halimede.enumeration.RevokeReasonCode;
+import net.sourceforge.dkartaschew.halimede.random.NotSecureRandom;
+import net.sourceforge.dkartaschew.halimede.util.ProviderUtil;
+
+/**
+ * Stress test of concurrent signing, revocation, refresh and settings access.
+ */
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class TestCertificateAuthorityConcurrency {
+
+	private final String PASSWORD = "changeme";
+	private final int SIGNERS = 4;
+	private final int CERTIFICATES = 25;
+
+	@BeforeClass
+	public static void setup() throws NoSuchAlgorithmException {
+		ProviderUtil.setupProviders();
+		NotSecureRandom rnd = new NotSecureRandom();
+		CryptoServicesRegistrar.setSecureRandom(rnd);
+		KeyPairFactory.resetSecureRandom(rnd);
+	}
+
+	@AfterClass
+	public static void teardown() {
+		CryptoServicesRegistrar.setSecureRandom(null);
+		KeyPairFactory.resetSecureRandom(null);
+	}
+
+	/**
+	 * Sign, revoke and refresh in parallel with a memory backed CA.
+	 *
+	 * @throws Exception The test failed.
+	 */
+	@Test
+	public void signRevokeRefreshMemory() throws Exception {
+		MemoryDatastore store = new MemoryDatastore();
+		CertificateAuthority ca = CertificateAuthority.createInDatastore(store,
+				IssuedCertificate.openPKCS12(TestUtilities.getFile("ec521_aes_2.p12"), PASSWORD), "Memory CA");
+		stress(ca);
+		CertificateAuthority ca2 = CertificateAuthority.openDatastore(store);
+		assertEquals(ca.getIssuedCertificates().size(), ca2.getIssuedCertificates().size());
+		assertEquals(ca.getRevokedCertificates().size(), ca2.getRevokedCertificates().size());
+	}
+
+	/**
+	 * Sign, revoke and refresh in parallel with a filesystem backed CA.
+	 *
+	 * @throws Exception The test failed.
+	 */
+	@Test
+	public void signRevokeRefreshFileSystem() throws Exception {
+		Path path = Paths.get(TestUtilities.TMP, "CA");
+		TestUtilities.cleanup(path);
+		assertTrue(path.toFile().mkdirs());
+		try {
+			CertificateAuthority ca = CertificateAuthority.create(path,
+					IssuedCertificate.openPKCS12(TestUtilities.getFile("ec521_aes_2.p12"), PASSWORD));
+			stress(ca);
+			CertificateAuthority ca2 = CertificateAuthority.open(path);
+			assertEquals(ca.getIssuedCertificates().size(), ca2.getIssuedCertificates().size());
+			assertEquals(ca.getRevokedCertificates().size(), ca2.getRevokedCertificates().size());
+		} finally {
+			TestUtilities.cleanup(path);
+		}
+	}
+
+	/**
+	 * Run the stress test against the given CA.
+	 *
+	 * @param ca The CA.
+	 * @throws Exception The test failed.
+	 */
+	private void stress(CertificateAuthority ca) throws Exception {
+		final String password = ca.getPassword();
+		final BlockingQueue<IssuedCertificateProperties> toRevoke = new LinkedBlockingQueue<>();
+		final AtomicBoolean running = new AtomicBoolean(true);
+		final CountDownLatch start = new CountDownLatch(1);
+		ExecutorService executor = Executors.newFixedThreadPool(SIGNERS + 3);
+		List<Future<?>> signers = new ArrayList<>();
+		List<Future<?>> others = new ArrayList<>();
+		try {
+			for (int i = 0; i < SIGNERS; i++) {
+				final int signer = i;
+				signers.add(executor.submit((Callable<Void>) () -> {
+					start.await();
+					for (int j = 0; j < CERTIFICATES; j++) {
+						CertificateKeyPairTemplate template = new CertificateKeyPairTemplate();
+						template.setCreationDate(ZonedDateTime.now());
+						template.setKeyType(KeyType.EC_secp256r1);
+						template.setSubject(new X500Name("CN=Signer" + signer + "-" + j));
+						IssuedCertificateProperties p = ca.signAndStoreCertificateRequest(
+								template.asCertificateRequest(), ZonedDateTime.now(),
+								ZonedDateTime.now().plusMonths(1), password);
+						if (j % 2 == 0) {
+							toRevoke.put(p);
+						}
+					}
+					return null;
+				}));
+			}
+			// Revoker
+			others.add(executor.submit((Callable<Void>) () -> {
+				start.await();
+				while (running.get() || !toRevoke.isEmpty()) {
+					IssuedCertificateProperties p = toRevoke.poll(10, TimeUnit.MILLISECONDS);
+					if (p != null) {
+						ca.revokeCertificate(p, ZonedDateTime.now(), RevokeReasonCode.SUPERSEDED);
+					}
+				}
+				return null;
+			}));
+			// Refresher
+			others.add(executor.submit((Callable<Void>) () -> {
+				start.await();
+				while (running.get()) {
+					ca.refresh();
+				}
+				return null;
+			}));
+			// Reader
+			others.add(executor.submit((Callable<Void>) () -> {
+				start.await();
+				while (running.get()) {
+					assertFalse(ca.getDescription() == null && ca.getCertificateAuthorityID() == null);
+					ca.getSignatureAlgorithm();
+					ca.getExpiryDays();
+					ca.getIssuedCertificates().size();
+				}
+				return null;
+			}));
+			start.countDown();
+			for (Future<?> f : signers) {
+				f.get(5, TimeUnit.MINUTES);
+			}
+			running.set(false);
+			for (Future<?> f : others) {
+				f.get(5, TimeUnit.MINUTES);
+			}
+		} finally {
+			running.set(false);
+			executor.shutdownNow();
+		}
+
+		int total = SIGNERS * CERTIFICATES;
+		int revoked = SIGNERS * ((CERTIFICATES + 1) / 2);
+		assertEquals(total - revoked, ca.getIssuedCertificates().size());
+		assertEquals(revoked, ca.getRevokedCertificates().size());
+
+		// All serial numbers must be unique.
+		Set<BigInteger> serials = new HashSet<>();
+		for (IssuedCertificateProperties p : ca.getIssuedCertificates()) {
+			assertTrue(serials.add(new BigInteger(p.getProperty(Key.certificateSerialNumber))));
+		}
+		for (IssuedCertificateProperties p : ca.getRevokedCertificates()) {
+			assertTrue(serials.add(new BigInteger(p.getProperty(Key.certificateSerialNumber))));
+		}
+
+		// A final refresh must not change anything.
+		ca.refresh();
+		assertEquals(total - revoked, ca.getIssuedCertificates().size());
+		assertEquals(revoked, ca.getRevokedCertificates().size());
+		IDatastore store = ca.getDatastore();
+		assertEquals(total - revoked,
+				store.list(CertificateAuthority.ISSUED_PATH, IssuedCertificateProperties.DEFAULT_EXTENSION).size());
+	}
+}
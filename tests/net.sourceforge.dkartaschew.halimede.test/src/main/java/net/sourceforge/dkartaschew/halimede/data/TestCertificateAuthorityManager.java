@@ -31,17 +31,29 @@ import java.nio.file.Paths;
 import java.security.KeyStoreException;
 import java.security.NoSuchAlgorithmException;
 import java.security.cert.CertificateEncodingException;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
 import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
+import org.bouncycastle.asn1.x500.X500Name;
 import org.bouncycastle.crypto.CryptoServicesRegistrar;
 import org.junit.AfterClass;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
 import net.sourceforge.dkartaschew.halimede.TestUtilities;
+import net.sourceforge.dkartaschew.halimede.data.impl.CertificateKeyPairTemplate;
 import net.sourceforge.dkartaschew.halimede.data.impl.IssuedCertificate;
+import net.sourceforge.dkartaschew.halimede.data.search.SearchResult;
+import net.sourceforge.dkartaschew.halimede.enumeration.KeyType;
+import net.sourceforge.dkartaschew.halimede.enumeration.SearchField;
 import net.sourceforge.dkartaschew.halimede.exceptions.InvalidPasswordException;
 import net.sourceforge.dkartaschew.halimede.random.NotSecureRandom;
 import net.sourceforge.dkartaschew.halimede.util.ProviderUtil;
@@ -483,4 +495,342 @@ public class TestCertificateAuthorityManager {
 		assertEquals(2, events.size());
 		assertEquals("name", events.get(0).getPropertyName());
 	}
+
+	/**
+	 * Sign a new certificate.
+	 */
+	private IssuedCertificateProperties sign(CertificateAuthority ca, String cn) throws Exception {
+		CertificateKeyPairTemplate template = new CertificateKeyPairTemplate();
+		template.setCreationDate(ZonedDateTime.now());
+		template.setKeyType(KeyType.EC_secp256r1);
+		template.setSubject(new X500Name("CN=" + cn));
+		return ca.signAndStoreCertificateRequest(template.asCertificateRequest(), ZonedDateTime.now(),
+				ZonedDateTime.now().plusMonths(1), ca.getPassword());
+	}
+
+	/**
+	 * Search across several CAs.
+	 * 
+	 * @throws Exception The test failed.
+	 */
+	@Test
+	public void testSearch() throws Exception {
+		Path dest = Paths.get(TestUtilities.TMP, "CA");
+		Path dest2 = Paths.get(TestUtilities.TMP, "CA2");
+		Files.createDirectories(dest);
+		Files.createDirectories(dest2);
+		CertificateAuthourityManager mgr = new CertificateAuthourityManager();
+		try {
+			Path file = TestUtilities.getFile("ec521_aes_2.p12");
+			CertificateAuthority ca = mgr.create(dest, IssuedCertificate.openPKCS12(file, PASSWORD), CA_DESCRIPTION);
+			CertificateAuthority ca2 = mgr.create(dest2, IssuedCertificate.openPKCS12(file, PASSWORD), CA_DESCRIPTION);
+			IssuedCertificateProperties p1 = sign(ca, "Shared Name");
+			IssuedCertificateProperties p2 = sign(ca2, "Shared Name");
+			sign(ca2, "Other");
+
+			List<SearchResult> results = new CopyOnWriteArrayList<>();
+			int count = mgr.search("shared", EnumSet.of(SearchField.SUBJECT), results::addAll).get(10,
+					TimeUnit.SECONDS);
+			assertEquals(2, count);
+			assertEquals(2, results.size());
+			Set<IssuedCertificateProperties> found = new HashSet<>();
+			Set<CertificateAuthority> cas = new HashSet<>();
+			results.forEach(r -> {
+				found.add(r.getCertificate());
+				cas.add(r.getCertificateAuthority());
+			});
+			assertTrue(found.contains(p1));
+			assertTrue(found.contains(p2));
+			assertEquals(2, cas.size());
+
+			// Changes are seen by later searches.
+			sign(ca, "Shared Again");
+			results.clear();
+			assertEquals(3, mgr.search("shared", EnumSet.of(SearchField.SUBJECT), results::addAll).get(10,
+					TimeUnit.SECONDS).intValue());
+
+			// Removed CAs are not searched.
+			mgr.remove(ca2);
+			results.clear();
+			assertEquals(2, mgr.search("shared", EnumSet.of(SearchField.SUBJECT), results::addAll).get(10,
+					TimeUnit.SECONDS).intValue());
+			assertEquals(0, mgr.search("", EnumSet.allOf(SearchField.class), results::addAll).get(10,
+					TimeUnit.SECONDS).intValue());
+		} finally {
+			TestUtilities.cleanup(dest);
+			TestUtilities.cleanup(dest2);
+		}
+	}
+
+	/**
+	 * Open several CAs concurrently, deferring the load of their contents.
+	 * 
+	 * @throws Exception The test failed.
+	 */
+	@Test
+	public void testOpenAll() throws Exception {
+		Path path = TestUtilities.getFolder("CA");
+		List<Path> dests = new ArrayList<>();
+		for (int i = 0; i < 3; i++) {
+			dests.add(Paths.get(TestUtilities.TMP, "CA" + i));
+		}
+		CertificateAuthourityManager mgr = new CertificateAuthourityManager();
+		try {
+			for (Path dest : dests) {
+				TestUtilities.copyFolder(path, dest);
+			}
+			List<PropertyChangeEvent> events = new CopyOnWriteArrayList<>();
+			mgr.addPropertyChangeListener(e -> events.add(e));
+
+			List<Path> paths = new ArrayList<>(dests);
+			Path missing = Paths.get(TestUtilities.TMP, "CA-missing");
+			paths.add(missing);
+			paths.add(dests.get(0));
+			List<Path> failed = new ArrayList<>();
+			List<CertificateAuthority> cas = mgr.openAll(paths, false, null, (p, e) -> {
+				assertTrue(e instanceof IOException);
+				failed.add(p);
+			});
+			assertEquals(3, cas.size());
+			assertEquals(3, mgr.getCertificateAuthorities().size());
+			assertEquals(1, failed.size());
+			assertEquals(missing, failed.get(0));
+			// One event per CA added.
+			assertEquals(3, events.size());
+			events.forEach(e -> assertEquals(CertificateAuthourityManager.PROPERTY, e.getPropertyName()));
+
+			// Contents are loaded on first access.
+			events.clear();
+			CertificateAuthority ca = cas.get(0);
+			assertFalse(ca.isLoaded());
+			assertEquals(2, ca.getIssuedCertificates().size());
+			assertTrue(ca.isLoaded());
+			assertTrue(events.stream().anyMatch(e -> CertificateAuthority.PROPERTY_ISSUED.equals(e.getPropertyName())));
+
+			// Or explicitly.
+			ca = cas.get(1);
+			assertFalse(ca.isLoaded());
+			ca.load(null);
+			assertTrue(ca.isLoaded());
+			assertEquals(2, ca.getIssuedCertificates().size());
+
+			// Opened normally, contents are loaded immediately.
+			mgr.remove(cas.get(2));
+			ca = mgr.open(dests.get(2));
+			assertTrue(ca.isLoaded());
+
+			assertTrue(mgr.openAll(new ArrayList<>(), false, null, null).isEmpty());
+		} finally {
+			for (Path dest : dests) {
+				TestUtilities.cleanup(dest);
+			}
+		}
+	}
+
+	/**
+	 * Unload the contents of idle, locked CAs when over the budget.
+	 * 
+	 * @throws Exception The test failed.
+	 */
+	@Test
+	public void testTrim() throws Exception {
+		Path path = TestUtilities.getFolder("CA");
+		List<Path> dests = new ArrayList<>();
+		for (int i = 0; i < 3; i++) {
+			dests.add(Paths.get(TestUtilities.TMP, "CA" + i));
+		}
+		CertificateAuthourityManager mgr = new CertificateAuthourityManager();
+		try {
+			for (Path dest : dests) {
+				TestUtilities.copyFolder(path, dest);
+			}
+			List<PropertyChangeEvent> events = new CopyOnWriteArrayList<>();
+			mgr.addPropertyChangeListener(e -> events.add(e));
+			List<CertificateAuthority> cas = new ArrayList<>();
+			for (Path dest : dests) {
+				cas.add(mgr.open(dest, false));
+			}
+			CertificateAuthority ca0 = cas.get(0);
+			CertificateAuthority ca1 = cas.get(1);
+			CertificateAuthority ca2 = cas.get(2);
+			assertEquals(0, ca0.getLoadedSize());
+
+			ca0.load(null);
+			int size = ca0.getLoadedSize();
+			assertTrue(size > 0);
+			// Budget of a single CA.
+			System.setProperty(CertificateAuthourityManager.CACHE_ITEMS, Integer.toString(size));
+			System.setProperty(CertificateAuthourityManager.CACHE_IDLE, "0");
+
+			// The least recently used locked CA is unloaded.
+			Thread.sleep(5);
+			events.clear();
+			ca1.load(null);
+			assertFalse(ca0.isLoaded());
+			assertTrue(ca1.isLoaded());
+			assertEquals(0, ca0.getLoadedSize());
+			assertTrue(events.stream().anyMatch(e -> e.getSource() == ca0
+					&& CertificateAuthority.PROPERTY_LOADED.equals(e.getPropertyName())
+					&& Boolean.FALSE.equals(e.getNewValue())));
+			assertTrue(events.stream().anyMatch(e -> e.getSource() == ca0
+					&& CertificateAuthority.PROPERTY_ISSUED.equals(e.getPropertyName())));
+
+			// Unlocked CAs are retained.
+			ca2.unlock(PASSWORD);
+			Thread.sleep(5);
+			ca2.load(null);
+			assertFalse(ca1.isLoaded());
+			Thread.sleep(5);
+			assertEquals(2, ca0.getIssuedCertificates().size());
+			assertTrue(ca0.isLoaded());
+			assertTrue(ca2.isLoaded());
+
+			// Once locked, may be unloaded.
+			ca2.lock();
+			assertFalse(ca2.isLoaded());
+			assertTrue(ca0.isLoaded());
+
+			// Idle time is respected.
+			System.setProperty(CertificateAuthourityManager.CACHE_IDLE, "3600");
+			ca1.load(null);
+			assertTrue(ca0.isLoaded());
+			assertTrue(ca1.isLoaded());
+			assertTrue(mgr.trim(null).isEmpty());
+			System.setProperty(CertificateAuthourityManager.CACHE_IDLE, "0");
+			assertEquals(1, mgr.trim(ca1).size());
+			assertFalse(ca0.isLoaded());
+			assertTrue(ca1.isLoaded());
+		} finally {
+			System.clearProperty(CertificateAuthourityManager.CACHE_ITEMS);
+			System.clearProperty(CertificateAuthourityManager.CACHE_IDLE);
+			for (Path dest : dests) {
+				TestUtilities.cleanup(dest);
+			}
+		}
+	}
+
+	/**
+	 * Search CAs whose contents are not loaded.
+	 * 
+	 * @throws Exception The test failed.
+	 */
+	@Test
+	public void testSearchUnloaded() throws Exception {
+		Path path = TestUtilities.getFolder("CA");
+		List<Path> dests = new ArrayList<>();
+		for (int i = 0; i < 2; i++) {
+			dests.add(Paths.get(TestUtilities.TMP, "CA" + i));
+		}
+		CertificateAuthourityManager mgr = new CertificateAuthourityManager();
+		try {
+			for (Path dest : dests) {
+				TestUtilities.copyFolder(path, dest);
+			}
+			List<PropertyChangeEvent> events = new CopyOnWriteArrayList<>();
+			mgr.addPropertyChangeListener(e -> events.add(e));
+			CertificateAuthority ca0 = mgr.open(dests.get(0), false);
+			CertificateAuthority ca1 = mgr.open(dests.get(1), false);
+			events.clear();
+
+			// Loaded on demand, and unloaded once searched, without notifying listeners.
+			List<SearchResult> results = new CopyOnWriteArrayList<>();
+			List<CertificateAuthority> skipped = new ArrayList<>();
+			assertEquals(2, mgr.search("TemplateA", EnumSet.of(SearchField.SUBJECT), results::addAll, skipped)
+					.get(10, TimeUnit.SECONDS).intValue());
+			assertEquals(2, results.size());
+			assertTrue(skipped.isEmpty());
+			assertFalse(ca0.isLoaded());
+			assertFalse(ca1.isLoaded());
+			assertTrue(events.isEmpty());
+
+			ZonedDateTime from = ZonedDateTime.of(2019, 4, 11, 4, 53, 0, 0, ZoneOffset.UTC);
+			assertEquals(2, mgr.getExpiring(from, from.plusMinutes(1), false, skipped).size());
+			assertEquals(6, mgr.getValid(from, true, skipped).size());
+			assertTrue(skipped.isEmpty());
+			assertFalse(ca0.isLoaded());
+			assertFalse(ca1.isLoaded());
+
+			// CAs that do not fit in the budget are not searched.
+			ca0.load(null);
+			System.setProperty(CertificateAuthourityManager.CACHE_ITEMS, "1");
+			System.setProperty(CertificateAuthourityManager.CACHE_IDLE, "3600");
+			results.clear();
+			assertEquals(1, mgr.search("TemplateA", EnumSet.of(SearchField.SUBJECT), results::addAll, skipped)
+					.get(10, TimeUnit.SECONDS).intValue());
+			assertEquals(ca0, results.get(0).getCertificateAuthority());
+			assertEquals(1, skipped.size());
+			assertEquals(ca1, skipped.get(0));
+			assertTrue(ca0.isLoaded());
+			assertFalse(ca1.isLoaded());
+
+			skipped.clear();
+			assertEquals(1, mgr.getExpiring(from, from.plusMinutes(1), false, skipped).size());
+			assertEquals(1, skipped.size());
+			assertEquals(ca1, skipped.get(0));
+		} finally {
+			System.clearProperty(CertificateAuthourityManager.CACHE_ITEMS);
+			System.clearProperty(CertificateAuthourityManager.CACHE_IDLE);
+			for (Path dest : dests) {
+				TestUtilities.cleanup(dest);
+			}
+		}
+	}
+
+	/**
+	 * CAs in use are not unloaded, but are unloaded by a later trim.
+	 * 
+	 * @throws Exception The test failed.
+	 */
+	@Test
+	public void testTrimBusy() throws Exception {
+		Path path = TestUtilities.getFolder("CA");
+		List<Path> dests = new ArrayList<>();
+		for (int i = 0; i < 2; i++) {
+			dests.add(Paths.get(TestUtilities.TMP, "CA" + i));
+		}
+		CertificateAuthourityManager mgr = new CertificateAuthourityManager();
+		try {
+			for (Path dest : dests) {
+				TestUtilities.copyFolder(path, dest);
+			}
+			CertificateAuthority ca0 = mgr.open(dests.get(0), false);
+			CertificateAuthority ca1 = mgr.open(dests.get(1), false);
+			ca0.load(null);
+			ca1.load(null);
+			System.setProperty(CertificateAuthourityManager.CACHE_ITEMS, Integer.toString(ca1.getLoadedSize()));
+			System.setProperty(CertificateAuthourityManager.CACHE_IDLE, "0");
+
+			// Trim from another thread while the refresh holds the store lock.
+			AtomicReference<List<CertificateAuthority>> busy = new AtomicReference<>();
+			ca0.addPropertyChangeListener(e -> {
+				if (CertificateAuthority.PROPERTY_ISSUED.equals(e.getPropertyName()) && busy.get() == null) {
+					Thread t = new Thread(() -> busy.set(mgr.trim(ca1)));
+					t.start();
+					try {
+						t.join();
+					} catch (InterruptedException ex) {
+						Thread.currentThread().interrupt();
+					}
+				}
+			});
+			Files.delete(dests.get(0).resolve(CertificateAuthority.ISSUED_PATH).resolve("0000015cc3aec905.prop"));
+			ca0.refresh();
+			assertNotNull(busy.get());
+			assertTrue(busy.get().isEmpty());
+			assertTrue(ca0.isLoaded());
+
+			// Retried once idle.
+			List<CertificateAuthority> unloaded = mgr.trim(ca1);
+			assertEquals(1, unloaded.size());
+			assertEquals(ca0, unloaded.get(0));
+			assertFalse(ca0.isLoaded());
+			assertTrue(ca1.isLoaded());
+		} finally {
+			System.clearProperty(CertificateAuthourityManager.CACHE_ITEMS);
+			System.clearProperty(CertificateAuthourityManager.CACHE_IDLE);
+			for (Path dest : dests) {
+				TestUtilities.cleanup(dest);
+			}
+		}
+	}
 }
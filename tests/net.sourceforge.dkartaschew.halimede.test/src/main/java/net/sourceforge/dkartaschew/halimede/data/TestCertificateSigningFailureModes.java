@@ -17,19 +17,28 @@
 
 package net.sourceforge.dkartaschew.halimede.data;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 import java.io.IOException;
+import java.math.BigInteger;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.security.InvalidAlgorithmParameterException;
 import java.security.KeyPair;
 import java.security.NoSuchAlgorithmException;
 import java.security.NoSuchProviderException;
+import java.security.cert.CRLException;
 import java.security.cert.CertificateException;
+import java.security.cert.X509CRL;
+import java.security.cert.X509CRLEntry;
 import java.security.cert.X509Certificate;
+import java.time.Instant;
 import java.time.ZonedDateTime;
+import java.util.Date;
 
 import org.bouncycastle.asn1.x500.X500Name;
 import org.bouncycastle.cert.CertIOException;
@@ -47,6 +56,7 @@ import net.sourceforge.dkartaschew.halimede.TestUtilities;
 import net.sourceforge.dkartaschew.halimede.data.impl.CertificateRequest;
 import net.sourceforge.dkartaschew.halimede.data.impl.IssuedCertificate;
 import net.sourceforge.dkartaschew.halimede.enumeration.KeyType;
+import net.sourceforge.dkartaschew.halimede.enumeration.RevokeReasonCode;
 import net.sourceforge.dkartaschew.halimede.enumeration.SignatureAlgorithm;
 import net.sourceforge.dkartaschew.halimede.exceptions.DatastoreLockedException;
 import net.sourceforge.dkartaschew.halimede.random.NotSecureRandom;
@@ -283,4 +293,87 @@ public class TestCertificateSigningFailureModes {
 	public void testNoRequestInstance() throws Throwable {
 		ca.signCertificateRequest(null, ZonedDateTime.now(), ZonedDateTime.now().plusSeconds(10));
 	}
+
+	/**
+	 * Test locking the CA while issuing: each issue either completes, or fails as locked before taking a serial.
+	 * 
+	 * @throws Throwable The creation failed.
+	 */
+	@Test
+	public void testLockWhileIssuing() throws Throwable {
+		ca.load(null);
+		Throwable[] failure = { null };
+		int[] issued = { 0 };
+		Thread t = new Thread(() -> {
+			try {
+				for (int i = 0; i < 20; i++) {
+					CertificateRequest req = new CertificateRequest();
+					req.setSubject(new X500Name("CN=Cert " + i));
+					req.setKeyType(KeyType.EC_P256);
+					ca.signAndStoreCertificateRequest(req, ZonedDateTime.now(), ZonedDateTime.now().plusSeconds(60),
+							PASSWORD);
+					issued[0]++;
+				}
+			} catch (DatastoreLockedException e) {
+				// Locked.
+			} catch (Throwable e) {
+				failure[0] = e;
+			}
+		});
+		t.start();
+		Thread.sleep(50);
+		ca.lock();
+		t.join();
+		assertNull(failure[0]);
+		assertTrue(ca.isLocked());
+		assertEquals(issued[0], ca.getIssuedCertificates().size());
+		// No serial was taken by a failed issue. (Serials start at 1, see CertificateAuthoritySettings).
+		assertEquals(BigInteger.valueOf(issued[0] + 1), ca.getNextSerialNumber());
+	}
+
+	/**
+	 * Test a revoke date with a non-canonical offset is included in the CRL at the correct instant.
+	 * 
+	 * @throws Throwable The creation failed.
+	 */
+	@Test
+	public void testCRLOffsetRevokeDate() throws Throwable {
+		IssuedCertificateProperties c = revokeWithDate("2020-01-02T03:04:05.000+10");
+		assertEquals("2020-01-02T03:04:05.000+10", c.getProperty(IssuedCertificateProperties.Key.revokeDate));
+
+		X509CRL crl = ca.createCRL(ZonedDateTime.now().plusSeconds(60)).getCRL();
+		X509CRLEntry entry = crl.getRevokedCertificate(c.getSerialNumber());
+		assertNotNull(entry);
+		assertEquals(Date.from(Instant.parse("2020-01-01T17:04:05Z")), entry.getRevocationDate());
+	}
+
+	/**
+	 * Test a revoke date that is not a date fails the CRL rather than leaving the certificate off it.
+	 * 
+	 * @throws Throwable The creation failed.
+	 */
+	@Test(expected = CRLException.class)
+	public void testCRLInvalidRevokeDate() throws Throwable {
+		revokeWithDate("Not a date");
+		ca.createCRL(ZonedDateTime.now().plusSeconds(60));
+	}
+
+	/**
+	 * Issue and revoke a certificate, then replace the revoke date as held.
+	 * 
+	 * @param revokeDate The revoke date to hold.
+	 * @return The revoked certificate.
+	 * @throws Throwable The issue or revoke failed.
+	 */
+	private IssuedCertificateProperties revokeWithDate(String revokeDate) throws Throwable {
+		ca.load(null);
+		CertificateRequest req = new CertificateRequest();
+		req.setSubject(subject);
+		req.setKeyType(KeyType.EC_P256);
+		IssuedCertificateProperties c = ca.signAndStoreCertificateRequest(req, ZonedDateTime.now(),
+				ZonedDateTime.now().plusSeconds(60), PASSWORD);
+		ca.revokeCertificate(c, null, RevokeReasonCode.KEY_COMPROMISE);
+		c.setProperty(IssuedCertificateProperties.Key.revokeDate, revokeDate);
+		return c;
+	}
 }
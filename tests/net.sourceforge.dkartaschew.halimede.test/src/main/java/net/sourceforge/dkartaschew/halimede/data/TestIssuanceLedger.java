@@ -0,0 +1,336 @@
+/*-
+ * Halimede Certificate Manager Plugin for Eclipse 
+ * Copyright (C) 2017-2021 Darran Kartaschew 
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v2.0 which
+ * accompanies this distribution and is available at
+ *
+ * http://www.eclipse.org/legal/epl-v20.html
+ * 
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the Eclipse
+ * Public License, v. 2.0 are satisfied: GNU General Public License, version 2
+ * with the GNU Classpath Exception which is
+ * available at https://www.gnu.org/software/classpath/license.html.
+ */
+
+package net.sourceforge.dkartaschew.halimede.data;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import net.sourceforge.dkartaschew.halimede.TestUtilities;
+import net.sourceforge.dkartaschew.halimede.util.MerkleTree;
+
+public class TestIssuanceLedger {
+
+	private Path dir;
+
+	@Before
+	public void setup() throws IOException {
+		dir = Paths.get(TestUtilities.TMP, "Ledger");
+		TestUtilities.cleanup(dir);
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		TestUtilities.cleanup(dir);
+	}
+
+	private static byte[] certificate(int i) {
+		return ("Certificate " + i).getBytes(StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Append certificates, returning the leaf hashes.
+	 */
+	private List<byte[]> append(IssuanceLedger ledger, int from, int to) throws IOException {
+		List<byte[]> leaves = new ArrayList<>();
+		for (int i = from; i < to; i++) {
+			assertEquals(i, ledger.append(certificate(i), 1000L * i));
+			leaves.add(ledger.get(i).getLeaf());
+		}
+		return leaves;
+	}
+
+	@Test
+	public void appendAndProve() throws IOException {
+		MerkleTree tree = new MerkleTree();
+		IssuanceLedger ledger = new IssuanceLedger(dir);
+		assertEquals(0, ledger.size());
+		assertArrayEquals(tree.root(new ArrayList<>()), ledger.root());
+
+		List<byte[]> leaves = append(ledger, 0, 37);
+		assertEquals(37, ledger.size());
+		assertEquals(IssuanceLedger.ENTRY * 37 + 8, Files.size(dir.resolve(IssuanceLedger.ENTRIES)));
+		assertArrayEquals(tree.root(leaves), ledger.root());
+
+		IssuanceLedger.Entry entry = ledger.get(5);
+		assertEquals(5, entry.getIndex());
+		assertEquals(5000L, entry.getIssued().toInstant().toEpochMilli());
+		assertArrayEquals(tree.getDigest().digest(certificate(5)), entry.getFingerprint());
+		assertEquals(5, ledger.find(certificate(5)).getIndex());
+		assertNull(ledger.find(certificate(99)));
+
+		for (int n = 1; n <= leaves.size(); n++) {
+			byte[] root = ledger.root(n);
+			assertArrayEquals(tree.root(leaves, 0, n), root);
+			for (int i = 0; i < n; i++) {
+				List<byte[]> path = ledger.inclusionProof(i, n);
+				assertEquals(tree.path(leaves.subList(0, n), i).size(), path.size());
+				assertTrue(tree.verify(leaves.get(i), i, n, path, root));
+			}
+			for (int m = 1; m <= n; m++) {
+				List<byte[]> proof = ledger.consistencyProof(m, n);
+				assertTrue(m + " -> " + n, tree.consistent(m, n, ledger.root(m), root, proof));
+			}
+		}
+	}
+
+	@Test
+	public void reopen() throws IOException {
+		MerkleTree tree = new MerkleTree();
+		List<byte[]> leaves = append(new IssuanceLedger(dir), 0, 20);
+		byte[] old = tree.root(leaves);
+
+		IssuanceLedger ledger = new IssuanceLedger(dir);
+		assertEquals(20, ledger.size());
+		assertArrayEquals(old, ledger.root());
+		leaves.addAll(append(ledger, 20, 45));
+		assertArrayEquals(tree.root(leaves), ledger.root());
+		assertTrue(tree.consistent(20, 45, old, ledger.root(), ledger.consistencyProof(20, 45)));
+	}
+
+	@Test
+	public void recover() throws IOException {
+		MerkleTree tree = new MerkleTree();
+		List<byte[]> leaves = append(new IssuanceLedger(dir), 0, 30);
+		byte[] root = tree.root(leaves);
+		Path entries = dir.resolve(IssuanceLedger.ENTRIES);
+		Path nodes = dir.resolve(IssuanceLedger.NODES);
+
+		// Partial entry, and nodes missing or partially written.
+		try (RandomAccessFile f = new RandomAccessFile(entries.toFile(), "rw")) {
+			f.setLength(f.length() + 11);
+		}
+		try (RandomAccessFile f = new RandomAccessFile(nodes.toFile(), "rw")) {
+			f.setLength(f.length() - 3 * MerkleTree.HASH - 5);
+		}
+		IssuanceLedger ledger = new IssuanceLedger(dir);
+		assertEquals(30, ledger.size());
+		assertArrayEquals(root, ledger.root());
+		assertEquals(IssuanceLedger.ENTRY * 30 + 8, Files.size(entries));
+		assertEquals((2 * 30 - Long.bitCount(30)) * MerkleTree.HASH, Files.size(nodes));
+
+		// All nodes lost.
+		Files.delete(nodes);
+		ledger = new IssuanceLedger(dir);
+		assertArrayEquals(root, ledger.root());
+		assertTrue(tree.verify(leaves.get(17), 17, 30, ledger.inclusionProof(17, 30), root));
+
+		// Nodes ahead of the entries (entry never written).
+		try (RandomAccessFile f = new RandomAccessFile(entries.toFile(), "rw")) {
+			f.setLength(f.length() - IssuanceLedger.ENTRY);
+		}
+		ledger = new IssuanceLedger(dir);
+		assertEquals(29, ledger.size());
+		assertArrayEquals(tree.root(leaves, 0, 29), ledger.root());
+		assertEquals((2 * 29 - Long.bitCount(29)) * MerkleTree.HASH, Files.size(nodes));
+	}
+
+	@Test
+	public void tamper() throws IOException {
+		MerkleTree tree = new MerkleTree();
+		IssuanceLedger ledger = new IssuanceLedger(dir);
+		append(ledger, 0, 16);
+		byte[] old = ledger.root();
+		append(ledger, 16, 24);
+		byte[] root = ledger.root();
+
+		// Rewrite an entry; the ledger is rebuilt from the entries, and no longer extends the earlier tree.
+		try (RandomAccessFile f = new RandomAccessFile(dir.resolve(IssuanceLedger.ENTRIES).toFile(), "rw")) {
+			f.seek(8 + 3 * IssuanceLedger.ENTRY);
+			f.writeLong(1);
+		}
+		Files.delete(dir.resolve(IssuanceLedger.NODES));
+		ledger = new IssuanceLedger(dir);
+		assertFalse(tree.consistent(16, 24, old, ledger.root(), ledger.consistencyProof(16, 24)));
+		assertFalse(tree.consistent(16, 24, ledger.root(16), root, ledger.consistencyProof(16, 24)));
+	}
+
+	@Test
+	public void concurrent() throws Exception {
+		MerkleTree tree = new MerkleTree();
+		int threads = 8;
+		int count = 50;
+		try (IssuanceLedger ledger = new IssuanceLedger(dir)) {
+			ExecutorService executor = Executors.newFixedThreadPool(threads);
+			try {
+				List<Future<Long>> indexes = new ArrayList<>();
+				for (int i = 0; i < threads * count; i++) {
+					int n = i;
+					indexes.add(executor.submit(() -> ledger.append(certificate(n), n)));
+				}
+				Set<Long> seen = new HashSet<>();
+				for (Future<Long> index : indexes) {
+					assertTrue(seen.add(index.get()));
+				}
+			} finally {
+				executor.shutdown();
+			}
+			assertEquals(threads * count, ledger.size());
+			List<byte[]> leaves = new ArrayList<>();
+			for (int i = 0; i < threads * count; i++) {
+				IssuanceLedger.Entry entry = ledger.get(i);
+				assertArrayEquals(tree.getDigest().digest(certificate((int) entry.getIssued().toInstant()
+						.toEpochMilli())), entry.getFingerprint());
+				leaves.add(entry.getLeaf());
+			}
+			assertArrayEquals(tree.root(leaves), ledger.root());
+
+			// Used after closing.
+			ledger.close();
+			leaves.addAll(append(ledger, threads * count, threads * count + 3));
+			assertArrayEquals(tree.root(leaves), ledger.root());
+		}
+		assertEquals(403, new IssuanceLedger(dir).size());
+	}
+
+	/**
+	 * Ledger that fails forcing the files while the count is positive, or on every given call if negative.
+	 */
+	private static class FailingLedger extends IssuanceLedger {
+
+		private final AtomicInteger fail = new AtomicInteger();
+		private final AtomicInteger calls = new AtomicInteger();
+
+		FailingLedger(Path directory) {
+			super(directory);
+		}
+
+		@Override
+		void force(FileChannel channel) throws IOException {
+			int n = fail.get();
+			if (n > 0 || (n < 0 && calls.incrementAndGet() % -n == 0)) {
+				throw new IOException("Force failed");
+			}
+			super.force(channel);
+		}
+	}
+
+	@Test
+	public void failedForce() throws IOException {
+		MerkleTree tree = new MerkleTree();
+		FailingLedger ledger = new FailingLedger(dir);
+		List<byte[]> leaves = append(ledger, 0, 5);
+
+		ledger.fail.set(1);
+		try {
+			ledger.append(certificate(5), 5000L);
+			fail("Force did not fail");
+		} catch (IOException e) {
+			// Expected.
+		}
+		// The entry and its nodes are discarded.
+		assertEquals(5, ledger.size());
+		assertArrayEquals(tree.root(leaves), ledger.root());
+		assertNull(ledger.find(certificate(5)));
+		assertEquals(IssuanceLedger.ENTRY * 5 + 8, Files.size(dir.resolve(IssuanceLedger.ENTRIES)));
+		assertEquals((2 * 5 - Long.bitCount(5)) * MerkleTree.HASH, Files.size(dir.resolve(IssuanceLedger.NODES)));
+
+		ledger.fail.set(0);
+		leaves.addAll(append(ledger, 5, 9));
+		assertArrayEquals(tree.root(leaves), ledger.root());
+		assertEquals(9, new IssuanceLedger(dir).size());
+	}
+
+	@Test
+	public void failedForceConcurrent() throws Exception {
+		MerkleTree tree = new MerkleTree();
+		int threads = 8;
+		int count = 25;
+		Set<Integer> appended = new HashSet<>();
+		try (FailingLedger ledger = new FailingLedger(dir)) {
+			ledger.fail.set(-7);
+			ExecutorService executor = Executors.newFixedThreadPool(threads);
+			try {
+				List<Future<Long>> indexes = new ArrayList<>();
+				for (int i = 0; i < threads * count; i++) {
+					int n = i;
+					indexes.add(executor.submit(() -> ledger.append(certificate(n), n)));
+				}
+				for (int i = 0; i < indexes.size(); i++) {
+					try {
+						indexes.get(i).get();
+						appended.add(i);
+					} catch (ExecutionException e) {
+						assertTrue(e.getCause() instanceof IOException);
+					}
+				}
+			} finally {
+				executor.shutdown();
+			}
+			assertTrue(appended.size() < threads * count);
+			// Exactly the entries of the appends that returned are kept.
+			ledger.fail.set(0);
+			assertEquals(appended.size(), ledger.size());
+			List<byte[]> leaves = new ArrayList<>();
+			for (int i = 0; i < appended.size(); i++) {
+				leaves.add(ledger.get(i).getLeaf());
+			}
+			for (int n : appended) {
+				assertNotNull(ledger.find(certificate(n)));
+			}
+			assertArrayEquals(tree.root(leaves), ledger.root());
+		}
+		assertEquals(appended.size(), new IssuanceLedger(dir).size());
+	}
+
+	@Test(expected = IOException.class)
+	public void invalid() throws IOException {
+		Files.createDirectories(dir);
+		Files.write(dir.resolve(IssuanceLedger.ENTRIES), certificate(0));
+		new IssuanceLedger(dir).size();
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void invalidIndex() throws IOException {
+		IssuanceLedger ledger = new IssuanceLedger(dir);
+		append(ledger, 0, 3);
+		ledger.inclusionProof(3, 3);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void invalidSize() throws IOException {
+		IssuanceLedger ledger = new IssuanceLedger(dir);
+		append(ledger, 0, 3);
+		ledger.consistencyProof(2, 4);
+	}
+}
@@ -0,0 +1,233 @@
+/*-
+ * Halimede Certificate Manager Plugin for Eclipse 
+ * Copyright (C) 2017-2021 Darran Kartaschew 
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v2.0 which
+ * accompanies this distribution and is available at
+ *
+ * http://www.eclipse.org/legal/epl-v20.html
+ * 
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the Eclipse
+ * Public License, v. 2.0 are satisfied: GNU General Public License, version 2
+ * with the GNU Classpath Exception which is
+ * available at https://www.gnu.org/software/classpath/license.html.
+ */
+
+package net.sourceforge.dkartaschew.halimede.data;
+
+import static net.sourceforge.dkartaschew.halimede.CertificateAuthorityFixture.createCA;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.beans.PropertyChangeEvent;
+import java.security.NoSuchAlgorithmException;
+import java.time.ZonedDateTime;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+
+import net.sourceforge.dkartaschew.halimede.CertificateAuthorityFixture;
+import net.sourceforge.dkartaschew.halimede.enumeration.RevokeReasonCode;
+
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class TestItemsChangeEvent {
+
+	private final long NEVER = TimeUnit.HOURS.toMillis(1);
+
+	@BeforeClass
+	public static void setup() throws NoSuchAlgorithmException {
+		CertificateAuthorityFixture.setup();
+	}
+
+	@AfterClass
+	public static void teardown() {
+		CertificateAuthorityFixture.teardown();
+	}
+
+	/**
+	 * Sign a new certificate.
+	 *
+	 * @param ca The CA
+	 * @param cn The common name
+	 * @return The issued certificate.
+	 * @throws Exception Signing failed.
+	 */
+	private IssuedCertificateProperties sign(CertificateAuthority ca, String cn) throws Exception {
+		return CertificateAuthorityFixture.sign(ca, cn, ZonedDateTime.now(), ZonedDateTime.now().plusMonths(1));
+	}
+
+	@Test
+	public void deltaEvents() throws Exception {
+		CertificateAuthority ca = createCA();
+		assertFalse(ca.isLegacyEvents());
+		List<PropertyChangeEvent> events = new CopyOnWriteArrayList<>();
+		ca.addPropertyChangeListener(events::add);
+
+		IssuedCertificateProperties p = sign(ca, "Delta");
+		assertEquals(1, events.size());
+		ItemsChangeEvent<?> evt = (ItemsChangeEvent<?>) events.get(0);
+		assertEquals(CertificateAuthority.PROPERTY_ISSUED, evt.getPropertyName());
+		assertSame(ca, evt.getSource());
+		assertNull(evt.getOldValue());
+		assertNull(evt.getNewValue());
+		assertEquals(Collections.singletonList(p), evt.getAdded());
+		assertTrue(evt.getRemoved().isEmpty());
+		assertTrue(evt.getUpdated().isEmpty());
+
+		events.clear();
+		p.setProperty(IssuedCertificateProperties.Key.comments, "Updated");
+		ca.updateIssuedCertificateProperties(p);
+		assertEquals(1, events.size());
+		evt = (ItemsChangeEvent<?>) events.get(0);
+		assertEquals(CertificateAuthority.PROPERTY_ISSUED, evt.getPropertyName());
+		assertEquals(Collections.singletonList(p), evt.getUpdated());
+
+		events.clear();
+		ca.revokeCertificate(p, ZonedDateTime.now(), RevokeReasonCode.SUPERSEDED);
+		assertEquals(2, events.size());
+		evt = (ItemsChangeEvent<?>) events.get(0);
+		assertEquals(CertificateAuthority.PROPERTY_ISSUED, evt.getPropertyName());
+		assertEquals(Collections.singletonList(p), evt.getRemoved());
+		evt = (ItemsChangeEvent<?>) events.get(1);
+		assertEquals(CertificateAuthority.PROPERTY_REVOKED, evt.getPropertyName());
+		assertEquals(Collections.singletonList(p), evt.getAdded());
+
+		// Nothing changed, so no events.
+		events.clear();
+		ca.refresh();
+		assertTrue(events.isEmpty());
+	}
+
+	@Test
+	public void legacyEvents() throws Exception {
+		CertificateAuthority ca = createCA();
+		ca.setLegacyEvents(true);
+		assertTrue(ca.isLegacyEvents());
+		sign(ca, "First");
+		List<PropertyChangeEvent> events = new CopyOnWriteArrayList<>();
+		ca.addPropertyChangeListener(events::add);
+
+		IssuedCertificateProperties p = sign(ca, "Legacy");
+		assertEquals(1, events.size());
+		PropertyChangeEvent evt = events.get(0);
+		assertFalse(evt instanceof ItemsChangeEvent);
+		assertEquals(CertificateAuthority.PROPERTY_ISSUED, evt.getPropertyName());
+		assertEquals(1, ((Collection<?>) evt.getOldValue()).size());
+		assertFalse(((Collection<?>) evt.getOldValue()).contains(p));
+		assertEquals(2, ((Collection<?>) evt.getNewValue()).size());
+		assertTrue(((Collection<?>) evt.getNewValue()).contains(p));
+
+		// Updates are not sent as legacy events.
+		events.clear();
+		ca.updateIssuedCertificateProperties(p);
+		assertTrue(events.isEmpty());
+	}
+
+	@Test
+	public void coalesceItems() {
+		List<PropertyChangeEvent> events = new CopyOnWriteArrayList<>();
+		CoalescingDispatcher dispatcher = new CoalescingDispatcher(events::add, NEVER);
+		Object source = new Object();
+		String a = new String("a");
+		String b = new String("b");
+		String c = new String("c");
+		String d = new String("d");
+		dispatcher.propertyChange(new ItemsChangeEvent<>(source, "items", Arrays.asList(a, b), null, null));
+		dispatcher.propertyChange(new ItemsChangeEvent<>(source, "items", null, Arrays.asList(a, c), null));
+		dispatcher.propertyChange(new ItemsChangeEvent<>(source, "items", Arrays.asList(c), null, Arrays.asList(b, d)));
+		assertTrue(events.isEmpty());
+		dispatcher.flush();
+		assertEquals(1, events.size());
+		ItemsChangeEvent<?> evt = (ItemsChangeEvent<?>) events.get(0);
+		assertSame(source, evt.getSource());
+		// a was added then removed, b added then updated, c removed then added, d updated.
+		assertEquals(Arrays.asList(b), evt.getAdded());
+		assertTrue(evt.getRemoved().isEmpty());
+		assertEquals(2, evt.getUpdated().size());
+		assertTrue(evt.getUpdated().contains(c));
+		assertTrue(evt.getUpdated().contains(d));
+
+		// Changes that cancel out send nothing.
+		events.clear();
+		dispatcher.propertyChange(new ItemsChangeEvent<>(source, "items", Arrays.asList(a), null, null));
+		dispatcher.propertyChange(new ItemsChangeEvent<>(source, "items", null, Arrays.asList(a), null));
+		dispatcher.flush();
+		assertTrue(events.isEmpty());
+	}
+
+	@Test
+	public void coalesceProperties() {
+		List<PropertyChangeEvent> events = new CopyOnWriteArrayList<>();
+		CoalescingDispatcher dispatcher = new CoalescingDispatcher(events::add, NEVER);
+		Object source = new Object();
+		Object source2 = new Object();
+		dispatcher.propertyChange(new PropertyChangeEvent(source, "value", 1, 2));
+		dispatcher.propertyChange(new PropertyChangeEvent(source2, "value", 10, 20));
+		dispatcher.propertyChange(new PropertyChangeEvent(source, "value", 2, 3));
+		dispatcher.propertyChange(new PropertyChangeEvent(source, "other", 2, 1));
+		dispatcher.propertyChange(new PropertyChangeEvent(source, "other", 1, 2));
+		dispatcher.flush();
+		assertEquals(4, events.size());
+		assertSame(source, events.get(0).getSource());
+		assertEquals(1, events.get(0).getOldValue());
+		assertEquals(3, events.get(0).getNewValue());
+		assertSame(source2, events.get(1).getSource());
+		assertEquals(20, events.get(1).getNewValue());
+		// A toggle and return (eg lock then unlock) is not lost.
+		assertEquals("other", events.get(2).getPropertyName());
+		assertEquals(2, events.get(2).getOldValue());
+		assertEquals(1, events.get(2).getNewValue());
+		assertEquals("other", events.get(3).getPropertyName());
+		assertEquals(1, events.get(3).getOldValue());
+		assertEquals(2, events.get(3).getNewValue());
+	}
+
+	@Test
+	public void failingListener() {
+		List<PropertyChangeEvent> events = new CopyOnWriteArrayList<>();
+		CoalescingDispatcher dispatcher = new CoalescingDispatcher(e -> {
+			events.add(e);
+			throw new IllegalStateException("Listener failure");
+		}, NEVER);
+		dispatcher.propertyChange(new PropertyChangeEvent(new Object(), "value", 1, 2));
+		dispatcher.propertyChange(new PropertyChangeEvent(new Object(), "value", 1, 2));
+		dispatcher.flush();
+		// Later events are still delivered.
+		assertEquals(2, events.size());
+	}
+
+	@Test
+	public void scheduledDelivery() throws Exception {
+		CountDownLatch latch = new CountDownLatch(1);
+		List<PropertyChangeEvent> events = new CopyOnWriteArrayList<>();
+		CoalescingDispatcher dispatcher = new CoalescingDispatcher(e -> {
+			events.add(e);
+			latch.countDown();
+		});
+		Object source = new Object();
+		for (int i = 0; i < 1000; i++) {
+			dispatcher.propertyChange(new ItemsChangeEvent<>(source, "items", Arrays.asList(Integer.valueOf(i)),
+					null, null));
+		}
+		assertTrue(latch.await(10, TimeUnit.SECONDS));
+		dispatcher.flush();
+		int total = events.stream().mapToInt(e -> ((ItemsChangeEvent<?>) e).getAdded().size()).sum();
+		assertEquals(1000, total);
+		assertTrue(events.size() < 1000);
+	}
+}
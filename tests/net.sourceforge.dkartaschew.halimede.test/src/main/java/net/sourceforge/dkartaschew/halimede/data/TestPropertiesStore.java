@@ -21,16 +21,24 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.time.Instant;
 import java.time.ZonedDateTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
 
 import org.junit.FixMethodOrder;
 import org.junit.Test;
@@ -38,6 +46,8 @@ import org.junit.runners.MethodSorters;
 
 import net.sourceforge.dkartaschew.halimede.TestUtilities;
 import net.sourceforge.dkartaschew.halimede.data.IssuedCertificateProperties.Key;
+import net.sourceforge.dkartaschew.halimede.enumeration.KeyType;
+import net.sourceforge.dkartaschew.halimede.enumeration.RevokeReasonCode;
 import net.sourceforge.dkartaschew.halimede.util.DateTimeUtil;
 
 @FixMethodOrder(MethodSorters.NAME_ASCENDING)
@@ -170,6 +180,91 @@ public class TestPropertiesStore {
 		p2.setProperty(Key.endDate, DateTimeUtil.toString(s1));
 		assertEquals(0, p.compareTo(p2));
 	}
+
+	@Test
+	public void typedValues() throws Throwable {
+		IssuedCertificateProperties p = new IssuedCertificateProperties(null);
+		assertEquals(PropertyRecord.NO_DATE, p.getDate(Key.startDate));
+		assertNull(p.getSerialNumber());
+		assertNull(p.getKeyType());
+		assertNull(p.getRevokeCode());
+
+		ZonedDateTime now = ZonedDateTime.now();
+		String date = DateTimeUtil.toString(now);
+		p.setProperty(Key.startDate, date);
+		p.setProperty(Key.certificateSerialNumber, "1234567890123456789012345678901234567890");
+		p.setProperty(Key.keyType, KeyType.EC_secp256r1.name());
+		p.setProperty(Key.revokeCode, RevokeReasonCode.SUPERSEDED.name());
+		assertEquals(date, p.getProperty(Key.startDate));
+		assertEquals(now.toInstant().toEpochMilli(), p.getDate(Key.startDate));
+		assertEquals(new BigInteger("1234567890123456789012345678901234567890"), p.getSerialNumber());
+		assertEquals(KeyType.EC_secp256r1, p.getKeyType());
+		assertEquals(RevokeReasonCode.SUPERSEDED, p.getRevokeCode());
+		assertEquals(date, p.setProperty(Key.startDate, null));
+		assertNull(p.getProperty(Key.startDate));
+		assertEquals(PropertyRecord.NO_DATE, p.getDate(Key.startDate));
+
+		// Values that are not in canonical form are returned verbatim.
+		String instant = Instant.now().toString();
+		p.setProperty(Key.endDate, instant);
+		p.setProperty(Key.certificateSerialNumber, "0012");
+		p.setProperty(Key.keyType, "Unknown");
+		assertEquals(instant, p.getProperty(Key.endDate));
+		assertEquals(PropertyRecord.NO_DATE, p.getDate(Key.endDate));
+		assertEquals("0012", p.getProperty(Key.certificateSerialNumber));
+		assertNull(p.getSerialNumber());
+		assertEquals("Unknown", p.getProperty(Key.keyType));
+		assertNull(p.getKeyType());
+
+		// Dates with a different offset are returned verbatim, and held as the instant.
+		p.setProperty(Key.endDate, "2020-01-02T03:04:05.678+10");
+		assertEquals("2020-01-02T03:04:05.678+10", p.getProperty(Key.endDate));
+		assertEquals(Instant.parse("2020-01-01T17:04:05.678Z").toEpochMilli(), p.getDate(Key.endDate));
+		p.setProperty(Key.endDate, DateTimeUtil.toString(now));
+		assertEquals(DateTimeUtil.toString(now), p.getProperty(Key.endDate));
+		assertEquals(now.toInstant().toEpochMilli(), p.getDate(Key.endDate));
+
+		CRLProperties crl = new CRLProperties(null);
+		crl.setProperty(CRLProperties.Key.crlSerialNumber, "42");
+		crl.setProperty(CRLProperties.Key.issueDate, date);
+		assertEquals(BigInteger.valueOf(42), crl.getSerialNumber());
+		assertEquals(now.toInstant().toEpochMilli(), crl.getDate(CRLProperties.Key.issueDate));
+
+		CertificateRequestProperties csr = new CertificateRequestProperties(null);
+		csr.setProperty(CertificateRequestProperties.Key.importDate, date);
+		csr.setProperty(CertificateRequestProperties.Key.keyType, KeyType.RSA_2048.name());
+		assertEquals(now.toInstant().toEpochMilli(), csr.getImportDate());
+		assertEquals(KeyType.RSA_2048, csr.getKeyType());
+	}
+
+	@Test
+	public void unknownKeysRetained() throws Throwable {
+		String data = "description=description\nsubject=CN\\=Test\nfutureKey=value\n";
+		IssuedCertificateProperties p = IssuedCertificateProperties.load(null,
+				new ByteArrayInputStream(data.getBytes(StandardCharsets.ISO_8859_1)));
+		assertEquals("CN=Test", p.getProperty(Key.subject));
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		p.store(out);
+		Properties stored = new Properties();
+		stored.load(new ByteArrayInputStream(out.toByteArray()));
+		assertEquals("value", stored.getProperty("futureKey"));
+		assertEquals("description", stored.getProperty(Key.description.name()));
+		assertEquals(stored.hashCode() + 31, p.hashCode());
+	}
+
+	@Test
+	public void internNames() throws Throwable {
+		Map<String, String> table = new HashMap<>();
+		PropertyRecord.Schema<Key> schema = new PropertyRecord.Schema<>(Key.class).names(Key.subject);
+		PropertyRecord<Key> r1 = new PropertyRecord<>(schema, s -> table.computeIfAbsent(s, k -> k));
+		PropertyRecord<Key> r2 = new PropertyRecord<>(schema, s -> table.computeIfAbsent(s, k -> k));
+		r1.set(Key.subject, new String("CN=Subject"));
+		r2.set(Key.subject, new String("CN=Subject"));
+		assertSame(r1.get(Key.subject), r2.get(Key.subject));
+		assertEquals(r1, r2);
+		assertEquals(r1.hashCode(), r2.hashCode());
+	}
+
 	/**
 	 * Store and reload
 	 * 
@@ -0,0 +1,214 @@
+/*-
+ * Halimede Certificate Manager Plugin for Eclipse 
+ * Copyright (C) 2017-2021 Darran Kartaschew 
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v2.0 which
+ * accompanies this distribution and is available at
+ *
+ * http://www.eclipse.org/legal/epl-v20.html
+ * 
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the Eclipse
+ * Public License, v. 2.0 are satisfied: GNU General Public License, version 2
+ * with the GNU Classpath Exception which is
+ * available at https://www.gnu.org/software/classpath/license.html.
+ */
+
+package net.sourceforge.dkartaschew.halimede.data.renewal;
+
+import static net.sourceforge.dkartaschew.halimede.CertificateAuthorityFixture.PASSWORD;
+import static net.sourceforge.dkartaschew.halimede.CertificateAuthorityFixture.createCA;
+import static net.sourceforge.dkartaschew.halimede.CertificateAuthorityFixture.getCertificate;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.security.NoSuchAlgorithmException;
+import java.security.PublicKey;
+import java.security.cert.X509Certificate;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+
+import net.sourceforge.dkartaschew.halimede.CertificateAuthorityFixture;
+import net.sourceforge.dkartaschew.halimede.data.CertificateAuthority;
+import net.sourceforge.dkartaschew.halimede.data.IssuedCertificateProperties;
+import net.sourceforge.dkartaschew.halimede.data.IssuedCertificateProperties.Key;
+import net.sourceforge.dkartaschew.halimede.data.renewal.KeyRollover.Phase;
+import net.sourceforge.dkartaschew.halimede.data.store.IDatastore;
+import net.sourceforge.dkartaschew.halimede.enumeration.KeyType;
+import net.sourceforge.dkartaschew.halimede.enumeration.RevokeReasonCode;
+import net.sourceforge.dkartaschew.halimede.enumeration.SignatureAlgorithm;
+
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class TestKeyRollover {
+
+	@BeforeClass
+	public static void setup() throws NoSuchAlgorithmException {
+		CertificateAuthorityFixture.setup();
+	}
+
+	@AfterClass
+	public static void teardown() {
+		CertificateAuthorityFixture.teardown();
+	}
+
+	/**
+	 * Sign a new certificate with the given validity, stored as PKCS12.
+	 */
+	private IssuedCertificateProperties sign(CertificateAuthority ca, String cn, ZonedDateTime end) throws Exception {
+		return CertificateAuthorityFixture.sign(ca, cn, ZonedDateTime.now().minusDays(10), end);
+	}
+
+	/**
+	 * Sign a new certificate from a public key only, stored as PKCS7.
+	 */
+	private IssuedCertificateProperties signPublic(CertificateAuthority ca, String cn) throws Exception {
+		return CertificateAuthorityFixture.signPublic(ca, cn, null, ZonedDateTime.now().minusDays(10),
+				ZonedDateTime.now().plusMonths(2));
+	}
+
+	private X509Certificate readCertificate(CertificateAuthority ca, String filename) throws Exception {
+		return (X509Certificate) java.security.cert.CertificateFactory.getInstance("X.509")
+				.generateCertificate(new ByteArrayInputStream(ca.getDatastore().read(IDatastore.ROOT, filename)));
+	}
+
+	private IssuedCertificateProperties find(CertificateAuthority ca, String serial) {
+		return ca.getIssuedCertificates().stream()//
+				.filter(p -> serial.equals(p.getProperty(Key.certificateSerialNumber)))//
+				.findFirst().orElse(null);
+	}
+
+	@Test
+	public void testRollover() throws Exception {
+		CertificateAuthority ca = createCA();
+		IssuedCertificateProperties keyed = sign(ca, "Keyed", ZonedDateTime.now().plusMonths(1));
+		IssuedCertificateProperties publicOnly = signPublic(ca, "Public");
+		IssuedCertificateProperties expired = sign(ca, "Expired", ZonedDateTime.now().minusDays(1));
+		IssuedCertificateProperties revoked = sign(ca, "Revoked", ZonedDateTime.now().plusMonths(1));
+		ca.revokeCertificate(revoked, null, RevokeReasonCode.KEY_COMPROMISE);
+
+		X509Certificate oldCert = (X509Certificate) ca.getCertificate();
+		PublicKey oldKey = oldCert.getPublicKey();
+		X509Certificate keyedCert = getCertificate(keyed);
+		X509Certificate publicCert = getCertificate(publicOnly);
+
+		KeyRollover rollover = new KeyRollover(ca);
+		assertNull(rollover.getPhase());
+		assertFalse(rollover.isInProgress());
+		RenewalReport report = rollover.start(KeyType.EC_secp384r1, SignatureAlgorithm.SHA384withECDSA,
+				ZonedDateTime.now().plusYears(5), PASSWORD, null);
+		assertEquals(Phase.COMPLETE, rollover.getPhase());
+		assertFalse(rollover.isInProgress());
+		assertFalse(report.isCancelled());
+		assertEquals(2, report.getRenewedCount());
+		assertEquals(0, report.getFailedCount());
+
+		// New self signed CA certificate.
+		X509Certificate newCert = (X509Certificate) ca.getCertificate();
+		PublicKey newKey = newCert.getPublicKey();
+		assertNotEquals(oldKey, newKey);
+		assertEquals(oldCert.getSubjectX500Principal(), newCert.getSubjectX500Principal());
+		newCert.verify(newKey);
+		assertEquals(SignatureAlgorithm.SHA384withECDSA, ca.getSignatureAlgorithm());
+		assertTrue(ca.getDatastore().exists(IDatastore.ROOT, "ca-" + oldCert.getSerialNumber() + ".p12"));
+
+		// Cross certificates
+		X509Certificate oldWithNew = readCertificate(ca, rollover.getOldWithNewFilename());
+		assertEquals(newKey, oldWithNew.getPublicKey());
+		oldWithNew.verify(oldKey);
+		X509Certificate newWithOld = readCertificate(ca, rollover.getNewWithOldFilename());
+		assertEquals(oldKey, newWithOld.getPublicKey());
+		newWithOld.verify(newKey);
+
+		// Re-issued with the same keys and expiry under the new key.
+		for (IssuedCertificateProperties original : new IssuedCertificateProperties[] { keyed, publicOnly }) {
+			IssuedCertificateProperties reissued = find(ca, original.getProperty(Key.renewedBy));
+			assertNotNull(reissued);
+			assertEquals(original.getProperty(Key.certificateSerialNumber), reissued.getProperty(Key.renewalOf));
+			assertEquals(original.getDate(Key.endDate), reissued.getDate(Key.endDate), 1000);
+			X509Certificate cert = getCertificate(reissued);
+			cert.verify(newKey);
+			assertEquals(original == keyed ? keyedCert.getPublicKey() : publicCert.getPublicKey(),
+					cert.getPublicKey());
+		}
+		IssuedCertificateProperties reissued = find(ca, keyed.getProperty(Key.renewedBy));
+		assertNotNull(reissued.getProperty(Key.pkcs12store));
+		assertEquals(keyed.loadIssuedCertificate(PASSWORD).getPrivateKey(),
+				reissued.loadIssuedCertificate(PASSWORD).getPrivateKey());
+		assertNull(expired.getProperty(Key.renewedBy));
+		assertNull(revoked.getProperty(Key.renewedBy));
+
+		// New certificates are signed with the new key.
+		sign(ca, "After", ZonedDateTime.now().plusMonths(1));
+		IssuedCertificateProperties after = ca.getIssuedCertificates().stream()
+				.filter(p -> "CN=After".equals(p.getProperty(Key.subject))).findFirst().get();
+		getCertificate(after).verify(newKey);
+	}
+
+	@Test
+	public void testResume() throws Exception {
+		CertificateAuthority ca = createCA();
+		for (int i = 0; i < 3; i++) {
+			signPublic(ca, "Resume " + i);
+		}
+		KeyRollover rollover = new KeyRollover(ca);
+		NullProgressMonitor monitor = new NullProgressMonitor();
+		monitor.setCanceled(true);
+		RenewalReport report = rollover.start(KeyType.EC_secp384r1, SignatureAlgorithm.SHA384withECDSA,
+				ZonedDateTime.now().plusYears(5), PASSWORD, monitor);
+		assertTrue(report.isCancelled());
+		assertEquals(0, report.getRenewedCount());
+		assertEquals(Phase.REISSUE, rollover.getPhase());
+		assertTrue(rollover.isInProgress());
+		PublicKey newKey = ca.getCertificate().getPublicKey();
+
+		try {
+			rollover.start(KeyType.EC_secp384r1, SignatureAlgorithm.SHA384withECDSA,
+					ZonedDateTime.now().plusYears(5), PASSWORD, null);
+			fail("Rollover started twice");
+		} catch (IllegalStateException e) {
+			// expected
+		}
+
+		// Resumed from a new instance, as after a restart.
+		rollover = new KeyRollover(ca);
+		report = rollover.resume(PASSWORD, null);
+		assertFalse(report.isCancelled());
+		assertEquals(3, report.getRenewedCount());
+		assertEquals(Phase.COMPLETE, rollover.getPhase());
+		assertEquals(newKey, ca.getCertificate().getPublicKey());
+		List<IssuedCertificateProperties> reissued = ca.getIssuedCertificates().stream()
+				.filter(p -> p.getProperty(Key.renewalOf) != null).collect(Collectors.toList());
+		assertEquals(3, reissued.size());
+		for (IssuedCertificateProperties p : reissued) {
+			getCertificate(p).verify(newKey);
+		}
+
+		try {
+			rollover.resume(PASSWORD, null);
+			fail("Completed rollover resumed");
+		} catch (IllegalStateException e) {
+			// expected
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidSignature() throws Exception {
+		new KeyRollover(createCA()).start(KeyType.EC_secp384r1, SignatureAlgorithm.SHA256withRSA,
+				ZonedDateTime.now().plusYears(5), PASSWORD, null);
+	}
+}
@@ -0,0 +1,228 @@
+/*-
+ * Halimede Certificate Manager Plugin for Eclipse 
+ * Copyright (C) 2017-2021 Darran Kartaschew 
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v2.0 which
+ * accompanies this distribution and is available at
+ *
+ * http://www.eclipse.org/legal/epl-v20.html
+ * 
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the Eclipse
+ * Public License, v. 2.0 are satisfied: GNU General Public License, version 2
+ * with the GNU Classpath Exception which is
+ * available at https://www.gnu.org/software/classpath/license.html.
+ */
+
+package net.sourceforge.dkartaschew.halimede.data.renewal;
+
+import static net.sourceforge.dkartaschew.halimede.CertificateAuthorityFixture.PASSWORD;
+import static net.sourceforge.dkartaschew.halimede.CertificateAuthorityFixture.createCA;
+import static net.sourceforge.dkartaschew.halimede.CertificateAuthorityFixture.getCertificate;
+import static net.sourceforge.dkartaschew.halimede.CertificateAuthorityFixture.template;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.NoSuchAlgorithmException;
+import java.security.cert.X509Certificate;
+import java.time.ZonedDateTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+
+import net.sourceforge.dkartaschew.halimede.CertificateAuthorityFixture;
+import net.sourceforge.dkartaschew.halimede.TestUtilities;
+import net.sourceforge.dkartaschew.halimede.data.CertificateAuthority;
+import net.sourceforge.dkartaschew.halimede.data.CertificateRequestProperties;
+import net.sourceforge.dkartaschew.halimede.data.IssuedCertificateProperties;
+import net.sourceforge.dkartaschew.halimede.data.IssuedCertificateProperties.Key;
+import net.sourceforge.dkartaschew.halimede.data.impl.CertificateKeyPairTemplate;
+import net.sourceforge.dkartaschew.halimede.data.impl.CertificateRequestPKCS10;
+import net.sourceforge.dkartaschew.halimede.data.renewal.RenewalReport.Method;
+import net.sourceforge.dkartaschew.halimede.data.renewal.RenewalReport.Result;
+import net.sourceforge.dkartaschew.halimede.enumeration.KeyType;
+
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class TestRenewalEngine {
+
+	@BeforeClass
+	public static void setup() throws NoSuchAlgorithmException {
+		CertificateAuthorityFixture.setup();
+	}
+
+	@AfterClass
+	public static void teardown() {
+		CertificateAuthorityFixture.teardown();
+	}
+
+	/**
+	 * Sign a new certificate expiring in the given number of days, stored as PKCS12.
+	 */
+	private IssuedCertificateProperties sign(CertificateAuthority ca, String cn, int days) throws Exception {
+		CertificateKeyPairTemplate template = template(cn);
+		template.setDescription(cn);
+		return CertificateAuthorityFixture.sign(ca, template, ZonedDateTime.now().minusDays(10),
+				ZonedDateTime.now().plusDays(days));
+	}
+
+	/**
+	 * Sign a new certificate expiring in the given number of days from a public key only, stored as PKCS7.
+	 */
+	private IssuedCertificateProperties signPublic(CertificateAuthority ca, String cn, String dns, int days)
+			throws Exception {
+		return CertificateAuthorityFixture.signPublic(ca, cn, dns, ZonedDateTime.now().minusDays(10),
+				ZonedDateTime.now().plusDays(days));
+	}
+
+	@Test
+	public void testCandidates() throws Exception {
+		CertificateAuthority ca = createCA();
+		IssuedCertificateProperties soon = sign(ca, "Soon", 5);
+		IssuedCertificateProperties sooner = sign(ca, "Sooner", 2);
+		sign(ca, "Later", 90);
+		IssuedCertificateProperties expired = signPublic(ca, "Expired", "expired.example.com", -1);
+
+		RenewalEngine engine = new RenewalEngine(ca);
+		assertEquals(Arrays.asList(expired, sooner, soon), engine.findCandidates(30));
+		assertEquals(Collections.singletonList(expired), engine.findCandidates(0));
+		assertEquals(4, engine.findCandidates(365).size());
+
+		// Renewed certificates are not candidates.
+		soon.setProperty(Key.renewedBy, "1");
+		assertEquals(Arrays.asList(expired, sooner), engine.findCandidates(30));
+	}
+
+	@Test
+	public void testRenewRekey() throws Exception {
+		CertificateAuthority ca = createCA();
+		IssuedCertificateProperties original = sign(ca, "Rekey", 5);
+		X509Certificate originalCert = getCertificate(original);
+
+		RenewalEngine engine = new RenewalEngine(ca);
+		engine.setValidityDays(60);
+		RenewalReport report = engine.renew(engine.findCandidates(30), PASSWORD, null);
+		assertFalse(report.isCancelled());
+		assertEquals(1, report.getRenewedCount());
+		assertEquals(1, report.getRenewedCount(Method.REKEY));
+		assertEquals(0, report.getFailedCount());
+
+		Result result = report.getResults().get(0);
+		IssuedCertificateProperties renewed = result.getRenewed();
+		assertNotNull(renewed);
+		assertNull(result.getError());
+		assertEquals(2, ca.getIssuedCertificates().size());
+		assertEquals(KeyType.EC_secp256r1, renewed.getKeyType());
+		assertNotNull(renewed.getProperty(Key.pkcs12store));
+		assertEquals("Rekey", renewed.getProperty(Key.description));
+
+		// Linked.
+		assertEquals(original.getProperty(Key.certificateSerialNumber), renewed.getProperty(Key.renewalOf));
+		assertEquals(renewed.getProperty(Key.certificateSerialNumber), original.getProperty(Key.renewedBy));
+		assertTrue(engine.findCandidates(30).isEmpty());
+
+		// New keying material, same subject, new validity.
+		X509Certificate renewedCert = getCertificate(renewed);
+		assertEquals(originalCert.getSubjectX500Principal(), renewedCert.getSubjectX500Principal());
+		assertNotEquals(originalCert.getPublicKey(), renewedCert.getPublicKey());
+		assertTrue(renewed.getDate(Key.endDate) > ZonedDateTime.now().plusDays(59).toInstant().toEpochMilli());
+		assertTrue(report.getSummary().contains(renewed.getProperty(Key.certificateSerialNumber)));
+	}
+
+	@Test
+	public void testRenewResign() throws Exception {
+		CertificateAuthority ca = createCA();
+		IssuedCertificateProperties original = signPublic(ca, "Resign", "resign.example.com", 5);
+		X509Certificate originalCert = getCertificate(original);
+
+		RenewalEngine engine = new RenewalEngine(ca);
+		RenewalReport report = engine.renew(engine.findCandidates(30), null, null);
+		assertEquals(1, report.getRenewedCount(Method.RESIGN));
+		IssuedCertificateProperties renewed = report.getResults().get(0).getRenewed();
+		assertNotNull(renewed.getProperty(Key.pkcs7store));
+		assertEquals(original.getProperty(Key.certificateSerialNumber), renewed.getProperty(Key.renewalOf));
+		assertEquals(renewed.getProperty(Key.certificateSerialNumber), original.getProperty(Key.renewedBy));
+
+		// Same key and names, original validity period.
+		X509Certificate renewedCert = getCertificate(renewed);
+		assertEquals(originalCert.getPublicKey(), renewedCert.getPublicKey());
+		assertEquals(originalCert.getSubjectAlternativeNames(), renewedCert.getSubjectAlternativeNames());
+		long duration = original.getDate(Key.endDate) - original.getDate(Key.startDate);
+		assertEquals(duration, renewed.getDate(Key.endDate) - renewed.getDate(Key.startDate), 2000);
+	}
+
+	@Test
+	public void testRenewCSR() throws Exception {
+		CertificateAuthority ca = createCA();
+		Path file = TestUtilities.getFile("ec_email.csr");
+		CertificateRequestProperties request = ca.addCertificateSigningRequest(file);
+		IssuedCertificateProperties original = ca.signAndStoreCertificateRequest(CertificateRequestPKCS10.create(file),
+				ZonedDateTime.now().minusDays(10), ZonedDateTime.now().plusDays(5), null);
+		ca.moveCertificateSigningRequest(request, original);
+		assertNotNull(original.getProperty(Key.csrStore));
+
+		RenewalEngine engine = new RenewalEngine(ca);
+		RenewalReport report = engine.renew(engine.findCandidates(30), PASSWORD, null);
+		assertEquals(1, report.getRenewedCount(Method.CSR));
+		IssuedCertificateProperties renewed = report.getResults().get(0).getRenewed();
+		assertEquals(original.getProperty(Key.subject), renewed.getProperty(Key.subject));
+		assertEquals(original.getProperty(Key.certificateSerialNumber), renewed.getProperty(Key.renewalOf));
+
+		// The CSR is held with the renewed certificate.
+		String csrStore = renewed.getProperty(Key.csrStore);
+		assertNotNull(csrStore);
+		assertNotEquals(original.getProperty(Key.csrStore), csrStore);
+		assertArrayEquals(Files.readAllBytes(file), ca.readArtefact(csrStore));
+	}
+
+	@Test
+	public void testRenewBatches() throws Exception {
+		CertificateAuthority ca = createCA();
+		int count = RenewalEngine.BATCH_SIZE * 2 + 3;
+		for (int i = 0; i < count; i++) {
+			signPublic(ca, "Batch " + i, "batch" + i + ".example.com", i % 10);
+		}
+		RenewalEngine engine = new RenewalEngine(ca);
+		List<IssuedCertificateProperties> candidates = engine.findCandidates(30);
+		assertEquals(count, candidates.size());
+		RenewalReport report = engine.renew(candidates, null, null);
+		assertEquals(count, report.getRenewedCount());
+		assertEquals(count * 2, ca.getIssuedCertificates().size());
+		// In candidate order.
+		for (int i = 0; i < count; i++) {
+			assertTrue(report.getResults().get(i).getOriginal() == candidates.get(i));
+		}
+		assertTrue(engine.findCandidates(30).isEmpty());
+	}
+
+	@Test
+	public void testFailure() throws Exception {
+		CertificateAuthority ca = createCA();
+		sign(ca, "No Password", 5);
+		RenewalEngine engine = new RenewalEngine(ca);
+		// PKCS12 containers can't be created without a password.
+		RenewalReport report = engine.renew(engine.findCandidates(30), null, null);
+		assertEquals(0, report.getRenewedCount());
+		assertEquals(1, report.getFailedCount());
+		assertNotNull(report.getResults().get(0).getError());
+		assertEquals(1, engine.findCandidates(30).size());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testNegativeValidity() throws Exception {
+		new RenewalEngine(createCA()).setValidityDays(-1);
+	}
+}
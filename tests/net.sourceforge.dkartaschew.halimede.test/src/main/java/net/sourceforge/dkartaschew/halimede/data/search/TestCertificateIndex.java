@@ -0,0 +1,255 @@
+/*-
+ * Halimede Certificate Manager Plugin for Eclipse 
+ * Copyright (C) 2017-2021 Darran Kartaschew 
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v2.0 which
+ * accompanies this distribution and is available at
+ *
+ * http://www.eclipse.org/legal/epl-v20.html
+ * 
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the Eclipse
+ * Public License, v. 2.0 are satisfied: GNU General Public License, version 2
+ * with the GNU Classpath Exception which is
+ * available at https://www.gnu.org/software/classpath/license.html.
+ */
+
+package net.sourceforge.dkartaschew.halimede.data.search;
+
+import static net.sourceforge.dkartaschew.halimede.CertificateAuthorityFixture.createCA;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.math.BigInteger;
+import java.security.NoSuchAlgorithmException;
+import java.security.cert.X509Certificate;
+import java.time.ZonedDateTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+
+import net.sourceforge.dkartaschew.halimede.CertificateAuthorityFixture;
+import net.sourceforge.dkartaschew.halimede.data.CertificateAuthority;
+import net.sourceforge.dkartaschew.halimede.data.IssuedCertificateProperties;
+import net.sourceforge.dkartaschew.halimede.data.ItemsChangeEvent;
+import net.sourceforge.dkartaschew.halimede.data.impl.IssuedCertificate;
+import net.sourceforge.dkartaschew.halimede.enumeration.RevokeReasonCode;
+import net.sourceforge.dkartaschew.halimede.enumeration.SearchField;
+import net.sourceforge.dkartaschew.halimede.util.Digest;
+import net.sourceforge.dkartaschew.halimede.util.Strings;
+
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class TestCertificateIndex {
+
+	private final Set<SearchField> ALL = EnumSet.allOf(SearchField.class);
+
+	@BeforeClass
+	public static void setup() throws NoSuchAlgorithmException {
+		CertificateAuthorityFixture.setup();
+	}
+
+	@AfterClass
+	public static void teardown() {
+		CertificateAuthorityFixture.teardown();
+	}
+
+	/**
+	 * Sign a new certificate, stored as PKCS12.
+	 */
+	private IssuedCertificateProperties sign(CertificateAuthority ca, String cn) throws Exception {
+		return CertificateAuthorityFixture.sign(ca, cn, ZonedDateTime.now(), ZonedDateTime.now().plusMonths(1));
+	}
+
+	/**
+	 * Sign a new certificate from a public key only, stored as PKCS7.
+	 */
+	private IssuedCertificateProperties signPublic(CertificateAuthority ca, String cn, String dns) throws Exception {
+		return CertificateAuthorityFixture.signPublic(ca, cn, dns, ZonedDateTime.now(),
+				ZonedDateTime.now().plusMonths(1));
+	}
+
+	private static IssuedCertificateProperties only(List<SearchResult> results) {
+		assertEquals(1, results.size());
+		return results.get(0).getCertificate();
+	}
+
+	@Test
+	public void testSearch() throws Exception {
+		CertificateAuthority ca = createCA();
+		IssuedCertificateProperties alice = sign(ca, "Alice Smith");
+		IssuedCertificateProperties bob = signPublic(ca, "Bob Smith", "www.example.com");
+		CertificateIndex index = new CertificateIndex(ca);
+		assertSame(ca, index.getCertificateAuthority());
+
+		// Subject
+		List<SearchResult> results = index.search("smith", EnumSet.of(SearchField.SUBJECT), null);
+		assertEquals(2, results.size());
+		assertEquals(2, index.size());
+		assertSame(alice, only(index.search("cn=alice", ALL, null)));
+		assertTrue(index.search("mallory", ALL, null).isEmpty());
+		assertTrue(index.search("", ALL, null).isEmpty());
+		assertTrue(index.search("smith", Collections.emptySet(), null).isEmpty());
+
+		// Serial, decimal and hex.
+		BigInteger serial = alice.getSerialNumber();
+		results = index.search(serial.toString(), EnumSet.of(SearchField.SERIAL), null);
+		assertSame(alice, only(results));
+		assertEquals(SearchField.SERIAL, results.get(0).getField());
+		assertFalse(results.get(0).isRevoked());
+		assertSame(ca, results.get(0).getCertificateAuthority());
+		assertSame(alice, only(index.search("0x" + serial.toString(16), EnumSet.of(SearchField.SERIAL), null)));
+
+		// Alt names
+		results = index.search("example.com", EnumSet.of(SearchField.SUBJECT_ALT_NAME), null);
+		assertSame(bob, only(results));
+		assertEquals(SearchField.SUBJECT_ALT_NAME, results.get(0).getField());
+
+		// Fingerprint, by prefix, with separators.
+		X509Certificate cert = (X509Certificate) IssuedCertificate
+				.decodePKCS7(ca.readArtefact(bob.getProperty(IssuedCertificateProperties.Key.pkcs7store)))
+				.getCertificateChain()[0];
+		String fingerprint = Strings.toHexString(Digest.sha256(cert.getPublicKey().getEncoded()));
+		assertSame(bob, only(index.search(fingerprint, EnumSet.of(SearchField.FINGERPRINT), null)));
+		String prefix = Strings.toHexString(Digest.sha256(cert.getPublicKey().getEncoded()), ":", 0).substring(0, 23);
+		assertSame(bob, only(index.search(prefix.toUpperCase(), EnumSet.of(SearchField.FINGERPRINT), null)));
+		// PKCS12 certificates are not readable without a password.
+		assertTrue(index.search("cn=alice", EnumSet.of(SearchField.SUBJECT_ALT_NAME, SearchField.FINGERPRINT), null)
+				.isEmpty());
+	}
+
+	@Test
+	public void testChanges() throws Exception {
+		CertificateAuthority ca = createCA();
+		CertificateIndex index = new CertificateIndex(ca);
+		ca.addPropertyChangeListener(evt -> {
+			if (evt instanceof ItemsChangeEvent) {
+				ItemsChangeEvent<?> items = (ItemsChangeEvent<?>) evt;
+				index.itemsChanged(CertificateAuthority.PROPERTY_REVOKED.equals(evt.getPropertyName()),
+						items.getAdded(), items.getRemoved(), items.getUpdated());
+			}
+		});
+		IssuedCertificateProperties alice = sign(ca, "Alice");
+		assertSame(alice, only(index.search("alice", ALL, null)));
+
+		// Added after the index was built.
+		IssuedCertificateProperties carol = signPublic(ca, "Carol", "carol.example.com");
+		assertSame(carol, only(index.search("carol", EnumSet.of(SearchField.SUBJECT_ALT_NAME), null)));
+		assertEquals(2, index.size());
+
+		// Revoked certificates remain, marked as revoked.
+		ca.revokeCertificate(alice, ZonedDateTime.now(), RevokeReasonCode.SUPERSEDED);
+		List<SearchResult> results = index.search("alice", ALL, null);
+		assertEquals(1, results.size());
+		assertTrue(results.get(0).isRevoked());
+		assertEquals(2, index.size());
+
+		// Rebuilt when invalidated.
+		index.invalidate();
+		results = index.search("example", ALL, null);
+		assertSame(carol, only(results));
+		assertFalse(results.get(0).isRevoked());
+		assertTrue(index.search("alice", ALL, null).get(0).isRevoked());
+
+		// Cancelled before the certificates are read.
+		index.invalidate();
+		assertTrue(index.search("carol", EnumSet.of(SearchField.FINGERPRINT), () -> true).isEmpty());
+	}
+
+	@Test
+	public void testValidity() throws Exception {
+		CertificateAuthority ca = createCA();
+		CertificateIndex index = new CertificateIndex(ca);
+		ca.addPropertyChangeListener(evt -> {
+			if (evt instanceof ItemsChangeEvent) {
+				ItemsChangeEvent<?> items = (ItemsChangeEvent<?>) evt;
+				index.itemsChanged(CertificateAuthority.PROPERTY_REVOKED.equals(evt.getPropertyName()),
+						items.getAdded(), items.getRemoved(), items.getUpdated());
+			}
+		});
+		ZonedDateTime now = ZonedDateTime.now();
+		IssuedCertificateProperties expired = CertificateAuthorityFixture.sign(ca, "Expired",
+				now.minusYears(2), now.minusYears(1));
+		IssuedCertificateProperties soon = CertificateAuthorityFixture.sign(ca, "Soon",
+				now.minusYears(1), now.plusDays(10));
+		IssuedCertificateProperties later = CertificateAuthorityFixture.sign(ca, "Later",
+				now.minusDays(1), now.plusDays(100));
+		IssuedCertificateProperties future = CertificateAuthorityFixture.sign(ca, "Future",
+				now.plusDays(20), now.plusDays(50));
+		long t = now.toInstant().toEpochMilli();
+		long day = 24 * 60 * 60 * 1000L;
+
+		// Range queries, ordered by end date.
+		assertEquals(Arrays.asList(soon), index.getExpiring(t, t + 30 * day, false));
+		assertEquals(Arrays.asList(soon, future), index.getExpiring(t, t + 60 * day, false));
+		assertEquals(Arrays.asList(expired, soon, future, later),
+				index.getExpiring(t - 800 * day, t + 200 * day, false));
+		assertTrue(index.getExpiring(t + 30 * day, t, false).isEmpty());
+
+		// Point in time queries.
+		assertEquals(2, index.getValid(t, t, false).size());
+		assertTrue(index.getValid(t, t, false).containsAll(Arrays.asList(soon, later)));
+		assertEquals(Arrays.asList(expired), index.getValid(t - 500 * day, t - 500 * day, false));
+		assertEquals(Arrays.asList(later, future), index.getValid(t + 15 * day, t + 25 * day, false));
+		assertTrue(index.getValid(t + 200 * day, t + 200 * day, false).isEmpty());
+
+		// Kept current as certificates are issued and revoked.
+		IssuedCertificateProperties sooner = CertificateAuthorityFixture.sign(ca, "Sooner",
+				now.minusDays(5), now.plusDays(5));
+		assertEquals(Arrays.asList(sooner, soon), index.getExpiring(t, t + 30 * day, false));
+		ca.revokeCertificate(soon, now, RevokeReasonCode.SUPERSEDED);
+		assertEquals(Arrays.asList(sooner), index.getExpiring(t, t + 30 * day, false));
+		assertEquals(Arrays.asList(sooner, soon), index.getExpiring(t, t + 30 * day, true));
+		assertFalse(index.getValid(t, t, false).contains(soon));
+	}
+
+	@Test
+	public void testUnloaded() throws Exception {
+		CertificateAuthority ca = createCA();
+		CertificateIndex index = new CertificateIndex(ca);
+		IssuedCertificateProperties alice = sign(ca, "Alice");
+		long t = System.currentTimeMillis();
+		long day = 24 * 60 * 60 * 1000L;
+		assertSame(alice, only(index.search("alice", ALL, null)));
+		assertEquals(1, index.size());
+
+		// Released on unload, and the CA is not loaded by searching.
+		assertTrue(ca.unload());
+		index.clear();
+		assertEquals(0, index.size());
+		assertTrue(index.search("alice", ALL, null).isEmpty());
+		assertTrue(index.getExpiring(t, t + 60 * day, true).isEmpty());
+		assertTrue(index.getValid(t, t, true).isEmpty());
+		assertFalse(ca.isLoaded());
+
+		// Rebuilt once loaded again.
+		ca.load(null);
+		assertEquals(alice.getSerialNumber(), only(index.search("alice", ALL, null)).getSerialNumber());
+		assertEquals(1, index.getValid(t, t, false).size());
+	}
+
+	@Test
+	public void testParse() {
+		assertEquals(Arrays.asList(BigInteger.valueOf(10), BigInteger.valueOf(16)),
+				Arrays.asList(CertificateIndex.parseSerial("10").toArray()));
+		assertEquals(Collections.singleton(BigInteger.valueOf(16)), CertificateIndex.parseSerial("0x10"));
+		assertEquals(Collections.singleton(BigInteger.valueOf(0xab01)), CertificateIndex.parseSerial("AB:01"));
+		assertTrue(CertificateIndex.parseSerial("CN=test").isEmpty());
+		assertTrue(CertificateIndex.parseSerial("0x").isEmpty());
+		assertTrue(CertificateIndex.parseSerial(null).isEmpty());
+		assertEquals("ab01ff", CertificateIndex.normalizeHex(" AB:01:FF "));
+		assertNull(CertificateIndex.normalizeHex("xyz"));
+		assertNull(CertificateIndex.normalizeHex(""));
+	}
+}
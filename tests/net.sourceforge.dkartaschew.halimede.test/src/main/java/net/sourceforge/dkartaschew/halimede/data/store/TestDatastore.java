@@ -0,0 +1,229 @@
+/*-
+ * Halimede Certificate Manager Plugin for Eclipse 
+ * Copyright (C) 2017-2021 Darran Kartaschew 
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v2.0 which
+ * accompanies this distribution and is available at
+ *
+ * http://www.eclipse.org/legal/epl-v20.html
+ * 
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the Eclipse
+ * Public License, v. 2.0 are satisfied: GNU General Public License, version 2
+ * with the GNU Classpath Exception which is
+ * available at https://www.gnu.org/software/classpath/license.html.
+ */
+
+package net.sourceforge.dkartaschew.halimede.data.store;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.NoSuchAlgorithmException;
+import java.time.ZonedDateTime;
+import java.util.Arrays;
+import java.util.List;
+
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.crypto.CryptoServicesRegistrar;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+
+import net.sourceforge.dkartaschew.halimede.TestUtilities;
+import net.sourceforge.dkartaschew.halimede.data.CRLProperties;
+import net.sourceforge.dkartaschew.halimede.data.CertificateAuthority;
+import net.sourceforge.dkartaschew.halimede.data.IssuedCertificateProperties;
+import net.sourceforge.dkartaschew.halimede.data.IssuedCertificateProperties.Key;
+import net.sourceforge.dkartaschew.halimede.data.KeyPairFactory;
+import net.sourceforge.dkartaschew.halimede.data.impl.CertificateKeyPairTemplate;
+import net.sourceforge.dkartaschew.halimede.data.impl.IssuedCertificate;
+import net.sourceforge.dkartaschew.halimede.enumeration.KeyType;
+import net.sourceforge.dkartaschew.halimede.enumeration.RevokeReasonCode;
+import net.sourceforge.dkartaschew.halimede.random.NotSecureRandom;
+import net.sourceforge.dkartaschew.halimede.util.ProviderUtil;
+
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class TestDatastore {
+
+	private final String PASSWORD = "changeme";
+	private final String CONTAINER = "Container";
+
+	@BeforeClass
+	public static void setup() throws NoSuchAlgorithmException {
+		ProviderUtil.setupProviders();
+		NotSecureRandom rnd = new NotSecureRandom();
+		CryptoServicesRegistrar.setSecureRandom(rnd);
+		KeyPairFactory.resetSecureRandom(rnd);
+	}
+
+	@AfterClass
+	public static void teardown() {
+		CryptoServicesRegistrar.setSecureRandom(null);
+		KeyPairFactory.resetSecureRandom(null);
+	}
+
+	/**
+	 * Basic item operations on the memory datastore.
+	 *
+	 * @throws Exception The operation failed.
+	 */
+	@Test
+	public void memoryOperations() throws Exception {
+		operations(new MemoryDatastore());
+	}
+
+	/**
+	 * Basic item operations on the filesystem datastore.
+	 *
+	 * @throws Exception The operation failed.
+	 */
+	@Test
+	public void fileSystemOperations() throws Exception {
+		Path path = Paths.get(TestUtilities.TMP, "Datastore");
+		TestUtilities.cleanup(path);
+		assertTrue(path.toFile().mkdirs());
+		try {
+			operations(new FileSystemDatastore(path));
+		} finally {
+			TestUtilities.cleanup(path);
+		}
+	}
+
+	/**
+	 * Exercise all datastore operations
+	 *
+	 * @param store The datastore.
+	 * @throws IOException The operation failed.
+	 */
+	private void operations(IDatastore store) throws IOException {
+		assertNotNull(store.getLocation());
+		byte[] data = "Halimede".getBytes(StandardCharsets.UTF_8);
+		store.createContainer(CONTAINER);
+		// Creating an existing container is a NOP
+		store.createContainer(CONTAINER);
+		assertFalse(store.exists(IDatastore.ROOT, "item.prop"));
+		try (OutputStream out = store.put(IDatastore.ROOT, "item.prop")) {
+			out.write(data);
+		}
+		assertTrue(store.exists(IDatastore.ROOT, "item.prop"));
+		assertArrayEquals(data, store.read(IDatastore.ROOT, "item.prop"));
+		assertEquals(store.getLocation().resolve("item.prop"), store.resolve(IDatastore.ROOT, "item.prop"));
+
+		store.copy(IDatastore.ROOT, "item.prop", CONTAINER, "copy.PROP");
+		assertArrayEquals(data, store.read(CONTAINER, "copy.PROP"));
+		assertTrue(store.exists(IDatastore.ROOT, "item.prop"));
+
+		store.move(IDatastore.ROOT, "item.prop", CONTAINER);
+		assertFalse(store.exists(IDatastore.ROOT, "item.prop"));
+		assertTrue(store.exists(CONTAINER, "item.prop"));
+
+		try (OutputStream out = store.put(CONTAINER, "item.p12")) {
+			out.write(data);
+		}
+		List<String> items = store.list(CONTAINER, ".prop");
+		items.sort(String::compareTo);
+		assertEquals(Arrays.asList("copy.PROP", "item.prop"), items);
+		assertEquals(3, store.list(CONTAINER, null).size());
+		assertTrue(store.list(IDatastore.ROOT, ".prop").isEmpty());
+
+		assertEquals(CONTAINER, store.find("item.p12", Arrays.asList(IDatastore.ROOT, CONTAINER)));
+		assertNull(store.find("missing.p12", Arrays.asList(IDatastore.ROOT, CONTAINER)));
+
+		store.delete(CONTAINER, "item.p12");
+		assertFalse(store.exists(CONTAINER, "item.p12"));
+	}
+
+	/**
+	 * Reading a missing item fails.
+	 *
+	 * @throws Exception The operation failed.
+	 */
+	@Test(expected = NoSuchFileException.class)
+	public void memoryMissingItem() throws Exception {
+		new MemoryDatastore().read(IDatastore.ROOT, "missing.prop");
+	}
+
+	/**
+	 * Deleting a missing item fails.
+	 *
+	 * @throws Exception The operation failed.
+	 */
+	@Test(expected = NoSuchFileException.class)
+	public void memoryDeleteMissingItem() throws Exception {
+		new MemoryDatastore().delete(IDatastore.ROOT, "missing.prop");
+	}
+
+	/**
+	 * Create, issue, revoke and refresh a CA held entirely in memory.
+	 *
+	 * @throws Exception The operation failed.
+	 */
+	@Test
+	public void memoryCertificateAuthority() throws Exception {
+		MemoryDatastore store = new MemoryDatastore();
+		Path file = TestUtilities.getFile("ec521_aes_2.p12");
+		CertificateAuthority ca = CertificateAuthority.createInDatastore(store, IssuedCertificate.openPKCS12(file, PASSWORD),
+				"Memory CA");
+		assertFalse(ca.isLocked());
+		assertEquals(store, ca.getDatastore());
+		assertEquals(store.getLocation(), ca.getBasePath());
+		assertTrue(store.exists(IDatastore.ROOT, CertificateAuthority.CA_PKCS12_FILENAME));
+
+		CertificateKeyPairTemplate template = new CertificateKeyPairTemplate();
+		template.setCreationDate(ZonedDateTime.now());
+		template.setDescription("My Cert");
+		template.setKeyType(KeyType.EC_secp256r1);
+		template.setSubject(new X500Name("CN=MyCert"));
+
+		IssuedCertificateProperties issued = ca.signAndStoreCertificateRequest(template.asCertificateRequest(),
+				ZonedDateTime.now(), ZonedDateTime.now().plusMonths(1), ca.getPassword());
+		String store12 = issued.getProperty(Key.pkcs12store);
+		assertNotNull(store12);
+		assertTrue(store.exists(CertificateAuthority.ISSUED_PATH, store12));
+		assertTrue(store.exists(CertificateAuthority.ISSUED_PATH, issued.getProperty(Key.filename)));
+		assertNotNull(issued.loadIssuedCertificate(ca.getPassword()));
+
+		ca.revokeCertificate(issued, ZonedDateTime.now(), RevokeReasonCode.CA_COMPROMISE);
+		assertFalse(store.exists(CertificateAuthority.ISSUED_PATH, store12));
+		assertTrue(store.exists(CertificateAuthority.REVOKED_PATH, store12));
+
+		CRLProperties crl = ca.createCRL(ZonedDateTime.now().plusDays(7));
+		assertNotNull(crl.getCRL());
+
+		// Reopen from the same store, and ensure everything is found.
+		CertificateAuthority ca2 = CertificateAuthority.openDatastore(store);
+		assertEquals(ca.getCertificateAuthorityID(), ca2.getCertificateAuthorityID());
+		assertTrue(ca2.isLocked());
+		assertEquals(0, ca2.getIssuedCertificates().size());
+		assertEquals(1, ca2.getRevokedCertificates().size());
+		assertEquals(1, ca2.getCRLs().size());
+		ca2.unlock(PASSWORD);
+		IssuedCertificateProperties revoked = ca2.getRevokedCertificates().iterator().next();
+		assertNotNull(revoked.loadIssuedCertificate(ca2.getPassword()));
+		assertNotNull(ca2.getCRLs().iterator().next().getCRL());
+	}
+
+	/**
+	 * Opening an empty datastore fails.
+	 *
+	 * @throws Exception The operation failed.
+	 */
+	@Test(expected = IOException.class)
+	public void openEmptyMemoryCertificateAuthority() throws Exception {
+		CertificateAuthority.openDatastore(new MemoryDatastore());
+	}
+}
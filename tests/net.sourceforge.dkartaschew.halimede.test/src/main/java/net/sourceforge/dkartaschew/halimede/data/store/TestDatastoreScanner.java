@@ -0,0 +1,216 @@
+/*-
+ * Halimede Certificate Manager Plugin for Eclipse 
+ * Copyright (C) 2017-2021 Darran Kartaschew 
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v2.0 which
+ * accompanies this distribution and is available at
+ *
+ * http://www.eclipse.org/legal/epl-v20.html
+ * 
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the Eclipse
+ * Public License, v. 2.0 are satisfied: GNU General Public License, version 2
+ * with the GNU Classpath Exception which is
+ * available at https://www.gnu.org/software/classpath/license.html.
+ */
+
+package net.sourceforge.dkartaschew.halimede.data.store;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.security.NoSuchAlgorithmException;
+import java.time.ZonedDateTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.crypto.CryptoServicesRegistrar;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+
+import net.sourceforge.dkartaschew.halimede.TestUtilities;
+import net.sourceforge.dkartaschew.halimede.data.CertificateAuthority;
+import net.sourceforge.dkartaschew.halimede.data.IssuedCertificateProperties;
+import net.sourceforge.dkartaschew.halimede.data.KeyPairFactory;
+import net.sourceforge.dkartaschew.halimede.data.impl.CertificateKeyPairTemplate;
+import net.sourceforge.dkartaschew.halimede.data.impl.IssuedCertificate;
+import net.sourceforge.dkartaschew.halimede.enumeration.KeyType;
+import net.sourceforge.dkartaschew.halimede.random.NotSecureRandom;
+import net.sourceforge.dkartaschew.halimede.util.ProviderUtil;
+
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class TestDatastoreScanner {
+
+	private final String PASSWORD = "changeme";
+	private final String CONTAINER = "Container";
+	private final int COUNT = 5000;
+
+	@BeforeClass
+	public static void setup() throws NoSuchAlgorithmException {
+		ProviderUtil.setupProviders();
+		NotSecureRandom rnd = new NotSecureRandom();
+		CryptoServicesRegistrar.setSecureRandom(rnd);
+		KeyPairFactory.resetSecureRandom(rnd);
+	}
+
+	@AfterClass
+	public static void teardown() {
+		CryptoServicesRegistrar.setSecureRandom(null);
+		KeyPairFactory.resetSecureRandom(null);
+	}
+
+	/**
+	 * Create a datastore with COUNT items.
+	 *
+	 * @return The datastore.
+	 * @throws IOException Creating the datastore failed.
+	 */
+	private MemoryDatastore createStore() throws IOException {
+		MemoryDatastore store = new MemoryDatastore();
+		store.createContainer(CONTAINER);
+		for (int i = 0; i < COUNT; i++) {
+			try (OutputStream out = store.put(CONTAINER, i + ".prop")) {
+				out.write(Integer.toString(i).getBytes(StandardCharsets.UTF_8));
+			}
+		}
+		// Items that should be ignored.
+		try (OutputStream out = store.put(CONTAINER, "ignore.p12")) {
+			out.write(1);
+		}
+		return store;
+	}
+
+	/**
+	 * Scan all items in a container.
+	 *
+	 * @throws Exception The scan failed.
+	 */
+	@Test
+	public void scanAll() throws Exception {
+		MemoryDatastore store = createStore();
+		DatastoreScanner scanner = new DatastoreScanner(store);
+		AtomicInteger loads = new AtomicInteger();
+		Map<Path, String> items = scanner.scan(CONTAINER, ".prop", new HashMap<>(), in -> {
+			loads.incrementAndGet();
+			return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+		}, null);
+		assertEquals(COUNT, items.size());
+		assertEquals(COUNT, loads.get());
+		for (int i = 0; i < COUNT; i++) {
+			assertEquals(Integer.toString(i), items.get(store.resolve(CONTAINER, i + ".prop")));
+		}
+
+		// Rescan, and ensure existing items are not reloaded.
+		loads.set(0);
+		Map<Path, String> items2 = scanner.scan(CONTAINER, ".prop", items, in -> {
+			loads.incrementAndGet();
+			return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+		}, new NullProgressMonitor());
+		assertEquals(COUNT, items2.size());
+		assertEquals(0, loads.get());
+		Path key = store.resolve(CONTAINER, "0.prop");
+		assertSame(items.get(key), items2.get(key));
+	}
+
+	/**
+	 * Items that fail to load are skipped.
+	 *
+	 * @throws Exception The scan failed.
+	 */
+	@Test
+	public void scanSkipFailed() throws Exception {
+		MemoryDatastore store = createStore();
+		DatastoreScanner scanner = new DatastoreScanner(store);
+		Map<Path, Integer> items = scanner.scan(CONTAINER, ".prop", new HashMap<>(), in -> {
+			int value = Integer.parseInt(new String(in.readAllBytes(), StandardCharsets.UTF_8));
+			if (value % 2 == 0) {
+				throw new IOException("Even");
+			}
+			return value;
+		}, null);
+		assertEquals(COUNT / 2, items.size());
+		assertTrue(items.values().stream().allMatch(v -> v % 2 == 1));
+	}
+
+	/**
+	 * Items whose loader throws a runtime exception (eg corrupt properties) are skipped, rather than failing the scan.
+	 *
+	 * @throws Exception The scan failed.
+	 */
+	@Test
+	public void scanSkipCorrupt() throws Exception {
+		MemoryDatastore store = createStore();
+		DatastoreScanner scanner = new DatastoreScanner(store);
+		Map<Path, Integer> items = scanner.scan(CONTAINER, ".prop", new HashMap<>(), in -> {
+			int value = Integer.parseInt(new String(in.readAllBytes(), StandardCharsets.UTF_8));
+			if (value % 2 == 0) {
+				throw new IllegalArgumentException("Even");
+			}
+			return value;
+		}, null);
+		assertEquals(COUNT / 2, items.size());
+		assertTrue(items.values().stream().allMatch(v -> v % 2 == 1));
+	}
+
+	/**
+	 * Scans may be cancelled.
+	 *
+	 * @throws Exception The scan failed.
+	 */
+	@Test(expected = OperationCanceledException.class)
+	public void scanCancel() throws Exception {
+		MemoryDatastore store = createStore();
+		DatastoreScanner scanner = new DatastoreScanner(store);
+		NullProgressMonitor monitor = new NullProgressMonitor();
+		monitor.setCanceled(true);
+		scanner.scan(CONTAINER, ".prop", new HashMap<>(), in -> "", monitor);
+	}
+
+	/**
+	 * Repeated refreshes retain all items.
+	 *
+	 * @throws Exception The refresh failed.
+	 */
+	@Test
+	public void refreshCertificateAuthority() throws Exception {
+		MemoryDatastore store = new MemoryDatastore();
+		Path file = TestUtilities.getFile("ec521_aes_2.p12");
+		CertificateAuthority ca = CertificateAuthority.createInDatastore(store,
+				IssuedCertificate.openPKCS12(file, PASSWORD), "Memory CA");
+		for (int i = 0; i < 10; i++) {
+			CertificateKeyPairTemplate template = new CertificateKeyPairTemplate();
+			template.setCreationDate(ZonedDateTime.now());
+			template.setKeyType(KeyType.EC_secp256r1);
+			template.setSubject(new X500Name("CN=MyCert" + i));
+			ca.signAndStoreCertificateRequest(template.asCertificateRequest(), ZonedDateTime.now(),
+					ZonedDateTime.now().plusMonths(1), ca.getPassword());
+		}
+		assertEquals(10, ca.getIssuedCertificates().size());
+		ca.refresh();
+		assertEquals(10, ca.getIssuedCertificates().size());
+		ca.refresh(new NullProgressMonitor());
+		assertEquals(10, ca.getIssuedCertificates().size());
+
+		// Remove one behind the CA's back.
+		IssuedCertificateProperties p = ca.getIssuedCertificates().iterator().next();
+		store.delete(CertificateAuthority.ISSUED_PATH, p.getProperty(IssuedCertificateProperties.Key.filename));
+		ca.refresh();
+		assertEquals(9, ca.getIssuedCertificates().size());
+
+		CertificateAuthority ca2 = CertificateAuthority.openDatastore(store);
+		assertEquals(9, ca2.getIssuedCertificates().size());
+	}
+}
@@ -0,0 +1,202 @@
+/*-
+ * Halimede Certificate Manager Plugin for Eclipse 
+ * Copyright (C) 2017-2021 Darran Kartaschew 
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v2.0 which
+ * accompanies this distribution and is available at
+ *
+ * http://www.eclipse.org/legal/epl-v20.html
+ * 
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the Eclipse
+ * Public License, v. 2.0 are satisfied: GNU General Public License, version 2
+ * with the GNU Classpath Exception which is
+ * available at https://www.gnu.org/software/classpath/license.html.
+ */
+
+package net.sourceforge.dkartaschew.halimede.log;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.beans.PropertyChangeEvent;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.SimpleFormatter;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import net.sourceforge.dkartaschew.halimede.TestUtilities;
+import net.sourceforge.dkartaschew.halimede.data.CertificateAuthority;
+
+/**
+ * Testing of the asynchronous activity log.
+ */
+public class TestAsyncActivityLog {
+
+	private final static String LINE = "\\[\\d{4}-\\d{2}-\\d{2}T\\d{2}:\\d{2}:\\d{2}\\.\\d{3}Z\\] \\[INFO   \\] "
+			+ "Thread (\\d+) Record (\\d+) ";
+
+	private Path dest;
+	private LogWriter writer;
+
+	@Before
+	public void setup() throws Exception {
+		dest = Paths.get(TestUtilities.TMP, "CA-AsyncLog");
+		TestUtilities.cleanup(dest);
+		TestUtilities.copyFolder(TestUtilities.getFolder("CA"), dest);
+		TestUtilities.cleanup(dest.resolve(CertificateAuthority.LOG_PATH));
+		// Small buffer, so loggers wait on the writer.
+		writer = new LogWriter(8, 0, false);
+		writer.start();
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		writer.stop();
+		TestUtilities.cleanup(dest);
+	}
+
+	@Test
+	public void ringBuffer() throws Exception {
+		RingBuffer<Integer> ring = new RingBuffer<>(5);
+		assertEquals(8, ring.capacity());
+		assertTrue(ring.isEmpty());
+		assertNull(ring.poll());
+		for (int i = 0; i < 8; i++) {
+			assertEquals(i, ring.offer(i));
+		}
+		assertEquals(-1, ring.offer(8));
+		assertEquals(0, ring.poll().intValue());
+		assertEquals(8, ring.offer(8));
+		for (int i = 1; i <= 8; i++) {
+			assertEquals(i, ring.poll().intValue());
+		}
+		assertTrue(ring.isEmpty());
+		assertEquals(9, ring.consumed());
+
+		// Many producers; each producer's elements are taken in order.
+		RingBuffer<int[]> shared = new RingBuffer<>(16);
+		int producers = 4;
+		int count = 20000;
+		List<Thread> threads = new ArrayList<>();
+		for (int p = 0; p < producers; p++) {
+			int id = p;
+			Thread t = new Thread(() -> {
+				for (int i = 0; i < count; i++) {
+					int[] item = new int[] { id, i };
+					while (shared.offer(item) < 0) {
+						Thread.yield();
+					}
+				}
+			});
+			threads.add(t);
+			t.start();
+		}
+		int[] next = new int[producers];
+		for (int taken = 0; taken < producers * count;) {
+			int[] item = shared.poll();
+			if (item == null) {
+				Thread.yield();
+				continue;
+			}
+			assertEquals(next[item[0]]++, item[1]);
+			taken++;
+		}
+		for (Thread t : threads) {
+			t.join();
+		}
+		assertTrue(shared.isEmpty());
+	}
+
+	@Test
+	public void writeRecords() throws Exception {
+		CertificateAuthority ca = CertificateAuthority.open(dest);
+		ca.setEnableLog(true);
+		AsyncActivityLog logger = new AsyncActivityLog(ca, writer, LogFormat.TEXT);
+
+		int producers = 4;
+		int count = 5000;
+		List<Thread> threads = new ArrayList<>();
+		for (int p = 0; p < producers; p++) {
+			int id = p;
+			Thread t = new Thread(() -> {
+				for (int i = 0; i < count; i++) {
+					logger.log(Level.INFO, "Thread {0} Record {1}", new Object[] { id, Integer.toString(i) });
+				}
+			});
+			threads.add(t);
+			t.start();
+		}
+		for (Thread t : threads) {
+			t.join();
+		}
+		logger.flush();
+
+		Path log = dest.resolve(CertificateAuthority.LOG_PATH)
+				.resolve(ca.getCertificateAuthorityID().toString() + ".0.log");
+		List<String> lines = Files.readAllLines(log, StandardCharsets.UTF_8);
+		assertEquals(producers * count, lines.size());
+		int[] next = new int[producers];
+		Pattern pattern = Pattern.compile(LINE);
+		for (String line : lines) {
+			Matcher m = pattern.matcher(line);
+			assertTrue(line, m.matches());
+			assertEquals(next[Integer.parseInt(m.group(1))]++, Integer.parseInt(m.group(2)));
+		}
+
+		// Disabled.
+		logger.propertyChange(new PropertyChangeEvent(ca, CertificateAuthority.PROPERTY_ENABLE_LOG, true, false));
+		logger.log(Level.INFO, "Thread 0 Record 0");
+		logger.flush();
+		assertEquals(producers * count, Files.readAllLines(log, StandardCharsets.UTF_8).size());
+	}
+
+	@Test
+	public void rollOver() throws Exception {
+		Path dir = dest.resolve(CertificateAuthority.LOG_PATH);
+		LogWriter.LogFile file = new LogWriter.LogFile(dir, "test", 1024);
+		assertTrue(Files.exists(dir.resolve("test.0.log.lck")));
+		for (int i = 0; i < 100; i++) {
+			writer.log(file, Level.INFO, "Thread 0 Record {0}", new Object[] { i });
+		}
+		writer.flush();
+		assertTrue(Files.exists(file.getPath(1)));
+		long total = 0;
+		for (int g = 0; Files.exists(file.getPath(g)); g++) {
+			total += Files.readAllLines(file.getPath(g)).size();
+		}
+		assertEquals(100, total);
+
+		writer.close(file);
+		writer.flush();
+		assertFalse(Files.exists(dir.resolve("test.0.log.lck")));
+	}
+
+	@Test
+	public void formatMessage() {
+		SimpleFormatter formatter = new SimpleFormatter();
+		String[] messages = { "Simple", "Value {0}", "Values {0} = {1}", "Bad {0", "Quote ''{0}''", "{4} only" };
+		Object[][] params = { null, {}, { 1 }, { 1, "two" }, { 1234567, 2.5 } };
+		for (String msg : messages) {
+			for (Object[] p : params) {
+				LogRecord lr = new LogRecord(Level.INFO, msg);
+				lr.setParameters(p);
+				assertEquals(formatter.formatMessage(lr), LogWriter.formatMessage(msg, p));
+			}
+		}
+	}
+}
@@ -0,0 +1,239 @@
+/*-
+ * Halimede Certificate Manager Plugin for Eclipse 
+ * Copyright (C) 2017-2021 Darran Kartaschew 
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v2.0 which
+ * accompanies this distribution and is available at
+ *
+ * http://www.eclipse.org/legal/epl-v20.html
+ * 
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the Eclipse
+ * Public License, v. 2.0 are satisfied: GNU General Public License, version 2
+ * with the GNU Classpath Exception which is
+ * available at https://www.gnu.org/software/classpath/license.html.
+ */
+
+package net.sourceforge.dkartaschew.halimede.log;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.security.PublicKey;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import net.sourceforge.dkartaschew.halimede.TestUtilities;
+import net.sourceforge.dkartaschew.halimede.data.KeyPairFactory;
+import net.sourceforge.dkartaschew.halimede.enumeration.KeyType;
+
+/**
+ * Testing of the hash-chained activity log, its verifier and proofs.
+ */
+public class TestAuditChain {
+
+	private final static String NAME = "0b5d9c4e-2a4f-4c41-9e0a-5c3e8f1d7b62";
+	private final static String PASSWORD = "changeme";
+
+	private Path dir;
+	private LogWriter writer;
+
+	@Before
+	public void setup() throws Exception {
+		dir = Paths.get(TestUtilities.TMP, "AuditChain");
+		TestUtilities.cleanup(dir);
+		writer = new LogWriter(64, 0, false);
+		writer.start();
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		writer.stop();
+		TestUtilities.cleanup(dir);
+	}
+
+	/**
+	 * Write records, with every 10th relating to a certificate.
+	 */
+	private void write(LogWriter.LogFile file, int from, int to) {
+		for (int i = from; i < to; i++) {
+			if (i % 10 == 0) {
+				writer.log(file, Level.INFO, "Storing Certificate {0}", "CN=Host " + i + ",O=Example",
+						Integer.toString(i), new Object[] { Integer.toString(i) });
+			} else {
+				writer.log(file, Level.INFO, "Record {0}", new Object[] { Integer.toString(i) });
+			}
+		}
+		writer.flush();
+	}
+
+	private void close(LogWriter.LogFile file) {
+		writer.close(file);
+		writer.flush();
+	}
+
+	@Test
+	public void verifyAndProve() throws Exception {
+		LogWriter.LogFile file = new LogWriter.LogFile(dir, NAME, 16 * 1024, LogFormat.JSON, () -> PASSWORD);
+		int count = 2000;
+		write(file, 0, count);
+
+		AuditLog log = new AuditLog(dir, NAME);
+		assertTrue(log.getSegments().size() > 2);
+		PublicKey key = log.getAuditKey();
+		assertNotNull(key);
+		AuditVerifier verifier = new AuditVerifier(log, key);
+		AuditVerifier.Result result = verifier.verify();
+		assertTrue(result.getError(), result.isValid());
+		assertTrue(result.isComplete());
+		assertEquals(count, result.getRecords());
+		assertEquals(0, result.getUnverified());
+		assertEquals(0, result.getPending());
+		assertTrue(result.getBatches() > count / AuditChain.BATCH);
+		// Signed at least once per segment.
+		assertTrue(result.getSignatures() >= log.getSegments().size());
+
+		// Checkpoints are not returned by queries.
+		assertEquals(count, log.query(new AuditQuery(), null, count * 2).getRecords().size());
+
+		// Prove a record in a sealed segment.
+		AuditQuery q = new AuditQuery();
+		q.setSerial("1230");
+		AuditRecord record = log.query(q, null, 1).getRecords().get(0);
+		AuditProof proof = verifier.prove(record.getPosition());
+		assertNotNull(proof);
+		assertTrue(proof.verify(key));
+		assertEquals("1230", proof.getRecord().getSerial());
+		assertTrue(proof.getPath().size() <= 8);
+		assertFalse(proof.verify(KeyPairFactory.generateKeyPair(KeyType.EC_P256).getPublic()));
+		assertFalse(new AuditVerifier(log, KeyPairFactory.generateKeyPair(KeyType.EC_P256).getPublic()).verify()
+				.isValid());
+		// Not a record.
+		assertNull(verifier.prove(new AuditLog.Position(1, 0)));
+
+		// Reopen, continuing the chain; closing signs the last checkpoint.
+		close(file);
+		file = new LogWriter.LogFile(dir, NAME, 16 * 1024, LogFormat.JSON, () -> PASSWORD);
+		write(file, count, count + 100);
+		close(file);
+		result = verifier.verify();
+		assertTrue(result.getError(), result.isValid());
+		assertEquals(count + 100, result.getRecords());
+		assertEquals(0, result.getUnsigned());
+		assertEquals(result.getLast().getBatch(), result.getLastSigned().getBatch());
+		q.setSerial(Integer.toString(count + 90));
+		proof = verifier.prove(log.query(q, null, 1).getRecords().get(0).getPosition());
+		assertTrue(proof.verify(key));
+	}
+
+	@Test
+	public void tamper() throws Exception {
+		LogWriter.LogFile file = new LogWriter.LogFile(dir, NAME, 1024 * 1024, LogFormat.JSON, () -> PASSWORD);
+		write(file, 0, 100);
+		close(file);
+		AuditLog log = new AuditLog(dir, NAME);
+		AuditVerifier verifier = new AuditVerifier(log, log.getAuditKey());
+		assertTrue(verifier.verify().isValid());
+
+		Path segment = log.getSegments().firstEntry().getValue();
+		List<String> original = Files.readAllLines(segment, StandardCharsets.UTF_8);
+		assertTrue(AuditCheckpoint.isCheckpoint(original.get(0)));
+		assertEquals(0, AuditCheckpoint.parse(original.get(0), null).getBatch());
+		int index = 0;
+		while (!original.get(index).contains("\"Record 5\"")) {
+			index++;
+		}
+
+		// Change a record.
+		List<String> lines = new ArrayList<>(original);
+		lines.set(index, lines.get(index).replace("Record 5", "Record 6"));
+		Files.write(segment, lines, StandardCharsets.UTF_8);
+		AuditVerifier.Result result = verifier.verify();
+		assertFalse(result.isValid());
+		assertNotNull(result.getErrorPosition());
+
+		// Remove a record.
+		lines = new ArrayList<>(original);
+		lines.remove(index);
+		Files.write(segment, lines, StandardCharsets.UTF_8);
+		assertFalse(verifier.verify().isValid());
+
+		// Change a checkpoint.
+		lines = new ArrayList<>(original);
+		int last = lines.size() - 1;
+		lines.set(last, lines.get(last).replace("\"records\":\"", "\"records\":\"1"));
+		Files.write(segment, lines, StandardCharsets.UTF_8);
+		assertFalse(verifier.verify().isValid());
+
+		// Records following the last checkpoint are pending, and chained when reopened, as is a partial line.
+		lines = new ArrayList<>(original);
+		lines.add(new AuditRecord(0, Level.INFO, "Added", null, null, null).toString());
+		Files.write(segment, lines, StandardCharsets.UTF_8);
+		Files.write(segment, "{\"partial".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+		result = verifier.verify();
+		assertTrue(result.isValid());
+		assertEquals(1, result.getPending());
+		file = new LogWriter.LogFile(dir, NAME, 1024 * 1024, LogFormat.JSON, () -> PASSWORD);
+		write(file, 100, 105);
+		close(file);
+		result = verifier.verify();
+		assertTrue(result.getError(), result.isValid());
+		assertEquals(107, result.getRecords());
+		assertEquals(0, result.getPending());
+	}
+
+	@Test
+	public void auditKey() throws Exception {
+		// Locked: the checkpoints are not signed, and no key is created.
+		String[] password = { null };
+		LogWriter.LogFile file = new LogWriter.LogFile(dir, NAME, 1024 * 1024, LogFormat.JSON, () -> password[0]);
+		write(file, 0, 10);
+		close(file);
+		AuditLog log = new AuditLog(dir, NAME);
+		assertNull(log.getAuditKey());
+		AuditVerifier.Result result = new AuditVerifier(log, null).verify();
+		assertTrue(result.getError(), result.isValid());
+		assertEquals(0, result.getSignatures());
+
+		// Unlocked: the key is created, encrypted, and signs the earlier checkpoints.
+		password[0] = PASSWORD;
+		file = new LogWriter.LogFile(dir, NAME, 1024 * 1024, LogFormat.JSON, () -> password[0]);
+		write(file, 10, 20);
+		close(file);
+		PublicKey key = log.getAuditKey();
+		assertNotNull(key);
+		Path p12 = dir.resolve(NAME + AuditChain.PRIVATE_KEY);
+		assertTrue(Files.exists(p12));
+		result = new AuditVerifier(log, key).verify();
+		assertTrue(result.getError(), result.isValid());
+		assertEquals(20, result.getRecords());
+		assertEquals(0, result.getUnsigned());
+
+		// A missing key is not replaced.
+		Files.delete(p12);
+		try {
+			new LogWriter.LogFile(dir, NAME, 1024 * 1024, LogFormat.JSON, () -> password[0]);
+			fail("Missing key accepted");
+		} catch (IOException e) {
+			// expected.
+		}
+		assertFalse(Files.exists(p12));
+		assertEquals(key, log.getAuditKey());
+	}
+}
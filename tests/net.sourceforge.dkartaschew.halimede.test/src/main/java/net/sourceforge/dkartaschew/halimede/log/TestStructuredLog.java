@@ -0,0 +1,259 @@
+/*-
+ * Halimede Certificate Manager Plugin for Eclipse 
+ * Copyright (C) 2017-2021 Darran Kartaschew 
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v2.0 which
+ * accompanies this distribution and is available at
+ *
+ * http://www.eclipse.org/legal/epl-v20.html
+ * 
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the Eclipse
+ * Public License, v. 2.0 are satisfied: GNU General Public License, version 2
+ * with the GNU Classpath Exception which is
+ * available at https://www.gnu.org/software/classpath/license.html.
+ */
+
+package net.sourceforge.dkartaschew.halimede.log;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import net.sourceforge.dkartaschew.halimede.TestUtilities;
+
+/**
+ * Testing of the structured activity log, and its index.
+ */
+public class TestStructuredLog {
+
+	private final static String NAME = "6ea8d959-87b0-4d3d-affe-264d17006a33";
+
+	private Path dir;
+	private LogWriter writer;
+
+	@Before
+	public void setup() throws Exception {
+		dir = Paths.get(TestUtilities.TMP, "StructuredLog");
+		TestUtilities.cleanup(dir);
+		writer = new LogWriter(64, 0, false);
+		writer.start();
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		writer.stop();
+		TestUtilities.cleanup(dir);
+	}
+
+	/**
+	 * Write records, with every 10th relating to a certificate.
+	 */
+	private void write(LogWriter.LogFile file, int from, int to) {
+		for (int i = from; i < to; i++) {
+			if (i % 10 == 0) {
+				writer.log(file, Level.INFO, "Storing Certificate {0}", "CN=Host " + i + ",O=Example",
+						Integer.toString(i), new Object[] { Integer.toString(i) });
+			} else {
+				writer.log(file, i % 7 == 0 ? Level.WARNING : Level.INFO, "Record {0}",
+						new Object[] { Integer.toString(i) });
+			}
+		}
+		writer.flush();
+	}
+
+	@Test
+	public void record() {
+		AuditRecord r = new AuditRecord(1000, Level.SEVERE, "Quote \" slash \\ tab \t line \n\u0001  done",
+				"CN=Test,O=\"Example\"", "12345", null);
+		String json = r.toString();
+		assertFalse(json.contains("\n"));
+		AuditRecord p = AuditRecord.parse(json, null);
+		assertEquals(1000, p.getMillis());
+		assertEquals(Level.SEVERE, p.getLevel());
+		assertEquals(r.getMessage(), p.getMessage());
+		assertEquals(r.getSubject(), p.getSubject());
+		assertEquals(r.getSerial(), p.getSerial());
+		p = AuditRecord.parse("{ \"time\" : \"1970-01-01T00:00:01Z\", \"level\":\"INFO\", \"extra\": 12 }", null);
+		assertNull(p.getMessage());
+		assertNull(p.getSerial());
+		try {
+			AuditRecord.parse("[1970-01-01T00:00:01.000Z] [INFO   ] Text", null);
+			assertTrue(false);
+		} catch (IllegalArgumentException e) {
+			// expected.
+		}
+	}
+
+	@Test
+	public void sealAndQuery() throws Exception {
+		LogWriter.LogFile file = new LogWriter.LogFile(dir, NAME, 16 * 1024, LogFormat.JSON);
+		assertTrue(Files.exists(dir.resolve(NAME + AuditLog.LOCK)));
+		int count = 2000;
+		write(file, 0, count);
+
+		AuditLog log = new AuditLog(dir, NAME);
+		NavigableMap<Long, Path> segments = log.getSegments();
+		assertTrue(segments.size() > 2);
+		assertEquals(1, segments.firstKey().longValue());
+		for (Path p : segments.headMap(segments.lastKey()).values()) {
+			assertTrue(p.toString(), p.toString().endsWith(AuditLog.SEALED));
+			assertTrue(Files.exists(Paths.get(p.toString().replace(AuditLog.SEALED, AuditLog.INDEX))));
+		}
+		assertTrue(segments.lastEntry().getValue().toString().endsWith(AuditLog.SEGMENT));
+
+		// Page through all, newest first.
+		AuditQuery all = new AuditQuery();
+		List<AuditRecord> records = new ArrayList<>();
+		AuditLog.Position next = null;
+		do {
+			AuditLog.Page page = log.query(all, next, 150);
+			records.addAll(page.getRecords());
+			next = page.getNext();
+		} while (next != null);
+		assertEquals(count, records.size());
+		for (int i = 0; i < count; i++) {
+			String msg = records.get(i).getMessage();
+			assertTrue(msg, msg.endsWith(" " + (count - 1 - i)));
+		}
+
+		// By serial, subject, level and time.
+		AuditQuery q = new AuditQuery();
+		q.setSerial("1230");
+		AuditLog.Page page = log.query(q, null, 10);
+		assertEquals(1, page.getRecords().size());
+		assertEquals("CN=Host 1230,O=Example", page.getRecords().get(0).getSubject());
+		assertNull(page.getNext());
+
+		q = new AuditQuery();
+		q.setSubject("host 12");
+		assertEquals(11, log.query(q, null, 100).getRecords().size());
+
+		q = new AuditQuery();
+		q.setLevel(Level.WARNING);
+		int warnings = 0;
+		for (int i = 0; i < count; i++) {
+			if (i % 10 != 0 && i % 7 == 0) {
+				warnings++;
+			}
+		}
+		assertEquals(warnings, log.query(q, null, count).getRecords().size());
+
+		q = new AuditQuery();
+		q.setTo(0L);
+		assertTrue(log.query(q, null, 10).getRecords().isEmpty());
+
+		q = new AuditQuery();
+		q.setText("record 1999");
+		assertEquals(1, log.query(q, null, 10).getRecords().size());
+
+		// Follow, across the sealing of a segment.
+		AuditLog.Tail tail = log.tail();
+		assertTrue(log.follow(tail).isEmpty());
+		write(file, count, count + 500);
+		List<AuditRecord> added = log.follow(tail);
+		assertEquals(500, added.size());
+		for (int i = 0; i < added.size(); i++) {
+			assertTrue(added.get(i).getMessage().endsWith(" " + (count + i)));
+		}
+		assertTrue(log.follow(tail).isEmpty());
+
+		// Reopen, continuing the current segment.
+		writer.close(file);
+		writer.flush();
+		assertFalse(Files.exists(dir.resolve(NAME + AuditLog.LOCK)));
+		long last = log.getSegments().lastKey();
+		file = new LogWriter.LogFile(dir, NAME, 16 * 1024, LogFormat.JSON);
+		write(file, 0, 1);
+		assertEquals(last, log.getSegments().lastKey().longValue());
+		assertEquals(1, log.follow(tail).size());
+	}
+
+	@Test
+	public void sealInBackground() throws Exception {
+		LogWriter.LogFile file = new LogWriter.LogFile(dir, NAME, 4 * 1024, LogFormat.JSON);
+		CountDownLatch latch = new CountDownLatch(1);
+		LogWriter.getSealer().execute(() -> {
+			try {
+				latch.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		});
+		try {
+			// Records are written across several segments while none can be sealed.
+			AuditLog log = new AuditLog(dir, NAME);
+			long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+			for (int count = 200; count <= 1000; count += 200) {
+				for (int i = count - 200; i < count; i++) {
+					writer.log(file, Level.INFO, "Record {0}", new Object[] { Integer.toString(i) });
+				}
+				while (log.query(new AuditQuery(), null, count).getRecords().size() < count) {
+					assertTrue(System.nanoTime() < deadline);
+					Thread.sleep(10);
+				}
+			}
+			NavigableMap<Long, Path> segments = log.getSegments();
+			assertTrue(segments.size() > 2);
+			for (Path p : segments.values()) {
+				assertTrue(p.toString(), p.toString().endsWith(AuditLog.SEGMENT));
+			}
+		} finally {
+			latch.countDown();
+		}
+		writer.flush();
+		NavigableMap<Long, Path> segments = new AuditLog(dir, NAME).getSegments();
+		for (Path p : segments.headMap(segments.lastKey()).values()) {
+			assertTrue(p.toString(), p.toString().endsWith(AuditLog.SEALED));
+		}
+		assertEquals(1000, new AuditLog(dir, NAME).query(new AuditQuery(), null, 2000).getRecords().size());
+	}
+
+	@Test
+	public void recover() throws Exception {
+		Files.createDirectories(dir);
+		// Plain segments left by a failure are sealed on open.
+		Path p1 = dir.resolve(AuditLog.segmentName(NAME, 1) + AuditLog.SEGMENT);
+		Path p2 = dir.resolve(AuditLog.segmentName(NAME, 2) + AuditLog.SEGMENT);
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < 300; i++) {
+			AuditRecord.append(sb, "2021-01-01T00:00:00.000Z", "INFO", "Old " + i, null, null);
+			sb.append('\n');
+		}
+		Files.write(p1, (sb + "{\"partial").getBytes("UTF-8"));
+		Files.write(p2, new byte[0]);
+
+		LogWriter.LogFile file = new LogWriter.LogFile(dir, NAME, 16 * 1024, LogFormat.JSON);
+		assertEquals(p2, file.getCurrent());
+		write(file, 0, 5);
+		assertFalse(Files.exists(p1));
+		assertTrue(Files.exists(dir.resolve(AuditLog.segmentName(NAME, 1) + AuditLog.SEALED)));
+
+		AuditLog log = new AuditLog(dir, NAME);
+		AuditQuery q = new AuditQuery();
+		q.setText("old");
+		AuditLog.Page page = log.query(q, null, 1000);
+		assertEquals(300, page.getRecords().size());
+		assertEquals("Old 299", page.getRecords().get(0).getMessage());
+		assertNotNull(page.getRecords().get(0).getPosition());
+		assertEquals(new AuditLog.Position(1, 299), page.getRecords().get(0).getPosition());
+		assertEquals(305, log.query(new AuditQuery(), null, 1000).getRecords().size());
+	}
+}
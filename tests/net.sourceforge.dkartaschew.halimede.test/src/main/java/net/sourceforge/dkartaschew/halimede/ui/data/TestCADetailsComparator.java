@@ -16,8 +16,13 @@
  */
 package net.sourceforge.dkartaschew.halimede.ui.data;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+
 import org.eclipse.jface.viewers.Viewer;
 import org.eclipse.swt.SWT;
 import org.junit.Test;
@@ -153,4 +158,62 @@ public class TestCADetailsComparator {
 		assertEquals(-1, comp.compare(view, prop2, prop1));
 		
 	}
+
+	@Test
+	public void testColumnComparator() {
+		IssuedCertificateComparator colcomp = new IssuedCertificateComparator();
+		CADetailsComparator<IssuedCertificateProperties> comp = //
+				new CADetailsComparator<IssuedCertificateProperties>(colcomp);
+
+		IssuedCertificateProperties prop1 = Mockito.mock(IssuedCertificateProperties.class);
+		Mockito.when(prop1.getProperty(Key.subject)).thenReturn("CN=Abc");
+
+		IssuedCertificateProperties prop2 = Mockito.mock(IssuedCertificateProperties.class);
+		Mockito.when(prop2.getProperty(Key.subject)).thenReturn("CN=abcd");
+
+		comp.setColumn(1);
+		comp.setDirection(SWT.UP);
+		Comparator<Object> order = comp.getColumnComparator();
+		assertEquals(1, order.compare(prop1, prop2));
+		assertEquals(-1, order.compare(prop2, prop1));
+
+		// Later changes do not affect the comparator.
+		comp.setDirection(SWT.DOWN);
+		assertEquals(1, order.compare(prop1, prop2));
+		assertEquals(-1, comp.getColumnComparator().compare(prop1, prop2));
+	}
+
+	@Test
+	public void testMerge() {
+		IssuedCertificateComparator colcomp = new IssuedCertificateComparator();
+		CADetailsComparator<IssuedCertificateProperties> comp = //
+				new CADetailsComparator<IssuedCertificateProperties>(colcomp);
+
+		IssuedCertificateProperties[] props = new IssuedCertificateProperties[6];
+		for (int i = 0; i < props.length; i++) {
+			props[i] = Mockito.mock(IssuedCertificateProperties.class);
+			Mockito.when(props[i].getProperty(Key.description)).thenReturn("Desc " + i);
+		}
+		Object[] sorted = { props[1], props[3], props[5] };
+
+		// Additions are inserted in order.
+		Object[] merged = comp.merge(sorted, Collections.emptyList(), Arrays.asList(props[4], props[0], props[2]));
+		assertArrayEquals(props, merged);
+		assertArrayEquals(new Object[] { props[1], props[3], props[5] }, sorted);
+
+		// Removals.
+		merged = comp.merge(merged, Arrays.asList(props[0], props[5]), Collections.emptyList());
+		assertArrayEquals(new Object[] { props[1], props[2], props[3], props[4] }, merged);
+
+		// Updates are moved to their new position.
+		Mockito.when(props[1].getProperty(Key.description)).thenReturn("Desc 9");
+		merged = comp.merge(merged, Collections.emptyList(), Collections.singletonList(props[1]));
+		assertArrayEquals(new Object[] { props[2], props[3], props[4], props[1] }, merged);
+
+		// Reverse order.
+		comp.setDirection(SWT.UP);
+		merged = comp.merge(new Object[] { props[5], props[3] }, Collections.emptyList(),
+				Arrays.asList(props[4], props[2]));
+		assertArrayEquals(new Object[] { props[5], props[4], props[3], props[2] }, merged);
+	}
 }
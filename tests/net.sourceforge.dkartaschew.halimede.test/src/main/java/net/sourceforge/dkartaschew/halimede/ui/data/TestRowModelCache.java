@@ -0,0 +1,160 @@
+/*-
+ * Halimede Certificate Manager Plugin for Eclipse 
+ * Copyright (C) 2017-2021 Darran Kartaschew 
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v2.0 which
+ * accompanies this distribution and is available at
+ *
+ * http://www.eclipse.org/legal/epl-v20.html
+ * 
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the Eclipse
+ * Public License, v. 2.0 are satisfied: GNU General Public License, version 2
+ * with the GNU Classpath Exception which is
+ * available at https://www.gnu.org/software/classpath/license.html.
+ */
+
+package net.sourceforge.dkartaschew.halimede.ui.data;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.math.BigInteger;
+import java.util.Collections;
+
+import org.eclipse.swt.SWT;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import net.sourceforge.dkartaschew.halimede.data.IssuedCertificateProperties;
+import net.sourceforge.dkartaschew.halimede.data.IssuedCertificateProperties.Key;
+import net.sourceforge.dkartaschew.halimede.ui.composite.cadetails.IssuedCertificatesPane;
+import net.sourceforge.dkartaschew.halimede.ui.labelproviders.IssuedCertificateColumnLabelProvider;
+import net.sourceforge.dkartaschew.halimede.util.Strings;
+
+public class TestRowModelCache {
+
+	private IssuedCertificateProperties mock(String description) {
+		IssuedCertificateProperties prop = Mockito.mock(IssuedCertificateProperties.class);
+		Mockito.when(prop.getProperty(Key.description)).thenReturn(description);
+		return prop;
+	}
+
+	@Test
+	public void testRowReuse() {
+		IssuedCertificateComparator comp = new IssuedCertificateComparator();
+		RowModelCache<IssuedCertificateProperties> cache = new RowModelCache<>(comp,
+				new IssuedCertificateColumnLabelProvider());
+		comp.setCache(cache);
+
+		IssuedCertificateProperties prop1 = mock("Abc");
+		IssuedCertificateProperties prop2 = mock("abcd");
+		RowModel row = cache.get(prop1);
+		assertSame(row, cache.get(prop1));
+		assertSame(row, comp.getRow(prop1));
+		assertEquals(-1, comp.compare(IssuedCertificatesPane.COLUMN_DESCRIPTION, prop1, prop2));
+		assertEquals(2, cache.size());
+		// Keys were only created once per row.
+		Mockito.verify(prop1, Mockito.times(1)).getProperty(Key.description);
+
+		cache.invalidate(Collections.singletonList(prop1));
+		assertEquals(1, cache.size());
+		assertNotSame(row, cache.get(prop1));
+
+		cache.clear();
+		assertEquals(0, cache.size());
+	}
+
+	@Test
+	public void testText() {
+		IssuedCertificateComparator comp = new IssuedCertificateComparator();
+		RowModelCache<IssuedCertificateProperties> cache = new RowModelCache<>(comp,
+				new IssuedCertificateColumnLabelProvider());
+		String desc = "A Really Long Description 01234567890 ABCDEFGHIJKLMNOP";
+		IssuedCertificateProperties prop = mock(desc);
+		assertEquals(desc.substring(0, Strings.WRAP) + "...",
+				cache.getText(prop, IssuedCertificatesPane.COLUMN_DESCRIPTION));
+		assertEquals(desc, cache.getTooltip(prop, IssuedCertificatesPane.COLUMN_DESCRIPTION));
+		assertEquals(null, cache.getText(prop, -1));
+		assertEquals(null, cache.getText(prop, IssuedCertificatesPane.COLUMN_COMMENTS + 1));
+
+		// Text is rendered once.
+		Mockito.when(prop.getProperty(Key.description)).thenReturn("Changed");
+		assertEquals(desc, cache.getTooltip(prop, IssuedCertificatesPane.COLUMN_DESCRIPTION));
+		cache.invalidate(Collections.singletonList(prop));
+		assertEquals("Changed", cache.getTooltip(prop, IssuedCertificatesPane.COLUMN_DESCRIPTION));
+	}
+
+	@Test
+	public void testRowsRetained() {
+		IssuedCertificateComparator comp = new IssuedCertificateComparator();
+		RowModelCache<IssuedCertificateProperties> cache = new RowModelCache<>(comp,
+				new IssuedCertificateColumnLabelProvider());
+		IssuedCertificateProperties prop1 = mock("a");
+		IssuedCertificateProperties prop2 = mock("b");
+		IssuedCertificateProperties prop3 = mock("c");
+		RowModel[] rows = cache.rows(new Object[] { prop1, prop2, prop3 });
+		assertEquals(3, rows.length);
+		assertSame(prop2, rows[1].getElement());
+		assertEquals(3, cache.size());
+
+		// Rows of elements no longer present are dropped.
+		RowModel[] rows2 = cache.rows(new Object[] { prop3, prop1 });
+		assertSame(rows[2], rows2[0]);
+		assertSame(rows[0], rows2[1]);
+		assertEquals(2, cache.size());
+	}
+
+	@Test
+	public void testSorter() {
+		IssuedCertificateComparator comp = new IssuedCertificateComparator();
+		CADetailsComparator<IssuedCertificateProperties> details = new CADetailsComparator<>(comp);
+		IssuedCertificateProperties prop1 = mock("b");
+		IssuedCertificateProperties prop2 = mock(null);
+		IssuedCertificateProperties prop3 = mock("A");
+		IssuedCertificateProperties prop4 = mock("c");
+
+		// Without a cache.
+		Object[] items = { prop1, prop2, prop3, prop4 };
+		details.getSorter().accept(items);
+		assertArrayEquals(new Object[] { prop3, prop1, prop4, prop2 }, items);
+
+		// With a cache, in both directions.
+		comp.setCache(new RowModelCache<>(comp, new IssuedCertificateColumnLabelProvider()));
+		items = new Object[] { prop1, prop2, prop3, prop4 };
+		details.getSorter().accept(items);
+		assertArrayEquals(new Object[] { prop3, prop1, prop4, prop2 }, items);
+
+		details.setDirection(SWT.UP);
+		details.getSorter().accept(items);
+		assertArrayEquals(new Object[] { prop2, prop4, prop1, prop3 }, items);
+	}
+
+	@Test
+	public void testNumericKeys() {
+		RowModel none = new RowModel(null, 1);
+		RowModel invalid = new RowModel(null, 1);
+		invalid.setNumber(0, RowModel.INVALID);
+		RowModel small = new RowModel(null, 1);
+		small.setInteger(0, BigInteger.valueOf(Long.MIN_VALUE));
+		RowModel one = new RowModel(null, 1);
+		one.setNumber(0, 1);
+		RowModel large = new RowModel(null, 1);
+		large.setInteger(0, BigInteger.valueOf(Long.MAX_VALUE).add(BigInteger.TEN));
+		RowModel larger = new RowModel(null, 1);
+		larger.setInteger(0, BigInteger.valueOf(Long.MAX_VALUE).add(BigInteger.valueOf(100)));
+
+		RowModel[] ordered = { small, one, large, larger, invalid, none };
+		for (int i = 0; i < ordered.length; i++) {
+			for (int j = 0; j < ordered.length; j++) {
+				assertEquals(Integer.signum(Integer.compare(i, j)), ordered[i].compare(0, ordered[j]));
+			}
+		}
+		// Out of range columns are always equal.
+		assertEquals(0, one.compare(1, small));
+		assertEquals(0, one.compare(-1, small));
+	}
+}
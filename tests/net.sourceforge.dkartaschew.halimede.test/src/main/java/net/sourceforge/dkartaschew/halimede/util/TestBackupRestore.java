@@ -19,8 +19,10 @@ package net.sourceforge.dkartaschew.halimede.util;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import java.io.ByteArrayOutputStream;
 import java.io.FileOutputStream;
@@ -28,13 +30,21 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
 import java.security.cert.CertificateEncodingException;
 import java.time.Instant;
 import java.time.ZoneId;
 import java.time.ZonedDateTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Random;
 import java.util.UUID;
+import java.util.stream.Stream;
 import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 import java.util.zip.ZipOutputStream;
 
 import org.eclipse.core.runtime.NullProgressMonitor;
@@ -44,6 +54,7 @@ import net.sourceforge.dkartaschew.halimede.TestUtilities;
 import net.sourceforge.dkartaschew.halimede.backup.BackupManifest;
 import net.sourceforge.dkartaschew.halimede.backup.BackupManifestEntry;
 import net.sourceforge.dkartaschew.halimede.data.CertificateAuthority;
+import net.sourceforge.dkartaschew.halimede.enumeration.CompressionMethod;
 
 /**
  * Test Backup and restore
@@ -149,6 +160,16 @@ public class TestBackupRestore {
 		assertTrue(mfe.equals(mfe2));
 		assertTrue(mfe2.equals(mfe));
 
+		mfe.setMethod(CompressionMethod.STORED);
+		assertEquals(mfe.hashCode(), mfe.hashCode());
+		assertNotEquals(mfe.hashCode(), mfe2.hashCode());
+		assertFalse(mfe.equals(mfe2));
+		assertFalse(mfe2.equals(mfe));
+		mfe2.setMethod(CompressionMethod.STORED);
+		assertEquals(mfe.hashCode(), mfe2.hashCode());
+		assertTrue(mfe.equals(mfe2));
+		assertTrue(mfe2.equals(mfe));
+
 	}
 
 	/**
@@ -241,6 +262,124 @@ public class TestBackupRestore {
 		}
 	}
 
+	@Test
+	public void incrementalBackupRestore() throws IOException {
+		Path base = Paths.get(TestUtilities.TMP, "incremental");
+		Path source = base.resolve("source");
+		Path backups = base.resolve("backups");
+		Path destination = base.resolve("restore");
+		try {
+			TestUtilities.copyFolder(TestUtilities.getFolder("CA"), source);
+			Files.createDirectories(backups);
+			Files.createDirectories(destination);
+			CertificateAuthority ca = CertificateAuthority.open(source);
+			Path full = backups.resolve("full.zip");
+			BackupUtil.backup(ca, full, null);
+			BackupManifest fullManifest = BackupUtil.readManifest(full);
+			assertNotNull(fullManifest.getId());
+			assertFalse(fullManifest.isIncremental());
+
+			// Change, add, delete and touch files.
+			Files.write(source.resolve("Issued").resolve("0000015cc3aec904.prop"), "# changed\n".getBytes(),
+					StandardOpenOption.APPEND);
+			Files.write(source.resolve("Issued").resolve("added.txt"), "added".getBytes());
+			Files.delete(source.resolve("Requests").resolve("PLACEHOLDER.txt"));
+			Path touched = source.resolve("ca.p12");
+			Files.setLastModifiedTime(touched,
+					FileTime.fromMillis(Files.getLastModifiedTime(touched).toMillis() + 10000));
+
+			Path incremental = backups.resolve("incremental.zip");
+			BackupUtil.backup(ca, incremental, full, null);
+			BackupManifest manifest = BackupUtil.readManifest(incremental);
+			assertTrue(manifest.isIncremental());
+			assertEquals(fullManifest.getId(), manifest.getBase());
+			assertEquals(Collections.singletonList(CA_DESCRIPTION + "/Requests/PLACEHOLDER.txt"),
+					manifest.getDeleted());
+			try (ZipFile zip = new ZipFile(incremental.toFile())) {
+				// Only changed files are held.
+				for (BackupManifestEntry e : manifest.getEntries()) {
+					assertEquals(e.getFilename(), e.getSource() == null, zip.getEntry(e.getFilename()) != null);
+				}
+				assertNotNull(zip.getEntry(CA_DESCRIPTION + "/Issued/0000015cc3aec904.prop"));
+				assertNotNull(zip.getEntry(CA_DESCRIPTION + "/Issued/added.txt"));
+				assertNull(zip.getEntry(CA_DESCRIPTION + "/ca.p12"));
+				assertNull(zip.getEntry(CA_DESCRIPTION + "/Issued/0000015cc3aec905.p12"));
+			}
+
+			// Nothing changed, so all entries reference the backups holding them.
+			Path second = backups.resolve("second.zip");
+			BackupUtil.backup(ca, second, incremental, null);
+			BackupManifest secondManifest = BackupUtil.readManifest(second);
+			for (BackupManifestEntry e : secondManifest.getEntries()) {
+				if (e.getFilename().endsWith("0000015cc3aec905.p12")) {
+					assertEquals(fullManifest.getId(), e.getSource());
+				}
+				if (e.getFilename().endsWith("0000015cc3aec904.prop")) {
+					assertEquals(manifest.getId(), e.getSource());
+				}
+			}
+			assertEquals(Arrays.asList(second, incremental, full), BackupUtil.findChain(second));
+
+			// Restore the chain.
+			Path location = BackupUtil.restore(second, destination, null);
+			assertEquals(contents(source), contents(location));
+			TestUtilities.cleanup(location);
+
+			// Restore without the full backup.
+			Files.delete(full);
+			try {
+				BackupUtil.restore(second, destination, null);
+				fail("Restored without the base backup");
+			} catch (IOException e) {
+				// expected.
+			}
+			assertFalse(Files.exists(location));
+		} finally {
+			TestUtilities.cleanup(base);
+		}
+	}
+
+	/**
+	 * Get the contents of the files in the folder.
+	 * 
+	 * @param folder The folder.
+	 * @return The contents of each file (as hex), by relative path.
+	 * @throws IOException If reading fails.
+	 */
+	private static Map<String, String> contents(Path folder) throws IOException {
+		Map<String, String> contents = new HashMap<>();
+		try (Stream<Path> files = Files.walk(folder)) {
+			for (Path file : (Iterable<Path>) files::iterator) {
+				if (Files.isRegularFile(file) && !file.toString().endsWith(".log")
+						&& !file.toString().endsWith(".lck")) {
+					contents.put(folder.relativize(file).toString(), Strings.toHexString(Files.readAllBytes(file)));
+				}
+			}
+		}
+		return contents;
+	}
+
+	@Test(expected = IOException.class)
+	public void incrementalBackupOtherCA() throws IOException {
+		Path base = Paths.get(TestUtilities.TMP, "incremental-other");
+		try {
+			Files.createDirectories(base);
+			Path zipFile = base.resolve("other.zip");
+			BackupManifest manifest = new BackupManifest();
+			manifest.setUuid(UUID.randomUUID());
+			manifest.setId(UUID.randomUUID());
+			manifest.setDescription(CA_DESCRIPTION);
+			try (ZipOutputStream zip = new ZipOutputStream(new FileOutputStream(zipFile.toFile()))) {
+				zip.setComment(manifest.getUuid().toString());
+				createManifest(manifest, zip);
+			}
+			CertificateAuthority ca = CertificateAuthority.open(TestUtilities.getFolder("CA"));
+			BackupUtil.backup(ca, base.resolve("CA.zip"), zipFile, null);
+		} finally {
+			TestUtilities.cleanup(base);
+		}
+	}
+
 	@Test
 	public void basicBackupRestoreNoMonitor() throws SecurityException, IOException, CertificateEncodingException {
 		try {
@@ -924,6 +1063,58 @@ public class TestBackupRestore {
 		}
 	}
 	
+	@Test
+	public void verifyBackup() throws IOException {
+		Path zipFile = Paths.get(TestUtilities.TMP, "CA-verify.zip");
+		try {
+			CertificateAuthority ca = CertificateAuthority.open(TestUtilities.getFolder("CA"));
+			BackupUtil.backup(ca, zipFile, null);
+			BackupManifest manifest = BackupUtil.verify(zipFile, new TestMonitor());
+			assertNotNull(manifest);
+			assertEquals(CA_ID, manifest.getUuid());
+			// Nothing extracted.
+			assertFalse(Files.exists(Paths.get(TestUtilities.TMP, CA_DESCRIPTION)));
+			// Cancelled.
+			assertNull(BackupUtil.verify(zipFile, new TestMonitor(2)));
+		} finally {
+			TestUtilities.cleanup(zipFile);
+		}
+	}
+
+	@Test(expected = IOException.class)
+	public void verifyBadDigest() throws IOException {
+		Path zipFile = Paths.get(TestUtilities.TMP, "CA-verify-bad.zip");
+		try {
+			BackupManifest manifest = new BackupManifest();
+			manifest.setCreationDate(ZonedDateTime.now());
+			manifest.setUuid(UUID.randomUUID());
+			manifest.setDescription("tmp00");
+
+			try (ZipOutputStream zip = new ZipOutputStream(new FileOutputStream(zipFile.toFile()))) {
+				zip.setComment(manifest.getUuid().toString());
+				createEntry("Entry1.bin", manifest, zip);
+				createEntry("Entry2.bin", manifest, zip);
+				ZipEntry e = new ZipEntry(manifest.getDescription() + "/" + "Corrupt.bin");
+				try {
+					zip.putNextEntry(e);
+					byte[] data = new byte[32];
+					rnd.nextBytes(data);
+					zip.write(data, 0, data.length);
+					data[0]++;
+					manifest.addEntry(new BackupManifestEntry(e.getName(), //
+							data.length, //
+							Strings.toHexString(Digest.sha512(data))));
+				} finally {
+					zip.closeEntry();
+				}
+				createManifest(manifest, zip);
+			}
+			BackupUtil.verify(zipFile, null);
+		} finally {
+			TestUtilities.cleanup(zipFile);
+		}
+	}
+
 	@Test(expected=IOException.class)
 	public void restoreManifestEntryBadDigestEmpty() throws IOException {
 		try {
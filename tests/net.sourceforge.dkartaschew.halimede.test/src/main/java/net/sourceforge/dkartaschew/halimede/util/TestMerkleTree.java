@@ -0,0 +1,119 @@
+/*-
+ * Halimede Certificate Manager Plugin for Eclipse 
+ * Copyright (C) 2017-2021 Darran Kartaschew 
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v2.0 which
+ * accompanies this distribution and is available at
+ *
+ * http://www.eclipse.org/legal/epl-v20.html
+ * 
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the Eclipse
+ * Public License, v. 2.0 are satisfied: GNU General Public License, version 2
+ * with the GNU Classpath Exception which is
+ * available at https://www.gnu.org/software/classpath/license.html.
+ */
+
+package net.sourceforge.dkartaschew.halimede.util;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+public class TestMerkleTree {
+
+	/**
+	 * The tree root, as defined by RFC 6962.
+	 */
+	private byte[] mth(MerkleTree tree, List<byte[]> leaves, int from, int to) {
+		if (to - from == 1) {
+			return leaves.get(from);
+		}
+		int k = 1;
+		while (k * 2 < to - from) {
+			k *= 2;
+		}
+		return tree.node(mth(tree, leaves, from, from + k), mth(tree, leaves, from + k, to));
+	}
+
+	private List<byte[]> leaves(MerkleTree tree, int count) {
+		List<byte[]> leaves = new ArrayList<>();
+		for (int i = 0; i < count; i++) {
+			leaves.add(tree.leaf(("Leaf " + i).getBytes(StandardCharsets.UTF_8)));
+		}
+		return leaves;
+	}
+
+	@Test
+	public void vectors() {
+		MerkleTree tree = new MerkleTree();
+		assertEquals("e3b0c44298fc1c149afbf4c8996fb92427ae41e4649b934ca495991b7852b855",
+				Strings.toHexString(tree.root(new ArrayList<>())));
+		assertEquals("6e340b9cffb37a989ca544e6bb780a2c78901d3fb33738768511a30617afa01d",
+				Strings.toHexString(tree.leaf(new byte[0])));
+	}
+
+	@Test
+	public void root() {
+		MerkleTree tree = new MerkleTree();
+		for (int n = 1; n <= 70; n++) {
+			List<byte[]> leaves = leaves(tree, n);
+			assertArrayEquals("Size " + n, mth(tree, leaves, 0, n), tree.root(leaves));
+		}
+	}
+
+	@Test
+	public void path() {
+		MerkleTree tree = new MerkleTree();
+		for (int n = 1; n <= 70; n++) {
+			List<byte[]> leaves = leaves(tree, n);
+			byte[] root = tree.root(leaves);
+			byte[] other = tree.root(leaves(tree, n + 1));
+			for (int i = 0; i < n; i++) {
+				List<byte[]> path = tree.path(leaves, i);
+				assertTrue(path.size() <= 32 - Integer.numberOfLeadingZeros(n - 1));
+				assertTrue(tree.verify(leaves.get(i), i, n, path, root));
+				// Wrong root, leaf or index.
+				assertFalse(tree.verify(leaves.get(i), i, n, path, other));
+				if (n > 1) {
+					assertFalse(tree.verify(leaves.get((i + 1) % n), i, n, path, root));
+					assertFalse(tree.verify(leaves.get(i), (i + 1) % n, n, path, root));
+				}
+			}
+		}
+		assertNull(tree.root(new byte[MerkleTree.HASH], 1, 1, new ArrayList<>()));
+	}
+
+	@Test
+	public void consistency() {
+		MerkleTree tree = new MerkleTree();
+		List<byte[]> leaves = leaves(tree, 40);
+		MerkleTree.Subtrees<RuntimeException> subtrees = (from, to) -> tree.root(leaves, (int) from, (int) to);
+		for (int n = 1; n <= leaves.size(); n++) {
+			byte[] root = tree.root(leaves, 0, n);
+			for (int m = 1; m <= n; m++) {
+				byte[] old = tree.root(leaves, 0, m);
+				List<byte[]> proof = MerkleTree.consistency(m, n, subtrees);
+				assertTrue(proof.size() <= 65 - Long.numberOfLeadingZeros(n - 1));
+				assertTrue(m + " -> " + n, tree.consistent(m, n, old, root, proof));
+				// Wrong roots, or proof truncated.
+				assertFalse(tree.consistent(m, n, new byte[MerkleTree.HASH], root, proof));
+				assertFalse(tree.consistent(m, n, old, new byte[MerkleTree.HASH], proof));
+				if (m < n) {
+					assertFalse(tree.consistent(m, n, old, root, proof.subList(0, proof.size() - 1)));
+				}
+			}
+		}
+		assertTrue(tree.consistent(0, 5, tree.root(leaves, 0, 0), tree.root(leaves, 0, 5), new ArrayList<>()));
+		assertTrue(MerkleTree.consistency(0, 5, (from, to) -> null).isEmpty());
+	}
+}
@@ -0,0 +1,209 @@
+/*-
+ * Halimede Certificate Manager Plugin for Eclipse 
+ * Copyright (C) 2017-2021 Darran Kartaschew 
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v2.0 which
+ * accompanies this distribution and is available at
+ *
+ * http://www.eclipse.org/legal/epl-v20.html
+ * 
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the Eclipse
+ * Public License, v. 2.0 are satisfied: GNU General Public License, version 2
+ * with the GNU Classpath Exception which is
+ * available at https://www.gnu.org/software/classpath/license.html.
+ */
+
+package net.sourceforge.dkartaschew.halimede.util;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.junit.Assume.assumeTrue;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.junit.Test;
+
+import net.sourceforge.dkartaschew.halimede.TestUtilities;
+import net.sourceforge.dkartaschew.halimede.backup.Snapshot;
+import net.sourceforge.dkartaschew.halimede.data.CertificateAuthority;
+import net.sourceforge.dkartaschew.halimede.data.CertificateAuthoritySettings;
+import net.sourceforge.dkartaschew.halimede.data.IssuanceLedger;
+import net.sourceforge.dkartaschew.halimede.data.store.FileSystemDatastore;
+import net.sourceforge.dkartaschew.halimede.data.store.IDatastore;
+
+/**
+ * Test local snapshots
+ */
+public class TestSnapshotUtil {
+
+	private final String CA_DESCRIPTION = "My CA";
+
+	@Test
+	public void snapshotRestore() throws IOException {
+		Path source = Paths.get(TestUtilities.TMP, "snapshot");
+		try {
+			TestUtilities.copyFolder(TestUtilities.getFolder("CA"), source);
+			Path ledger = source.resolve(CertificateAuthority.LEDGER_PATH).resolve(IssuanceLedger.ENTRIES);
+			Files.createDirectories(ledger.getParent());
+			Files.write(ledger, "entry".getBytes());
+			Snapshot snapshot = SnapshotUtil.create(source);
+			assertEquals(source.resolve(SnapshotUtil.SNAPSHOTS_PATH).resolve(snapshot.getId()),
+					snapshot.getLocation());
+			// The ledger is not held in the snapshot.
+			assertFalse(Files.exists(snapshot.getLocation().resolve(CertificateAuthority.LEDGER_PATH)));
+
+			// Immutable files are linked, others copied.
+			Path p12 = source.resolve("ca.p12");
+			Path config = source.resolve("configuration.xml");
+			assertTrue(Files.isSameFile(p12, snapshot.getLocation().resolve("ca.p12")));
+			assertFalse(Files.isSameFile(config, snapshot.getLocation().resolve("configuration.xml")));
+			assertArrayEquals(Files.readAllBytes(config),
+					Files.readAllBytes(snapshot.getLocation().resolve("configuration.xml")));
+
+			// Replace, change, add and delete files.
+			byte[] original = Files.readAllBytes(p12);
+			FileSystemDatastore datastore = new FileSystemDatastore(source);
+			try (OutputStream out = datastore.put(IDatastore.ROOT, "ca.p12")) {
+				out.write(new byte[] { 1, 2, 3 });
+			}
+			assertArrayEquals(original, Files.readAllBytes(snapshot.getLocation().resolve("ca.p12")));
+			Files.write(config, "<changed/>".getBytes(), StandardOpenOption.APPEND);
+			Files.write(source.resolve("Issued").resolve("added.txt"), "added".getBytes());
+			Files.delete(source.resolve("Requests").resolve("PLACEHOLDER.txt"));
+			Files.write(ledger, "entry".getBytes(), StandardOpenOption.APPEND);
+
+			Snapshot previous = SnapshotUtil.restore(source, snapshot);
+			assertNotEquals(snapshot, previous);
+			assertArrayEquals(original, Files.readAllBytes(p12));
+			assertArrayEquals(Files.readAllBytes(TestUtilities.getFolder("CA").resolve("configuration.xml")),
+					Files.readAllBytes(config));
+			assertFalse(Files.exists(source.resolve("Issued").resolve("added.txt")));
+			assertTrue(Files.exists(source.resolve("Requests").resolve("PLACEHOLDER.txt")));
+			// The ledger is not rolled back.
+			assertArrayEquals("entryentry".getBytes(), Files.readAllBytes(ledger));
+			// The state before the restore is retained.
+			assertArrayEquals(new byte[] { 1, 2, 3 }, Files.readAllBytes(previous.getLocation().resolve("ca.p12")));
+			assertTrue(Files.exists(previous.getLocation().resolve("Issued").resolve("added.txt")));
+
+			// Restored CA opens.
+			CertificateAuthority ca = CertificateAuthority.open(source);
+			assertEquals(CA_DESCRIPTION, ca.getDescription());
+		} finally {
+			TestUtilities.cleanup(source);
+		}
+	}
+
+	@Test
+	public void restoreKeepsSerials() throws Exception {
+		Path source = Paths.get(TestUtilities.TMP, "snapshotSerials");
+		try {
+			TestUtilities.copyFolder(TestUtilities.getFolder("CA"), source);
+			Path config = source.resolve(CertificateAuthoritySettings.DEFAULT_NAME);
+			CertificateAuthoritySettings settings = CertificateAuthoritySettings.read(config);
+			BigInteger serial = settings.getSerial();
+			BigInteger crlSerial = settings.getCRLSerial();
+			Snapshot snapshot = SnapshotUtil.create(source);
+
+			// Serials taken, and settings changed, after the snapshot.
+			settings.setSerial(serial.add(BigInteger.TEN));
+			settings.setCRLSerial(crlSerial.add(BigInteger.ONE));
+			settings.setDescription("Changed");
+			CertificateAuthoritySettings.write(settings, config);
+
+			SnapshotUtil.restore(source, snapshot);
+			CertificateAuthoritySettings restored = CertificateAuthoritySettings.read(config);
+			assertEquals(CA_DESCRIPTION, restored.getDescription());
+			assertEquals(serial.add(BigInteger.TEN), restored.getSerial());
+			assertEquals(crlSerial.add(BigInteger.ONE), restored.getCRLSerial());
+			// The snapshot itself is unchanged.
+			settings = CertificateAuthoritySettings.read(snapshot.getLocation().resolve(
+					CertificateAuthoritySettings.DEFAULT_NAME));
+			assertEquals(serial, settings.getSerial());
+		} finally {
+			TestUtilities.cleanup(source);
+		}
+	}
+
+	@Test
+	public void restoreFailed() throws IOException {
+		Path source = Paths.get(TestUtilities.TMP, "snapshotFailed");
+		try {
+			TestUtilities.copyFolder(TestUtilities.getFolder("CA"), source);
+			Snapshot snapshot = SnapshotUtil.create(source);
+			// A file of the snapshot which can't be copied.
+			try {
+				Files.createSymbolicLink(snapshot.getLocation().resolve("Issued").resolve("broken.txt"),
+						snapshot.getLocation().resolve("missing.txt"));
+			} catch (UnsupportedOperationException | IOException e) {
+				assumeTrue("Symbolic links not supported", false);
+			}
+			Path added = source.resolve("Issued").resolve("added.txt");
+			Files.write(added, "added".getBytes());
+			byte[] config = Files.readAllBytes(source.resolve("configuration.xml"));
+
+			try {
+				SnapshotUtil.restore(source, snapshot);
+				fail("Restore did not fail");
+			} catch (IOException e) {
+				// Expected.
+			}
+			// The datastore is as it was, and nothing is left staged.
+			assertTrue(Files.exists(added));
+			assertTrue(Files.exists(source.resolve("ca.p12")));
+			assertArrayEquals(config, Files.readAllBytes(source.resolve("configuration.xml")));
+			assertEquals(2, SnapshotUtil.list(source).size());
+			try (Stream<Path> files = Files.list(source.resolve(SnapshotUtil.SNAPSHOTS_PATH))) {
+				assertEquals(2, files.count());
+			}
+			CertificateAuthority ca = CertificateAuthority.open(source);
+			assertEquals(CA_DESCRIPTION, ca.getDescription());
+		} finally {
+			TestUtilities.cleanup(source);
+		}
+	}
+
+	@Test
+	public void listPrune() throws IOException {
+		Path source = Paths.get(TestUtilities.TMP, "snapshotPrune");
+		try {
+			TestUtilities.copyFolder(TestUtilities.getFolder("CA"), source);
+			CertificateAuthority ca = CertificateAuthority.open(source);
+			Snapshot first = ca.snapshot();
+			Snapshot second = ca.snapshot();
+			Snapshot third = ca.snapshot();
+			// Incomplete snapshots are not listed.
+			Files.createDirectories(source.resolve(SnapshotUtil.SNAPSHOTS_PATH).resolve(third.getId() + ".partial"));
+			List<Snapshot> snapshots = SnapshotUtil.list(source);
+			assertEquals(3, snapshots.size());
+			assertEquals(third, snapshots.get(0));
+			assertEquals(first, snapshots.get(2));
+			// Snapshots are not snapshot themselves.
+			assertFalse(Files.exists(second.getLocation().resolve(SnapshotUtil.SNAPSHOTS_PATH)));
+
+			List<Snapshot> deleted = SnapshotUtil.prune(source, 1);
+			assertEquals(2, deleted.size());
+			assertFalse(Files.exists(first.getLocation()));
+			assertFalse(Files.exists(second.getLocation()));
+			assertEquals(1, SnapshotUtil.list(source).size());
+			try (Stream<Path> files = Files.list(source.resolve(SnapshotUtil.SNAPSHOTS_PATH))) {
+				assertEquals(1, files.count());
+			}
+		} finally {
+			TestUtilities.cleanup(source);
+		}
+	}
+}
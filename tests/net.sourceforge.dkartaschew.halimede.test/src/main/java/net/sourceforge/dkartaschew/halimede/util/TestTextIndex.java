@@ -0,0 +1,184 @@
+/*-
+ * Halimede Certificate Manager Plugin for Eclipse 
+ * Copyright (C) 2017-2021 Darran Kartaschew 
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v2.0 which
+ * accompanies this distribution and is available at
+ *
+ * http://www.eclipse.org/legal/epl-v20.html
+ * 
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the Eclipse
+ * Public License, v. 2.0 are satisfied: GNU General Public License, version 2
+ * with the GNU Classpath Exception which is
+ * available at https://www.gnu.org/software/classpath/license.html.
+ */
+
+package net.sourceforge.dkartaschew.halimede.util;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Test;
+
+public class TestTextIndex {
+
+	/**
+	 * Mutable test element.
+	 */
+	private static class Item {
+		private String subject;
+		private String comments;
+
+		Item(String subject, String comments) {
+			this.subject = subject;
+			this.comments = comments;
+		}
+
+		@Override
+		public String toString() {
+			return subject;
+		}
+	}
+
+	private TextIndex<Item> create() {
+		return new TextIndex<>(i -> new String[] { i.subject, i.comments });
+	}
+
+	private static Set<Item> set(List<Item> items) {
+		return new HashSet<>(items);
+	}
+
+	@Test
+	public void testSearch() {
+		TextIndex<Item> index = create();
+		Item a = new Item("CN=Alice Smith,O=Example", "Laptop");
+		Item b = new Item("CN=Bob Smith,O=Example", null);
+		Item c = new Item("CN=Carol,O=Other", "Server ALICE");
+		index.addAll(Arrays.asList(a, b, c));
+		assertEquals(3, index.size());
+
+		assertEquals(set(Arrays.asList(a, c)), set(index.search("alice")));
+		assertEquals(set(Arrays.asList(a, b)), set(index.search("SMITH")));
+		assertEquals(set(Arrays.asList(a)), set(index.search("smith  laptop ")));
+		assertEquals(set(Arrays.asList(b)), set(index.search("cn=bob")));
+		assertTrue(index.search("mallory").isEmpty());
+		assertTrue(index.search("smith server").isEmpty());
+		// Short terms
+		assertEquals(set(Arrays.asList(a, b, c)), set(index.search("o")));
+		assertEquals(set(Arrays.asList(c)), set(index.search("ot")));
+		// Empty query matches all
+		assertEquals(3, index.search("").size());
+		assertEquals(3, index.search(null).size());
+		assertEquals(3, index.search("   ").size());
+	}
+
+	@Test
+	public void testFieldsNotJoined() {
+		TextIndex<Item> index = create();
+		Item a = new Item("abc", "def");
+		index.add(a);
+		assertEquals(1, index.search("abc").size());
+		assertEquals(1, index.search("def").size());
+		assertTrue(index.search("cde").isEmpty());
+		assertTrue(index.search("abcdef").isEmpty());
+	}
+
+	@Test
+	public void testMatches() {
+		TextIndex<Item> index = create();
+		Item a = new Item("CN=Alice", "Laptop");
+		Item b = new Item("CN=Bob", null);
+		index.add(a);
+		assertTrue(index.matches(a, "alice lap"));
+		assertFalse(index.matches(a, "bob"));
+		// Not indexed
+		assertTrue(index.matches(b, "bob"));
+		assertFalse(index.contains(b));
+	}
+
+	@Test
+	public void testUpdate() {
+		TextIndex<Item> index = create();
+		Item a = new Item("CN=Alice", null);
+		Item b = new Item("CN=Bob", null);
+		Item c = new Item("CN=Carol", null);
+		index.addAll(Arrays.asList(a, b));
+
+		// Updates are only seen once updated in the index.
+		a.subject = "CN=Dave";
+		assertEquals(Collections.singletonList(a), index.search("alice"));
+		index.update(Collections.singletonList(c), Collections.singletonList(b), Collections.singletonList(a));
+		assertTrue(index.search("alice").isEmpty());
+		assertTrue(index.search("bob").isEmpty());
+		assertEquals(Collections.singletonList(a), index.search("dave"));
+		assertEquals(Collections.singletonList(c), index.search("carol"));
+		assertEquals(2, index.size());
+		assertFalse(index.contains(b));
+
+		// Adding again replaces.
+		index.add(a);
+		assertEquals(2, index.size());
+		assertEquals(Collections.singletonList(a), index.search("dave"));
+
+		index.clear();
+		assertEquals(0, index.size());
+		assertTrue(index.search("").isEmpty());
+	}
+
+	@Test
+	public void testIdentity() {
+		TextIndex<String> index = new TextIndex<>(s -> new String[] { s });
+		String a = new String("value");
+		String b = new String("value");
+		index.add(a);
+		index.add(b);
+		assertEquals(2, index.size());
+		index.remove(a);
+		List<String> result = index.search("value");
+		assertEquals(1, result.size());
+		assertTrue(result.get(0) == b);
+	}
+
+	@Test
+	public void testCompaction() {
+		TextIndex<Item> index = create();
+		List<Item> items = new ArrayList<>();
+		for (int i = 0; i < 5000; i++) {
+			items.add(new Item("CN=Item " + i, i % 2 == 0 ? "even" : "odd"));
+		}
+		index.addAll(items);
+		assertEquals(2500, index.search("even").size());
+		for (int i = 0; i < 4000; i++) {
+			index.remove(items.get(i));
+		}
+		assertEquals(1000, index.size());
+		assertEquals(500, index.search("even").size());
+		assertEquals(1, index.search("item 4999").size());
+		assertEquals(11, index.search("item 499").size());
+		assertTrue(index.search("item 3999").isEmpty());
+	}
+
+	@Test
+	public void testGrams() {
+		assertEquals(0, TextIndex.grams("ab").length);
+		assertEquals(1, TextIndex.grams("abc").length);
+		// Distinct only
+		assertEquals(1, TextIndex.grams("aaaaa").length);
+		// None spanning whitespace
+		assertEquals(0, TextIndex.grams("ab cd").length);
+		assertEquals(2, TextIndex.grams("abc\nbcd").length);
+		assertArrayEquals(new String[] { "a", "b" }, TextIndex.terms(" A  B "));
+		assertEquals(0, TextIndex.terms(null).length);
+	}
+}